@@ -149,6 +149,15 @@ public class Schedule {
         schedule(m_interval.getInterval());
     }
 
+    /**
+     * <p>getTimer</p>
+     *
+     * @return the timer used to run the entries of this schedule
+     */
+    public ScheduleTimer getTimer() {
+        return m_timer;
+    }
+
     /**
      * <p>unschedule</p>
      */
@@ -0,0 +1,640 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.fiber.PausableFiber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Scheduler} backed by a hierarchical hashed timing wheel.
+ *
+ * <p>Unlike {@link LegacyScheduler}, which keeps one FIFO queue per interval
+ * and polls the head of every queue, this scheduler places each runnable in
+ * the wheel slot of its own deadline. Runnables sharing an interval are
+ * therefore spread across the wheel according to when they were scheduled
+ * instead of queuing up behind each other, and each tick only touches the
+ * runnables that are actually due.</p>
+ *
+ * <p>Scheduling and cancelling are O(1): callers only append to a lock-free
+ * queue that is drained by the timer thread before every tick. Runnables
+ * that are due but not {@link ReadyRunnable#isReady() ready} are retried on
+ * the following tick.</p>
+ *
+ * <p>The wheel has {@value #LEVELS} levels of {@value #WHEEL_SIZE} slots.
+ * Entries further out than one revolution of a level are kept in the next
+ * level and cascaded down as the wheel turns.</p>
+ */
+public class TimingWheelScheduler implements Runnable, PausableFiber, Scheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimingWheelScheduler.class);
+
+    /**
+     * The default duration of a tick in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    private static final int WHEEL_BITS = 8;
+
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    static final int LEVELS = 4;
+
+    /**
+     * The furthest tick, relative to the current one, that can be placed
+     * in the wheel. Deadlines beyond this are parked in the last slot
+     * reachable and re-placed when they are cascaded.
+     */
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    /**
+     * The slots of the wheel, indexed by level and then slot. Only accessed
+     * by the timer thread.
+     */
+    private final Bucket[][] m_wheel;
+
+    /**
+     * Timeouts that have been scheduled but not yet placed in the wheel.
+     */
+    private final Queue<Timeout> m_pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Timeouts that have been cancelled while in the wheel.
+     */
+    private final Queue<Timeout> m_cancelled = new ConcurrentLinkedQueue<>();
+
+    private final long m_tickNanos;
+
+    /**
+     * The origin of the tick numbering, from {@link System#nanoTime()}.
+     */
+    private final long m_startNanos;
+
+    /**
+     * The next tick to be processed. Only written by the timer thread.
+     */
+    private volatile long m_tick;
+
+    /**
+     * The total number of runnables currently scheduled.
+     */
+    private final AtomicInteger m_scheduled = new AtomicInteger();
+
+    /**
+     * The number of runnables that were due more than one tick before the
+     * timer thread got to them.
+     */
+    private final AtomicLong m_lateFires = new AtomicLong();
+
+    /**
+     * The largest delay, in milliseconds, observed between a runnable's
+     * deadline and the tick that expired it.
+     */
+    private volatile long m_maxLatenessMillis;
+
+    /**
+     * The pool of threads that are used to executed the runnable instances
+     * scheduled by the class' instance.
+     */
+    private final ExecutorService m_runner;
+
+    /**
+     * The status for this fiber.
+     */
+    private volatile int m_status;
+
+    /**
+     * The worker thread that executes this instance.
+     */
+    private volatile Thread m_worker;
+
+    /**
+     * Used to keep track of the number of tasks that have been executed.
+     */
+    private volatile long m_numTasksExecuted = 0;
+
+    /**
+     * Constructs a new instance of the scheduler with the default tick
+     * duration.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize) {
+        this(parent, maxSize, DEFAULT_TICK_MILLIS);
+    }
+
+    /**
+     * Constructs a new instance of the scheduler.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @param tickMillis
+     *            The resolution of the wheel in milliseconds.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize, final long tickMillis) {
+        Assert.isTrue(tickMillis > 0, "tickMillis must be positive");
+        m_status = START_PENDING;
+        m_runner = Executors.newFixedThreadPool(maxSize, new LogPreservingThreadFactory(parent, maxSize));
+        m_tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        m_startNanos = System.nanoTime();
+        m_tick = 0;
+        m_wheel = new Bucket[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                m_wheel[level][slot] = new Bucket();
+            }
+        }
+        m_worker = null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void schedule(long interval, final ReadyRunnable runnable) {
+        newTimeout(interval, runnable);
+    }
+
+    /**
+     * Schedules the runnable to be run once the interval has elapsed and it
+     * reports itself as ready.
+     *
+     * @param interval
+     *            The delay in milliseconds.
+     * @param runnable
+     *            The element to run when the interval expires.
+     * @return a handle that can be used to cancel the runnable
+     */
+    public Timeout newTimeout(long interval, final ReadyRunnable runnable) {
+        Assert.notNull(runnable, "runnable must not be null");
+        LOG.debug("schedule: Adding ready runnable {} at interval {}", runnable, interval);
+
+        final Timeout timeout = new Timeout(runnable, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, interval)));
+        m_scheduled.incrementAndGet();
+        m_pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * <p>getCurrentTime</p>
+     *
+     * @return a long.
+     */
+    @Override
+    public long getCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * <p>start</p>
+     */
+    @Override
+    public synchronized void start() {
+        Assert.state(m_worker == null, "The fiber has already run or is running");
+
+        m_worker = new Thread(this, getName());
+        m_worker.start();
+        m_status = STARTING;
+
+        LOG.info("start: scheduler started");
+    }
+
+    /**
+     * <p>stop</p>
+     */
+    @Override
+    public synchronized void stop() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+
+        m_status = STOP_PENDING;
+        m_worker.interrupt();
+        m_runner.shutdown();
+
+        LOG.info("stop: scheduler stopped");
+    }
+
+    /**
+     * <p>pause</p>
+     */
+    @Override
+    public synchronized void pause() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == PAUSED) {
+            return;
+        }
+
+        m_status = PAUSE_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>resume</p>
+     */
+    @Override
+    public synchronized void resume() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == RUNNING) {
+            return;
+        }
+
+        m_status = RESUME_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>getStatus</p>
+     *
+     * @return a int.
+     */
+    @Override
+    public synchronized int getStatus() {
+        if (m_worker != null && m_worker.isAlive() == false) {
+            m_status = STOPPED;
+        }
+        return m_status;
+    }
+
+    /**
+     * Returns the name of this fiber.
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getName() {
+        return m_runner.toString();
+    }
+
+    /**
+     * Returns total number of elements currently scheduled, including the
+     * ones that have not been placed in the wheel yet.
+     *
+     * @return the depth of the scheduler's queue
+     */
+    public int getScheduled() {
+        return m_scheduled.get();
+    }
+
+    /**
+     * Returns the number of runnables that were expired more than one tick
+     * after their deadline, i.e. because the timer thread fell behind.
+     *
+     * @return the number of late fires
+     */
+    public long getLateFires() {
+        return m_lateFires.get();
+    }
+
+    /**
+     * Returns the largest delay observed between a runnable's deadline and
+     * its expiry.
+     *
+     * @return the maximum lateness in milliseconds
+     */
+    public long getMaxLatenessMillis() {
+        return m_maxLatenessMillis;
+    }
+
+    /**
+     * Returns the pool of threads that are used to executed the runnable
+     * instances scheduled by the class' instance.
+     *
+     * @return thread pool
+     */
+    public ExecutorService getRunner() {
+        return m_runner;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getNumTasksExecuted() {
+        return m_numTasksExecuted;
+    }
+
+    /**
+     * The main method of the scheduler. Each tick places newly scheduled
+     * runnables in the wheel, cascades the upper levels if a lower level
+     * completed a revolution and hands the runnables of the current slot to
+     * the thread pool.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            m_status = RUNNING;
+        }
+
+        LOG.debug("run: scheduler running");
+
+        try {
+            for (;;) {
+                synchronized (this) {
+                    if (m_status != RUNNING && m_status != PAUSED && m_status != PAUSE_PENDING && m_status != RESUME_PENDING) {
+                        LOG.debug("run: status = {}, time to exit", m_status);
+                        break;
+                    }
+
+                    // if paused or pause pending then block
+                    while (m_status == PAUSE_PENDING || m_status == PAUSED) {
+                        if (m_status == PAUSE_PENDING) {
+                            LOG.debug("run: pausing.");
+                        }
+                        m_status = PAUSED;
+                        wait();
+                    }
+
+                    // if resume pending then change to running
+                    if (m_status == RESUME_PENDING) {
+                        LOG.debug("run: resuming.");
+                        m_status = RUNNING;
+                    }
+                }
+
+                // Wait for the next tick to come around
+                final long sleepNanos = m_startNanos + (m_tick + 1) * m_tickNanos - System.nanoTime();
+                if (sleepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+
+                // Catch up with every tick that has elapsed
+                final long now = System.nanoTime();
+                while (m_tick <= toTick(now)) {
+                    tick(m_tick, now);
+                    m_tick++;
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("run: interrupted");
+        }
+
+        LOG.debug("run: scheduler exiting, state = STOPPED");
+        synchronized (this) {
+            m_status = STOPPED;
+        }
+    }
+
+    private long toTick(long nanos) {
+        return (nanos - m_startNanos) / m_tickNanos;
+    }
+
+    private void tick(final long tick, final long now) {
+        drainCancelled();
+        drainPending(tick);
+
+        // Cascade the upper levels whose slot index just wrapped
+        for (int level = 1; level < LEVELS; level++) {
+            if (((tick >>> (WHEEL_BITS * (level - 1))) & WHEEL_MASK) != 0) {
+                break;
+            }
+            final Bucket bucket = m_wheel[level][(int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+            for (Timeout timeout = bucket.clear(); timeout != null; ) {
+                final Timeout next = timeout.m_next;
+                timeout.m_next = null;
+                place(timeout, tick);
+                timeout = next;
+            }
+        }
+
+        final Bucket bucket = m_wheel[0][(int) (tick & WHEEL_MASK)];
+        for (Timeout timeout = bucket.clear(); timeout != null; ) {
+            final Timeout next = timeout.m_next;
+            timeout.m_next = null;
+            expire(timeout, tick, now);
+            timeout = next;
+        }
+    }
+
+    private void drainCancelled() {
+        Timeout timeout;
+        while ((timeout = m_cancelled.poll()) != null) {
+            if (timeout.m_bucket != null) {
+                timeout.m_bucket.remove(timeout);
+                m_scheduled.decrementAndGet();
+            }
+        }
+    }
+
+    private void drainPending(final long tick) {
+        Timeout timeout;
+        while ((timeout = m_pending.poll()) != null) {
+            if (timeout.m_state.get() == Timeout.CANCELLED) {
+                m_scheduled.decrementAndGet();
+                continue;
+            }
+            // Round up so that runnables never fire early
+            timeout.m_deadlineTick = Math.max(tick, (timeout.m_deadlineNanos - m_startNanos + m_tickNanos - 1) / m_tickNanos);
+            place(timeout, tick);
+        }
+    }
+
+    private void place(final Timeout timeout, final long tick) {
+        final long delta = Math.min(Math.max(0, timeout.m_deadlineTick - tick), MAX_DELTA);
+        final long target = tick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        m_wheel[level][(int) ((target >>> (WHEEL_BITS * level)) & WHEEL_MASK)].add(timeout);
+    }
+
+    private void expire(final Timeout timeout, final long tick, final long now) {
+        if (timeout.m_deadlineTick > tick) {
+            // Parked beyond the reach of the wheel, place it again
+            place(timeout, tick);
+            return;
+        }
+
+        if (!timeout.m_expired) {
+            timeout.m_expired = true;
+            final long latenessMillis = TimeUnit.NANOSECONDS.toMillis(now - timeout.m_deadlineNanos);
+            if (now - timeout.m_deadlineNanos > m_tickNanos) {
+                m_lateFires.incrementAndGet();
+            }
+            if (latenessMillis > m_maxLatenessMillis) {
+                m_maxLatenessMillis = latenessMillis;
+            }
+        }
+
+        if (timeout.m_state.get() == Timeout.CANCELLED) {
+            m_scheduled.decrementAndGet();
+            return;
+        }
+
+        final ReadyRunnable runnable = timeout.m_runnable;
+        if (!runnable.isReady()) {
+            // Due, but not ready: try again on the next tick
+            timeout.m_deadlineTick = tick + 1;
+            place(timeout, tick);
+            return;
+        }
+
+        if (!timeout.m_state.compareAndSet(Timeout.INIT, Timeout.EXPIRED)) {
+            // Cancelled concurrently, the cancel queue will not find it in a bucket
+            m_scheduled.decrementAndGet();
+            return;
+        }
+        m_scheduled.decrementAndGet();
+
+        LOG.debug("run: found ready runnable {}", runnable);
+        try {
+            m_runner.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            throw new UndeclaredThrowableException(e);
+        }
+        ++m_numTasksExecuted;
+    }
+
+    /**
+     * A handle for a runnable scheduled with
+     * {@link TimingWheelScheduler#newTimeout(long, ReadyRunnable)}.
+     */
+    public final class Timeout {
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final ReadyRunnable m_runnable;
+        private final long m_deadlineNanos;
+        private final AtomicInteger m_state = new AtomicInteger(INIT);
+
+        // The following are only accessed by the timer thread
+        private long m_deadlineTick;
+        private boolean m_expired;
+        private Bucket m_bucket;
+        private Timeout m_prev;
+        private Timeout m_next;
+
+        private Timeout(final ReadyRunnable runnable, final long deadlineNanos) {
+            m_runnable = runnable;
+            m_deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the runnable if it has not been handed to the thread pool
+         * yet.
+         *
+         * @return true if the runnable will not be run
+         */
+        public boolean cancel() {
+            if (!m_state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            m_cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return m_state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return m_state.get() == EXPIRED;
+        }
+
+        public ReadyRunnable getRunnable() {
+            return m_runnable;
+        }
+
+        @Override
+        public String toString() {
+            return m_runnable.toString() + " (ready in " + Math.max(0, TimeUnit.NANOSECONDS.toMillis(m_deadlineNanos - System.nanoTime())) + "ms)";
+        }
+    }
+
+    /**
+     * An intrusive doubly-linked list of timeouts.
+     */
+    private static final class Bucket {
+        private Timeout m_head;
+        private Timeout m_tail;
+
+        private void add(final Timeout timeout) {
+            timeout.m_bucket = this;
+            timeout.m_prev = m_tail;
+            timeout.m_next = null;
+            if (m_tail == null) {
+                m_head = timeout;
+            } else {
+                m_tail.m_next = timeout;
+            }
+            m_tail = timeout;
+        }
+
+        private void remove(final Timeout timeout) {
+            if (timeout.m_prev == null) {
+                m_head = timeout.m_next;
+            } else {
+                timeout.m_prev.m_next = timeout.m_next;
+            }
+            if (timeout.m_next == null) {
+                m_tail = timeout.m_prev;
+            } else {
+                timeout.m_next.m_prev = timeout.m_prev;
+            }
+            timeout.m_bucket = null;
+            timeout.m_prev = null;
+            timeout.m_next = null;
+        }
+
+        /**
+         * Detaches all of the timeouts from the bucket.
+         *
+         * @return the head of the detached chain, linked through m_next
+         */
+        private Timeout clear() {
+            final Timeout head = m_head;
+            for (Timeout timeout = head; timeout != null; timeout = timeout.m_next) {
+                timeout.m_bucket = null;
+                timeout.m_prev = null;
+            }
+            m_head = null;
+            m_tail = null;
+            return head;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.fiber.PausableFiber;
+
+public class TimingWheelSchedulerTest {
+
+    private TimingWheelScheduler m_scheduler;
+
+    @Before
+    public void setUp() {
+        m_scheduler = new TimingWheelScheduler("TimingWheelSchedulerTest", 4, 10);
+        m_scheduler.start();
+    }
+
+    @After
+    public void tearDown() {
+        m_scheduler.stop();
+    }
+
+    @Test(timeout = 10000)
+    public void shouldRunAfterInterval() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long scheduledAt = System.currentTimeMillis();
+        final AtomicInteger ranAfter = new AtomicInteger();
+
+        m_scheduler.schedule(200, runnable(() -> {
+            ranAfter.set((int) (System.currentTimeMillis() - scheduledAt));
+            latch.countDown();
+        }));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue("ran after " + ranAfter.get() + "ms", ranAfter.get() >= 200);
+        waitForScheduled(0);
+        assertEquals(1, m_scheduler.getNumTasksExecuted());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldRunManyRunnablesWithTheSameInterval() throws InterruptedException {
+        final int count = 10000;
+        final CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            m_scheduler.schedule(i % 500, runnable(latch::countDown));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        waitForScheduled(0);
+        assertEquals(count, m_scheduler.getNumTasksExecuted());
+    }
+
+    @Test(timeout = 10000)
+    public void shouldCascadeFromUpperLevels() throws InterruptedException {
+        // Beyond one revolution of the first level (256 ticks of 10ms)
+        final CountDownLatch latch = new CountDownLatch(1);
+        m_scheduler.schedule(3000, runnable(latch::countDown));
+
+        assertFalse(latch.await(2500, TimeUnit.MILLISECONDS));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldWaitUntilReady() throws InterruptedException {
+        final AtomicBoolean ready = new AtomicBoolean(false);
+        final CountDownLatch latch = new CountDownLatch(1);
+        m_scheduler.schedule(0, new ReadyRunnable() {
+            @Override
+            public boolean isReady() {
+                return ready.get();
+            }
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, m_scheduler.getScheduled());
+
+        ready.set(true);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void shouldNotRunCancelledRunnables() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        final TimingWheelScheduler.Timeout pending = m_scheduler.newTimeout(100, runnable(runs::incrementAndGet));
+        assertTrue(pending.cancel());
+
+        final TimingWheelScheduler.Timeout placed = m_scheduler.newTimeout(300, runnable(runs::incrementAndGet));
+        Thread.sleep(100);
+        assertTrue(placed.cancel());
+        assertFalse(placed.cancel());
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final TimingWheelScheduler.Timeout expired = m_scheduler.newTimeout(0, runnable(latch::countDown));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(expired.cancel());
+        assertTrue(expired.isExpired());
+
+        Thread.sleep(500);
+        assertEquals(0, runs.get());
+        waitForScheduled(0);
+    }
+
+    @Test(timeout = 10000)
+    public void shouldHoldRunnablesWhilePaused() throws InterruptedException {
+        waitForStatus(PausableFiber.RUNNING);
+        m_scheduler.pause();
+        waitForStatus(PausableFiber.PAUSED);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        m_scheduler.schedule(0, runnable(latch::countDown));
+        assertFalse(latch.await(300, TimeUnit.MILLISECONDS));
+
+        m_scheduler.resume();
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // The runnable was held back for a number of ticks
+        assertEquals(1, m_scheduler.getLateFires());
+        assertTrue(m_scheduler.getMaxLatenessMillis() >= 300);
+    }
+
+    private void waitForScheduled(int scheduled) throws InterruptedException {
+        while (m_scheduler.getScheduled() != scheduled) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void waitForStatus(int status) throws InterruptedException {
+        while (m_scheduler.getStatus() != status) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static ReadyRunnable runnable(Runnable runnable) {
+        return new ReadyRunnable() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void run() {
+                runnable.run();
+            }
+        };
+    }
+}
@@ -48,7 +48,6 @@ import static org.opennms.core.tracing.api.TracerConstants.TAG_SYSTEM_ID;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -75,6 +74,7 @@ import org.opennms.core.ipc.sink.api.MessageConsumerManager;
 import org.opennms.core.ipc.sink.api.SinkModule;
 import org.opennms.core.ipc.sink.common.AbstractMessageDispatcherFactory;
 import org.opennms.core.logging.Logging;
+import org.opennms.core.rpc.api.RpcCodecs;
 import org.opennms.core.rpc.api.RpcModule;
 import org.opennms.core.rpc.api.RpcRequest;
 import org.opennms.core.rpc.api.RpcResponse;
@@ -385,6 +385,7 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
                 .setSystemId(minionIdentity.getId())
                 .setModuleId(MINION_HEADERS_MODULE)
                 .setRpcId(minionIdentity.getId())
+                .setAcceptCodec(RpcCodecs.getAcceptedCodec())
                 .build();
         sendRpcResponse(rpcHeader);
         LOG.info("Sending Minion Headers from SystemId {} to gRPC server", minionIdentity.getId());
@@ -410,7 +411,7 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
         Span minionSpan = spanBuilder.start();
         setTagsForRpc(requestProto, minionSpan);
 
-        RpcRequest rpcRequest = rpcModule.unmarshalRequest(requestProto.getRpcContent().toStringUtf8());
+        RpcRequest rpcRequest = RpcCodecs.unmarshalRequest(rpcModule, requestProto.getRpcContent().toByteArray());
         CompletableFuture<RpcResponse> future = rpcModule.execute(rpcRequest);
         future.whenComplete((res, ex) -> {
             final RpcResponse rpcResponse;
@@ -426,13 +427,14 @@ public class MinionGrpcClient extends AbstractMessageDispatcherFactory<String> {
             }
             minionSpan.finish();
             // Construct response using the same rpcId;
-            String responseAsString = rpcModule.marshalResponse(rpcResponse);
+            byte[] responseInBytes = RpcCodecs.marshalResponse(rpcModule, rpcResponse,
+                    RpcCodecs.acceptsBinary(requestProto.getAcceptCodec()));
             RpcResponseProto responseProto = RpcResponseProto.newBuilder()
                     .setRpcId(requestProto.getRpcId())
                     .setSystemId(minionIdentity.getId())
                     .setLocation(requestProto.getLocation())
                     .setModuleId(requestProto.getModuleId())
-                    .setRpcContent(ByteString.copyFrom(responseAsString, StandardCharsets.UTF_8))
+                    .setRpcContent(ByteString.copyFrom(responseInBytes))
                     .build();
             if (getChannelState().equals(ConnectivityState.READY)) {
                 try {
@@ -86,17 +86,19 @@ public final class MinionIpc {
       descriptor;
   static {
     String[] descriptorData = {
-      "\n\tipc.proto\"\007\n\005Empty\"\364\001\n\017RpcRequestProto" +
+      "\n\tipc.proto\"\007\n\005Empty\"\212\002\n\017RpcRequestProto" +
       "\022\016\n\006rpc_id\030\001 \001(\t\022\023\n\013rpc_content\030\002 \001(\014\022\021\n" +
       "\tsystem_id\030\003 \001(\t\022\020\n\010location\030\004 \001(\t\022\021\n\tmo" +
       "dule_id\030\005 \001(\t\022\027\n\017expiration_time\030\006 \001(\004\0227" +
       "\n\014tracing_info\030\007 \003(\0132!.RpcRequestProto.T" +
-      "racingInfoEntry\0322\n\020TracingInfoEntry\022\013\n\003k" +
-      "ey\030\001 \001(\t\022\r\n\005value\030\002 \001(\t:\0028\001\"\335\001\n\020RpcRespo" +
+      "racingInfoEntry\022\024\n\014accept_codec\030\010 \001(\t" +
+      "\0322\n\020TracingInfoEntry\022\013\n\003k" +
+      "ey\030\001 \001(\t\022\r\n\005value\030\002 \001(\t:\0028\001\"\363\001\n\020RpcRespo" +
       "nseProto\022\016\n\006rpc_id\030\001 \001(\t\022\023\n\013rpc_content\030" +
       "\002 \001(\014\022\021\n\tsystem_id\030\003 \001(\t\022\020\n\010location\030\004 \001" +
       "(\t\022\021\n\tmodule_id\030\005 \001(\t\0228\n\014tracing_info\030\006 " +
-      "\003(\0132\".RpcResponseProto.TracingInfoEntry\032" +
+      "\003(\0132\".RpcResponseProto.TracingInfoEntry\022" +
+      "\024\n\014accept_codec\030\007 \001(\t\032" +
       "2\n\020TracingInfoEntry\022\013\n\003key\030\001 \001(\t\022\r\n\005valu" +
       "e\030\002 \001(\t:\0028\001\"\300\001\n\013SinkMessage\022\022\n\nmessage_i" +
       "d\030\001 \001(\t\022\017\n\007content\030\002 \001(\014\022\020\n\010location\030\003 \001" +
@@ -124,7 +126,7 @@ public final class MinionIpc {
     internal_static_RpcRequestProto_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_RpcRequestProto_descriptor,
-        new String[] { "RpcId", "RpcContent", "SystemId", "Location", "ModuleId", "ExpirationTime", "TracingInfo", });
+        new String[] { "RpcId", "RpcContent", "SystemId", "Location", "ModuleId", "ExpirationTime", "TracingInfo", "AcceptCodec", });
     internal_static_RpcRequestProto_TracingInfoEntry_descriptor =
       internal_static_RpcRequestProto_descriptor.getNestedTypes().get(0);
     internal_static_RpcRequestProto_TracingInfoEntry_fieldAccessorTable = new
@@ -136,7 +138,7 @@ public final class MinionIpc {
     internal_static_RpcResponseProto_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_RpcResponseProto_descriptor,
-        new String[] { "RpcId", "RpcContent", "SystemId", "Location", "ModuleId", "TracingInfo", });
+        new String[] { "RpcId", "RpcContent", "SystemId", "Location", "ModuleId", "TracingInfo", "AcceptCodec", });
     internal_static_RpcResponseProto_TracingInfoEntry_descriptor =
       internal_static_RpcResponseProto_descriptor.getNestedTypes().get(0);
     internal_static_RpcResponseProto_TracingInfoEntry_fieldAccessorTable = new
@@ -49,6 +49,7 @@ private static final long serialVersionUID = 0L;
     systemId_ = "";
     location_ = "";
     moduleId_ = "";
+    acceptCodec_ = "";
   }
 
   @Override
@@ -129,6 +130,12 @@ private static final long serialVersionUID = 0L;
                 tracingInfo__.getKey(), tracingInfo__.getValue());
             break;
           }
+          case 66: {
+            String s = input.readStringRequireUtf8();
+
+            acceptCodec_ = s;
+            break;
+          }
           default: {
             if (!parseUnknownField(
                 input, unknownFields, extensionRegistry, tag)) {
@@ -413,6 +420,42 @@ private static final long serialVersionUID = 0L;
     return map.get(key);
   }
 
+  public static final int ACCEPT_CODEC_FIELD_NUMBER = 8;
+  private volatile Object acceptCodec_;
+  /**
+   * <code>string accept_codec = 8;</code>
+   * @return The acceptCodec.
+   */
+  public String getAcceptCodec() {
+    Object ref = acceptCodec_;
+    if (ref instanceof String) {
+      return (String) ref;
+    } else {
+      com.google.protobuf.ByteString bs = 
+          (com.google.protobuf.ByteString) ref;
+      String s = bs.toStringUtf8();
+      acceptCodec_ = s;
+      return s;
+    }
+  }
+  /**
+   * <code>string accept_codec = 8;</code>
+   * @return The bytes for acceptCodec.
+   */
+  public com.google.protobuf.ByteString
+      getAcceptCodecBytes() {
+    Object ref = acceptCodec_;
+    if (ref instanceof String) {
+      com.google.protobuf.ByteString b = 
+          com.google.protobuf.ByteString.copyFromUtf8(
+              (String) ref);
+      acceptCodec_ = b;
+      return b;
+    } else {
+      return (com.google.protobuf.ByteString) ref;
+    }
+  }
+
   private byte memoizedIsInitialized = -1;
   @Override
   public final boolean isInitialized() {
@@ -451,6 +494,9 @@ private static final long serialVersionUID = 0L;
         internalGetTracingInfo(),
         TracingInfoDefaultEntryHolder.defaultEntry,
         7);
+    if (!getAcceptCodecBytes().isEmpty()) {
+      com.google.protobuf.GeneratedMessageV3.writeString(output, 8, acceptCodec_);
+    }
     unknownFields.writeTo(output);
   }
 
@@ -490,6 +536,9 @@ private static final long serialVersionUID = 0L;
       size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(7, tracingInfo__);
     }
+    if (!getAcceptCodecBytes().isEmpty()) {
+      size += com.google.protobuf.GeneratedMessageV3.computeStringSize(8, acceptCodec_);
+    }
     size += unknownFields.getSerializedSize();
     memoizedSize = size;
     return size;
@@ -519,6 +568,8 @@ private static final long serialVersionUID = 0L;
         != other.getExpirationTime()) return false;
     if (!internalGetTracingInfo().equals(
         other.internalGetTracingInfo())) return false;
+    if (!getAcceptCodec()
+        .equals(other.getAcceptCodec())) return false;
     if (!unknownFields.equals(other.unknownFields)) return false;
     return true;
   }
@@ -547,6 +598,8 @@ private static final long serialVersionUID = 0L;
       hash = (37 * hash) + TRACING_INFO_FIELD_NUMBER;
       hash = (53 * hash) + internalGetTracingInfo().hashCode();
     }
+    hash = (37 * hash) + ACCEPT_CODEC_FIELD_NUMBER;
+    hash = (53 * hash) + getAcceptCodec().hashCode();
     hash = (29 * hash) + unknownFields.hashCode();
     memoizedHashCode = hash;
     return hash;
@@ -715,6 +768,8 @@ private static final long serialVersionUID = 0L;
       expirationTime_ = 0L;
 
       internalGetMutableTracingInfo().clear();
+      acceptCodec_ = "";
+
       return this;
     }
 
@@ -750,6 +805,7 @@ private static final long serialVersionUID = 0L;
       result.expirationTime_ = expirationTime_;
       result.tracingInfo_ = internalGetTracingInfo();
       result.tracingInfo_.makeImmutable();
+      result.acceptCodec_ = acceptCodec_;
       onBuilt();
       return result;
     }
@@ -822,6 +878,10 @@ private static final long serialVersionUID = 0L;
       }
       internalGetMutableTracingInfo().mergeFrom(
           other.internalGetTracingInfo());
+      if (!other.getAcceptCodec().isEmpty()) {
+        acceptCodec_ = other.acceptCodec_;
+        onChanged();
+      }
       this.mergeUnknownFields(other.unknownFields);
       onChanged();
       return this;
@@ -1341,6 +1401,82 @@ private static final long serialVersionUID = 0L;
           .putAll(values);
       return this;
     }
+    private Object acceptCodec_ = "";
+    /**
+     * <code>string accept_codec = 8;</code>
+     * @return The acceptCodec.
+     */
+    public String getAcceptCodec() {
+      Object ref = acceptCodec_;
+      if (!(ref instanceof String)) {
+        com.google.protobuf.ByteString bs =
+            (com.google.protobuf.ByteString) ref;
+        String s = bs.toStringUtf8();
+        acceptCodec_ = s;
+        return s;
+      } else {
+        return (String) ref;
+      }
+    }
+    /**
+     * <code>string accept_codec = 8;</code>
+     * @return The bytes for acceptCodec.
+     */
+    public com.google.protobuf.ByteString
+        getAcceptCodecBytes() {
+      Object ref = acceptCodec_;
+      if (ref instanceof String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (String) ref);
+        acceptCodec_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+    /**
+     * <code>string accept_codec = 8;</code>
+     * @param value The acceptCodec to set.
+     * @return This builder for chaining.
+     */
+    public Builder setAcceptCodec(
+        String value) {
+      if (value == null) {
+    throw new NullPointerException();
+  }
+  
+      acceptCodec_ = value;
+      onChanged();
+      return this;
+    }
+    /**
+     * <code>string accept_codec = 8;</code>
+     * @return This builder for chaining.
+     */
+    public Builder clearAcceptCodec() {
+      
+      acceptCodec_ = getDefaultInstance().getAcceptCodec();
+      onChanged();
+      return this;
+    }
+    /**
+     * <code>string accept_codec = 8;</code>
+     * @param value The bytes for acceptCodec to set.
+     * @return This builder for chaining.
+     */
+    public Builder setAcceptCodecBytes(
+        com.google.protobuf.ByteString value) {
+      if (value == null) {
+    throw new NullPointerException();
+  }
+  checkByteStringIsUtf8(value);
+      
+      acceptCodec_ = value;
+      onChanged();
+      return this;
+    }
+
     @Override
     public final Builder setUnknownFields(
         final com.google.protobuf.UnknownFieldSet unknownFields) {
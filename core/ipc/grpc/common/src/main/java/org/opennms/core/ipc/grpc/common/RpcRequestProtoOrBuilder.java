@@ -128,4 +128,16 @@ public interface RpcRequestProtoOrBuilder extends
 
   String getTracingInfoOrThrow(
           String key);
+  /**
+   * <code>string accept_codec = 8;</code>
+   * @return The acceptCodec.
+   */
+  String getAcceptCodec();
+  /**
+   * <code>string accept_codec = 8;</code>
+   * @return The bytes for acceptCodec.
+   */
+  com.google.protobuf.ByteString
+      getAcceptCodecBytes();
+
 }
@@ -49,6 +49,7 @@ private static final long serialVersionUID = 0L;
     systemId_ = "";
     location_ = "";
     moduleId_ = "";
+    acceptCodec_ = "";
   }
 
   @Override
@@ -124,6 +125,12 @@ private static final long serialVersionUID = 0L;
                 tracingInfo__.getKey(), tracingInfo__.getValue());
             break;
           }
+          case 58: {
+            String s = input.readStringRequireUtf8();
+
+            acceptCodec_ = s;
+            break;
+          }
           default: {
             if (!parseUnknownField(
                 input, unknownFields, extensionRegistry, tag)) {
@@ -398,6 +405,42 @@ private static final long serialVersionUID = 0L;
     return map.get(key);
   }
 
+  public static final int ACCEPT_CODEC_FIELD_NUMBER = 7;
+  private volatile Object acceptCodec_;
+  /**
+   * <code>string accept_codec = 7;</code>
+   * @return The acceptCodec.
+   */
+  public String getAcceptCodec() {
+    Object ref = acceptCodec_;
+    if (ref instanceof String) {
+      return (String) ref;
+    } else {
+      com.google.protobuf.ByteString bs = 
+          (com.google.protobuf.ByteString) ref;
+      String s = bs.toStringUtf8();
+      acceptCodec_ = s;
+      return s;
+    }
+  }
+  /**
+   * <code>string accept_codec = 7;</code>
+   * @return The bytes for acceptCodec.
+   */
+  public com.google.protobuf.ByteString
+      getAcceptCodecBytes() {
+    Object ref = acceptCodec_;
+    if (ref instanceof String) {
+      com.google.protobuf.ByteString b = 
+          com.google.protobuf.ByteString.copyFromUtf8(
+              (String) ref);
+      acceptCodec_ = b;
+      return b;
+    } else {
+      return (com.google.protobuf.ByteString) ref;
+    }
+  }
+
   private byte memoizedIsInitialized = -1;
   @Override
   public final boolean isInitialized() {
@@ -433,6 +476,9 @@ private static final long serialVersionUID = 0L;
         internalGetTracingInfo(),
         TracingInfoDefaultEntryHolder.defaultEntry,
         6);
+    if (!getAcceptCodecBytes().isEmpty()) {
+      com.google.protobuf.GeneratedMessageV3.writeString(output, 7, acceptCodec_);
+    }
     unknownFields.writeTo(output);
   }
 
@@ -468,6 +514,9 @@ private static final long serialVersionUID = 0L;
       size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(6, tracingInfo__);
     }
+    if (!getAcceptCodecBytes().isEmpty()) {
+      size += com.google.protobuf.GeneratedMessageV3.computeStringSize(7, acceptCodec_);
+    }
     size += unknownFields.getSerializedSize();
     memoizedSize = size;
     return size;
@@ -495,6 +544,8 @@ private static final long serialVersionUID = 0L;
         .equals(other.getModuleId())) return false;
     if (!internalGetTracingInfo().equals(
         other.internalGetTracingInfo())) return false;
+    if (!getAcceptCodec()
+        .equals(other.getAcceptCodec())) return false;
     if (!unknownFields.equals(other.unknownFields)) return false;
     return true;
   }
@@ -520,6 +571,8 @@ private static final long serialVersionUID = 0L;
       hash = (37 * hash) + TRACING_INFO_FIELD_NUMBER;
       hash = (53 * hash) + internalGetTracingInfo().hashCode();
     }
+    hash = (37 * hash) + ACCEPT_CODEC_FIELD_NUMBER;
+    hash = (53 * hash) + getAcceptCodec().hashCode();
     hash = (29 * hash) + unknownFields.hashCode();
     memoizedHashCode = hash;
     return hash;
@@ -686,6 +739,8 @@ private static final long serialVersionUID = 0L;
       moduleId_ = "";
 
       internalGetMutableTracingInfo().clear();
+      acceptCodec_ = "";
+
       return this;
     }
 
@@ -720,6 +775,7 @@ private static final long serialVersionUID = 0L;
       result.moduleId_ = moduleId_;
       result.tracingInfo_ = internalGetTracingInfo();
       result.tracingInfo_.makeImmutable();
+      result.acceptCodec_ = acceptCodec_;
       onBuilt();
       return result;
     }
@@ -789,6 +845,10 @@ private static final long serialVersionUID = 0L;
       }
       internalGetMutableTracingInfo().mergeFrom(
           other.internalGetTracingInfo());
+      if (!other.getAcceptCodec().isEmpty()) {
+        acceptCodec_ = other.acceptCodec_;
+        onChanged();
+      }
       this.mergeUnknownFields(other.unknownFields);
       onChanged();
       return this;
@@ -1278,6 +1338,82 @@ private static final long serialVersionUID = 0L;
           .putAll(values);
       return this;
     }
+    private Object acceptCodec_ = "";
+    /**
+     * <code>string accept_codec = 7;</code>
+     * @return The acceptCodec.
+     */
+    public String getAcceptCodec() {
+      Object ref = acceptCodec_;
+      if (!(ref instanceof String)) {
+        com.google.protobuf.ByteString bs =
+            (com.google.protobuf.ByteString) ref;
+        String s = bs.toStringUtf8();
+        acceptCodec_ = s;
+        return s;
+      } else {
+        return (String) ref;
+      }
+    }
+    /**
+     * <code>string accept_codec = 7;</code>
+     * @return The bytes for acceptCodec.
+     */
+    public com.google.protobuf.ByteString
+        getAcceptCodecBytes() {
+      Object ref = acceptCodec_;
+      if (ref instanceof String) {
+        com.google.protobuf.ByteString b = 
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (String) ref);
+        acceptCodec_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+    /**
+     * <code>string accept_codec = 7;</code>
+     * @param value The acceptCodec to set.
+     * @return This builder for chaining.
+     */
+    public Builder setAcceptCodec(
+        String value) {
+      if (value == null) {
+    throw new NullPointerException();
+  }
+  
+      acceptCodec_ = value;
+      onChanged();
+      return this;
+    }
+    /**
+     * <code>string accept_codec = 7;</code>
+     * @return This builder for chaining.
+     */
+    public Builder clearAcceptCodec() {
+      
+      acceptCodec_ = getDefaultInstance().getAcceptCodec();
+      onChanged();
+      return this;
+    }
+    /**
+     * <code>string accept_codec = 7;</code>
+     * @param value The bytes for acceptCodec to set.
+     * @return This builder for chaining.
+     */
+    public Builder setAcceptCodecBytes(
+        com.google.protobuf.ByteString value) {
+      if (value == null) {
+    throw new NullPointerException();
+  }
+  checkByteStringIsUtf8(value);
+      
+      acceptCodec_ = value;
+      onChanged();
+      return this;
+    }
+
     @Override
     public final Builder setUnknownFields(
         final com.google.protobuf.UnknownFieldSet unknownFields) {
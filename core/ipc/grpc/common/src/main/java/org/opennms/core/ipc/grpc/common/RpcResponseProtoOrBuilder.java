@@ -122,4 +122,16 @@ public interface RpcResponseProtoOrBuilder extends
 
   String getTracingInfoOrThrow(
           String key);
+  /**
+   * <code>string accept_codec = 7;</code>
+   * @return The acceptCodec.
+   */
+  String getAcceptCodec();
+  /**
+   * <code>string accept_codec = 7;</code>
+   * @return The bytes for acceptCodec.
+   */
+  com.google.protobuf.ByteString
+      getAcceptCodecBytes();
+
 }
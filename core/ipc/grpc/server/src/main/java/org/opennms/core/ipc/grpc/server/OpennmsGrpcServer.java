@@ -42,6 +42,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -69,6 +70,7 @@ import org.opennms.core.rpc.api.RemoteExecutionException;
 import org.opennms.core.rpc.api.RequestTimedOutException;
 import org.opennms.core.rpc.api.RpcClient;
 import org.opennms.core.rpc.api.RpcClientFactory;
+import org.opennms.core.rpc.api.RpcCodecs;
 import org.opennms.core.rpc.api.RpcModule;
 import org.opennms.core.rpc.api.RpcRequest;
 import org.opennms.core.rpc.api.RpcResponse;
@@ -160,6 +162,8 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
     private Multimap<String, StreamObserver<RpcRequestProto>> rpcHandlerByLocation = LinkedListMultimap.create();
     // Maintains the state of iteration for the list of minions for a given location.
     private Map<String, Iterator<StreamObserver<RpcRequestProto>>> rpcHandlerIteratorMap = new HashMap<>();
+    // Maintains the rpc handlers of the minions that accept requests encoded with the binary codec.
+    private final Set<StreamObserver<RpcRequestProto>> binaryCodecRpcHandlers = ConcurrentHashMap.newKeySet();
     // Maintains the map of sink modules by it's id.
     private final Map<String, SinkModule<?, Message>> sinkModulesById = new ConcurrentHashMap<>();
     // Maintains the map of sink consumer executor and by module Id.
@@ -229,7 +233,10 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
                 final Map<String, String> loggingContext = Logging.getCopyOfContextMap();
 
                 Span span = getTracer().buildSpan(module.getId()).start();
-                String marshalRequest = module.marshalRequest(request);
+                // The handler is chosen up front, so the request can be encoded with the codec accepted by that minion.
+                StreamObserver<RpcRequestProto> rpcHandler = getRpcHandler(request.getLocation(), request.getSystemId());
+                byte[] marshalRequest = RpcCodecs.marshalRequest(module, request,
+                        rpcHandler != null && binaryCodecRpcHandlers.contains(rpcHandler));
                 String rpcId = UUID.randomUUID().toString();
                 CompletableFuture<T> future = new CompletableFuture<T>();
                 Long timeToLive = request.getTimeToLiveMs();
@@ -243,14 +250,15 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
                         .setRpcId(rpcId)
                         .setLocation(request.getLocation())
                         .setModuleId(module.getId())
-                        .setRpcContent(ByteString.copyFrom(marshalRequest.getBytes()));
+                        .setRpcContent(ByteString.copyFrom(marshalRequest))
+                        .setAcceptCodec(RpcCodecs.getAcceptedCodec());
                 if (!Strings.isNullOrEmpty(request.getSystemId())) {
                     builder.setSystemId(request.getSystemId());
                 }
                 addTracingInfo(request, span, builder);
                 RpcRequestProto requestProto = builder.build();
 
-                boolean succeeded = sendRequest(requestProto);
+                boolean succeeded = sendRequest(rpcHandler, requestProto);
 
                 addMetrics(request, requestProto.getSerializedSize());
                 if (!succeeded) {
@@ -313,15 +321,14 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
         // Handle response from the Minion.
         RpcResponseHandler responseHandler = rpcResponseMap.get(responseProto.getRpcId());
         if (responseHandler != null && responseProto.getRpcContent() != null) {
-            responseHandler.sendResponse(responseProto.getRpcContent().toStringUtf8());
+            responseHandler.sendResponse(responseProto.getRpcContent().toByteArray());
         } else {
             LOG.debug("Received a response for request for module: {} with RpcId:{}, but no outstanding request was found with this id." +
                     "The request may have timed out", responseProto.getModuleId(), responseProto.getRpcId());
         }
     }
 
-    private boolean sendRequest(RpcRequestProto requestProto) {
-        StreamObserver<RpcRequestProto> rpcHandler = getRpcHandler(requestProto.getLocation(), requestProto.getSystemId());
+    private boolean sendRequest(StreamObserver<RpcRequestProto> rpcHandler, RpcRequestProto requestProto) {
         if (rpcHandler == null) {
             LOG.warn("No RPC handlers found for location {}", requestProto.getLocation());
             return false;
@@ -355,15 +362,21 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
         return iterator.next();
     }
 
-    private synchronized void addRpcHandler(String location, String systemId, StreamObserver<RpcRequestProto> rpcHandler) {
+    private synchronized void addRpcHandler(String location, String systemId, String acceptCodec, StreamObserver<RpcRequestProto> rpcHandler) {
         if (Strings.isNullOrEmpty(location) || Strings.isNullOrEmpty(systemId)) {
             LOG.error("Invalid metadata received with location = {} , systemId = {}", location, systemId);
             return;
         }
+        if (RpcCodecs.acceptsBinary(acceptCodec)) {
+            binaryCodecRpcHandlers.add(rpcHandler);
+        } else {
+            binaryCodecRpcHandlers.remove(rpcHandler);
+        }
         if (!rpcHandlerByLocation.containsValue(rpcHandler)) {
             StreamObserver<RpcRequestProto> obsoleteObserver = rpcHandlerByMinionId.get(systemId);
             if (obsoleteObserver != null) {
                 rpcHandlerByLocation.values().remove(obsoleteObserver);
+                binaryCodecRpcHandlers.remove(obsoleteObserver);
             }
             rpcHandlerByLocation.put(location, rpcHandler);
             updateIterator(location);
@@ -380,6 +393,7 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
 
 
     private synchronized void removeRpcHandler(StreamObserver<RpcRequestProto> rpcHandler) {
+        binaryCodecRpcHandlers.remove(rpcHandler);
 
         Map.Entry<String, StreamObserver<RpcRequestProto>> matchingHandler =
                 rpcHandlerByLocation.entries().stream().
@@ -459,6 +473,7 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
         rpcHandlerByLocation.clear();
         rpcHandlerByMinionId.clear();
         rpcHandlerIteratorMap.clear();
+        binaryCodecRpcHandlers.clear();
         rpcResponseMap.clear();
         sinkModulesById.clear();
         if (rpcMetricsReporter != null) {
@@ -490,7 +505,8 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
                 public void onNext(RpcResponseProto rpcResponseProto) {
                     // Register client when message is metadata.
                     if (isHeaders(rpcResponseProto)) {
-                        addRpcHandler(rpcResponseProto.getLocation(), rpcResponseProto.getSystemId(), responseObserver);
+                        addRpcHandler(rpcResponseProto.getLocation(), rpcResponseProto.getSystemId(),
+                                rpcResponseProto.getAcceptCodec(), responseObserver);
                     } else {
                         responseHandlerExecutor.execute(() -> handleResponse(rpcResponseProto));
                     }
@@ -603,11 +619,11 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
         }
 
         @Override
-        public void sendResponse(String message) {
+        public void sendResponse(byte[] message) {
 
             try (Logging.MDCCloseable mdc = Logging.withContextMapCloseable(loggingContext)) {
                 if (message != null) {
-                    T response = rpcModule.unmarshalResponse(message);
+                    T response = RpcCodecs.unmarshalResponse(rpcModule, message);
                     if (response.getErrorMessage() != null) {
                         span.log(response.getErrorMessage());
                         RpcClientFactory.markFailed(getRpcMetrics(), this.location, rpcModule.getId());
@@ -616,7 +632,7 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
                         responseFuture.complete(response);
                     }
                     isProcessed = true;
-                    RpcClientFactory.updateResponseSize(getRpcMetrics(), this.location, rpcModule.getId(), message.getBytes().length);
+                    RpcClientFactory.updateResponseSize(getRpcMetrics(), this.location, rpcModule.getId(), message.length);
                 } else {
                     span.setTag(TAG_TIMEOUT, "true");
                     RpcClientFactory.markFailed(getRpcMetrics(), this.location, rpcModule.getId());
@@ -626,7 +642,7 @@ public class OpennmsGrpcServer extends AbstractMessageConsumerManager implements
                 rpcResponseMap.remove(rpcId);
                 span.finish();
             } catch (Throwable e) {
-                LOG.error("Error while processing RPC response {}", message, e);
+                LOG.error("Error while processing RPC response for module: {} with RpcId:{}", rpcModule.getId(), rpcId, e);
             }
             if (isProcessed) {
                 LOG.debug("RPC Response from module: {} handled successfully for RpcId:{}.", rpcId, rpcModule.getId());
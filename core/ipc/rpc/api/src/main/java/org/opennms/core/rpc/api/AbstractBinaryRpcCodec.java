@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Base class for codecs that write the fields of the requests and responses
+ * in a fixed order using {@link DataOutput}.
+ *
+ * Codecs must be able to read and write both the requests and the responses, but may
+ * decline to encode individual ones which are then sent in the default format.
+ */
+public abstract class AbstractBinaryRpcCodec<S extends RpcRequest, T extends RpcResponse> implements RpcCodec<S, T> {
+
+    @FunctionalInterface
+    protected interface Writer<V> {
+        void write(V value, DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    protected interface Reader<V> {
+        V read(DataInput in) throws IOException;
+    }
+
+    @Override
+    public byte[] encodeRequest(S request) {
+        return canEncodeRequest(request) ? encode(request, this::writeRequest) : null;
+    }
+
+    @Override
+    public S decodeRequest(byte[] bytes, int offset, int length) {
+        return decode(bytes, offset, length, this::readRequest);
+    }
+
+    @Override
+    public byte[] encodeResponse(T response) {
+        return canEncodeResponse(response) ? encode(response, this::writeResponse) : null;
+    }
+
+    @Override
+    public T decodeResponse(byte[] bytes, int offset, int length) {
+        return decode(bytes, offset, length, this::readResponse);
+    }
+
+    protected boolean canEncodeRequest(S request) {
+        return true;
+    }
+
+    protected abstract void writeRequest(S request, DataOutput out) throws IOException;
+
+    protected abstract S readRequest(DataInput in) throws IOException;
+
+    protected boolean canEncodeResponse(T response) {
+        return true;
+    }
+
+    protected abstract void writeResponse(T response, DataOutput out) throws IOException;
+
+    protected abstract T readResponse(DataInput in) throws IOException;
+
+    private static <V> byte[] encode(V value, Writer<V> writer) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(value, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <V> V decode(byte[] bytes, int offset, int length, Reader<V> reader) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a string that may be null. Unlike {@link DataOutput#writeUTF(String)},
+     * the length of the string is not limited to 64k.
+     */
+    protected static void writeString(String value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected static String readString(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    protected static void writeBytes(byte[] value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    protected static byte[] readBytes(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    protected static void writeAddress(InetAddress value, DataOutput out) throws IOException {
+        writeBytes(value != null ? value.getAddress() : null, out);
+    }
+
+    protected static InetAddress readAddress(DataInput in) throws IOException {
+        final byte[] address = readBytes(in);
+        return address != null ? InetAddress.getByAddress(address) : null;
+    }
+
+    protected static void writeBoolean(Boolean value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeBoolean(value);
+        }
+    }
+
+    protected static Boolean readBoolean(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readBoolean() : null;
+    }
+
+    protected static void writeInteger(Integer value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    protected static Integer readInteger(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    protected static void writeLong(Long value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    protected static Long readLong(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    protected static void writeDouble(Double value, DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeDouble(value);
+        }
+    }
+
+    protected static Double readDouble(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    /**
+     * Writes a number that may be null, preserving whether it is floating point, integral
+     * or arbitrary precision.
+     */
+    protected static void writeNumber(Number value, DataOutput out) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte('D');
+            out.writeDouble(value.doubleValue());
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte('L');
+            out.writeLong(value.longValue());
+        } else {
+            out.writeByte('B');
+            writeString(value.toString(), out);
+        }
+    }
+
+    protected static Number readNumber(DataInput in) throws IOException {
+        final byte type = in.readByte();
+        switch (type) {
+            case 0:
+                return null;
+            case 'D':
+                return in.readDouble();
+            case 'L':
+                return in.readLong();
+            case 'B':
+                return new BigDecimal(readString(in));
+            default:
+                throw new IOException("Invalid number type: " + type);
+        }
+    }
+
+    protected static void writeDate(Date value, DataOutput out) throws IOException {
+        writeLong(value != null ? value.getTime() : null, out);
+    }
+
+    protected static Date readDate(DataInput in) throws IOException {
+        final Long time = readLong(in);
+        return time != null ? new Date(time) : null;
+    }
+
+    protected static <V> void writeCollection(Collection<V> values, Writer<V> writer, DataOutput out) throws IOException {
+        out.writeInt(values.size());
+        for (V value : values) {
+            writer.write(value, out);
+        }
+    }
+
+    protected static <V, C extends Collection<V>> C readCollection(C values, Reader<V> reader, DataInput in) throws IOException {
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            values.add(reader.read(in));
+        }
+        return values;
+    }
+
+    protected static void writeStringMap(Map<String, String> values, DataOutput out) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.size());
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            writeString(entry.getKey(), out);
+            writeString(entry.getValue(), out);
+        }
+    }
+
+    protected static Map<String, String> readStringMap(DataInput in) throws IOException {
+        final int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        final Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            values.put(readString(in), readString(in));
+        }
+        return values;
+    }
+}
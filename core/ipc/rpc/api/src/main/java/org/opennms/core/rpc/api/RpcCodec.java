@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.api;
+
+/**
+ * Encodes the requests and responses of an {@link RpcModule} to a compact
+ * binary form that can be used in place of the string representation
+ * when both ends of the transport support it.
+ *
+ * Implementations may decline to encode a given request or response, in which
+ * case the string representation provided by the module is used instead.
+ */
+public interface RpcCodec<S extends RpcRequest, T extends RpcResponse> {
+
+    /**
+     * Encodes the request.
+     *
+     * @return the encoded request, or null if the request cannot be represented by this codec
+     */
+    byte[] encodeRequest(S request);
+
+    S decodeRequest(byte[] bytes, int offset, int length);
+
+    /**
+     * Encodes the response.
+     *
+     * @return the encoded response, or null if the response cannot be represented by this codec
+     */
+    byte[] encodeResponse(T response);
+
+    T decodeResponse(byte[] bytes, int offset, int length);
+
+}
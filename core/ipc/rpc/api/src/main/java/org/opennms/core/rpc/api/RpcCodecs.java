@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.rpc.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Used by the transports to marshal the requests and responses of an {@link RpcModule}
+ * with its {@link RpcCodec} when the peer accepts it, and with the module's string
+ * representation otherwise.
+ *
+ * Binary payloads are prefixed with a header that can never start a string representation,
+ * so the receiving side can tell both apart without any additional metadata.
+ */
+public final class RpcCodecs {
+
+    /**
+     * The name of the binary codec, as advertised by the peers that support it.
+     */
+    public static final String BINARY = "binary";
+
+    /**
+     * Set to "xml" to stop advertising and using the binary codec.
+     */
+    public static final String CODEC_SYS_PROP = "org.opennms.core.ipc.rpc.codec";
+
+    private static final byte[] BINARY_HEADER = new byte[]{0x00, 'O', 'R', 0x01};
+
+    private RpcCodecs() {}
+
+    public static boolean isBinaryEnabled() {
+        return BINARY.equalsIgnoreCase(System.getProperty(CODEC_SYS_PROP, BINARY));
+    }
+
+    /**
+     * @return the codec to advertise to the peers, or an empty string if only the string representation is accepted
+     */
+    public static String getAcceptedCodec() {
+        return isBinaryEnabled() ? BINARY : "";
+    }
+
+    /**
+     * @param acceptedCodec the codec advertised by the peer
+     * @return true if binary payloads can be sent to the peer
+     */
+    public static boolean acceptsBinary(String acceptedCodec) {
+        return BINARY.equals(acceptedCodec) && isBinaryEnabled();
+    }
+
+    public static boolean isBinary(byte[] content) {
+        if (content == null || content.length < BINARY_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < BINARY_HEADER.length; i++) {
+            if (content[i] != BINARY_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static <S extends RpcRequest, T extends RpcResponse> byte[] marshalRequest(RpcModule<S, T> module, S request, boolean binary) {
+        final RpcCodec<S, T> codec = binary ? module.getCodec() : null;
+        if (codec != null) {
+            final byte[] encoded = codec.encodeRequest(request);
+            if (encoded != null) {
+                return withHeader(encoded);
+            }
+        }
+        return module.marshalRequest(request).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static <S extends RpcRequest, T extends RpcResponse> S unmarshalRequest(RpcModule<S, T> module, byte[] content) {
+        if (isBinary(content)) {
+            return getCodec(module).decodeRequest(content, BINARY_HEADER.length, content.length - BINARY_HEADER.length);
+        }
+        return module.unmarshalRequest(new String(content, StandardCharsets.UTF_8));
+    }
+
+    public static <S extends RpcRequest, T extends RpcResponse> byte[] marshalResponse(RpcModule<S, T> module, T response, boolean binary) {
+        final RpcCodec<S, T> codec = binary ? module.getCodec() : null;
+        if (codec != null) {
+            final byte[] encoded = codec.encodeResponse(response);
+            if (encoded != null) {
+                return withHeader(encoded);
+            }
+        }
+        return module.marshalResponse(response).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static <S extends RpcRequest, T extends RpcResponse> T unmarshalResponse(RpcModule<S, T> module, byte[] content) {
+        if (isBinary(content)) {
+            return getCodec(module).decodeResponse(content, BINARY_HEADER.length, content.length - BINARY_HEADER.length);
+        }
+        return module.unmarshalResponse(new String(content, StandardCharsets.UTF_8));
+    }
+
+    private static <S extends RpcRequest, T extends RpcResponse> RpcCodec<S, T> getCodec(RpcModule<S, T> module) {
+        return Objects.requireNonNull(module.getCodec(), () -> "Received a binary payload for module " + module.getId() + ", which has no codec.");
+    }
+
+    private static byte[] withHeader(byte[] encoded) {
+        final byte[] content = Arrays.copyOf(BINARY_HEADER, BINARY_HEADER.length + encoded.length);
+        System.arraycopy(encoded, 0, content, BINARY_HEADER.length, encoded.length);
+        return content;
+    }
+}
@@ -77,4 +77,14 @@ public interface RpcModule<S extends RpcRequest, T extends RpcResponse> extends
      */
     T createResponseWithException(Throwable ex);
 
+    /**
+     * Returns the codec used to exchange the requests and responses in a binary form
+     * with the peers that accept it.
+     *
+     * @return the codec, or null if only the string representation is supported
+     */
+    default RpcCodec<S, T> getCodec() {
+        return null;
+    }
+
 }
@@ -83,6 +83,7 @@ import org.opennms.core.rpc.api.RemoteExecutionException;
 import org.opennms.core.rpc.api.RequestTimedOutException;
 import org.opennms.core.rpc.api.RpcClient;
 import org.opennms.core.rpc.api.RpcClientFactory;
+import org.opennms.core.rpc.api.RpcCodecs;
 import org.opennms.core.rpc.api.RpcModule;
 import org.opennms.core.rpc.api.RpcRequest;
 import org.opennms.core.rpc.api.RpcResponse;
@@ -151,6 +152,8 @@ public class KafkaRpcClientFactory implements RpcClientFactory {
     // Used to cache responses when large message are involved.
     private Map<String, ByteString> messageCache = new ConcurrentHashMap<>();
     private Map<String, Integer> currentChunkCache = new ConcurrentHashMap<>();
+    // Minions that advertised the binary codec in their responses, requests directed at them can use it as well.
+    private final Set<String> binaryCodecSystemIds = ConcurrentHashMap.newKeySet();
     private MetricRegistry metrics;
     private KafkaTopicProvider topicProvider = new KafkaTopicProvider();
     private JmxReporter metricsReporter = null;
@@ -175,7 +178,9 @@ public class KafkaRpcClientFactory implements RpcClientFactory {
 
                 Span span = buildAndStartSpan(request);
                 String requestTopic = topicProvider.getRequestTopicAtLocation(request.getLocation(), module.getId());
-                String marshalRequest = module.marshalRequest(request);
+                // Requests for any minion at the location stay in XML since the minion that consumes them is not known.
+                boolean binary = request.getSystemId() != null && binaryCodecSystemIds.contains(request.getSystemId());
+                byte[] messageInBytes = RpcCodecs.marshalRequest(module, request, binary);
                 // Generate RPC Id for every request to track request/response.
                 String rpcId = UUID.randomUUID().toString();
                 // Calculate timeout based on ttl and default timeout.
@@ -191,14 +196,14 @@ public class KafkaRpcClientFactory implements RpcClientFactory {
                 delayQueue.offer(responseHandler);
                 rpcResponseMap.put(rpcId, responseHandler);
                 kafkaConsumerRunner.startConsumingForModule(module.getId());
-                byte[] messageInBytes = marshalRequest.getBytes();
                 int totalChunks = IntMath.divide(messageInBytes.length, maxBufferSize, RoundingMode.UP);
 
                 RpcMessageProto.Builder builder = RpcMessageProto.newBuilder()
                         .setRpcId(rpcId)
                         .setModuleId(module.getId())
                         .setSystemId(request.getSystemId() == null ? "" : request.getSystemId())
-                        .setExpirationTime(expirationTime);
+                        .setExpirationTime(expirationTime)
+                        .setAcceptCodec(RpcCodecs.getAcceptedCodec());
                 // Divide the message in chunks and send each chunk as a different message with the same key.
                 for (int chunk = 0; chunk < totalChunks; chunk++) {
                     // Calculate remaining bufferSize for each chunk.
@@ -407,12 +412,12 @@ public class KafkaRpcClientFactory implements RpcClientFactory {
         }
 
         @Override
-        public void sendResponse(String message) {
+        public void sendResponse(byte[] message) {
             // restore Logging context on callback.
             try (MDCCloseable mdc = Logging.withContextMapCloseable(loggingContext)) {
                 // When message is not null, it's called from kafka consumer otherwise it is from timeout tracker.
                 if (message != null) {
-                    T response = rpcModule.unmarshalResponse(message);
+                    T response = RpcCodecs.unmarshalResponse(rpcModule, message);
                     if (response.getErrorMessage() != null) {
                         responseFuture.completeExceptionally(new RemoteExecutionException(response.getErrorMessage()));
                         span.log(response.getErrorMessage());
@@ -421,7 +426,7 @@ public class KafkaRpcClientFactory implements RpcClientFactory {
                         responseFuture.complete(response);
                     }
                     isProcessed = true;
-                    responseSize.update(message.getBytes().length);
+                    responseSize.update(message.length);
                 } else {
                     responseFuture.completeExceptionally(new RequestTimedOutException(new TimeoutException()));
                     span.setTag(TAG_TIMEOUT, "true");
@@ -433,7 +438,7 @@ public class KafkaRpcClientFactory implements RpcClientFactory {
                 rpcDuration.update(System.currentTimeMillis() - requestCreationTime);
                 span.finish();
             } catch (Throwable e) {
-                LOG.warn("Error while handling response for RPC module: {}. Response string: {}", rpcModule.getId(), message, e);
+                LOG.warn("Error while handling response for RPC module: {}. Response size: {}", rpcModule.getId(), message != null ? message.length : 0, e);
             }
         }
 
@@ -512,7 +517,8 @@ public class KafkaRpcClientFactory implements RpcClientFactory {
                             if (LOG.isTraceEnabled()) {
                                 LOG.trace("Received RPC response for id {}", rpcMessage.getRpcId());
                             }
-                            final String rpcMessageContent = rpcContent.toStringUtf8();
+                            trackAcceptedCodec(rpcMessage);
+                            final byte[] rpcMessageContent = rpcContent.toByteArray();
                             responseHandlerExecutor.execute(() ->
                                     responseCb.sendResponse(rpcMessageContent));
                             // Remove rpcId from the maps so that duplicate response will not be handled.
@@ -541,6 +547,17 @@ public class KafkaRpcClientFactory implements RpcClientFactory {
             consumer.wakeup();
         }
 
+        private void trackAcceptedCodec(RpcMessageProto rpcMessage) {
+            if (Strings.isNullOrEmpty(rpcMessage.getSystemId())) {
+                return;
+            }
+            if (RpcCodecs.acceptsBinary(rpcMessage.getAcceptCodec())) {
+                binaryCodecSystemIds.add(rpcMessage.getSystemId());
+            } else {
+                binaryCodecSystemIds.remove(rpcMessage.getSystemId());
+            }
+        }
+
         private boolean handleChunks(RpcMessageProto rpcMessage) {
             // Avoid duplicate chunks. discard if chunk is repeated or not in order.
             String rpcId = rpcMessage.getRpcId();
@@ -73,6 +73,7 @@ import org.opennms.core.ipc.common.kafka.KafkaRpcConstants;
 import org.opennms.core.ipc.common.kafka.KafkaTopicProvider;
 import org.opennms.core.ipc.common.kafka.Utils;
 import org.opennms.core.ipc.rpc.kafka.model.RpcMessageProto;
+import org.opennms.core.rpc.api.RpcCodecs;
 import org.opennms.core.rpc.api.RpcModule;
 import org.opennms.core.rpc.api.RpcRequest;
 import org.opennms.core.rpc.api.RpcResponse;
@@ -366,7 +367,7 @@ public class KafkaRpcServerManager {
             Tracer.SpanBuilder spanBuilder = buildSpanFromRpcMessage(rpcRequestProto);
             Span minionSpan = spanBuilder.start();
 
-            RpcRequest request = module.unmarshalRequest(rpcContent.toStringUtf8());
+            RpcRequest request = RpcCodecs.unmarshalRequest(module, rpcContent.toByteArray());
             setTagsOnMinion(rpcRequestProto, request, minionSpan);
             // Modules may run the execution in their own thread pool.
             CompletableFuture<RpcResponse> future = module.execute(request);
@@ -389,22 +390,25 @@ public class KafkaRpcServerManager {
                 // Finish minion Span
                 minionSpan.finish();
                 uncheckBulkhead();
-                sendResponse(rpcRequestProto.getRpcId(), response, module);
+                sendResponse(rpcRequestProto.getRpcId(), response, module, RpcCodecs.acceptsBinary(rpcRequestProto.getAcceptCodec()));
             });
         }
 
 
         @SuppressWarnings("unchecked")
-        private void sendResponse(String rpcId, RpcResponse response, RpcModule module) {
+        private void sendResponse(String rpcId, RpcResponse response, RpcModule module, boolean binary) {
             try {
                 String responseTopic = kafkaRpcTopicProvider.getResponseTopic(module.getId());
-                final String responseAsString = module.marshalResponse(response);
-                final byte[] messageInBytes = responseAsString.getBytes();
+                final byte[] messageInBytes = RpcCodecs.marshalResponse(module, response, binary);
+                final String responseAsString = LOG.isTraceEnabled() ? String.valueOf(response) : null;
                 int totalChunks = IntMath.divide(messageInBytes.length, maxBufferSize, RoundingMode.UP);
 
                 // Divide the message in chunks and send each chunk as a different message with the same key.
+                // The system id and accepted codec let OpenNMS know which codec it can use for requests directed at this minion.
                 RpcMessageProto.Builder builder = RpcMessageProto.newBuilder()
-                        .setRpcId(rpcId);
+                        .setRpcId(rpcId)
+                        .setSystemId(minionIdentity.getId())
+                        .setAcceptCodec(RpcCodecs.getAcceptedCodec());
                 builder.setTotalChunks(totalChunks);
 
                 for (int chunk = 0; chunk < totalChunks; chunk++) {
@@ -51,6 +51,7 @@ private static final long serialVersionUID = 0L;
     currentChunkNumber_ = 0;
     totalChunks_ = 0;
     moduleId_ = "";
+    acceptCodec_ = "";
   }
 
   @Override
@@ -128,6 +129,12 @@ private static final long serialVersionUID = 0L;
             moduleId_ = s;
             break;
           }
+          case 74: {
+            String s = input.readStringRequireUtf8();
+
+            acceptCodec_ = s;
+            break;
+          }
           default: {
             if (!parseUnknownFieldProto3(
                 input, unknownFields, extensionRegistry, tag)) {
@@ -387,6 +394,40 @@ private static final long serialVersionUID = 0L;
     }
   }
 
+  public static final int ACCEPT_CODEC_FIELD_NUMBER = 9;
+  private volatile Object acceptCodec_;
+  /**
+   * <code>string accept_codec = 9;</code>
+   */
+  public String getAcceptCodec() {
+    Object ref = acceptCodec_;
+    if (ref instanceof String) {
+      return (String) ref;
+    } else {
+      com.google.protobuf.ByteString bs =
+          (com.google.protobuf.ByteString) ref;
+      String s = bs.toStringUtf8();
+      acceptCodec_ = s;
+      return s;
+    }
+  }
+  /**
+   * <code>string accept_codec = 9;</code>
+   */
+  public com.google.protobuf.ByteString
+      getAcceptCodecBytes() {
+    Object ref = acceptCodec_;
+    if (ref instanceof String) {
+      com.google.protobuf.ByteString b =
+          com.google.protobuf.ByteString.copyFromUtf8(
+              (String) ref);
+      acceptCodec_ = b;
+      return b;
+    } else {
+      return (com.google.protobuf.ByteString) ref;
+    }
+  }
+
   private byte memoizedIsInitialized = -1;
   @Override
   public final boolean isInitialized() {
@@ -428,6 +469,9 @@ private static final long serialVersionUID = 0L;
     if (!getModuleIdBytes().isEmpty()) {
       com.google.protobuf.GeneratedMessageV3.writeString(output, 8, moduleId_);
     }
+    if (!getAcceptCodecBytes().isEmpty()) {
+      com.google.protobuf.GeneratedMessageV3.writeString(output, 9, acceptCodec_);
+    }
     unknownFields.writeTo(output);
   }
 
@@ -472,6 +516,9 @@ private static final long serialVersionUID = 0L;
     if (!getModuleIdBytes().isEmpty()) {
       size += com.google.protobuf.GeneratedMessageV3.computeStringSize(8, moduleId_);
     }
+    if (!getAcceptCodecBytes().isEmpty()) {
+      size += com.google.protobuf.GeneratedMessageV3.computeStringSize(9, acceptCodec_);
+    }
     size += unknownFields.getSerializedSize();
     memoizedSize = size;
     return size;
@@ -504,6 +551,8 @@ private static final long serialVersionUID = 0L;
         other.internalGetTracingInfo());
     result = result && getModuleId()
         .equals(other.getModuleId());
+    result = result && getAcceptCodec()
+        .equals(other.getAcceptCodec());
     result = result && unknownFields.equals(other.unknownFields);
     return result;
   }
@@ -534,6 +583,8 @@ private static final long serialVersionUID = 0L;
     }
     hash = (37 * hash) + MODULE_ID_FIELD_NUMBER;
     hash = (53 * hash) + getModuleId().hashCode();
+    hash = (37 * hash) + ACCEPT_CODEC_FIELD_NUMBER;
+    hash = (53 * hash) + getAcceptCodec().hashCode();
     hash = (29 * hash) + unknownFields.hashCode();
     memoizedHashCode = hash;
     return hash;
@@ -704,6 +755,8 @@ private static final long serialVersionUID = 0L;
       internalGetMutableTracingInfo().clear();
       moduleId_ = "";
 
+      acceptCodec_ = "";
+
       return this;
     }
 
@@ -741,6 +794,7 @@ private static final long serialVersionUID = 0L;
       result.tracingInfo_ = internalGetTracingInfo();
       result.tracingInfo_.makeImmutable();
       result.moduleId_ = moduleId_;
+      result.acceptCodec_ = acceptCodec_;
       result.bitField0_ = to_bitField0_;
       onBuilt();
       return result;
@@ -816,6 +870,10 @@ private static final long serialVersionUID = 0L;
         moduleId_ = other.moduleId_;
         onChanged();
       }
+      if (!other.getAcceptCodec().isEmpty()) {
+        acceptCodec_ = other.acceptCodec_;
+        onChanged();
+      }
       this.mergeUnknownFields(other.unknownFields);
       onChanged();
       return this;
@@ -1282,6 +1340,74 @@ private static final long serialVersionUID = 0L;
       onChanged();
       return this;
     }
+    private Object acceptCodec_ = "";
+    /**
+     * <code>string accept_codec = 9;</code>
+     */
+    public String getAcceptCodec() {
+      Object ref = acceptCodec_;
+      if (!(ref instanceof String)) {
+        com.google.protobuf.ByteString bs =
+            (com.google.protobuf.ByteString) ref;
+        String s = bs.toStringUtf8();
+        acceptCodec_ = s;
+        return s;
+      } else {
+        return (String) ref;
+      }
+    }
+    /**
+     * <code>string accept_codec = 9;</code>
+     */
+    public com.google.protobuf.ByteString
+        getAcceptCodecBytes() {
+      Object ref = acceptCodec_;
+      if (ref instanceof String) {
+        com.google.protobuf.ByteString b =
+            com.google.protobuf.ByteString.copyFromUtf8(
+                (String) ref);
+        acceptCodec_ = b;
+        return b;
+      } else {
+        return (com.google.protobuf.ByteString) ref;
+      }
+    }
+    /**
+     * <code>string accept_codec = 9;</code>
+     */
+    public Builder setAcceptCodec(
+        String value) {
+      if (value == null) {
+    throw new NullPointerException();
+  }
+
+      acceptCodec_ = value;
+      onChanged();
+      return this;
+    }
+    /**
+     * <code>string accept_codec = 9;</code>
+     */
+    public Builder clearAcceptCodec() {
+
+      acceptCodec_ = getDefaultInstance().getAcceptCodec();
+      onChanged();
+      return this;
+    }
+    /**
+     * <code>string accept_codec = 9;</code>
+     */
+    public Builder setAcceptCodecBytes(
+        com.google.protobuf.ByteString value) {
+      if (value == null) {
+    throw new NullPointerException();
+  }
+  checkByteStringIsUtf8(value);
+
+      acceptCodec_ = value;
+      onChanged();
+      return this;
+    }
     @Override
     public final Builder setUnknownFields(
         final com.google.protobuf.UnknownFieldSet unknownFields) {
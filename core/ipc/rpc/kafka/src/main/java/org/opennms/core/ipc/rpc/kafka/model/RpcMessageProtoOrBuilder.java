@@ -118,4 +118,13 @@ public interface RpcMessageProtoOrBuilder extends
    */
   com.google.protobuf.ByteString
       getModuleIdBytes();
+  /**
+   * <code>string accept_codec = 9;</code>
+   */
+  String getAcceptCodec();
+  /**
+   * <code>string accept_codec = 9;</code>
+   */
+  com.google.protobuf.ByteString
+      getAcceptCodecBytes();
 }
@@ -61,13 +61,14 @@ public final class RpcProto {
       descriptor;
   static {
     String[] descriptorData = {
-      "\n\017kafka-rpc.proto\"\226\002\n\017RpcMessageProto\022\016\n" +
+      "\n\017kafka-rpc.proto\"\254\002\n\017RpcMessageProto\022\016\n" +
       "\006rpc_id\030\001 \001(\t\022\023\n\013rpc_content\030\002 \001(\014\022\021\n\tsy" +
       "stem_id\030\003 \001(\t\022\027\n\017expiration_time\030\004 \001(\004\022\034" +
       "\n\024current_chunk_number\030\005 \001(\005\022\024\n\014total_ch" +
       "unks\030\006 \001(\005\0227\n\014tracing_info\030\007 \003(\0132!.RpcMe" +
       "ssageProto.TracingInfoEntry\022\021\n\tmodule_id" +
-      "\030\010 \001(\t\0322\n\020TracingInfoEntry\022\013\n\003key\030\001 \001(\t\022" +
+      "\030\010 \001(\t\022\024\n\014accept_codec\030\t \001(\t\0322\n" +
+      "\020TracingInfoEntry\022\013\n\003key\030\001 \001(\t\022" +
       "\r\n\005value\030\002 \001(\t:\0028\001B2\n$org.opennms.core.i" +
       "pc.rpc.kafka.modelB\010RpcProtoP\001b\006proto3"
     };
@@ -88,7 +89,7 @@ public final class RpcProto {
     internal_static_RpcMessageProto_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_RpcMessageProto_descriptor,
-        new String[] { "RpcId", "RpcContent", "SystemId", "ExpirationTime", "CurrentChunkNumber", "TotalChunks", "TracingInfo", "ModuleId", });
+        new String[] { "RpcId", "RpcContent", "SystemId", "ExpirationTime", "CurrentChunkNumber", "TotalChunks", "TracingInfo", "ModuleId", "AcceptCodec", });
     internal_static_RpcMessageProto_TracingInfoEntry_descriptor =
       internal_static_RpcMessageProto_descriptor.getNestedTypes().get(0);
     internal_static_RpcMessageProto_TracingInfoEntry_fieldAccessorTable = new
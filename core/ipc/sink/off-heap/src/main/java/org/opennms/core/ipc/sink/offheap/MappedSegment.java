@@ -0,0 +1,345 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.opennms.core.utils.MappedBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A fixed size, memory-mapped segment file used by the {@link SegmentedOffHeapDispatchQueue}.
+ * <p>
+ * The file starts with a header holding a magic number, a format version and the offset of the next record to be
+ * read. Records follow the header, each prefixed by its length and the CRC32 of its payload. A record is committed
+ * by writing its length last, so a record that was only partially written when the process died is ignored when the
+ * segment is opened again. The read offset is updated in the header every time a record is consumed, which allows
+ * draining to resume where it left off after a restart.
+ * <p>
+ * Not thread safe. Writes must be guarded by the queue's write lock and a sealed segment must only be read by one
+ * consumer at a time.
+ */
+final class MappedSegment {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedSegment.class);
+
+    static final String FILE_EXTENSION = ".segment";
+
+    private static final int MAGIC = 0x4f4e4d53;
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int READ_OFFSET_OFFSET = 8;
+    static final int HEADER_SIZE = 16;
+
+    // length + crc
+    static final int RECORD_HEADER_SIZE = 8;
+    private static final int END_OF_SEGMENT = -1;
+
+    private final long id;
+    private final Path path;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+
+    private int writePosition;
+    private int readPosition;
+    private int unreadRecords;
+    private boolean sealed;
+
+    private MappedSegment(long id, Path path, int capacity, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.capacity = capacity;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates a new, empty segment with the given id in the given directory.
+     */
+    static MappedSegment create(Path directory, long id, int capacity) throws IOException {
+        final Path path = directory.resolve(toFileName(id));
+        final MappedSegment segment = new MappedSegment(id, path, capacity, map(path, capacity, true));
+        segment.buffer.putInt(MAGIC_OFFSET, MAGIC);
+        segment.buffer.putInt(VERSION_OFFSET, VERSION);
+        segment.buffer.putLong(READ_OFFSET_OFFSET, HEADER_SIZE);
+        segment.writePosition = HEADER_SIZE;
+        segment.readPosition = HEADER_SIZE;
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment, recovering its write position from the committed records and its read position from
+     * the header. Segments that were opened are always sealed since they can not be appended to safely anymore.
+     *
+     * @throws IOException if the file is not a valid segment
+     */
+    static MappedSegment open(Path path) throws IOException {
+        final long size = Files.size(path);
+        if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid segment file size " + size + " for " + path);
+        }
+
+        final MappedSegment segment = new MappedSegment(parseId(path), path, (int) size, map(path, (int) size, false));
+        if (segment.buffer.getInt(MAGIC_OFFSET) != MAGIC || segment.buffer.getInt(VERSION_OFFSET) != VERSION) {
+            throw new IOException("Invalid segment header in " + path);
+        }
+
+        final long readOffset = segment.buffer.getLong(READ_OFFSET_OFFSET);
+        int position = HEADER_SIZE;
+        int unread = 0;
+        boolean readOffsetFound = readOffset == HEADER_SIZE;
+        while (true) {
+            final int length = segment.recordLengthAt(position);
+            if (length <= 0) {
+                break;
+            }
+            if (position == readOffset) {
+                readOffsetFound = true;
+            }
+            if (readOffsetFound) {
+                unread++;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (position == readOffset) {
+            readOffsetFound = true;
+        }
+        if (!readOffsetFound) {
+            LOG.warn("Read offset {} of segment {} does not point to a record boundary. Replaying the whole segment.",
+                    readOffset, path);
+            unread = segment.countRecords(HEADER_SIZE, position);
+        }
+
+        segment.writePosition = position;
+        segment.readPosition = readOffsetFound ? (int) readOffset : HEADER_SIZE;
+        segment.unreadRecords = unread;
+        segment.sealed = true;
+        return segment;
+    }
+
+    static boolean isSegmentFile(Path path) {
+        return path.getFileName().toString().endsWith(FILE_EXTENSION);
+    }
+
+    static long parseId(Path path) {
+        final String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(0, fileName.length() - FILE_EXTENSION.length()));
+    }
+
+    private static String toFileName(long id) {
+        return String.format("%020d%s", id, FILE_EXTENSION);
+    }
+
+    private static MappedByteBuffer map(Path path, int capacity, boolean create) throws IOException {
+        final StandardOpenOption[] options = create
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE};
+        // The mapping stays valid after the channel has been closed
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    /**
+     * @return the number of bytes a record with a payload of the given size occupies in a segment
+     */
+    static int recordSize(int payloadLength) {
+        return RECORD_HEADER_SIZE + payloadLength;
+    }
+
+    /**
+     * @return the largest payload a segment with the given capacity can hold
+     */
+    static int maxPayloadSize(int capacity) {
+        // Always keep room for the end of segment marker
+        return capacity - HEADER_SIZE - RECORD_HEADER_SIZE - Integer.BYTES;
+    }
+
+    /**
+     * Appends the given payload as a single record.
+     *
+     * @return false if the segment does not have enough room left for the record
+     */
+    boolean append(byte[] payload) {
+        if (sealed) {
+            throw new IllegalStateException("Segment " + path + " is sealed");
+        }
+        if (writePosition + recordSize(payload.length) + Integer.BYTES > capacity) {
+            return false;
+        }
+
+        final ByteBuffer record = buffer.duplicate();
+        record.position(writePosition + RECORD_HEADER_SIZE);
+        record.put(payload);
+        buffer.putInt(writePosition + Integer.BYTES, crc(payload));
+        // Writing the length commits the record
+        buffer.putInt(writePosition, payload.length);
+
+        writePosition += recordSize(payload.length);
+        unreadRecords++;
+        return true;
+    }
+
+    /**
+     * Reads the next unread record and moves the persisted read offset past it.
+     *
+     * @return the payload of the record or null if all records have been read
+     */
+    byte[] readNext() {
+        if (unreadRecords <= 0) {
+            return null;
+        }
+
+        final int length = buffer.getInt(readPosition);
+        final byte[] payload = new byte[length];
+        final ByteBuffer record = buffer.duplicate();
+        record.position(readPosition + RECORD_HEADER_SIZE);
+        record.get(payload);
+
+        readPosition += recordSize(length);
+        unreadRecords--;
+        buffer.putLong(READ_OFFSET_OFFSET, readPosition);
+        return payload;
+    }
+
+    /**
+     * Marks the end of the segment and flushes it to disk. No further records can be appended.
+     */
+    void seal() {
+        if (sealed) {
+            return;
+        }
+        buffer.putInt(writePosition, END_OF_SEGMENT);
+        buffer.force();
+        sealed = true;
+    }
+
+    /**
+     * Unmaps the segment and deletes its file. The segment must not be accessed anymore afterwards.
+     */
+    void delete() {
+        MappedBuffers.unmap(buffer);
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete segment {}", path, e);
+        }
+    }
+
+    long getId() {
+        return id;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    boolean hasUnread() {
+        return unreadRecords > 0;
+    }
+
+    int getUnreadRecords() {
+        return unreadRecords;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * @return the number of bytes in use by the header and the records of this segment
+     */
+    int getUsedBytes() {
+        return writePosition;
+    }
+
+    /**
+     * Retrieves the number of messages in the unread records of this segment. Each record starts with the number of
+     * messages it holds.
+     */
+    int countUnreadMessages() {
+        int messages = 0;
+        for (int position = readPosition; position < writePosition; position += recordSize(buffer.getInt(position))) {
+            messages += buffer.getInt(position + RECORD_HEADER_SIZE);
+        }
+        return messages;
+    }
+
+    private int countRecords(int from, int to) {
+        int records = 0;
+        for (int position = from; position < to; position += recordSize(buffer.getInt(position))) {
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * @return the length of the committed and intact record at the given position, or -1 if there is none
+     */
+    private int recordLengthAt(int position) {
+        if (position + RECORD_HEADER_SIZE > capacity) {
+            return -1;
+        }
+        final int length = buffer.getInt(position);
+        if (length <= 0 || position + recordSize(length) > capacity) {
+            return -1;
+        }
+
+        final byte[] payload = new byte[length];
+        final ByteBuffer record = buffer.duplicate();
+        record.position(position + RECORD_HEADER_SIZE);
+        record.get(payload);
+        if (crc(payload) != buffer.getInt(position + Integer.BYTES)) {
+            LOG.warn("Found a corrupt record at offset {} of segment {}. Ignoring the remainder of the segment.",
+                    position, path);
+            return -1;
+        }
+        return length;
+    }
+
+    private static int crc(byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
@@ -0,0 +1,626 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.opennms.core.ipc.sink.api.DispatchQueue;
+import org.opennms.core.ipc.sink.api.WriteFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.swrve.ratelimitedlogger.RateLimitedLog;
+
+/**
+ * A {@link DispatchQueue} that spills to a set of rolling, memory-mapped segment files instead of a single
+ * {@link com.squareup.tape2.QueueFile}.
+ * <p>
+ * Like the {@link QueueFileOffHeapDispatchQueue}, messages are queued in-memory until the in-memory queue is full,
+ * after which they are accumulated into batches that are appended to the active segment as a single record. Batches
+ * are serialized by the enqueueing threads outside of any shared lock, so only the (cheap) copy into the mapped file
+ * is serialized. Once a segment is full it is sealed and a new one is started.
+ * <p>
+ * Every thread calling {@link #dequeue()} drains records into the in-memory queue. A consumer claims the oldest sealed
+ * segment that no other consumer is reading, moves one of its records and hands the segment back, so concurrent
+ * consumers drain disjoint segments in parallel. The records of a segment are always moved in the order they were
+ * written, but records of different segments may be interleaved when there is more than one consumer. A segment is
+ * only removed once it was fully drained. Consumers that find nothing to dequeue wait until entries are added rather
+ * than polling. The read offset of each
+ * segment is persisted in its header so that a restart only replays the records that were not drained yet. Fully
+ * drained segments are deleted, which releases their capacity.
+ */
+public class SegmentedOffHeapDispatchQueue<T> implements DispatchQueue<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentedOffHeapDispatchQueue.class);
+    private final RateLimitedLog RATE_LIMITED_LOGGER = RateLimitedLog
+            .withRateLimit(LOG)
+            .maxRate(5)
+            .every(Duration.ofSeconds(30))
+            .build();
+
+    private static final String DIRECTORY_EXTENSION = ".segments";
+
+    private final Function<T, byte[]> serializer;
+    private final Function<byte[], T> deserializer;
+    private final String moduleName;
+    private final BlockingQueue<Map.Entry<String, T>> inMemoryQueue;
+    private final long maxFileSizeInBytes;
+    private final int segmentSizeInBytes;
+    private final int batchSize;
+    private final Path directory;
+
+    // Used to guard access to the batch and the active segment
+    private final Lock writeLock = new ReentrantLock(true);
+    private final Condition capacityAvailable = writeLock.newCondition();
+    private List<T> batch;
+    // Size of the batch, for reading without holding the lock
+    private volatile int batchedMessages;
+    private MappedSegment activeSegment;
+    private long nextSegmentId;
+
+    // Sealed segments in the order they were written. Consumers remove a segment while reading from it and put it
+    // back at the head unless it was fully drained.
+    private final ConcurrentLinkedDeque<MappedSegment> sealedSegments = new ConcurrentLinkedDeque<>();
+
+    // Held by the consumer moving records from the active segment or the batch to the in-memory queue
+    private final Lock activeDrainLock = new ReentrantLock();
+
+    // Used by consumers to wait for entries. The counter is incremented every time entries are added, in-memory or
+    // off-heap, so that a consumer does not wait for entries that were added after it last looked for them.
+    private final Lock consumerLock = new ReentrantLock();
+    private final Condition entriesAvailable = consumerLock.newCondition();
+    private final AtomicLong entriesAdded = new AtomicLong();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+    // Bytes used by all live segments
+    private final AtomicLong usedBytes = new AtomicLong();
+    // Messages that were taken from the batch and were not yet moved to the in-memory queue
+    private final AtomicInteger offHeapMessages = new AtomicInteger();
+    // Slots of the in-memory queue that were reserved by threads about to add entries to it
+    private final AtomicInteger reservedInMemorySlots = new AtomicInteger();
+    private volatile boolean isFull = false;
+
+    public SegmentedOffHeapDispatchQueue(Function<T, byte[]> serializer, Function<byte[], T> deserializer,
+                                         String moduleName, Path filePath, int inMemoryQueueSize, int batchSize,
+                                         long maxFileSizeInBytes, int segmentSizeInBytes) throws IOException {
+        Objects.requireNonNull(serializer);
+        Objects.requireNonNull(deserializer);
+        Objects.requireNonNull(moduleName);
+
+        if (inMemoryQueueSize < 1) {
+            throw new IllegalArgumentException("In memory queue size must be greater than 0");
+        }
+
+        if (inMemoryQueueSize % batchSize != 0) {
+            throw new IllegalArgumentException("In memory queue size must be a multiple of batch size");
+        }
+
+        if (maxFileSizeInBytes < 0) {
+            throw new IllegalArgumentException("Max file size must be either 0 or a positive integer");
+        }
+
+        if (maxFileSizeInBytes > 0 && MappedSegment.maxPayloadSize(segmentSizeInBytes) <= 0) {
+            throw new IllegalArgumentException("Segment size must be greater than " +
+                    (MappedSegment.HEADER_SIZE + MappedSegment.RECORD_HEADER_SIZE + Integer.BYTES) + " bytes");
+        }
+
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        this.moduleName = moduleName;
+        this.batchSize = batchSize;
+        this.maxFileSizeInBytes = maxFileSizeInBytes;
+        this.segmentSizeInBytes = segmentSizeInBytes;
+        batch = new ArrayList<>(batchSize);
+
+        inMemoryQueue = new ArrayBlockingQueue<>(inMemoryQueueSize, true);
+
+        // Setting the max file size to 0 or less will disable the off-heap portion of this queue
+        if (maxFileSizeInBytes > 0) {
+            Objects.requireNonNull(filePath);
+            directory = Paths.get(filePath.toString(), moduleName + DIRECTORY_EXTENSION);
+            Files.createDirectories(directory);
+            loadSegments();
+            activeSegment = newSegment();
+        } else {
+            directory = null;
+        }
+    }
+
+    /**
+     * Re-opens the segments left over from a previous run. Segments that can not be read are deleted.
+     */
+    private void loadSegments() throws IOException {
+        final List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (MappedSegment.isSegmentFile(path)) {
+                    paths.add(path);
+                }
+            }
+        }
+        paths.sort(Comparator.comparingLong(MappedSegment::parseId));
+
+        for (Path path : paths) {
+            nextSegmentId = Math.max(nextSegmentId, MappedSegment.parseId(path) + 1);
+
+            final MappedSegment segment;
+            try {
+                segment = MappedSegment.open(path);
+            } catch (Exception e) {
+                LOG.warn("Exception while loading segment file {}. Deleting it.", path, e);
+                Files.deleteIfExists(path);
+                continue;
+            }
+
+            if (!segment.hasUnread()) {
+                segment.delete();
+                continue;
+            }
+
+            sealedSegments.addLast(segment);
+            usedBytes.addAndGet(segment.getUsedBytes());
+            offHeapMessages.addAndGet(segment.countUnreadMessages());
+        }
+
+        LOG.debug("Loaded {} segments with {} messages for module {}", sealedSegments.size(), offHeapMessages.get(),
+                moduleName);
+    }
+
+    private MappedSegment newSegment() throws IOException {
+        final MappedSegment segment = MappedSegment.create(directory, nextSegmentId++, segmentSizeInBytes);
+        usedBytes.addAndGet(segment.getUsedBytes());
+        return segment;
+    }
+
+    @VisibleForTesting
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * When enqueueing we prefer the in-memory queue unless the off-heap segments are already utilized. If that fails
+     * (because it is full) we accumulate the message into the current batch. Full batches are serialized by the
+     * calling thread and appended to the active segment, blocking if the segments are out of capacity.
+     */
+    @Override
+    public EnqueueResult enqueue(T message, String key) throws WriteFailedException {
+        Map.Entry<String, T> msgEntry = new AbstractMap.SimpleImmutableEntry<>(key, message);
+
+        // Off-heap queueing is not enabled so queue directly to memory
+        if (directory == null) {
+            LOG.trace("Enqueueing {} with key {} in-memory since there is no off-heap queue configured", message, key);
+
+            try {
+                inMemoryQueue.put(msgEntry);
+            } catch (InterruptedException e) {
+                throw new WriteFailedException(e);
+            }
+
+            return EnqueueResult.IMMEDIATE;
+        }
+
+        final List<T> fullBatch;
+        writeLock.lock();
+        try {
+            // Continue filling the in-memory queue until we started to use the off-heap portion
+            if (offHeapMessages.get() <= 0 && batch.isEmpty() && reserveInMemory(1)) {
+                try {
+                    inMemoryQueue.add(msgEntry);
+                } finally {
+                    releaseInMemory(1);
+                }
+                LOG.trace("Enqueueing {} with key {} in-memory", message, key);
+
+                signalEntries();
+                return EnqueueResult.IMMEDIATE;
+            }
+
+            LOG.trace("Batching message {} with key {} for off-heap queue", message, key);
+            batch.add(message);
+            if (batch.size() < batchSize) {
+                batchedMessages = batch.size();
+                signalEntries();
+                return EnqueueResult.DEFERRED;
+            }
+
+            fullBatch = batch;
+            batch = new ArrayList<>(batchSize);
+            offHeapMessages.addAndGet(fullBatch.size());
+            batchedMessages = 0;
+        } finally {
+            writeLock.unlock();
+        }
+
+        final byte[] record;
+        try {
+            record = toRecord(fullBatch);
+        } catch (RuntimeException e) {
+            offHeapMessages.addAndGet(-fullBatch.size());
+            signalEntries();
+            RATE_LIMITED_LOGGER.warn("Failed to flush to off-heap", e);
+            throw new WriteFailedException(e);
+        }
+
+        try {
+            append(record);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            offHeapMessages.addAndGet(-fullBatch.size());
+            signalEntries();
+            throw new WriteFailedException(e);
+        }
+
+        signalEntries();
+        return EnqueueResult.DEFERRED;
+    }
+
+    /**
+     * Appends a serialized batch to the active segment, waiting for capacity and rolling to a new segment if
+     * necessary.
+     */
+    private void append(byte[] record) throws IOException, InterruptedException {
+        if (record.length > MappedSegment.maxPayloadSize(segmentSizeInBytes)
+                || MappedSegment.recordSize(record.length) + MappedSegment.HEADER_SIZE > maxFileSizeInBytes) {
+            throw new IOException("Batch of " + record.length + " bytes does not fit into the off-heap queue of module "
+                    + moduleName);
+        }
+
+        writeLock.lock();
+        try {
+            while (usedBytes.get() + MappedSegment.recordSize(record.length) > maxFileSizeInBytes) {
+                // The active segment does not hold anything that still needs to be read, so start over with a new
+                // one to give its space back
+                if (!activeSegment.hasUnread() && activeSegment.getUsedBytes() > MappedSegment.HEADER_SIZE) {
+                    retire(activeSegment);
+                    activeSegment = newSegment();
+                    continue;
+                }
+
+                markFull();
+                LOG.trace("Waiting for capacity... Need {} bytes but {} of {} bytes are used",
+                        MappedSegment.recordSize(record.length), usedBytes.get(), maxFileSizeInBytes);
+                capacityAvailable.await();
+            }
+            markNotFull();
+
+            if (!activeSegment.append(record)) {
+                LOG.debug("Segment {} of module {} is full. Rolling to a new segment.", activeSegment, moduleName);
+                activeSegment.seal();
+                sealedSegments.addLast(activeSegment);
+                activeSegment = newSegment();
+                if (!activeSegment.append(record)) {
+                    throw new IOException("Could not append batch to a new segment of module " + moduleName);
+                }
+            }
+            usedBytes.addAndGet(MappedSegment.recordSize(record.length));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * We first try to drain a record from the segments into the in-memory queue provided there is room, and then take
+     * from the head of the in-memory queue. If there is nothing to take we wait until entries are added before trying
+     * again.
+     */
+    @Override
+    public Map.Entry<String, T> dequeue() throws InterruptedException {
+        LOG.debug("Dequeueing an entry from queue with current size {}", getSize());
+
+        if (directory == null) {
+            return inMemoryQueue.take();
+        }
+
+        while (true) {
+            final long added = entriesAdded.get();
+            drain();
+            final Map.Entry<String, T> entry = inMemoryQueue.poll();
+            if (entry != null) {
+                return entry;
+            }
+            awaitEntries(added);
+        }
+    }
+
+    /**
+     * Moves one record from the oldest unclaimed sealed segment to the in-memory queue. When no sealed segment is left,
+     * a record of the active segment or the pending batch is moved instead, one consumer at a time.
+     */
+    private void drain() {
+        if (offHeapMessages.get() <= 0 && batchedMessages <= 0) {
+            return;
+        }
+
+        // Make sure there is room for a whole batch before reading it. If there is none, the other consumers
+        // must try to drain again once they took the entries that are in-memory.
+        if (!reserveInMemory(batchSize)) {
+            signalEntries();
+            return;
+        }
+        // Whether the consumers that found nothing in the meantime should look again
+        boolean signal = true;
+        try {
+            final MappedSegment segment = sealedSegments.pollFirst();
+            if (segment != null) {
+                drainSealed(segment);
+            } else {
+                // Wait for the lock rather than relying on its holder, which may have looked before entries were added
+                activeDrainLock.lock();
+                try {
+                    signal = drainActive();
+                } finally {
+                    activeDrainLock.unlock();
+                }
+            }
+        } finally {
+            releaseInMemory(batchSize);
+            if (signal) {
+                signalEntries();
+            }
+        }
+    }
+
+    /**
+     * Reads the next record of a segment that was claimed by removing it from the sealed segments. The segment is
+     * handed back to the other consumers unless all of its records have been read, in which case it is removed.
+     */
+    private void drainSealed(MappedSegment segment) {
+        final byte[] record;
+        try {
+            record = segment.readNext();
+        } catch (RuntimeException e) {
+            RATE_LIMITED_LOGGER.warn("Exception while reading segment {}. Discarding it.", segment, e);
+            retire(segment);
+            signalCapacity();
+            return;
+        }
+
+        if (segment.hasUnread()) {
+            sealedSegments.addFirst(segment);
+        } else {
+            retire(segment);
+            signalCapacity();
+        }
+
+        if (record != null) {
+            transfer(record);
+        }
+    }
+
+    /**
+     * Must be called with the active drain lock held.
+     *
+     * @return true if a record or the pending batch was moved, or if a segment was sealed in the meantime
+     */
+    private boolean drainActive() {
+        byte[] record = null;
+        List<T> pendingBatch = null;
+
+        writeLock.lock();
+        try {
+            if (!sealedSegments.isEmpty()) {
+                // The active segment was sealed after we looked, drain it like the other sealed segments
+                return true;
+            } else if (activeSegment.hasUnread()) {
+                record = activeSegment.readNext();
+                if (!activeSegment.hasUnread()) {
+                    // Writers waiting for capacity can now start over with a new segment
+                    capacityAvailable.signalAll();
+                }
+            } else if (!batch.isEmpty() && offHeapMessages.get() <= 0) {
+                // Nothing left off-heap and no batches in flight, move the batch to the in-memory queue
+                LOG.trace("Found entries in batch and there was room in-memory, moving them");
+                pendingBatch = batch;
+                batch = new ArrayList<>(batchSize);
+                batchedMessages = 0;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (record != null) {
+            transfer(record);
+            return true;
+        } else if (pendingBatch != null) {
+            pendingBatch.forEach(msg -> inMemoryQueue.add(new AbstractMap.SimpleImmutableEntry<>(null, msg)));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Deserializes the given record and adds its messages to the in-memory queue. Must be called with enough
+     * in-memory slots reserved.
+     */
+    private void transfer(byte[] record) {
+        final List<T> messages;
+        try {
+            messages = fromRecord(record);
+        } catch (RuntimeException e) {
+            RATE_LIMITED_LOGGER.warn("Exception while deserializing", e);
+            offHeapMessages.addAndGet(-ByteBuffer.wrap(record).getInt());
+            throw e;
+        }
+
+        messages.forEach(msg -> inMemoryQueue.add(new AbstractMap.SimpleImmutableEntry<>(null, msg)));
+        offHeapMessages.addAndGet(-messages.size());
+    }
+
+    /**
+     * Reserves the given number of slots of the in-memory queue. The slots are counted as reserved before the
+     * remaining capacity is checked, so that threads reserving concurrently always see each other's reservations.
+     */
+    private boolean reserveInMemory(int slots) {
+        final int reserved = reservedInMemorySlots.addAndGet(slots);
+        if (inMemoryQueue.remainingCapacity() < reserved) {
+            reservedInMemorySlots.addAndGet(-slots);
+            return false;
+        }
+        return true;
+    }
+
+    private void releaseInMemory(int slots) {
+        reservedInMemorySlots.addAndGet(-slots);
+    }
+
+    private void retire(MappedSegment segment) {
+        segment.delete();
+        usedBytes.addAndGet(-segment.getUsedBytes());
+    }
+
+    /**
+     * Waits until entries were added after the given count of added entries was read.
+     */
+    private void awaitEntries(long added) throws InterruptedException {
+        waitingConsumers.incrementAndGet();
+        consumerLock.lock();
+        try {
+            while (entriesAdded.get() == added) {
+                entriesAvailable.await();
+            }
+        } finally {
+            consumerLock.unlock();
+            waitingConsumers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Wakes up the consumers waiting for entries. Only takes the lock if there are any.
+     */
+    private void signalEntries() {
+        entriesAdded.incrementAndGet();
+        if (waitingConsumers.get() > 0) {
+            consumerLock.lock();
+            try {
+                entriesAvailable.signalAll();
+            } finally {
+                consumerLock.unlock();
+            }
+        }
+    }
+
+    private void signalCapacity() {
+        writeLock.lock();
+        try {
+            capacityAvailable.signalAll();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void markFull() {
+        if (!isFull) {
+            RATE_LIMITED_LOGGER.info("Off heap segments for module {} are now full", moduleName);
+            isFull = true;
+        }
+    }
+
+    private void markNotFull() {
+        if (isFull) {
+            RATE_LIMITED_LOGGER.info("Off heap segments for module {} are no longer full", moduleName);
+            isFull = false;
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        if (directory == null) {
+            int remaining = inMemoryQueue.remainingCapacity();
+            LOG.trace("Checked if full and remaining capacity is {}", remaining);
+
+            return remaining <= 0;
+        }
+
+        return isFull;
+    }
+
+    @Override
+    public int getSize() {
+        if (directory == null) {
+            return inMemoryQueue.size();
+        }
+
+        return inMemoryQueue.size() + offHeapMessages.get() + batchedMessages;
+    }
+
+    /**
+     * Serializes a batch into a record made of the number of messages followed by each message prefixed by its
+     * length.
+     */
+    private byte[] toRecord(List<T> messages) {
+        final List<byte[]> serializedMessages = new ArrayList<>(messages.size());
+        int length = Integer.BYTES;
+        for (T message : messages) {
+            final byte[] serializedMessage = serializer.apply(message);
+            serializedMessages.add(serializedMessage);
+            length += Integer.BYTES + serializedMessage.length;
+        }
+
+        final ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(serializedMessages.size());
+        for (byte[] serializedMessage : serializedMessages) {
+            record.putInt(serializedMessage.length);
+            record.put(serializedMessage);
+        }
+        return record.array();
+    }
+
+    private List<T> fromRecord(byte[] bytes) {
+        final ByteBuffer record = ByteBuffer.wrap(bytes);
+        final int count = record.getInt();
+        final List<T> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final byte[] serializedMessage = new byte[record.getInt()];
+            record.get(serializedMessage);
+            messages.add(deserializer.apply(serializedMessage));
+        }
+        return messages;
+    }
+}
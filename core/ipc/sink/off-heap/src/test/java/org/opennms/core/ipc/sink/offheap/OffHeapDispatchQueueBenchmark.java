@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.offheap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.core.ipc.sink.api.DispatchQueue;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare the tape2 based {@link QueueFileOffHeapDispatchQueue} with
+ * the {@link SegmentedOffHeapDispatchQueue}.
+ * <p>
+ * Each invocation pushes a fixed number of messages through a queue whose in-memory portion is small, so that
+ * almost all of them are written off-heap, and drains them with the given number of consumer threads.
+ */
+public class OffHeapDispatchQueueBenchmark {
+
+    // the number of messages that are enqueued and dequeued in a single benchmark method call
+    // -> the reported number of operations per second is the number of messages per second
+    private static final int MESSAGES = 100_000;
+
+    private static final int IN_MEMORY_SIZE = 1000;
+    private static final int BATCH_SIZE = 100;
+    private static final long OFF_HEAP_SIZE = 1024L * 1024 * 1024;
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"queue-file", "segmented"})
+        public String queueType;
+
+        @Param({"1", "4"})
+        public int consumers;
+
+        @Param({"256"})
+        public int messageSize;
+
+        private Path directory;
+        private DispatchQueue<byte[]> queue;
+        private ExecutorService consumerPool;
+        private byte[] message;
+
+        @Setup(Level.Invocation)
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("offheap-benchmark");
+            message = new byte[messageSize];
+            if (OffHeapDispatchQueueFactories.SEGMENTED.equals(queueType)) {
+                queue = new SegmentedOffHeapDispatchQueue<>(b -> b, b -> b, "benchmark", directory,
+                        IN_MEMORY_SIZE, BATCH_SIZE, OFF_HEAP_SIZE, SEGMENT_SIZE);
+            } else {
+                queue = new QueueFileOffHeapDispatchQueue<>(b -> b, b -> b, "benchmark", directory,
+                        IN_MEMORY_SIZE, BATCH_SIZE, OFF_HEAP_SIZE);
+            }
+            consumerPool = Executors.newFixedThreadPool(consumers);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException, InterruptedException {
+            consumerPool.shutdownNow();
+            consumerPool.awaitTermination(1, TimeUnit.MINUTES);
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @OperationsPerInvocation(MESSAGES)
+    public void enqueueAndDrain(BState state) throws Exception {
+        final DispatchQueue<byte[]> queue = state.queue;
+
+        // Fill the queue first, to simulate a broker outage, then drain it in parallel
+        for (int i = 0; i < MESSAGES; i++) {
+            queue.enqueue(state.message, null);
+        }
+
+        final CountDownLatch drained = new CountDownLatch(MESSAGES);
+        for (int i = 0; i < state.consumers; i++) {
+            state.consumerPool.execute(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        queue.dequeue();
+                        drained.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        drained.await();
+    }
+}
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.ipc.sink.offheap;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.core.ipc.sink.api.DispatchQueue;
+import org.opennms.core.ipc.sink.api.WriteFailedException;
+
+import com.jayway.awaitility.core.ConditionTimeoutException;
+
+public class SegmentedOffHeapDispatchQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void canQueueAndDequeue() throws IOException, WriteFailedException, InterruptedException {
+        DispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                "canQueueAndDequeue", Paths.get(folder.newFolder().toURI()), 1, 1, 10000, 4096);
+
+        // Since size is 1, the first entry should be in-memory and the second entry should be on disk
+        String payload1 = "msg1";
+        assertThat(queue.enqueue(payload1, "key1"), equalTo(DispatchQueue.EnqueueResult.IMMEDIATE));
+
+        String payload2 = "msg2";
+        assertThat(queue.enqueue(payload2, "key2"), equalTo(DispatchQueue.EnqueueResult.DEFERRED));
+
+        assertThat(queue.getSize(), equalTo(2));
+
+        assertThat(queue.dequeue().getValue(), equalTo(payload1));
+        assertThat(queue.dequeue().getValue(), equalTo(payload2));
+        assertThat(queue.getSize(), equalTo(0));
+    }
+
+    @Test
+    public void dequeuesInOrderAcrossSegments() throws IOException, WriteFailedException, InterruptedException {
+        Path path = Paths.get(folder.newFolder().toURI());
+        DispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                "dequeuesInOrderAcrossSegments", path, 1000, 100, 10_000_000, 4096);
+
+        int numEntries = 10020;
+        List<String> toQueue = IntStream.range(0, numEntries)
+                .boxed()
+                .map(Object::toString)
+                .collect(Collectors.toList());
+
+        for (String s : toQueue) {
+            queue.enqueue(s, "key" + s);
+        }
+
+        assertThat(queue.getSize(), equalTo(numEntries));
+        // Small segments should have forced the queue to roll over several times
+        assertThat(segmentFiles(path, "dequeuesInOrderAcrossSegments").size(), greaterThan(1));
+
+        List<String> dequeued = new ArrayList<>();
+        while (queue.getSize() > 0) {
+            dequeued.add(queue.dequeue().getValue());
+        }
+
+        assertThat(dequeued, equalTo(toQueue));
+        // Drained segments are deleted, only the active one remains
+        assertThat(segmentFiles(path, "dequeuesInOrderAcrossSegments").size(), equalTo(1));
+    }
+
+    @Test
+    public void canQueueAndDequeueWithConcurrentConsumers() throws IOException {
+        DispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                "canQueueAndDequeueWithConcurrentConsumers", Paths.get(folder.newFolder().toURI()), 20, 5,
+                100_000_000, 64 * 1024);
+
+        int numEntries = 11_111;
+        List<String> toQueue = IntStream.range(0, numEntries)
+                .boxed()
+                .map(Object::toString)
+                .collect(Collectors.toList());
+
+        List<CompletableFuture<Void>> producers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final List<String> partition = toQueue.subList(i * numEntries / 2, (i + 1) * numEntries / 2);
+            producers.add(CompletableFuture.runAsync(() -> {
+                for (String s : partition) {
+                    try {
+                        queue.enqueue(s, "key");
+                    } catch (WriteFailedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+
+        List<String> dequeued = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture.runAsync(() -> {
+                while (true) {
+                    try {
+                        dequeued.add(queue.dequeue().getValue());
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+
+        // The entries of the last incomplete batch are only moved once nothing else is left
+        await().atMost(1, TimeUnit.MINUTES).until(() -> dequeued.size() == numEntries);
+        assertThat(dequeued, containsInAnyOrder(toQueue.toArray()));
+    }
+
+    @Test
+    public void blocksWhenFull() throws WriteFailedException, IOException, InterruptedException {
+        SegmentedOffHeapDispatchQueue<byte[]> queue = new SegmentedOffHeapDispatchQueue<>(b -> b, b -> b,
+                "blocksWhenFull", Paths.get(folder.newFolder().toURI()), 1, 1, 100, 4096);
+
+        // Fill the in-memory queue and the segment
+        queue.enqueue(new byte[0], "key1");
+        queue.enqueue(new byte[50], "key2");
+
+        AtomicBoolean didQueue = new AtomicBoolean(false);
+
+        CompletableFuture.runAsync(() -> {
+            // Now try to queue again and verify that we block
+            try {
+                queue.enqueue(new byte[50], "key3");
+                didQueue.set(true);
+            } catch (WriteFailedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        try {
+            await().pollDelay(10, TimeUnit.MILLISECONDS)
+                    .atMost(100, TimeUnit.MILLISECONDS)
+                    .until(didQueue::get);
+            fail("Enqueue happened but we should have been blocking");
+        } catch (ConditionTimeoutException expected) {
+        }
+        assertThat(queue.isFull(), equalTo(true));
+
+        // Now dequeue which should free up space in the segment
+        queue.dequeue();
+        queue.dequeue();
+
+        await().atMost(1, TimeUnit.SECONDS).until(didQueue::get);
+        assertThat(queue.isFull(), equalTo(false));
+        assertThat(queue.dequeue().getValue().length, equalTo(50));
+    }
+
+    @Test
+    public void resumesFromReadOffsetAfterRestart() throws IOException, WriteFailedException, InterruptedException {
+        Path path = Paths.get(folder.newFolder().toURI());
+        String moduleName = "resumesFromReadOffsetAfterRestart";
+        DispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                moduleName, path, 1, 1, 10000, 4096);
+
+        // Should be immediate since it should be queued in-memory
+        assertThat(queue.enqueue("msg1", "key1"), equalTo(DispatchQueue.EnqueueResult.IMMEDIATE));
+        // Should get deferred since it will be written off-heap
+        for (int i = 2; i <= 4; i++) {
+            assertThat(queue.enqueue("msg" + i, "key" + i), equalTo(DispatchQueue.EnqueueResult.DEFERRED));
+        }
+
+        // Consume the in-memory entry and the first one off-heap
+        assertThat(queue.dequeue().getValue(), equalTo("msg1"));
+        assertThat(queue.dequeue().getValue(), equalTo("msg2"));
+
+        // Reinitialize to simulate coming back up after restart
+        queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes, String::new,
+                moduleName, path, 1, 1, 10000, 4096);
+
+        // Only the records that were not drained yet are replayed
+        assertThat(queue.getSize(), equalTo(2));
+        assertThat(queue.dequeue().getValue(), equalTo("msg3"));
+        assertThat(queue.dequeue().getValue(), equalTo("msg4"));
+    }
+
+    @Test
+    public void recoversFromCorruptSegment() throws IOException, WriteFailedException, InterruptedException {
+        String moduleName = "recoversFromCorruptSegment";
+        File tmpFolder = folder.newFolder();
+        Path segmentDirectory = Paths.get(tmpFolder.getAbsolutePath(), moduleName + ".segments");
+        Files.createDirectories(segmentDirectory);
+        Files.write(segmentDirectory.resolve("00000000000000000000.segment"), "corrupt!".getBytes());
+
+        SegmentedOffHeapDispatchQueue<String> queue = new SegmentedOffHeapDispatchQueue<>(String::getBytes,
+                String::new, moduleName, Paths.get(tmpFolder.toURI()), 1, 1, 300, 4096);
+
+        queue.enqueue("msg1", "key1");
+        queue.enqueue("msg2", "key2");
+
+        assertThat(queue.dequeue().getValue(), equalTo("msg1"));
+        assertThat(queue.dequeue().getValue(), equalTo("msg2"));
+    }
+
+    private static List<Path> segmentFiles(Path path, String moduleName) throws IOException {
+        return Files.list(path.resolve(moduleName + ".segments"))
+                .filter(MappedSegment::isSegmentFile)
+                .collect(Collectors.toList());
+    }
+}
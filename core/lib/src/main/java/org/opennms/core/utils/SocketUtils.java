@@ -64,6 +64,23 @@ public abstract class SocketUtils {
     }
 
     public static SSLSocket wrapSocketInSslContext(Socket socket, String protocol, String[] cipherSuites) throws IOException {
+        SSLSocketFactory socketFactory = createRelaxedSslContext(protocol).getSocketFactory();
+        InetAddress inetAddress = socket.getInetAddress();
+        String hostAddress = InetAddressUtils.str(inetAddress);
+        SSLSocket wrappedSocket = (SSLSocket) socketFactory.createSocket(socket, hostAddress, socket.getPort(), true);
+        if (cipherSuites != null && cipherSuites.length > 0) {
+            wrappedSocket.setEnabledCipherSuites(cipherSuites);
+        }
+        return wrappedSocket;
+    }
+
+    /**
+     * Creates an SSL context that accepts any certificate presented by the peer.
+     *
+     * @param protocol the protocol, or <code>null</code> to use "SSL"
+     * @return the initialized context
+     */
+    public static SSLContext createRelaxedSslContext(String protocol) {
         TrustManager[] tm = { new RelaxedX509ExtendedTrustManager() };
         SSLContext sslContext = null;
         try {
@@ -76,14 +93,7 @@ public abstract class SocketUtils {
         	LOG.error("wrapSocket: Error wrapping socket, throwing runtime exception", e);
             throw new IllegalStateException("Key management exception in SSLSocketFactory: " + e);
         }
-        SSLSocketFactory socketFactory = sslContext.getSocketFactory();
-        InetAddress inetAddress = socket.getInetAddress();
-        String hostAddress = InetAddressUtils.str(inetAddress);
-        SSLSocket wrappedSocket = (SSLSocket) socketFactory.createSocket(socket, hostAddress, socket.getPort(), true);
-        if (cipherSuites != null && cipherSuites.length > 0) {
-            wrappedSocket.setEnabledCipherSuites(cipherSuites);
-        }
-        return wrappedSocket;
+        return sslContext;
     }
 
     /**
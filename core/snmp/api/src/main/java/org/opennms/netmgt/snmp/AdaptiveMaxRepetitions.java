@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+/**
+ * Adapts the max-repetitions of the GETBULK requests sent during a walk to the
+ * responses of the agent.
+ *
+ * The value is doubled, up to the limit, while the agent keeps returning all of
+ * the requested repetitions in responses that are well below the target size.
+ * It is scaled down when a response exceeds the target size, and halved when the
+ * agent reports that a response would be too big or when a request times out
+ * after the agent already responded to others.
+ */
+class AdaptiveMaxRepetitions {
+
+    private final int m_limit;
+    private final int m_targetResponseSize;
+    private int m_maxRepetitions;
+    private int m_responses = 0;
+
+    AdaptiveMaxRepetitions(int maxRepetitions, int limit, int targetResponseSize) {
+        m_maxRepetitions = Math.max(1, maxRepetitions);
+        m_limit = Math.max(m_maxRepetitions, limit);
+        m_targetResponseSize = targetResponseSize;
+    }
+
+    int getMaxRepetitions() {
+        return m_maxRepetitions;
+    }
+
+    /**
+     * @param full whether the agent returned all of the repetitions that were requested
+     * @param responseSize the encoded size of the response in bytes, or -1 if unknown
+     * @return true if the max-repetitions changed
+     */
+    boolean responseReceived(boolean full, int responseSize) {
+        m_responses++;
+        if (responseSize < 0 || m_targetResponseSize <= 0) {
+            return false;
+        }
+        if (responseSize > m_targetResponseSize) {
+            return update((int)((long)m_maxRepetitions * m_targetResponseSize / responseSize));
+        }
+        if (full && responseSize * 2 <= m_targetResponseSize) {
+            return update(Math.min(m_limit, m_maxRepetitions * 2));
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the max-repetitions changed
+     */
+    boolean tooBig() {
+        return update(m_maxRepetitions / 2);
+    }
+
+    /**
+     * @return true if the request should be sent again with fewer repetitions, false
+     * if the agent never responded or the repetitions can't be reduced any further
+     */
+    boolean timedOut() {
+        return m_responses > 0 && update(m_maxRepetitions / 2);
+    }
+
+    private boolean update(int maxRepetitions) {
+        maxRepetitions = Math.max(1, maxRepetitions);
+        if (maxRepetitions == m_maxRepetitions) {
+            return false;
+        }
+        m_maxRepetitions = maxRepetitions;
+        return true;
+    }
+}
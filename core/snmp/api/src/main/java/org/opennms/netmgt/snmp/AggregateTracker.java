@@ -201,6 +201,13 @@ public class AggregateTracker extends CollectionTracker {
             return ((zeroBasedIndex - m_nonRepeaters) % m_repeaters) + m_nonRepeaters;
         }
     
+        @Override
+        public void completed() {
+            for (ChildTrackerPduBuilder childBuilder : m_childPduBuilders) {
+                childBuilder.getResponseProcessor().completed();
+            }
+        }
+
         @Override
         public boolean processErrors(int errorStatus, int errorIndex) throws SnmpException {
             //LOG.trace("processErrors: errorStatus={}, errorIndex={}", errorStatus, errorIndex);
@@ -289,6 +296,16 @@ public class AggregateTracker extends CollectionTracker {
         }
         return true;
     }
+
+    @Override
+    public boolean isReady() {
+        boolean ready = false;
+        for (CollectionTracker child : m_children) {
+            // Ask every child, so that finished tables complete their rows as before
+            ready |= child.isReady();
+        }
+        return ready;
+    }
     
     @Override
     public ResponseProcessor buildNextPdu(final PduBuilder parentBuilder) throws SnmpException {
@@ -299,9 +316,9 @@ public class AggregateTracker extends CollectionTracker {
         final List<ChildTrackerPduBuilder> builders = new ArrayList<ChildTrackerPduBuilder>(m_children.length);
         for (int i = 0; i < m_children.length && count < maxVars; i++) {
             CollectionTracker childTracker = m_children[i];
-            if (!childTracker.isFinished()) {
+            if (childTracker.isReady()) {
                 ChildTrackerPduBuilder childBuilder = new ChildTrackerPduBuilder(maxVars-count);
-                ResponseProcessor rp = childTracker.buildNextPdu(childBuilder);
+                ResponseProcessor rp = childTracker.buildNextPendingPdu(childBuilder);
                 childBuilder.setResponseProcessor(rp);
                 builders.add(childBuilder);
                 count += childBuilder.size();
@@ -36,6 +36,7 @@ public abstract class CollectionTracker implements Collectable, ProxiableTracker
     private boolean m_failed = false;
     private boolean m_timedOut = false;
     private boolean m_finished = false;
+    private boolean m_pending = false;
     
     
     public CollectionTracker() {
@@ -86,6 +87,49 @@ public abstract class CollectionTracker implements Collectable, ProxiableTracker
 
     public abstract ResponseProcessor buildNextPdu(PduBuilder pduBuilder) throws SnmpException;
 
+    /**
+     * @return true while a PDU built by this tracker is waiting for its response
+     */
+    public boolean isPending() {
+        return m_pending;
+    }
+
+    /**
+     * @return true if the next PDU can be built for this tracker, i.e. if it is neither
+     * finished nor waiting for the response to a previous PDU. Trackers that combine
+     * other trackers are ready as long as any of their children are.
+     */
+    public boolean isReady() {
+        return !isFinished() && !m_pending;
+    }
+
+    /**
+     * Builds the next PDU like {@link #buildNextPdu(PduBuilder)} and marks this tracker
+     * as pending until the returned {@link ResponseProcessor} is completed, so that
+     * it isn't included in another PDU while the response is outstanding.
+     */
+    public final ResponseProcessor buildNextPendingPdu(PduBuilder pduBuilder) throws SnmpException {
+        final ResponseProcessor rp = buildNextPdu(pduBuilder);
+        m_pending = true;
+        return new ResponseProcessor() {
+            @Override
+            public void processResponse(SnmpObjId snmpObjId, SnmpValue val) throws SnmpException {
+                rp.processResponse(snmpObjId, val);
+            }
+
+            @Override
+            public boolean processErrors(int errorStatus, int errorIndex) throws SnmpException {
+                return rp.processErrors(errorStatus, errorIndex);
+            }
+
+            @Override
+            public void completed() {
+                m_pending = false;
+                rp.completed();
+            }
+        };
+    }
+
     protected void reportTooBigErr(String msg) {
         if (m_parent != null) {
             m_parent.reportTooBigErr(msg);
@@ -34,4 +34,12 @@ public interface ResponseProcessor {
 
     boolean processErrors(int errorStatus, int errorIndex) throws SnmpException;
 
+    /**
+     * Invoked once the response to the PDU has been processed, or once the PDU
+     * is abandoned, after which the trackers that were part of the PDU may be
+     * included in another PDU.
+     */
+    default void completed() {
+    }
+
 }
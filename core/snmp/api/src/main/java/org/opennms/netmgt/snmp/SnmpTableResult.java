@@ -76,7 +76,13 @@ public class SnmpTableResult implements RowResultFactory {
         SnmpRowResult row = m_pendingData.get( instId );
         row.addResult( result.getBase(), result );
 
-        handleCompleteRows();
+        if (isFinished()) {
+            handleCompleteRows();
+        } else if (row.isComplete(getFinishedColumns())) {
+            // No other pending row is complete, since those are flushed as soon as they are,
+            // so there is no need to check every pending row again
+            completeRows(instId);
+        }
     }
 
     public void setFinished(boolean finished) {
@@ -87,29 +93,42 @@ public class SnmpTableResult implements RowResultFactory {
         return m_finished;
     }
 
+    private SnmpObjId[] getFinishedColumns() {
+        return m_finishedColumns.toArray(new SnmpObjId[m_finishedColumns.size()]);
+    }
+
     void handleCompleteRows() {
         SnmpInstId lastInstance = null;
+        final SnmpObjId[] finishedColumns = getFinishedColumns();
 
         for (SnmpRowResult row : m_pendingData.values()) {
-            if (row.isComplete(m_finishedColumns.toArray(new SnmpObjId[m_finishedColumns.size()]))) {
+            if (row.isComplete(finishedColumns)) {
                 lastInstance = row.getInstance();
             }
         }
         
         if (lastInstance != null || isFinished()) {
-            Iterator<SnmpInstId> i = m_pendingData.keySet().iterator();
-            while (i.hasNext()) {
-                final SnmpInstId key = i.next();
-                final SnmpRowResult pendingData = m_pendingData.get(key);
-                try {
-                    m_callback.rowCompleted(pendingData);
-                } catch (final Exception e) {
-                    LOG.warn("Failed to handle completed SNMP table row {}: {}", key, pendingData, e);
-                }
-                i.remove();
-                if (key.equals(lastInstance)) {
-                    break;
-                }
+            completeRows(lastInstance);
+        }
+    }
+
+    /**
+     * Passes all of the pending rows up to and including the given instance, or all of
+     * them if the instance is null, to the callback.
+     */
+    private void completeRows(SnmpInstId lastInstance) {
+        Iterator<SnmpInstId> i = m_pendingData.keySet().iterator();
+        while (i.hasNext()) {
+            final SnmpInstId key = i.next();
+            final SnmpRowResult pendingData = m_pendingData.get(key);
+            try {
+                m_callback.rowCompleted(pendingData);
+            } catch (final Exception e) {
+                LOG.warn("Failed to handle completed SNMP table row {}: {}", key, pendingData, e);
+            }
+            i.remove();
+            if (key.equals(lastInstance)) {
+                break;
             }
         }
     }
@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Timings of the walks performed by the {@link SnmpWalker}s in this JVM, per agent.
+ * Agents which were not walked for longer than the idle timeout are forgotten, so that
+ * the statistics do not grow with every agent that was ever walked.
+ */
+public class SnmpWalkStatistics {
+
+    private static final long IDLE_TIMEOUT_MS = Long.getLong("org.opennms.netmgt.snmp.walker.statisticsIdleTimeout", TimeUnit.HOURS.toMillis(1));
+
+    private static final SnmpWalkStatistics s_instance = new SnmpWalkStatistics(System::currentTimeMillis, IDLE_TIMEOUT_MS);
+
+    public static SnmpWalkStatistics getInstance() {
+        return s_instance;
+    }
+
+    public static class AgentStatistics {
+        private long m_walks;
+        private long m_failures;
+        private long m_totalTime;
+        private long m_maxTime;
+        private long m_lastTime;
+        private long m_pdus;
+        private int m_maxRepetitions;
+        private long m_lastWalk;
+
+        private synchronized void walkCompleted(long now, long duration, int pdus, int maxRepetitions, boolean failed) {
+            m_lastWalk = now;
+            m_walks++;
+            if (failed) {
+                m_failures++;
+            }
+            m_totalTime += duration;
+            m_maxTime = Math.max(m_maxTime, duration);
+            m_lastTime = duration;
+            m_pdus += pdus;
+            m_maxRepetitions = maxRepetitions;
+        }
+
+        private synchronized AgentStatistics copy() {
+            final AgentStatistics copy = new AgentStatistics();
+            copy.m_walks = m_walks;
+            copy.m_failures = m_failures;
+            copy.m_totalTime = m_totalTime;
+            copy.m_maxTime = m_maxTime;
+            copy.m_lastTime = m_lastTime;
+            copy.m_pdus = m_pdus;
+            copy.m_maxRepetitions = m_maxRepetitions;
+            copy.m_lastWalk = m_lastWalk;
+            return copy;
+        }
+
+        private synchronized boolean isIdle(long now, long idleTimeout) {
+            return now - m_lastWalk > idleTimeout;
+        }
+
+        public synchronized long getWalks() {
+            return m_walks;
+        }
+
+        public synchronized long getFailures() {
+            return m_failures;
+        }
+
+        /**
+         * @return the total time spent walking the agent in milliseconds
+         */
+        public synchronized long getTotalTime() {
+            return m_totalTime;
+        }
+
+        public synchronized long getAverageTime() {
+            return m_walks > 0 ? m_totalTime / m_walks : 0;
+        }
+
+        public synchronized long getMaxTime() {
+            return m_maxTime;
+        }
+
+        public synchronized long getLastTime() {
+            return m_lastTime;
+        }
+
+        public synchronized long getPdus() {
+            return m_pdus;
+        }
+
+        /**
+         * @return the max-repetitions used at the end of the last walk
+         */
+        public synchronized int getMaxRepetitions() {
+            return m_maxRepetitions;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return new ToStringBuilder(this)
+                .append("walks", m_walks)
+                .append("failures", m_failures)
+                .append("average time", getAverageTime())
+                .append("max time", m_maxTime)
+                .append("last time", m_lastTime)
+                .append("pdus", m_pdus)
+                .append("max repetitions", m_maxRepetitions)
+                .toString();
+        }
+    }
+
+    private final LongSupplier m_clock;
+    private final long m_idleTimeout;
+    private final AtomicLong m_lastEviction;
+    private final Map<InetAddress, AgentStatistics> m_agents = new ConcurrentHashMap<>();
+    private final LongAdder m_walks = new LongAdder();
+    private final LongAdder m_failures = new LongAdder();
+    private final LongAdder m_totalTime = new LongAdder();
+
+    /**
+     * @param clock the current time in milliseconds
+     * @param idleTimeout the time in milliseconds after which agents which were not walked are forgotten
+     */
+    SnmpWalkStatistics(LongSupplier clock, long idleTimeout) {
+        m_clock = clock;
+        m_idleTimeout = idleTimeout;
+        m_lastEviction = new AtomicLong(clock.getAsLong());
+    }
+
+    /**
+     * @param duration the duration of the walk in milliseconds
+     * @param pdus the number of PDUs that were sent
+     * @param maxRepetitions the max-repetitions at the end of the walk
+     */
+    public void walkCompleted(InetAddress agent, long duration, int pdus, int maxRepetitions, boolean failed) {
+        m_walks.increment();
+        if (failed) {
+            m_failures.increment();
+        }
+        m_totalTime.add(duration);
+        if (agent != null) {
+            final long now = m_clock.getAsLong();
+            m_agents.computeIfAbsent(agent, a -> new AgentStatistics()).walkCompleted(now, duration, pdus, maxRepetitions, failed);
+            evictIdleAgents(now);
+        }
+    }
+
+    /**
+     * Forgets the agents which were not walked within the idle timeout. Sweeps at most once
+     * per idle timeout, and only from one thread at a time.
+     */
+    private void evictIdleAgents(long now) {
+        final long lastEviction = m_lastEviction.get();
+        if (now - lastEviction > m_idleTimeout && m_lastEviction.compareAndSet(lastEviction, now)) {
+            m_agents.values().removeIf(stats -> stats.isIdle(now, m_idleTimeout));
+        }
+    }
+
+    public long getWalks() {
+        return m_walks.sum();
+    }
+
+    public long getFailures() {
+        return m_failures.sum();
+    }
+
+    /**
+     * @return the total time spent walking all agents in milliseconds
+     */
+    public long getTotalTime() {
+        return m_totalTime.sum();
+    }
+
+    /**
+     * @return a copy of the statistics of the given agent, or null if it was never walked
+     */
+    public AgentStatistics getAgentStatistics(InetAddress agent) {
+        final AgentStatistics stats = m_agents.get(agent);
+        return stats != null ? stats.copy() : null;
+    }
+
+    /**
+     * @return a copy of the statistics of all agents that were walked
+     */
+    public Map<InetAddress, AgentStatistics> getAgentStatistics() {
+        final Map<InetAddress, AgentStatistics> copy = new HashMap<>();
+        m_agents.forEach((agent, stats) -> copy.put(agent, stats.copy()));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    public void reset() {
+        m_agents.clear();
+        m_walks.reset();
+        m_failures.reset();
+        m_totalTime.reset();
+    }
+}
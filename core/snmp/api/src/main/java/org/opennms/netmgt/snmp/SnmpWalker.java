@@ -32,8 +32,26 @@ import java.net.InetAddress;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public abstract class SnmpWalker implements AutoCloseable {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SnmpWalker.class);
+
+    /**
+     * The number of PDUs that walkers which support it keep outstanding at once.
+     */
+    protected static final int DEFAULT_MAX_OUTSTANDING_PDUS = Integer.getInteger("org.opennms.netmgt.snmp.walker.maxOutstandingPdus", 4);
+
+    /**
+     * Whether walks are pipelined unless their caller says otherwise, see {@link #setPipelined(boolean)}.
+     */
+    private static final boolean PIPELINED = Boolean.getBoolean("org.opennms.netmgt.snmp.walker.pipelined");
+
+    private static final boolean ADAPTIVE_MAX_REPETITIONS = Boolean.valueOf(System.getProperty("org.opennms.netmgt.snmp.walker.adaptiveMaxRepetitions", "true"));
+    private static final int MAX_REPETITIONS_LIMIT = Integer.getInteger("org.opennms.netmgt.snmp.walker.maxRepetitionsLimit", 20);
+
     protected abstract static class WalkerPduBuilder extends PduBuilder {
         protected WalkerPduBuilder(int maxVarsPerPdu) {
             super(maxVarsPerPdu);
@@ -51,10 +69,21 @@ public abstract class SnmpWalker implements AutoCloseable {
     private WalkerPduBuilder m_pduBuilder;
     private ResponseProcessor m_responseProcessor;
     private final int m_maxVarsPerPdu;
+    private final int m_maxRepetitions;
     private boolean m_error = false;
     private String m_errorMessage = "";
     private Throwable m_errorThrowable = null;
 
+    private boolean m_pipelined = PIPELINED;
+    private int m_supportedOutstandingPdus = 1;
+    private int m_targetResponseSize = 0;
+    private int m_maxOutstandingPdus = 1;
+    private int m_outstandingPdus = 0;
+    private int m_pdusSent = 0;
+    private AdaptiveMaxRepetitions m_adaptiveMaxRepetitions;
+    private long m_startTime;
+    private boolean m_done = false;
+
     private SnmpWalkCallback m_callback;
 
     protected SnmpWalker(InetAddress address, String name, int maxVarsPerPdu, int maxRepetitions, int maxRetries, CollectionTracker tracker) {
@@ -68,6 +97,7 @@ public abstract class SnmpWalker implements AutoCloseable {
         m_tracker.setMaxRetries(maxRetries);
         
         m_maxVarsPerPdu = maxVarsPerPdu;
+        m_maxRepetitions = maxRepetitions;
     }
 
     /**
@@ -80,12 +110,51 @@ public abstract class SnmpWalker implements AutoCloseable {
         m_callback = callback;
     }
 
+    /**
+     * Pipelines the walk: keeps several PDUs outstanding at once and adapts the max-repetitions
+     * to the responses of the agent, as far as the walker supports it. Walks are only pipelined
+     * when their caller asks for it, or when the org.opennms.netmgt.snmp.walker.pipelined
+     * property is set. Must be called before {@link #start()}.
+     */
+    public void setPipelined(boolean pipelined) {
+        m_pipelined = pipelined;
+    }
+
+    public boolean isPipelined() {
+        return m_pipelined;
+    }
+
+    /**
+     * Allows more than one PDU to be outstanding at once when the walk is pipelined. Only walkers
+     * which associate every response with the {@link ResponseProcessor} its PDU was sent with in
+     * {@link #sendNextPdu(WalkerPduBuilder, ResponseProcessor)} may do so.
+     */
+    protected void setMaxOutstandingPdus(int maxOutstandingPdus) {
+        m_supportedOutstandingPdus = Math.max(1, maxOutstandingPdus);
+    }
+
+    /**
+     * Adapts the max-repetitions to the responses of the agent when the walk is pipelined, aiming
+     * for responses of at most the given size. Walkers which enable this must report their responses
+     * with {@link #responseReceived(boolean, int)}.
+     */
+    protected void setTargetResponseSize(int targetResponseSize) {
+        m_targetResponseSize = targetResponseSize;
+    }
+
     protected abstract WalkerPduBuilder createPduBuilder(int maxVarsPerPdu);
     
     public void start() {
         m_pduBuilder = createPduBuilder(m_maxVarsPerPdu);
+        if (m_pipelined) {
+            m_maxOutstandingPdus = m_supportedOutstandingPdus;
+            if (ADAPTIVE_MAX_REPETITIONS && m_targetResponseSize > 0) {
+                m_adaptiveMaxRepetitions = new AdaptiveMaxRepetitions(m_maxRepetitions, MAX_REPETITIONS_LIMIT, m_targetResponseSize);
+            }
+        }
+        m_startTime = System.currentTimeMillis();
         try {
-            buildAndSendNextPdu();
+            buildAndSendPdus();
         } catch (Throwable e) {
             handleFatalError(e);
         }
@@ -95,14 +164,69 @@ public abstract class SnmpWalker implements AutoCloseable {
         return (m_pduBuilder == null ? m_maxVarsPerPdu : m_pduBuilder.getMaxVarsPerPdu());
     }
 
+    public final synchronized int getMaxRepetitions() {
+        return m_adaptiveMaxRepetitions != null ? m_adaptiveMaxRepetitions.getMaxRepetitions() : m_maxRepetitions;
+    }
+
+    /**
+     * Completes the outstanding PDU and sends the next one. Used by walkers which only
+     * have a single outstanding PDU, see {@link #buildAndSendNextPdu(ResponseProcessor)}
+     * for the others.
+     */
     protected void buildAndSendNextPdu() throws SnmpException {
-        if (m_tracker.isFinished()) {
-            handleDone();
+        final ResponseProcessor rp;
+        synchronized (this) {
+            rp = m_responseProcessor;
+            m_responseProcessor = null;
+        }
+        if (rp != null) {
+            buildAndSendNextPdu(rp);
         } else {
-            m_pduBuilder.reset();
-            m_responseProcessor = m_tracker.buildNextPdu(m_pduBuilder);
-            sendNextPdu(m_pduBuilder);
+            buildAndSendPdus();
+        }
+    }
+
+    /**
+     * Completes the PDU that was sent with the given processor and sends the next PDUs,
+     * or finishes the walk once the tracker is finished and no more PDUs are outstanding.
+     */
+    protected void buildAndSendNextPdu(ResponseProcessor completed) throws SnmpException {
+        synchronized (this) {
+            completed.completed();
+            m_outstandingPdus--;
+        }
+        buildAndSendPdus();
+    }
+
+    private void buildAndSendPdus() throws SnmpException {
+        synchronized (this) {
+            if (m_done) {
+                return;
+            }
+            // Keep sending PDUs for the trackers which aren't already waiting for a response
+            while (m_outstandingPdus < m_maxOutstandingPdus && m_tracker.isReady()) {
+                m_pduBuilder.reset();
+                final ResponseProcessor rp = m_tracker.buildNextPendingPdu(m_pduBuilder);
+                m_outstandingPdus++;
+                m_pdusSent++;
+                sendNextPdu(m_pduBuilder, rp);
+            }
+            if (m_outstandingPdus > 0 || !m_tracker.isFinished()) {
+                return;
+            }
         }
+        handleDone();
+    }
+
+    /**
+     * Sends the PDU that was just built. The response must be processed using the given
+     * processor. The default implementation delegates to {@link #sendNextPdu(WalkerPduBuilder)},
+     * after which the response is processed by {@link #processErrors(int, int)} and
+     * {@link #processResponse(SnmpObjId, SnmpValue)}.
+     */
+    protected void sendNextPdu(WalkerPduBuilder pduBuilder, ResponseProcessor processor) throws SnmpException {
+        m_responseProcessor = processor;
+        sendNextPdu(pduBuilder);
     }
 
     protected abstract void sendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException;
@@ -124,6 +248,13 @@ public abstract class SnmpWalker implements AutoCloseable {
         return m_tracker.timedOut();
     }
 
+    /**
+     * @return true once the walk completed or failed
+     */
+    protected final synchronized boolean isDone() {
+        return m_done;
+    }
+
     protected void handleAuthError(String msg) {
         m_tracker.setFailed(true);
         processError("Authentication error processing", msg, null);
@@ -151,17 +282,53 @@ public abstract class SnmpWalker implements AutoCloseable {
         processError("Timeout retrieving", msg, new SnmpAgentTimeoutException(getName(), m_address));
     }
 
+    /**
+     * Handles the timeout of the PDU that was sent with the given processor. If the agent
+     * already responded to other PDUs of this walk, the request is sent again with fewer
+     * repetitions, since the response was most likely too large for the agent to handle
+     * in time.
+     */
+    protected void handleTimeout(ResponseProcessor rp, String msg) throws SnmpException {
+        final boolean retry;
+        synchronized (this) {
+            retry = m_adaptiveMaxRepetitions != null && m_adaptiveMaxRepetitions.timedOut();
+            if (retry) {
+                updateMaxRepetitions();
+            }
+        }
+        if (retry) {
+            LOG.debug("{}: Retrying after a timeout for {} with max-repetitions {}", getName(), m_address, getMaxRepetitions());
+            buildAndSendNextPdu(rp);
+        } else {
+            handleTimeout(msg);
+        }
+    }
+
     private void processError(String reason, String cause, Throwable t) {
         String logMessage = reason + " " + getName() + " for " + m_address + ": " + cause;
 
-        m_error = true;
-        m_errorMessage = logMessage;
-        m_errorThrowable = t;
-        
+        synchronized (this) {
+            if (m_done) {
+                return;
+            }
+            m_error = true;
+            m_errorMessage = logMessage;
+            m_errorThrowable = t;
+        }
+
         finish();
     }
 
     private void finish() {
+        synchronized (this) {
+            if (m_done) {
+                return;
+            }
+            m_done = true;
+        }
+        if (m_startTime > 0) {
+            SnmpWalkStatistics.getInstance().walkCompleted(m_address, System.currentTimeMillis() - m_startTime, m_pdusSent, getMaxRepetitions(), failed());
+        }
         signal();
         // Trigger the callback after the latch was decreased and the session was closed.
         if (m_callback != null) {
@@ -208,11 +375,43 @@ public abstract class SnmpWalker implements AutoCloseable {
     
     // processErrors returns true if we need to retry the request and false otherwise
     protected boolean processErrors(int errorStatus, int errorIndex) throws SnmpException {
-        return m_responseProcessor.processErrors(errorStatus, errorIndex);
+        return processErrors(m_responseProcessor, errorStatus, errorIndex);
+    }
+
+    protected boolean processErrors(ResponseProcessor rp, int errorStatus, int errorIndex) throws SnmpException {
+        if (errorStatus == ErrorStatus.TOO_BIG.ordinal()) {
+            synchronized (this) {
+                if (m_adaptiveMaxRepetitions != null && m_adaptiveMaxRepetitions.tooBig()) {
+                    updateMaxRepetitions();
+                }
+            }
+        }
+        return rp.processErrors(errorStatus, errorIndex);
     }
     
     protected void processResponse(SnmpObjId receivedOid, SnmpValue val) throws SnmpException {
-        m_responseProcessor.processResponse(receivedOid, val);
+        processResponse(m_responseProcessor, receivedOid, val);
+    }
+
+    protected void processResponse(ResponseProcessor rp, SnmpObjId receivedOid, SnmpValue val) throws SnmpException {
+        rp.processResponse(receivedOid, val);
+    }
+
+    /**
+     * Adapts the max-repetitions of the following PDUs to a response without errors.
+     *
+     * @param full whether the agent returned all of the repetitions that were requested
+     * @param responseSize the encoded size of the response in bytes
+     */
+    protected synchronized void responseReceived(boolean full, int responseSize) {
+        if (m_adaptiveMaxRepetitions != null && m_adaptiveMaxRepetitions.responseReceived(full, responseSize)) {
+            updateMaxRepetitions();
+        }
+    }
+
+    private void updateMaxRepetitions() {
+        LOG.debug("{}: Using max-repetitions {} for {}", getName(), m_adaptiveMaxRepetitions.getMaxRepetitions(), m_address);
+        m_tracker.setMaxRepetitions(m_adaptiveMaxRepetitions.getMaxRepetitions());
     }
 
     protected final InetAddress getAddress() {
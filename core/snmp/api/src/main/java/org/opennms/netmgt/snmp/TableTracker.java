@@ -94,6 +94,19 @@ public class TableTracker extends CollectionTracker implements RowCallback, RowR
         return true;
     }
 
+    @Override
+    public boolean isReady() {
+        if (isFinished()) {
+            return false;
+        }
+        for (ColumnTracker ct : m_columnTrackers) {
+            if (ct.isReady()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public ResponseProcessor buildNextPdu(PduBuilder pduBuilder) throws SnmpException {
         if (pduBuilder.getMaxVarsPerPdu() < 1) {
@@ -103,7 +116,7 @@ public class TableTracker extends CollectionTracker implements RowCallback, RowR
         List<ResponseProcessor> processors = new ArrayList<ResponseProcessor>(pduBuilder.getMaxVarsPerPdu());
 
         for (ColumnTracker ct : getNextColumnTrackers(pduBuilder.getMaxVarsPerPdu())) {
-            processors.add(ct.buildNextPdu(pduBuilder));
+            processors.add(ct.buildNextPendingPdu(pduBuilder));
         }
 
         return new CombinedColumnResponseProcessor(processors);
@@ -151,7 +164,7 @@ public class TableTracker extends CollectionTracker implements RowCallback, RowR
         
             ColumnTracker tracker = it.next();
             
-            if (!tracker.isFinished()) {
+            if (tracker.isReady()) {
                 trackers.add(tracker);
             }
 
@@ -184,6 +197,13 @@ public class TableTracker extends CollectionTracker implements RowCallback, RowR
 
         }
 
+        @Override
+        public void completed() {
+            for (ResponseProcessor rp : m_processors) {
+                rp.completed();
+            }
+        }
+
         @Override
         public boolean processErrors(int errorStatus, int errorIndex) throws SnmpException {
             
@@ -46,6 +46,12 @@ public interface SNMPRequestBuilder<T> {
 
     SNMPRequestBuilder<T> withDescription(String string);
 
+    /**
+     * Pipelines the walks of the request: keeps several PDUs outstanding at once and adapts
+     * the max-repetitions to the responses of the agent. Walks are not pipelined by default.
+     */
+    SNMPRequestBuilder<T> withPipelining(boolean pipelined);
+
     SNMPRequestBuilder<T> withTimeToLive(Long ttlInMs);
 
     SNMPRequestBuilder<T> withTimeToLive(long duration, TimeUnit unit);
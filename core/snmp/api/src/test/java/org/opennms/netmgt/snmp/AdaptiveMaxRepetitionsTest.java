@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveMaxRepetitionsTest {
+
+    @Test
+    public void canGrowUpToLimit() {
+        final AdaptiveMaxRepetitions reps = new AdaptiveMaxRepetitions(2, 10, 1000);
+        assertTrue(reps.responseReceived(true, 100));
+        assertEquals(4, reps.getMaxRepetitions());
+        assertTrue(reps.responseReceived(true, 100));
+        assertTrue(reps.responseReceived(true, 100));
+        assertEquals(10, reps.getMaxRepetitions());
+        assertFalse(reps.responseReceived(true, 100));
+
+        // Don't grow if the agent didn't return all of the repetitions or the response is already large
+        final AdaptiveMaxRepetitions other = new AdaptiveMaxRepetitions(2, 10, 1000);
+        assertFalse(other.responseReceived(false, 100));
+        assertFalse(other.responseReceived(true, 600));
+        assertEquals(2, other.getMaxRepetitions());
+    }
+
+    @Test
+    public void canShrinkLargeResponses() {
+        final AdaptiveMaxRepetitions reps = new AdaptiveMaxRepetitions(20, 20, 1000);
+        assertTrue(reps.responseReceived(true, 4000));
+        assertEquals(5, reps.getMaxRepetitions());
+        assertTrue(reps.tooBig());
+        assertEquals(2, reps.getMaxRepetitions());
+        assertTrue(reps.tooBig());
+        assertFalse(reps.tooBig());
+        assertEquals(1, reps.getMaxRepetitions());
+    }
+
+    @Test
+    public void canRetryTimeoutsOnlyAfterResponses() {
+        final AdaptiveMaxRepetitions reps = new AdaptiveMaxRepetitions(8, 8, 1000);
+        // The agent may just be down
+        assertFalse(reps.timedOut());
+        reps.responseReceived(true, 900);
+        assertTrue(reps.timedOut());
+        assertEquals(4, reps.getMaxRepetitions());
+        assertTrue(reps.timedOut());
+        assertTrue(reps.timedOut());
+        assertFalse(reps.timedOut());
+    }
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.snmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class SnmpWalkStatisticsTest {
+
+    @Test
+    public void canForgetIdleAgents() throws Exception {
+        final InetAddress idle = InetAddress.getByName("192.0.2.1");
+        final InetAddress busy = InetAddress.getByName("192.0.2.2");
+        final AtomicLong now = new AtomicLong(0);
+        final SnmpWalkStatistics stats = new SnmpWalkStatistics(now::get, 1000);
+
+        stats.walkCompleted(idle, 10, 1, 2, false);
+        stats.walkCompleted(busy, 10, 1, 2, false);
+
+        now.set(800);
+        stats.walkCompleted(busy, 20, 1, 2, true);
+        assertNotNull(stats.getAgentStatistics(idle));
+
+        // The idle agent is forgotten once it was not walked for longer than the timeout
+        now.set(1500);
+        stats.walkCompleted(busy, 30, 1, 2, false);
+        assertNull(stats.getAgentStatistics(idle));
+        assertEquals(3, stats.getAgentStatistics(busy).getWalks());
+        assertEquals(1, stats.getAgentStatistics().size());
+
+        // The totals still cover all walks
+        assertEquals(4, stats.getWalks());
+        assertEquals(1, stats.getFailures());
+        assertEquals(70, stats.getTotalTime());
+    }
+}
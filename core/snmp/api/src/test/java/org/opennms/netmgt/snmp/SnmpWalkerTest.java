@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class SnmpWalkerTest {
+
+    private static final SnmpObjId TABLE = SnmpObjId.get(".1.3.6.1.2.1.2.2.1");
+
+    private static final SnmpValue END_OF_MIB = mock(SnmpValue.class);
+    static {
+        when(END_OF_MIB.isEndOfMib()).thenReturn(true);
+    }
+
+    /**
+     * A walker which answers its requests from a map, in the reverse order they were sent.
+     */
+    private static class PipelinedWalker extends SnmpWalker {
+
+        private static class Request {
+            private final List<SnmpObjId> oids;
+            private final int nonRepeaters;
+            private final int maxRepetitions;
+            private final ResponseProcessor processor;
+
+            private Request(List<SnmpObjId> oids, int nonRepeaters, int maxRepetitions, ResponseProcessor processor) {
+                this.oids = oids;
+                this.nonRepeaters = nonRepeaters;
+                this.maxRepetitions = maxRepetitions;
+                this.processor = processor;
+            }
+        }
+
+        private static class Builder extends WalkerPduBuilder {
+            private final List<SnmpObjId> oids = new ArrayList<>();
+            private int nonRepeaters;
+            private int maxRepetitions;
+
+            private Builder(int maxVarsPerPdu) {
+                super(maxVarsPerPdu);
+            }
+
+            @Override
+            public void reset() {
+                oids.clear();
+            }
+
+            @Override
+            public void addOid(SnmpObjId snmpObjId) {
+                oids.add(snmpObjId);
+            }
+
+            @Override
+            public void setNonRepeaters(int numNonRepeaters) {
+                nonRepeaters = numNonRepeaters;
+            }
+
+            @Override
+            public void setMaxRepetitions(int maxRepetitions) {
+                this.maxRepetitions = maxRepetitions;
+            }
+        }
+
+        private final NavigableMap<SnmpObjId, SnmpValue> data;
+        private final LinkedList<Request> requests = new LinkedList<>();
+        private int maxOutstanding = 0;
+
+        private PipelinedWalker(NavigableMap<SnmpObjId, SnmpValue> data, int maxVarsPerPdu, int maxRepetitions, int maxOutstandingPdus, CollectionTracker tracker) throws Exception {
+            super(InetAddress.getLoopbackAddress(), "test", maxVarsPerPdu, maxRepetitions, 0, tracker);
+            this.data = data;
+            setMaxOutstandingPdus(maxOutstandingPdus);
+        }
+
+        @Override
+        protected WalkerPduBuilder createPduBuilder(int maxVarsPerPdu) {
+            return new Builder(maxVarsPerPdu);
+        }
+
+        @Override
+        protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void sendNextPdu(WalkerPduBuilder pduBuilder, ResponseProcessor processor) throws SnmpException {
+            final Builder builder = (Builder)pduBuilder;
+            requests.add(new Request(new ArrayList<>(builder.oids), builder.nonRepeaters, builder.maxRepetitions, processor));
+            maxOutstanding = Math.max(maxOutstanding, requests.size());
+        }
+
+        private void respondToAll() throws SnmpException {
+            while (!requests.isEmpty()) {
+                final Request request = requests.removeLast();
+                final List<Map.Entry<SnmpObjId, SnmpValue>> varBinds = new ArrayList<>();
+                for (int i = 0; i < request.nonRepeaters; i++) {
+                    varBinds.add(next(request.oids.get(i)));
+                }
+                final List<SnmpObjId> repeaters = new ArrayList<>(request.oids.subList(request.nonRepeaters, request.oids.size()));
+                for (int r = 0; r < request.maxRepetitions; r++) {
+                    for (int i = 0; i < repeaters.size(); i++) {
+                        final Map.Entry<SnmpObjId, SnmpValue> varBind = next(repeaters.get(i));
+                        varBinds.add(varBind);
+                        repeaters.set(i, varBind.getKey());
+                    }
+                }
+                assertFalse(processErrors(request.processor, 0, 0));
+                for (Map.Entry<SnmpObjId, SnmpValue> varBind : varBinds) {
+                    processResponse(request.processor, varBind.getKey(), varBind.getValue());
+                }
+                responseReceived(true, varBinds.size() * 10);
+                buildAndSendNextPdu(request.processor);
+            }
+        }
+
+        private Map.Entry<SnmpObjId, SnmpValue> next(SnmpObjId oid) {
+            final Map.Entry<SnmpObjId, SnmpValue> next = data.higherEntry(oid);
+            return next != null ? next : Map.entry(oid, END_OF_MIB);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static NavigableMap<SnmpObjId, SnmpValue> table(int columns, int rows) {
+        final NavigableMap<SnmpObjId, SnmpValue> data = new TreeMap<>();
+        for (int column = 1; column <= columns; column++) {
+            for (int row = 1; row <= rows; row++) {
+                data.put(SnmpObjId.get(TABLE, column + "." + row), mock(SnmpValue.class));
+            }
+        }
+        return data;
+    }
+
+    private static SnmpObjId[] columns(int columns) {
+        final SnmpObjId[] ids = new SnmpObjId[columns];
+        for (int column = 1; column <= columns; column++) {
+            ids[column - 1] = SnmpObjId.get(TABLE, Integer.toString(column));
+        }
+        return ids;
+    }
+
+    @Test
+    public void canWalkTableWithSeveralOutstandingPdus() throws Exception {
+        final List<SnmpRowResult> rows = new ArrayList<>();
+        final TableTracker tracker = new TableTracker(rows::add, columns(6));
+
+        try (PipelinedWalker walker = new PipelinedWalker(table(6, 50), 2, 3, 3, new AggregateTracker(new Collectable[] { tracker }))) {
+            walker.setPipelined(true);
+            walker.start();
+            walker.respondToAll();
+
+            assertTrue(walker.waitFor(0));
+            assertFalse(walker.failed());
+            // The 6 columns are split over 3 PDUs of 2 columns each
+            assertEquals(3, walker.maxOutstanding);
+        }
+
+        assertEquals(50, rows.size());
+        for (int row = 0; row < rows.size(); row++) {
+            assertEquals(new SnmpInstId(row + 1), rows.get(row).getInstance());
+            assertEquals(6, rows.get(row).getResults().size());
+        }
+    }
+
+    @Test
+    public void canWalkTableWithSingleOutstandingPdu() throws Exception {
+        final List<SnmpRowResult> rows = new ArrayList<>();
+        final TableTracker tracker = new TableTracker(rows::add, columns(6));
+
+        try (PipelinedWalker walker = new PipelinedWalker(table(6, 50), 2, 3, 1, new AggregateTracker(new Collectable[] { tracker }))) {
+            walker.setPipelined(true);
+            walker.start();
+            walker.respondToAll();
+
+            assertTrue(walker.waitFor(0));
+            assertEquals(1, walker.maxOutstanding);
+        }
+
+        assertEquals(50, rows.size());
+    }
+
+    @Test
+    public void doesNotPipelineUnlessAsked() throws Exception {
+        final List<SnmpRowResult> rows = new ArrayList<>();
+        final TableTracker tracker = new TableTracker(rows::add, columns(6));
+
+        try (PipelinedWalker walker = new PipelinedWalker(table(6, 50), 2, 3, 3, new AggregateTracker(new Collectable[] { tracker }))) {
+            walker.setTargetResponseSize(10000);
+            walker.start();
+            walker.respondToAll();
+
+            assertTrue(walker.waitFor(0));
+            assertFalse(walker.isPipelined());
+            assertEquals(1, walker.maxOutstanding);
+            assertEquals(3, walker.getMaxRepetitions());
+        }
+
+        assertEquals(50, rows.size());
+    }
+
+    @Test
+    public void canAdaptMaxRepetitions() throws Exception {
+        final List<SnmpRowResult> rows = new ArrayList<>();
+        final TableTracker tracker = new TableTracker(rows::add, columns(2));
+
+        try (PipelinedWalker walker = new PipelinedWalker(table(2, 500), 2, 2, 1, new AggregateTracker(new Collectable[] { tracker }))) {
+            walker.setPipelined(true);
+            walker.setTargetResponseSize(10000);
+            walker.start();
+            walker.respondToAll();
+
+            assertTrue(walker.waitFor(0));
+            // Every full response of 2 columns is well below the target size
+            assertTrue(walker.getMaxRepetitions() > 2);
+        }
+
+        assertEquals(500, rows.size());
+        assertTrue(SnmpWalkStatistics.getInstance().getAgentStatistics(InetAddress.getLoopbackAddress()).getWalks() > 0);
+    }
+}
@@ -31,6 +31,7 @@ package org.opennms.netmgt.snmp.snmp4j;
 import java.io.IOException;
 
 import org.opennms.netmgt.snmp.CollectionTracker;
+import org.opennms.netmgt.snmp.ResponseProcessor;
 import org.opennms.netmgt.snmp.SnmpException;
 import org.opennms.netmgt.snmp.SnmpObjId;
 import org.opennms.netmgt.snmp.SnmpValue;
@@ -135,13 +136,13 @@ public class Snmp4JWalker extends SnmpWalker {
      */
     public class Snmp4JResponseListener implements ResponseListener {
 
-        private void processResponse(final PDU response) throws SnmpException {
+        private void processResponse(final PDU request, final PDU response, final ResponseProcessor rp) throws SnmpException {
             try {
                 LOG.debug("Received a tracker PDU of type {} from {} of size {}, errorStatus = {}, errorStatusText = {}, errorIndex = {}", PDU.getTypeString(response.getType()), getAddress(), response.size(), response.getErrorStatus(), response.getErrorStatusText(), response.getErrorIndex());
                 if (response.getType() == PDU.REPORT) {
                     handleAuthError("A REPORT PDU was returned from the agent.  This is most likely an authentication problem.  Please check the config");
                 } else {
-                    if (!processErrors(response.getErrorStatus(), response.getErrorIndex())) {
+                    if (!processErrors(rp, response.getErrorStatus(), response.getErrorIndex())) {
                         if (response.size() == 0) { // NMS-6484
                             handleError("A PDU with no errors and 0 varbinds was returned from the agent at " + getAddress() + ". This seems to be related with a broken SNMP agent.");
                         } else {
@@ -149,40 +150,67 @@ public class Snmp4JWalker extends SnmpWalker {
                                 final VariableBinding vb = response.get(i);
                                 final SnmpObjId receivedOid = SnmpObjId.get(vb.getOid().getValue());
                                 final SnmpValue val = new Snmp4JValue(vb.getVariable());
-                                Snmp4JWalker.this.processResponse(receivedOid, val);
+                                Snmp4JWalker.this.processResponse(rp, receivedOid, val);
                             }
+                            responseReceived(isFull(request, response), response.getBERLength());
                         }
                     }
-                    buildAndSendNextPdu();
+                    buildAndSendNextPdu(rp);
                 }
             } catch (final RuntimeException|SnmpException e) {
                 handleFatalError(e);
             }
         }
 
+        /**
+         * @return true if the agent returned all of the repetitions that were requested
+         */
+        private boolean isFull(final PDU request, final PDU response) {
+            if (request == null || request.getType() != PDU.GETBULK) {
+                return false;
+            }
+            final int nonRepeaters = request.getNonRepeaters();
+            return response.size() >= nonRepeaters + (request.size() - nonRepeaters) * request.getMaxRepetitions();
+        }
+
         @Override
         public void onResponse(ResponseEvent responseEvent) {
             // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
-            m_session.cancel(responseEvent.getRequest(), this);
+            final Snmp session = m_session;
+            if (session != null) {
+                session.cancel(responseEvent.getRequest(), this);
+            }
 
-            // Check to see if we got an interrupted exception
-            if (responseEvent.getError() instanceof InterruptedException) {
-                LOG.debug("Interruption event.  We have probably tried to close the session due to an error", responseEvent.getError());
-            // Check to see if the response is null, indicating a timeout
-            } else if (responseEvent.getResponse() == null) {
-                handleTimeout(getName()+": snmpTimeoutError for: " + getAddress());
-            // Check to see if we got any kind of error
-            } else if (responseEvent.getError() != null){
-                handleError(getName()+": snmpInternalError: " + responseEvent.getError() + " for: " + getAddress(), responseEvent.getError());
-            // If we have a PDU in the response, process it
-            } else {
-                try {
-                    processResponse(responseEvent.getResponse());
-                } catch (final SnmpException e) {
-                    handleFatalError(e);
+            // The processor of the trackers which are part of the request
+            final ResponseProcessor rp = (ResponseProcessor)responseEvent.getUserObject();
+
+            // Responses and timeouts are delivered by different threads
+            synchronized (Snmp4JWalker.this) {
+                // Ignore the remaining responses once the walk failed
+                if (isDone()) {
+                    LOG.debug("Ignoring response for {} since the walk is already done", getAddress());
+                // Check to see if we got an interrupted exception
+                } else if (responseEvent.getError() instanceof InterruptedException) {
+                    LOG.debug("Interruption event.  We have probably tried to close the session due to an error", responseEvent.getError());
+                // Check to see if the response is null, indicating a timeout
+                } else if (responseEvent.getResponse() == null) {
+                    try {
+                        handleTimeout(rp, getName()+": snmpTimeoutError for: " + getAddress());
+                    } catch (final RuntimeException|SnmpException e) {
+                        handleFatalError(e);
+                    }
+                // Check to see if we got any kind of error
+                } else if (responseEvent.getError() != null){
+                    handleError(getName()+": snmpInternalError: " + responseEvent.getError() + " for: " + getAddress(), responseEvent.getError());
+                // If we have a PDU in the response, process it
+                } else {
+                    try {
+                        processResponse(responseEvent.getRequest(), responseEvent.getResponse(), rp);
+                    } catch (final SnmpException e) {
+                        handleFatalError(e);
+                    }
                 }
             }
-            
         }
         
         
@@ -200,6 +228,12 @@ public class Snmp4JWalker extends SnmpWalker {
         
         m_tgt = agentConfig.getTarget();
         m_listener = new Snmp4JResponseListener();
+
+        // Every request carries its own response processor, so several of them can be outstanding
+        setMaxOutstandingPdus(DEFAULT_MAX_OUTSTANDING_PDUS);
+        if (getVersion() != SnmpConstants.version1) {
+            setTargetResponseSize(agentConfig.getMaxRequestSize());
+        }
     }
     
         @Override
@@ -219,6 +253,11 @@ public class Snmp4JWalker extends SnmpWalker {
 
         @Override
     protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws SnmpException {
+        sendNextPdu(pduBuilder, null);
+    }
+
+        @Override
+    protected void sendNextPdu(WalkerPduBuilder pduBuilder, ResponseProcessor processor) throws SnmpException {
         Snmp4JPduBuilder snmp4JPduBuilder = (Snmp4JPduBuilder)pduBuilder;
         try {
             if (m_session == null) {
@@ -233,7 +272,7 @@ public class Snmp4JWalker extends SnmpWalker {
 
         LOG.debug("Sending tracker pdu of size {}", snmp4JPduBuilder.getPdu().size());
         try {
-            m_session.send(snmp4JPduBuilder.getPdu(), m_tgt, null, m_listener);
+            m_session.send(snmp4JPduBuilder.getPdu(), m_tgt, processor, m_listener);
         } catch (final IOException e) {
             LOG.debug("Failed to send pdu of size {}", snmp4JPduBuilder.getPdu().size(), e);
             close();
@@ -47,6 +47,7 @@ public abstract class AbstractSNMPRequestBuilder<T> implements SNMPRequestBuilde
     private String location;
     private String systemId;
     private String description;
+    private Boolean pipelined;
     private Long timeToLiveInMilliseconds = null;
 
     public AbstractSNMPRequestBuilder(LocationAwareSnmpClientRpcImpl client,
@@ -75,6 +76,12 @@ public abstract class AbstractSNMPRequestBuilder<T> implements SNMPRequestBuilde
         return this;
     }
 
+    @Override
+    public SNMPRequestBuilder<T> withPipelining(boolean pipelined) {
+        this.pipelined = pipelined;
+        return this;
+    }
+
     @Override
     public SNMPRequestBuilder<T> withTimeToLive(Long ttlInMs) {
         timeToLiveInMilliseconds = ttlInMs;
@@ -94,6 +101,7 @@ public abstract class AbstractSNMPRequestBuilder<T> implements SNMPRequestBuilde
         snmpRequestDTO.setSystemId(systemId);
         snmpRequestDTO.setAgent(agent);
         snmpRequestDTO.setDescription(description);
+        snmpRequestDTO.setPipelined(pipelined);
         snmpRequestDTO.setGetRequests(gets);
         snmpRequestDTO.setWalkRequests(walks);
         // TTL specified in agent configuration overwrites any previous ttls specified.
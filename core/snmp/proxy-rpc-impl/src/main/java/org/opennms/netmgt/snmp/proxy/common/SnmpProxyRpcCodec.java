@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.proxy.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.opennms.core.rpc.api.AbstractBinaryRpcCodec;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpUtils;
+import org.opennms.netmgt.snmp.SnmpValue;
+import org.opennms.netmgt.snmp.SnmpValueFactory;
+
+/**
+ * Binary codec for the SNMP requests and responses.
+ *
+ * OIDs are written as their sub-identifiers and values as their type and raw bytes,
+ * which avoids formatting and parsing them as strings for every varbind of a walk.
+ */
+public class SnmpProxyRpcCodec extends AbstractBinaryRpcCodec<SnmpRequestDTO, SnmpMultiResponseDTO> {
+
+    @Override
+    protected void writeRequest(SnmpRequestDTO request, DataOutput out) throws IOException {
+        writeString(request.getLocation(), out);
+        writeString(request.getSystemId(), out);
+        writeString(request.getDescription(), out);
+        writeBoolean(request.getPipelined(), out);
+        final SnmpAgentConfig agent = request.getAgent();
+        writeStringMap(agent != null ? agent.toMap() : null, out);
+        writeCollection(request.getGetRequests(), (get, o) -> {
+            writeString(get.getCorrelationId(), o);
+            writeCollection(get.getOids(), SnmpProxyRpcCodec::writeOid, o);
+        }, out);
+        writeCollection(request.getWalkRequest(), (walk, o) -> {
+            writeString(walk.getCorrelationId(), o);
+            writeCollection(walk.getOids(), SnmpProxyRpcCodec::writeOid, o);
+            writeInteger(walk.getMaxRepetitions(), o);
+            writeOid(walk.getInstance(), o);
+        }, out);
+    }
+
+    @Override
+    protected SnmpRequestDTO readRequest(DataInput in) throws IOException {
+        final SnmpRequestDTO request = new SnmpRequestDTO();
+        request.setLocation(readString(in));
+        request.setSystemId(readString(in));
+        request.setDescription(readString(in));
+        request.setPipelined(readBoolean(in));
+        final Map<String, String> agent = readStringMap(in);
+        request.setAgent(agent != null ? SnmpAgentConfig.fromMap(agent) : null);
+        request.setGetRequests(readCollection(new ArrayList<>(), i -> {
+            final SnmpGetRequestDTO get = new SnmpGetRequestDTO();
+            get.setCorrelationId(readString(i));
+            get.setOids(readCollection(new ArrayList<>(), SnmpProxyRpcCodec::readOid, i));
+            return get;
+        }, in));
+        request.setWalkRequests(readCollection(new ArrayList<>(), i -> {
+            final SnmpWalkRequestDTO walk = new SnmpWalkRequestDTO();
+            walk.setCorrelationId(readString(i));
+            walk.setOids(readCollection(new ArrayList<>(), SnmpProxyRpcCodec::readOid, i));
+            walk.setMaxRepetitions(readInteger(i));
+            walk.setInstance(readOid(i));
+            return walk;
+        }, in));
+        return request;
+    }
+
+    @Override
+    protected void writeResponse(SnmpMultiResponseDTO response, DataOutput out) throws IOException {
+        writeString(response.getErrorMessage(), out);
+        writeCollection(response.getResponses(), (res, o) -> {
+            writeString(res.getCorrelationId(), o);
+            writeCollection(res.getResults(), SnmpProxyRpcCodec::writeResult, o);
+        }, out);
+    }
+
+    @Override
+    protected SnmpMultiResponseDTO readResponse(DataInput in) throws IOException {
+        final SnmpMultiResponseDTO response = new SnmpMultiResponseDTO();
+        response.setErrorMessage(readString(in));
+        final SnmpValueFactory valueFactory = SnmpUtils.getValueFactory();
+        response.setResponses(readCollection(new ArrayList<>(), i -> {
+            final SnmpResponseDTO res = new SnmpResponseDTO();
+            res.setCorrelationId(readString(i));
+            res.setResults(readCollection(new ArrayList<>(), r -> readResult(valueFactory, r), i));
+            return res;
+        }, in));
+        return response;
+    }
+
+    private static void writeResult(SnmpResult result, DataOutput out) throws IOException {
+        writeOid(result.getBase(), out);
+        writeOid(result.getInstance(), out);
+        final SnmpValue value = result.getValue();
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value.getType());
+            writeBytes(value.getBytes(), out);
+        }
+    }
+
+    private static SnmpResult readResult(SnmpValueFactory valueFactory, DataInput in) throws IOException {
+        final SnmpObjId base = readOid(in);
+        final SnmpObjId instance = readOid(in);
+        final SnmpValue value = in.readBoolean() ? valueFactory.getValue(in.readInt(), readBytes(in)) : null;
+        return new SnmpResult(base, instance != null ? new SnmpInstId(instance) : null, value);
+    }
+
+    private static void writeOid(SnmpObjId oid, DataOutput out) throws IOException {
+        if (oid == null) {
+            out.writeInt(-1);
+            return;
+        }
+        final int[] ids = oid.getIds();
+        out.writeInt(ids.length);
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    private static SnmpObjId readOid(DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final int[] ids = new int[length];
+        for (int i = 0; i < length; i++) {
+            ids[i] = in.readInt();
+        }
+        return SnmpObjId.get(ids);
+    }
+}
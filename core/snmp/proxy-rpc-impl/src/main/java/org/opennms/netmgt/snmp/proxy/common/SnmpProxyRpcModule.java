@@ -39,6 +39,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 
+import org.opennms.core.rpc.api.RpcCodec;
 import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
 import org.opennms.netmgt.snmp.AggregateTracker;
 import org.opennms.netmgt.snmp.Collectable;
@@ -68,6 +69,8 @@ public class SnmpProxyRpcModule extends AbstractXmlRpcModule<SnmpRequestDTO, Snm
 
     public static final String RPC_MODULE_ID = "SNMP";
 
+    private static final SnmpProxyRpcCodec CODEC = new SnmpProxyRpcCodec();
+
     private static final ExecutorService REAPER_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
         @Override
         public Thread newThread(Runnable r) {
@@ -139,6 +142,9 @@ public class SnmpProxyRpcModule extends AbstractXmlRpcModule<SnmpRequestDTO, Snm
 
         AggregateTracker aggregate = new AggregateTracker(trackers);
         final SnmpWalker walker = SnmpUtils.createWalker(request.getAgent(), request.getDescription(), aggregate);
+        if (request.getPipelined() != null) {
+            walker.setPipelined(request.getPipelined());
+        }
         walker.setCallback(new SnmpWalkCallback() {
             @Override
             public void complete(SnmpWalker tracker, Throwable t) {
@@ -207,4 +213,10 @@ public class SnmpProxyRpcModule extends AbstractXmlRpcModule<SnmpRequestDTO, Snm
     public String getId() {
         return RPC_MODULE_ID;
     }
+
+    @Override
+    public RpcCodec<SnmpRequestDTO, SnmpMultiResponseDTO> getCodec() {
+        return CODEC;
+    }
+
 }
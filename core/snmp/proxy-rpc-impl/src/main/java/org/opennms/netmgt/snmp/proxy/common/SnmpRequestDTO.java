@@ -62,6 +62,9 @@ public class SnmpRequestDTO implements RpcRequest {
     @XmlAttribute(name="description")
     private String description;
 
+    @XmlAttribute(name="pipelined")
+    private Boolean pipelined;
+
     @XmlElement(name="get")
     private List<SnmpGetRequestDTO> gets = new ArrayList<>(0);
 
@@ -123,6 +126,17 @@ public class SnmpRequestDTO implements RpcRequest {
         this.description = description;
     }
 
+    /**
+     * @return whether the walks should be pipelined, or null to leave it to the walker
+     */
+    public Boolean getPipelined() {
+        return pipelined;
+    }
+
+    public void setPipelined(Boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
     public Long getTimeToLive() {
         return timeToLive;
     }
@@ -152,7 +166,7 @@ public class SnmpRequestDTO implements RpcRequest {
 
     @Override
     public int hashCode() {
-        return Objects.hash(location, systemId, agent, gets, walks, description, timeToLive);
+        return Objects.hash(location, systemId, agent, gets, walks, description, pipelined, timeToLive);
     }
 
     @Override
@@ -170,6 +184,7 @@ public class SnmpRequestDTO implements RpcRequest {
                 && Objects.equals(this.gets, other.gets)
                 && Objects.equals(this.walks, other.walks)
                 && Objects.equals(this.description, other.description)
+                && Objects.equals(this.pipelined, other.pipelined)
                 && Objects.equals(this.timeToLive, other.timeToLive);
     }
 }
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.proxy.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+
+import org.junit.Test;
+import org.opennms.core.rpc.api.RpcCodecs;
+import org.opennms.netmgt.snmp.SnmpAgentConfig;
+import org.opennms.netmgt.snmp.SnmpInstId;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.opennms.netmgt.snmp.SnmpResult;
+import org.opennms.netmgt.snmp.SnmpValueFactory;
+import org.opennms.netmgt.snmp.snmp4j.Snmp4JValueFactory;
+
+import com.google.common.collect.Lists;
+
+public class SnmpProxyRpcCodecTest {
+
+    private final SnmpProxyRpcModule module = new SnmpProxyRpcModule();
+
+    @Test
+    public void canRoundTripRequest() throws Exception {
+        final SnmpAgentConfig agent = new SnmpAgentConfig();
+        agent.setAddress(InetAddress.getByName("192.168.0.2"));
+        agent.setVersion(SnmpAgentConfig.VERSION2C);
+        agent.setReadCommunity("notpublic");
+
+        final SnmpWalkRequestDTO walkRequest = new SnmpWalkRequestDTO();
+        walkRequest.setCorrelationId("42");
+        walkRequest.setMaxRepetitions(4);
+        walkRequest.setOids(Lists.newArrayList(
+                SnmpObjId.get(".1.3.6.1.2.1.4.34.1.3"),
+                SnmpObjId.get(".1.3.6.1.2.1.4.34.1.5")));
+
+        final SnmpWalkRequestDTO singleInstanceWalkRequest = new SnmpWalkRequestDTO();
+        singleInstanceWalkRequest.setCorrelationId("43");
+        singleInstanceWalkRequest.setInstance(SnmpInstId.INST_ZERO);
+        singleInstanceWalkRequest.setOids(Lists.newArrayList(SnmpObjId.get(".1.3.6.1.2.1.3.1.3")));
+
+        final SnmpGetRequestDTO getRequest = new SnmpGetRequestDTO();
+        getRequest.setCorrelationId("44");
+        getRequest.setOids(Lists.newArrayList(SnmpObjId.get(".1.3.6.1.2.1.3.1.3.0")));
+
+        final SnmpRequestDTO request = new SnmpRequestDTO();
+        request.setDescription("some random oids");
+        request.setLocation("dc2");
+        request.setSystemId("minion-1");
+        request.setPipelined(true);
+        request.setAgent(agent);
+        request.setWalkRequests(Lists.newArrayList(walkRequest, singleInstanceWalkRequest));
+        request.setGetRequests(Lists.newArrayList(getRequest));
+
+        final byte[] bytes = RpcCodecs.marshalRequest(module, request, true);
+        assertTrue(RpcCodecs.isBinary(bytes));
+        assertEquals(request, RpcCodecs.unmarshalRequest(module, bytes));
+    }
+
+    @Test
+    public void canRoundTripResponse() {
+        final SnmpValueFactory snmpValueFactory = new Snmp4JValueFactory();
+        final SnmpResponseDTO responseDTO = new SnmpResponseDTO();
+        responseDTO.setCorrelationId("42");
+        responseDTO.getResults().add(new SnmpResult(
+                SnmpObjId.get(".1.3.6.1.2"),
+                new SnmpInstId(".1.3.6.1.2.1.4.34.1.3.1.2.3.4"),
+                snmpValueFactory.getCounter64(BigInteger.TEN)));
+        responseDTO.getResults().add(new SnmpResult(
+                SnmpObjId.get(".1.3.6.1.2.1.1.5"),
+                SnmpInstId.INST_ZERO,
+                snmpValueFactory.getOctetString("sysName".getBytes())));
+
+        final SnmpMultiResponseDTO response = new SnmpMultiResponseDTO();
+        response.getResponses().add(responseDTO);
+
+        final byte[] bytes = RpcCodecs.marshalResponse(module, response, true);
+        assertTrue(RpcCodecs.isBinary(bytes));
+        assertEquals(response, RpcCodecs.unmarshalResponse(module, bytes));
+    }
+
+    @Test
+    public void canRoundTripErrorResponse() {
+        final SnmpMultiResponseDTO response = new SnmpMultiResponseDTO(new IllegalStateException("walk failed"));
+
+        final byte[] bytes = RpcCodecs.marshalResponse(module, response, true);
+        final SnmpMultiResponseDTO decoded = RpcCodecs.unmarshalResponse(module, bytes);
+        assertEquals(response, decoded);
+        assertEquals(response.getErrorMessage(), decoded.getErrorMessage());
+    }
+}
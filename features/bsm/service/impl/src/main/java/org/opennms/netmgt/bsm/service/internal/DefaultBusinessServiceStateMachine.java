@@ -36,15 +36,21 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
@@ -83,50 +89,82 @@ import edu.uci.ics.jung.algorithms.layout.KKLayout;
 import edu.uci.ics.jung.algorithms.layout.Layout;
 import edu.uci.ics.jung.visualization.VisualizationImageServer;
 
+/**
+ * Maintains the operational status of all the vertices in the business service graph.
+ *
+ * Status changes are applied by a single writer at a time: updates are queued and
+ * whichever caller holds the write lock drains the queue, applies all pending
+ * updates as one batch and only re-reduces the ancestors of the edges whose status
+ * actually changed, deepest vertices first, so that every affected vertex is reduced
+ * at most once per batch. Once a batch is applied, an immutable {@link StatusSnapshot}
+ * is published, so status lookups never block on writers. The analysis methods walk
+ * the statuses of the live graph and hold the read lock while doing so.
+ */
 public class DefaultBusinessServiceStateMachine implements BusinessServiceStateMachine {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultBusinessServiceStateMachine.class);
     public static final Status MIN_SEVERITY = Status.NORMAL;
 
+    /**
+     * Orders the vertices from the deepest level up, so that all children of
+     * a vertex are settled before the vertex itself is reduced.
+     */
+    private static final Comparator<GraphVertex> DEEPEST_FIRST = Comparator.comparingInt(GraphVertex::getLevel).reversed();
+
     @Autowired
-    private AlarmProvider m_alarmProvider;
+    private volatile AlarmProvider m_alarmProvider;
+
+    private final List<BusinessServiceStateChangeHandler> m_handlers = new CopyOnWriteArrayList<>();
 
-    private final List<BusinessServiceStateChangeHandler> m_handlers = Lists.newArrayList();
+    /**
+     * Only the holder of the write lock may touch {@link #m_g} or the statuses of its
+     * vertices and edges. Readers of these statuses must hold the read lock.
+     */
     private final ReadWriteLock m_rwLock = new ReentrantReadWriteLock();
+    private final Queue<PendingUpdate> m_pendingUpdates = new ConcurrentLinkedQueue<>();
     private BusinessServiceGraph m_g = new BusinessServiceGraphImpl(Collections.emptyList());
+    private volatile StatusSnapshot m_snapshot = StatusSnapshot.of(m_g);
 
     @Override
     public void setBusinessServices(List<BusinessService> businessServices) {
         m_rwLock.writeLock().lock();
         try {
+            // Apply any updates that were queued against the current graph first
+            drainPendingUpdates();
+
             // Create a new graph
             BusinessServiceGraph g = new BusinessServiceGraphImpl(businessServices);
 
             // Prime the graph with the state from the previous graph and
             // keep track of the new reductions keys
+            final Map<GraphVertex, Status> updates = new LinkedHashMap<>();
             Set<String> reductionsKeysToLookup = Sets.newHashSet();
             for (String reductionKey : g.getReductionKeys()) {
                 GraphVertex reductionKeyVertex = m_g.getVertexByReductionKey(reductionKey);
                 if (reductionKeyVertex != null) {
-                    updateAndPropagateVertex(g, g.getVertexByReductionKey(reductionKey), reductionKeyVertex.getStatus());
+                    updates.put(g.getVertexByReductionKey(reductionKey), reductionKeyVertex.getStatus());
                 } else {
                     reductionsKeysToLookup.add(reductionKey);
                 }
             }
 
-            if (m_alarmProvider == null && reductionsKeysToLookup.size() > 0) {
+            final AlarmProvider alarmProvider = m_alarmProvider;
+            if (alarmProvider == null && reductionsKeysToLookup.size() > 0) {
                 LOG.warn("There are one or more reduction keys to lookup, but no alarm provider is set.");
             } else {
                 // Query the status of the reductions keys that were added
                 // We do this so that we can immediately reflect the state of the new
                 // graph without having to wait for calls to handleNewOrUpdatedAlarm()
                 if (reductionsKeysToLookup.size() > 0) {
-                    final Map<String, AlarmWrapper> lookup = m_alarmProvider.lookup(reductionsKeysToLookup);
+                    final Map<String, AlarmWrapper> lookup = alarmProvider.lookup(reductionsKeysToLookup);
                     for (Entry<String, AlarmWrapper> eachEntry : lookup.entrySet()) {
-                        updateAndPropagateVertex(g, g.getVertexByReductionKey(eachEntry.getKey()), eachEntry.getValue().getStatus());
+                        updates.put(g.getVertexByReductionKey(eachEntry.getKey()), eachEntry.getValue().getStatus());
                     }
                 }
             }
+            propagate(g, updates);
+
             m_g = g;
+            m_snapshot = StatusSnapshot.of(g);
         } finally {
             m_rwLock.writeLock().unlock();
         }
@@ -134,10 +172,13 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     @Override
     public void handleNewOrUpdatedAlarm(AlarmWrapper alarm) {
+        // Queue the update and apply it, along with any other updates that were queued
+        // concurrently. If another writer holds the lock, it may apply our update
+        // before we get to it, in which case there is nothing left for us to do.
+        m_pendingUpdates.add(new PendingUpdate(alarm.getReductionKey(), alarm.getStatus()));
         m_rwLock.writeLock().lock();
         try {
-            // Recursively propagate the status
-            updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
+            drainPendingUpdates();
         } finally {
             m_rwLock.writeLock().unlock();
         }
@@ -145,12 +186,18 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     @Override
     public void handleAllAlarms(List<AlarmWrapper> alarms) {
-        final Set<String> reductionKeysFromGivenAlarms = new HashSet<>(alarms.size());
         m_rwLock.writeLock().lock();
         try {
+            drainPendingUpdates();
+
+            final Map<GraphVertex, Status> updates = new LinkedHashMap<>();
+            final Set<String> reductionKeysFromGivenAlarms = new HashSet<>(alarms.size());
             for (AlarmWrapper alarm : alarms) {
-                // Recursively propagate the status for all of the given alarms
-                updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(alarm.getReductionKey()), alarm.getStatus());
+                // Apply the status for all of the given alarms
+                final GraphVertex vertex = m_g.getVertexByReductionKey(alarm.getReductionKey());
+                if (vertex != null) {
+                    updates.put(vertex, alarm.getStatus());
+                }
                 // Keep track of the reduction keys that have been processed
                 reductionKeysFromGivenAlarms.add(alarm.getReductionKey());
             }
@@ -158,14 +205,63 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
             for (String missingReductionKey : Sets.difference(m_g.getReductionKeys(), reductionKeysFromGivenAlarms)) {
                 // There is a vertex on the graph that corresponds to this reduction key
                 // but no alarm with this reduction key exists
-                updateAndPropagateVertex(m_g, m_g.getVertexByReductionKey(missingReductionKey), Status.INDETERMINATE);
+                updates.put(m_g.getVertexByReductionKey(missingReductionKey), Status.INDETERMINATE);
             }
+
+            publish(propagate(m_g, updates));
         } finally {
             m_rwLock.writeLock().unlock();
         }
     }
 
-    private void updateAndPropagateVertex(BusinessServiceGraph graph, GraphVertex vertex, Status newStatus) {
+    /**
+     * Applies all of the queued updates to the current graph as a single batch.
+     * Must be called while holding the write lock.
+     */
+    private void drainPendingUpdates() {
+        if (m_pendingUpdates.isEmpty()) {
+            return;
+        }
+        final Map<GraphVertex, Status> updates = new LinkedHashMap<>();
+        PendingUpdate update;
+        while ((update = m_pendingUpdates.poll()) != null) {
+            final GraphVertex vertex = m_g.getVertexByReductionKey(update.reductionKey);
+            if (vertex != null) {
+                // Later updates for the same reduction key supersede earlier ones
+                updates.put(vertex, update.status);
+            }
+        }
+        publish(propagate(m_g, updates));
+    }
+
+    /**
+     * Sets the status of the given vertices and propagates the changes up the graph.
+     *
+     * Only the parents of edges whose mapped status changed are re-reduced. These are
+     * processed deepest first, so that a vertex with several updated children is only
+     * reduced once.
+     *
+     * @return the vertices whose status changed
+     */
+    private List<GraphVertex> propagate(BusinessServiceGraph graph, Map<GraphVertex, Status> updates) {
+        final List<GraphVertex> updatedVertices = Lists.newArrayList();
+        final PriorityQueue<GraphVertex> dirty = new PriorityQueue<>(DEEPEST_FIRST);
+        final Set<GraphVertex> queued = Sets.newIdentityHashSet();
+
+        for (Entry<GraphVertex, Status> update : updates.entrySet()) {
+            updateVertex(graph, update.getKey(), update.getValue(), updatedVertices, dirty, queued);
+        }
+
+        GraphVertex vertex;
+        while ((vertex = dirty.poll()) != null) {
+            queued.remove(vertex);
+            updateVertex(graph, vertex, reduce(graph, vertex), updatedVertices, dirty, queued);
+        }
+        return updatedVertices;
+    }
+
+    private void updateVertex(BusinessServiceGraph graph, GraphVertex vertex, Status newStatus,
+                              List<GraphVertex> updatedVertices, Queue<GraphVertex> dirty, Set<GraphVertex> queued) {
         if (vertex == null) {
             // Nothing to do here
             return;
@@ -181,12 +277,12 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
             return;
         }
         vertex.setStatus(newStatus);
+        updatedVertices.add(vertex);
 
         // Notify the listeners
         onStatusUpdated(graph, vertex, previousStatus);
 
         // Update the edges with the mapped status
-        List<GraphEdge> updatedEges = Lists.newArrayList();
         for (GraphEdge edge : graph.getInEdges(vertex)) {
             Status mappedStatus = newStatus;
             if (newStatus.isGreaterThan(MIN_SEVERITY)) {
@@ -201,38 +297,35 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
                 continue;
             }
 
-            // Update the status and add it to the list of edges to propagate
+            // Update the status and schedule the parent for reduction
             edge.setStatus(mappedStatus);
-            updatedEges.add(edge);
-        }
-
-        // Propagate once all of the edges have been updated
-        for (GraphEdge edge : updatedEges) {
-            reduceUpdateAndPropagateVertex(graph, graph.getOpposite(vertex, edge));
+            final GraphVertex parent = graph.getOpposite(vertex, edge);
+            if (parent != null && queued.add(parent)) {
+                dirty.add(parent);
+            }
         }
     }
 
-    private void reduceUpdateAndPropagateVertex(BusinessServiceGraph graph, GraphVertex vertex) {
-        if (vertex == null) {
-            // Nothing to do here
-            return;
-        }
-
+    private static Status reduce(BusinessServiceGraph graph, GraphVertex vertex) {
         // Calculate the weighed statuses from the child edges
         List<StatusWithIndex> statuses = weighEdges(graph.getOutEdges(vertex));
 
         // Reduce
         Optional<StatusWithIndices> reducedStatus = vertex.getReductionFunction().reduce(statuses);
-
-        Status newStatus;
         if (reducedStatus.isPresent()) {
-            newStatus = reducedStatus.get().getStatus();
+            return reducedStatus.get().getStatus();
         } else {
-            newStatus = MIN_SEVERITY;
+            return MIN_SEVERITY;
         }
+    }
 
-        // Update and propagate
-        updateAndPropagateVertex(graph, vertex, newStatus);
+    /**
+     * Publishes a new snapshot reflecting the updated vertices of the current graph.
+     */
+    private void publish(List<GraphVertex> updatedVertices) {
+        if (!updatedVertices.isEmpty()) {
+            m_snapshot = m_snapshot.with(updatedVertices);
+        }
     }
 
     public static List<StatusWithIndex> weighEdges(Collection<GraphEdge> edges) {
@@ -297,94 +390,47 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     @Override
     public Status getOperationalStatus(BusinessService businessService) {
         Objects.requireNonNull(businessService);
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByBusinessServiceId(businessService.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.graph.getVertexByBusinessServiceId(businessService.getId()));
     }
 
     @Override
     public Status getOperationalStatus(IpService ipService) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByIpServiceId(ipService.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.graph.getVertexByIpServiceId(ipService.getId()));
     }
 
     @Override
     public Status getOperationalStatus(String reductionKey) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByReductionKey(reductionKey);
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.graph.getVertexByReductionKey(reductionKey));
     }
 
     @Override
     public Status getOperationalStatus(Edge edge) {
-        m_rwLock.readLock().lock();
-        try {
-            GraphVertex vertex = m_g.getVertexByEdgeId(edge.getId());
-            if (vertex != null) {
-                return vertex.getStatus();
-            }
-            return null;
-        } finally {
-            m_rwLock.readLock().unlock();
-        }
+        final StatusSnapshot snapshot = m_snapshot;
+        return snapshot.getStatus(snapshot.graph.getVertexByEdgeId(edge.getId()));
     }
 
     public void setAlarmProvider(AlarmProvider alarmProvider) {
-        m_rwLock.writeLock().lock();
-        try {
-            m_alarmProvider = alarmProvider;
-        } finally {
-            m_rwLock.writeLock().unlock();
-        }
+        m_alarmProvider = alarmProvider;
     }
 
     @Override
     public void addHandler(BusinessServiceStateChangeHandler handler, Map<String, String> attributes) {
-        m_rwLock.writeLock().lock();
-        try {
-            m_handlers.add(handler);
-        } finally {
-            m_rwLock.writeLock().unlock();
-        }
+        m_handlers.add(handler);
     }
 
     @Override
     public boolean removeHandler(BusinessServiceStateChangeHandler handler, Map<String, String> attributes) {
-        m_rwLock.writeLock().lock();
-        try {
-            return m_handlers.remove(handler);
-        } finally {
-            m_rwLock.writeLock().unlock();
-        }
+        return m_handlers.remove(handler);
     }
 
     @Override
     public void renderGraphToPng(File tempFile) {
         m_rwLock.readLock().lock();
         try {
-            Layout<GraphVertex,GraphEdge> layout = new KKLayout<GraphVertex,GraphEdge>(m_g);
+            Layout<GraphVertex,GraphEdge> layout = new KKLayout<GraphVertex,GraphEdge>(getGraph());
             layout.setSize(new Dimension(1024,1024)); // Size of the layout
 
             VisualizationImageServer<GraphVertex, GraphEdge> vv = new VisualizationImageServer<GraphVertex, GraphEdge>(layout, layout.getSize());
@@ -431,15 +477,16 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     @Override
     public BusinessServiceGraph getGraph() {
-        return m_g;
+        return m_snapshot.graph;
     }
 
     @Override
     public Set<GraphEdge> calculateImpacting(BusinessService businessService) {
         m_rwLock.readLock().lock();
         try {
-            final GraphVertex vertex = m_g.getVertexByBusinessServiceId(businessService.getId());
-            return GraphAlgorithms.calculateImpacting(m_g, vertex);
+            final BusinessServiceGraph graph = getGraph();
+            final GraphVertex vertex = graph.getVertexByBusinessServiceId(businessService.getId());
+            return GraphAlgorithms.calculateImpacting(graph, vertex);
         } finally {
             m_rwLock.readLock().unlock();
         }
@@ -447,46 +494,43 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     @Override
     public BusinessServiceStateMachine clone(boolean preserveState) {
-        m_rwLock.readLock().lock();
-        try {
-            final BusinessServiceStateMachine sm = new DefaultBusinessServiceStateMachine();
+        final BusinessServiceStateMachine sm = new DefaultBusinessServiceStateMachine();
+
+        // Rebuild the graph using the business services from the existing state machine
+        final StatusSnapshot snapshot = m_snapshot;
+        final BusinessServiceGraph graph = snapshot.graph;
+        sm.setBusinessServices(graph.getVertices().stream()
+                .map(GraphVertex::getBusinessService)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+
+        // Prime the state
+        if (preserveState) {
+            for (String reductionKey : graph.getReductionKeys()) {
+                final Status status = snapshot.getStatus(graph.getVertexByReductionKey(reductionKey));
+                sm.handleNewOrUpdatedAlarm(new AlarmWrapper() {
+                    @Override
+                    public String getReductionKey() {
+                        return reductionKey;
+                    }
 
-            // Rebuild the graph using the business services from the existing state machine
-            final BusinessServiceGraph graph = getGraph();
-            sm.setBusinessServices(graph.getVertices().stream()
-                    .map(GraphVertex::getBusinessService)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList()));
-
-            // Prime the state
-            if (preserveState) {
-                for (String reductionKey : graph.getReductionKeys()) {
-                    GraphVertex reductionKeyVertex = graph.getVertexByReductionKey(reductionKey);
-                    sm.handleNewOrUpdatedAlarm(new AlarmWrapper() {
-                        @Override
-                        public String getReductionKey() {
-                            return reductionKey;
-                        }
-
-                        @Override
-                        public Status getStatus() {
-                            return reductionKeyVertex.getStatus();
-                        }
-                    });
-                }
+                    @Override
+                    public Status getStatus() {
+                        return status;
+                    }
+                });
             }
-            return sm;
-        } finally {
-            m_rwLock.readLock().unlock();
         }
+        return sm;
     }
 
     @Override
     public List<GraphVertex> calculateRootCause(BusinessService businessService) {
         m_rwLock.readLock().lock();
         try {
-            final GraphVertex vertex = m_g.getVertexByBusinessServiceId(businessService.getId());
-            return GraphAlgorithms.calculateRootCause(m_g, vertex);
+            final BusinessServiceGraph graph = getGraph();
+            final GraphVertex vertex = graph.getVertexByBusinessServiceId(businessService.getId());
+            return GraphAlgorithms.calculateRootCause(graph, vertex);
         } finally {
             m_rwLock.readLock().unlock();
         }
@@ -496,8 +540,8 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     public List<GraphVertex> calculateImpact(BusinessService businessService) {
         m_rwLock.readLock().lock();
         try {
-            final GraphVertex vertex = m_g.getVertexByBusinessServiceId(businessService.getId());
-            return calculateImpact(vertex);
+            final BusinessServiceGraph graph = getGraph();
+            return GraphAlgorithms.calculateImpact(graph, graph.getVertexByBusinessServiceId(businessService.getId()));
         } finally {
             m_rwLock.readLock().unlock();
         }
@@ -507,8 +551,8 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     public List<GraphVertex> calculateImpact(IpService ipService) {
         m_rwLock.readLock().lock();
         try {
-            final GraphVertex vertex = m_g.getVertexByIpServiceId(ipService.getId());
-            return calculateImpact(vertex);
+            final BusinessServiceGraph graph = getGraph();
+            return GraphAlgorithms.calculateImpact(graph, graph.getVertexByIpServiceId(ipService.getId()));
         } finally {
             m_rwLock.readLock().unlock();
         }
@@ -518,8 +562,8 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     public List<GraphVertex> calculateImpact(Application application) {
         m_rwLock.readLock().lock();
         try {
-            final GraphVertex vertex = m_g.getVertexByApplicationId(application.getId());
-            return calculateImpact(vertex);
+            final BusinessServiceGraph graph = getGraph();
+            return GraphAlgorithms.calculateImpact(graph, graph.getVertexByApplicationId(application.getId()));
         } finally {
             m_rwLock.readLock().unlock();
         }
@@ -529,8 +573,8 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
     public List<GraphVertex> calculateImpact(String reductionKey) {
         m_rwLock.readLock().lock();
         try {
-            final GraphVertex vertex = m_g.getVertexByReductionKey(reductionKey);
-            return calculateImpact(vertex);
+            final BusinessServiceGraph graph = getGraph();
+            return GraphAlgorithms.calculateImpact(graph, graph.getVertexByReductionKey(reductionKey));
         } finally {
             m_rwLock.readLock().unlock();
         }
@@ -538,39 +582,117 @@ public class DefaultBusinessServiceStateMachine implements BusinessServiceStateM
 
     @Override
     public ThresholdResultExplanation explain(BusinessService businessService, Threshold threshold) {
-        final GraphVertex vertex = getGraph().getVertexByBusinessServiceId(businessService.getId());
+        m_rwLock.readLock().lock();
+        try {
+            final BusinessServiceGraph graph = getGraph();
+            final GraphVertex vertex = graph.getVertexByBusinessServiceId(businessService.getId());
+
+            // Calculate the weighed statuses from the child edges
+            List<StatusWithIndex> statusesWithIndices = weighEdges(graph.getOutEdges(vertex));
+            List<Status> statuses = statusesWithIndices.stream()
+                .map(StatusWithIndex::getStatus)
+                .collect(Collectors.toList());
+
+            // Reduce
+            Status reducedStatus = threshold.reduce(statusesWithIndices)
+                .orElse(new StatusWithIndices(MIN_SEVERITY, Collections.emptyList()))
+                .getStatus();
+
+            ThresholdResultExplanation explanation = new ThresholdResultExplanation();
+            explanation.setStatus(reducedStatus);
+            explanation.setHitsByStatus(threshold.getHitsByStatus(statuses));
+            explanation.setGraphEdges(graph.getOutEdges(vertex));
+            explanation.setWeightStatuses(statuses);
+            explanation.setFunction(threshold);
+
+            Map<GraphEdge, GraphVertex> graphEdgeToGraphVertex = new HashMap<>();
+            for (Edge eachEdge : businessService.getEdges()) {
+                GraphVertex vertexForEdge = graph.getVertexByEdgeId(eachEdge.getId());
+                GraphEdge graphEdge = graph.getGraphEdgeByEdgeId(eachEdge.getId());
+                if (vertexForEdge != null && graphEdge != null) {
+                    graphEdgeToGraphVertex.put(graphEdge, vertexForEdge);
+                }
+            }
+            explanation.setGraphEdgeToGraphVertexMapping(graphEdgeToGraphVertex);
+            return explanation;
+        } finally {
+            m_rwLock.readLock().unlock();
+        }
+    }
 
-        // Calculate the weighed statuses from the child edges
-        List<StatusWithIndex> statusesWithIndices = weighEdges(getGraph().getOutEdges(vertex));
-        List<Status> statuses = statusesWithIndices.stream()
-            .map(StatusWithIndex::getStatus)
-            .collect(Collectors.toList());
+    /**
+     * A status update for a reduction key which has yet to be applied to the graph.
+     */
+    private static final class PendingUpdate {
+        private final String reductionKey;
+        private final Status status;
 
-        // Reduce
-        Status reducedStatus = threshold.reduce(statusesWithIndices)
-            .orElse(new StatusWithIndices(MIN_SEVERITY, Collections.emptyList()))
-            .getStatus();
-
-        ThresholdResultExplanation explanation = new ThresholdResultExplanation();
-        explanation.setStatus(reducedStatus);
-        explanation.setHitsByStatus(threshold.getHitsByStatus(statuses));
-        explanation.setGraphEdges(getGraph().getOutEdges(vertex));
-        explanation.setWeightStatuses(statuses);
-        explanation.setFunction(threshold);
-
-        Map<GraphEdge, GraphVertex> graphEdgeToGraphVertex = new HashMap<>();
-        for (Edge eachEdge : businessService.getEdges()) {
-            GraphVertex vertexForEdge = getGraph().getVertexByEdgeId(eachEdge.getId());
-            GraphEdge graphEdge = getGraph().getGraphEdgeByEdgeId(eachEdge.getId());
-            if (vertexForEdge != null && graphEdge != null) {
-                graphEdgeToGraphVertex.put(graphEdge, vertexForEdge);
-            }
+        private PendingUpdate(String reductionKey, Status status) {
+            this.reductionKey = reductionKey;
+            this.status = status;
         }
-        explanation.setGraphEdgeToGraphVertexMapping(graphEdgeToGraphVertex);
-        return explanation;
     }
 
-    private List<GraphVertex> calculateImpact(GraphVertex vertex) {
-        return GraphAlgorithms.calculateImpact(m_g, vertex);
+    /**
+     * Immutable view of the graph and the status of its vertices at the end of a batch of updates.
+     *
+     * The statuses are stored in fixed size pages, so that publishing a new snapshot
+     * only copies the pages which contain updated vertices.
+     */
+    private static final class StatusSnapshot {
+        private static final int PAGE_SHIFT = 6;
+        private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+        private final BusinessServiceGraph graph;
+        // Shared by all the snapshots of the same graph, never modified once built
+        private final Map<GraphVertex, Integer> indexByVertex;
+        private final Status[][] pages;
+
+        private StatusSnapshot(BusinessServiceGraph graph, Map<GraphVertex, Integer> indexByVertex, Status[][] pages) {
+            this.graph = graph;
+            this.indexByVertex = indexByVertex;
+            this.pages = pages;
+        }
+
+        private static StatusSnapshot of(BusinessServiceGraph graph) {
+            final Map<GraphVertex, Integer> indexByVertex = new IdentityHashMap<>(graph.getVertexCount());
+            final Status[][] pages = new Status[(graph.getVertexCount() + PAGE_MASK) >>> PAGE_SHIFT][];
+            for (int i = 0; i < pages.length; i++) {
+                pages[i] = new Status[PAGE_SIZE];
+            }
+            int index = 0;
+            for (GraphVertex vertex : graph.getVertices()) {
+                indexByVertex.put(vertex, index);
+                pages[index >>> PAGE_SHIFT][index & PAGE_MASK] = vertex.getStatus();
+                index++;
+            }
+            return new StatusSnapshot(graph, indexByVertex, pages);
+        }
+
+        private StatusSnapshot with(Collection<GraphVertex> updatedVertices) {
+            final Status[][] pages = this.pages.clone();
+            for (GraphVertex vertex : updatedVertices) {
+                final int index = indexByVertex.get(vertex);
+                final int page = index >>> PAGE_SHIFT;
+                if (pages[page] == this.pages[page]) {
+                    // Copy the page the first time it is modified
+                    pages[page] = this.pages[page].clone();
+                }
+                pages[page][index & PAGE_MASK] = vertex.getStatus();
+            }
+            return new StatusSnapshot(graph, indexByVertex, pages);
+        }
+
+        private Status getStatus(GraphVertex vertex) {
+            if (vertex == null) {
+                return null;
+            }
+            final Integer index = indexByVertex.get(vertex);
+            if (index == null) {
+                return null;
+            }
+            return pages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+        }
     }
 }
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.bsm.service.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opennms.netmgt.bsm.mock.MockAlarmWrapper;
+import org.opennms.netmgt.bsm.mock.MockBusinessServiceHierarchy;
+import org.opennms.netmgt.bsm.service.model.AlarmWrapper;
+import org.opennms.netmgt.bsm.service.model.BusinessService;
+import org.opennms.netmgt.bsm.service.model.Status;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure the status propagation of the
+ * {@link DefaultBusinessServiceStateMachine} on large synthetic hierarchies.
+ * <p>
+ * The hierarchies are generated with {@link MockBusinessServiceHierarchy#synthetic()}: every root business
+ * service is the top of a tree of the given depth and fanout, and the leaves share reduction keys from a common pool.
+ * {@link #handleNewOrUpdatedAlarm} measures single alarm updates, {@link #handleAllAlarms} measures alarm snapshots
+ * and the {@code readWhileWriting} group measures how {@link DefaultBusinessServiceStateMachine#getOperationalStatus(BusinessService)}
+ * behaves while alarms are being propagated.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BusinessServiceStateMachineBenchmark {
+
+    private static final Status[] STATUSES = new Status[] {
+            Status.NORMAL, Status.WARNING, Status.MINOR, Status.MAJOR, Status.CRITICAL
+    };
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"100"})
+        public int roots;
+
+        @Param({"3"})
+        public int depth;
+
+        @Param({"5"})
+        public int fanout;
+
+        @Param({"5"})
+        public int reductionKeysPerLeaf;
+
+        @Param({"5000"})
+        public int reductionKeys;
+
+        public DefaultBusinessServiceStateMachine stateMachine;
+        public String[] reductionKeyPool;
+        public BusinessService[] businessServices;
+
+        @Setup
+        public void setUp() {
+            final MockBusinessServiceHierarchy.SyntheticHierarchyBuilder builder = MockBusinessServiceHierarchy.synthetic()
+                    .withRoots(roots)
+                    .withDepth(depth)
+                    .withFanout(fanout)
+                    .withReductionKeysPerLeaf(reductionKeysPerLeaf)
+                    .withReductionKeyPoolSize(reductionKeys)
+                    .withSeed(42);
+            final MockBusinessServiceHierarchy hierarchy = builder.build();
+            reductionKeyPool = builder.getReductionKeys().toArray(new String[0]);
+            businessServices = hierarchy.getBusinessServices().toArray(new BusinessService[0]);
+
+            stateMachine = new DefaultBusinessServiceStateMachine();
+            stateMachine.setBusinessServices(hierarchy.getBusinessServices());
+        }
+
+        public AlarmWrapper randomAlarm() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            return new MockAlarmWrapper(reductionKeyPool[random.nextInt(reductionKeyPool.length)],
+                    STATUSES[random.nextInt(STATUSES.length)]);
+        }
+    }
+
+    @Benchmark
+    public void handleNewOrUpdatedAlarm(BState state) {
+        state.stateMachine.handleNewOrUpdatedAlarm(state.randomAlarm());
+    }
+
+    @Benchmark
+    public void handleAllAlarms(BState state) {
+        // Alarms for roughly 10% of the reduction keys
+        final List<AlarmWrapper> alarms = new ArrayList<>(state.reductionKeyPool.length / 10);
+        for (int i = 0; i < state.reductionKeyPool.length / 10; i++) {
+            alarms.add(state.randomAlarm());
+        }
+        state.stateMachine.handleAllAlarms(alarms);
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(1)
+    public void writer(BState state) {
+        state.stateMachine.handleNewOrUpdatedAlarm(state.randomAlarm());
+    }
+
+    @Benchmark
+    @Group("readWhileWriting")
+    @GroupThreads(3)
+    public Status reader(BState state) {
+        final BusinessService businessService = state.businessServices[ThreadLocalRandom.current().nextInt(state.businessServices.length)];
+        return state.stateMachine.getOperationalStatus(businessService);
+    }
+}
@@ -56,6 +56,7 @@ import org.opennms.netmgt.bsm.service.model.graph.GraphVertex;
 import org.opennms.netmgt.bsm.test.LoggingStateChangeHandler;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 public class DefaultBusinessServiceStateMachineTest {
@@ -156,6 +157,57 @@ public class DefaultBusinessServiceStateMachineTest {
         assertEquals(1, stateChangeHandler.getStateChanges().size());
     }
 
+    @Test
+    public void canPropagateAllAlarmsAsOneBatch() {
+        // Create a hierarchy where two business services share a reduction key
+        MockBusinessServiceHierarchy h = MockBusinessServiceHierarchy.builder()
+                .withBusinessService(1)
+                    .withBusinessService(2)
+                        .withReductionKey(1, "a1")
+                        .withReductionKey(2, "a2")
+                        .commit()
+                    .withBusinessService(3)
+                        .withReductionKey(3, "a2")
+                        .withReductionKey(4, "a3")
+                        .commit()
+                    .commit()
+                .build();
+        BusinessService b1 = h.getBusinessServiceById(1);
+        BusinessService b2 = h.getBusinessServiceById(2);
+        BusinessService b3 = h.getBusinessServiceById(3);
+
+        // Setup the state machine
+        BusinessServiceStateMachine stateMachine = new DefaultBusinessServiceStateMachine();
+        LoggingStateChangeHandler stateChangeHandler = new LoggingStateChangeHandler();
+        stateMachine.addHandler(stateChangeHandler, Maps.newHashMap());
+        stateMachine.setBusinessServices(h.getBusinessServices());
+
+        // Send several alarms at once
+        stateMachine.handleAllAlarms(Lists.newArrayList(
+                new MockAlarmWrapper("a1", Status.MINOR),
+                new MockAlarmWrapper("a2", Status.MAJOR),
+                new MockAlarmWrapper("a3", Status.CRITICAL)));
+        assertEquals(Status.MAJOR, stateMachine.getOperationalStatus(b2));
+        assertEquals(Status.CRITICAL, stateMachine.getOperationalStatus(b3));
+        assertEquals(Status.CRITICAL, stateMachine.getOperationalStatus(b1));
+        // Each business service is only reduced, and notified, once
+        assertEquals(3, stateChangeHandler.getStateChanges().size());
+
+        // Clear the alarm on the shared reduction key
+        stateMachine.handleNewOrUpdatedAlarm(new MockAlarmWrapper("a2", Status.NORMAL));
+        assertEquals(Status.MINOR, stateMachine.getOperationalStatus(b2));
+        assertEquals(Status.CRITICAL, stateMachine.getOperationalStatus(b3));
+        assertEquals(Status.CRITICAL, stateMachine.getOperationalStatus(b1));
+        assertEquals(4, stateChangeHandler.getStateChanges().size());
+
+        // Alarms that are missing from the snapshot are cleared
+        stateMachine.handleAllAlarms(Lists.newArrayList(new MockAlarmWrapper("a1", Status.MINOR)));
+        assertEquals(Status.MINOR, stateMachine.getOperationalStatus(b2));
+        assertEquals(Status.NORMAL, stateMachine.getOperationalStatus(b3));
+        assertEquals(Status.MINOR, stateMachine.getOperationalStatus(b1));
+        assertEquals(6, stateChangeHandler.getStateChanges().size());
+    }
+
     @Test
     public void canPerformRootCauseAndImpactAnalysis() {
         // Create a hierarchy using all of the available reduction functions
@@ -30,8 +30,10 @@ package org.opennms.netmgt.bsm.mock;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.opennms.netmgt.bsm.mock.MockBusinessServiceHierarchy.HierarchyBuilder.BusinessServiceBuilder;
 import org.opennms.netmgt.bsm.service.model.BusinessService;
@@ -129,10 +131,97 @@ public class MockBusinessServiceHierarchy {
         }
     }
 
+    /**
+     * Generates large hierarchies for benchmarks and load tests.
+     *
+     * Every root business service is the top of a tree with the given depth and fanout.
+     * The business services at the bottom of the trees reference reduction keys which
+     * are picked at random from a shared pool, so that a single alarm may affect many
+     * business services.
+     */
+    public static class SyntheticHierarchyBuilder {
+        private int m_roots = 1;
+        private int m_depth = 1;
+        private int m_fanout = 1;
+        private int m_reductionKeysPerLeaf = 1;
+        private int m_reductionKeyPoolSize = 1;
+        private long m_seed = 0;
+
+        public SyntheticHierarchyBuilder withRoots(int roots) {
+            m_roots = roots;
+            return this;
+        }
+
+        public SyntheticHierarchyBuilder withDepth(int depth) {
+            m_depth = depth;
+            return this;
+        }
+
+        public SyntheticHierarchyBuilder withFanout(int fanout) {
+            m_fanout = fanout;
+            return this;
+        }
+
+        public SyntheticHierarchyBuilder withReductionKeysPerLeaf(int reductionKeysPerLeaf) {
+            m_reductionKeysPerLeaf = reductionKeysPerLeaf;
+            return this;
+        }
+
+        public SyntheticHierarchyBuilder withReductionKeyPoolSize(int reductionKeyPoolSize) {
+            m_reductionKeyPoolSize = reductionKeyPoolSize;
+            return this;
+        }
+
+        public SyntheticHierarchyBuilder withSeed(long seed) {
+            m_seed = seed;
+            return this;
+        }
+
+        public List<String> getReductionKeys() {
+            return IntStream.range(0, m_reductionKeyPoolSize)
+                    .mapToObj(SyntheticHierarchyBuilder::reductionKey)
+                    .collect(Collectors.toList());
+        }
+
+        public MockBusinessServiceHierarchy build() {
+            final HierarchyBuilder builder = new HierarchyBuilder();
+            final Random random = new Random(m_seed);
+            final long[] nextId = new long[] { 1 };
+            for (int i = 0; i < m_roots; i++) {
+                addBusinessService(builder, random, nextId, 1);
+            }
+            return builder.build();
+        }
+
+        private MockBusinessService addBusinessService(HierarchyBuilder builder, Random random, long[] nextId, int level) {
+            final MockBusinessService businessService = builder.getOrCreateBusinessService(nextId[0]++);
+            if (level < m_depth) {
+                for (int i = 0; i < m_fanout; i++) {
+                    final MockBusinessService child = addBusinessService(builder, random, nextId, level + 1);
+                    businessService.addEdge(new MockChildEdge(nextId[0]++, child));
+                }
+            } else {
+                for (int i = 0; i < m_reductionKeysPerLeaf; i++) {
+                    final String reductionKey = reductionKey(random.nextInt(m_reductionKeyPoolSize));
+                    businessService.addEdge(new MockReductionKeyEdge(nextId[0]++, reductionKey, null));
+                }
+            }
+            return businessService;
+        }
+
+        private static String reductionKey(int index) {
+            return "synthetic:" + index;
+        }
+    }
+
     public static HierarchyBuilder builder() {
         return new HierarchyBuilder();
     }
 
+    public static SyntheticHierarchyBuilder synthetic() {
+        return new SyntheticHierarchyBuilder();
+    }
+
     private final HierarchyBuilder m_builder;
 
     private MockBusinessServiceHierarchy(HierarchyBuilder builder) {
@@ -78,6 +78,11 @@ public class SnmpCollectionSet implements Collectable, CollectionSet {
     
     private static final Logger LOG = LoggerFactory.getLogger(SnmpCollectionSet.class);
 
+    /**
+     * Whether the collection walks keep several PDUs outstanding and adapt their max-repetitions.
+     */
+    private static final boolean PIPELINED_WALKS = Boolean.valueOf(System.getProperty("org.opennms.netmgt.collectd.SnmpCollector.pipelinedWalks", "true"));
+
     public static class RescanNeeded {
         boolean rescanNeeded = false;
         public void rescanIndicated() {
@@ -372,6 +377,7 @@ public class SnmpCollectionSet implements Collectable, CollectionSet {
 
             CompletableFuture<CollectionTracker> future = m_client.walk(getAgentConfig(), getTracker())
                 .withDescription("SnmpCollectors for " + agent.getHostAddress())
+                .withPipelining(PIPELINED_WALKS)
                 .withLocation(getCollectionAgent().getLocationName())
                 .withTimeToLive(m_snmpCollection.getServiceParameters().getTTL())
                 .execute();
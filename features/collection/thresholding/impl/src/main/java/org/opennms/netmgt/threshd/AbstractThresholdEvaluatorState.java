@@ -93,6 +93,23 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
 
     private boolean isStateDirty;
 
+    /**
+     * Incremented every time the state is marked dirty so that a write that completes after the state changed again
+     * does not mark it clean.
+     */
+    private long stateVersion;
+
+    /**
+     * Incremented every time the evaluator is reinitialized so that states serialized before that are not persisted.
+     */
+    private volatile int generation;
+
+    /**
+     * The latest version of the state that was persisted so that a batch flushed late does not overwrite it with an
+     * older one.
+     */
+    private volatile long persistedVersion = -1;
+
     private String key;
 
     private final SerializingBlobStore<T> kvStore;
@@ -103,7 +120,7 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
     
     static final String THRESHOLDING_KV_CONTEXT = "thresholding";
 
-    private final int stateTTL = SystemProperties.getInteger("org.opennms.netmgt.threshd.state_ttl",
+    static final int STATE_TTL = SystemProperties.getInteger("org.opennms.netmgt.threshd.state_ttl",
             (int) TimeUnit.SECONDS.convert(24, TimeUnit.HOURS));
     
     private Long sequenceNumber;
@@ -231,9 +248,18 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
 
     private void persistStateIfNeeded() {
         if (shouldPersist()) {
+            ThresholdStateManager.Batch batch = ThresholdStateManager.currentBatch(thresholdingSession);
+            if (batch != null) {
+                // The state is serialized now since it may change before the batch is written, it remains dirty until
+                // the batch tells us it was persisted
+                batch.enqueue(this, key, fst.asByteArray(state), stateVersion, generation);
+                return;
+            }
+
             try {
-                long newTimestamp = kvStore.put(key, state, THRESHOLDING_KV_CONTEXT, stateTTL);
+                long newTimestamp = kvStore.put(key, state, THRESHOLDING_KV_CONTEXT, STATE_TTL);
                 lastUpdatedCache.put(key, newTimestamp);
+                persistedVersion = Math.max(persistedVersion, stateVersion);
 
                 // If we successfully stored the state we will mark that the persisted state is up to date and no longer
                 // dirty
@@ -244,6 +270,30 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
         }
     }
 
+    /**
+     * Called once a state handed to a {@link ThresholdStateManager.Batch batch} has been persisted.
+     *
+     * @param version   the version of the state that was persisted
+     * @param timestamp the timestamp the state was persisted with
+     */
+    synchronized void statePersisted(long version, long timestamp) {
+        lastUpdatedCache.put(key, timestamp);
+        persistedVersion = Math.max(persistedVersion, version);
+
+        // Only mark the persisted state up to date if it has not changed since it was handed to the batch
+        if (version == stateVersion) {
+            isStateDirty = false;
+        }
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    long getPersistedVersion() {
+        return persistedVersion;
+    }
+
     @SuppressWarnings("unchecked")
     private void fetchState() {
         thresholdingSession.getThresholdStateMonitor().withReadLock(() -> {
@@ -256,6 +306,21 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
                 return;
             }
 
+            ThresholdStateManager.Batch batch = ThresholdStateManager.currentBatch(thresholdingSession);
+            if (batch != null) {
+                batch.stateFetched(key);
+
+                // Use the state read up front by the batch unless we have changes of our own that are not persisted
+                // yet, in which case our copy is the latest
+                Optional<Optional<byte[]>> prefetchedState = batch.getPrefetchedState(key);
+                if (prefetchedState.isPresent() && !firstEvaluation) {
+                    if (!isStateDirty) {
+                        prefetchedState.get().ifPresent(v -> state = (T) fst.asObject(v));
+                    }
+                    return;
+                }
+            }
+
             try {
                 Long lastKnownUpdate = lastUpdatedCache.get(key);
 
@@ -283,6 +348,7 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
      */
     protected void markDirty() {
         isStateDirty = true;
+        stateVersion++;
     }
 
     @Override
@@ -376,6 +442,7 @@ public abstract class AbstractThresholdEvaluatorState<T extends AbstractThreshol
 
     @Override
     public synchronized void reinitialize() {
+        generation++;
         firstEvaluation = true;
         clearStateBeforePersist();
     }
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.features.distributed.kvstore.api.BlobStore;
+import org.opennms.netmgt.threshd.api.ThresholdingSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.swrve.ratelimitedlogger.RateLimitedLog;
+
+/**
+ * Persists the states of the threshold evaluators in batches instead of one at a time.
+ * <p>
+ * A {@link Batch} is opened on the collecting thread for every collection set that a session thresholds. While it is
+ * open, the evaluators of that session hand their dirty states to the batch rather than writing them to the
+ * {@link BlobStore} themselves. The states are coalesced by key and handed to a small pool of flusher threads when
+ * the batch is closed, which writes them with a single {@link BlobStore#putAll(Map, String, Integer)}. The states
+ * remain dirty until they were written, so evaluators keep using their own copy over the one in the store in the
+ * meantime. The queue of batches waiting to be written is bounded: when the flushers fall behind, the collecting thread
+ * writes its batch itself. For distributed sessions, the states that were fetched during the previous cycle are read
+ * back with a single {@link BlobStore#getAll(Collection, String)} when the batch is opened.
+ * <p>
+ * Evaluators that are not evaluated within a batch, i.e. when a state is cleared outside of a collection cycle, keep
+ * persisting their states directly.
+ * <p>
+ * The metrics of the batches are exposed over JMX between {@link #start()} and {@link #close()}. Closing the manager
+ * waits for the batches that are still queued to be written.
+ */
+public class ThresholdStateManager implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ThresholdStateManager.class);
+    private static final RateLimitedLog RATE_LIMITED_LOGGER = RateLimitedLog
+            .withRateLimit(LOG)
+            .maxRate(5).every(Duration.ofSeconds(30))
+            .build();
+
+    private static final ThreadLocal<Batch> CURRENT_BATCH = new ThreadLocal<>();
+
+    private static final int FLUSH_THREADS = 2;
+    private static final int MAX_QUEUED_FLUSHES = 1000;
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ExecutorService flushExecutor;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final Timer flushTimer = metricRegistry.timer("flush");
+    private final Histogram batchSizeHistogram = metricRegistry.histogram("batch-size");
+    private final Timer prefetchTimer = metricRegistry.timer("prefetch");
+    private final JmxReporter jmxReporter = JmxReporter.forRegistry(metricRegistry)
+            .inDomain("org.opennms.netmgt.threshd.state")
+            .build();
+
+    public ThresholdStateManager() {
+        this(new ThreadPoolExecutor(FLUSH_THREADS, FLUSH_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_FLUSHES),
+                new ThreadFactoryBuilder().setNameFormat("threshold-state-flusher-%d").setDaemon(true).build(),
+                // Write on the collecting thread rather than letting unwritten states pile up
+                new ThreadPoolExecutor.CallerRunsPolicy()));
+    }
+
+    @VisibleForTesting
+    ThresholdStateManager(ExecutorService flushExecutor) {
+        this.flushExecutor = Objects.requireNonNull(flushExecutor);
+    }
+
+    public void start() {
+        jmxReporter.start();
+    }
+
+    @Override
+    public void close() {
+        jmxReporter.stop();
+        flushExecutor.shutdown();
+        try {
+            if (!flushExecutor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                LOG.warn("Threshold states were still being written after {}. They will not be persisted.", SHUTDOWN_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Opens a batch for the current thread. The batch must be closed on the same thread in order to persist the states
+     * that were handed to it.
+     *
+     * @param session        the session whose evaluators will use the batch
+     * @param keysToPrefetch the keys of the states to read up front if the session is distributed
+     */
+    Batch openBatch(ThresholdingSession session, Collection<String> keysToPrefetch) {
+        Objects.requireNonNull(session);
+        Objects.requireNonNull(keysToPrefetch);
+
+        Batch batch = new Batch(session);
+        if (session.isDistributed() && !keysToPrefetch.isEmpty()) {
+            batch.prefetch(keysToPrefetch);
+        }
+        CURRENT_BATCH.set(batch);
+        return batch;
+    }
+
+    /**
+     * @return the batch opened on the current thread for the given session, or null if there is none
+     */
+    static Batch currentBatch(ThresholdingSession session) {
+        Batch batch = CURRENT_BATCH.get();
+        return batch != null && batch.session == session ? batch : null;
+    }
+
+    @VisibleForTesting
+    MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public class Batch implements AutoCloseable {
+        private final ThresholdingSession session;
+        private final Map<String, PendingState> pendingStates = new LinkedHashMap<>();
+        private final Map<String, byte[]> prefetchedStates = new HashMap<>();
+        private final Set<String> prefetchedKeys = new HashSet<>();
+        private final Set<String> fetchedKeys = new HashSet<>();
+
+        private Batch(ThresholdingSession session) {
+            this.session = session;
+        }
+
+        private void prefetch(Collection<String> keys) {
+            try (Timer.Context ignored = prefetchTimer.time()) {
+                prefetchedStates.putAll(session.getBlobStore().getAll(keys,
+                        AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT));
+                prefetchedKeys.addAll(keys);
+            } catch (RuntimeException e) {
+                // The evaluators will fall back to fetching their states individually
+                RATE_LIMITED_LOGGER.warn("Failed to prefetch {} threshold states", keys.size(), e);
+            }
+        }
+
+        /**
+         * @return an empty optional if the key was not prefetched, otherwise an optional containing the state that was
+         * read for the key or empty if the key did not exist
+         */
+        Optional<Optional<byte[]>> getPrefetchedState(String key) {
+            if (!prefetchedKeys.contains(key)) {
+                return Optional.empty();
+            }
+            return Optional.of(Optional.ofNullable(prefetchedStates.get(key)));
+        }
+
+        /**
+         * Records that the evaluator with the given key fetched its state during this cycle so that it can be
+         * prefetched for the next one.
+         */
+        void stateFetched(String key) {
+            fetchedKeys.add(key);
+        }
+
+        Set<String> getFetchedKeys() {
+            return Collections.unmodifiableSet(fetchedKeys);
+        }
+
+        /**
+         * Hands a dirty state to the batch, replacing any state previously handed over for the same key.
+         *
+         * @param version    the version of the state that was serialized
+         * @param generation the generation of the evaluator when the state was serialized
+         */
+        void enqueue(AbstractThresholdEvaluatorState<?> evaluator, String key, byte[] state, long version,
+                     int generation) {
+            pendingStates.put(key, new PendingState(evaluator, state, version, generation));
+        }
+
+        /**
+         * Detaches the batch from the current thread and queues its states to be written. The states are no longer
+         * handed to the batch afterwards, so it is not modified anymore while being written.
+         */
+        @Override
+        public void close() {
+            CURRENT_BATCH.remove();
+            if (!pendingStates.isEmpty()) {
+                flushExecutor.execute(this::flush);
+            }
+        }
+
+        private void flush() {
+            // The batches of a session are flushed one at a time, so that a batch that was closed late cannot overwrite
+            // the newer states written by another batch in the meantime
+            synchronized (session) {
+                flushPendingStates();
+            }
+        }
+
+        private void flushPendingStates() {
+            Map<String, byte[]> values = new HashMap<>();
+            List<PendingState> written = new ArrayList<>();
+            OptionalLong[] timestamp = {OptionalLong.empty()};
+
+            // Hold the read lock while writing so that the states cannot be cleared from the store concurrently. States
+            // of evaluators that were reinitialized since they were handed over are dropped, writing them would bring
+            // back what was just cleared. So are states older than the ones already written by another batch.
+            session.getThresholdStateMonitor().withReadLock(() -> {
+                pendingStates.forEach((key, pendingState) -> {
+                    if (pendingState.evaluator.getGeneration() == pendingState.generation
+                            && pendingState.version > pendingState.evaluator.getPersistedVersion()) {
+                        values.put(key, pendingState.state);
+                        written.add(pendingState);
+                    }
+                });
+
+                if (values.isEmpty()) {
+                    return;
+                }
+
+                batchSizeHistogram.update(values.size());
+                try (Timer.Context ignored = flushTimer.time()) {
+                    timestamp[0] = OptionalLong.of(session.getBlobStore().putAll(values,
+                            AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT,
+                            AbstractThresholdEvaluatorState.STATE_TTL));
+                } catch (RuntimeException e) {
+                    // The states remain dirty and will be handed over again the next time they are evaluated
+                    RATE_LIMITED_LOGGER.warn("Failed to store {} threshold states", values.size(), e);
+                }
+            });
+
+            // Notify the evaluators outside of the lock, evaluators acquire the read lock while holding their own
+            timestamp[0].ifPresent(ts -> written.forEach(pendingState ->
+                    pendingState.evaluator.statePersisted(pendingState.version, ts)));
+        }
+    }
+
+    private static class PendingState {
+        private final AbstractThresholdEvaluatorState<?> evaluator;
+        private final byte[] state;
+        private final long version;
+        private final int generation;
+
+        private PendingState(AbstractThresholdEvaluatorState<?> evaluator, byte[] state, long version, int generation) {
+            this.evaluator = evaluator;
+            this.state = state;
+            this.version = version;
+            this.generation = generation;
+        }
+    }
+}
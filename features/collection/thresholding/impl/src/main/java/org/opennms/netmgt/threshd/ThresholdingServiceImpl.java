@@ -36,6 +36,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.opennms.core.soa.lookup.ServiceLookup;
 import org.opennms.core.soa.lookup.ServiceLookupBuilder;
@@ -100,6 +101,8 @@ public class ThresholdingServiceImpl implements ThresholdingService, EventListen
     @Autowired
     private ThresholdStateMonitor thresholdStateMonitor;
 
+    private final ThresholdStateManager thresholdStateManager = new ThresholdStateManager();
+
     private static final ServiceLookup<Class<?>, String> SERVICE_LOOKUP = new ServiceLookupBuilder(new ServiceRegistryLookup(DefaultServiceRegistry.INSTANCE))
             .blocking()
             .build();
@@ -113,6 +116,7 @@ public class ThresholdingServiceImpl implements ThresholdingService, EventListen
     private void init() {
         // When we are on OpenNMS we will have been wired an event manager and can listen for events
         eventIpcManager.addEventListener(this, UEI_LIST);
+        thresholdStateManager.start();
     }
 
     // OSGi init entry point
@@ -120,6 +124,7 @@ public class ThresholdingServiceImpl implements ThresholdingService, EventListen
         // If we were started viag OSGi then we are on Sentinel therefore we will mark ourselves as being distributed
         // for thresholding
         isDistributed = true;
+        thresholdStateManager.start();
         
         reInitializeTimer.scheduleAtFixedRate(new TimerTask() {
             @Override
@@ -131,6 +136,12 @@ public class ThresholdingServiceImpl implements ThresholdingService, EventListen
         }, 0, TimeUnit.MILLISECONDS.convert(5, TimeUnit.MINUTES));
     }
     
+    @PreDestroy
+    public void destroy() {
+        reInitializeTimer.cancel();
+        thresholdStateManager.close();
+    }
+
     private void reinitializeOnTimer() {
         thresholdingSetPersister.reinitializeThresholdingSets();
     }
@@ -219,6 +230,10 @@ public class ThresholdingServiceImpl implements ThresholdingService, EventListen
         this.thresholdingSetPersister = thresholdingSetPersister;
     }
 
+    public ThresholdStateManager getThresholdStateManager() {
+        return thresholdStateManager;
+    }
+
     public void close(ThresholdingSessionImpl session) {
         thresholdingSetPersister.clear(session);
     }
@@ -28,6 +28,9 @@
 
 package org.opennms.netmgt.threshd;
 
+import java.util.Collections;
+import java.util.Set;
+
 import org.opennms.features.distributed.kvstore.api.BlobStore;
 import org.opennms.netmgt.collection.api.CollectionSet;
 import org.opennms.netmgt.collection.api.ServiceParameters;
@@ -54,6 +57,12 @@ public class ThresholdingSessionImpl implements ThresholdingSession {
     
     private final ThresholdStateMonitor thresholdStateMonitor;
 
+    /**
+     * The keys of the states that were fetched during the last collection cycle, these are read in a single batch at
+     * the start of the next one.
+     */
+    private volatile Set<String> fetchedStateKeys = Collections.emptySet();
+
     public ThresholdingSessionImpl(ThresholdingServiceImpl service, ThresholdingSessionKey sessionKey,
                                    ServiceParameters serviceParams, BlobStore blobStore, boolean isDistributed,
                                    ThresholdStateMonitor thresholdStateMonitor) {
@@ -104,7 +113,11 @@ public class ThresholdingSessionImpl implements ThresholdingSession {
         } else if (thresholdingVisitor.hasThresholds()) {
             thresholdingVisitor.setCounterReset(collectionSet.ignorePersist()); // Required to reinitialize the counters.
 
-            collectionSet.visit(thresholdingVisitor);
+            try (ThresholdStateManager.Batch batch = service.getThresholdStateManager().openBatch(this,
+                    fetchedStateKeys)) {
+                collectionSet.visit(thresholdingVisitor);
+                fetchedStateKeys = batch.getFetchedKeys();
+            }
         }
     }
 
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.rpc.utils.mate.EmptyScope;
+import org.opennms.features.distributed.kvstore.api.BlobStore;
+import org.opennms.features.distributed.kvstore.blob.inmemory.InMemoryMapBlobStore;
+import org.opennms.netmgt.config.threshd.Threshold;
+import org.opennms.netmgt.config.threshd.ThresholdType;
+import org.opennms.netmgt.threshd.api.ThresholdStateMonitor;
+import org.opennms.netmgt.threshd.api.ThresholdingSession;
+import org.opennms.netmgt.threshd.api.ThresholdingSessionKey;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class ThresholdStateManagerTest {
+    // Write the batches on the collecting thread so that they can be verified as soon as they are closed
+    private final ThresholdStateManager stateManager = new ThresholdStateManager(MoreExecutors.newDirectExecutorService());
+    private final ThresholdingSession thresholdingSession = mock(ThresholdingSession.class);
+    private final BlobStore blobStore = spy(InMemoryMapBlobStore.withDefaultTicks());
+    private final ThresholdStateMonitor monitor = new BlobStoreAwareMonitor(blobStore);
+
+    @Before
+    public void setup() {
+        ThresholdingSessionKey sessionKey = mock(ThresholdingSessionKey.class);
+        when(sessionKey.getNodeId()).thenReturn(1);
+        when(sessionKey.getLocation()).thenReturn("Default");
+        when(sessionKey.getServiceName()).thenReturn("SNMP");
+
+        when(thresholdingSession.getKey()).thenReturn(sessionKey);
+        when(thresholdingSession.getBlobStore()).thenReturn(blobStore);
+        when(thresholdingSession.getThresholdStateMonitor()).thenReturn(monitor);
+        AbstractThresholdEvaluatorState.clearSerdesMap();
+        stateManager.start();
+    }
+
+    @After
+    public void tearDown() {
+        stateManager.close();
+    }
+
+    @Test
+    public void persistsStatesOfACycleTogether() {
+        ThresholdConfigWrapper wrapperA = getWrapper("ds-a");
+        ThresholdConfigWrapper wrapperB = getWrapper("ds-b");
+        ThresholdEvaluatorState itemA = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapperA,
+                thresholdingSession);
+        ThresholdEvaluatorState itemB = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapperB,
+                thresholdingSession);
+
+        try (ThresholdStateManager.Batch batch = stateManager.openBatch(thresholdingSession, Collections.emptySet())) {
+            itemA.evaluate(100.0, wrapperA.interpolateThresholdValues(EmptyScope.EMPTY), null);
+            itemB.evaluate(100.0, wrapperB.interpolateThresholdValues(EmptyScope.EMPTY), null);
+
+            // Nothing is written until the cycle is complete
+            verify(blobStore, never()).put(anyString(), any(), anyString(), anyInt());
+            verify(blobStore, never()).putAll(anyMap(), anyString(), anyInt());
+        }
+
+        verify(blobStore, times(1)).putAll(anyMap(), eq(AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT),
+                anyInt());
+        verify(blobStore, never()).put(anyString(), any(), anyString(), anyInt());
+        assertEquals(2, blobStore.enumerateContext(AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT).size());
+
+        assertEquals(1, stateManager.getMetricRegistry().histogram("batch-size").getCount());
+        assertEquals(2, stateManager.getMetricRegistry().histogram("batch-size").getSnapshot().getMax());
+        assertEquals(1, stateManager.getMetricRegistry().timer("flush").getCount());
+    }
+
+    @Test
+    public void persistsTheLatestStateOfAKey() {
+        ThresholdConfigWrapper wrapper = getWrapper("ds-a");
+        ThresholdEvaluatorState item = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapper,
+                thresholdingSession);
+        ThresholdEvaluatorState.ThresholdValues thresholdValues = wrapper.interpolateThresholdValues(EmptyScope.EMPTY);
+
+        try (ThresholdStateManager.Batch batch = stateManager.openBatch(thresholdingSession, Collections.emptySet())) {
+            item.evaluate(100.0, thresholdValues, null);
+            assertEquals(ThresholdEvaluatorState.Status.TRIGGERED, item.evaluate(100.0, thresholdValues, null));
+        }
+        verify(blobStore, times(1)).putAll(anyMap(), anyString(), anyInt());
+        assertEquals(1, stateManager.getMetricRegistry().histogram("batch-size").getSnapshot().getMax());
+
+        // A new evaluator resuming from the persisted state must see that the threshold was already triggered
+        item = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapper, thresholdingSession);
+        assertEquals(ThresholdEvaluatorState.Status.NO_CHANGE, item.evaluate(100.0, thresholdValues, null));
+    }
+
+    @Test
+    public void doesNotPersistStatesThatWereReinitialized() {
+        ThresholdConfigWrapper wrapper = getWrapper("ds-a");
+        ThresholdEvaluatorState item = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapper,
+                thresholdingSession);
+
+        try (ThresholdStateManager.Batch batch = stateManager.openBatch(thresholdingSession, Collections.emptySet())) {
+            item.evaluate(100.0, wrapper.interpolateThresholdValues(EmptyScope.EMPTY), null);
+            monitor.reinitializeStates();
+        }
+
+        verify(blobStore, never()).putAll(anyMap(), anyString(), anyInt());
+        assertEquals(0, blobStore.enumerateContext(AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT).size());
+    }
+
+    @Test
+    public void doesNotOverwriteNewerStatesWithABatchClosedLate() throws Exception {
+        ThresholdConfigWrapper wrapper = getWrapper("ds-a");
+        ThresholdEvaluatorState item = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapper,
+                thresholdingSession);
+        ThresholdEvaluatorState.ThresholdValues thresholdValues = wrapper.interpolateThresholdValues(EmptyScope.EMPTY);
+
+        // The first cycle exceeds the threshold once but its batch is only closed after the next cycle triggered it
+        ThresholdStateManager.Batch lateBatch = stateManager.openBatch(thresholdingSession, Collections.emptySet());
+        item.evaluate(100.0, thresholdValues, null);
+        CompletableFuture.runAsync(() -> {
+            try (ThresholdStateManager.Batch batch = stateManager.openBatch(thresholdingSession,
+                    Collections.emptySet())) {
+                assertEquals(ThresholdEvaluatorState.Status.TRIGGERED, item.evaluate(100.0, thresholdValues, null));
+            }
+        }).get();
+        lateBatch.close();
+        verify(blobStore, times(1)).putAll(anyMap(), anyString(), anyInt());
+
+        // A new evaluator resuming from the persisted state must still see that the threshold was triggered
+        ThresholdEvaluatorState resumed = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapper,
+                thresholdingSession);
+        assertEquals(ThresholdEvaluatorState.Status.NO_CHANGE, resumed.evaluate(100.0, thresholdValues, null));
+    }
+
+    @Test
+    public void writesBatchesBehindTheCollectingThread() throws Exception {
+        ExecutorService flushExecutor = Executors.newSingleThreadExecutor();
+        ThresholdStateManager writeBehindStateManager = new ThresholdStateManager(flushExecutor);
+        ThresholdConfigWrapper wrapper = getWrapper("ds-a");
+        AbstractThresholdEvaluatorState<?> item = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapper,
+                thresholdingSession);
+        ThresholdEvaluatorState.ThresholdValues thresholdValues = wrapper.interpolateThresholdValues(EmptyScope.EMPTY);
+        long initialPersistedVersion = item.getPersistedVersion();
+
+        // Keep the flusher busy
+        CountDownLatch flusherBlocked = new CountDownLatch(1);
+        flushExecutor.execute(() -> {
+            try {
+                flusherBlocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try (ThresholdStateManager.Batch batch = writeBehindStateManager.openBatch(thresholdingSession,
+                Collections.emptySet())) {
+            item.evaluate(100.0, thresholdValues, null);
+        }
+
+        // Closing the batch did not wait for the states to be written and they remain dirty in the meantime
+        verify(blobStore, never()).putAll(anyMap(), anyString(), anyInt());
+        assertEquals(initialPersistedVersion, item.getPersistedVersion());
+
+        // The next cycle keeps using its own copy of the state
+        try (ThresholdStateManager.Batch batch = writeBehindStateManager.openBatch(thresholdingSession,
+                Collections.emptySet())) {
+            assertEquals(ThresholdEvaluatorState.Status.TRIGGERED, item.evaluate(100.0, thresholdValues, null));
+        }
+
+        // Closing the manager waits for the queued batches to be written
+        flusherBlocked.countDown();
+        writeBehindStateManager.close();
+        assertTrue(flushExecutor.isTerminated());
+        verify(blobStore, times(2)).putAll(anyMap(), anyString(), anyInt());
+        assertTrue(item.getPersistedVersion() > initialPersistedVersion);
+
+        ThresholdEvaluatorState resumed = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapper,
+                thresholdingSession);
+        assertEquals(ThresholdEvaluatorState.Status.NO_CHANGE, resumed.evaluate(100.0, thresholdValues, null));
+    }
+
+    @Test
+    public void prefetchesStatesWhenDistributed() {
+        when(thresholdingSession.isDistributed()).thenReturn(true);
+        ThresholdConfigWrapper wrapper = getWrapper("ds-a");
+        ThresholdEvaluatorState item = new ThresholdEvaluatorHighLow.ThresholdEvaluatorStateHighLow(wrapper,
+                thresholdingSession);
+        ThresholdEvaluatorState.ThresholdValues thresholdValues = wrapper.interpolateThresholdValues(EmptyScope.EMPTY);
+
+        Set<String> fetchedKeys;
+        try (ThresholdStateManager.Batch batch = stateManager.openBatch(thresholdingSession, Collections.emptySet())) {
+            item.evaluate(100.0, thresholdValues, null);
+            fetchedKeys = batch.getFetchedKeys();
+        }
+        assertEquals(1, fetchedKeys.size());
+
+        // The next cycle reads the state up front and does not fetch it again when evaluating
+        clearInvocations(blobStore);
+        try (ThresholdStateManager.Batch batch = stateManager.openBatch(thresholdingSession, fetchedKeys)) {
+            assertEquals(ThresholdEvaluatorState.Status.TRIGGERED, item.evaluate(100.0, thresholdValues, null));
+        }
+        verify(blobStore, times(1)).getAll(fetchedKeys, AbstractThresholdEvaluatorState.THRESHOLDING_KV_CONTEXT);
+        verify(blobStore, never()).get(anyString(), anyString());
+        verify(blobStore, never()).getIfStale(anyString(), anyString(), anyLong());
+        assertEquals(1, stateManager.getMetricRegistry().timer("prefetch").getCount());
+    }
+
+    private static ThresholdConfigWrapper getWrapper(String dsName) {
+        Threshold threshold = new Threshold();
+        threshold.setType(ThresholdType.HIGH);
+        threshold.setDsName(dsName);
+        threshold.setDsType("node");
+        threshold.setValue("99.0");
+        threshold.setRearm("0.5");
+        threshold.setTrigger("2");
+        return new ThresholdConfigWrapper(threshold);
+    }
+}
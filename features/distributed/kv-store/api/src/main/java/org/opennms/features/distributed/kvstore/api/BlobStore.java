@@ -28,8 +28,34 @@
 
 package org.opennms.features.distributed.kvstore.api;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
- * Marker interface for implementations of {@link KeyValueStore} that deal with byte arrays.
+ * Implementations of {@link KeyValueStore} that deal with byte arrays.
+ * <p>
+ * In addition to the single key operations, blob stores accept a group of keys sharing the same context at once so
+ * that callers that persist many small values together (i.e. threshold states after a collection cycle) do not pay for
+ * a round-trip per key.
  */
 public interface BlobStore extends KeyValueStore<byte[]> {
+    /**
+     * Put several values with a suggested time-to-live. All of the values are persisted with the same timestamp.
+     * <p>
+     * Depending on the implementation the values may not be persisted atomically, in which case a failure may leave
+     * some of them persisted and others not.
+     *
+     * @param values       the values to put keyed by their key
+     * @param context      a context used to differentiate between keys with the same name (forms a compound key)
+     * @param ttlInSeconds the time to live in seconds for the keys or no ttl if null
+     * @return the timestamp the values were persisted with
+     */
+    long putAll(Map<String, byte[]> values, String context, Integer ttlInSeconds);
+
+    /**
+     * @param keys    the keys to get
+     * @param context a context used to differentiate between keys with the same name (forms a compound key)
+     * @return the values that were present keyed by their key, keys that did not exist are omitted
+     */
+    Map<String, byte[]> getAll(Collection<String> keys, String context);
 }
@@ -37,6 +37,8 @@ import static org.junit.Assert.fail;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -90,6 +92,23 @@ public abstract class BaseBlobStoreIT {
         assertThat(serializingBlobStore.get(key, context), equalTo(Optional.empty()));
     }
 
+    @Test
+    public void canPersistAndRetrieveAll() {
+        String context = "canPersistAndRetrieveAll";
+        Map<String, byte[]> values = new HashMap<>();
+
+        for (int i = 0; i < 100; i++) {
+            values.put(Integer.toString(i), new byte[]{(byte) i});
+        }
+
+        long timestamp = blobStore.putAll(values, context, null);
+        assertThat(blobStore.getLastUpdated("99", context).getAsLong(), equalTo(timestamp));
+
+        Map<String, byte[]> results = blobStore.getAll(Arrays.asList("0", "50", "99", "100"), context);
+        assertThat(results.keySet(), hasSize(3));
+        assertThat(results.get("50")[0], equalTo((byte) 50));
+    }
+
     @Test
     public void canPersistAndRetrieveAsync() throws ExecutionException, InterruptedException, TimeoutException {
         List<CompletableFuture<Long>> putFutures = new ArrayList<>();
@@ -31,10 +31,13 @@ package org.opennms.features.distributed.kvstore.blob.cassandra;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -43,6 +46,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 import org.opennms.features.distributed.cassandra.api.CassandraSchemaManagerFactory;
 import org.opennms.features.distributed.cassandra.api.CassandraSession;
@@ -55,6 +59,7 @@ import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
@@ -75,6 +80,8 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
     private static final String VALUE_COLUMN = "value";
     private static final String TIMESTAMP_COLUMN = "lastUpdated";
     private static final String TABLE_NAME = "kvstore_blob";
+    // The maximum number of statements issued by putAll and getAll that may be in flight at any time, across callers
+    private static final int MAX_BULK_REQUESTS_IN_FLIGHT = 128;
 
     private final CassandraSession session;
     private final PreparedStatement insertStmt;
@@ -89,6 +96,8 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
     private final Executor asyncDeleteExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
             .setNameFormat("cassandra-async-delete-%d").build());
 
+    private final Semaphore bulkRequestPermits = new Semaphore(MAX_BULK_REQUESTS_IN_FLIGHT);
+
     public CassandraBlobStore(CassandraSessionFactory sessionFactory,
                               CassandraSchemaManagerFactory cassandraSchemaManagerFactory) throws IOException {
         Objects.requireNonNull(sessionFactory);
@@ -120,6 +129,25 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
         return timestamp;
     }
 
+    @Override
+    public long putAll(Map<String, byte[]> values, String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        long timestamp = System.currentTimeMillis();
+
+        // The keys are in different partitions so rather than using a multi-partition batch, which would put the burden
+        // on a single coordinator, we issue the inserts concurrently, up to a bounded number at a time, and wait for them
+        // together
+        List<ResultSetFuture> insertFutures = new ArrayList<>(values.size());
+        values.forEach((key, value) -> insertFutures.add(executeBulkRequest(getStatementForInsert(key, context,
+                ByteBuffer.wrap(value), timestamp, ttlInSeconds))));
+
+        // Cassandra will throw a runtime exception here if any of the executions fail
+        Futures.getUnchecked(Futures.allAsList(insertFutures));
+        return timestamp;
+    }
+
     @Override
     public Optional<byte[]> get(String key, String context) {
         byte[] serializedValue;
@@ -138,6 +166,46 @@ public class CassandraBlobStore extends AbstractKeyValueStore<byte[]> implements
         return Optional.of(serializedValue);
     }
 
+    @Override
+    public Map<String, byte[]> getAll(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        // As with putAll, the selects are issued concurrently rather than as an IN query spanning partitions
+        Map<String, ResultSetFuture> selectFutures = new HashMap<>();
+        keys.forEach(key -> selectFutures.put(key, executeBulkRequest(selectStmt.bind(key, context))));
+
+        Map<String, byte[]> resultMap = new HashMap<>();
+        selectFutures.forEach((key, resultSetFuture) -> {
+            // Cassandra will throw a runtime exception here if the execution fails
+            Row row = resultSetFuture.getUninterruptibly().one();
+
+            // Could not find the key
+            if (row != null) {
+                resultMap.put(key, row.getBytes(VALUE_COLUMN).array());
+            }
+        });
+
+        return Collections.unmodifiableMap(resultMap);
+    }
+
+    /**
+     * Issues a statement on behalf of {@link #putAll} or {@link #getAll}, blocking while too many of them are in flight
+     * already.
+     */
+    private ResultSetFuture executeBulkRequest(Statement statement) {
+        bulkRequestPermits.acquireUninterruptibly();
+        ResultSetFuture resultSetFuture;
+        try {
+            resultSetFuture = session.executeAsync(statement);
+        } catch (RuntimeException e) {
+            bulkRequestPermits.release();
+            throw e;
+        }
+        resultSetFuture.addListener(bulkRequestPermits::release, MoreExecutors.directExecutor());
+        return resultSetFuture;
+    }
+
     @Override
     public CompletableFuture<Long> putAsync(String key, byte[] value, String context, Integer ttlInSeconds) {
         CompletableFuture<Long> putFuture = new CompletableFuture<>();
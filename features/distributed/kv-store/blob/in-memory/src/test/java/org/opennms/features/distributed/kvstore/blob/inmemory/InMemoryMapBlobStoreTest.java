@@ -29,7 +29,12 @@
 package org.opennms.features.distributed.kvstore.blob.inmemory;
 
 import static com.jayway.awaitility.Awaitility.await;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.concurrent.TimeUnit;
@@ -90,6 +95,23 @@ public class InMemoryMapBlobStoreTest {
         }
     }
 
+    @Test
+    public void canPutAndGetAll() {
+        BlobStore blobStore = new InMemoryMapBlobStore(() -> 42L);
+
+        Map<String, byte[]> values = new HashMap<>();
+        values.put("a", new byte[]{1});
+        values.put("b", new byte[]{2});
+        assertEquals(42L, blobStore.putAll(values, "test", null));
+        blobStore.put("c", new byte[]{3}, "other");
+
+        Map<String, byte[]> results = blobStore.getAll(Arrays.asList("a", "b", "c"), "test");
+        assertEquals(2, results.size());
+        assertArrayEquals(new byte[]{1}, results.get("a"));
+        assertArrayEquals(new byte[]{2}, results.get("b"));
+        assertEquals(OptionalLong.of(42L), blobStore.getLastUpdated("b", "test"));
+    }
+
     private class ExceptionThrowingKVStore extends InMemoryMapBlobStore {
         public ExceptionThrowingKVStore() {
             super(System::currentTimeMillis);
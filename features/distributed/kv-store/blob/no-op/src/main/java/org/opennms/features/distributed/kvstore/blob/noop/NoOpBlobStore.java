@@ -61,12 +61,24 @@ public class NoOpBlobStore extends AbstractAsyncKeyValueStore<byte[]> implements
         return 0;
     }
 
+    @Override
+    public long putAll(Map<String, byte[]> values, String context, Integer ttlInSeconds) {
+        blobStoreListeners.forEach(bl -> values.forEach((key, value) -> bl.put(key, value, context, ttlInSeconds)));
+        return 0;
+    }
+
     @Override
     public Optional<byte[]> get(String key, String context) {
         blobStoreListeners.forEach(bl -> bl.get(key, context));
         return Optional.empty();
     }
 
+    @Override
+    public Map<String, byte[]> getAll(Collection<String> keys, String context) {
+        blobStoreListeners.forEach(bl -> keys.forEach(key -> bl.get(key, context)));
+        return Collections.emptyMap();
+    }
+
     @Override
     public Optional<Optional<byte[]>> getIfStale(String key, String context, long timestamp) {
         blobStoreListeners.forEach(bl -> bl.getIfStale(key, context, timestamp));
@@ -34,6 +34,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -91,6 +92,11 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         ));
     }
 
+    private PreparedStatement getSelectAllStatement(Connection connection) throws SQLException {
+        return connection.prepareStatement(String.format("SELECT %s, %s, %s FROM %s WHERE %s = ? AND %s = ANY(?)",
+                KEY_COLUMN, VALUE_COLUMN, EXPIRES_AT_COLUMN, getTableName(), CONTEXT_COLUMN, KEY_COLUMN));
+    }
+
     private PreparedStatement getLastUpdatedStatement(Connection connection) throws SQLException {
         return connection.prepareStatement(String.format("SELECT %s, %s FROM %s WHERE %s = ? AND %s = ?",
                 LAST_UPDATED_COLUMN, EXPIRES_AT_COLUMN, getTableName(), KEY_COLUMN, CONTEXT_COLUMN));
@@ -119,30 +125,76 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         long now = System.currentTimeMillis();
 
         withStatement(this::getUpsertStatement, upsertStatement -> {
-            // The below sets the prepared values for both the INSERT and UPDATE cases hence some values being 
-            // repeated
-            upsertStatement.setString(1, key);
-            upsertStatement.setString(2, context);
-            upsertStatement.setTimestamp(3, new java.sql.Timestamp(now));
-            upsertStatement.setTimestamp(6, new java.sql.Timestamp(now));
-
-            if (ttlInSeconds != null) {
-                long expireTime = now + TimeUnit.MILLISECONDS.convert(ttlInSeconds, TimeUnit.SECONDS);
-                upsertStatement.setTimestamp(4, new java.sql.Timestamp(expireTime));
-                upsertStatement.setTimestamp(7, new java.sql.Timestamp(expireTime));
-            } else {
-                upsertStatement.setNull(4, Types.DATE);
-                upsertStatement.setNull(7, Types.DATE);
+            setUpsertParameters(upsertStatement, key, value, context, ttlInSeconds, now);
+            return upsertStatement.execute();
+        });
+
+        return now;
+    }
+
+    /**
+     * Upserts all of the values as a single JDBC batch in one transaction.
+     *
+     * @return the timestamp the values were persisted with
+     */
+    public long putAll(Map<String, T> values, String context, Integer ttlInSeconds) {
+        Objects.requireNonNull(values);
+        Objects.requireNonNull(context);
+
+        long now = System.currentTimeMillis();
+
+        if (values.isEmpty()) {
+            return now;
+        }
+
+        withStatement(this::getUpsertStatement, upsertStatement -> {
+            for (Map.Entry<String, T> entry : values.entrySet()) {
+                Objects.requireNonNull(entry.getKey());
+                Objects.requireNonNull(entry.getValue());
+                setUpsertParameters(upsertStatement, entry.getKey(), entry.getValue(), context, ttlInSeconds, now);
+                upsertStatement.addBatch();
             }
 
-            upsertStatement.setObject(5, getSQLTypeFromValueType(value));
-            upsertStatement.setObject(8, getSQLTypeFromValueType(value));
-            return upsertStatement.execute();
+            Connection connection = upsertStatement.getConnection();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                upsertStatement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return true;
         });
 
         return now;
     }
 
+    private void setUpsertParameters(PreparedStatement upsertStatement, String key, T value, String context,
+                                     Integer ttlInSeconds, long now) throws SQLException {
+        // The below sets the prepared values for both the INSERT and UPDATE cases hence some values being 
+        // repeated
+        upsertStatement.setString(1, key);
+        upsertStatement.setString(2, context);
+        upsertStatement.setTimestamp(3, new java.sql.Timestamp(now));
+        upsertStatement.setTimestamp(6, new java.sql.Timestamp(now));
+
+        if (ttlInSeconds != null) {
+            long expireTime = now + TimeUnit.MILLISECONDS.convert(ttlInSeconds, TimeUnit.SECONDS);
+            upsertStatement.setTimestamp(4, new java.sql.Timestamp(expireTime));
+            upsertStatement.setTimestamp(7, new java.sql.Timestamp(expireTime));
+        } else {
+            upsertStatement.setNull(4, Types.DATE);
+            upsertStatement.setNull(7, Types.DATE);
+        }
+
+        upsertStatement.setObject(5, getSQLTypeFromValueType(value));
+        upsertStatement.setObject(8, getSQLTypeFromValueType(value));
+    }
+
     @Override
     public Optional<T> get(String key, String context) {
         Objects.requireNonNull(key);
@@ -167,6 +219,37 @@ public abstract class AbstractPostgresKeyValueStore<T, S> extends AbstractAsyncK
         });
     }
 
+    /**
+     * Selects all of the keys with a single query.
+     *
+     * @return the values that were present and not expired keyed by their key
+     */
+    public Map<String, T> getAll(Collection<String> keys, String context) {
+        Objects.requireNonNull(keys);
+        Objects.requireNonNull(context);
+
+        if (keys.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        return withStatement(this::getSelectAllStatement, selectAllStatement -> {
+            Map<String, T> resultMap = new HashMap<>();
+            selectAllStatement.setString(1, context);
+            selectAllStatement.setArray(2, selectAllStatement.getConnection().createArrayOf("text", keys.toArray()));
+
+            try (ResultSet resultSet = selectAllStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    // Ignore results that are already expired
+                    if (!isExpired(resultSet)) {
+                        resultMap.put(resultSet.getString(KEY_COLUMN), getValueTypeFromSQLType(resultSet, VALUE_COLUMN));
+                    }
+                }
+            }
+
+            return resultMap;
+        });
+    }
+
     @Override
     public Optional<Optional<T>> getIfStale(String key, String context, long timestamp) {
         Objects.requireNonNull(key);
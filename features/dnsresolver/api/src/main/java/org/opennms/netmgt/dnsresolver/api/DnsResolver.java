@@ -29,6 +29,10 @@
 package org.opennms.netmgt.dnsresolver.api;
 
 import java.net.InetAddress;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -61,4 +65,30 @@ public interface DnsResolver {
      */
     CompletableFuture<Optional<String>> reverseLookup(final InetAddress inetAddress);
 
+    /**
+     * Perform reverse DNS lookups for all of the given IP addresses.
+     *
+     * Duplicate addresses are only looked up once. The returned future completes once all of the
+     * individual lookups have completed and is never completed exceptionally: addresses for which
+     * the lookup failed are mapped to an empty optional, the same as addresses for which no result was found.
+     *
+     * @param inetAddresses IP addresses to lookup, null elements are ignored
+     * @return a future containing the results keyed by IP address, in encounter order
+     */
+    default CompletableFuture<Map<InetAddress, Optional<String>>> reverseLookupAll(final Collection<InetAddress> inetAddresses) {
+        final Map<InetAddress, CompletableFuture<Optional<String>>> futures = new LinkedHashMap<>();
+        inetAddresses.stream()
+                .filter(Objects::nonNull)
+                .forEach(addr -> futures.computeIfAbsent(addr, this::reverseLookup));
+
+        final CompletableFuture<?>[] handled = futures.values().stream()
+                .map(future -> future.handle((hostname, ex) -> null))
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(handled).thenApply(v -> {
+            final Map<InetAddress, Optional<String>> results = new LinkedHashMap<>();
+            futures.forEach((addr, future) -> results.put(addr, future.isCompletedExceptionally() ? Optional.empty() : future.join()));
+            return results;
+        });
+    }
+
 }
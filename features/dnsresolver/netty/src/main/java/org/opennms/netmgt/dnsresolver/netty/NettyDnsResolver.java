@@ -38,7 +38,10 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.opennms.netmgt.dnsresolver.api.DnsResolver;
@@ -52,8 +55,11 @@ import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.net.HostAndPort;
 
 import io.github.resilience4j.bulkhead.Bulkhead;
@@ -78,6 +84,10 @@ import io.netty.util.internal.SocketUtils;
  * Uses a circuit breaker in order to ensure that callers do not continue to be bogged down
  * if resolution fails.
  *
+ * Concurrent lookups for the same hostname or address are coalesced, so that there is at most
+ * one outstanding query for any given key. Reverse lookups that time out can optionally be
+ * cached as empty results for a separate (and typically short) TTL.
+ *
  * @author jwhite
  */
 public class NettyDnsResolver implements DnsResolver {
@@ -91,6 +101,11 @@ public class NettyDnsResolver implements DnsResolver {
     private final Meter lookupsSuccessful;
     private final Meter lookupsFailed;
     private final Meter lookupsRejectedByCircuitBreaker;
+    private final Meter lookupsCoalesced;
+    private final Meter lookupsTimeoutCacheHits;
+
+    private final ConcurrentMap<String, CompletableFuture<Optional<InetAddress>>> pendingLookups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<InetAddress, CompletableFuture<Optional<String>>> pendingReverseLookups = new ConcurrentHashMap<>();
 
     private int numContexts = 0;
     private String nameservers = null;
@@ -99,6 +114,8 @@ public class NettyDnsResolver implements DnsResolver {
     private int maxTtlSeconds = -1;
     private int negativeTtlSeconds = -1;
     private long maxCacheSize = -1;
+    private int timeoutNegativeTtlSeconds = 0;
+    private boolean coalesceLookups = true;
 
     private boolean breakerEnabled = true;
     private int breakerFailureRateThreshold = 80;
@@ -112,6 +129,7 @@ public class NettyDnsResolver implements DnsResolver {
     private List<NettyResolverContext> contexts;
     private Iterator<NettyResolverContext> iterator;
     private CaffeineDnsCache cache;
+    private Cache<InetAddress, Boolean> timedOutReverseLookups;
 
     private Bulkhead bulkhead;
     private CircuitBreaker circuitBreaker;
@@ -123,6 +141,9 @@ public class NettyDnsResolver implements DnsResolver {
         lookupsSuccessful = metrics.meter("lookupsSuccessful");
         lookupsFailed = metrics.meter("lookupsFailed");
         lookupsRejectedByCircuitBreaker = metrics.meter("lookupsRejectedByCircuitBreaker");
+        lookupsCoalesced = metrics.meter("lookupsCoalesced");
+        lookupsTimeoutCacheHits = metrics.meter("lookupsTimeoutCacheHits");
+        metrics.register("pendingLookups", (Gauge<Integer>) this::getPendingLookupCount);
         metrics.register("availableConcurrentCalls", (Gauge<Integer>) () -> bulkhead.getMetrics().getAvailableConcurrentCalls());
         metrics.register("maxAllowedConcurrentCalls", (Gauge<Integer>) () -> bulkhead.getMetrics().getMaxAllowedConcurrentCalls());
     }
@@ -143,6 +164,17 @@ public class NettyDnsResolver implements DnsResolver {
                 maxCacheSize < 0 ? cacheWithDefaults.maxSize() : maxCacheSize);
         cache.registerMetrics(metrics);
 
+        // Reverse lookups that timed out are tracked separately from the DNS cache, since
+        // there is no response (and hence no record) to cache
+        if (timeoutNegativeTtlSeconds > 0) {
+            timedOutReverseLookups = Caffeine.newBuilder()
+                    .maximumSize(cache.maxSize())
+                    .expireAfterWrite(timeoutNegativeTtlSeconds, TimeUnit.SECONDS)
+                    .build();
+        } else {
+            timedOutReverseLookups = null;
+        }
+
         final BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
                 .maxConcurrentCalls(bulkheadMaxConcurrentCalls)
                 .maxWaitDuration(Duration.ofMillis(bulkheadMaxWaitDurationMillis))
@@ -208,6 +240,71 @@ public class NettyDnsResolver implements DnsResolver {
 
     @Override
     public CompletableFuture<Optional<InetAddress>> lookup(String hostname) {
+        if (!coalesceLookups) {
+            return doLookup(hostname);
+        }
+        return coalesce(pendingLookups, hostname, this::doLookup);
+    }
+
+    @Override
+    public CompletableFuture<Optional<String>> reverseLookup(InetAddress inetAddress) {
+        final Cache<InetAddress, Boolean> timedOut = timedOutReverseLookups;
+        if (timedOut != null && timedOut.getIfPresent(inetAddress) != null) {
+            lookupsTimeoutCacheHits.mark();
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        if (!coalesceLookups) {
+            return doReverseLookup(inetAddress);
+        }
+        return coalesce(pendingReverseLookups, inetAddress, this::doReverseLookup);
+    }
+
+    /**
+     * Issues the lookup for the given key, unless one is already outstanding, in which
+     * case the caller is attached to the pending lookup instead.
+     *
+     * Every caller receives its own future, so that completing or cancelling it does not
+     * affect the other callers waiting on the same lookup.
+     */
+    private <K, V> CompletableFuture<V> coalesce(ConcurrentMap<K, CompletableFuture<V>> pending, K key, Function<K, CompletableFuture<V>> lookup) {
+        final CompletableFuture<V> promise = new CompletableFuture<>();
+        final CompletableFuture<V> existing = pending.putIfAbsent(key, promise);
+        if (existing != null) {
+            lookupsCoalesced.mark();
+            return dependentOf(existing);
+        }
+
+        try {
+            lookup.apply(key).whenComplete((res, ex) -> {
+                // Remove the entry before completing, callers arriving after this point will
+                // issue a new lookup which will most likely be answered from the cache
+                pending.remove(key, promise);
+                if (ex != null) {
+                    promise.completeExceptionally(ex);
+                } else {
+                    promise.complete(res);
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return dependentOf(promise);
+    }
+
+    private static <V> CompletableFuture<V> dependentOf(CompletableFuture<V> source) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        source.whenComplete((res, ex) -> {
+            if (ex != null) {
+                future.completeExceptionally(ex);
+            } else {
+                future.complete(res);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<Optional<InetAddress>> doLookup(String hostname) {
         return circuitBreaker.executeCompletionStage(() -> {
             final NettyResolverContext resolverContext = iterator.next();
             final Timer.Context timerContext = lookupTimer.time();
@@ -217,22 +314,35 @@ public class NettyDnsResolver implements DnsResolver {
         }).toCompletableFuture();
     }
 
-    @Override
-    public CompletableFuture<Optional<String>> reverseLookup(InetAddress inetAddress) {
+    private CompletableFuture<Optional<String>> doReverseLookup(InetAddress inetAddress) {
+        final Cache<InetAddress, Boolean> timedOut = timedOutReverseLookups;
         return circuitBreaker.executeCompletionStage(() -> {
             final NettyResolverContext resolverContext = iterator.next();
             final Timer.Context timerContext = lookupTimer.time();
             return resolverContext.reverseLookup(inetAddress).whenComplete((res, ex) -> {
                 timerContext.stop();
+                if (timedOut != null && ex != null && isTimeout(ex)) {
+                    timedOut.put(inetAddress, Boolean.TRUE);
+                }
             });
         }).toCompletableFuture();
     }
 
+    private static boolean isTimeout(Throwable t) {
+        return Throwables.getCausalChain(t).stream()
+                .anyMatch(DnsNameResolverTimeoutException.class::isInstance);
+    }
+
     @VisibleForTesting
     CaffeineDnsCache getCache() {
         return cache;
     }
 
+    @VisibleForTesting
+    int getPendingLookupCount() {
+        return pendingLookups.size() + pendingReverseLookups.size();
+    }
+
     public boolean getBreakerEnabled() {
         return breakerEnabled;
     }
@@ -337,6 +447,22 @@ public class NettyDnsResolver implements DnsResolver {
         this.negativeTtlSeconds = negativeTtlSeconds;
     }
 
+    public int getTimeoutNegativeTtlSeconds() {
+        return timeoutNegativeTtlSeconds;
+    }
+
+    public void setTimeoutNegativeTtlSeconds(int timeoutNegativeTtlSeconds) {
+        this.timeoutNegativeTtlSeconds = timeoutNegativeTtlSeconds;
+    }
+
+    public boolean getCoalesceLookups() {
+        return coalesceLookups;
+    }
+
+    public void setCoalesceLookups(boolean coalesceLookups) {
+        this.coalesceLookups = coalesceLookups;
+    }
+
     public long getMaxCacheSize() {
         return maxCacheSize;
     }
@@ -35,12 +35,15 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -196,11 +199,12 @@ public class NettyDnsResolverTest {
         dnsResolver.setNameservers(InetAddressUtils.str(InetAddressUtils.UNPINGABLE_ADDRESS));
         dnsResolver.init();
 
-        // Now trigger enough requests to open the circuit breaker
+        // Now trigger enough requests to open the circuit breaker, using distinct addresses
+        // since concurrent lookups for the same address are coalesced
         final int N = 2 * dnsResolver.getCircuitBreaker().getCircuitBreakerConfig().getRingBufferSizeInClosedState();
         final CompletableFuture futures[] = new CompletableFuture[N];
         for (int i = 0; i < N; i++) {
-            futures[i] = dnsResolver.reverseLookup(InetAddressUtils.addr("fe80::"));
+            futures[i] = dnsResolver.reverseLookup(InetAddressUtils.addr(String.format("fe80::%x", i + 1)));
         }
 
         // Wait for the requests to complete
@@ -222,6 +226,58 @@ public class NettyDnsResolverTest {
         }
     }
 
+    @Test
+    public void canCoalesceReverseLookups() throws UnknownHostException, ExecutionException, InterruptedException {
+        final InetAddress addr = InetAddress.getByName("173.242.186.51");
+        final int N = 10;
+        final CompletableFuture<Optional<String>> futures[] = new CompletableFuture[N];
+        for (int i = 0; i < N; i++) {
+            futures[i] = dnsResolver.reverseLookup(addr);
+        }
+        for (CompletableFuture<Optional<String>> future : futures) {
+            assertThat(future.get().get(), equalTo("rnd.opennms.ca"));
+        }
+
+        // Every caller gets its own future
+        assertNotSame(futures[0], futures[1]);
+        // Only a single query was issued, the remaining lookups were either coalesced or answered from the cache
+        assertThat(dnsResolver.getCache().getSize(), equalTo(1L));
+        assertThat(dnsResolver.getPendingLookupCount(), equalTo(0));
+    }
+
+    @Test
+    public void canDoBulkReverseLookups() throws UnknownHostException, ExecutionException, InterruptedException {
+        final InetAddress known = InetAddress.getByName("173.242.186.51");
+        final InetAddress unknown = InetAddress.getByName("1.1.1.1");
+
+        final Map<InetAddress, Optional<String>> results = dnsResolver.reverseLookupAll(Arrays.asList(known, unknown, known, null)).get();
+        assertThat(results.keySet(), contains(known, unknown));
+        assertThat(results.get(known), equalTo(Optional.of("rnd.opennms.ca")));
+        assertThat(results.get(unknown), equalTo(Optional.empty()));
+    }
+
+    @Test
+    public void canCacheTimedOutReverseLookups() throws InterruptedException, ExecutionException {
+        // Reinitialize the resolver using a non-routable address as the target - we want the queries to fail due to timeouts
+        dnsResolver.destroy();
+        dnsResolver.setNameservers(InetAddressUtils.str(InetAddressUtils.UNPINGABLE_ADDRESS));
+        dnsResolver.setTimeoutNegativeTtlSeconds(60);
+        dnsResolver.init();
+
+        // The first lookup still fails
+        try {
+            dnsResolver.reverseLookup(InetAddressUtils.addr("fe80::")).get();
+            fail("Expected a DnsNameResolverTimeoutException to be thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(DnsNameResolverTimeoutException.class)));
+        }
+
+        // But subsequent ones are answered immediately with an empty result
+        final CompletableFuture<Optional<String>> future = dnsResolver.reverseLookup(InetAddressUtils.addr("fe80::"));
+        assertThat(future.isDone(), equalTo(true));
+        assertThat(future.get(), equalTo(Optional.empty()));
+    }
+
     @Test
     public void canParseNameserversFromString() {
         assertThat(NettyDnsResolver.toSocketAddresses("8.8.8.8 "),
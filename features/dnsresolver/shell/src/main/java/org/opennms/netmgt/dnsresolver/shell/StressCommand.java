@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -57,6 +58,7 @@ import org.opennms.netmgt.dnsresolver.api.DnsResolver;
 import com.codahale.metrics.ConsoleReporter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.net.InetAddresses;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -85,45 +87,93 @@ public class StressCommand implements Action {
     @Option(name="-r", aliases="--report", description="Number of seconds after which the report should be generated")
     int reportIntervalInSeconds = 5;
 
-    private AtomicInteger nextIpAddress = new AtomicInteger(16843009); // Start at 1.1.1.1
+    @Option(name="-u", aliases="--unique", description="Number of distinct addresses to cycle through, 0 to never repeat an address")
+    int numberOfUniqueAddresses = 0;
+
+    @Option(name="-b", aliases="--batch", description="Number of addresses to resolve per bulk lookup, 1 to issue individual lookups")
+    int batchSize = 1;
+
+    private static final int FIRST_IP_ADDRESS = 16843009; // Start at 1.1.1.1
+
+    private AtomicInteger nextIpAddress = new AtomicInteger(FIRST_IP_ADDRESS);
 
     private final MetricRegistry metrics = new MetricRegistry();
 
     private final Meter lookups = metrics.meter("lookups");
+    private final Meter batches = metrics.meter("batches");
     private final Meter responseSuccess = metrics.meter("response-success");
+    private final Meter responseEmpty = metrics.meter("response-empty");
     private final Meter responseFailed = metrics.meter("response-failed");
+    private final Timer responseTime = metrics.timer("response-time");
+
+    private InetAddress nextAddress() {
+        final int offset = nextIpAddress.incrementAndGet() - FIRST_IP_ADDRESS;
+        if (numberOfUniqueAddresses > 0) {
+            return InetAddresses.fromInteger(FIRST_IP_ADDRESS + (offset % numberOfUniqueAddresses));
+        }
+        return InetAddresses.fromInteger(FIRST_IP_ADDRESS + offset);
+    }
 
     private class DNSLookupGenerator implements Runnable {
-        private final Set<CompletableFuture<Optional<String>>> pendingFutures = new HashSet<>();
+        private final Set<CompletableFuture<?>> pendingFutures = new HashSet<>();
 
         @Override
         public void run() {
             final RateLimiter rateLimiter = RateLimiter.create(lookupsPerSecondPerThread);
             while (true) {
-                rateLimiter.acquire(1);
-                final InetAddress addr = InetAddresses.fromInteger(nextIpAddress.incrementAndGet());
-                final CompletableFuture<Optional<String>> future = dnsResolver.reverseLookup(addr);
+                rateLimiter.acquire(batchSize);
+                final Timer.Context timerContext = responseTime.time();
+                final CompletableFuture<?> future;
+                if (batchSize > 1) {
+                    final List<InetAddress> addrs = new ArrayList<>(batchSize);
+                    for (int i = 0; i < batchSize; i++) {
+                        addrs.add(nextAddress());
+                    }
+                    final CompletableFuture<Map<InetAddress, Optional<String>>> batchFuture = dnsResolver.reverseLookupAll(addrs);
+                    batchFuture.whenComplete((hostnamesFromDns, ex) -> {
+                        timerContext.stop();
+                        if (ex != null) {
+                            responseFailed.mark(addrs.size());
+                            return;
+                        }
+                        // Failures are reported as empty results by the bulk lookup
+                        final long found = hostnamesFromDns.values().stream().filter(Optional::isPresent).count();
+                        responseSuccess.mark(found);
+                        responseEmpty.mark(addrs.size() - found);
+                    });
+                    future = batchFuture;
+                    batches.mark();
+                    lookups.mark(batchSize);
+                } else {
+                    final CompletableFuture<Optional<String>> lookupFuture = dnsResolver.reverseLookup(nextAddress());
+                    lookupFuture.whenComplete((hostnameFromDns, ex) -> {
+                        timerContext.stop();
+                        if (ex != null) {
+                            responseFailed.mark();
+                        } else if (hostnameFromDns.isPresent()) {
+                            responseSuccess.mark();
+                        } else {
+                            responseEmpty.mark();
+                        }
+                    });
+                    future = lookupFuture;
+                    lookups.mark();
+                }
                 synchronized (pendingFutures) {
                     pendingFutures.add(future);
                 }
-                future.whenComplete((hostnameFromDns, ex) -> {
+                future.whenComplete((res, ex) -> {
                     synchronized (pendingFutures) {
                         pendingFutures.remove(future);
                     }
-                    if (ex == null) {
-                        responseSuccess.mark();
-                    } else {
-                        responseFailed.mark();
-                    }
                 });
-                lookups.mark();
                 if (Thread.interrupted()) {
                     break;
                 }
             }
 
             // Copy the list of pending futures - so they don't change on us
-            final List<CompletableFuture<Optional<String>>> futuresToWaitFor;
+            final List<CompletableFuture<?>> futuresToWaitFor;
             synchronized (pendingFutures) {
                 futuresToWaitFor = new LinkedList<>(pendingFutures);
             }
@@ -150,6 +200,8 @@ public class StressCommand implements Action {
         numberOfThreads = Math.max(1, numberOfThreads);
         durationInSeconds = Math.max(1, durationInSeconds);
         reportIntervalInSeconds = Math.max(1, reportIntervalInSeconds);
+        numberOfUniqueAddresses = Math.max(0, numberOfUniqueAddresses);
+        batchSize = Math.max(1, Math.min(batchSize, lookupsPerSecondPerThread));
 
         // Display the effective settings and rates
         double lookupsPerSecond = (double)lookupsPerSecondPerThread * (double)numberOfThreads;
@@ -158,6 +210,12 @@ public class StressCommand implements Action {
         System.out.printf("Which will yield an effective\n");
         System.out.printf("\t %.2f lookups per second\n", lookupsPerSecond);
         System.out.printf("\t %.2f total lookups\n", lookupsPerSecond * durationInSeconds);
+        if (numberOfUniqueAddresses > 0) {
+            System.out.printf("\t over %d distinct addresses\n", numberOfUniqueAddresses);
+        }
+        if (batchSize > 1) {
+            System.out.printf("\t in bulk lookups of %d addresses\n", batchSize);
+        }
 
         // Setup the reporter
         ConsoleReporter reporter = ConsoleReporter.forRegistry(metrics)
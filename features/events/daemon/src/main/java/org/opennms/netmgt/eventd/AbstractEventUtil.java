@@ -30,7 +30,10 @@ package org.opennms.netmgt.eventd;
 
 import java.math.BigInteger;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -402,6 +405,12 @@ public abstract class AbstractEventUtil implements EventUtil {
 
 	private final LoadingCache<String, EventTemplate> eventTemplateCache;
 
+	/**
+	 * Templates parsed ahead of time, i.e. from the event configuration. These are
+	 * never evicted, and are replaced as a whole when the templates are compiled again.
+	 */
+	private volatile Map<String, EventTemplate> compiledTemplates = Collections.emptyMap();
+
 	private final ExpandableParameterResolverRegistry resolverRegistry = new ExpandableParameterResolverRegistry();
 
 	public AbstractEventUtil() {
@@ -440,6 +449,14 @@ public abstract class AbstractEventUtil implements EventUtil {
 	                    }
 	                });
 
+	        registry.register(MetricRegistry.name("eventutil.cache.compiled"),
+	                new Gauge<Integer>() {
+	                    @Override
+	                    public Integer getValue() {
+	                        return compiledTemplates.size();
+	                    }
+	                });
+
 	        registry.register(MetricRegistry.name("eventutil.cache.evictioncount"),
 	                new Gauge<Long>() {
 	                    @Override
@@ -780,7 +797,7 @@ public abstract class AbstractEventUtil implements EventUtil {
 			return null;
 		}
 		try {
-			final EventTemplate eventTemplate = eventTemplateCache.get(input);
+			final EventTemplate eventTemplate = getEventTemplate(input);
 			Supplier<String> expander = () -> eventTemplate.expand(event, decode);
 			if (eventTemplate.requiresTransaction()) {
 				Objects.requireNonNull(transactionOperations);
@@ -793,6 +810,30 @@ public abstract class AbstractEventUtil implements EventUtil {
 		}
 	}
 
+	private EventTemplate getEventTemplate(String input) throws ExecutionException {
+		final EventTemplate eventTemplate = compiledTemplates.get(input);
+		if (eventTemplate != null) {
+			return eventTemplate;
+		}
+		return eventTemplateCache.get(input);
+	}
+
+	@Override
+	public void compileTemplates(Collection<String> templates) {
+		final Map<String, EventTemplate> compiled = new HashMap<>();
+		for (final String template : templates) {
+			if (template != null && !compiled.containsKey(template)) {
+				compiled.put(template, new EventTemplate(template, this));
+			}
+		}
+		compiledTemplates = compiled;
+		LOG.debug("Compiled {} event templates.", compiled.size());
+	}
+
+	protected TransactionOperations getTransactionOperations() {
+		return transactionOperations;
+	}
+
 	/**
 	 * <p>getEventHost</p>
 	 *
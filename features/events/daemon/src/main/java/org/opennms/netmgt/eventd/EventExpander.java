@@ -30,9 +30,12 @@ package org.opennms.netmgt.eventd;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.opennms.netmgt.config.api.EventConfDao;
 import org.opennms.netmgt.events.api.EventProcessor;
@@ -50,6 +53,7 @@ import org.opennms.netmgt.xml.event.Tticket;
 import org.opennms.netmgt.xml.event.UpdateField;
 import org.opennms.netmgt.xml.event.Value;
 import org.opennms.netmgt.xml.eventconf.Decode;
+import org.opennms.netmgt.xml.eventconf.Events;
 import org.opennms.netmgt.xml.eventconf.Maskelement;
 import org.opennms.netmgt.xml.eventconf.MatchResult;
 import org.opennms.netmgt.xml.eventconf.Parameter;
@@ -123,6 +127,11 @@ public final class EventExpander implements org.opennms.netmgt.dao.api.EventExpa
 
     private final Timer expandTimer;
 
+    /**
+     * The root of the event configuration from which the templates were last compiled.
+     */
+    private final AtomicReference<Events> m_compiledEvents = new AtomicReference<>();
+
     public EventExpander(MetricRegistry registry) {
         expandTimer = Objects.requireNonNull(registry).timer("eventlogs.process.expand");
     }
@@ -815,6 +824,7 @@ public final class EventExpander implements org.opennms.netmgt.dao.api.EventExpa
     @Override
     public void process(Log eventLog) throws EventProcessorException {
         if (eventLog != null && eventLog.getEvents() != null && eventLog.getEvents().getEvent() != null) {
+            compileTemplatesIfChanged();
             try(Context ctx = expandTimer.time()) {
                 for (Event event : eventLog.getEvents().getEvent()) {
                     expandEvent(event);
@@ -823,6 +833,41 @@ public final class EventExpander implements org.opennms.netmgt.dao.api.EventExpa
         }
     }
 
+    /**
+     * Compiles the templates of the event definitions whenever the event configuration
+     * has been (re)loaded. The configuration is replaced as a whole on reload, so comparing
+     * the root is enough to detect this. Only one thread compiles the templates, the others
+     * keep using the previously compiled ones in the meantime.
+     */
+    private void compileTemplatesIfChanged() {
+        final Events events = m_eventConfDao.getRootEvents();
+        final Events compiledEvents = m_compiledEvents.get();
+        if (events != null && events != compiledEvents && m_compiledEvents.compareAndSet(compiledEvents, events)) {
+            final Set<String> templates = events.forEachEvent(new HashSet<String>(), (accum, econf) -> {
+                accum.add(econf.getDescr());
+                if (econf.getLogmsg() != null) {
+                    accum.add(econf.getLogmsg().getContent());
+                }
+                accum.add(econf.getOperinstruct());
+                econf.getAutoactions().forEach(a -> accum.add(a.getContent()));
+                econf.getOperactions().forEach(a -> accum.add(a.getContent()));
+                if (econf.getTticket() != null) {
+                    accum.add(econf.getTticket().getContent());
+                }
+                if (econf.getAlarmData() != null) {
+                    accum.add(econf.getAlarmData().getReductionKey());
+                    accum.add(econf.getAlarmData().getClearKey());
+                }
+                econf.getParameters().stream()
+                        .filter(Parameter::getExpand)
+                        .forEach(p -> accum.add(p.getValue()));
+                return accum;
+            });
+            templates.remove(null);
+            m_eventUtil.compileTemplates(templates);
+        }
+    }
+
     /**
      * <p>getEventConfDao</p>
      *
@@ -38,6 +38,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
@@ -62,8 +63,10 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 
 /**
  * An implementation of the EventIpcManager interface that can be used to
@@ -100,6 +103,14 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         }
     }
 
+    /**
+     * Maximum number of distinct UEIs for which the resolved listener list
+     * is memoized by a dispatch table.
+     */
+    private static final int MAX_RESOLVED_UEIS = 10000;
+
+    private static final EventListenerExecutor[] NO_EXECUTORS = new EventListenerExecutor[0];
+
     /**
      * Hash table of list of event listeners keyed by event UEI
      */
@@ -115,6 +126,13 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
      */
     private Map<String, EventListenerExecutor> m_listenerThreads = new HashMap<String, EventListenerExecutor>();
 
+    /**
+     * Immutable snapshot of the registrations above used by the broadcast path.
+     * It is rebuilt whenever the registrations change (under the monitor of this
+     * object) and read without any locking.
+     */
+    private volatile DispatchTable m_dispatchTable = new DispatchTable(Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap());
+
     /**
      * The thread pool handling the events
      */
@@ -134,7 +152,7 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
      * ListenerThread reads events off of this queue and sends them to the
      * appropriate listener.
      */
-    private static class EventListenerExecutor {
+    static class EventListenerExecutor {
         /**
          * Listener to which this thread is dedicated
          */
@@ -145,38 +163,73 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
          */
         private final ExecutorService m_delegateThread;
 
+        private final MetricRegistry m_registry;
+
+        private final String m_metricPrefix;
+
+        private final Timer m_dispatchTimer;
+
+        private final Counter m_droppedCounter;
+
         /**
          * Constructor
          */
-        EventListenerExecutor(EventListener listener, Integer handlerQueueLength) {
+        EventListenerExecutor(EventListener listener, Integer handlerQueueLength, MetricRegistry registry) {
             m_listener = listener;
+            m_registry = registry;
+            m_metricPrefix = MetricRegistry.name("eventlisteners", m_listener.getName());
 
             int numThreads = 1;
             if (m_listener instanceof ThreadAwareEventListener) {
                 numThreads = ((ThreadAwareEventListener)m_listener).getNumThreads();
             }
 
+            final LinkedBlockingQueue<Runnable> workQueue = handlerQueueLength == null ? new LinkedBlockingQueue<Runnable>() : new LinkedBlockingQueue<Runnable>(handlerQueueLength);
             m_delegateThread = new ThreadPoolExecutor(
                     numThreads,
                     numThreads,
                     0L,
                     TimeUnit.MILLISECONDS,
-                    handlerQueueLength == null ? new LinkedBlockingQueue<Runnable>() : new LinkedBlockingQueue<Runnable>(handlerQueueLength),
+                    workQueue,
                     // This ThreadFactory will ensure that the log prefix of the calling thread
                     // is used for all events that this listener handles. Therefore, if Notifd
                     // registers for an event then all logs for handling that event will end up
                     // inside notifd.log.
-                    new LogPreservingThreadFactory(m_listener.getName(), numThreads),
-                    new RejectedExecutionHandler() {
-                        @Override
-                        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                            LOG.warn("Listener {}'s event queue is full, discarding event", m_listener.getName());
-                        }
-                    }
+                    new LogPreservingThreadFactory(m_listener.getName(), numThreads)
             );
+
+            removeMetrics();
+            m_registry.register(MetricRegistry.name(m_metricPrefix, "queued"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return workQueue.size();
+                }
+            });
+            m_dispatchTimer = m_registry.timer(MetricRegistry.name(m_metricPrefix, "dispatch"));
+            m_droppedCounter = m_registry.counter(MetricRegistry.name(m_metricPrefix, "dropped"));
         }
 
+        /**
+         * Queues the event to the listener. Events that cannot be queued are
+         * discarded and the returned future is completed right away, so that
+         * synchronous broadcasts never wait on them.
+         */
         public CompletableFuture<Void> addEvent(final IEvent event) {
+            try {
+                return dispatch(event);
+            } catch (RejectedExecutionException e) {
+                if (m_delegateThread.isShutdown()) {
+                    // The listener was stopped or replaced after the broadcast picked up its registrations
+                    LOG.debug("Listener {} has been stopped, discarding event {}", m_listener.getName(), event.getUei());
+                } else {
+                    m_droppedCounter.inc();
+                    LOG.warn("Listener {}'s event queue is full, discarding event", m_listener.getName());
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+        }
+
+        private CompletableFuture<Void> dispatch(final IEvent event) {
             return CompletableFuture.runAsync(new Runnable() {
                 @Override
                 public void run() {
@@ -185,7 +238,7 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
                         // Make sure we restore our log4j logging prefix after onEvent is called
                         Map<String,String> mdc = Logging.getCopyOfContextMap();
-                        try {
+                        try (Timer.Context ctx = m_dispatchTimer.time()) {
                             m_listener.onEvent(event);
                         } finally {
                             Logging.setContextMap(mdc);
@@ -202,6 +255,105 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
          */
         public void stop() {
             m_delegateThread.shutdown();
+            removeMetrics();
+        }
+
+        private void removeMetrics() {
+            m_registry.remove(MetricRegistry.name(m_metricPrefix, "queued"));
+            m_registry.remove(MetricRegistry.name(m_metricPrefix, "dispatch"));
+            m_registry.remove(MetricRegistry.name(m_metricPrefix, "dropped"));
+        }
+    }
+
+    /**
+     * Immutable view of the listener registrations.
+     *
+     * Instances are built from the registration maps whenever they change and
+     * are then published to the broadcast path, which can resolve the listeners
+     * for a given UEI without taking any locks. The result of the "directory"
+     * wildcard matching is memoized per UEI so that the prefix walk is only
+     * performed once per distinct UEI for a given set of registrations.
+     */
+    private static final class DispatchTable {
+        private final EventListenerExecutor[] m_matchAll;
+
+        private final Map<String, EventListener[]> m_ueiListeners;
+
+        private final Map<String, EventListenerExecutor> m_executors;
+
+        private final Map<String, EventListenerExecutor[]> m_resolved = new ConcurrentHashMap<>();
+
+        DispatchTable(List<EventListener> matchAll, Map<String, List<EventListener>> ueiListeners, Map<String, EventListenerExecutor> executors) {
+            m_executors = Collections.unmodifiableMap(new HashMap<>(executors));
+
+            final List<EventListenerExecutor> matchAllExecutors = new ArrayList<>(matchAll.size());
+            for (EventListener listener : matchAll) {
+                final EventListenerExecutor executor = m_executors.get(listener.getName());
+                if (executor != null) {
+                    matchAllExecutors.add(executor);
+                }
+            }
+            m_matchAll = matchAllExecutors.toArray(NO_EXECUTORS);
+
+            final Map<String, EventListener[]> byUei = new HashMap<>();
+            for (Map.Entry<String, List<EventListener>> entry : ueiListeners.entrySet()) {
+                if (!entry.getValue().isEmpty()) {
+                    byUei.put(entry.getKey(), entry.getValue().toArray(new EventListener[0]));
+                }
+            }
+            m_ueiListeners = byUei;
+        }
+
+        EventListenerExecutor[] getMatchAll() {
+            return m_matchAll;
+        }
+
+        boolean hasListener(String uei) {
+            return m_ueiListeners.containsKey(uei);
+        }
+
+        /**
+         * Retrieves the executors of all listeners that are registered for the
+         * given UEI, or for one of its "directory" prefixes.
+         */
+        EventListenerExecutor[] getExecutors(String uei) {
+            EventListenerExecutor[] executors = m_resolved.get(uei);
+            if (executors == null) {
+                executors = resolve(uei);
+                if (m_resolved.size() < MAX_RESOLVED_UEIS) {
+                    m_resolved.put(uei, executors);
+                }
+            }
+            return executors;
+        }
+
+        private EventListenerExecutor[] resolve(String uei) {
+            final Set<EventListener> sentToListeners = new HashSet<EventListener>();
+            final List<EventListenerExecutor> executors = new ArrayList<>();
+            for (String prefix = uei; prefix.length() > 0; ) {
+                final EventListener[] listeners = m_ueiListeners.get(prefix);
+                if (listeners != null) {
+                    for (EventListener listener : listeners) {
+                        if (sentToListeners.add(listener)) {
+                            final EventListenerExecutor executor = m_executors.get(listener.getName());
+                            if (executor != null) {
+                                executors.add(executor);
+                            }
+                        }
+                    }
+                }
+
+                // Try wild cards: Find / before last character
+                int i = prefix.lastIndexOf("/", prefix.length() - 2);
+                if (i > 0) {
+                    // Split at "/", including the /
+                    prefix = prefix.substring(0, i + 1);
+                } else {
+                    // No more wild cards to match
+                    break;
+                }
+            }
+            return executors.isEmpty() ? NO_EXECUTORS : executors.toArray(NO_EXECUTORS);
         }
     }
 
@@ -296,17 +448,29 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             LOG.debug("Event ID {} to be broadcasted: {}", event.getDbid(), event.getUei());
         }
 
-        if (LOG.isDebugEnabled() && m_listeners.isEmpty()) {
+        // Use a single snapshot of the registrations for the whole broadcast
+        final DispatchTable dispatchTable = m_dispatchTable;
+        final EventListenerExecutor[] matchAll = dispatchTable.getMatchAll();
+
+        if (LOG.isDebugEnabled() && matchAll.length == 0) {
             LOG.debug("No listeners interested in all events");
         }
 
-        List<CompletableFuture<Void>> listenerFutures = new ArrayList<>();
+        final EventListenerExecutor[] ueiExecutors = event.getUei() == null ? NO_EXECUTORS : dispatchTable.getExecutors(event.getUei());
+        if (matchAll.length == 0 && ueiExecutors.length == 0) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("No listener interested in event ID {}: {}", event.getDbid(), event.getUei());
+            }
+            return;
+        }
+
+        final List<CompletableFuture<Void>> listenerFutures = synchronous ? new ArrayList<>(matchAll.length + ueiExecutors.length) : null;
 
         IEvent immutableEvent = ImmutableMapper.fromMutableEvent(event);
 
         // Send to listeners interested in receiving all events
-        for (EventListener listener : m_listeners) {
-            listenerFutures.add(queueEventToListener(immutableEvent, listener));
+        for (EventListenerExecutor executor : matchAll) {
+            queueEventToListener(immutableEvent, executor, listenerFutures);
         }
 
         if (event.getUei() == null) {
@@ -316,33 +480,12 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             return;
         }
 
-        /*
-         * Send to listeners who are interested in this event UEI.
-         * Loop to attempt partial wild card "directory" matches.
-         */
-        Set<EventListener> sentToListeners = new HashSet<EventListener>();
-        for (String uei = event.getUei(); uei.length() > 0; ) {
-            if (m_ueiListeners.containsKey(uei)) {
-                for (EventListener listener : m_ueiListeners.get(uei)) {
-                    if (!sentToListeners.contains(listener)) {
-                        listenerFutures.add(queueEventToListener(immutableEvent, listener));
-                        sentToListeners.add(listener);
-                    }
-                }
-            }
-            
-            // Try wild cards: Find / before last character
-            int i = uei.lastIndexOf("/", uei.length() - 2);
-            if (i > 0) {
-                // Split at "/", including the /
-                uei = uei.substring (0, i + 1);
-            } else {
-                // No more wild cards to match
-                break;
-            }
+        // Send to listeners who are interested in this event UEI, or in one of its "directory" prefixes
+        for (EventListenerExecutor executor : ueiExecutors) {
+            queueEventToListener(immutableEvent, executor, listenerFutures);
         }
-        
-        if (sentToListeners.isEmpty()) {
+
+        if (ueiExecutors.length == 0) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("No listener interested in event ID {}: {}", event.getDbid(), event.getUei());
             }
@@ -355,8 +498,20 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         }
     }
 
-    private CompletableFuture<Void> queueEventToListener(IEvent event, EventListener listener) {
-        return m_listenerThreads.get(listener.getName()).addEvent(event);
+    private static void queueEventToListener(IEvent event, EventListenerExecutor executor, List<CompletableFuture<Void>> listenerFutures) {
+        final CompletableFuture<Void> future = executor.addEvent(event);
+        if (listenerFutures != null) {
+            listenerFutures.add(future);
+        }
+    }
+
+    /**
+     * Rebuilds the dispatch table from the current registrations and publishes
+     * it to the broadcast path. Must be called while holding the monitor of this
+     * object.
+     */
+    private void publishDispatchTable() {
+        m_dispatchTable = new DispatchTable(m_listeners, m_ueiListeners, m_listenerThreads);
     }
 
     /**
@@ -377,6 +532,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : m_ueiListeners.keySet()) {
             removeUeiForListener(uei, listener);
         }
+
+        publishDispatchTable();
     }
 
     /**
@@ -406,6 +563,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
         // Since we have a UEI-specific listener, remove the match-all listener
         removeMatchAllForListener(listener);
+
+        publishDispatchTable();
     }
 
     /**
@@ -440,6 +599,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : ueis) {
             removeUeiForListener(uei, listener);
         }
+
+        publishDispatchTable();
     }
 
     /**
@@ -459,6 +620,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         Assert.notNull(uei, "uei argument cannot be null");
 
         removeUeiForListener(uei, listener);
+
+        publishDispatchTable();
     }
 
     /**
@@ -485,6 +648,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
             m_listenerThreads.remove(listener.getName());
         }
+
+        publishDispatchTable();
     }
 
     /**
@@ -496,7 +661,7 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             return;
         }
         
-        EventListenerExecutor listenerThread = new EventListenerExecutor(listener, m_handlerQueueLength);
+        EventListenerExecutor listenerThread = new EventListenerExecutor(listener, m_handlerQueueLength, m_registry);
         m_listenerThreads.put(listener.getName(), listenerThread);
     }
 
@@ -519,8 +684,9 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
      * Remove UEI for this listener.
      */
     private void removeUeiForListener(String uei, EventListener listener) {
-        if (m_ueiListeners.containsKey(uei)) {
-            m_ueiListeners.get(uei).remove(listener);
+        final List<EventListener> listenersList = m_ueiListeners.get(uei);
+        if (listenersList != null) {
+            listenersList.remove(listener);
         }
     }
 
@@ -638,10 +804,6 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
     @Override
     public boolean hasEventListener(final String uei) {
-        if (this.m_ueiListeners.containsKey(uei)) {
-            return this.m_ueiListeners.get(uei).size() > 0;
-        } else {
-            return false;
-        }
+        return m_dispatchTable.hasListener(uei);
     }
 }
@@ -30,6 +30,7 @@ package org.opennms.netmgt.eventd;
 
 import java.math.BigInteger;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
 
@@ -53,6 +54,15 @@ public interface EventUtil {
 	
 	String expandParms(String inp, Event event, Map<String, Map<String, String>> decode);
 
+	/**
+	 * Parses the given templates ahead of time so that expanding them does not
+	 * require them to be parsed again. The templates replace any set that was
+	 * previously compiled.
+	 *
+	 * @param templates the templates, i.e. logmsg or descr, to compile
+	 */
+	void compileTemplates(Collection<String> templates);
+
 	String getNamedParmValue(String string, Event event);
 
 	void expandMapValues(Map<String, String> parmMap, Event event);
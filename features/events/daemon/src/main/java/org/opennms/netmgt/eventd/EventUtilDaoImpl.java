@@ -31,9 +31,12 @@ package org.opennms.netmgt.eventd;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,8 +60,15 @@ import org.opennms.netmgt.xml.event.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 public class EventUtilDaoImpl extends AbstractEventUtil {
 
@@ -84,15 +94,92 @@ public class EventUtilDaoImpl extends AbstractEventUtil {
 
 	private final static Map<String, PropertyDescriptor> hwEntityDescriptorsByName = getDescriptorsForStrings(OnmsHwEntity.class);
 
-    public EventUtilDaoImpl() { }
+    /**
+     * The node level attributes which are looked up together, and cached for a short
+     * amount of time, so that expanding all of the tokens of an event (or of a burst of
+     * events for the same node) only requires a single lookup.
+     *
+     * A null cache disables the caching and looks up each attribute on its own.
+     * The cache is also bypassed when called within a transaction, so that changes
+     * made within that transaction are visible.
+     */
+    private final LoadingCache<Integer, NodeAttributes> nodeAttributeCache;
+
+    public EventUtilDaoImpl() {
+        nodeAttributeCache = createNodeAttributeCache();
+    }
 
     public EventUtilDaoImpl(MetricRegistry registry) {
         super(registry);
+        nodeAttributeCache = createNodeAttributeCache();
+    }
+
+    private LoadingCache<Integer, NodeAttributes> createNodeAttributeCache() {
+        final long ttlMs = Long.getLong("org.opennms.eventd.nodeAttributeCacheTtl", 5000L);
+        if (ttlMs <= 0) {
+            return null;
+        }
+        final long maximumSize = Long.getLong("org.opennms.eventd.nodeAttributeCacheSize", 10000L);
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .maximumSize(maximumSize)
+                .build(new CacheLoader<Integer, NodeAttributes>() {
+                    @Override
+                    public NodeAttributes load(Integer nodeId) {
+                        return inTransaction(() -> loadNodeAttributes(nodeId));
+                    }
+                });
+    }
+
+    private NodeAttributes loadNodeAttributes(int nodeId) {
+        final OnmsNode node = nodeDao.get(nodeId);
+        if (node == null) {
+            return NodeAttributes.UNKNOWN;
+        }
+        final Map<String, String> assetFields = new HashMap<>();
+        final OnmsAssetRecord assetRecord = assetRecordDao.findByNodeId(nodeId);
+        if (assetRecord != null) {
+            for (String assetField : assetDescriptorsByName.keySet()) {
+                assetFields.put(assetField, getStringPropertyByName(assetField, assetRecord, assetDescriptorsByName));
+            }
+        }
+        return new NodeAttributes(node.getLabel(),
+                node.getLocation() == null ? null : node.getLocation().getLocationName(),
+                node.getForeignSource(),
+                node.getForeignId(),
+                assetFields);
+    }
+
+    private boolean useNodeAttributeCache() {
+        return nodeAttributeCache != null && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    private NodeAttributes getNodeAttributes(long nodeId) {
+        try {
+            return nodeAttributeCache.getUnchecked((int)nodeId);
+        } catch (UncheckedExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /**
+     * The expandable parameter resolvers do not open a transaction for the node
+     * level attributes, so we open one here if there is none yet.
+     */
+    private <T> T inTransaction(Supplier<T> supplier) {
+        final TransactionOperations transactionOperations = getTransactionOperations();
+        if (transactionOperations == null) {
+            return supplier.get();
+        }
+        return transactionOperations.execute(status -> supplier.get());
     }
 
     @Override
     public String getNodeLabel(long nodeId) {
-        return nodeDao.getLabelForId(Integer.valueOf((int)nodeId));
+        if (useNodeAttributeCache()) {
+            return getNodeAttributes(nodeId).label;
+        }
+        return inTransaction(() -> nodeDao.getLabelForId(Integer.valueOf((int)nodeId)));
     }
 
     @Override
@@ -107,22 +194,35 @@ public class EventUtilDaoImpl extends AbstractEventUtil {
 
     @Override
     public String getNodeLocation(long nodeId) {
-        return nodeDao.getLocationForId(Integer.valueOf((int)nodeId));
+        if (useNodeAttributeCache()) {
+            return getNodeAttributes(nodeId).location;
+        }
+        return inTransaction(() -> nodeDao.getLocationForId(Integer.valueOf((int)nodeId)));
     }
 
     @Override
     public String getForeignSource(long nodeId) {
-        OnmsNode node = nodeDao.get((int)nodeId);
-        if (node != null) {
-            return node.getForeignSource();
+        if (useNodeAttributeCache()) {
+            return getNodeAttributes(nodeId).foreignSource;
         }
-        return null;
+        return inTransaction(() -> {
+            OnmsNode node = nodeDao.get((int)nodeId);
+            if (node != null) {
+                return node.getForeignSource();
+            }
+            return null;
+        });
     }
 
     @Override
     public String getForeignId(long nodeId) {
-        OnmsNode node = nodeDao.get((int)nodeId);
-        return node == null ? null : node.getForeignId();
+        if (useNodeAttributeCache()) {
+            return getNodeAttributes(nodeId).foreignId;
+        }
+        return inTransaction(() -> {
+            OnmsNode node = nodeDao.get((int)nodeId);
+            return node == null ? null : node.getForeignId();
+        });
     }
 
     @Override
@@ -144,12 +244,17 @@ public class EventUtilDaoImpl extends AbstractEventUtil {
         }
         final String assetField = matcher.group(1).toLowerCase();
 
-        OnmsAssetRecord assetRecord = assetRecordDao.findByNodeId((int)nodeId);
-        if (assetRecord == null) {
-            return null;
+        if (useNodeAttributeCache()) {
+            return getNodeAttributes(nodeId).assetFields.get(assetField);
         }
 
-        return getStringPropertyByName(assetField, assetRecord, assetDescriptorsByName);
+        return inTransaction(() -> {
+            OnmsAssetRecord assetRecord = assetRecordDao.findByNodeId((int)nodeId);
+            if (assetRecord == null) {
+                return null;
+            }
+            return getStringPropertyByName(assetField, assetRecord, assetDescriptorsByName);
+        });
     }
 
     @Override
@@ -238,6 +343,14 @@ public class EventUtilDaoImpl extends AbstractEventUtil {
         return super.expandParms(input, event, decode);
     }
 
+    public void setNodeDao(NodeDao nodeDao) {
+        this.nodeDao = nodeDao;
+    }
+
+    public void setAssetRecordDao(AssetRecordDao assetRecordDao) {
+        this.assetRecordDao = assetRecordDao;
+    }
+
     /**
      * Retrieves the property with the given name on the bean.
      *
@@ -272,4 +385,22 @@ public class EventUtilDaoImpl extends AbstractEventUtil {
         }
         return descriptorsByName;
     }
+
+    private static final class NodeAttributes {
+        private static final NodeAttributes UNKNOWN = new NodeAttributes(null, null, null, null, Collections.emptyMap());
+
+        private final String label;
+        private final String location;
+        private final String foreignSource;
+        private final String foreignId;
+        private final Map<String, String> assetFields;
+
+        private NodeAttributes(String label, String location, String foreignSource, String foreignId, Map<String, String> assetFields) {
+            this.label = label;
+            this.location = location;
+            this.foreignSource = foreignSource;
+            this.foreignId = foreignId;
+            this.assetFields = assetFields;
+        }
+    }
 }
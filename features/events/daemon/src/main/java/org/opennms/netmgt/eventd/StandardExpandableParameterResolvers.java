@@ -654,7 +654,8 @@ public enum StandardExpandableParameterResolvers implements ExpandableParameterR
 
         @Override
         public boolean requiresTransaction() {
-            return true;
+            // The node level attributes are looked up in a transaction of their own, see EventUtilDaoImpl
+            return false;
         }
     },
 
@@ -686,7 +687,7 @@ public enum StandardExpandableParameterResolvers implements ExpandableParameterR
 
         @Override
         public boolean requiresTransaction() {
-            return true;
+            return false;
         }
     },
 
@@ -718,7 +719,7 @@ public enum StandardExpandableParameterResolvers implements ExpandableParameterR
 
         @Override
         public boolean requiresTransaction() {
-            return true;
+            return false;
         }
     },
 
@@ -747,7 +748,7 @@ public enum StandardExpandableParameterResolvers implements ExpandableParameterR
 
         @Override
         public boolean requiresTransaction() {
-            return true;
+            return false;
         }
     },
 
@@ -776,7 +777,7 @@ public enum StandardExpandableParameterResolvers implements ExpandableParameterR
 
         @Override
         public boolean requiresTransaction() {
-            return true;
+            return false;
         }
     },
 
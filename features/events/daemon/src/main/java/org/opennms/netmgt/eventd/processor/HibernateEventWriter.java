@@ -29,10 +29,19 @@
 package org.opennms.netmgt.eventd.processor;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 import org.opennms.netmgt.dao.api.DistPollerDao;
@@ -48,6 +57,8 @@ import org.opennms.netmgt.dao.util.SnmpInfo;
 import org.opennms.netmgt.eventd.EventUtil;
 import org.opennms.netmgt.events.api.EventDatabaseConstants;
 import org.opennms.netmgt.events.api.EventProcessorException;
+import org.opennms.netmgt.events.api.model.IEvent;
+import org.opennms.netmgt.events.api.model.ImmutableMapper;
 import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.netmgt.xml.event.Event;
@@ -56,13 +67,18 @@ import org.opennms.netmgt.xml.event.Log;
 import org.opennms.netmgt.xml.event.Operaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.util.Assert;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
@@ -81,6 +97,15 @@ import com.codahale.metrics.Timer.Context;
  *
  * Values for the ' <parms>' block are loaded with each parm name and parm value
  * delimited with the NAME_VAL_DELIM.
+ *
+ * By default, the events of each 'Log' are saved through Hibernate in their own
+ * transaction. When write-behind is enabled, the events of many logs are instead
+ * accumulated in a bounded buffer, and written in batches by a single thread using
+ * multi-row JDBC inserts. The ids of these events are allocated from the sequence
+ * in blocks, so that they can be set before the events are written. Callers always
+ * wait until the batch holding their events has been committed, since the processors
+ * that follow broadcast the events, and their consumers (i.e. alarmd, notifd and
+ * pollerd) look them up by id. The batches are made of the events of concurrent callers.
  * 
  * @see org.opennms.netmgt.events.api.EventDatabaseConstants#MULTIPLE_VAL_DELIM
  * @see org.opennms.netmgt.events.api.EventDatabaseConstants#DB_ATTRIB_DELIM
@@ -89,7 +114,7 @@ import com.codahale.metrics.Timer.Context;
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Nataraj </A>
  * @author <A HREF="http://www.opennms.org">OpenNMS.org </A>
  */
-public class HibernateEventWriter implements EventWriter {
+public class HibernateEventWriter implements EventWriter, InitializingBean, DisposableBean {
     private static final Logger LOG = LoggerFactory.getLogger(HibernateEventWriter.class);
 
     public static final String LOG_MSG_DEST_DO_NOT_PERSIST = "donotpersist";
@@ -119,10 +144,141 @@ public class HibernateEventWriter implements EventWriter {
     @Autowired
     private EventUtil eventUtil;
 
+    @Autowired(required = false)
+    private JdbcOperations jdbcTemplate;
+
     private final Timer writeTimer;
 
+    private final Histogram writeBehindBatchSizes;
+
+    private boolean writeBehind = Boolean.getBoolean("org.opennms.eventd.writeBehind");
+
+    private int writeBehindBufferSize = Integer.getInteger("org.opennms.eventd.writeBehind.bufferSize", 10000);
+
+    private int writeBehindBatchSize = Integer.getInteger("org.opennms.eventd.writeBehind.batchSize", 500);
+
+    private long writeBehindFlushInterval = Long.getLong("org.opennms.eventd.writeBehind.flushInterval", 100L);
+
+    private int idBlockSize = Integer.getInteger("org.opennms.eventd.writeBehind.idBlockSize", 100);
+
+    private BlockingQueue<PendingEvent> writeBehindQueue;
+
+    private JdbcEventInserter eventInserter;
+
+    private Thread writeBehindThread;
+
+    private volatile boolean stopping = false;
+
+    // Guards the transition to stopping, so that no event is queued once the write-behind thread may have exited
+    private final ReadWriteLock stoppingLock = new ReentrantReadWriteLock();
+
     public HibernateEventWriter(MetricRegistry registry) {
         writeTimer = Objects.requireNonNull(registry).timer("eventlogs.process.write");
+        writeBehindBatchSizes = registry.histogram("eventlogs.process.write.batch.sizes");
+        registry.register("eventlogs.process.write.queued", (Gauge<Integer>) () -> writeBehindQueue == null ? 0 : writeBehindQueue.size());
+    }
+
+    /**
+     * An event waiting to be written.
+     */
+    private static class PendingEvent {
+        private final Header header;
+        private final IEvent event;
+        private final PendingLog log;
+
+        private PendingEvent(final Header header, final IEvent event, final PendingLog log) {
+            this.header = header;
+            this.event = event;
+            this.log = log;
+        }
+    }
+
+    /**
+     * Tracks the events of a log that are waiting to be written.
+     */
+    private static class PendingLog {
+        private final AtomicInteger remaining;
+        private final AtomicReference<EventProcessorException> failure = new AtomicReference<>();
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingLog(final int count) {
+            remaining = new AtomicInteger(count);
+        }
+
+        private void written() {
+            resolved();
+        }
+
+        private void failed(final EventProcessorException e) {
+            failure.compareAndSet(null, e);
+            resolved();
+        }
+
+        // The log completes once each of its events has either been written or has failed
+        private void resolved() {
+            if (remaining.decrementAndGet() == 0) {
+                if (failure.get() != null) {
+                    future.completeExceptionally(failure.get());
+                } else {
+                    future.complete(null);
+                }
+            }
+        }
+
+        private void await() throws EventProcessorException {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw (EventProcessorException) e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EventProcessorException("Interrupted while waiting for events to be written", e);
+            }
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!writeBehind) {
+            return;
+        }
+        Assert.notNull(jdbcTemplate, "jdbcTemplate is required for write-behind");
+        Assert.isTrue(writeBehindBatchSize > 0, "writeBehindBatchSize must be strictly positive");
+
+        LOG.info("Writing events behind using a buffer of {} events and batches of up to {} events.", writeBehindBufferSize, writeBehindBatchSize);
+        eventInserter = new JdbcEventInserter(jdbcTemplate, idBlockSize);
+        writeBehindQueue = new ArrayBlockingQueue<>(writeBehindBufferSize);
+        writeBehindThread = new Thread(this::writeBehind, "Eventd-WriteBehind");
+        writeBehindThread.setDaemon(true);
+        writeBehindThread.start();
+    }
+
+    /**
+     * Stops queueing events, and waits for the buffered events to be written.
+     * Events processed afterwards are written inline.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writeBehindThread == null) {
+            return;
+        }
+        stoppingLock.writeLock().lock();
+        try {
+            stopping = true;
+        } finally {
+            stoppingLock.writeLock().unlock();
+        }
+        writeBehindThread.join(TimeUnit.SECONDS.toMillis(30));
+        if (writeBehindThread.isAlive()) {
+            LOG.warn("{} events were not written before shutdown.", writeBehindQueue.size());
+            writeBehindThread.interrupt();
+            writeBehindThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        // Release the callers still waiting on events that will never be written
+        final List<PendingEvent> unwritten = new ArrayList<>();
+        writeBehindQueue.drainTo(unwritten);
+        unwritten.forEach(pendingEvent -> pendingEvent.log.failed(new EventProcessorException("Event writer stopped before the event was written: " + pendingEvent.event.getUei())));
     }
 
     /**
@@ -152,27 +308,68 @@ public class HibernateEventWriter implements EventWriter {
     }
 
     /**
-     * Event writing is always synchronous so this method just 
-     * delegates to {@link #process(Log)}.
+     * Without write-behind, or once the writer is stopping, this method just
+     * delegates to {@link #process(Log)}. With write-behind, the events are queued
+     * and this method returns once they have been written, regardless of
+     * {@code synchronous}.
      */
     @Override
     public void process(Log eventLog, boolean synchronous) throws EventProcessorException {
-        process(eventLog);
+        if (writeBehindQueue == null) {
+            process(eventLog);
+            return;
+        }
+
+        final List<Event> eventsToPersist = getEventsToPersist(eventLog);
+        if (eventsToPersist.isEmpty()) {
+            return;
+        }
+
+        PendingLog pendingLog = new PendingLog(eventsToPersist.size());
+        stoppingLock.readLock().lock();
+        try {
+            if (stopping) {
+                // The write-behind thread may already be gone
+                pendingLog = null;
+            } else {
+                enqueue(eventLog.getHeader(), eventsToPersist, pendingLog);
+            }
+        } finally {
+            stoppingLock.readLock().unlock();
+        }
+
+        if (pendingLog == null) {
+            process(eventLog);
+            return;
+        }
+
+        // The events are broadcast once we return, and their consumers look them up by id
+        pendingLog.await();
+    }
+
+    private void enqueue(final Header header, final List<Event> events, final PendingLog pendingLog) throws EventProcessorException {
+        for (final Event event : events) {
+            try {
+                event.setDbid(eventInserter.nextId());
+            } catch (Throwable e) {
+                throw new EventProcessorException("Unexpected exception while allocating an id for event: " + event.toString(), e);
+            }
+
+            // The event may be modified by other processors while it waits to be written
+            final PendingEvent pendingEvent = new PendingEvent(header, ImmutableMapper.fromMutableEvent(event), pendingLog);
+            try {
+                writeBehindQueue.put(pendingEvent);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EventProcessorException("Interrupted while queueing event: " + event.toString(), e);
+            }
+        }
     }
 
     @Override
     public void process(Log eventLog) throws EventProcessorException {
         if (eventLog != null && eventLog.getEvents() != null) {
-            final List<Event> eventsInLog = eventLog.getEvents().getEventCollection();
-            // This shouldn't happen, but just to be safe...
-            if (eventsInLog == null) {
-                return;
-            }
-
-            // Find the events in the log that need to be persisted
-            final List<Event> eventsToPersist = eventsInLog.stream()
-                .filter(e -> checkEventSanityAndDoWeProcess(e, "HibernateEventWriter"))
-                .collect(Collectors.toList());
+            final List<Event> eventsToPersist = getEventsToPersist(eventLog);
 
             // If there are no events to persist, avoid creating a database transaction
             if (eventsToPersist.size() < 1) {
@@ -204,6 +401,77 @@ public class HibernateEventWriter implements EventWriter {
         }
     }
 
+    private static List<Event> getEventsToPersist(final Log eventLog) {
+        if (eventLog == null || eventLog.getEvents() == null) {
+            return Collections.emptyList();
+        }
+
+        final List<Event> eventsInLog = eventLog.getEvents().getEventCollection();
+        // This shouldn't happen, but just to be safe...
+        if (eventsInLog == null) {
+            return Collections.emptyList();
+        }
+
+        // Find the events in the log that need to be persisted
+        return eventsInLog.stream()
+            .filter(e -> checkEventSanityAndDoWeProcess(e, "HibernateEventWriter"))
+            .collect(Collectors.toList());
+    }
+
+    private void writeBehind() {
+        final List<PendingEvent> batch = new ArrayList<>(writeBehindBatchSize);
+        while (!stopping || !writeBehindQueue.isEmpty()) {
+            try {
+                final PendingEvent first = writeBehindQueue.poll(writeBehindFlushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                writeBehindQueue.drainTo(batch, writeBehindBatchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted while writing events.");
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the given events in a single transaction, falling back to writing
+     * them one by one if the transaction fails, so that a single bad event does
+     * not prevent the others from being written.
+     */
+    private void write(final List<PendingEvent> batch) {
+        try (Context context = writeTimer.time()) {
+            m_transactionManager.execute(status -> {
+                final List<OnmsEvent> ovents = new ArrayList<>(batch.size());
+                for (final PendingEvent pendingEvent : batch) {
+                    final OnmsEvent ovent = createOnmsEvent(pendingEvent.header, Event.copyFrom(pendingEvent.event));
+                    ovent.setId(pendingEvent.event.getDbid());
+                    ovents.add(ovent);
+                }
+                eventInserter.insert(ovents);
+                return null;
+            });
+            writeBehindBatchSizes.update(batch.size());
+            batch.forEach(pendingEvent -> pendingEvent.log.written());
+        } catch (Throwable e) {
+            if (batch.size() > 1) {
+                LOG.warn("Failed to write batch of {} events; writing them one by one.", batch.size(), e);
+                batch.forEach(pendingEvent -> write(Collections.singletonList(pendingEvent)));
+                return;
+            }
+
+            final IEvent event = batch.get(0).event;
+            LOG.error("Failed to write event with id {}.", event.getDbid(), e);
+            batch.get(0).log.failed(e instanceof DeadlockLoserDataAccessException
+                    ? new EventProcessorException("Encountered deadlock when inserting event: " + event.toString(), e)
+                    : new EventProcessorException("Unexpected exception while storing event: " + event.toString(), e));
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -405,4 +673,52 @@ public class HibernateEventWriter implements EventWriter {
     public void setTransactionManager(TransactionOperations transactionManager) {
         m_transactionManager = transactionManager;
     }
+
+    public void setNodeDao(NodeDao nodeDao) {
+        this.nodeDao = nodeDao;
+    }
+
+    public void setMonitoringSystemDao(MonitoringSystemDao monitoringSystemDao) {
+        this.monitoringSystemDao = monitoringSystemDao;
+    }
+
+    public void setDistPollerDao(DistPollerDao distPollerDao) {
+        this.distPollerDao = distPollerDao;
+    }
+
+    public void setEventDao(EventDao eventDao) {
+        this.eventDao = eventDao;
+    }
+
+    public void setServiceTypeDao(ServiceTypeDao serviceTypeDao) {
+        this.serviceTypeDao = serviceTypeDao;
+    }
+
+    public void setEventUtil(EventUtil eventUtil) {
+        this.eventUtil = eventUtil;
+    }
+
+    public void setJdbcTemplate(JdbcOperations jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void setWriteBehind(boolean writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public void setWriteBehindBufferSize(int writeBehindBufferSize) {
+        this.writeBehindBufferSize = writeBehindBufferSize;
+    }
+
+    public void setWriteBehindBatchSize(int writeBehindBatchSize) {
+        this.writeBehindBatchSize = writeBehindBatchSize;
+    }
+
+    public void setWriteBehindFlushInterval(long writeBehindFlushInterval) {
+        this.writeBehindFlushInterval = writeBehindFlushInterval;
+    }
+
+    public void setIdBlockSize(int idBlockSize) {
+        this.idBlockSize = idBlockSize;
+    }
 }
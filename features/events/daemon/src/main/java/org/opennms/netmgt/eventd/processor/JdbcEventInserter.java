@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd.processor;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsEventParameter;
+import org.springframework.jdbc.core.JdbcOperations;
+
+/**
+ * Inserts events and their parameters into the database using multi-row
+ * INSERT statements, instead of persisting each {@link OnmsEvent} through
+ * Hibernate.
+ *
+ * Event ids are allocated from the <code>eventsNxtId</code> sequence in
+ * blocks, so that the ids can be handed out before the events are written.
+ */
+public class JdbcEventInserter {
+
+    private static final String[] EVENT_COLUMNS = {
+            "eventId", "eventUei", "nodeId", "eventTime", "eventHost", "eventSource", "ipAddr", "systemId",
+            "eventSnmpHost", "serviceId", "eventSnmp", "eventCreateTime", "eventDescr", "eventLogGroup",
+            "eventLogMsg", "eventSeverity", "ifIndex", "eventPathOutage", "eventCorrelation",
+            "eventSuppressedCount", "eventOperInstruct", "eventAutoAction", "eventOperAction",
+            "eventOperActionMenuText", "eventNotification", "eventTTicket", "eventTTicketState", "eventForward",
+            "eventMouseOverText", "eventLog", "eventDisplay", "eventAckUser", "eventAckTime", "alarmId"
+    };
+
+    private static final String[] PARAMETER_COLUMNS = {
+            "eventID", "name", "value", "type", "position"
+    };
+
+    /**
+     * PostgreSQL limits the number of bind parameters of a statement to 32767.
+     */
+    private static final int MAX_PARAMETERS_PER_STATEMENT = 30000;
+
+    private final JdbcOperations jdbcTemplate;
+
+    private final int idBlockSize;
+
+    private final Deque<Integer> ids = new ArrayDeque<>();
+
+    public JdbcEventInserter(final JdbcOperations jdbcTemplate, final int idBlockSize) {
+        this.jdbcTemplate = Objects.requireNonNull(jdbcTemplate);
+        if (idBlockSize < 1) {
+            throw new IllegalArgumentException("idBlockSize must be strictly positive");
+        }
+        this.idBlockSize = idBlockSize;
+    }
+
+    /**
+     * Allocates the next event id, fetching a new block of ids from the
+     * sequence when the previous one is exhausted.
+     */
+    public synchronized int nextId() {
+        if (ids.isEmpty()) {
+            ids.addAll(jdbcTemplate.queryForList("SELECT nextval('eventsNxtId') FROM generate_series(1, ?)", Integer.class, idBlockSize));
+        }
+        return ids.removeFirst();
+    }
+
+    /**
+     * Inserts the given events, which must already have an id, along with
+     * their parameters.
+     */
+    public void insert(final List<OnmsEvent> events) {
+        final List<Object[]> rows = new ArrayList<>(events.size());
+        for (final OnmsEvent event : events) {
+            rows.add(new Object[] {
+                    event.getId(),
+                    event.getEventUei(),
+                    event.getNode() == null ? null : event.getNode().getId(),
+                    toTimestamp(event.getEventTime()),
+                    event.getEventHost(),
+                    event.getEventSource(),
+                    event.getIpAddr() == null ? null : InetAddressUtils.str(event.getIpAddr()),
+                    event.getDistPoller().getId(),
+                    event.getEventSnmpHost(),
+                    event.getServiceType() == null ? null : event.getServiceType().getId(),
+                    event.getEventSnmp(),
+                    toTimestamp(event.getEventCreateTime()),
+                    event.getEventDescr(),
+                    event.getEventLogGroup(),
+                    event.getEventLogMsg(),
+                    event.getEventSeverity(),
+                    event.getIfIndex(),
+                    event.getEventPathOutage(),
+                    event.getEventCorrelation(),
+                    event.getEventSuppressedCount(),
+                    event.getEventOperInstruct(),
+                    event.getEventAutoAction(),
+                    event.getEventOperAction(),
+                    event.getEventOperActionMenuText(),
+                    event.getEventNotification(),
+                    event.getEventTTicket(),
+                    event.getEventTTicketState(),
+                    event.getEventForward(),
+                    event.getEventMouseOverText(),
+                    event.getEventLog(),
+                    event.getEventDisplay(),
+                    event.getEventAckUser(),
+                    toTimestamp(event.getEventAckTime()),
+                    event.getAlarm() == null ? null : event.getAlarm().getId()
+            });
+        }
+        insertRows("events", EVENT_COLUMNS, rows);
+
+        final List<Object[]> parameters = new ArrayList<>();
+        for (final OnmsEvent event : events) {
+            if (event.getEventParameters() == null) {
+                continue;
+            }
+            int position = 0;
+            for (final OnmsEventParameter parameter : event.getEventParameters()) {
+                parameters.add(new Object[] { event.getId(), parameter.getName(), parameter.getValue(), parameter.getType(), position++ });
+            }
+        }
+        insertRows("event_parameters", PARAMETER_COLUMNS, parameters);
+    }
+
+    private void insertRows(final String table, final String[] columns, final List<Object[]> rows) {
+        final int rowsPerStatement = MAX_PARAMETERS_PER_STATEMENT / columns.length;
+        for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+            final List<Object[]> chunk = rows.subList(from, Math.min(rows.size(), from + rowsPerStatement));
+            jdbcTemplate.update(getInsertStatement(table, columns, chunk.size()), ps -> {
+                int index = 1;
+                for (final Object[] row : chunk) {
+                    for (final Object value : row) {
+                        setValue(ps, index++, value);
+                    }
+                }
+            });
+        }
+    }
+
+    private static String getInsertStatement(final String table, final String[] columns, final int rows) {
+        final StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            row.append(i == 0 ? "?" : ",?");
+        }
+        row.append(')');
+
+        final StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (").append(String.join(",", columns)).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    private static void setValue(final PreparedStatement ps, final int index, final Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.NULL);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    private static Timestamp toTimestamp(final Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.opennms.netmgt.dao.api.AssetRecordDao;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.model.OnmsAssetRecord;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.model.monitoringLocations.OnmsMonitoringLocation;
+import org.opennms.netmgt.xml.event.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to measure the expansion of the templates of an event,
+ * with and without compiling the templates ahead of time, and with and without caching the node attributes.
+ * <p>
+ * Templates which are not compiled are parsed on every expansion, as happens when the event template cache
+ * is too small to hold all of the templates of the event configuration. The DAOs are mocked, so the
+ * lookups of the node attributes are much cheaper than they are against a database.
+ */
+public class EventExpansionBenchmark {
+
+    private static final List<String> TEMPLATES = Arrays.asList(
+            "<p>A %service% outage was identified on interface %interface% because of the following condition: %parm[eventReason]%.</p>",
+            "%service% outage identified on interface %interface% with reason code: %parm[eventReason]%.",
+            "%uei%:%dpname%:%nodeid%:%interface%:%service%",
+            "<p>Node %nodelabel% (%foreignsource%:%foreignid%) at location %nodelocation% is down.</p>",
+            "<p>Interface %interface% on node %nodelabel% in building %asset[building]% is down.</p>");
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(EventExpansionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"true", "false"})
+        public boolean compileTemplates;
+
+        @Param({"5000", "0"})
+        public String nodeAttributeCacheTtl;
+
+        private EventUtilDaoImpl eventUtil;
+
+        private Event event;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            final OnmsNode node = new OnmsNode(new OnmsMonitoringLocation("RDU", "RDU"), "node1");
+            node.setId(1);
+            node.setForeignSource("fs");
+            node.setForeignId("fid");
+            final OnmsAssetRecord assetRecord = new OnmsAssetRecord();
+            assetRecord.setBuilding("HQ");
+
+            final NodeDao nodeDao = mock(NodeDao.class);
+            when(nodeDao.get(anyInt())).thenReturn(node);
+            when(nodeDao.getLabelForId(anyInt())).thenReturn(node.getLabel());
+            when(nodeDao.getLocationForId(anyInt())).thenReturn(node.getLocation().getLocationName());
+            final AssetRecordDao assetRecordDao = mock(AssetRecordDao.class);
+            when(assetRecordDao.findByNodeId(anyInt())).thenReturn(assetRecord);
+
+            System.setProperty("org.opennms.eventd.eventTemplateCacheSize", compileTemplates ? "1000" : "0");
+            System.setProperty("org.opennms.eventd.nodeAttributeCacheTtl", nodeAttributeCacheTtl);
+            try {
+                eventUtil = new EventUtilDaoImpl();
+            } finally {
+                System.clearProperty("org.opennms.eventd.eventTemplateCacheSize");
+                System.clearProperty("org.opennms.eventd.nodeAttributeCacheTtl");
+            }
+            eventUtil.setNodeDao(nodeDao);
+            eventUtil.setAssetRecordDao(assetRecordDao);
+            if (compileTemplates) {
+                eventUtil.compileTemplates(TEMPLATES);
+            }
+
+            event = new EventBuilder("uei.opennms.org/nodes/nodeLostService", "test")
+                    .setNodeid(1)
+                    .setInterface(addr("10.0.0.1"))
+                    .setService("ICMP")
+                    .addParam("eventReason", "Timeout")
+                    .getEvent();
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void expandTemplates(BState state, Blackhole blackhole) {
+        for (String template : TEMPLATES) {
+            blackhole.consume(state.eventUtil.expandParms(template, state.event));
+        }
+    }
+}
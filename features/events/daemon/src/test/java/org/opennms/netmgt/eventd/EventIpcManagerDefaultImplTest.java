@@ -48,6 +48,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -68,6 +69,7 @@ import org.opennms.test.ThrowableAnticipator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.jayway.awaitility.Duration;
 
@@ -581,6 +583,65 @@ public class EventIpcManagerDefaultImplTest {
         await().pollInterval(1, TimeUnit.SECONDS).untilAtomic(rejected, is(equalTo(4)));
     }
 
+    @Test
+    public void testListenerWithFullQueueDiscardsEvents() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final EventListener blockedListener = new EventListener() {
+            @Override
+            public String getName() {
+                return "testListenerWithFullQueueDiscardsEvents";
+            }
+
+            @Override
+            public void onEvent(IEvent event) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+
+        final EventIpcManagerDefaultImpl.EventListenerExecutor executor = new EventIpcManagerDefaultImpl.EventListenerExecutor(blockedListener, 1, m_registry);
+        final Counter dropped = m_registry.counter(MetricRegistry.name("eventlisteners", blockedListener.getName(), "dropped"));
+        try {
+            final CompletableFuture<Void> running = executor.addEvent(createImmutableEvent());
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            final CompletableFuture<Void> queued = executor.addEvent(createImmutableEvent());
+
+            // The discarded event is counted and does not hold up a synchronous broadcast
+            final CompletableFuture<Void> discarded = executor.addEvent(createImmutableEvent());
+            assertTrue(discarded.isDone());
+            assertEquals(1, dropped.getCount());
+
+            release.countDown();
+            CompletableFuture.allOf(running, queued).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new RuntimeException(e);
+        } finally {
+            release.countDown();
+            executor.stop();
+        }
+    }
+
+    @Test
+    public void testStoppedListenerDiscardsEventsWithoutCountingDrops() {
+        final EventIpcManagerDefaultImpl.EventListenerExecutor executor = new EventIpcManagerDefaultImpl.EventListenerExecutor(m_listener, 5, m_registry);
+        final Counter dropped = m_registry.counter(MetricRegistry.name("eventlisteners", m_listener.getName(), "dropped"));
+        executor.stop();
+
+        // A broadcast that still holds the registrations of a stopped listener skips it
+        final CompletableFuture<Void> future = executor.addEvent(createImmutableEvent());
+        assertTrue(future.isDone());
+        assertEquals(0, dropped.getCount());
+        assertEquals(0, m_listener.getEvents().size());
+    }
+
+    private static IEvent createImmutableEvent() {
+        return ImmutableMapper.fromMutableEvent(new EventBuilder("uei.opennms.org/foo", "EventIpcManagerDefaultImplTest").getEvent());
+    }
+
     @Test
     public void testSlowEventListener() throws InterruptedException {
         AtomicInteger counter = new AtomicInteger();
@@ -767,6 +828,26 @@ public class EventIpcManagerDefaultImplTest {
         assertEquals(1, counter.get());
     }
 
+    @Test
+    public void testListenerMetrics() throws Exception {
+        EventBuilder bldr = new EventBuilder("uei.opennms.org/foo", "testListenerMetrics");
+        Event e = bldr.getEvent();
+
+        m_manager.addEventListener(m_listener, "uei.opennms.org/");
+        assertTrue(m_registry.getGauges().containsKey("eventlisteners.party on, Wayne.queued"));
+
+        m_manager.broadcastNow(e, true);
+        assertEquals(1, m_registry.timer("eventlisteners.party on, Wayne.dispatch").getCount());
+        assertEquals(0, m_registry.counter("eventlisteners.party on, Wayne.dropped").getCount());
+        assertTrue("could not remove broadcasted event--did it make it?",
+                   m_listener.getEvents().remove(ImmutableMapper.fromMutableEvent(e)));
+
+        // The metrics are removed along with the listener
+        m_manager.removeEventListener(m_listener);
+        assertThat(m_registry.getGauges().containsKey("eventlisteners.party on, Wayne.queued"), is(false));
+        assertThat(m_registry.getTimers().containsKey("eventlisteners.party on, Wayne.dispatch"), is(false));
+    }
+
     private static class MultiThreadedEventListener implements ThreadAwareEventListener, EventListener {
         private final ThreadLocker locker;
         private final int numThreads;
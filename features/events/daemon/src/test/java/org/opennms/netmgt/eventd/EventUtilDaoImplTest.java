@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.netmgt.dao.api.AssetRecordDao;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.model.OnmsAssetRecord;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.model.monitoringLocations.OnmsMonitoringLocation;
+import org.opennms.netmgt.xml.event.Event;
+
+/**
+ * Verifies that the node level attributes are looked up once, and served from
+ * the node attribute cache afterwards.
+ */
+public class EventUtilDaoImplTest {
+
+    private final NodeDao nodeDao = mock(NodeDao.class);
+
+    private final AssetRecordDao assetRecordDao = mock(AssetRecordDao.class);
+
+    @After
+    public void tearDown() {
+        System.clearProperty("org.opennms.eventd.nodeAttributeCacheTtl");
+        verifyNoMoreInteractions(nodeDao);
+        verifyNoMoreInteractions(assetRecordDao);
+    }
+
+    @Test
+    public void canExpandNodeAttributesWithASingleLookup() {
+        final OnmsNode node = new OnmsNode(new OnmsMonitoringLocation("RDU", "RDU"), "node1");
+        node.setId(1);
+        node.setForeignSource("fs");
+        node.setForeignId("fid");
+        when(nodeDao.get(1)).thenReturn(node);
+        final OnmsAssetRecord assetRecord = new OnmsAssetRecord();
+        assetRecord.setSerialNumber("42");
+        when(assetRecordDao.findByNodeId(1)).thenReturn(assetRecord);
+
+        final EventUtilDaoImpl eventUtil = createEventUtil();
+        final Event event = new EventBuilder("testUei", "testSource").setNodeid(1).getEvent();
+        final String template = "%nodelabel%:%nodelocation%:%foreignsource%:%foreignid%:%asset[serialNumber]%";
+        assertEquals("node1:RDU:fs:fid:42", eventUtil.expandParms(template, event));
+        assertEquals("node1:RDU:fs:fid:42", eventUtil.expandParms(template, event));
+
+        verify(nodeDao, times(1)).get(1);
+        verify(assetRecordDao, times(1)).findByNodeId(1);
+    }
+
+    @Test
+    public void canLookupUnknownNode() {
+        final EventUtilDaoImpl eventUtil = createEventUtil();
+        assertNull(eventUtil.getNodeLabel(2));
+        assertNull(eventUtil.getForeignSource(2));
+        assertNull(eventUtil.getAssetFieldValue("asset[serialNumber]", 2));
+
+        verify(nodeDao, times(1)).get(2);
+    }
+
+    @Test
+    public void canDisableNodeAttributeCache() {
+        System.setProperty("org.opennms.eventd.nodeAttributeCacheTtl", "0");
+        when(nodeDao.getLabelForId(1)).thenReturn("node1");
+
+        final EventUtilDaoImpl eventUtil = createEventUtil();
+        assertEquals("node1", eventUtil.getNodeLabel(1));
+        assertEquals("node1", eventUtil.getNodeLabel(1));
+
+        verify(nodeDao, times(2)).getLabelForId(1);
+    }
+
+    private EventUtilDaoImpl createEventUtil() {
+        final EventUtilDaoImpl eventUtil = new EventUtilDaoImpl();
+        eventUtil.setNodeDao(nodeDao);
+        eventUtil.setAssetRecordDao(assetRecordDao);
+        return eventUtil;
+    }
+}
@@ -42,8 +42,10 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 
@@ -56,8 +58,11 @@ import org.opennms.netmgt.eventd.EventExpander;
 import org.opennms.netmgt.eventd.EventUtil;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Log;
 import org.opennms.netmgt.xml.event.Parm;
 import org.opennms.netmgt.xml.eventconf.EventOrdering;
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.opennms.netmgt.xml.eventconf.Logmsg;
 import org.opennms.netmgt.xml.eventconf.Mask;
 import org.opennms.netmgt.xml.eventconf.Maskelement;
 import org.opennms.netmgt.xml.eventconf.Varbind;
@@ -224,6 +229,48 @@ public class EventExpanderTest {
         verify(m_eventConfDao, atLeastOnce()).isSecureTag(anyString());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void canCompileTemplatesWhenEventConfigurationIsLoaded() throws Exception {
+        EventExpander expander = new EventExpander(new MetricRegistry());
+        expander.setEventConfDao(m_eventConfDao);
+        expander.setEventUtil(m_eventUtil);
+        expander.afterPropertiesSet();
+
+        org.opennms.netmgt.xml.eventconf.Event eventConfig = new org.opennms.netmgt.xml.eventconf.Event();
+        eventConfig.setUei("test");
+        eventConfig.setDescr("Description for %nodelabel%");
+        Logmsg logmsg = new Logmsg();
+        logmsg.setContent("Log message for %parm[#1]%");
+        eventConfig.setLogmsg(logmsg);
+        org.opennms.netmgt.xml.eventconf.Parameter p = new org.opennms.netmgt.xml.eventconf.Parameter();
+        p.setName("expanded");
+        p.setValue("%interface%");
+        p.setExpand(true);
+        eventConfig.addParameter(p);
+        Events events = new Events();
+        events.addEvent(eventConfig);
+
+        when(m_eventConfDao.getRootEvents()).thenReturn(events);
+
+        // The templates are compiled once for the loaded configuration
+        Log eventLog = new Log();
+        eventLog.setEvents(new org.opennms.netmgt.xml.event.Events());
+        expander.process(eventLog);
+        expander.process(eventLog);
+        verify(m_eventConfDao, times(2)).getRootEvents();
+        verify(m_eventUtil, times(1)).compileTemplates(new HashSet<>(Arrays.asList(
+                "Description for %nodelabel%", "Log message for %parm[#1]%", "%interface%")));
+
+        // and again when the configuration is reloaded
+        Events reloadedEvents = new Events();
+        reloadedEvents.addEvent(eventConfig);
+        when(m_eventConfDao.getRootEvents()).thenReturn(reloadedEvents);
+        expander.process(eventLog);
+        verify(m_eventConfDao, times(3)).getRootEvents();
+        verify(m_eventUtil, times(2)).compileTemplates(any(Collection.class));
+    }
+
     public static HasParameter hasParameter(String name, String value) {
         return new HasParameter(name, value);
     }
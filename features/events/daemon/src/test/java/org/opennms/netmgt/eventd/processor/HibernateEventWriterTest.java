@@ -28,20 +28,42 @@
 
 package org.opennms.netmgt.eventd.processor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.dao.api.ServiceTypeDao;
+import org.opennms.netmgt.eventd.EventUtil;
 import org.opennms.netmgt.events.api.EventProcessorException;
+import org.opennms.netmgt.model.OnmsDistPoller;
+import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Events;
 import org.opennms.netmgt.xml.event.Log;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionOperations;
 
 import com.codahale.metrics.MetricRegistry;
@@ -56,6 +78,8 @@ public class HibernateEventWriterTest {
     private HibernateEventWriter eventWriter;
     private TransactionOperations transactionManager;
 
+    private JdbcOperations jdbcTemplate;
+
     @Before
     public void setUp() {
         eventWriter = new HibernateEventWriter(new MetricRegistry());
@@ -63,6 +87,11 @@ public class HibernateEventWriterTest {
         eventWriter.setTransactionManager(transactionManager);
     }
 
+    @After
+    public void tearDown() throws InterruptedException {
+        eventWriter.destroy();
+    }
+
     /**
      * Verifies that no transaction is opened when none of the events
      * in the event log need to be persisted.
@@ -116,4 +145,119 @@ public class HibernateEventWriterTest {
         eventWriter.process(log);
         verify(transactionManager, times(1)).execute(any());
     }
+
+    /**
+     * Verifies that events are written in batches, with ids allocated
+     * from the sequence in blocks, when write-behind is enabled.
+     */
+    @Test
+    public void testWriteBehind() throws EventProcessorException {
+        enableWriteBehind();
+
+        final Log asyncLog = createLog(2);
+        eventWriter.process(asyncLog, false);
+        assertEquals(Integer.valueOf(1), asyncLog.getEvents().getEvent(0).getDbid());
+        assertEquals(Integer.valueOf(2), asyncLog.getEvents().getEvent(1).getDbid());
+
+        final Log syncLog = createLog(1);
+        eventWriter.process(syncLog, true);
+        assertEquals(Integer.valueOf(3), syncLog.getEvents().getEvent(0).getDbid());
+        assertEquals(3, getInsertedRows("events"));
+        assertEquals(3, getInsertedRows("event_parameters"));
+
+        // Only a single block of ids was allocated
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(Integer.class), any());
+    }
+
+    /**
+     * Verifies that asynchronous callers also wait until their events are
+     * written, since the events are broadcast, and looked up by id, once
+     * the writer returns.
+     */
+    @Test
+    public void testWriteBehindWaitsForAsynchronousCallers() throws EventProcessorException {
+        enableWriteBehind();
+
+        eventWriter.process(createLog(1), false);
+        assertEquals(1, getInsertedRows("events"));
+    }
+
+    /**
+     * Verifies that events are written inline once the writer is stopping,
+     * rather than queued for a thread that is no longer running.
+     */
+    @Test
+    public void testWriteBehindAfterDestroy() throws Exception {
+        enableWriteBehind();
+        final EventDao eventDao = mock(EventDao.class);
+        eventWriter.setEventDao(eventDao);
+        eventWriter.destroy();
+
+        eventWriter.process(createLog(1), true);
+        verify(eventDao, times(1)).save(any(OnmsEvent.class));
+        verify(jdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    /**
+     * Verifies that synchronous callers are notified when their
+     * events cannot be written.
+     */
+    @Test
+    public void testWriteBehindFailure() {
+        enableWriteBehind();
+        when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenThrow(new DataRetrievalFailureException("Failed"));
+
+        try {
+            eventWriter.process(createLog(2), true);
+            fail("Expected an EventProcessorException");
+        } catch (EventProcessorException e) {
+            // expected
+        }
+
+        // Failed batches are retried one event at a time
+        verify(transactionManager, atLeast(2)).execute(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void enableWriteBehind() {
+        jdbcTemplate = mock(JdbcOperations.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), any())).thenReturn(Arrays.asList(1, 2, 3, 4, 5));
+        when(transactionManager.execute(any())).thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+
+        final DistPollerDao distPollerDao = mock(DistPollerDao.class);
+        when(distPollerDao.whoami()).thenReturn(new OnmsDistPoller("00000000-0000-0000-0000-000000000000"));
+        eventWriter.setDistPollerDao(distPollerDao);
+        eventWriter.setServiceTypeDao(mock(ServiceTypeDao.class));
+        eventWriter.setEventUtil(mock(EventUtil.class));
+        eventWriter.setJdbcTemplate(jdbcTemplate);
+        eventWriter.setWriteBehind(true);
+        eventWriter.setIdBlockSize(5);
+        eventWriter.setWriteBehindFlushInterval(10);
+        eventWriter.afterPropertiesSet();
+    }
+
+    private static Log createLog(final int count) {
+        final Events events = new Events();
+        for (int i = 0; i < count; i++) {
+            final EventBuilder bldr = new EventBuilder("testUei", "testSource");
+            bldr.setLogDest(HibernateEventWriter.LOG_MSG_DEST_LOG_AND_DISPLAY);
+            bldr.addParam("param", i);
+            events.addEvent(bldr.getEvent());
+        }
+
+        final Log log = new Log();
+        log.setEvents(events);
+        return log;
+    }
+
+    private int getInsertedRows(final String table) {
+        final ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeastOnce()).update(sql.capture(), any(PreparedStatementSetter.class));
+
+        final List<String> statements = sql.getAllValues();
+        return statements.stream()
+                .filter(statement -> statement.startsWith("INSERT INTO " + table + " "))
+                .mapToInt(statement -> statement.split("\\),\\(").length)
+                .sum();
+    }
 }
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A fixed-size, direct-mapped cache of {@link String}s keyed by the bytes
+ * they were decoded from. Used for fields such as host names and process
+ * names that repeat across many messages so that a hit does not allocate.
+ *
+ * Collisions simply replace the previous entry. The table is shared between
+ * threads without locking: {@link String}s are immutable, so a racing reader
+ * either sees a complete entry or misses.
+ */
+final class ByteSliceInterner {
+
+    private final String[] m_table;
+
+    private final int m_mask;
+
+    ByteSliceInterner(int size) {
+        if (Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of 2: " + size);
+        }
+        m_table = new String[size];
+        m_mask = size - 1;
+    }
+
+    /**
+     * Returns a {@link String} equal to {@link #decode(byte[], int, int)} of
+     * the given bytes, reusing a previously decoded instance when possible.
+     */
+    String intern(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        final int index = (hash ^ (hash >>> 16)) & m_mask;
+
+        final String cached = m_table[index];
+        if (cached != null && matches(cached, bytes, offset, length)) {
+            return cached;
+        }
+
+        final String value = decode(bytes, offset, length);
+        m_table[index] = value;
+        return value;
+    }
+
+    /**
+     * Decodes the bytes by casting each of them to a char, the same way the
+     * {@link ParserStageSequenceBuilder} stages read their input.
+     */
+    static String decode(byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] < 0) {
+                final char[] chars = new char[length];
+                for (int j = 0; j < length; j++) {
+                    chars[j] = (char) bytes[offset + j];
+                }
+                return new String(chars);
+            }
+        }
+        // Plain ASCII
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean matches(String value, byte[] bytes, int offset, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != (char) bytes[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,527 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.zone.ZoneRulesException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+import org.opennms.core.time.ZonedDateTimeBuilder;
+import org.opennms.netmgt.config.SyslogdConfig;
+
+/**
+ * A parser that handles the common RFC 3164 and RFC 5424 header layouts
+ * directly on the bytes of the datagram and falls back to the
+ * {@link RadixTreeSyslogParser} for everything else.
+ *
+ * <p>Fields are located as offsets into the buffer by a per-thread cursor,
+ * so no intermediate {@link ParserState}, {@link StringBuilder} or
+ * {@link java.util.concurrent.CompletableFuture} is created for each
+ * message. Numeric fields are decoded in place, and only the host name,
+ * process name and time zone are turned into {@link String}s through small
+ * interning caches since they repeat from one message to the next.</p>
+ *
+ * <p>The messages produced are the same as the ones produced by the default
+ * grok patterns of the {@link RadixTreeSyslogParser}.</p>
+ */
+public class ByteSliceSyslogParser extends SyslogParser {
+
+    private static final ThreadLocal<Cursor> CURSOR = ThreadLocal.withInitial(Cursor::new);
+
+    private static final ByteSliceInterner HOST_NAMES = new ByteSliceInterner(4096);
+
+    private static final ByteSliceInterner PROCESS_NAMES = new ByteSliceInterner(1024);
+
+    private static final ByteSliceInterner TIME_ZONES = new ByteSliceInterner(64);
+
+    private static final Map<String, ZoneId> ZONE_IDS = new ConcurrentHashMap<>();
+
+    public ByteSliceSyslogParser(SyslogdConfig config, ByteBuffer syslogString) {
+        super(config, syslogString);
+    }
+
+    /**
+     * Since this parser does not rely on a regex expression match for its initial
+     * parsing, always return true.
+     */
+    @Override
+    public boolean find() {
+        return true;
+    }
+
+    @Override
+    public SyslogMessage parse() throws SyslogParserException {
+        final SyslogMessage message = parseHeader(getText());
+        if (message == null) {
+            final RadixTreeSyslogParser fallback = new RadixTreeSyslogParser(getConfig(), getText());
+            fallback.setSource(getSource());
+            return fallback.parse();
+        }
+
+        setTimezoneIfNeeded(message);
+        setYearIfNeeded(message);
+        return message;
+    }
+
+    /**
+     * Parses the message if it has one of the layouts handled by this parser.
+     *
+     * @return the message or null if the fallback parser must be used
+     */
+    static SyslogMessage parseHeader(ByteBuffer buffer) {
+        return CURSOR.get().parse(buffer);
+    }
+
+    private static ZoneId toZoneId(String value) {
+        ZoneId zoneId = ZONE_IDS.get(value);
+        if (zoneId == null) {
+            try {
+                zoneId = ZonedDateTimeBuilder.parseZoneId(value);
+            } catch (ZoneRulesException zre) {
+                // i.e. if the string is 'cst', then the lookup will fail unless we query for 'CST'
+                zoneId = ZonedDateTimeBuilder.parseZoneId(value.toUpperCase());
+            }
+            ZONE_IDS.put(value, zoneId);
+        }
+        return zoneId;
+    }
+
+    /**
+     * Reusable per-thread parse state. All positions are indexes into
+     * {@link #m_bytes}.
+     */
+    private static final class Cursor {
+
+        private static final int MAX_DIGITS = 9;
+
+        /**
+         * Scratch space for buffers that are not backed by an array.
+         */
+        private byte[] m_scratch = new byte[2048];
+
+        private byte[] m_bytes;
+        private int m_pos;
+        private int m_end;
+
+        private SyslogMessage parse(ByteBuffer buffer) {
+            if (buffer.hasArray()) {
+                m_bytes = buffer.array();
+                m_pos = buffer.arrayOffset() + buffer.position();
+                m_end = buffer.arrayOffset() + buffer.limit();
+            } else {
+                final int length = buffer.remaining();
+                if (m_scratch.length < length) {
+                    m_scratch = new byte[Math.max(length, m_scratch.length * 2)];
+                }
+                buffer.duplicate().get(m_scratch, 0, length);
+                m_bytes = m_scratch;
+                m_pos = 0;
+                m_end = length;
+            }
+
+            try {
+                return parseMessage();
+            } catch (DateTimeException e) {
+                // Unknown time zone, let the fallback parser deal with it
+                return null;
+            } finally {
+                // Do not hold on to the caller's buffer
+                m_bytes = null;
+            }
+        }
+
+        private SyslogMessage parseMessage() {
+            if (!consume('<')) {
+                return null;
+            }
+            final int priority = readInt();
+            if (priority < 0 || !consume('>')) {
+                return null;
+            }
+
+            if (m_pos < m_end && isDigit(m_bytes[m_pos])) {
+                return parseRfc5424(priority);
+            }
+            skipWhitespace();
+            return parseRfc3164(priority);
+        }
+
+        /**
+         * &lt;PRI&gt;MMM dd HH:mm:ss HOST [TAG[PID]: |TAG: ]MSG
+         */
+        private SyslogMessage parseRfc3164(int priority) {
+            final int month = readMonth();
+            if (month < 0 || !requireWhitespace()) {
+                return null;
+            }
+            final int day = readInt();
+            if (day < 0 || !requireWhitespace()) {
+                return null;
+            }
+            final int hour = readInt();
+            if (hour < 0 || !consume(':')) {
+                return null;
+            }
+            final int minute = readInt();
+            if (minute < 0 || !consume(':')) {
+                return null;
+            }
+            final int second = readInt();
+            if (second < 0 || !requireWhitespace()) {
+                return null;
+            }
+            final int hostStart = m_pos;
+            if (!skipHost() || !requireWhitespace()) {
+                return null;
+            }
+            final int hostEnd = trailingNonWhitespace(hostStart);
+
+            // Process name and id
+            final int tagStart = m_pos;
+            String processName = null;
+            String processId = null;
+            while (m_pos < m_end && !isWhitespace(m_bytes[m_pos]) && m_bytes[m_pos] != '[' && m_bytes[m_pos] != ':') {
+                m_pos++;
+            }
+            final int tagEnd = m_pos;
+            if (m_pos < m_end && m_bytes[m_pos] == '[') {
+                m_pos++;
+                final int pid = readInt();
+                if (pid < 0 || !consume(']') || !consume(':')) {
+                    return null;
+                }
+                if (tagEnd == tagStart) {
+                    // No process name before the process id
+                    return null;
+                }
+                processName = PROCESS_NAMES.intern(m_bytes, tagStart, tagEnd - tagStart);
+                processId = String.valueOf(pid);
+                skipWhitespace();
+            } else if (tagEnd > tagStart && m_pos < m_end && m_bytes[m_pos] == ':') {
+                m_pos++;
+                processName = PROCESS_NAMES.intern(m_bytes, tagStart, tagEnd - tagStart);
+                skipWhitespace();
+            } else {
+                // No tag, the message starts right after the host name
+                m_pos = tagStart;
+            }
+
+            final String text = readMessage();
+            if (text == null) {
+                return null;
+            }
+
+            final SyslogMessage message = new SyslogMessage();
+            setPriority(message, priority);
+            message.setMonth(month);
+            message.setDayOfMonth(day);
+            message.setHourOfDay(hour);
+            message.setMinute(minute);
+            message.setSecond(second);
+            message.setHostName(HOST_NAMES.intern(m_bytes, hostStart, hostEnd - hostStart));
+            message.setProcessName(processName);
+            message.setProcessId(processId);
+            message.setMessage(text);
+            return message;
+        }
+
+        /**
+         * &lt;PRI&gt;VERSION YYYY-MM-DDTHH:mm:ss[.SSS]TZ HOST APP PROCID MSGID [- ]MSG
+         */
+        private SyslogMessage parseRfc5424(int priority) {
+            final int version = readInt();
+            if (version < 0 || !requireWhitespace()) {
+                return null;
+            }
+            final int year = readInt();
+            if (year < 0 || !consume('-')) {
+                return null;
+            }
+            final int month = readInt();
+            if (month < 0 || !consume('-')) {
+                return null;
+            }
+            final int day = readInt();
+            if (day < 0 || !consume('T')) {
+                return null;
+            }
+            final int hour = readInt();
+            if (hour < 0 || !consume(':')) {
+                return null;
+            }
+            final int minute = readInt();
+            if (minute < 0 || !consume(':')) {
+                return null;
+            }
+            final int second = readInt();
+            if (second < 0) {
+                return null;
+            }
+            Integer millisecond = null;
+            if (consume('.')) {
+                final int fraction = readInt();
+                if (fraction < 0) {
+                    return null;
+                }
+                // Same conversion as the integer secondFraction field of the grok parser
+                millisecond = fraction >= 1000 ? Math.round(fraction / 1000f) : fraction;
+            }
+            final int zoneStart = m_pos;
+            final int zoneEnd = skipToken();
+            if (zoneEnd == zoneStart || !requireWhitespace()) {
+                return null;
+            }
+            final int hostStart = m_pos;
+            if (!skipHost() || !requireWhitespace()) {
+                return null;
+            }
+            final int hostEnd = trailingNonWhitespace(hostStart);
+
+            final int appStart = m_pos;
+            final int appEnd = skipToken();
+            if (appEnd == appStart || !requireWhitespace()) {
+                return null;
+            }
+            final int procIdStart = m_pos;
+            final int procIdEnd = skipToken();
+            if (procIdEnd == procIdStart || !requireWhitespace()) {
+                return null;
+            }
+            final int msgIdStart = m_pos;
+            final int msgIdEnd = skipToken();
+            if (msgIdEnd == msgIdStart || !requireWhitespace()) {
+                return null;
+            }
+
+            // Nil structured data
+            if (consume('-')) {
+                skipWhitespace();
+            }
+
+            String text = readMessage();
+            if (text == null) {
+                return null;
+            }
+            if (text.charAt(0) == '[') {
+                // Trim off the structured data the same way the RadixTreeSyslogParser does
+                final Matcher matcher = RadixTreeSyslogParser.STRUCTURED_DATA.matcher(text);
+                if (matcher.find()) {
+                    text = matcher.group(1);
+                }
+            }
+
+            final SyslogMessage message = new SyslogMessage();
+            setPriority(message, priority);
+            message.setVersion(version);
+            message.setYear(year);
+            message.setMonth(month);
+            message.setDayOfMonth(day);
+            message.setHourOfDay(hour);
+            message.setMinute(minute);
+            message.setSecond(second);
+            message.setMillisecond(millisecond);
+            message.setZoneId(toZoneId(TIME_ZONES.intern(m_bytes, zoneStart, zoneEnd - zoneStart)));
+            message.setHostName(HOST_NAMES.intern(m_bytes, hostStart, hostEnd - hostStart));
+            if (!isNil(appStart, appEnd)) {
+                message.setProcessName(PROCESS_NAMES.intern(m_bytes, appStart, appEnd - appStart));
+            }
+            if (!isNil(procIdStart, procIdEnd)) {
+                message.setProcessId(decode(procIdStart, procIdEnd));
+            }
+            if (!isNil(msgIdStart, msgIdEnd)) {
+                message.setMessageID(decode(msgIdStart, msgIdEnd));
+            }
+            message.setMessage(text);
+            return message;
+        }
+
+        private static void setPriority(SyslogMessage message, int priority) {
+            message.setFacility(SyslogFacility.getFacilityForCode(priority));
+            message.setSeverity(SyslogSeverity.getSeverityForCode(priority));
+        }
+
+        /**
+         * Decodes the remainder of the buffer with the same trimming as
+         * {@link String#trim()}.
+         *
+         * @return the message or null if it is empty
+         */
+        private String readMessage() {
+            int start = m_pos;
+            int end = m_end;
+            while (start < end && (m_bytes[start] & 0xff) <= ' ') {
+                start++;
+            }
+            while (end > start && (m_bytes[end - 1] & 0xff) <= ' ') {
+                end--;
+            }
+            m_pos = m_end;
+            return start == end ? null : decode(start, end);
+        }
+
+        private String decode(int start, int end) {
+            return ByteSliceInterner.decode(m_bytes, start, end - start);
+        }
+
+        private boolean isNil(int start, int end) {
+            return end - start == 1 && m_bytes[start] == '-';
+        }
+
+        private boolean consume(char c) {
+            if (m_pos < m_end && m_bytes[m_pos] == c) {
+                m_pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Reads a positive integer of at most {@value #MAX_DIGITS} digits.
+         *
+         * @return the value or -1 if there are no digits
+         */
+        private int readInt() {
+            final int start = m_pos;
+            int value = 0;
+            while (m_pos < m_end && isDigit(m_bytes[m_pos])) {
+                if (m_pos - start == MAX_DIGITS) {
+                    return -1;
+                }
+                value = value * 10 + (m_bytes[m_pos++] - '0');
+            }
+            return m_pos == start ? -1 : value;
+        }
+
+        private int readMonth() {
+            if (m_end - m_pos < 3) {
+                return -1;
+            }
+            final int month = month(m_bytes[m_pos], m_bytes[m_pos + 1], m_bytes[m_pos + 2]);
+            if (month > 0) {
+                m_pos += 3;
+            }
+            return month;
+        }
+
+        /**
+         * Matches the same spellings as the MONTH grok pattern, i.e.
+         * "Jan" or "jan".
+         */
+        private static int month(byte a, byte b, byte c) {
+            switch (a) {
+                case 'J': case 'j':
+                    if (b == 'a' && c == 'n') return 1;
+                    if (b == 'u' && c == 'n') return 6;
+                    if (b == 'u' && c == 'l') return 7;
+                    return -1;
+                case 'F': case 'f':
+                    return b == 'e' && c == 'b' ? 2 : -1;
+                case 'M': case 'm':
+                    if (b == 'a' && c == 'r') return 3;
+                    if (b == 'a' && c == 'y') return 5;
+                    return -1;
+                case 'A': case 'a':
+                    if (b == 'p' && c == 'r') return 4;
+                    if (b == 'u' && c == 'g') return 8;
+                    return -1;
+                case 'S': case 's':
+                    return b == 'e' && c == 'p' ? 9 : -1;
+                case 'O': case 'o':
+                    return b == 'c' && c == 't' ? 10 : -1;
+                case 'N': case 'n':
+                    return b == 'o' && c == 'v' ? 11 : -1;
+                case 'D': case 'd':
+                    return b == 'e' && c == 'c' ? 12 : -1;
+                default:
+                    return -1;
+            }
+        }
+
+        /**
+         * Skips the characters accepted by the HOSTNAMEORIP grok pattern,
+         * restricted to ASCII.
+         */
+        private boolean skipHost() {
+            final int start = m_pos;
+            while (m_pos < m_end) {
+                final byte b = m_bytes[m_pos];
+                if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || isDigit(b) || b == '-' || b == '.' || b == '_' || b == ':') {
+                    m_pos++;
+                } else {
+                    break;
+                }
+            }
+            return m_pos > start;
+        }
+
+        private int trailingNonWhitespace(int start) {
+            int end = m_pos;
+            while (end > start && isWhitespace(m_bytes[end - 1])) {
+                end--;
+            }
+            return end;
+        }
+
+        /**
+         * Skips to the next whitespace.
+         *
+         * @return the end of the token
+         */
+        private int skipToken() {
+            while (m_pos < m_end && !isWhitespace(m_bytes[m_pos])) {
+                m_pos++;
+            }
+            return m_pos;
+        }
+
+        private void skipWhitespace() {
+            while (m_pos < m_end && isWhitespace(m_bytes[m_pos])) {
+                m_pos++;
+            }
+        }
+
+        private boolean requireWhitespace() {
+            final int start = m_pos;
+            skipWhitespace();
+            return m_pos > start && m_pos < m_end;
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+    }
+}
@@ -344,6 +344,9 @@ public class ConvertToEvent {
         }
 
         SyslogParser parser = SyslogParser.getParserInstance(config, buffer);
+        if (addr != null) {
+            parser.setSource(new HostNameWithLocationKey(addr.getHostAddress(), location));
+        }
         if (!parser.find()) {
             throw new MessageDiscardedException(String.format("Message does not match regex: '%s'", SyslogParser.fromByteBuffer(buffer).toString()));
         }
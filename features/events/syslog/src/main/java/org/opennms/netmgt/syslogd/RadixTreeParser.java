@@ -32,7 +32,6 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 
 import org.opennms.core.collections.RadixTree;
@@ -41,24 +40,25 @@ import org.opennms.core.collections.RadixTreeNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 /**
  * <p>This class uses a {@link RadixTree} to store a tree of parser stages.
  * Each leaf node of the tree represents a complete parse of an incoming
  * message. To parse incoming {@link ByteBuffer} messages, the {@link RadixTree}
- * is traversed and each stage is added as a future processing step. When a leaf node 
- * is reached and returns a non-null result, ie. a complete parse, that result is 
- * returned as the parse result.</p>
+ * is traversed depth-first and each stage is applied to the state produced by its
+ * parent. The first leaf node that returns a non-null result, ie. a complete parse,
+ * is returned as the parse result and the remaining branches are skipped.</p>
  * 
  * <p>You can teach the parser new {@link ParserStage} sequences by using the 
  * {@link #teach(ParserStage[])} method. This will add the stages to the {@link RadixTree}.</p>
  * 
- * <p>TODO: Make the parser tree construction phased or asynchronous so that tree 
- * nodes are added as-needed to complete the parse. In many cases, the first
- * several branches of the tree will result in a complete parse, making it unnecessary
- * to add all possible branches to the execution tree.</p>
- * 
- * <p>TODO: Allow cancellation of in-progress branches when the first non-null result
- * is obtained.</p>
+ * <p>Optionally, the parser remembers the sequence of stages that last matched for
+ * each sender (see {@link #PATTERN_CACHE_SIZE_SYS_PROP}) and tries that sequence
+ * first. Since an earlier pattern in the tree could also match the message, this can
+ * change which pattern wins when patterns overlap, so the cache is disabled by default.</p>
  * 
  * <p>TODO: Score and sort parse branches based on successful parses. If a particular parse
  * branch is successful, we should have a way to increment a score on the stages in
@@ -72,8 +72,28 @@ public class RadixTreeParser implements ByteBufferParser<SyslogMessage> {
 
 	private final static Logger LOG = LoggerFactory.getLogger(RadixTreeParser.class);
 
+	/**
+	 * Maximum number of senders for which the last matching pattern is
+	 * remembered. Set to 0 to disable the cache.
+	 */
+	public static final String PATTERN_CACHE_SIZE_SYS_PROP = "org.opennms.netmgt.syslogd.patternCache.size";
+
 	final RadixTree<ParserStage> tree = new RadixTreeImpl<>();
 
+	private final Cache<Object, List<ParserStage>> m_patternCache;
+
+	public RadixTreeParser() {
+		this(Long.getLong(PATTERN_CACHE_SIZE_SYS_PROP, 0));
+	}
+
+	public RadixTreeParser(long patternCacheSize) {
+		if (patternCacheSize > 0) {
+			m_patternCache = CacheBuilder.newBuilder().maximumSize(patternCacheSize).recordStats().build();
+		} else {
+			m_patternCache = null;
+		}
+	}
+
 //	private static final ThreadPoolExecutor m_executor = new ThreadPoolExecutor(
 //		1,
 //		1,
@@ -182,92 +202,117 @@ public class RadixTreeParser implements ByteBufferParser<SyslogMessage> {
 
 	@Override
 	public CompletableFuture<SyslogMessage> parse(ByteBuffer incoming) {
-		ParserState state = new ParserState(incoming);
+		return CompletableFuture.completedFuture(parse(incoming, null));
+	}
+
+	/**
+	 * Parse the message by walking the tree depth-first in insertion order,
+	 * stopping at the first leaf that yields a complete parse. This returns the
+	 * same result as evaluating every branch and picking the first non-null leaf
+	 * but skips the branches after the match.
+	 *
+	 * @param incoming The message to parse
+	 * @param hintKey Key identifying the sender of the message, used to look up
+	 *   the sequence of stages that last matched for that sender. May be null.
+	 * @return The parsed message or null if no sequence of stages matched
+	 */
+	public SyslogMessage parse(ByteBuffer incoming, Object hintKey) {
+		final ParserState state = new ParserState(incoming);
+
+		if (m_patternCache == null || hintKey == null) {
+			final ParserState result = firstNonNullResult(state, tree, null);
+			return result == null ? null : result.message;
+		}
+
+		final List<ParserStage> hint = m_patternCache.getIfPresent(hintKey);
+		if (hint != null) {
+			final ParserState result = applyPath(state, hint);
+			if (result != null) {
+				return result.message;
+			}
+		}
 
-		// TODO: Use better collection than ArrayList?
-		// We have to make sure that this list maintains the insertion order
-		// so that the first future that completes is definitely returned by
-		// {@link RadixTreeParser#firstNonNullResult()}
-		final List<CompletableFuture<ParserState>> finishedFutures = new ArrayList<>();
+		final List<ParserStage> path = new ArrayList<>();
+		final ParserState result = firstNonNullResult(state, tree, path);
+		if (result == null) {
+			return null;
+		}
+		m_patternCache.put(hintKey, path);
+		return result.message;
+	}
 
-		// Top of future tree is parser state
-		final CompletableFuture<ParserState> parent = CompletableFuture.completedFuture(state);
+	/**
+	 * @return True if the per-sender pattern hint cache is enabled.
+	 */
+	public boolean isPatternCacheEnabled() {
+		return m_patternCache != null;
+	}
 
-		// Recursively construct the parser tree
-		addStageFutures(finishedFutures, parent, tree);
+	/**
+	 * @return Statistics of the per-sender pattern hint cache or null if the cache is disabled.
+	 */
+	public CacheStats getPatternCacheStats() {
+		return m_patternCache == null ? null : m_patternCache.stats();
+	}
 
-		return firstNonNullResult(finishedFutures).thenApply(s -> {
-			if (s == null) {
+	private static ParserState applyPath(ParserState state, List<ParserStage> path) {
+		ParserState current = state;
+		for (ParserStage stage : path) {
+			current = applyStage(stage, current);
+			if (current == null) {
 				return null;
-			} else {
-				return s.message;
 			}
-		});
+		}
+		return current;
 	}
 
 	/**
-	 * TODO: Use a visitor pattern instead?
+	 * Depth-first search for the first leaf that completes the parse. If {@code path}
+	 * is non-null, it is left holding the stages from the root to the matching leaf.
 	 */
-	private static void addStageFutures(List<CompletableFuture<ParserState>> finishedFutures, CompletableFuture<ParserState> parent, RadixTreeNode<ParserStage> node) {
-		final CompletableFuture<ParserState> current;
+	private static ParserState firstNonNullResult(ParserState parent, RadixTreeNode<ParserStage> node, List<ParserStage> path) {
+		final ParserState current;
 
-		// If we're at the root of the radix tree (where the content is null), 
-		// use the parent future as the current future
+		// If we're at the root of the radix tree (where the content is null),
+		// use the parent state as the current state
 		if (node.getContent() == null) {
 			current = parent;
 		} else {
-			// Otherwise, apply the current node's stage to the parent
-			current = parent.thenApply(s -> { return node.getContent().apply(s); });
+			current = applyStage(node.getContent(), parent);
+			if (current == null) {
+				// None of the leaves below this node can match
+				return null;
+			}
+			if (path != null) {
+				path.add(node.getContent());
+			}
 		}
 
-		// If the node has children, then recursively process the children. Do not
-		// add the current node to the finished futures list: we're only concerned
-		// with seeing if the leaf nodes complete, not the intermediate stages
-		if (node.getChildren() != null && node.getChildren().size() > 0) {
-			for (RadixTreeNode<ParserStage> child : node.getChildren()) {
-				addStageFutures(finishedFutures, current, child);
+		if (node.getChildren() == null || node.getChildren().size() == 0) {
+			return current;
+		}
+
+		for (RadixTreeNode<ParserStage> child : node.getChildren()) {
+			final ParserState result = firstNonNullResult(current, child, path);
+			if (result != null) {
+				return result;
 			}
-		} else {
-			// If the node is a leaf node, then add it to the list of futures
-			// that need to be evaluated as part of the parse tree
-			finishedFutures.add(current);
 		}
+
+		if (path != null && node.getContent() != null) {
+			path.remove(path.size() - 1);
+		}
+		LOG.trace("No leaf below {} completed the parse", node.getContent());
+		return null;
 	}
 
-	private static <T> CompletableFuture<T> firstNonNullResult(List<? extends CompletionStage<T>> futures) {
-
-		CompletableFuture<T> parent = new CompletableFuture<>();
-
-		CompletableFuture.allOf(
-			futures.stream().map(
-				s -> s.thenAccept(t -> {
-//					System.out.println("VALUE " + t);
-					// After each stage completes, if its result is non-null
-					// then complete the parent future
-					if (t != null) {
-						if (!parent.complete(t)) {
-							LOG.trace("More than one future completed with a non-null result");
-						} else {
-							LOG.trace("Non-null result returned");
-						}
-					}
-				})
-			).toArray(
-				CompletableFuture<?>[]::new
-			)
-		).exceptionally(ex -> {
-			// If all futures complete exceptionally, mark this future as exceptional as well
-//			parent.completeExceptionally(ex);
-			parent.complete(null);
+	private static ParserState applyStage(ParserStage stage, ParserState state) {
+		try {
+			return stage.apply(state);
+		} catch (RuntimeException e) {
+			// Treat a failing stage like a stage that did not match
+			LOG.debug("Parser stage {} failed", stage, e);
 			return null;
-		}).thenAccept(v -> {
-			// If the parent isn't complete yet, then all children returned null so just
-			// complete with null
-			if (parent.complete(null)) {
-				LOG.debug("All futures completed with a null result");
-			}
-		});
-
-		return parent;
+		}
 	}
 }
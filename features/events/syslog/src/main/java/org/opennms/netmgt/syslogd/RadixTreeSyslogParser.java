@@ -36,7 +36,6 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.ByteBuffer;
-import java.time.ZoneId;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -56,7 +55,7 @@ public class RadixTreeSyslogParser extends SyslogParser {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RadixTreeSyslogParser.class);
 
-	private static final Pattern STRUCTURED_DATA = Pattern.compile("^(?:\\[.*?\\])*(?: \uFEFF?(.*?))?$");
+	static final Pattern STRUCTURED_DATA = Pattern.compile("^(?:\\[.*?\\])*(?: \uFEFF?(.*?))?$");
 
 	private static RadixTreeParser radixParser = new RadixTreeParser();
 
@@ -127,7 +126,7 @@ public class RadixTreeSyslogParser extends SyslogParser {
 
 	@Override
 	public SyslogMessage parse() {
-		SyslogMessage retval = radixParser.parse(getText()).join();
+		SyslogMessage retval = radixParser.parse(getText(), getSource());
 
 		if (retval != null) {
 			// Trim off the RFC 5424 structured data to emulate the behavior of the legacy parser (for now)
@@ -145,35 +144,4 @@ public class RadixTreeSyslogParser extends SyslogParser {
 
 		return retval;
 	}
-
-	private void setYearIfNeeded(SyslogMessage message) {
-	    boolean hasTimeinformation =
-	            message.getMonth() != null ||
-	            message.getDayOfMonth() != null ||
-	            message.getHourOfDay() != null ||
-	            message.getMinute() != null ||
-	            message.getSecond() != null ||
-	            message.getMillisecond() != null;
-	    if (hasTimeinformation && message.getYear() == null) {
-	    	SyslogYearCompleter.complete(message);
-	    }
-	}
-
-	private void setTimezoneIfNeeded(SyslogMessage message){
-        boolean hasTimeinformation = // to no break logic in ConvertToEvent
-		        message.getYear() != null ||
-				message.getMonth() != null ||
-				message.getDayOfMonth() != null ||
-				message.getHourOfDay() != null ||
-				message.getMinute() != null ||
-				message.getSecond() != null ||
-				message.getMillisecond() != null;
-
-		ZoneId timeZone = message.getZoneId();
-		if(timeZone == null && hasTimeinformation && getConfig().getTimeZone() == null){
-			message.setZoneId(ZoneId.systemDefault());
-		} else if (timeZone == null && hasTimeinformation && getConfig().getTimeZone() != null){
-			message.setZoneId(getConfig().getTimeZone().toZoneId());
-		}
-	}
 }
@@ -35,6 +35,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Date;
 import java.util.Locale;
 import java.util.regex.Matcher;
@@ -59,6 +60,7 @@ public class SyslogParser {
     private Boolean m_found = null;
     private Boolean m_matched = null;
     private boolean m_traceEnabled = false;
+    private HostNameWithLocationKey m_source = null;
     private static final LoadingCache<String,Class<? extends SyslogParser>> PARSER_CLASSES = CacheBuilder.newBuilder().build(
         new CacheLoader<String,Class<? extends SyslogParser>>() {
             public Class<? extends SyslogParser> load(String className) {
@@ -135,6 +137,17 @@ public class SyslogParser {
         return m_traceEnabled;
     }
 
+    /**
+     * @return The address and location of the sender of the message, if known.
+     */
+    protected HostNameWithLocationKey getSource() {
+        return m_source;
+    }
+
+    void setSource(final HostNameWithLocationKey source) {
+        m_source = source;
+    }
+
     /* override this to get your custom pattern */
     protected Pattern getPattern() {
         return Pattern.compile("^.*$");
@@ -177,6 +190,44 @@ public class SyslogParser {
         }
     }
 
+    /**
+     * Use the configured (or JVM) time zone if the message contains a
+     * timestamp without a time zone.
+     */
+    protected void setTimezoneIfNeeded(SyslogMessage message) {
+        boolean hasTimeinformation = // to no break logic in ConvertToEvent
+                message.getYear() != null ||
+                message.getMonth() != null ||
+                message.getDayOfMonth() != null ||
+                message.getHourOfDay() != null ||
+                message.getMinute() != null ||
+                message.getSecond() != null ||
+                message.getMillisecond() != null;
+
+        ZoneId timeZone = message.getZoneId();
+        if (timeZone == null && hasTimeinformation && getConfig().getTimeZone() == null) {
+            message.setZoneId(ZoneId.systemDefault());
+        } else if (timeZone == null && hasTimeinformation && getConfig().getTimeZone() != null) {
+            message.setZoneId(getConfig().getTimeZone().toZoneId());
+        }
+    }
+
+    /**
+     * Guess the year if the message contains a timestamp without one.
+     */
+    protected void setYearIfNeeded(SyslogMessage message) {
+        boolean hasTimeinformation =
+                message.getMonth() != null ||
+                message.getDayOfMonth() != null ||
+                message.getHourOfDay() != null ||
+                message.getMinute() != null ||
+                message.getSecond() != null ||
+                message.getMillisecond() != null;
+        if (hasTimeinformation && message.getYear() == null) {
+            SyslogYearCompleter.complete(message);
+        }
+    }
+
     void adjustTimeZone(DateFormat df) {
         if(m_config.getTimeZone() !=null) {
             df.setTimeZone(m_config.getTimeZone());
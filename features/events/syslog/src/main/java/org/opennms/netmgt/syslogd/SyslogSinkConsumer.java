@@ -32,6 +32,9 @@ import static org.opennms.core.utils.InetAddressUtils.addr;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.IntStream;
 
 import com.codahale.metrics.Gauge;
 import com.google.common.cache.Cache;
@@ -57,6 +60,7 @@ import org.opennms.netmgt.xml.event.Log;
 import org.opennms.netmgt.xml.event.Parm;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -65,12 +69,17 @@ import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
 import com.google.common.base.Strings;
 
-public class SyslogSinkConsumer implements MessageConsumer<SyslogConnection, SyslogMessageLogDTO>, InitializingBean {
+public class SyslogSinkConsumer implements MessageConsumer<SyslogConnection, SyslogMessageLogDTO>, InitializingBean, DisposableBean {
 
     private static final Logger LOG = LoggerFactory.getLogger(SyslogSinkConsumer.class);
 
     private static final String defaultCacheConfig = "maximumSize=1000,expireAfterWrite=8h";
     private static final String dnsCacheConfigProperty = "org.opennms.netmgt.syslogd.dnscache.config";
+    /**
+     * Number of threads used to convert the messages of a single batch into events.
+     * With the default of 1, the messages are converted on the consumer thread.
+     */
+    public static final String PARALLELISM_SYS_PROP = "org.opennms.netmgt.syslogd.consumer.parallelism";
     @Autowired
     private MessageConsumerManager messageConsumerManager;
 
@@ -92,8 +101,13 @@ public class SyslogSinkConsumer implements MessageConsumer<SyslogConnection, Sys
     private final Timer consumerTimer;
     private final Timer toEventTimer;
     private final Timer broadcastTimer;
+    private final ForkJoinPool conversionPool;
 
     public SyslogSinkConsumer(MetricRegistry registry) {
+        this(registry, SystemProperties.getInteger(PARALLELISM_SYS_PROP, 1));
+    }
+
+    public SyslogSinkConsumer(MetricRegistry registry, int parallelism) {
         consumerTimer = registry.timer("consumer");
         toEventTimer = registry.timer("consumer.toevent");
         broadcastTimer = registry.timer("consumer.broadcast");
@@ -102,6 +116,16 @@ public class SyslogSinkConsumer implements MessageConsumer<SyslogConnection, Sys
         registry.register("dnsCacheSize", (Gauge<Long>) () -> dnsCache.size());
         registry.register("dnsCacheHitRate", (Gauge<Double>) () -> dnsCache.stats().hitRate());
         localAddr = InetAddressUtils.getLocalHostName();
+        if (parallelism > 1) {
+            conversionPool = new ForkJoinPool(parallelism, pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("syslog-consumer-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+            registry.register("consumer.pool.active", (Gauge<Integer>) conversionPool::getActiveThreadCount);
+        } else {
+            conversionPool = null;
+        }
     }
 
     @Override
@@ -130,29 +154,56 @@ public class SyslogSinkConsumer implements MessageConsumer<SyslogConnection, Sys
         final Log elog = new Log();
         final Events events = new Events();
         elog.setEvents(events);
-        for (SyslogMessageDTO message : messageLog.getMessages()) {
-            try {
-                LOG.debug("Converting syslog message into event.");
-                ConvertToEvent re = new ConvertToEvent(
-                        messageLog.getSystemId(),
-                        messageLog.getLocation(),
-                        messageLog.getSourceAddress(),
-                        messageLog.getSourcePort(),
-                        message.getBytes(),
-                        message.getTimestamp(),
-                        syslogdConfig,
-                        m_locationAwareDnsLookupClient,
-                        dnsCache);
-                events.addEvent(re.getEvent());
-            } catch (final MessageDiscardedException e) {
-                LOG.info("Message discarded, returning without enqueueing event.", e);
-            } catch (final Throwable e) {
-                LOG.error("Unexpected exception while processing SyslogConnection", e);
+        final List<SyslogMessageDTO> messages = messageLog.getMessages();
+        if (conversionPool == null || messages.size() < 2) {
+            for (SyslogMessageDTO message : messages) {
+                final Event event = toEvent(messageLog, message);
+                if (event != null) {
+                    events.addEvent(event);
+                }
+            }
+        } else {
+            // All of the messages in a batch come from the same source, so converting
+            // them out of order and adding the results by index keeps the order of
+            // the messages sent by each host
+            final Event[] converted = new Event[messages.size()];
+            conversionPool.submit(() -> IntStream.range(0, converted.length).parallel()
+                    .forEach(i -> {
+                        try (MDCCloseable mdc = Logging.withPrefixCloseable(Syslogd.LOG4J_CATEGORY)) {
+                            converted[i] = toEvent(messageLog, messages.get(i));
+                        }
+                    })).join();
+            for (Event event : converted) {
+                if (event != null) {
+                    events.addEvent(event);
+                }
             }
         }
         return elog;
     }
 
+    private Event toEvent(SyslogMessageLogDTO messageLog, SyslogMessageDTO message) {
+        try {
+            LOG.debug("Converting syslog message into event.");
+            ConvertToEvent re = new ConvertToEvent(
+                    messageLog.getSystemId(),
+                    messageLog.getLocation(),
+                    messageLog.getSourceAddress(),
+                    messageLog.getSourcePort(),
+                    message.getBytes(),
+                    message.getTimestamp(),
+                    syslogdConfig,
+                    m_locationAwareDnsLookupClient,
+                    dnsCache);
+            return re.getEvent();
+        } catch (final MessageDiscardedException e) {
+            LOG.info("Message discarded, returning without enqueueing event.", e);
+        } catch (final Throwable e) {
+            LOG.error("Unexpected exception while processing SyslogConnection", e);
+        }
+        return null;
+    }
+
     private void broadcast(Log eventLog)  {
         if (LOG.isTraceEnabled())  {
             for (Event event : eventLog.getEvents().getEventCollection()) {
@@ -207,6 +258,13 @@ public class SyslogSinkConsumer implements MessageConsumer<SyslogConnection, Sys
         messageConsumerManager.registerConsumer(this);
     }
 
+    @Override
+    public void destroy() {
+        if (conversionPool != null) {
+            conversionPool.shutdown();
+        }
+    }
+
     public void setEventForwarder(EventForwarder eventForwarder) {
         this.eventForwarder = eventForwarder;
     }
@@ -402,6 +402,35 @@ public class BufferParserTest {
 		assertNull("No pattern should match", root.join());
 	}
 
+	@Test
+	public void testPatternCache() {
+		RadixTreeParser treeParser = new RadixTreeParser(10);
+		treeParser.teach(GrokParserStageSequenceBuilder.parseGrok("%{INT:facilityPriority} %{STRING:message}").toArray(new ParserStage[0]));
+		treeParser.teach(GrokParserStageSequenceBuilder.parseGrok("%{STRING:hostname} %{STRING:message}").toArray(new ParserStage[0]));
+		treeParser.performEdgeCompression();
+
+		final HostNameWithLocationKey source = new HostNameWithLocationKey("10.0.0.1", "Default");
+
+		SyslogMessage message = treeParser.parse(ByteBuffer.wrap("12 hello".getBytes()), source);
+		assertNull(message.getHostName());
+		assertEquals("hello", message.getMessage());
+		assertEquals(0, treeParser.getPatternCacheStats().hitCount());
+
+		// The remembered pattern is tried first
+		message = treeParser.parse(ByteBuffer.wrap("13 world".getBytes()), source);
+		assertEquals("world", message.getMessage());
+		assertEquals(1, treeParser.getPatternCacheStats().hitCount());
+
+		// If the remembered pattern does not match, the whole tree is searched
+		message = treeParser.parse(ByteBuffer.wrap("myhost hello".getBytes()), source);
+		assertEquals("myhost", message.getHostName());
+		assertEquals("hello", message.getMessage());
+
+		// Without a source, the tree is searched in order
+		message = treeParser.parse(ByteBuffer.wrap("14 again".getBytes()), null);
+		assertNull(message.getHostName());
+	}
+
 	@Test
 	public void testGrokRadixTree() {
 		RadixTreeParser radixParser = new RadixTreeParser();
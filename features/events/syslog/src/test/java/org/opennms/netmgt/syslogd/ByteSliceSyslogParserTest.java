@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.core.test.ConfigurationTestUtils;
+
+public class ByteSliceSyslogParserTest {
+
+    private static final SyslogConfigBean CONFIG = new SyslogConfigBean();
+
+    static {
+        CONFIG.setParser(ByteSliceSyslogParser.class.getName());
+        CONFIG.setDiscardUei("DISCARD-MATCHING-MESSAGES");
+    }
+
+    /**
+     * Loads the messages from <i>syslogMessages.txt</i>.
+     */
+    static List<String> loadCorpus(Object test) throws IOException {
+        final Path resource = ConfigurationTestUtils.getFileForResource(test, "/syslogMessages.txt").toPath();
+        return Files.lines(resource)
+                .filter(syslog -> syslog.trim().length() > 0 && !syslog.trim().startsWith("#"))
+                .map(syslog -> syslog.replaceAll("\\\\u0000", "\u0000").replaceAll("\\\\uFEFF", "\uFEFF"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void shouldMatchRadixTreeParser() throws Exception {
+        int handled = 0;
+        final List<String> corpus = loadCorpus(this);
+        for (final String syslog : corpus) {
+            final ByteBuffer buffer = ConvertToEvent.trimTrailingNulls(SyslogdTestUtils.toByteBuffer(syslog));
+
+            final SyslogMessage expected = new RadixTreeSyslogParser(CONFIG, buffer).parse();
+            final SyslogMessage actual = new ByteSliceSyslogParser(CONFIG, buffer).parse();
+            assertEquals(syslog, describe(expected), describe(actual));
+
+            if (ByteSliceSyslogParser.parseHeader(buffer.duplicate()) != null) {
+                handled++;
+            }
+        }
+        // Most of the corpus should be handled without falling back
+        assertTrue("Only " + handled + " of " + corpus.size() + " messages were handled", handled > corpus.size() / 2);
+    }
+
+    @Test
+    public void shouldParseRfc3164() throws Exception {
+        final SyslogMessage message = parse("<34>Oct 11 22:14:15 mymachine su[123]: 'su root' failed for lonvick on /dev/pts/8");
+        assertEquals(SyslogFacility.AUTH, message.getFacility());
+        assertEquals(SyslogSeverity.CRITICAL, message.getSeverity());
+        assertEquals(Integer.valueOf(10), message.getMonth());
+        assertEquals(Integer.valueOf(11), message.getDayOfMonth());
+        assertEquals(Integer.valueOf(22), message.getHourOfDay());
+        assertEquals(Integer.valueOf(14), message.getMinute());
+        assertEquals(Integer.valueOf(15), message.getSecond());
+        assertNotNull(message.getYear());
+        assertEquals("mymachine", message.getHostName());
+        assertEquals("su", message.getProcessName());
+        assertEquals("123", message.getProcessId());
+        assertEquals("'su root' failed for lonvick on /dev/pts/8", message.getMessage());
+    }
+
+    @Test
+    public void shouldParseRfc5424() throws Exception {
+        final SyslogMessage message = parse("<165>1 2003-10-11T22:14:15.003Z mymachine.example.com evntslog - ID47 [exampleSDID@32473 iut=\"3\"] An application event log entry...");
+        assertEquals(Integer.valueOf(1), message.getVersion());
+        assertEquals(Integer.valueOf(2003), message.getYear());
+        assertEquals(Integer.valueOf(3), message.getMillisecond());
+        assertEquals(ZoneId.of("Z"), message.getZoneId());
+        assertEquals("mymachine.example.com", message.getHostName());
+        assertEquals("evntslog", message.getProcessName());
+        assertNull(message.getProcessId());
+        assertEquals("ID47", message.getMessageID());
+        assertEquals("An application event log entry...", message.getMessage());
+    }
+
+    @Test
+    public void shouldInternHostAndProcessNames() throws Exception {
+        final SyslogMessage first = parse("<14>Mar 16 00:01:25 localhost postfix/smtpd[1713]: connect from www.opennms.org[10.1.1.1]");
+        final SyslogMessage second = parse("<14>Mar 16 00:01:26 localhost postfix/smtpd[1714]: disconnect from www.opennms.org[10.1.1.1]");
+        assertTrue(first.getHostName() == second.getHostName());
+        assertTrue(first.getProcessName() == second.getProcessName());
+    }
+
+    @Test
+    public void shouldParseDirectBuffers() throws Exception {
+        final String syslog = "<191>1 2017-03-06T18:30:00+05:00 localhost myprocess 5231 - - No structured data";
+        final ByteBuffer heap = SyslogdTestUtils.toByteBuffer(syslog);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(heap.remaining());
+        direct.put(heap.duplicate()).flip();
+        assertEquals(describe(parse(syslog)), describe(new ByteSliceSyslogParser(CONFIG, direct).parse()));
+    }
+
+    @Test
+    public void shouldFallBackForOtherLayouts() throws Exception {
+        final String syslog = "<190>Mar 11 08:35:17 aaa_host 30128311: Mar 11 08:35:16.844 CST: %SEC-6-IPACCESSLOGP: list in110 denied tcp";
+        assertNull(ByteSliceSyslogParser.parseHeader(SyslogdTestUtils.toByteBuffer("<31>main: 2010-08-19 localhost foo0: load test 0 on tty1")));
+        assertEquals(describe(new RadixTreeSyslogParser(CONFIG, SyslogdTestUtils.toByteBuffer(syslog)).parse()), describe(parse(syslog)));
+    }
+
+    /**
+     * {@link SyslogMessage#toString()} without the identity hash code.
+     */
+    private static String describe(SyslogMessage message) {
+        if (message == null) {
+            return null;
+        }
+        final String value = message.toString();
+        return value.substring(value.indexOf('['));
+    }
+
+    private static SyslogMessage parse(String syslog) throws SyslogParserException {
+        return new ByteSliceSyslogParser(CONFIG, SyslogdTestUtils.toByteBuffer(syslog)).parse();
+    }
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.syslogd;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opennms.netmgt.xml.event.Event;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare the {@link RadixTreeSyslogParser} with the
+ * {@link ByteSliceSyslogParser}.
+ * <p>
+ * Each operation parses a single message of the RFC 3164 and RFC 5424 messages in <i>syslogMessages.txt</i>, so
+ * the reported number of operations per second is the number of messages per second. Run {@link #main(String[])}
+ * to get the number of bytes allocated per message ({@code gc.alloc.rate.norm}) as well.
+ */
+public class SyslogParserBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SyslogParserBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    @State(Scope.Thread)
+    public static class BState {
+
+        @Param({"org.opennms.netmgt.syslogd.RadixTreeSyslogParser", "org.opennms.netmgt.syslogd.ByteSliceSyslogParser"})
+        public String parser;
+
+        private SyslogConfigBean config;
+        private ByteBuffer[] messages;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            config = new SyslogConfigBean();
+            config.setParser(parser);
+            config.setDiscardUei("DISCARD-MATCHING-MESSAGES");
+
+            final List<String> corpus = ByteSliceSyslogParserTest.loadCorpus(this);
+            messages = new ByteBuffer[corpus.size()];
+            for (int i = 0; i < messages.length; i++) {
+                messages[i] = ConvertToEvent.trimTrailingNulls(SyslogdTestUtils.toByteBuffer(corpus.get(i)));
+            }
+        }
+
+        private ByteBuffer next() {
+            final ByteBuffer message = messages[next];
+            next = (next + 1) % messages.length;
+            return message;
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public SyslogMessage parse(BState state) throws Exception {
+        return SyslogParser.getParserInstance(state.config, state.next()).parse();
+    }
+
+    /**
+     * Parses the message and converts it into an {@link Event}. A non-default location without a DNS client is
+     * used so that host names are not resolved.
+     */
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Event toEvent(BState state) throws Exception {
+        final SyslogMessage message = SyslogParser.getParserInstance(state.config, state.next()).parse();
+        return ConvertToEvent.toEventBuilder(message, "benchmark", "benchmark", new Date(), null, null).getEvent();
+    }
+}
@@ -28,6 +28,7 @@
 
 package org.opennms.netmgt.flows.classification;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.opennms.netmgt.flows.classification.persistence.api.Rule;
@@ -35,6 +36,20 @@ import org.opennms.netmgt.flows.classification.persistence.api.Rule;
 public interface ClassificationEngine {
     String classify(ClassificationRequest classificationRequest);
 
+    /**
+     * Classifies a batch of requests.
+     *
+     * @return the applications of the given requests in the same order; an element is <code>null</code> if the
+     * corresponding request does not match a rule
+     */
+    default List<String> classify(List<ClassificationRequest> classificationRequests) {
+        final List<String> applications = new ArrayList<>(classificationRequests.size());
+        for (final ClassificationRequest classificationRequest : classificationRequests) {
+            applications.add(classify(classificationRequest));
+        }
+        return applications;
+    }
+
     List<Rule> getInvalidRules();
 
     void reload() throws InterruptedException;
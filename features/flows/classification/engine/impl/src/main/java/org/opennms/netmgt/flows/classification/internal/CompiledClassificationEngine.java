@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.opennms.netmgt.flows.classification.ClassificationEngine;
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.ClassificationRuleProvider;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.internal.compiled.CompiledRules;
+import org.opennms.netmgt.flows.classification.internal.decision.PreprocessedRule;
+import org.opennms.netmgt.flows.classification.persistence.api.Rule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A classification engine that compiles the classification rules into lookup tables.
+ * <p>
+ * Classifies the same as the {@link DefaultClassificationEngine} but looks up the matching rules by protocol, port,
+ * and address tables (cf. {@link CompiledRules}) instead of traversing a decision tree. Classification does not
+ * allocate memory per request.
+ * <p>
+ * The implementation is thread-safe.
+ */
+public class CompiledClassificationEngine implements ClassificationEngine {
+
+    private static Logger LOG = LoggerFactory.getLogger(CompiledClassificationEngine.class);
+
+    private final AtomicReference<RulesAndInvalidRules> rulesAndInvalidRules = new AtomicReference<>(new RulesAndInvalidRules(CompiledRules.EMPTY, Collections.emptyList()));
+
+    private final ClassificationRuleProvider ruleProvider;
+    private final FilterService filterService;
+
+    public CompiledClassificationEngine(final ClassificationRuleProvider ruleProvider, final FilterService filterService) throws InterruptedException {
+        this(ruleProvider, filterService, true);
+    }
+
+    public CompiledClassificationEngine(final ClassificationRuleProvider ruleProvider, final FilterService filterService, final boolean initialize) throws InterruptedException {
+        this.ruleProvider = Objects.requireNonNull(ruleProvider);
+        this.filterService = Objects.requireNonNull(filterService);
+        if (initialize) {
+            this.reload();
+        }
+    }
+
+    @Override
+    public void reload() throws InterruptedException {
+        var start = System.currentTimeMillis();
+        var invalid = new ArrayList<Rule>();
+
+        // Load all rules and validate them
+        final List<PreprocessedRule> preprocessedRules = Lists.newArrayList();
+        final var rules = ruleProvider.getRules();
+        rules.forEach(rule -> {
+            try {
+                final var preprocessedRule = PreprocessedRule.of(rule);
+                preprocessedRules.add(preprocessedRule);
+                if (rule.canBeReversed()) {
+                    preprocessedRules.add(preprocessedRule.reverse());
+                }
+            } catch (Exception ex) {
+                LOG.error("Rule {} is not valid. Ignoring rule.", rule, ex);
+                invalid.add(rule);
+            }
+        });
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+
+        var compiledRules = CompiledRules.of(preprocessedRules, filterService);
+
+        var elapsed = System.currentTimeMillis() - start;
+        LOG.info("compiled flow classification rules - time (ms): {}; rules: {} (including reversed rules: {}); bitset words: {}; distinct bitsets: {}",
+                elapsed, rules.size(), compiledRules.getRules(), compiledRules.getWords(), compiledRules.getDistinctBitsets());
+
+        rulesAndInvalidRules.set(new RulesAndInvalidRules(compiledRules, invalid));
+    }
+
+    @Override
+    public List<Rule> getInvalidRules() {
+        return Collections.unmodifiableList(rulesAndInvalidRules.get().invalidRules);
+    }
+
+    @Override
+    public String classify(ClassificationRequest classificationRequest) {
+        return rulesAndInvalidRules.get().rules.classify(classificationRequest);
+    }
+
+    @Override
+    public List<String> classify(List<ClassificationRequest> classificationRequests) {
+        // use the same rules for the whole batch
+        final CompiledRules rules = rulesAndInvalidRules.get().rules;
+        final List<String> applications = new ArrayList<>(classificationRequests.size());
+        for (final ClassificationRequest classificationRequest : classificationRequests) {
+            applications.add(rules.classify(classificationRequest));
+        }
+        return applications;
+    }
+
+    private static class RulesAndInvalidRules {
+        private final CompiledRules rules;
+        private final List<Rule> invalidRules;
+        public RulesAndInvalidRules(CompiledRules rules, List<Rule> invalidRules) {
+            this.rules = rules;
+            this.invalidRules = invalidRules;
+        }
+    }
+
+}
@@ -42,12 +42,14 @@ public class TimingClassificationEngine implements ClassificationEngine {
 
     private final ClassificationEngine delegate;
     private final Timer classifyTimer;
+    private final Timer classifyBatchTimer;
     private final Timer reloadTimer;
     private final Timer getInvalidRulesTimer;
 
     public TimingClassificationEngine(MetricRegistry metricRegistry, ClassificationEngine delegate) {
         this.delegate = Objects.requireNonNull(delegate);
         this.classifyTimer = metricRegistry.timer("classify");
+        this.classifyBatchTimer = metricRegistry.timer("classifyBatch");
         this.reloadTimer = metricRegistry.timer("reload");
         this.getInvalidRulesTimer = metricRegistry.timer("getInvalidrules");
     }
@@ -59,6 +61,13 @@ public class TimingClassificationEngine implements ClassificationEngine {
         }
     }
 
+    @Override
+    public List<String> classify(List<ClassificationRequest> classificationRequests) {
+        try (final Timer.Context ctx = classifyBatchTimer.time()) {
+            return delegate.classify(classificationRequests);
+        }
+    }
+
     @Override
     public void reload() throws InterruptedException {
         try (final Timer.Context ctx = reloadTimer.time()) {
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.compiled;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import org.opennms.netmgt.flows.classification.IpAddr;
+import org.opennms.netmgt.flows.classification.internal.value.IpRange;
+import org.opennms.netmgt.flows.classification.internal.value.IpValue;
+
+/**
+ * Maps addresses to the bitsets of rules that accept them.
+ * <p>
+ * The address space is split into intervals that are accepted by the same rules. Lookups do a binary search for the
+ * interval that contains an address.
+ */
+class AddressTable {
+
+    // IPv4 addresses are ordered before IPv6 addresses
+    // -> start an interval at the first IPv4 and at the first IPv6 address in order not to mix address families
+    private static final List<IpAddr> FIRST_ADDRESSES = Arrays.asList(IpAddr.of("0.0.0.0"), IpAddr.of("::"));
+
+    static AddressTable of(List<IpValue> addressesByRule, Bitsets bitsets) {
+        final List<List<Bitsets.Range<IpAddr>>> rangesByRule = new ArrayList<>(addressesByRule.size());
+        for (final IpValue value : addressesByRule) {
+            if (value == null) {
+                rangesByRule.add(null);
+                continue;
+            }
+            final List<Bitsets.Range<IpAddr>> ranges = new ArrayList<>(value.getIpAddressRanges().size());
+            for (final IpRange range : value.getIpAddressRanges()) {
+                ranges.add(new Bitsets.Range<>(range.begin, successor(range.end)));
+            }
+            rangesByRule.add(ranges);
+        }
+        final NavigableMap<IpAddr, BitSet> intervals = Bitsets.partition(rangesByRule, FIRST_ADDRESSES);
+
+        final IpAddr[] begins = new IpAddr[intervals.size()];
+        final long[][] sets = new long[intervals.size()][];
+        int i = 0;
+        for (final Map.Entry<IpAddr, BitSet> e : intervals.entrySet()) {
+            begins[i] = e.getKey();
+            sets[i] = bitsets.intern(e.getValue());
+            i++;
+        }
+        final BitSet unconstrained = new BitSet(addressesByRule.size());
+        for (int rule = 0; rule < addressesByRule.size(); rule++) {
+            unconstrained.set(rule, addressesByRule.get(rule) == null);
+        }
+        return new AddressTable(begins, sets, bitsets.intern(unconstrained));
+    }
+
+    private static IpAddr successor(IpAddr address) {
+        try {
+            return address.inc();
+        } catch (RuntimeException e) {
+            // the last address of its family
+            // -> the following interval starts at one of FIRST_ADDRESSES or the range extends to the end of the address space
+            return address.getClass() == FIRST_ADDRESSES.get(0).getClass() ? FIRST_ADDRESSES.get(1) : null;
+        }
+    }
+
+    private final IpAddr[] begins;
+    private final long[][] sets;
+    private final long[] unconstrained;
+
+    private AddressTable(IpAddr[] begins, long[][] sets, long[] unconstrained) {
+        this.begins = begins;
+        this.sets = sets;
+        this.unconstrained = unconstrained;
+    }
+
+    long[] lookup(IpAddr address) {
+        if (address == null) {
+            return unconstrained;
+        }
+        // find the last interval that begins at or before the address
+        // -> the first interval begins at the smallest address
+        int low = 0, high = begins.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (begins[mid].compareTo(address) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return sets[low];
+    }
+}
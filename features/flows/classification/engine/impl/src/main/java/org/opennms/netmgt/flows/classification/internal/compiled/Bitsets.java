@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.compiled;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Builds the rule bitsets of compiled lookup tables.
+ * <p>
+ * Bit <code>i</code> of a bitset is set if the rule with index <code>i</code> accepts the corresponding value. All
+ * bitsets created by an instance have the same length and identical bitsets are shared.
+ */
+class Bitsets {
+
+    /**
+     * A range of values that is accepted by a rule.
+     */
+    static class Range<T> {
+        final T begin;
+        // null indicates that the range extends to the end of the value space
+        final T endExclusive;
+
+        Range(T begin, T endExclusive) {
+            this.begin = begin;
+            this.endExclusive = endExclusive;
+        }
+    }
+
+    private final int words;
+    private final Map<BitSet, long[]> interned = new HashMap<>();
+
+    Bitsets(int rules) {
+        this.words = (rules + 63) >>> 6;
+    }
+
+    int words() {
+        return words;
+    }
+
+    int distinct() {
+        return interned.size();
+    }
+
+    long[] intern(BitSet bitSet) {
+        return interned.computeIfAbsent((BitSet) bitSet.clone(), bs -> Arrays.copyOf(bs.toLongArray(), words));
+    }
+
+    /**
+     * Splits a value space into intervals with constant rule sets.
+     *
+     * @param rangesByRule the ranges that are accepted by each rule; <code>null</code> for rules that do not constrain the aspect
+     * @param points additional points that must start an interval
+     * @return maps the beginning of each interval to the set of rules that accept the values of that interval
+     */
+    static <T extends Comparable<T>> NavigableMap<T, BitSet> partition(List<List<Range<T>>> rangesByRule, List<T> points) {
+        final TreeMap<T, List<Integer>> deltas = new TreeMap<>();
+        for (final T point : points) {
+            deltas.putIfAbsent(point, new ArrayList<>());
+        }
+        final BitSet unconstrained = new BitSet(rangesByRule.size());
+        for (int rule = 0; rule < rangesByRule.size(); rule++) {
+            final List<Range<T>> ranges = rangesByRule.get(rule);
+            if (ranges == null) {
+                unconstrained.set(rule);
+                continue;
+            }
+            for (final Range<T> range : ranges) {
+                addDelta(deltas, range.begin, rule + 1);
+                if (range.endExclusive != null) {
+                    addDelta(deltas, range.endExclusive, -(rule + 1));
+                }
+            }
+        }
+        // several ranges of a rule may overlap -> count the ranges that cover the current interval for each rule
+        final int[] coverage = new int[rangesByRule.size()];
+        final BitSet current = new BitSet(rangesByRule.size());
+        final TreeMap<T, BitSet> intervals = new TreeMap<>();
+        for (final Map.Entry<T, List<Integer>> e : deltas.entrySet()) {
+            for (final int delta : e.getValue()) {
+                final int rule = Math.abs(delta) - 1;
+                coverage[rule] += Integer.signum(delta);
+                current.set(rule, coverage[rule] > 0);
+            }
+            final BitSet bitSet = (BitSet) current.clone();
+            bitSet.or(unconstrained);
+            intervals.put(e.getKey(), bitSet);
+        }
+        return intervals;
+    }
+
+    private static <T> void addDelta(TreeMap<T, List<Integer>> deltas, T point, int delta) {
+        deltas.computeIfAbsent(point, p -> new ArrayList<>()).add(delta);
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.compiled;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.internal.decision.PreprocessedRule;
+import org.opennms.netmgt.flows.classification.internal.matcher.FilterMatcher;
+
+/**
+ * Classification rules compiled into lookup tables.
+ * <p>
+ * Rules are sorted by their priorities and identified by their index. For each aspect of a flow (protocol, src/dst
+ * port, and src/dst address) a lookup table maps the flow's value to a bitset of the rules that accept that value.
+ * Rules that do not constrain an aspect accept all values of that aspect including missing values. The rules that
+ * match a flow are given by the conjunction of the five bitsets. Because bits are ordered by priority the first
+ * matching rules decide the classification result.
+ * <p>
+ * Classification does not allocate memory and instances are immutable.
+ */
+public class CompiledRules {
+
+    private static final Comparator<PreprocessedRule> PRIORITY = Comparator
+            .<PreprocessedRule>comparingInt(r -> r.ruleDefinition.getGroupPosition())
+            .thenComparingInt(r -> r.ruleDefinition.getPosition());
+
+    public static final CompiledRules EMPTY = of(new ArrayList<>(), FilterService.NOOP);
+
+    public static CompiledRules of(List<PreprocessedRule> rules, FilterService filterService) {
+        final List<PreprocessedRule> sorted = rules.stream().sorted(PRIORITY).collect(Collectors.toList());
+        final int size = sorted.size();
+        final Bitsets bitsets = new Bitsets(size);
+
+        final String[] names = new String[size];
+        final int[] priorities = new int[size];
+        final int[] matchedAspects = new int[size];
+        final FilterMatcher[] filters = new FilterMatcher[size];
+        int priority = -1;
+        for (int i = 0; i < size; i++) {
+            final PreprocessedRule rule = sorted.get(i);
+            names[i] = rule.ruleDefinition.getName();
+            if (i == 0 || PRIORITY.compare(sorted.get(i - 1), rule) != 0) {
+                priority++;
+            }
+            priorities[i] = priority;
+            matchedAspects[i] = (rule.protocol != null ? 1 : 0)
+                                + (rule.srcPort != null ? 1 : 0)
+                                + (rule.dstPort != null ? 1 : 0)
+                                + (rule.srcAddr != null ? 1 : 0)
+                                + (rule.dstAddr != null ? 1 : 0);
+            if (rule.ruleDefinition.hasExportFilterDefinition()) {
+                filters[i] = new FilterMatcher(rule.ruleDefinition.getExporterFilter(), filterService);
+            }
+        }
+
+        return new CompiledRules(
+                names, priorities, matchedAspects, filters,
+                ProtocolTable.of(aspect(sorted, r -> r.protocol), bitsets),
+                PortTable.of(aspect(sorted, r -> r.srcPort), bitsets),
+                PortTable.of(aspect(sorted, r -> r.dstPort), bitsets),
+                AddressTable.of(aspect(sorted, r -> r.srcAddr), bitsets),
+                AddressTable.of(aspect(sorted, r -> r.dstAddr), bitsets),
+                bitsets.words(),
+                bitsets.distinct()
+        );
+    }
+
+    private static <T> List<T> aspect(List<PreprocessedRule> rules, Function<PreprocessedRule, T> f) {
+        // the list may contain nulls for rules that do not constrain the aspect -> do not use Collectors.toList()
+        final List<T> values = new ArrayList<>(rules.size());
+        for (final PreprocessedRule rule : rules) {
+            values.add(f.apply(rule));
+        }
+        return values;
+    }
+
+    private final String[] names;
+    // rules with the same priority have the same group position and position (e.g. a rule and its reversed rule)
+    private final int[] priorities;
+    // used to break ties in case that several rules with the same priority match
+    private final int[] matchedAspects;
+    // null for rules without an exporter filter
+    private final FilterMatcher[] filters;
+
+    private final ProtocolTable protocol;
+    private final PortTable srcPort, dstPort;
+    private final AddressTable srcAddr, dstAddr;
+
+    private final int words;
+    private final int distinctBitsets;
+
+    private CompiledRules(String[] names, int[] priorities, int[] matchedAspects, FilterMatcher[] filters,
+                          ProtocolTable protocol, PortTable srcPort, PortTable dstPort, AddressTable srcAddr, AddressTable dstAddr,
+                          int words, int distinctBitsets) {
+        this.names = names;
+        this.priorities = priorities;
+        this.matchedAspects = matchedAspects;
+        this.filters = filters;
+        this.protocol = protocol;
+        this.srcPort = srcPort;
+        this.dstPort = dstPort;
+        this.srcAddr = srcAddr;
+        this.dstAddr = dstAddr;
+        this.words = words;
+        this.distinctBitsets = distinctBitsets;
+    }
+
+    /**
+     * Classifies a flow.
+     * <p>
+     * Returns the result of the matching rule with the highest priority. In case that several rules with that
+     * priority match the more specific rule (i.e. the rule that considers more aspects of flows) is preferred.
+     *
+     * @return Returns <code>null</code> if the request does not match a rule
+     */
+    public String classify(ClassificationRequest request) {
+        final long[] p = protocol.lookup(request.getProtocol());
+        final long[] sp = srcPort.lookup(request.getSrcPort());
+        final long[] dp = dstPort.lookup(request.getDstPort());
+        final long[] sa = srcAddr.lookup(request.getSrcAddress());
+        final long[] da = dstAddr.lookup(request.getDstAddress());
+
+        int result = -1;
+        for (int w = 0; w < words; w++) {
+            // ports are the most selective aspects of typical rule sets -> skip the remaining lookups early
+            long bits = sp[w] & dp[w];
+            if (bits == 0) {
+                continue;
+            }
+            bits &= p[w] & sa[w] & da[w];
+            while (bits != 0) {
+                final int rule = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (filters[rule] != null && !filters[rule].matches(request)) {
+                    continue;
+                }
+                if (result == -1) {
+                    result = rule;
+                } else if (priorities[rule] != priorities[result]) {
+                    // all following rules have lower priority
+                    return names[result];
+                } else if (matchedAspects[rule] > matchedAspects[result]) {
+                    result = rule;
+                }
+            }
+        }
+        return result != -1 ? names[result] : null;
+    }
+
+    public int getRules() {
+        return names.length;
+    }
+
+    public int getWords() {
+        return words;
+    }
+
+    public int getDistinctBitsets() {
+        return distinctBitsets;
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.compiled;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import org.opennms.core.network.IPPortRange;
+import org.opennms.netmgt.flows.classification.internal.value.PortValue;
+
+/**
+ * Maps port numbers to the bitsets of rules that accept them.
+ * <p>
+ * Each port is mapped to the index of its bitset by a direct lookup table.
+ */
+class PortTable {
+
+    private static final int PORTS = 65536;
+
+    static PortTable of(List<PortValue> portsByRule, Bitsets bitsets) {
+        final List<List<Bitsets.Range<Integer>>> rangesByRule = new ArrayList<>(portsByRule.size());
+        for (final PortValue value : portsByRule) {
+            if (value == null) {
+                rangesByRule.add(null);
+                continue;
+            }
+            final List<Bitsets.Range<Integer>> ranges = new ArrayList<>(value.getPortRanges().size());
+            for (final IPPortRange range : value.getPortRanges()) {
+                final int begin = Math.max(range.getBegin(), 0);
+                final int end = Math.min(range.getEnd(), PORTS - 1);
+                if (begin <= end) {
+                    ranges.add(new Bitsets.Range<>(begin, end + 1));
+                }
+            }
+            rangesByRule.add(ranges);
+        }
+        final NavigableMap<Integer, BitSet> intervals = Bitsets.partition(rangesByRule, Collections.singletonList(0));
+
+        final Map<long[], Integer> indexes = new IdentityHashMap<>();
+        final List<long[]> sets = new ArrayList<>();
+        final char[] indexByPort = new char[PORTS];
+        for (final Map.Entry<Integer, BitSet> e : intervals.entrySet()) {
+            if (e.getKey() >= PORTS) {
+                break;
+            }
+            final long[] set = bitsets.intern(e.getValue());
+            final int index = indexes.computeIfAbsent(set, s -> {
+                sets.add(s);
+                return sets.size() - 1;
+            });
+            final Integer next = intervals.higherKey(e.getKey());
+            final int end = next == null ? PORTS : Math.min(next, PORTS);
+            for (int port = e.getKey(); port < end; port++) {
+                indexByPort[port] = (char) index;
+            }
+        }
+        final BitSet unconstrained = new BitSet(portsByRule.size());
+        for (int rule = 0; rule < portsByRule.size(); rule++) {
+            unconstrained.set(rule, portsByRule.get(rule) == null);
+        }
+        return new PortTable(indexByPort, sets.toArray(new long[sets.size()][]), bitsets.intern(unconstrained));
+    }
+
+    // ports are partitioned into less than 65536 intervals -> the index of each interval's bitset fits into a char
+    private final char[] indexByPort;
+    private final long[][] sets;
+    private final long[] unconstrained;
+
+    private PortTable(char[] indexByPort, long[][] sets, long[] unconstrained) {
+        this.indexByPort = indexByPort;
+        this.sets = sets;
+        this.unconstrained = unconstrained;
+    }
+
+    long[] lookup(Integer port) {
+        if (port == null) {
+            return unconstrained;
+        }
+        final int p = port;
+        return p >= 0 && p < PORTS ? sets[indexByPort[p]] : unconstrained;
+    }
+}
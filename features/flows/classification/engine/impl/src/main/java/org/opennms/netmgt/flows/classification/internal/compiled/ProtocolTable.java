@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal.compiled;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.opennms.netmgt.flows.classification.internal.value.ProtocolValue;
+import org.opennms.netmgt.flows.classification.persistence.api.Protocol;
+
+/**
+ * Maps protocol numbers to the bitsets of rules that accept them.
+ */
+class ProtocolTable {
+
+    private static final int PROTOCOLS = 256;
+
+    static ProtocolTable of(List<ProtocolValue> protocolsByRule, Bitsets bitsets) {
+        final BitSet[] accepting = new BitSet[PROTOCOLS];
+        for (int p = 0; p < PROTOCOLS; p++) {
+            accepting[p] = new BitSet(protocolsByRule.size());
+        }
+        final BitSet unconstrained = new BitSet(protocolsByRule.size());
+        for (int rule = 0; rule < protocolsByRule.size(); rule++) {
+            final ProtocolValue value = protocolsByRule.get(rule);
+            if (value == null) {
+                unconstrained.set(rule);
+            } else {
+                for (final Integer p : value.getProtocols()) {
+                    if (p >= 0 && p < PROTOCOLS) {
+                        accepting[p].set(rule);
+                    }
+                }
+            }
+        }
+        final long[][] byProtocol = new long[PROTOCOLS][];
+        for (int p = 0; p < PROTOCOLS; p++) {
+            accepting[p].or(unconstrained);
+            byProtocol[p] = bitsets.intern(accepting[p]);
+        }
+        return new ProtocolTable(byProtocol, bitsets.intern(unconstrained));
+    }
+
+    private final long[][] byProtocol;
+    private final long[] unconstrained;
+
+    private ProtocolTable(long[][] byProtocol, long[] unconstrained) {
+        this.byProtocol = byProtocol;
+        this.unconstrained = unconstrained;
+    }
+
+    long[] lookup(Protocol protocol) {
+        if (protocol == null) {
+            return unconstrained;
+        }
+        final int p = protocol.getDecimal();
+        return p >= 0 && p < PROTOCOLS ? byProtocol[p] : unconstrained;
+    }
+}
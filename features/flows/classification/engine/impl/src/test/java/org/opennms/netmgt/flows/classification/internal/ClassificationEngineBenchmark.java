@@ -67,6 +67,10 @@ public class ClassificationEngineBenchmark {
     private static final String EXAMPLE_RULES_RESOURCE = "/example-rules.csv";
     private static final String PRE_DEFINED_RULES_RESOURCE = "/pre-defined-rules.csv";
 
+    // the benchmark is run for the decision tree and for the compiled lookup tables
+    private static final String DEFAULT_ENGINE = "default";
+    private static final String COMPILED_ENGINE = "compiled";
+
     public static void main(String[] args) throws Exception {
         org.openjdk.jmh.Main.main(args);
     }
@@ -91,13 +95,19 @@ public class ClassificationEngineBenchmark {
         @Param({EXAMPLE_RULES_RESOURCE, PRE_DEFINED_RULES_RESOURCE})
         public String ruleSet;
 
+        @Param({DEFAULT_ENGINE, COMPILED_ENGINE})
+        public String engine;
+
         private ClassificationEngine classificationEngine;
         private List<ClassificationRequest> classificationRequests;
 
         @Setup
         public void setup() throws InterruptedException {
             var rules = getRules(ruleSet);
-            classificationEngine = new DefaultClassificationEngine(() -> rules, org.mockito.Mockito.mock(FilterService.class));
+            var filterService = org.mockito.Mockito.mock(FilterService.class);
+            classificationEngine = COMPILED_ENGINE.equals(engine) ?
+                                   new CompiledClassificationEngine(() -> rules, filterService) :
+                                   new DefaultClassificationEngine(() -> rules, filterService);
             classificationRequests = RandomClassificationEngineTest.streamOfclassificationRequests(rules, 123456l).skip(index * BATCH_SIZE).limit(BATCH_SIZE).collect(Collectors.toList());
         }
 
@@ -123,4 +133,12 @@ public class ClassificationEngineBenchmark {
         }
     }
 
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 2)
+    public void classifyBatch(BState state, Blackhole blackhole) {
+        blackhole.consume(state.classificationEngine().classify(state.requests()));
+    }
+
 }
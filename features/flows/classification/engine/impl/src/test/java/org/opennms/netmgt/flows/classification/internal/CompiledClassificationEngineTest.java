@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.classification.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.opennms.netmgt.flows.classification.ClassificationEngine;
+import org.opennms.netmgt.flows.classification.ClassificationRequest;
+import org.opennms.netmgt.flows.classification.ClassificationRequestBuilder;
+import org.opennms.netmgt.flows.classification.FilterService;
+import org.opennms.netmgt.flows.classification.persistence.api.ProtocolType;
+import org.opennms.netmgt.flows.classification.persistence.api.Rule;
+import org.opennms.netmgt.flows.classification.persistence.api.RuleBuilder;
+
+import com.google.common.collect.Lists;
+
+public class CompiledClassificationEngineTest {
+
+    @Test
+    public void verifySameResultsAsDecisionTreeForExampleRules() throws InterruptedException {
+        verifySameResultsAsDecisionTree(ClassificationEngineBenchmark.getRules("/example-rules.csv"));
+    }
+
+    @Test
+    public void verifySameResultsAsDecisionTreeForPreDefinedRules() throws InterruptedException {
+        verifySameResultsAsDecisionTree(ClassificationEngineBenchmark.getRules("/pre-defined-rules.csv"));
+    }
+
+    private static void verifySameResultsAsDecisionTree(List<Rule> rules) throws InterruptedException {
+        final ClassificationEngine tree = new DefaultClassificationEngine(() -> rules, FilterService.NOOP);
+        final ClassificationEngine compiled = new CompiledClassificationEngine(() -> rules, FilterService.NOOP);
+        RandomClassificationEngineTest.streamOfclassificationRequests(rules, 123456l)
+                .limit(20000)
+                .forEach(request -> assertEquals(request.toString(), tree.classify(request), compiled.classify(request)));
+    }
+
+    @Test
+    public void verifyRuleEngineWithOmnidirectionals() throws InterruptedException {
+        final ClassificationEngine engine = new CompiledClassificationEngine(() -> Lists.newArrayList(
+                new RuleBuilder().withName("rule1").withSrcPort(80).withOmnidirectional(true).build(),
+                new RuleBuilder().withName("rule2").withDstPort(443).withOmnidirectional(true).build(),
+                new RuleBuilder().withName("rule3").withSrcPort(8080).withDstPort(8443).withOmnidirectional(true).build(),
+                new RuleBuilder().withName("rule4").withSrcPort(1337).build(),
+                new RuleBuilder().withName("rule5").withDstPort(7331).build()
+        ), FilterService.NOOP);
+
+        assertEquals("rule1", engine.classify(new ClassificationRequestBuilder().withSrcPort(9999).withDstPort(80).build()));
+        assertEquals("rule1", engine.classify(new ClassificationRequestBuilder().withSrcPort(80).withDstPort(9999).build()));
+        assertEquals("rule3", engine.classify(new ClassificationRequestBuilder().withSrcPort(8443).withDstPort(8080).build()));
+        assertEquals("rule4", engine.classify(new ClassificationRequestBuilder().withSrcPort(1337).withDstPort(9999).build()));
+        assertNull(engine.classify(new ClassificationRequestBuilder().withSrcPort(9999).withDstPort(1337).build()));
+    }
+
+    @Test
+    public void verifyAddressesOfBothFamilies() throws InterruptedException {
+        final ClassificationEngine engine = new CompiledClassificationEngine(() -> Lists.newArrayList(
+                new RuleBuilder().withName("v4").withPosition(1).withDstAddress("10.0.0.0/8").build(),
+                new RuleBuilder().withName("v4-end").withPosition(2).withDstAddress("255.255.255.0-255.255.255.255").build(),
+                new RuleBuilder().withName("v6").withPosition(3).withDstAddress("2001:db8::/32").build(),
+                new RuleBuilder().withName("any").withPosition(4).withDstPort(80).build()
+        ), FilterService.NOOP);
+
+        assertEquals("v4", engine.classify(request("10.1.2.3", 80)));
+        assertEquals("any", engine.classify(request("11.0.0.0", 80)));
+        assertEquals("v4-end", engine.classify(request("255.255.255.255", 80)));
+        assertEquals("v6", engine.classify(request("2001:db8::1", 80)));
+        assertEquals("any", engine.classify(request("::1", 80)));
+        assertNull(engine.classify(request("::1", 443)));
+    }
+
+    @Test
+    public void verifyExporterFilter() throws InterruptedException {
+        final FilterService filterService = new FilterService() {
+            @Override
+            public void validate(String filterExpression) {
+            }
+
+            @Override
+            public boolean matches(String address, String filterExpression) {
+                return "10.0.0.1".equals(address);
+            }
+        };
+        final ClassificationEngine engine = new CompiledClassificationEngine(() -> Lists.newArrayList(
+                new RuleBuilder().withName("filtered").withPosition(1).withDstPort(80).withExporterFilter("categoryName == 'Routers'").build(),
+                new RuleBuilder().withName("http").withPosition(2).withDstPort(80).build()
+        ), filterService);
+
+        final ClassificationRequest request = request("192.168.0.1", 80);
+        request.setExporterAddress("10.0.0.1");
+        assertEquals("filtered", engine.classify(request));
+        request.setExporterAddress("10.0.0.2");
+        assertEquals("http", engine.classify(request));
+    }
+
+    @Test
+    public void verifyBatchClassification() throws InterruptedException {
+        final List<Rule> rules = ClassificationEngineBenchmark.getRules("/pre-defined-rules.csv");
+        final ClassificationEngine engine = new CompiledClassificationEngine(() -> rules, FilterService.NOOP);
+        final List<ClassificationRequest> requests = RandomClassificationEngineTest.streamOfclassificationRequests(rules, 4711l)
+                .limit(1000)
+                .collect(Collectors.toList());
+
+        final List<String> expected = requests.stream().map(engine::classify).collect(Collectors.toList());
+        assertThat(engine.classify(requests), contains(expected.toArray()));
+    }
+
+    private static ClassificationRequest request(String dstAddress, int dstPort) {
+        return new ClassificationRequestBuilder()
+                .withLocation("Default")
+                .withProtocol(ProtocolType.TCP)
+                .withSrcAddress("192.168.1.1").withSrcPort(12345)
+                .withDstAddress(dstAddress).withDstPort(dstPort)
+                .build();
+    }
+}
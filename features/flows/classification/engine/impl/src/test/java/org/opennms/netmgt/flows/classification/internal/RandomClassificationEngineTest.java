@@ -78,7 +78,7 @@ import net.jqwik.api.Tuple;
  * <p>
  * Random rule sets are generated and used to instantiate classification engines. Then randomized classification
  * requests are generated based on the rule sets. Classification is checked by comparing the outcome when classifying
- * by the decision tree or by a simple brute force algorithm.
+ * by the decision tree, by the compiled rules, or by a simple brute force algorithm.
  */
 public class RandomClassificationEngineTest {
 
@@ -125,6 +125,7 @@ public class RandomClassificationEngineTest {
             });
         }
         var ce = new DefaultClassificationEngine(() -> rulesAndRequests.get1(), FILTER_SERVICE);
+        var compiled = new CompiledClassificationEngine(() -> rulesAndRequests.get1(), FILTER_SERVICE);
 
         var classifiers = rulesAndRequests.get1().stream()
                 .flatMap(r -> r.isOmnidirectional() ? Stream.of(r, r.reversedRule()) : Stream.of(r))
@@ -137,7 +138,8 @@ public class RandomClassificationEngineTest {
             // brute force classification
             // -> take the result of the first matching classifier
             var appDirect = classifiers.stream().map(c -> c.classify(r)).filter(s -> s != null).findFirst().map(cr -> cr.name);
-            return Objects.equals(appByTree, appDirect);
+            var appByCompiledRules = Optional.ofNullable(compiled.classify(r));
+            return Objects.equals(appByTree, appDirect) && Objects.equals(appByCompiledRules, appDirect);
         });
         LOG.debug("checked classification");
         return res;
@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.opennms.features.jest.client.bulk.BulkRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.swrve.ratelimitedlogger.RateLimitedLog;
+
+/**
+ * Sends bulks of documents to Elasticsearch in the background.
+ *
+ * Bulks are queued and sent by a fixed number of sender threads, which bounds the number of
+ * concurrent in-flight bulk requests. Failed documents are re-queued by a separate retry thread
+ * after a back-off, so that neither the submitting threads nor the senders sleep between retries.
+ *
+ * The recommended bulk size adapts to the latency of the bulk requests: it shrinks proportionally
+ * when a request takes longer than the target latency, and grows again while full bulks are
+ * answered well within it.
+ *
+ * @param <T> the type of the documents
+ */
+public class AsyncBulkIndexer<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncBulkIndexer.class);
+
+    private final RateLimitedLog RATE_LIMITED_LOGGER = RateLimitedLog
+            .withRateLimit(LOG)
+            .maxRate(5).every(Duration.ofSeconds(30))
+            .build();
+
+    /**
+     * Sends a single bulk request.
+     */
+    @FunctionalInterface
+    public interface BulkSender<T> {
+        /**
+         * @param documents the documents to index
+         * @return the documents which failed to be indexed, or an empty list if all succeeded
+         * @throws IOException if the request failed as a whole
+         */
+        List<T> send(List<T> documents) throws IOException;
+    }
+
+    private static class Batch<T> {
+        private final List<T> documents;
+        private final int attempt;
+
+        private Batch(final List<T> documents, final int attempt) {
+            this.documents = documents;
+            this.attempt = attempt;
+        }
+    }
+
+    private final Batch<T> poisonPill = new Batch<>(null, 0);
+
+    private final BulkSender<T> sender;
+
+    private final BiConsumer<List<T>, Exception> failureHandler;
+
+    private final int retryCount;
+
+    private final int maxBulkSize;
+
+    private final int minBulkSize;
+
+    private final long targetLatencyMs;
+
+    private final BlockingQueue<Batch<T>> queue;
+
+    private final List<Thread> senders;
+
+    private final ScheduledExecutorService retryExecutor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Set<Batch<T>> pendingRetries = ConcurrentHashMap.newKeySet();
+
+    private volatile int bulkSize;
+
+    private volatile boolean closed = false;
+
+    /**
+     * @param name used to name the threads
+     * @param sender sends the bulk requests
+     * @param failureHandler called with the documents that could not be indexed after all retries
+     * @param concurrency the maximum number of concurrent bulk requests
+     * @param queueSize the maximum number of bulks waiting to be sent before {@link #submit(List)} blocks
+     * @param maxBulkSize the maximum recommended bulk size
+     * @param targetLatencyMs the bulk request latency to aim for, or 0 to use a fixed bulk size
+     * @param retryCount the number of attempts made for each document
+     */
+    public AsyncBulkIndexer(final String name,
+                            final BulkSender<T> sender,
+                            final BiConsumer<List<T>, Exception> failureHandler,
+                            final int concurrency,
+                            final int queueSize,
+                            final int maxBulkSize,
+                            final long targetLatencyMs,
+                            final int retryCount) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be strictly positive");
+        }
+        this.sender = Objects.requireNonNull(sender);
+        this.failureHandler = Objects.requireNonNull(failureHandler);
+        this.retryCount = Math.max(1, retryCount);
+        this.maxBulkSize = Math.max(1, maxBulkSize);
+        this.minBulkSize = Math.max(1, this.maxBulkSize / 10);
+        this.targetLatencyMs = targetLatencyMs;
+        this.bulkSize = this.maxBulkSize;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat(name + "-retry")
+                .build());
+
+        this.senders = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            final Thread thread = new Thread(this::run, name + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            this.senders.add(thread);
+        }
+    }
+
+    /**
+     * Queues the given documents for indexing.
+     *
+     * This only blocks if the queue of pending bulks is full.
+     *
+     * @param documents the documents to index, ownership of the list is passed to the indexer
+     */
+    public void submit(final List<T> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        if (closed) {
+            failureHandler.accept(documents, new IllegalStateException("The bulk indexer is closed"));
+            return;
+        }
+        enqueue(new Batch<>(documents, 1));
+    }
+
+    private void enqueue(final Batch<T> batch) {
+        if (queue.offer(batch)) {
+            return;
+        }
+
+        RATE_LIMITED_LOGGER.warn("The queue of pending bulks is full. Waiting for in-flight bulk requests to complete.");
+        try {
+            queue.put(batch);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failureHandler.accept(batch.documents, e);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            final Batch<T> batch;
+            try {
+                batch = queue.take();
+            } catch (final InterruptedException e) {
+                return;
+            }
+            if (batch == poisonPill) {
+                return;
+            }
+
+            inFlight.incrementAndGet();
+            try {
+                send(batch);
+            } catch (final Throwable t) {
+                LOG.error("Unexpected error while sending a bulk of {} documents.", batch.documents.size(), t);
+                failureHandler.accept(batch.documents, t instanceof Exception ? (Exception) t : new RuntimeException(t));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private void send(final Batch<T> batch) {
+        final long start = System.nanoTime();
+        final List<T> failed;
+        try {
+            failed = sender.send(batch.documents);
+        } catch (final IOException e) {
+            requestFailed();
+            retry(new Batch<>(batch.documents, batch.attempt + 1), e);
+            return;
+        }
+
+        if (failed.isEmpty()) {
+            requestSucceeded(batch.documents.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } else {
+            requestFailed();
+            retry(new Batch<>(failed, batch.attempt + 1),
+                    new IOException(String.format("Failed to index %d of %d documents", failed.size(), batch.documents.size())));
+        }
+    }
+
+    private void retry(final Batch<T> batch, final Exception error) {
+        if (batch.attempt > retryCount || closed) {
+            failureHandler.accept(batch.documents, error);
+            return;
+        }
+
+        final long delay = BulkRequest.getSleepTime(batch.attempt - 1);
+        LOG.info("Retrying {} documents in {} ms: {}", batch.documents.size(), delay, error.getMessage());
+        pendingRetries.add(batch);
+        retryExecutor.schedule(() -> {
+            if (pendingRetries.remove(batch)) {
+                enqueue(batch);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void requestSucceeded(final int documents, final long latencyMs) {
+        if (targetLatencyMs <= 0) {
+            return;
+        }
+        if (latencyMs > targetLatencyMs) {
+            bulkSize = Math.max(minBulkSize, (int) (bulkSize * targetLatencyMs / latencyMs));
+        } else if (documents >= bulkSize && latencyMs * 2 <= targetLatencyMs) {
+            bulkSize = Math.min(maxBulkSize, bulkSize + Math.max(1, bulkSize / 4));
+        }
+    }
+
+    private synchronized void requestFailed() {
+        if (targetLatencyMs <= 0) {
+            return;
+        }
+        bulkSize = Math.max(minBulkSize, bulkSize / 2);
+    }
+
+    /**
+     * @return the number of documents which should be collected into a single bulk
+     */
+    public int getBulkSize() {
+        return bulkSize;
+    }
+
+    /**
+     * @return the number of bulk requests currently in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of bulks waiting to be sent
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of documents waiting to be retried
+     */
+    public int getRetrying() {
+        return pendingRetries.stream().mapToInt(batch -> batch.documents.size()).sum();
+    }
+
+    /**
+     * Sends all of the queued bulks and stops the sender threads.
+     *
+     * Documents waiting to be retried are handed to the failure handler.
+     */
+    public void close(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        retryExecutor.shutdownNow();
+        for (final Batch<T> batch : pendingRetries) {
+            if (pendingRetries.remove(batch)) {
+                failureHandler.accept(batch.documents, new IllegalStateException("The bulk indexer was closed before the documents could be retried"));
+            }
+        }
+
+        for (int i = 0; i < senders.size(); i++) {
+            queue.put(poisonPill);
+        }
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (final Thread thread : senders) {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            if (thread.isAlive()) {
+                LOG.warn("Bulk sender {} did not finish in time.", thread.getName());
+                thread.interrupt();
+            }
+        }
+    }
+}
@@ -29,12 +29,20 @@
 package org.opennms.netmgt.flows.elastic;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import org.opennms.core.cache.Cache;
@@ -47,6 +55,7 @@ import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
 import org.opennms.netmgt.dao.api.IpInterfaceDao;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.dao.api.SessionUtils;
+import org.opennms.netmgt.dnsresolver.api.DnsResolver;
 import org.opennms.netmgt.flows.api.Flow;
 import org.opennms.netmgt.flows.api.FlowSource;
 import org.opennms.netmgt.flows.classification.ClassificationEngine;
@@ -58,6 +67,7 @@ import org.opennms.netmgt.model.OnmsNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Strings;
@@ -88,6 +98,12 @@ public class DocumentEnricher {
 
     private final long clockSkewCorrectionThreshold;
 
+    private final DnsResolver dnsResolver;
+
+    private final long dnsLookupTimeoutMs;
+
+    private final Meter dnsLookupTimeouts;
+
     public DocumentEnricher(MetricRegistry metricRegistry,
                             NodeDao nodeDao,
                             IpInterfaceDao ipInterfaceDao,
@@ -96,6 +112,24 @@ public class DocumentEnricher {
                             ClassificationEngine classificationEngine,
                             CacheConfig cacheConfig,
                             final long clockSkewCorrectionThreshold) {
+        this(metricRegistry, nodeDao, ipInterfaceDao, interfaceToNodeCache, sessionUtils, classificationEngine,
+                cacheConfig, clockSkewCorrectionThreshold, null, 0);
+    }
+
+    /**
+     * @param dnsResolver resolves the hostnames of flow addresses that were not resolved by the parser
+     * @param dnsLookupTimeoutMs how long a batch waits for its hostnames, 0 disables the lookups
+     */
+    public DocumentEnricher(MetricRegistry metricRegistry,
+                            NodeDao nodeDao,
+                            IpInterfaceDao ipInterfaceDao,
+                            InterfaceToNodeCache interfaceToNodeCache,
+                            SessionUtils sessionUtils,
+                            ClassificationEngine classificationEngine,
+                            CacheConfig cacheConfig,
+                            final long clockSkewCorrectionThreshold,
+                            final DnsResolver dnsResolver,
+                            final long dnsLookupTimeoutMs) {
         this.nodeDao = Objects.requireNonNull(nodeDao);
         this.ipInterfaceDao = Objects.requireNonNull(ipInterfaceDao);
         this.interfaceToNodeCache = Objects.requireNonNull(interfaceToNodeCache);
@@ -124,6 +158,10 @@ public class DocumentEnricher {
         this.nodeLoadTimer = metricRegistry.timer("nodeLoadTime");
 
         this.clockSkewCorrectionThreshold = clockSkewCorrectionThreshold;
+
+        this.dnsResolver = dnsResolver;
+        this.dnsLookupTimeoutMs = dnsResolver != null ? dnsLookupTimeoutMs : 0;
+        this.dnsLookupTimeouts = metricRegistry.meter("dnsLookupTimeouts");
     }
 
     public List<FlowDocument> enrich(final Collection<Flow> flows, final FlowSource source) {
@@ -132,72 +170,216 @@ public class DocumentEnricher {
             return Collections.emptyList();
         }
 
-        return sessionUtils.withTransaction(() -> flows.stream().map(flow -> {
-            final FlowDocument document = FlowDocument.from(flow);
-            // Metadata from message
-            document.setHost(source.getSourceAddress());
-            document.setLocation(source.getLocation());
+        // Resolve the hostnames of the whole batch in one go, while the nodes are looked up
+        final CompletableFuture<Map<String, String>> hostnames = lookupMissingHostnames(flows);
+
+        return sessionUtils.withTransaction(() -> {
+            final Batch batch = new Batch(source);
+
+            final List<FlowDocument> documents = new ArrayList<>(flows.size());
+            final List<FlowDocument> classifiableDocuments = new ArrayList<>(flows.size());
+            final List<ClassificationRequest> classificationRequests = new ArrayList<>(flows.size());
+
+            for (final Flow flow : flows) {
+                final FlowDocument document = FlowDocument.from(flow);
+                // Metadata from message
+                document.setHost(source.getSourceAddress());
+                document.setLocation(source.getLocation());
 
-            // Node data
-            getNodeInfoFromCache(source.getLocation(), source.getSourceAddress(), source.getContextKey(), flow.getNodeIdentifier()).ifPresent(document::setNodeExporter);
-            if (document.getDstAddr() != null) {
-                getNodeInfoFromCache(source.getLocation(), document.getDstAddr(), null, null).ifPresent(document::setNodeDst);
+                // Node data and locality
+                batch.getExporter(flow.getNodeIdentifier()).ifPresent(document::setNodeExporter);
+                if (document.getDstAddr() != null) {
+                    final AddressInfo dst = batch.getAddressInfo(document.getDstAddr());
+                    dst.node.ifPresent(document::setNodeDst);
+                    document.setDstLocality(dst.locality);
+                }
+                if (document.getSrcAddr() != null) {
+                    final AddressInfo src = batch.getAddressInfo(document.getSrcAddr());
+                    src.node.ifPresent(document::setNodeSrc);
+                    document.setSrcLocality(src.locality);
+                }
+
+                if (Locality.PUBLIC.equals(document.getDstLocality()) || Locality.PUBLIC.equals(document.getSrcLocality())) {
+                    document.setFlowLocality(Locality.PUBLIC);
+                } else if (Locality.PRIVATE.equals(document.getDstLocality()) || Locality.PRIVATE.equals(document.getSrcLocality())) {
+                    document.setFlowLocality(Locality.PRIVATE);
+                }
+
+                final ClassificationRequest classificationRequest = createClassificationRequest(document);
+
+                // Check whether classification is possible
+                if (classificationRequest.isClassifiable()) {
+                    classifiableDocuments.add(document);
+                    classificationRequests.add(classificationRequest);
+                }
+
+                // Fix skewed clock
+                // If received time and export time differ to much, correct all timestamps by the difference
+                if (this.clockSkewCorrectionThreshold > 0) {
+                    final long skew = flow.getTimestamp() - flow.getReceivedAt();
+                    if (Math.abs(skew) >= this.clockSkewCorrectionThreshold) {
+                        // The applied correction the the negative skew
+                        document.setClockCorrection(-skew);
+
+                        // Fix the skew on all timestamps of the flow
+                        document.setTimestamp(document.getTimestamp() - skew);
+                        document.setFirstSwitched(document.getFirstSwitched() - skew);
+                        document.setDeltaSwitched(document.getDeltaSwitched() - skew);
+                        document.setLastSwitched(document.getLastSwitched() - skew);
+                    }
+                }
+
+                documents.add(document);
             }
-            if (document.getSrcAddr() != null) {
-                getNodeInfoFromCache(source.getLocation(), document.getSrcAddr(), null, null).ifPresent(document::setNodeSrc);
+
+            // Apply Application mapping to the whole batch at once
+            if (!classificationRequests.isEmpty()) {
+                final List<String> applications = classificationEngine.classify(classificationRequests);
+                for (int i = 0; i < classifiableDocuments.size(); i++) {
+                    classifiableDocuments.get(i).setApplication(applications.get(i));
+                }
             }
 
-            // Locality
-            if (document.getSrcAddr() != null) {
-                document.setSrcLocality(isPrivateAddress(document.getSrcAddr()) ? Locality.PRIVATE : Locality.PUBLIC);
+            applyHostnames(documents, hostnames);
+
+            // Conversation tagging
+            for (final FlowDocument document : documents) {
+                document.setConvoKey(ConversationKeyUtils.getConvoKeyAsJsonString(document));
             }
-            if (document.getDstAddr() != null) {
-                document.setDstLocality(isPrivateAddress(document.getDstAddr()) ? Locality.PRIVATE : Locality.PUBLIC);
+
+            return documents;
+        });
+    }
+
+    /**
+     * Issues a single bulk reverse lookup for the distinct addresses of the batch whose hostnames are missing.
+     *
+     * @return the resolved hostnames by address
+     */
+    private CompletableFuture<Map<String, String>> lookupMissingHostnames(final Collection<Flow> flows) {
+        if (dnsLookupTimeoutMs <= 0) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+
+        final Set<String> missing = new HashSet<>();
+        for (final Flow flow : flows) {
+            if (flow.getSrcAddr() != null && flow.getSrcAddrHostname().isEmpty()) {
+                missing.add(flow.getSrcAddr());
+            }
+            if (flow.getDstAddr() != null && flow.getDstAddrHostname().isEmpty()) {
+                missing.add(flow.getDstAddr());
             }
+            if (flow.getNextHop() != null && flow.getNextHopHostname().isEmpty()) {
+                missing.add(flow.getNextHop());
+            }
+        }
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
 
-            if (Locality.PUBLIC.equals(document.getDstLocality()) || Locality.PUBLIC.equals(document.getSrcLocality())) {
-                document.setFlowLocality(Locality.PUBLIC);
-            } else if (Locality.PRIVATE.equals(document.getDstLocality()) || Locality.PRIVATE.equals(document.getSrcLocality())) {
-                document.setFlowLocality(Locality.PRIVATE);
+        final Map<String, InetAddress> addresses = new HashMap<>(missing.size());
+        for (final String address : missing) {
+            final InetAddress inetAddress = InetAddressUtils.addr(address);
+            if (inetAddress != null) {
+                addresses.put(address, inetAddress);
             }
+        }
 
-            final ClassificationRequest classificationRequest = createClassificationRequest(document);
+        try {
+            return dnsResolver.reverseLookupAll(addresses.values()).thenApply(resolved -> {
+                final Map<String, String> hostnames = new HashMap<>(resolved.size());
+                addresses.forEach((address, inetAddress) -> resolved.getOrDefault(inetAddress, Optional.empty())
+                        .ifPresent(hostname -> hostnames.put(address, hostname)));
+                return hostnames;
+            });
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to look up the hostnames of {} addresses.", addresses.size(), e);
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+    }
 
-            // Check whether classification is possible
-            if (classificationRequest.isClassifiable()) {
-                // Apply Application mapping
-                document.setApplication(classificationEngine.classify(classificationRequest));
-            }
+    private void applyHostnames(final List<FlowDocument> documents, final CompletableFuture<Map<String, String>> future) {
+        final Map<String, String> hostnames;
+        try {
+            hostnames = future.get(dnsLookupTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            dnsLookupTimeouts.mark();
+            LOG.debug("Hostnames of the batch were not resolved within {}ms.", dnsLookupTimeoutMs);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            LOG.warn("Failed to look up the hostnames of the batch.", e.getCause());
+            return;
+        }
+        if (hostnames.isEmpty()) {
+            return;
+        }
 
-            // Conversation tagging
-            document.setConvoKey(ConversationKeyUtils.getConvoKeyAsJsonString(document));
-
-            // Fix skewed clock
-            // If received time and export time differ to much, correct all timestamps by the difference
-            if (this.clockSkewCorrectionThreshold > 0) {
-                final long skew = flow.getTimestamp() - flow.getReceivedAt();
-                if (Math.abs(skew) >= this.clockSkewCorrectionThreshold) {
-                    // The applied correction the the negative skew
-                    document.setClockCorrection(-skew);
-
-                    // Fix the skew on all timestamps of the flow
-                    document.setTimestamp(document.getTimestamp() - skew);
-                    document.setFirstSwitched(document.getFirstSwitched() - skew);
-                    document.setDeltaSwitched(document.getDeltaSwitched() - skew);
-                    document.setLastSwitched(document.getLastSwitched() - skew);
-                }
+        for (final FlowDocument document : documents) {
+            if (document.getSrcAddrHostname() == null && document.getSrcAddr() != null) {
+                document.setSrcAddrHostname(hostnames.get(document.getSrcAddr()));
+            }
+            if (document.getDstAddrHostname() == null && document.getDstAddr() != null) {
+                document.setDstAddrHostname(hostnames.get(document.getDstAddr()));
+            }
+            if (document.getNextHopHostname() == null && document.getNextHop() != null) {
+                document.setNextHopHostname(hostnames.get(document.getNextHop()));
             }
+        }
+    }
 
-            return document;
-        }).collect(Collectors.toList()));
+    /**
+     * Node and locality of an address, resolved once per batch.
+     */
+    private static class AddressInfo {
+        private final Optional<NodeDocument> node;
+        private final Locality locality;
+
+        private AddressInfo(final Optional<NodeDocument> node, final Locality locality) {
+            this.node = node;
+            this.locality = locality;
+        }
+    }
+
+    /**
+     * Resolves the addresses and exporters of a batch of flows from the same source.
+     *
+     * A batch typically has a few hundred distinct addresses for thousands of flows, so every address is parsed and
+     * looked up in the caches only once.
+     */
+    private class Batch {
+        private final FlowSource source;
+        private final InetAddress sourceAddress;
+
+        private final Map<String, AddressInfo> addresses = new HashMap<>();
+        private final Map<String, Optional<NodeDocument>> exporters = new HashMap<>();
+
+        private Batch(final FlowSource source) {
+            this.source = source;
+            this.sourceAddress = InetAddressUtils.addr(source.getSourceAddress());
+        }
+
+        private Optional<NodeDocument> getExporter(final String nodeIdentifier) {
+            return exporters.computeIfAbsent(nodeIdentifier,
+                    (key) -> getNodeInfoFromCache(source.getLocation(), sourceAddress, source.getContextKey(), key));
+        }
+
+        private AddressInfo getAddressInfo(final String ipAddress) {
+            return addresses.computeIfAbsent(ipAddress, (key) -> {
+                final InetAddress inetAddress = InetAddressUtils.addr(key);
+                return new AddressInfo(getNodeInfoFromCache(source.getLocation(), inetAddress, null, null),
+                        isPrivateAddress(inetAddress) ? Locality.PRIVATE : Locality.PUBLIC);
+            });
+        }
     }
 
-    private static boolean isPrivateAddress(String ipAddress) {
-        final InetAddress inetAddress = InetAddressUtils.addr(ipAddress);
+    private static boolean isPrivateAddress(final InetAddress inetAddress) {
         return inetAddress.isLoopbackAddress() || inetAddress.isLinkLocalAddress() || inetAddress.isSiteLocalAddress();
     }
 
-    private Optional<NodeDocument> getNodeInfoFromCache(final String location, final String ipAddress, final ContextKey contextKey, final String value) {
+    private Optional<NodeDocument> getNodeInfoFromCache(final String location, final InetAddress ipAddress, final ContextKey contextKey, final String value) {
         Optional<NodeDocument> nodeDocument = Optional.empty();
         if (contextKey != null && !Strings.isNullOrEmpty(value)) {
             final NodeMetadataKey metadataKey = new NodeMetadataKey(contextKey, value);
@@ -212,7 +394,7 @@ public class DocumentEnricher {
             }
         }
 
-        final var entry = interfaceToNodeCache.getFirst(location, InetAddressUtils.addr(ipAddress));
+        final var entry = interfaceToNodeCache.getFirst(location, ipAddress);
         if(entry.isPresent()) {
             try {
                 return nodeInfoCache.get(entry.get());
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.flows.elastic;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
@@ -52,6 +53,7 @@ import org.opennms.distributed.core.api.Identity;
 import org.opennms.features.jest.client.bulk.BulkException;
 import org.opennms.features.jest.client.bulk.BulkRequest;
 import org.opennms.features.jest.client.bulk.BulkWrapper;
+import org.opennms.features.jest.client.bulk.DefaultBulkResult;
 import org.opennms.features.jest.client.index.IndexStrategy;
 import org.opennms.features.jest.client.template.IndexSettings;
 import org.opennms.netmgt.dao.api.NodeDao;
@@ -120,6 +122,11 @@ public class ElasticFlowRepository implements FlowRepository {
      */
     private final Meter flowsPersistedMeter;
 
+    /**
+     * Flows/second which could not be persisted by the asynchronous bulk indexer
+     */
+    private final Meter flowsDroppedMeter;
+
     /**
      * Time taken to enrich the flows in a log
      */
@@ -165,6 +172,15 @@ public class ElasticFlowRepository implements FlowRepository {
     private int bulkRetryCount = 5;
     private int bulkFlushMs = 500;
 
+    /**
+     * Maximum number of concurrent bulk requests. If 0, bulks are persisted synchronously by the calling thread.
+     */
+    private int bulkConcurrency = 0;
+    private int bulkQueueSize = 32;
+    private long bulkTargetLatencyMs = 1000;
+
+    private volatile AsyncBulkIndexer<FlowDocument> bulkIndexer;
+
     /**
      * Can be used to skip persisting the flows into ES>
      */
@@ -217,6 +233,11 @@ public class ElasticFlowRepository implements FlowRepository {
         logPersistingTimer = metricRegistry.timer("logPersisting");
         logMarkingTimer = metricRegistry.timer("logMarking");
         flowsPerLog = metricRegistry.histogram("flowsPerLog");
+        flowsDroppedMeter = metricRegistry.meter("flowsDropped");
+        metricRegistry.register("bulkSize", (Gauge<Integer>) this::getEffectiveBulkSize);
+        metricRegistry.register("bulksInFlight", (Gauge<Integer>) () -> bulkIndexer != null ? bulkIndexer.getInFlight() : 0);
+        metricRegistry.register("bulksQueued", (Gauge<Integer>) () -> bulkIndexer != null ? bulkIndexer.getQueued() : 0);
+        metricRegistry.register("flowsRetrying", (Gauge<Integer>) () -> bulkIndexer != null ? bulkIndexer.getRetrying() : 0);
 
         this.markerCache.put(Direction.INGRESS, CacheBuilder.newBuilder()
                 .expireAfterWrite(1, TimeUnit.HOURS)
@@ -288,7 +309,7 @@ public class ElasticFlowRepository implements FlowRepository {
                                 try {
                                     if (flowBulk.documents.size() > 0) {
                                         try {
-                                            persistBulk(flowBulk.documents);
+                                            dispatchBulk(flowBulk);
                                             flowBulk.lastPersist = currentTimeMillis;
                                         } catch (Throwable t) {
                                             LOG.error("An error occurred while flushing one or more bulks in ElasticFlowRepository.", t);
@@ -350,8 +371,8 @@ public class ElasticFlowRepository implements FlowRepository {
             flowBulk.lock.lock();
             try {
                 flowBulk.documents.addAll(flowDocuments);
-                if (flowBulk.documents.size() >= this.bulkSize) {
-                    this.persistBulk(flowBulk.documents);
+                if (flowBulk.documents.size() >= this.getEffectiveBulkSize()) {
+                    this.dispatchBulk(flowBulk);
                     flowBulk.lastPersist = System.currentTimeMillis();
                 }
             } finally {
@@ -420,6 +441,36 @@ public class ElasticFlowRepository implements FlowRepository {
         }
     }
 
+    private int getEffectiveBulkSize() {
+        final AsyncBulkIndexer<FlowDocument> indexer = this.bulkIndexer;
+        return indexer != null ? indexer.getBulkSize() : this.bulkSize;
+    }
+
+    /**
+     * Hands the documents collected in the given bulk to the asynchronous indexer if enabled,
+     * or persists them on the calling thread otherwise. Must be called with the bulk locked.
+     */
+    private void dispatchBulk(final FlowBulk flowBulk) throws FlowException {
+        final AsyncBulkIndexer<FlowDocument> indexer = this.bulkIndexer;
+        if (indexer != null) {
+            indexer.submit(flowBulk.documents);
+            flowBulk.documents = Lists.newArrayListWithCapacity(this.bulkSize);
+        } else {
+            persistBulk(flowBulk.documents);
+        }
+    }
+
+    private BulkWrapper createBulk(final List<FlowDocument> documents) {
+        final Bulk.Builder bulkBuilder = new Bulk.Builder();
+        for (FlowDocument flowDocument : documents) {
+            final String index = indexStrategy.getIndex(indexSettings, INDEX_NAME, Instant.ofEpochMilli(flowDocument.getTimestamp()));
+            final Index.Builder indexBuilder = new Index.Builder(flowDocument)
+                    .index(index);
+            bulkBuilder.addAction(indexBuilder.build());
+        }
+        return new BulkWrapper(bulkBuilder);
+    }
+
     private void persistBulk(final List<FlowDocument> bulk) throws FlowException {
         LOG.debug("Persisting {} flow documents.", bulk.size());
         final Tracer tracer = getTracer();
@@ -427,16 +478,7 @@ public class ElasticFlowRepository implements FlowRepository {
              Scope scope = tracer.buildSpan(TRACER_FLOW_MODULE).startActive(true)) {
             // Add location and source address tags to span.
             scope.span().setTag(TracerConstants.TAG_THREAD, Thread.currentThread().getName());
-            final BulkRequest<FlowDocument> bulkRequest = new BulkRequest<>(client, bulk, (documents) -> {
-                final Bulk.Builder bulkBuilder = new Bulk.Builder();
-                for (FlowDocument flowDocument : documents) {
-                    final String index = indexStrategy.getIndex(indexSettings, INDEX_NAME, Instant.ofEpochMilli(flowDocument.getTimestamp()));
-                    final Index.Builder indexBuilder = new Index.Builder(flowDocument)
-                            .index(index);
-                    bulkBuilder.addAction(indexBuilder.build());
-                }
-                return new BulkWrapper(bulkBuilder);
-            }, bulkRetryCount);
+            final BulkRequest<FlowDocument> bulkRequest = new BulkRequest<>(client, bulk, this::createBulk, bulkRetryCount);
             try {
                 // the bulk request considers retries
                 bulkRequest.execute();
@@ -456,6 +498,57 @@ public class ElasticFlowRepository implements FlowRepository {
         }
     }
 
+    /**
+     * Sends a single bulk request on behalf of the {@link AsyncBulkIndexer}, which takes care of retries.
+     */
+    private List<FlowDocument> sendBulk(final List<FlowDocument> documents) throws IOException {
+        LOG.debug("Persisting {} flow documents.", documents.size());
+        final Tracer tracer = getTracer();
+        try (final Timer.Context ctx = logPersistingTimer.time();
+             Scope scope = tracer.buildSpan(TRACER_FLOW_MODULE).startActive(true)) {
+            scope.span().setTag(TracerConstants.TAG_THREAD, Thread.currentThread().getName());
+            final BulkWrapper bulk = createBulk(documents);
+            final DefaultBulkResult<FlowDocument> result = new DefaultBulkResult<>(client.execute(bulk), documents);
+            if (result.isSucceeded()) {
+                flowsPersistedMeter.mark(documents.size());
+                return Collections.emptyList();
+            }
+
+            final List<FlowDocument> failedDocuments = result.getFailedDocuments();
+            LOG.info("An error occurred while executing the bulk request: {}.", result.getErrorMessage());
+            flowsPersistedMeter.mark(documents.size() - failedDocuments.size());
+            // An unsuccessful response without any failed items failed as a whole
+            return failedDocuments.isEmpty() ? documents : failedDocuments;
+        }
+    }
+
+    private void bulkFailed(final List<FlowDocument> documents, final Exception e) {
+        flowsDroppedMeter.mark(documents.size());
+        RATE_LIMITED_LOGGER.error("Failed to persist {} flow documents: {}", documents.size(), e.getMessage());
+    }
+
+    private void startBulkIndexer() {
+        if (bulkIndexer != null || bulkConcurrency <= 0) {
+            return;
+        }
+        bulkIndexer = new AsyncBulkIndexer<>("flow-bulk-indexer", this::sendBulk, this::bulkFailed,
+                bulkConcurrency, bulkQueueSize, bulkSize, bulkTargetLatencyMs, bulkRetryCount);
+    }
+
+    private void stopBulkIndexer() {
+        final AsyncBulkIndexer<FlowDocument> indexer = this.bulkIndexer;
+        if (indexer == null) {
+            return;
+        }
+        this.bulkIndexer = null;
+        try {
+            indexer.close(bulkFlushMs + 30000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while waiting for the pending bulks to be persisted", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public Identity getIdentity() {
         return identity;
     }
@@ -469,6 +562,7 @@ public class ElasticFlowRepository implements FlowRepository {
             tracerRegistry.init(identity.getId());
         }
 
+        startBulkIndexer();
         startTimer();
     }
 
@@ -476,9 +570,16 @@ public class ElasticFlowRepository implements FlowRepository {
         stopTimer();
         markerCacheSyncDone.countDown();
         executorService.shutdownNow();
+        final AsyncBulkIndexer<FlowDocument> indexer = this.bulkIndexer;
         for(final FlowBulk flowBulk : flowBulks.values()) {
-            persistBulk(flowBulk.documents);
+            if (indexer != null) {
+                indexer.submit(flowBulk.documents);
+                flowBulk.documents = Lists.newArrayList();
+            } else {
+                persistBulk(flowBulk.documents);
+            }
         }
+        stopBulkIndexer();
     }
 
     private Tracer getTracer() {
@@ -522,6 +623,31 @@ public class ElasticFlowRepository implements FlowRepository {
         stopTimer();
         startTimer();
     }
+
+    public int getBulkConcurrency() {
+        return bulkConcurrency;
+    }
+
+    public void setBulkConcurrency(final int bulkConcurrency) {
+        this.bulkConcurrency = bulkConcurrency;
+    }
+
+    public int getBulkQueueSize() {
+        return bulkQueueSize;
+    }
+
+    public void setBulkQueueSize(final int bulkQueueSize) {
+        this.bulkQueueSize = bulkQueueSize;
+    }
+
+    public long getBulkTargetLatencyMs() {
+        return bulkTargetLatencyMs;
+    }
+
+    public void setBulkTargetLatencyMs(final long bulkTargetLatencyMs) {
+        this.bulkTargetLatencyMs = bulkTargetLatencyMs;
+    }
+
     public boolean isSkipElasticsearchPersistence() {
         return skipElasticsearchPersistence;
     }
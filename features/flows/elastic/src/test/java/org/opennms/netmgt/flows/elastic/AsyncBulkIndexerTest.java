@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.flows.elastic;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.opennms.features.jest.client.bulk.BulkRequest;
+
+public class AsyncBulkIndexerTest {
+
+    private final List<Integer> indexed = new CopyOnWriteArrayList<>();
+
+    private final List<Integer> dropped = new CopyOnWriteArrayList<>();
+
+    private static List<Integer> range(final int from, final int to) {
+        final List<Integer> documents = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            documents.add(i);
+        }
+        return documents;
+    }
+
+    @Test
+    public void canLimitConcurrentRequests() throws Exception {
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final AsyncBulkIndexer<Integer> indexer = new AsyncBulkIndexer<>("test", documents -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            indexed.addAll(documents);
+            return Collections.emptyList();
+        }, (documents, e) -> dropped.addAll(documents), 2, 10, 10, 0, 1);
+
+        // Submitting does not wait for the requests
+        for (int i = 0; i < 5; i++) {
+            indexer.submit(range(i * 10, (i + 1) * 10));
+        }
+        await().atMost(5, TimeUnit.SECONDS).until(indexer::getInFlight, equalTo(2));
+        assertThat(indexer.getQueued(), equalTo(3));
+
+        release.countDown();
+        indexer.close(5, TimeUnit.SECONDS);
+
+        assertThat(maxConcurrent.get(), equalTo(2));
+        assertThat(indexed, containsInAnyOrder(range(0, 50).toArray()));
+        assertThat(dropped.size(), equalTo(0));
+    }
+
+    @Test
+    public void canRetryFailedDocuments() throws Exception {
+        final long[] sleepTime = BulkRequest.SLEEP_TIME;
+        BulkRequest.SLEEP_TIME = new long[]{ 10 };
+        try {
+            final AtomicInteger attempts = new AtomicInteger();
+            final AsyncBulkIndexer<Integer> indexer = new AsyncBulkIndexer<>("test", documents -> {
+                switch (attempts.incrementAndGet()) {
+                    case 1:
+                        throw new IOException("Connection refused");
+                    case 2:
+                        // Odd documents fail
+                        final List<Integer> failed = new ArrayList<>();
+                        for (final Integer document : documents) {
+                            (document % 2 == 0 ? indexed : failed).add(document);
+                        }
+                        return failed;
+                    default:
+                        indexed.addAll(documents);
+                        return Collections.emptyList();
+                }
+            }, (documents, e) -> dropped.addAll(documents), 1, 10, 10, 0, 3);
+
+            indexer.submit(range(0, 10));
+            await().atMost(5, TimeUnit.SECONDS).until(indexed::size, equalTo(10));
+            indexer.close(5, TimeUnit.SECONDS);
+
+            assertThat(attempts.get(), equalTo(3));
+            assertThat(indexed, containsInAnyOrder(range(0, 10).toArray()));
+            assertThat(dropped.size(), equalTo(0));
+        } finally {
+            BulkRequest.SLEEP_TIME = sleepTime;
+        }
+    }
+
+    @Test
+    public void canDropDocumentsAfterLastAttempt() throws Exception {
+        final long[] sleepTime = BulkRequest.SLEEP_TIME;
+        BulkRequest.SLEEP_TIME = new long[]{ 10 };
+        try {
+            final AtomicInteger attempts = new AtomicInteger();
+            final AsyncBulkIndexer<Integer> indexer = new AsyncBulkIndexer<>("test", documents -> {
+                attempts.incrementAndGet();
+                return documents;
+            }, (documents, e) -> dropped.addAll(documents), 1, 10, 10, 0, 2);
+
+            indexer.submit(Arrays.asList(1, 2, 3));
+            await().atMost(5, TimeUnit.SECONDS).until(dropped::size, equalTo(3));
+            indexer.close(5, TimeUnit.SECONDS);
+
+            assertThat(attempts.get(), equalTo(2));
+            assertThat(indexed.size(), equalTo(0));
+        } finally {
+            BulkRequest.SLEEP_TIME = sleepTime;
+        }
+    }
+
+    @Test
+    public void canAdaptBulkSizeToLatency() throws Exception {
+        final AtomicInteger latency = new AtomicInteger(400);
+        final AsyncBulkIndexer<Integer> indexer = new AsyncBulkIndexer<>("test", documents -> {
+            try {
+                Thread.sleep(latency.get());
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return Collections.emptyList();
+        }, (documents, e) -> dropped.addAll(documents), 1, 10, 1000, 100, 1);
+
+        // Slow requests shrink the bulks
+        indexer.submit(range(0, 1000));
+        await().atMost(5, TimeUnit.SECONDS).until(indexer::getBulkSize, lessThan(1000));
+        assertThat(indexer.getBulkSize(), lessThanOrEqualTo(250));
+
+        // Fast requests with full bulks grow them again
+        latency.set(0);
+        final int shrunk = indexer.getBulkSize();
+        indexer.submit(range(0, shrunk));
+        await().atMost(5, TimeUnit.SECONDS).until(indexer::getBulkSize, greaterThan(shrunk));
+
+        // But never beyond the configured maximum
+        for (int i = 0; i < 20; i++) {
+            indexer.submit(range(0, 1000));
+        }
+        indexer.close(5, TimeUnit.SECONDS);
+        assertThat(indexer.getBulkSize(), equalTo(1000));
+    }
+}
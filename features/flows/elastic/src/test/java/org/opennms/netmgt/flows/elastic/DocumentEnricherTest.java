@@ -30,24 +30,38 @@ package org.opennms.netmgt.flows.elastic;
 
 import static com.spotify.hamcrest.pojo.IsPojo.pojo;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
-
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.dao.api.InterfaceToNodeCache;
 import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.dnsresolver.api.DnsResolver;
 import org.opennms.netmgt.flows.api.Flow;
 import org.opennms.netmgt.flows.api.FlowSource;
 import org.opennms.netmgt.flows.classification.ClassificationRequest;
 import org.opennms.netmgt.flows.classification.IpAddr;
 import org.opennms.netmgt.model.OnmsNode;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
 public class DocumentEnricherTest {
@@ -95,6 +109,101 @@ public class DocumentEnricherTest {
 
     }
 
+    @Test
+    public void verifyBatchEnrichment() throws InterruptedException {
+        final MockDocumentEnricherFactory factory = new MockDocumentEnricherFactory();
+        final DocumentEnricher enricher = factory.getEnricher();
+        final NodeDao nodeDao = factory.getNodeDao();
+        final InterfaceToNodeCache interfaceToNodeCache = factory.getInterfaceToNodeCache();
+        final AtomicInteger nodeDaoGetCounter = factory.getNodeDaoGetCounter();
+
+        interfaceToNodeCache.setNodeId("Default", InetAddressUtils.addr("10.0.0.1"), 1);
+        interfaceToNodeCache.setNodeId("Default", InetAddressUtils.addr("10.0.0.2"), 2);
+        nodeDao.save(createOnmsNode(1, "my-requisition"));
+        nodeDao.save(createOnmsNode(2, "my-requisition"));
+        nodeDaoGetCounter.set(0);
+
+        // Many flows sharing a few addresses, with unclassifiable flows in between
+        final List<FlowDocument> documents = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            final FlowDocument document = createFlowDocument(i % 2 == 0 ? "10.0.0.1" : "10.0.0.2", i % 3 == 0 ? "8.8.8.8" : "10.0.0.2");
+            document.setDstPort(i % 4 == 0 ? 443 : 80);
+            if (i % 5 == 0) {
+                document.setProtocol(null);
+            }
+            documents.add(document);
+        }
+        final List<FlowDocument> enriched = enricher.enrich(documents.stream().map(TestFlow::new).collect(Collectors.toList()), new FlowSource("Default", "127.0.0.1", null));
+
+        // Each distinct node is loaded once for the whole batch
+        assertEquals(2, nodeDaoGetCounter.get());
+
+        assertEquals(documents.size(), enriched.size());
+        for (int i = 0; i < enriched.size(); i++) {
+            final FlowDocument document = enriched.get(i);
+            assertEquals(Integer.valueOf(i % 2 == 0 ? 1 : 2), document.getNodeSrc().getNodeId());
+            if (i % 3 == 0) {
+                assertEquals(null, document.getNodeDst());
+                assertEquals(Locality.PUBLIC, document.getDstLocality());
+                assertEquals(Locality.PUBLIC, document.getFlowLocality());
+            } else {
+                assertEquals(Integer.valueOf(2), document.getNodeDst().getNodeId());
+                assertEquals(Locality.PRIVATE, document.getDstLocality());
+                assertEquals(Locality.PRIVATE, document.getFlowLocality());
+            }
+            assertEquals(Locality.PRIVATE, document.getSrcLocality());
+            assertEquals(i % 5 == 0 ? null : i % 4 == 0 ? "https" : "http", document.getApplication());
+            assertEquals(ConversationKeyUtils.getConvoKeyAsJsonString(document), document.getConvoKey());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void verifyBatchHostnameLookup() throws InterruptedException {
+        final DnsResolver dnsResolver = mock(DnsResolver.class);
+        when(dnsResolver.reverseLookupAll(any())).thenReturn(CompletableFuture.completedFuture(ImmutableMap.of(
+                InetAddressUtils.addr("10.0.0.1"), Optional.of("one.example.org"),
+                InetAddressUtils.addr("10.0.0.2"), Optional.empty())));
+        final MockDocumentEnricherFactory factory = new MockDocumentEnricherFactory(0, dnsResolver, 1000);
+        final DocumentEnricher enricher = factory.getEnricher();
+
+        final List<FlowDocument> documents = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            documents.add(createFlowDocument("10.0.0.1", "10.0.0.2"));
+        }
+        // Hostnames resolved by the parser are kept and their addresses are not looked up again
+        final FlowDocument resolved = createFlowDocument("10.0.0.1", "10.0.0.3");
+        resolved.setDstAddrHostname("three.example.org");
+        documents.add(resolved);
+
+        final List<FlowDocument> enriched = enricher.enrich(documents.stream().map(TestFlow::new).collect(Collectors.toList()), new FlowSource("Default", "127.0.0.1", null));
+
+        // The distinct addresses of the whole batch are resolved at once
+        final ArgumentCaptor<Collection<InetAddress>> addresses = ArgumentCaptor.forClass(Collection.class);
+        verify(dnsResolver, times(1)).reverseLookupAll(addresses.capture());
+        assertThat(addresses.getValue(), containsInAnyOrder(InetAddressUtils.addr("10.0.0.1"), InetAddressUtils.addr("10.0.0.2")));
+
+        for (final FlowDocument document : enriched) {
+            assertEquals("one.example.org", document.getSrcAddrHostname());
+        }
+        assertEquals(null, enriched.get(0).getDstAddrHostname());
+        assertEquals("three.example.org", enriched.get(10).getDstAddrHostname());
+    }
+
+    @Test
+    public void verifyBatchHostnameLookupTimeout() throws InterruptedException {
+        final DnsResolver dnsResolver = mock(DnsResolver.class);
+        when(dnsResolver.reverseLookupAll(any())).thenReturn(new CompletableFuture<Map<InetAddress, Optional<String>>>());
+        final MockDocumentEnricherFactory factory = new MockDocumentEnricherFactory(0, dnsResolver, 10);
+        final DocumentEnricher enricher = factory.getEnricher();
+
+        // The batch is enriched without the hostnames that could not be resolved in time
+        final List<FlowDocument> enriched = enricher.enrich(Lists.newArrayList(new TestFlow(createFlowDocument("10.0.0.1", "10.0.0.2"))), new FlowSource("Default", "127.0.0.1", null));
+        assertEquals(1, enriched.size());
+        assertEquals(null, enriched.get(0).getSrcAddrHostname());
+        assertEquals(Locality.PRIVATE, enriched.get(0).getFlowLocality());
+    }
+
     private static FlowDocument createFlowDocument(String sourceIp, String destIp) {
         final FlowDocument document = new FlowDocument();
         document.setTimestamp(System.currentTimeMillis());
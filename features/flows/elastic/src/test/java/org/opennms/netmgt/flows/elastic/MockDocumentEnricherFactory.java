@@ -47,6 +47,7 @@ import org.opennms.netmgt.dao.mock.MockInterfaceToNodeCache;
 import org.opennms.netmgt.dao.mock.MockIpInterfaceDao;
 import org.opennms.netmgt.dao.mock.MockNodeDao;
 import org.opennms.netmgt.dao.mock.MockSessionUtils;
+import org.opennms.netmgt.dnsresolver.api.DnsResolver;
 import org.opennms.netmgt.flows.classification.ClassificationEngine;
 import org.opennms.netmgt.flows.classification.FilterService;
 import org.opennms.netmgt.flows.classification.internal.DefaultClassificationEngine;
@@ -72,6 +73,10 @@ public class MockDocumentEnricherFactory {
     }
 
     public MockDocumentEnricherFactory(final long clockSkewCorrectionThreshold) throws InterruptedException {
+        this(clockSkewCorrectionThreshold, null, 0);
+    }
+
+    public MockDocumentEnricherFactory(final long clockSkewCorrectionThreshold, final DnsResolver dnsResolver, final long dnsLookupTimeoutMs) throws InterruptedException {
         nodeDao = createNodeDao();
         ipInterfaceDao = new MockIpInterfaceDao();
         interfaceToNodeCache = new MockInterfaceToNodeCache();
@@ -92,7 +97,8 @@ public class MockDocumentEnricherFactory {
                     .withName("flows.node")
                     .withMaximumSize(1000)
                     .withExpireAfterWrite(300)
-                    .build(), clockSkewCorrectionThreshold);
+                    .build(), clockSkewCorrectionThreshold,
+                dnsResolver, dnsLookupTimeoutMs);
 
         // Required for mock node dao
         addServiceRegistry(nodeDao);
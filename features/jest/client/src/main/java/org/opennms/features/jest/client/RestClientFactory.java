@@ -282,6 +282,7 @@ public class RestClientFactory {
 
 	public void setHttpCompression(boolean httpCompression) {
 		this.httpCompression = httpCompression;
+		clientConfigBuilder.requestCompressionEnabled(httpCompression);
 	}
 
 	public void setRequestExecutorFactory(RequestExecutorFactory requestExecutorFactory) {
@@ -44,7 +44,7 @@ public class CachePrimer implements InitializingBean, Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(CachePrimer.class);
 
     @Autowired(required=false)
-    private GuavaSearchableResourceMetadataCache resourceMetadataCache;
+    private SearchableResourceMetadataCache resourceMetadataCache;
 
     @Autowired
     private CassandraSession session;
@@ -75,16 +75,25 @@ public class CachePrimer implements InitializingBean, Runnable {
             return;
         }
 
-        if (resourceMetadataCache == null) {
-            LOG.debug("Resource meta-data cache is not of type {}. Skipping cache priming.", GuavaSearchableResourceMetadataCache.class.getCanonicalName());
+        if (!(resourceMetadataCache instanceof GuavaSearchableResourceMetadataCache)
+                && !(resourceMetadataCache instanceof OffHeapSearchableResourceMetadataCache)) {
+            LOG.debug("Resource meta-data cache is not of type {} or {}. Skipping cache priming.",
+                    GuavaSearchableResourceMetadataCache.class.getCanonicalName(),
+                    OffHeapSearchableResourceMetadataCache.class.getCanonicalName());
             return;
         }
 
+        // The off-heap cache restores its entries from disk, so only the resources that were
+        // indexed while we were down need to be added and there is no need to wait for them
+        final boolean restored = resourceMetadataCache instanceof OffHeapSearchableResourceMetadataCache && getSize() > 0;
+
         // Perform the priming on a separate thread, while optionally blocking for a certain amount of time
         final Thread thread = new Thread(this);
         thread.setName("Newts-CachePrimer");
         thread.start();
-        if (blockWhilePrimingMs >= 0) {
+        if (restored) {
+            LOG.info("Cache was restored with {} entries. Priming will continue in the background.", getSize());
+        } else if (blockWhilePrimingMs >= 0) {
             try {
                 if (blockWhilePrimingMs == 0) {
                     LOG.info("Blocking startup while waiting for cache to be fully primed.");
@@ -96,7 +105,7 @@ public class CachePrimer implements InitializingBean, Runnable {
                     LOG.info("Cache is not yet done priming after waiting for {}ms. Current size is: {}." +
                             " The operation will continue in the background.",
                             blockWhilePrimingMs,
-                            resourceMetadataCache.getSize());
+                            getSize());
                 }
             } catch (InterruptedException e) {
                 LOG.info("Thread was interrupted while waiting for the cache to be primed.");
@@ -111,10 +120,17 @@ public class CachePrimer implements InitializingBean, Runnable {
         primer.setFetchMoreThreshold(fetchMoreThreshold);
         LOG.info("Starting to prime the cache.");
         primer.prime(resourceMetadataCache, context);
-        LOG.info("Done priming cache. Cache size: {}", resourceMetadataCache.getSize());
+        LOG.info("Done priming cache. Cache size: {}", getSize());
+    }
+
+    private long getSize() {
+        if (resourceMetadataCache instanceof OffHeapSearchableResourceMetadataCache) {
+            return ((OffHeapSearchableResourceMetadataCache)resourceMetadataCache).getSize();
+        }
+        return ((GuavaSearchableResourceMetadataCache)resourceMetadataCache).getSize();
     }
 
-    public void setResourceMetadataCache(GuavaSearchableResourceMetadataCache resourceMetadataCache) {
+    public void setResourceMetadataCache(SearchableResourceMetadataCache resourceMetadataCache) {
         this.resourceMetadataCache = resourceMetadataCache;
     }
 
@@ -0,0 +1,559 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.newts.support;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.nustaq.serialization.FSTConfiguration;
+import org.opennms.core.utils.MappedBuffers;
+import org.opennms.newts.api.Context;
+import org.opennms.newts.api.Resource;
+import org.opennms.newts.cassandra.search.ResourceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Striped;
+import com.googlecode.concurrenttrees.radix.ConcurrentRadixTree;
+import com.googlecode.concurrenttrees.radix.node.concrete.DefaultCharArrayNodeFactory;
+
+/**
+ * A searchable cache that stores the serialized {@link ResourceMetadata} outside of the heap,
+ * in memory-mapped segment files.
+ *
+ * Records are appended to the newest segment. Updating or deleting an entry appends a new
+ * record and the superseded record is reclaimed when its segment is evicted. Once the total
+ * size of the segments exceeds the configured maximum, the oldest segment is deleted. The
+ * entries that were last written to it are evicted along with it, unless they were read since
+ * they were written, in which case they are copied to the newest segment instead. A copy
+ * starts out as unread, so entries that are not read anymore are eventually evicted.
+ *
+ * Evicted segments are unmapped once the reads that were in progress on them completed.
+ *
+ * Only the keys and the location of their latest record are kept on the heap, in a radix tree
+ * that is also used for searching by prefix. The segment files are left in place when the JVM
+ * stops, and the index is rebuilt from them on startup so that the cache does not need to be
+ * primed from scratch. Entries that were neither written nor read within the restore TTL are
+ * not restored, since the resources may have been deleted in the meantime.
+ *
+ * FST is used for serialization, as in the {@link RedisResourceMetadataCache}.
+ */
+public class OffHeapSearchableResourceMetadataCache implements SearchableResourceMetadataCache, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapSearchableResourceMetadataCache.class);
+
+    private static final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+
+    private static final Joiner m_keyJoiner = Joiner.on(':');
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private static final int MIN_SEGMENTS = 8;
+
+    private static final long MIN_SEGMENT_SIZE = 4096;
+
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    /**
+     * Each record starts with the length of its payload, the CRC of the payload and the time
+     * at which the record was last read, or 0 if it was not read since it was written. The
+     * read time is updated in place, so it is not covered by the CRC.
+     * The payload is made of the record type, the time at which the record was written, the
+     * length of the key, the key and the value.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    private static final int READ_TIME_OFFSET = 8;
+
+    private static final int PAYLOAD_PREFIX_SIZE = 13;
+
+    /**
+     * Limits how often the read time of a record is updated, so that frequently read records
+     * do not keep their pages dirty.
+     */
+    private static final long READ_TIME_RESOLUTION_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final byte PUT = 1;
+
+    private static final byte DELETE = 2;
+
+    private final Path m_directory;
+    private final int m_segmentSize;
+    private final int m_maxSegments;
+    private final long m_restoreTtlMs;
+    private final LongSupplier m_clock;
+
+    private final ConcurrentRadixTree<Long> m_index;
+    private final ConcurrentSkipListMap<Integer, Segment> m_segments = new ConcurrentSkipListMap<>();
+    private final Striped<Lock> m_locks = Striped.lock(256);
+    private final AtomicLong m_size = new AtomicLong();
+
+    private final Meter m_metricReqs;
+    private final Meter m_attributeReqs;
+    private final Meter m_metricMisses;
+    private final Meter m_attributeMisses;
+    private final Meter m_evictions;
+    private final Meter m_relocations;
+
+    @Inject
+    public OffHeapSearchableResourceMetadataCache(@Named("search.resourceMetadata.offHeapDirectory") String directory, @Named("search.resourceMetadata.offHeapMaxSizeMb") Long maxSizeMb,
+                                                  @Named("search.resourceMetadata.offHeapRestoreTtl") Long restoreTtlInSeconds, @Named("newtsMetricRegistry") MetricRegistry registry) {
+        this(Paths.get(directory), maxSizeMb * 1024 * 1024, restoreTtlInSeconds, registry);
+    }
+
+    public OffHeapSearchableResourceMetadataCache(Path directory, long maxSizeInBytes, long restoreTtlInSeconds, MetricRegistry registry) {
+        this(directory, maxSizeInBytes, restoreTtlInSeconds, registry, System::currentTimeMillis);
+    }
+
+    OffHeapSearchableResourceMetadataCache(Path directory, long maxSizeInBytes, long restoreTtlInSeconds, MetricRegistry registry, LongSupplier clock) {
+        m_directory = directory;
+        m_restoreTtlMs = TimeUnit.SECONDS.toMillis(restoreTtlInSeconds);
+        m_clock = clock;
+        m_segmentSize = (int)Math.min(MAX_SEGMENT_SIZE, Math.max(MIN_SEGMENT_SIZE, maxSizeInBytes / MIN_SEGMENTS));
+        m_maxSegments = (int)Math.max(MIN_SEGMENTS, maxSizeInBytes / m_segmentSize);
+        m_index = new ConcurrentRadixTree<>(new DefaultCharArrayNodeFactory());
+
+        m_metricReqs = registry.meter(name("cache", "metric-reqs"));
+        m_metricMisses = registry.meter(name("cache", "metric-misses"));
+        m_attributeReqs = registry.meter(name("cache", "attribute-reqs"));
+        m_attributeMisses = registry.meter(name("cache", "attribute-misses"));
+        m_evictions = registry.meter(name("cache", "evictions"));
+        m_relocations = registry.meter(name("cache", "relocations"));
+
+        LOG.info("Initializing off-heap resource metadata cache in {} ({} segments of {} bytes)", directory, m_maxSegments, m_segmentSize);
+        try {
+            restore();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the resource metadata cache in " + directory, e);
+        }
+        LOG.info("Restored {} entries from {}", m_size.get(), directory);
+
+        registry.register(MetricRegistry.name("cache", "size"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return m_size.get();
+                    }
+                });
+        registry.register(MetricRegistry.name("cache", "max-bytes"),
+                new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return (long)m_maxSegments * m_segmentSize;
+                    }
+                });
+        registry.register(MetricRegistry.name("cache", "segments"),
+                new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return m_segments.size();
+                    }
+                });
+    }
+
+    @Override
+    public Optional<ResourceMetadata> get(Context context, Resource resource) {
+        final ResourceMetadata stored = read(key(context, resource.getId()));
+        if (stored == null) {
+            return Optional.absent();
+        }
+        final ResourceMetadata metadata = new ResourceMetadata(m_metricReqs, m_attributeReqs, m_metricMisses, m_attributeMisses);
+        metadata.merge(stored);
+        return Optional.of(metadata);
+    }
+
+    @Override
+    public void merge(Context context, Resource resource, ResourceMetadata metadata) {
+        final String key = key(context, resource.getId());
+        final Lock lock = m_locks.get(key);
+        lock.lock();
+        try {
+            final ResourceMetadata stored = read(key);
+            if (stored == null) {
+                final ResourceMetadata newMetadata = new ResourceMetadata();
+                newMetadata.merge(metadata);
+                append(key, PUT, conf.asByteArray(newMetadata));
+            } else if (stored.merge(metadata)) {
+                // Only write a new record if the metadata was changed as a result of the merge
+                append(key, PUT, conf.asByteArray(stored));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(final Context context, final Resource resource) {
+        final String key = key(context, resource.getId());
+        final Lock lock = m_locks.get(key);
+        lock.lock();
+        try {
+            if (m_index.getValueForExactKey(key) != null) {
+                append(key, DELETE, new byte[0]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<String> getResourceIdsWithPrefix(Context context, String resourceIdPrefix) {
+        return StreamSupport.stream(m_index.getKeysStartingWith(key(context, resourceIdPrefix)).spliterator(), false)
+                .map(cs -> resourceId(context, cs.toString()))
+                .collect(Collectors.toList());
+    }
+
+    public long getSize() {
+        return m_size.get();
+    }
+
+    /**
+     * Flushes the segments to disk.
+     */
+    @Override
+    public synchronized void close() {
+        for (Segment segment : m_segments.values()) {
+            segment.buffer.force();
+        }
+    }
+
+    private String key(Context context, String resourceId) {
+        return m_keyJoiner.join(context.getId(), resourceId);
+    }
+
+    private String resourceId(Context context, String key) {
+        return key.substring(context.getId().length() + 1);
+    }
+
+    private static long location(int segmentId, int offset) {
+        return ((long)segmentId << 32) | offset;
+    }
+
+    private static int segmentId(long location) {
+        return (int)(location >>> 32);
+    }
+
+    private static int offset(long location) {
+        return (int)location;
+    }
+
+    private ResourceMetadata read(String key) {
+        final Long location = m_index.getValueForExactKey(key);
+        if (location == null) {
+            return null;
+        }
+        final Segment segment = m_segments.get(segmentId(location));
+        if (segment == null || !segment.retain()) {
+            // The segment was evicted after we looked up the location
+            return null;
+        }
+        final byte[] value;
+        try {
+            final int offset = offset(location);
+            final long now = m_clock.getAsLong();
+            if (now - segment.buffer.getLong(offset + READ_TIME_OFFSET) >= READ_TIME_RESOLUTION_MS) {
+                segment.buffer.putLong(offset + READ_TIME_OFFSET, now);
+            }
+            value = readValue(segment, offset);
+        } finally {
+            segment.release();
+        }
+        try {
+            return (ResourceMetadata)conf.asObject(value);
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to deserialize the cached metadata for {}", key, e);
+            return null;
+        }
+    }
+
+    private static byte[] readValue(Segment segment, int offset) {
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset);
+        final int payloadLength = buffer.getInt();
+        buffer.position(offset + HEADER_SIZE + PAYLOAD_PREFIX_SIZE - 4);
+        final int keyLength = buffer.getInt();
+        final byte[] value = new byte[payloadLength - PAYLOAD_PREFIX_SIZE - keyLength];
+        buffer.position(buffer.position() + keyLength);
+        buffer.get(value);
+        return value;
+    }
+
+    /**
+     * Appends a record to the newest segment, points the index to it and evicts the oldest
+     * segments if the cache grew too large as a result.
+     */
+    private synchronized void append(String key, byte type, byte[] value) {
+        if (write(key, type, value)) {
+            evictSegments();
+        }
+    }
+
+    /**
+     * Appends a record to the newest segment, creating a new one if it is full, and points the
+     * index to it.
+     *
+     * @return false if the record could not be written
+     */
+    private boolean write(String key, byte type, byte[] value) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int payloadLength = PAYLOAD_PREFIX_SIZE + keyBytes.length + value.length;
+        final int recordLength = HEADER_SIZE + payloadLength;
+        if (recordLength > m_segmentSize) {
+            LOG.warn("Metadata for {} is larger than the segment size ({} bytes). It will not be cached.", key, m_segmentSize);
+            return false;
+        }
+
+        Segment segment = m_segments.lastEntry().getValue();
+        if (segment.writePosition + recordLength > segment.buffer.capacity()) {
+            try {
+                segment = createSegment(segment.id + 1);
+            } catch (IOException e) {
+                LOG.error("Failed to create a new segment in {}. Metadata for {} will not be cached.", m_directory, key, e);
+                return false;
+            }
+        }
+
+        final int offset = segment.writePosition;
+        final ByteBuffer payload = segment.buffer.duplicate();
+        payload.position(offset + HEADER_SIZE);
+        payload.put(type);
+        payload.putLong(m_clock.getAsLong());
+        payload.putInt(keyBytes.length);
+        payload.put(keyBytes);
+        payload.put(value);
+
+        payload.flip();
+        payload.position(offset + HEADER_SIZE);
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        // Write the length last, a zero length marks the end of the segment
+        segment.buffer.putLong(offset + READ_TIME_OFFSET, 0L);
+        segment.buffer.putInt(offset + 4, (int)crc.getValue());
+        segment.buffer.putInt(offset, payloadLength);
+        segment.writePosition += recordLength;
+
+        if (type == PUT) {
+            if (m_index.put(key, location(segment.id, offset)) == null) {
+                m_size.incrementAndGet();
+            }
+        } else if (m_index.remove(key)) {
+            m_size.decrementAndGet();
+        }
+        return true;
+    }
+
+    private void evictSegments() {
+        while (m_segments.size() > m_maxSegments) {
+            final Segment oldest = m_segments.pollFirstEntry().getValue();
+            // Move the entries whose latest record is in the evicted segment and that were read since it was written
+            // to the newest segment, and remove the others. Moving entries may create new segments, which are evicted
+            // in turn by this loop.
+            scan(oldest, (offset, type, writeTime, readTime, key) -> {
+                final Long location = m_index.getValueForExactKey(key);
+                if (location == null || location != location(oldest.id, offset)) {
+                    return;
+                }
+                if (readTime != 0 && write(key, PUT, readValue(oldest, offset))) {
+                    m_relocations.mark();
+                } else if (m_index.remove(key)) {
+                    m_size.decrementAndGet();
+                    m_evictions.mark();
+                }
+            });
+            // The segment is unmapped and deleted as soon as no reads are in progress on it
+            oldest.release();
+        }
+    }
+
+    private synchronized void restore() throws IOException {
+        Files.createDirectories(m_directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(m_directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                final String fileName = file.getFileName().toString();
+                final int id;
+                try {
+                    id = Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    LOG.warn("Ignoring unexpected file {}", file);
+                    continue;
+                }
+                m_segments.put(id, new Segment(id, file, map(file, Files.size(file))));
+            }
+        }
+
+        // Replay the segments from oldest to newest, so that the index points to the latest record of every key
+        final long now = m_clock.getAsLong();
+        for (Segment segment : m_segments.values()) {
+            segment.writePosition = scan(segment, (offset, type, writeTime, readTime, key) -> {
+                if (type == PUT && now - Math.max(writeTime, readTime) <= m_restoreTtlMs) {
+                    if (m_index.put(key, location(segment.id, offset)) == null) {
+                        m_size.incrementAndGet();
+                    }
+                } else if (m_index.remove(key)) {
+                    m_size.decrementAndGet();
+                }
+            });
+        }
+
+        if (m_segments.isEmpty()) {
+            createSegment(0);
+        }
+        evictSegments();
+    }
+
+    /**
+     * Visits the valid records of the segment.
+     *
+     * @return the position following the last valid record
+     */
+    private static int scan(Segment segment, RecordVisitor visitor) {
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        final CRC32 crc = new CRC32();
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            final int payloadLength = buffer.getInt(offset);
+            if (payloadLength < PAYLOAD_PREFIX_SIZE || offset + HEADER_SIZE + payloadLength > buffer.capacity()) {
+                break;
+            }
+            final ByteBuffer payload = buffer.duplicate();
+            payload.limit(offset + HEADER_SIZE + payloadLength);
+            payload.position(offset + HEADER_SIZE);
+            crc.reset();
+            crc.update(payload);
+            if ((int)crc.getValue() != buffer.getInt(offset + 4)) {
+                LOG.warn("Found a corrupted record at offset {} of {}, ignoring the rest of the segment", offset, segment.path);
+                break;
+            }
+
+            payload.position(offset + HEADER_SIZE);
+            final byte type = payload.get();
+            final long writeTime = payload.getLong();
+            final int keyLength = payload.getInt();
+            final byte[] key = new byte[keyLength];
+            payload.get(key);
+            visitor.visit(offset, type, writeTime, buffer.getLong(offset + READ_TIME_OFFSET), new String(key, StandardCharsets.UTF_8));
+            offset += HEADER_SIZE + payloadLength;
+        }
+        return offset;
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        final Path file = m_directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        final Segment segment = new Segment(id, file, map(file, m_segmentSize));
+        m_segments.put(id, segment);
+        return segment;
+    }
+
+    private static MappedByteBuffer map(Path file, long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            // The mapping remains valid after the channel is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(int offset, byte type, long writeTime, long readTime, String key);
+    }
+
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        // One reference is held by the cache until the segment is evicted, and one by each read in progress
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Segment(int id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return false if the segment was evicted and must not be read anymore
+         */
+        private boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count <= 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                MappedBuffers.unmap(buffer);
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    LOG.warn("Failed to delete evicted segment {}", path, e);
+                }
+            }
+        }
+    }
+}
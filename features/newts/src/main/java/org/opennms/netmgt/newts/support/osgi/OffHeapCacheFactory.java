@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.newts.support.osgi;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import org.opennms.netmgt.newts.support.OffHeapSearchableResourceMetadataCache;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+
+public class OffHeapCacheFactory implements CacheFactory<OffHeapSearchableResourceMetadataCache> {
+
+    private final Path directory;
+    private final long maxSizeMb;
+    private final long restoreTtlInSeconds;
+    private final MetricRegistry metricRegistry;
+
+    public OffHeapCacheFactory(String directory, long maxSizeMb, long restoreTtlInSeconds, MetricRegistry metricRegistry) {
+        // Default to a folder in the Karaf data directory
+        this.directory = Strings.isNullOrEmpty(directory)
+                ? Paths.get(System.getProperty("karaf.data", System.getProperty("java.io.tmpdir")), "newts-cache")
+                : Paths.get(directory);
+        this.maxSizeMb = maxSizeMb;
+        this.restoreTtlInSeconds = restoreTtlInSeconds;
+        this.metricRegistry = Objects.requireNonNull(metricRegistry);
+    }
+
+    @Override
+    public Class<OffHeapSearchableResourceMetadataCache> supportedType() {
+        return OffHeapSearchableResourceMetadataCache.class;
+    }
+
+    @Override
+    public OffHeapSearchableResourceMetadataCache createCache() {
+        return new OffHeapSearchableResourceMetadataCache(directory, maxSizeMb * 1024 * 1024, restoreTtlInSeconds, metricRegistry);
+    }
+}
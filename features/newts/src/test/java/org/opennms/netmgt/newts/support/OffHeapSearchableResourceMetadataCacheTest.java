@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.newts.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opennms.newts.api.Context;
+import org.opennms.newts.api.Resource;
+import org.opennms.newts.cassandra.search.ResourceMetadata;
+
+import com.codahale.metrics.MetricRegistry;
+
+public class OffHeapSearchableResourceMetadataCacheTest {
+
+    @Rule
+    public TemporaryFolder m_tempFolder = new TemporaryFolder();
+
+    private final Context m_context = Context.DEFAULT_CONTEXT;
+
+    private final AtomicLong m_now = new AtomicLong(System.currentTimeMillis());
+
+    @Test
+    public void canMergeGetAndDelete() throws IOException {
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(m_tempFolder.newFolder().toPath(), 1024 * 1024)) {
+            final Resource resource = new Resource("a:b:c");
+            assertFalse(cache.get(m_context, resource).isPresent());
+
+            cache.merge(m_context, resource, new ResourceMetadata().putMetric("m1").putAttribute("k", "v"));
+            cache.merge(m_context, resource, new ResourceMetadata().putMetric("m2"));
+
+            final ResourceMetadata metadata = cache.get(m_context, resource).get();
+            assertTrue(metadata.containsMetric("m1"));
+            assertTrue(metadata.containsMetric("m2"));
+            assertTrue(metadata.containsAttribute("k", "v"));
+            assertEquals(1, cache.getSize());
+
+            cache.delete(m_context, resource);
+            assertFalse(cache.get(m_context, resource).isPresent());
+            assertEquals(0, cache.getSize());
+        }
+    }
+
+    @Test
+    public void canGetEntriesWithPrefix() throws IOException {
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(m_tempFolder.newFolder().toPath(), 1024 * 1024)) {
+            assertTrue(cache.getResourceIdsWithPrefix(m_context, "a").isEmpty());
+
+            cache.merge(m_context, new Resource("a:b:c"), new ResourceMetadata());
+
+            assertTrue(cache.getResourceIdsWithPrefix(m_context, "a").contains("a:b:c"));
+            assertTrue(cache.getResourceIdsWithPrefix(m_context, "a:b").contains("a:b:c"));
+            assertTrue(cache.getResourceIdsWithPrefix(m_context, "a:b:c").contains("a:b:c"));
+            assertTrue(cache.getResourceIdsWithPrefix(m_context, "a:b:c:d").isEmpty());
+        }
+    }
+
+    @Test
+    public void canRestoreEntriesAfterRestart() throws IOException {
+        final Path directory = m_tempFolder.newFolder().toPath();
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(directory, 1024 * 1024)) {
+            for (int i = 0; i < 100; i++) {
+                cache.merge(m_context, new Resource("snmp:" + i + ":eth0"), new ResourceMetadata().putMetric("ifInOctets"));
+            }
+            cache.merge(m_context, new Resource("snmp:0:eth0"), new ResourceMetadata().putMetric("ifOutOctets"));
+            cache.delete(m_context, new Resource("snmp:1:eth0"));
+        }
+
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(directory, 1024 * 1024)) {
+            assertEquals(99, cache.getSize());
+            assertTrue(cache.get(m_context, new Resource("snmp:0:eth0")).get().containsMetric("ifOutOctets"));
+            assertFalse(cache.get(m_context, new Resource("snmp:1:eth0")).isPresent());
+            assertTrue(cache.get(m_context, new Resource("snmp:99:eth0")).get().containsMetric("ifInOctets"));
+            assertEquals(11, cache.getResourceIdsWithPrefix(m_context, "snmp:9").size());
+
+            // New records are appended after the restored ones
+            cache.merge(m_context, new Resource("snmp:100:eth0"), new ResourceMetadata());
+            assertEquals(100, cache.getSize());
+        }
+    }
+
+    @Test
+    public void evictsOldestEntriesWhenFull() throws IOException {
+        final int numResources = 5000;
+        final Path directory = m_tempFolder.newFolder().toPath();
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(directory, 64 * 1024)) {
+            for (int i = 0; i < numResources; i++) {
+                cache.merge(m_context, new Resource("snmp:" + i + ":eth0"), new ResourceMetadata().putMetric("ifInOctets"));
+            }
+            assertTrue(cache.getSize() > 0);
+            assertTrue(cache.getSize() < numResources);
+            // The most recent entries are kept
+            assertTrue(cache.get(m_context, new Resource("snmp:" + (numResources - 1) + ":eth0")).isPresent());
+            assertFalse(cache.get(m_context, new Resource("snmp:0:eth0")).isPresent());
+            assertFalse(cache.getResourceIdsWithPrefix(m_context, "snmp:0:").contains("snmp:0:eth0"));
+        }
+        // The evicted segments are deleted
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() <= 8);
+        }
+    }
+
+    @Test
+    public void keepsEntriesThatAreReadWhenEvicting() throws IOException {
+        final int numResources = 5000;
+        final Resource hot = new Resource("snmp:hot:eth0");
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(m_tempFolder.newFolder().toPath(), 64 * 1024)) {
+            cache.merge(m_context, hot, new ResourceMetadata().putMetric("ifInOctets"));
+            for (int i = 0; i < numResources; i++) {
+                cache.merge(m_context, new Resource("snmp:" + i + ":eth0"), new ResourceMetadata().putMetric("ifInOctets"));
+                if (i % 100 == 0) {
+                    m_now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+                    assertTrue(cache.get(m_context, hot).isPresent());
+                }
+            }
+            assertFalse(cache.get(m_context, new Resource("snmp:0:eth0")).isPresent());
+            assertTrue(cache.get(m_context, hot).get().containsMetric("ifInOctets"));
+            assertTrue(cache.getResourceIdsWithPrefix(m_context, "snmp:hot").contains("snmp:hot:eth0"));
+        }
+    }
+
+    @Test
+    public void doesNotRestoreStaleEntries() throws IOException {
+        final Path directory = m_tempFolder.newFolder().toPath();
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(directory, 1024 * 1024)) {
+            cache.merge(m_context, new Resource("snmp:0:eth0"), new ResourceMetadata());
+            cache.merge(m_context, new Resource("snmp:1:eth0"), new ResourceMetadata());
+            cache.merge(m_context, new Resource("snmp:2:eth0"), new ResourceMetadata());
+
+            m_now.addAndGet(TimeUnit.HOURS.toMillis(2));
+            // Read and write the entries after they were first written
+            assertTrue(cache.get(m_context, new Resource("snmp:1:eth0")).isPresent());
+            cache.merge(m_context, new Resource("snmp:2:eth0"), new ResourceMetadata().putMetric("ifInOctets"));
+        }
+
+        m_now.addAndGet(TimeUnit.HOURS.toMillis(23));
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(directory, 1024 * 1024)) {
+            assertEquals(2, cache.getSize());
+            assertFalse(cache.get(m_context, new Resource("snmp:0:eth0")).isPresent());
+            assertTrue(cache.get(m_context, new Resource("snmp:1:eth0")).isPresent());
+            assertTrue(cache.get(m_context, new Resource("snmp:2:eth0")).get().containsMetric("ifInOctets"));
+        }
+    }
+
+    @Test
+    public void canReadWhileSegmentsAreEvicted() throws Exception {
+        final int numResources = 5000;
+        try (OffHeapSearchableResourceMetadataCache cache = newCache(m_tempFolder.newFolder().toPath(), 64 * 1024)) {
+            final AtomicBoolean done = new AtomicBoolean();
+            final CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+                while (!done.get()) {
+                    for (int i = 0; i < numResources; i += 100) {
+                        cache.get(m_context, new Resource("snmp:" + i + ":eth0"));
+                    }
+                }
+            });
+            for (int i = 0; i < numResources; i++) {
+                cache.merge(m_context, new Resource("snmp:" + i + ":eth0"), new ResourceMetadata().putMetric("ifInOctets"));
+            }
+            done.set(true);
+            reader.get();
+            assertTrue(cache.get(m_context, new Resource("snmp:" + (numResources - 1) + ":eth0")).isPresent());
+        }
+    }
+
+    private OffHeapSearchableResourceMetadataCache newCache(Path directory, long maxSizeInBytes) {
+        return new OffHeapSearchableResourceMetadataCache(directory, maxSizeInBytes, TimeUnit.DAYS.toSeconds(1), new MetricRegistry(), m_now::get);
+    }
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>
+ * A {@link ServiceMonitor} that is able to perform its polls without blocking
+ * the calling thread.
+ * </p>
+ *
+ * <p>
+ * The blocking {@link #poll(MonitoredService, Map)} method must remain
+ * functional, since it is used whenever asynchronous polling is disabled.
+ * Asynchronous polling is enabled by setting the {@value #ASYNC_SYS_PROP}
+ * system property to <code>true</code>.
+ * </p>
+ */
+public interface AsyncServiceMonitor extends ServiceMonitor {
+
+    String ASYNC_SYS_PROP = "org.opennms.netmgt.poller.async";
+
+    /**
+     * Starts a poll of the given service.
+     *
+     * The returned future is typically completed on an I/O thread, so
+     * callers must not perform any blocking work in dependent stages
+     * without switching to an executor of their own.
+     *
+     * @param svc
+     *            Includes details about to the service being monitored.
+     * @param parameters
+     *            Includes the service parameters defined in <EM>poller-configuration.xml</EM> and those
+     *            returned by {@link #getRuntimeAttributes(MonitoredService, Map)}.
+     * @return a future completed with the availability of the service
+     */
+    CompletableFuture<PollStatus> pollAsync(MonitoredService svc, Map<String, Object> parameters);
+
+    /**
+     * @return <code>true</code> if asynchronous polling is enabled for this JVM
+     */
+    static boolean isEnabled() {
+        return Boolean.getBoolean(ASYNC_SYS_PROP);
+    }
+
+}
@@ -30,10 +30,13 @@ package org.opennms.netmgt.poller.client.rpc;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
+import org.opennms.core.rpc.api.RpcCodec;
 import org.opennms.core.rpc.xml.AbstractXmlRpcModule;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.poller.ServiceMonitorRegistry;
@@ -44,6 +47,8 @@ public class PollerClientRpcModule extends AbstractXmlRpcModule<PollerRequestDTO
 
     public static final String RPC_MODULE_ID = "Poller";
 
+    private static final PollerRpcCodec CODEC = new PollerRpcCodec();
+
     @Autowired
     private ServiceMonitorRegistry serviceMonitorRegistry;
 
@@ -68,6 +73,10 @@ public class PollerClientRpcModule extends AbstractXmlRpcModule<PollerRequestDTO
             return CompletableFuture.completedFuture(new PollerResponseDTO(PollStatus.unknown("No monitor found with class name '" + className + "'.")));
         }
 
+        if (monitor instanceof AsyncServiceMonitor && AsyncServiceMonitor.isEnabled()) {
+            return pollAsync((AsyncServiceMonitor)monitor, request);
+        }
+
         return CompletableFuture.supplyAsync(new Supplier<PollerResponseDTO>() {
             @Override
             public PollerResponseDTO get() {
@@ -83,6 +92,24 @@ public class PollerClientRpcModule extends AbstractXmlRpcModule<PollerRequestDTO
         }, executor);
     }
 
+    private CompletableFuture<PollerResponseDTO> pollAsync(AsyncServiceMonitor monitor, PollerRequestDTO request) {
+        CompletableFuture<PollStatus> future;
+        try {
+            future = monitor.pollAsync(request, request.getMonitorParameters());
+        } catch (RuntimeException e) {
+            future = CompletableFuture.completedFuture(PollStatus.unknown(e.getMessage()));
+        }
+        // Move off the monitor's I/O threads before handing back the response, since
+        // the dependent stages may persist the results
+        return future.handleAsync((pollStatus, ex) -> {
+            if (ex != null) {
+                final Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                pollStatus = PollStatus.unknown(cause.getMessage());
+            }
+            return new PollerResponseDTO(pollStatus);
+        }, executor);
+    }
+
     public void setServiceMonitorRegistry(ServiceMonitorRegistry serviceMonitorRegistry) {
         this.serviceMonitorRegistry = serviceMonitorRegistry;
     }
@@ -96,4 +123,9 @@ public class PollerClientRpcModule extends AbstractXmlRpcModule<PollerRequestDTO
         return new PollerResponseDTO(ex);
     }
 
+    @Override
+    public RpcCodec<PollerRequestDTO, PollerResponseDTO> getCodec() {
+        return CODEC;
+    }
+
 }
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.client.rpc;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.opennms.core.rpc.api.AbstractBinaryRpcCodec;
+import org.opennms.netmgt.poller.DeviceConfig;
+import org.opennms.netmgt.poller.PollStatus;
+
+/**
+ * Binary codec for the poller requests and responses.
+ *
+ * Requests with attributes that hold objects, rather than plain strings, are left
+ * to the XML representation.
+ */
+public class PollerRpcCodec extends AbstractBinaryRpcCodec<PollerRequestDTO, PollerResponseDTO> {
+
+    @Override
+    protected boolean canEncodeRequest(PollerRequestDTO request) {
+        return request.getAttributes().stream().allMatch(attribute -> attribute.getContents() == null);
+    }
+
+    @Override
+    protected void writeRequest(PollerRequestDTO request, DataOutput out) throws IOException {
+        writeString(request.getLocation(), out);
+        writeString(request.getSystemId(), out);
+        writeString(request.getClassName(), out);
+        writeString(request.getServiceName(), out);
+        writeAddress(request.getAddress(), out);
+        out.writeInt(request.getNodeId());
+        writeString(request.getNodeLabel(), out);
+        writeString(request.getNodeLocation(), out);
+        writeCollection(request.getAttributes(), (attribute, o) -> {
+            writeString(attribute.getKey(), o);
+            writeString(attribute.getValue(), o);
+        }, out);
+    }
+
+    @Override
+    protected PollerRequestDTO readRequest(DataInput in) throws IOException {
+        final PollerRequestDTO request = new PollerRequestDTO();
+        request.setLocation(readString(in));
+        request.setSystemId(readString(in));
+        request.setClassName(readString(in));
+        request.setServiceName(readString(in));
+        request.setAddress(readAddress(in));
+        request.setNodeId(in.readInt());
+        request.setNodeLabel(readString(in));
+        request.setNodeLocation(readString(in));
+        readCollection(request.getAttributes(), i -> new PollerAttributeDTO(readString(i), readString(i)), in);
+        return request;
+    }
+
+    @Override
+    protected void writeResponse(PollerResponseDTO response, DataOutput out) throws IOException {
+        writeString(response.getErrorMessage(), out);
+        final PollStatus pollStatus = response.getPollStatus();
+        out.writeBoolean(pollStatus != null);
+        if (pollStatus == null) {
+            return;
+        }
+        out.writeInt(pollStatus.getStatusCode());
+        writeString(pollStatus.getReason(), out);
+        writeDate(pollStatus.getTimestamp(), out);
+        final Map<String, Number> properties = pollStatus.getProperties();
+        out.writeInt(properties.size());
+        for (Map.Entry<String, Number> property : properties.entrySet()) {
+            writeString(property.getKey(), out);
+            writeNumber(property.getValue(), out);
+        }
+        final DeviceConfig deviceConfig = pollStatus.getDeviceConfig();
+        out.writeBoolean(deviceConfig != null);
+        if (deviceConfig != null) {
+            writeBytes(deviceConfig.getContent(), out);
+            writeString(deviceConfig.getFilename(), out);
+        }
+    }
+
+    @Override
+    protected PollerResponseDTO readResponse(DataInput in) throws IOException {
+        final PollerResponseDTO response = new PollerResponseDTO();
+        response.setErrorMessage(readString(in));
+        if (!in.readBoolean()) {
+            return response;
+        }
+        final PollStatus pollStatus = PollStatus.get(in.readInt(), readString(in));
+        pollStatus.setTimestamp(readDate(in));
+        final int numProperties = in.readInt();
+        final Map<String, Number> properties = new LinkedHashMap<>();
+        for (int i = 0; i < numProperties; i++) {
+            properties.put(readString(in), readNumber(in));
+        }
+        pollStatus.setProperties(properties);
+        if (in.readBoolean()) {
+            pollStatus.setDeviceConfig(new DeviceConfig(readBytes(in), readString(in)));
+        }
+        response.setPollStatus(pollStatus);
+        return response;
+    }
+}
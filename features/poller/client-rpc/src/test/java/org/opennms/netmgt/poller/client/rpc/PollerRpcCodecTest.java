@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.client.rpc;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.junit.Test;
+import org.opennms.core.rpc.api.RpcCodecs;
+import org.opennms.netmgt.poller.DeviceConfig;
+import org.opennms.netmgt.poller.PollStatus;
+
+public class PollerRpcCodecTest {
+
+    private final PollerClientRpcModule module = new PollerClientRpcModule();
+
+    @Test
+    public void canRoundTripRequest() throws Exception {
+        final PollerRequestDTO request = getPollerRequest();
+        request.addAttribute("port", "18980");
+        request.setSystemId("minion-1");
+        request.setServiceName("ICMP");
+        request.setNodeId(42);
+        request.setNodeLabel("node");
+        request.setNodeLocation("MINION");
+        request.addAttribute("retry", "2");
+
+        final byte[] bytes = RpcCodecs.marshalRequest(module, request, true);
+        assertTrue(RpcCodecs.isBinary(bytes));
+        assertEquals(request, RpcCodecs.unmarshalRequest(module, bytes));
+    }
+
+    @Test
+    public void fallsBackToXmlForRequestsWithObjectAttributes() throws Exception {
+        final PollerRequestDTO request = getPollerRequest();
+        request.addAttribute("nested", new PollerAttributeDTO("x", "y"));
+
+        final byte[] bytes = RpcCodecs.marshalRequest(module, request, true);
+        assertFalse(RpcCodecs.isBinary(bytes));
+        assertEquals(module.marshalRequest(request), new String(bytes, StandardCharsets.UTF_8));
+        assertEquals(request, RpcCodecs.unmarshalRequest(module, bytes));
+    }
+
+    @Test
+    public void canRoundTripResponse() throws Exception {
+        final PollStatus status = PollStatus.available();
+        status.setTimestamp(new Date(0));
+        status.setProperty("ping1", BigDecimal.valueOf(55));
+        status.setProperty("median", BigDecimal.valueOf(98));
+        final PollerResponseDTO response = new PollerResponseDTO(status);
+        response.getPollStatus().setResponseTime(12.5d);
+        response.getPollStatus().setProperty("loss", 3L);
+        response.getPollStatus().setDeviceConfig(new DeviceConfig(new byte[]{1, 2, 3}, "running.cfg"));
+
+        final PollerResponseDTO decoded = RpcCodecs.unmarshalResponse(module, RpcCodecs.marshalResponse(module, response, true));
+        assertThat(decoded.getErrorMessage(), nullValue());
+        final PollStatus pollStatus = decoded.getPollStatus();
+        assertThat(pollStatus.getStatusCode(), equalTo(PollStatus.SERVICE_AVAILABLE));
+        assertThat(pollStatus.getTimestamp(), equalTo(new Date(0)));
+        assertThat(pollStatus.getProperties().keySet(), contains("ping1", "median", "response-time", "loss"));
+        assertThat(pollStatus.getProperty("median"), equalTo(BigDecimal.valueOf(98)));
+        assertThat(pollStatus.getResponseTime(), equalTo(12.5d));
+        assertThat(pollStatus.getProperty("loss"), equalTo(3L));
+        assertArrayEquals(new byte[]{1, 2, 3}, pollStatus.getDeviceConfig().getContent());
+        assertThat(pollStatus.getDeviceConfig().getFilename(), equalTo("running.cfg"));
+    }
+
+    @Test
+    public void canRoundTripErrorResponse() throws Exception {
+        final PollerResponseDTO response = module.createResponseWithException(new IllegalStateException("oops"));
+
+        final PollerResponseDTO decoded = RpcCodecs.unmarshalResponse(module, RpcCodecs.marshalResponse(module, response, true));
+        assertEquals(response, decoded);
+        assertThat(decoded.getPollStatus(), nullValue());
+    }
+
+    @Test
+    public void canUnmarshalXml() throws Exception {
+        final PollerResponseDTO response = new PollerResponseDTO(PollStatus.unknown("don't ask me"));
+
+        final byte[] bytes = RpcCodecs.marshalResponse(module, response, false);
+        assertFalse(RpcCodecs.isBinary(bytes));
+        final PollerResponseDTO decoded = RpcCodecs.unmarshalResponse(module, bytes);
+        assertThat(decoded.getPollStatus().getReason(), equalTo("don't ask me"));
+    }
+
+    private static PollerRequestDTO getPollerRequest() throws Exception {
+        final PollerRequestDTO dto = new PollerRequestDTO();
+        dto.setLocation("MINION");
+        dto.setClassName("org.opennms.netmgt.poller.monitors.IcmpMonitor");
+        dto.setAddress(InetAddress.getByName("127.0.0.1"));
+        dto.setNodeId(42);
+        return dto;
+    }
+}
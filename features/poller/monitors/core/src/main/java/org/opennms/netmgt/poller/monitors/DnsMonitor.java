@@ -34,15 +34,20 @@ import java.net.ConnectException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
+import java.net.PortUnreachableException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport.Attempt;
 import org.opennms.netmgt.poller.support.AbstractServiceMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,8 +57,17 @@ import org.xbill.DNS.Name;
 import org.xbill.DNS.Record;
 import org.xbill.DNS.Section;
 import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.Type;
 
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+
 /**
  * <P>
  * This class is designed to be used by the service poller framework to test the
@@ -65,7 +79,7 @@ import org.xbill.DNS.Type;
  * @author <A HREF="mailto:tarus@opennms.org">Tarus Balog </A>
  * @author <A HREF="http://www.opennms.org/">OpenNMS </A>
  */
-final public class DnsMonitor extends AbstractServiceMonitor {
+final public class DnsMonitor extends AbstractServiceMonitor implements AsyncServiceMonitor {
     private static final Logger LOG = LoggerFactory.getLogger(DnsMonitor.class);
     /**
      * Default DNS port.
@@ -124,22 +138,11 @@ final public class DnsMonitor extends AbstractServiceMonitor {
 
         // Host to lookup?
         //
-        String lookup = ParameterMap.getKeyedString(parameters, "lookup", null);
-        if (lookup == null || lookup.length() == 0) {
-            // Get hostname of local machine for future DNS lookups
-        	lookup = InetAddressUtils.getLocalHostAddressAsString();
-        	if (lookup == null) {
-        		throw new UnsupportedOperationException("Unable to look up local host address.");
-        	}
-        }
+        String lookup = determineLookup(parameters);
 
         // What do we consider fatal?
         //
-        final List<Integer> fatalCodes = new ArrayList<>();
-        for (final int code : ParameterMap.getKeyedIntegerArray(parameters, "fatal-response-codes", DEFAULT_FATAL_RESP_CODES)) {
-            fatalCodes.add(code);
-        }
-        
+        final List<Integer> fatalCodes = determineFatalCodes(parameters);
 
 	int minAnswers = ParameterMap.getKeyedInteger(parameters, "min-answers", DEFAULT_MIN_ANSWERS);
 	int maxAnswers = ParameterMap.getKeyedInteger(parameters, "max-answers", DEFAULT_MAX_ANSWERS);
@@ -164,6 +167,136 @@ final public class DnsMonitor extends AbstractServiceMonitor {
         return serviceStatus;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Sends the same query as {@link #poll(MonitoredService, Map)} over UDP, without
+     * blocking while waiting for the response.
+     */
+    @Override
+    public CompletableFuture<PollStatus> pollAsync(final MonitoredService svc, final Map<String, Object> parameters) {
+        final TimeoutTracker timeoutTracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+        final int port = ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT);
+        final String lookup = determineLookup(parameters);
+        final List<Integer> fatalCodes = determineFatalCodes(parameters);
+        final int minAnswers = ParameterMap.getKeyedInteger(parameters, "min-answers", DEFAULT_MIN_ANSWERS);
+        final int maxAnswers = ParameterMap.getKeyedInteger(parameters, "max-answers", DEFAULT_MAX_ANSWERS);
+        final InetAddress address = svc.getAddress();
+
+        final Message query;
+        try {
+            query = Message.newQuery(Record.newRecord(Name.fromString(lookup, Name.root), Type.A, DClass.IN));
+        } catch (final TextParseException e) {
+            final String reason = "IOException while polling address: " + InetAddressUtils.str(address) + " " + e.getMessage();
+            LOG.debug(reason, e);
+            return CompletableFuture.completedFuture(PollStatus.unavailable(reason));
+        }
+
+        final String reason = "Never received valid DNS response for address: " + InetAddressUtils.str(address);
+        return AsyncMonitorSupport.retry(parameters, timeoutTracker, PollStatus.unavailable(reason),
+                tracker -> attemptAsync(tracker, new InetSocketAddress(address, port), query, fatalCodes, minAnswers, maxAnswers))
+                .whenComplete((status, ex) -> {
+                    if (status != null && reason.equals(status.getReason())) {
+                        LOG.debug(reason);
+                    }
+                });
+    }
+
+    private CompletableFuture<Attempt> attemptAsync(final TimeoutTracker timeoutTracker, final InetSocketAddress server, final Message query,
+                                                    final List<Integer> fatalCodes, final int minAnswers, final int maxAnswers) {
+        final String addr = InetAddressUtils.str(server.getAddress());
+        final CompletableFuture<Attempt> attempt = new CompletableFuture<>();
+        // Same granularity as the timeout of the resolver used by the blocking poll
+        final double timeout = timeoutTracker.getSoTimeout() / 1000d;
+        final long timeoutMs = (timeout < 1 ? 1 : (int) timeout) * 1000L;
+
+        final ChannelFuture bindFuture = AsyncMonitorSupport.bindDatagram(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(AsyncMonitorSupport.newReadTimeoutHandler(timeoutMs), new SimpleChannelInboundHandler<DatagramPacket>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket packet) {
+                        if (attempt.isDone() || !server.equals(packet.sender())) {
+                            return;
+                        }
+                        final byte[] bytes = new byte[packet.content().readableBytes()];
+                        packet.content().readBytes(bytes);
+                        final Message response;
+                        try {
+                            response = new Message(bytes);
+                        } catch (final IOException e) {
+                            final String reason = "IOException while polling address: " + addr + " " + e.getMessage();
+                            LOG.debug(reason, e);
+                            attempt.complete(Attempt.done(PollStatus.unavailable(reason)));
+                            return;
+                        }
+                        if (response.getHeader().getID() != query.getHeader().getID()) {
+                            // Stale or unrelated response, keep waiting like the resolver does
+                            return;
+                        }
+                        attempt.complete(Attempt.done(checkResponse(response, timeoutTracker.elapsedTimeInMillis(), addr, fatalCodes, minAnswers, maxAnswers)));
+                    }
+
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                        attempt.complete(onAsyncFailure(addr, cause));
+                    }
+                });
+            }
+        });
+
+        bindFuture.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                attempt.complete(onAsyncFailure(addr, f.cause()));
+                return;
+            }
+            f.channel().writeAndFlush(new DatagramPacket(Unpooled.wrappedBuffer(query.toWire()), server)).addListener((ChannelFuture w) -> {
+                if (!w.isSuccess()) {
+                    attempt.complete(onAsyncFailure(addr, w.cause()));
+                }
+            });
+        });
+        attempt.whenComplete((a, ex) -> bindFuture.channel().close());
+        return attempt;
+    }
+
+    private static Attempt onAsyncFailure(final String addr, final Throwable t) {
+        final Throwable e = AsyncMonitorSupport.unwrap(t);
+        final String reason;
+        if (AsyncMonitorSupport.isTimeout(e)) {
+            // No response received, retry without marking the poll failed
+            return Attempt.retry(PollStatus.unavailable("Never received valid DNS response for address: " + addr));
+        } else if (e instanceof NoRouteToHostException) {
+            reason = "No route to host exception for address: " + addr;
+        } else if (e instanceof ConnectException || e instanceof PortUnreachableException) {
+            reason = "Connection exception for address: " + addr;
+        } else {
+            reason = "IOException while polling address: " + addr + " " + e.getMessage();
+        }
+        LOG.debug(reason, e);
+        return Attempt.done(PollStatus.unavailable(reason));
+    }
+
+    private static String determineLookup(final Map<String, Object> parameters) {
+        String lookup = ParameterMap.getKeyedString(parameters, "lookup", null);
+        if (lookup == null || lookup.length() == 0) {
+            // Get hostname of local machine for future DNS lookups
+            lookup = InetAddressUtils.getLocalHostAddressAsString();
+            if (lookup == null) {
+                throw new UnsupportedOperationException("Unable to look up local host address.");
+            }
+        }
+        return lookup;
+    }
+
+    private static List<Integer> determineFatalCodes(final Map<String, Object> parameters) {
+        final List<Integer> fatalCodes = new ArrayList<>();
+        for (final int code : ParameterMap.getKeyedIntegerArray(parameters, "fatal-response-codes", DEFAULT_FATAL_RESP_CODES)) {
+            fatalCodes.add(code);
+        }
+        return fatalCodes;
+    }
+
     private PollStatus pollDNS(final TimeoutTracker timeoutTracker, final int port, final InetAddress address, final String lookup, final List<Integer> fatalCodes, int minAnswers, int maxAnswers) {
     	final String addr = InetAddressUtils.str(address);
         for (timeoutTracker.reset(); timeoutTracker.shouldRetry(); timeoutTracker.nextAttempt()) {
@@ -176,42 +309,12 @@ final public class DnsMonitor extends AbstractServiceMonitor {
                 resolver.setTimeout((timeout < 1 ? 1 : (int) timeout));
                 final Record question = Record.newRecord(name, Type.A, DClass.IN);
                 final Message query = Message.newQuery(question);
-                PollStatus status;
 
                 timeoutTracker.startAttempt();
                 final Message response = resolver.send(query);
                 double responseTime = timeoutTracker.elapsedTimeInMillis();
 
-                final Integer rcode = response.getHeader().getRcode();
-                LOG.debug("received response code: {}", rcode);
-
-                if (fatalCodes.contains(rcode)) {
-                    status = PollStatus.unavailable("Received an invalid DNS response for address: " + addr);
-                    LOG.debug(status.getReason());
-                    return status;
-                } else if (minAnswers != DEFAULT_MIN_ANSWERS || maxAnswers != DEFAULT_MAX_ANSWERS) {
-                    int numAnswers = response.getSectionArray(Section.ANSWER).length;
-                    boolean tooFewAnswers = numAnswers < minAnswers;
-                    boolean tooManyAnswers = numAnswers > maxAnswers;
-                    if (tooFewAnswers) {
-                        status = PollStatus.unavailable("Response contained only " + numAnswers + " answer(s), but at least " + minAnswers + " answers(s) are needed.");
-                        LOG.warn(status.getReason());
-                        return status;
-                    }
-                    if (tooManyAnswers) {
-                        status = PollStatus.unavailable("Response contained " + numAnswers + " answer(s), but " + maxAnswers + " or fewer answers(s) are needed.");
-                        LOG.warn(status.getReason());
-                        return status;
-                    }
-                    status = PollStatus.up(responseTime);
-                    LOG.debug("valid DNS response received with {} answer(s), responseTime = {}ms", numAnswers, responseTime);
-                    return status;
-                } else {
-                    status = PollStatus.up(responseTime);
-                    LOG.debug("valid DNS response received, responseTime = {}ms", responseTime);
-                    return status;
-                }
-
+                return checkResponse(response, responseTime, addr, fatalCodes, minAnswers, maxAnswers);
             } catch (final InterruptedIOException e) {
                 // No response received, retry without marking the poll failed. If we get this condition over and over until 
                 // the retries are exhausted, it will leave serviceStatus null and we'll get the log message at the bottom 
@@ -235,5 +338,38 @@ final public class DnsMonitor extends AbstractServiceMonitor {
         return PollStatus.unavailable(reason);
     }
 
+    private static PollStatus checkResponse(final Message response, final double responseTime, final String addr, final List<Integer> fatalCodes, int minAnswers, int maxAnswers) {
+        PollStatus status;
+        final Integer rcode = response.getHeader().getRcode();
+        LOG.debug("received response code: {}", rcode);
+
+        if (fatalCodes.contains(rcode)) {
+            status = PollStatus.unavailable("Received an invalid DNS response for address: " + addr);
+            LOG.debug(status.getReason());
+            return status;
+        } else if (minAnswers != DEFAULT_MIN_ANSWERS || maxAnswers != DEFAULT_MAX_ANSWERS) {
+            int numAnswers = response.getSectionArray(Section.ANSWER).length;
+            boolean tooFewAnswers = numAnswers < minAnswers;
+            boolean tooManyAnswers = numAnswers > maxAnswers;
+            if (tooFewAnswers) {
+                status = PollStatus.unavailable("Response contained only " + numAnswers + " answer(s), but at least " + minAnswers + " answers(s) are needed.");
+                LOG.warn(status.getReason());
+                return status;
+            }
+            if (tooManyAnswers) {
+                status = PollStatus.unavailable("Response contained " + numAnswers + " answer(s), but " + maxAnswers + " or fewer answers(s) are needed.");
+                LOG.warn(status.getReason());
+                return status;
+            }
+            status = PollStatus.up(responseTime);
+            LOG.debug("valid DNS response received with {} answer(s), responseTime = {}ms", numAnswers, responseTime);
+            return status;
+        } else {
+            status = PollStatus.up(responseTime);
+            LOG.debug("valid DNS response received, responseTime = {}ms", responseTime);
+            return status;
+        }
+    }
+
 
 }
@@ -40,9 +40,12 @@ import java.net.NoRouteToHostException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
@@ -53,12 +56,24 @@ import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.core.utils.SocketWrapper;
 import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport.Attempt;
 import org.opennms.netmgt.poller.monitors.support.ParameterSubstitutingMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.string.StringDecoder;
+import io.netty.handler.ssl.SslHandler;
+
 /**
  * This class is designed to be used by the service poller framework to test the availability
  * of the HTTP service on remote interfaces. The class implements the ServiceMonitor interface
@@ -69,7 +84,7 @@ import org.slf4j.LoggerFactory;
  * @author <A HREF="mailto:mike@opennms.org">Mike </A>
  * @author <a href="mailto:david@opennms.org">David Hustace</a>
  */
-public class HttpMonitor extends ParameterSubstitutingMonitor {
+public class HttpMonitor extends ParameterSubstitutingMonitor implements AsyncServiceMonitor {
     
     public static final Logger LOG = LoggerFactory.getLogger(HttpMonitor.class);
     
@@ -207,7 +222,185 @@ public class HttpMonitor extends ParameterSubstitutingMonitor {
 
     }
 
-    private void logResponseTimes(Double responseTime, String line) {
+    /**
+     * {@inheritDoc}
+     *
+     * Performs the same checks as {@link #poll(MonitoredService, Map)}, trying the
+     * ports in turn, but sends the request and reads the response without blocking.
+     */
+    @Override
+    public CompletableFuture<PollStatus> pollAsync(final MonitoredService svc, final Map<String, Object> parameters) {
+        final InetAddress addr = svc.getAddress();
+        final HttpMonitorClient httpClient = new HttpMonitorClient(svc.getNodeLabel(), addr, new TreeMap<String, Object>(parameters));
+        return pollPortAsync(svc, parameters, httpClient, 0, new AtomicBoolean(false))
+                .thenApply(v -> httpClient.determinePollStatusResponse());
+    }
+
+    private CompletableFuture<Void> pollPortAsync(final MonitoredService svc, final Map<String, Object> parameters, final HttpMonitorClient httpClient,
+                                                  final int portIndex, final AtomicBoolean noRoute) {
+        final int[] ports = determinePorts(httpClient.getParameters());
+        if (portIndex >= ports.length || noRoute.get() || httpClient.getPollStatus() == PollStatus.SERVICE_AVAILABLE) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final int currentPort = ports[portIndex];
+        final InetAddress addr = svc.getAddress();
+        httpClient.setTimeoutTracker(new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT));
+        LOG.debug("Port = {}, Address = {}, {}", currentPort, addr, httpClient.getTimeoutTracker());
+
+        httpClient.setCurrentPort(currentPort);
+        final String serviceInfo = new StringBuilder(addr.toString())
+        .append(":").append(svc.getSvcName()).append(":").append(currentPort)
+        .toString();
+
+        return AsyncMonitorSupport.retry(parameters, httpClient.getTimeoutTracker(), PollStatus.unavailable(),
+                tracker -> attemptAsync(httpClient, serviceInfo, noRoute))
+                .thenCompose(status -> pollPortAsync(svc, parameters, httpClient, portIndex + 1, noRoute));
+    }
+
+    private CompletableFuture<Attempt> attemptAsync(final HttpMonitorClient httpClient, final String serviceInfo, final AtomicBoolean noRoute) {
+        final CompletableFuture<Attempt> attempt = new CompletableFuture<>();
+        final TimeoutTracker tracker = httpClient.getTimeoutTracker();
+        final InetAddress addr = httpClient.m_addr;
+        final int port = httpClient.getCurrentPort();
+
+        final ChannelFuture connectFuture = AsyncMonitorSupport.connect(addr, port, tracker.getConnectionTimeout(), new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                final SslHandler sslHandler = getSslHandler(addr, port, tracker);
+                if (sslHandler != null) {
+                    ch.pipeline().addLast(sslHandler);
+                }
+                ch.pipeline().addLast(AsyncMonitorSupport.newReadTimeoutHandler(tracker.getSoTimeout()),
+                        AsyncMonitorSupport.newLineDecoder(),
+                        new StringDecoder(Charset.defaultCharset()),
+                        new AsyncResponseHandler(httpClient, serviceInfo, noRoute, attempt));
+            }
+        });
+
+        connectFuture.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                attempt.complete(onAsyncFailure(httpClient, serviceInfo, noRoute, f.cause()));
+                return;
+            }
+            LOG.debug("HttpMonitor: connected to host: {} on port: {}", addr, port);
+            httpClient.setPollStatus(PollStatus.SERVICE_UNRESPONSIVE);
+            httpClient.logHttpCommand();
+            f.channel().writeAndFlush(Unpooled.wrappedBuffer(httpClient.m_httpCmd.getBytes())).addListener((ChannelFuture w) -> {
+                if (!w.isSuccess()) {
+                    attempt.complete(onAsyncFailure(httpClient, serviceInfo, noRoute, w.cause()));
+                }
+            });
+        });
+        attempt.whenComplete((a, ex) -> connectFuture.channel().close());
+        return attempt;
+    }
+
+    private static Attempt onAsyncFailure(final HttpMonitorClient httpClient, final String serviceInfo, final AtomicBoolean noRoute, final Throwable t) {
+        final Throwable e = AsyncMonitorSupport.unwrap(t);
+        if (e instanceof NoRouteToHostException) {
+            LOG.warn("checkStatus: No route to host exception while polling {}", serviceInfo, e);
+            noRoute.set(true);
+            httpClient.setReason("No route to host exception");
+            return Attempt.done(PollStatus.get(httpClient.getPollStatus(), httpClient.getReason()));
+        } else if (AsyncMonitorSupport.isTimeout(e)) {
+            LOG.info("checkStatus: HTTP socket connection for service {} timed out with {}", serviceInfo, httpClient.getTimeoutTracker());
+            httpClient.setReason("HTTP connection timeout");
+        } else if (e instanceof ConnectException) {
+            LOG.warn("Connection exception for {}", serviceInfo, e);
+            httpClient.setReason("HTTP connection exception on port: "+httpClient.getCurrentPort()+": "+e.getMessage());
+        } else if (e instanceof IOException) {
+            String exceptionClass = e.getClass().getSimpleName();
+            LOG.warn("{} while polling {}", exceptionClass, serviceInfo, e);
+            httpClient.setReason("IOException while polling address: "+httpClient.m_addr+": "+e.getMessage());
+        } else {
+            String exceptionClass = e.getClass().getSimpleName();
+            LOG.warn("Unexpected {} while polling {}", exceptionClass, serviceInfo, e);
+            httpClient.setReason("Unexpected exception while polling address: "+httpClient.m_addr+": "+e.getMessage());
+        }
+        return Attempt.retry(PollStatus.get(httpClient.getPollStatus(), httpClient.getReason()));
+    }
+
+    /**
+     * Secures the connections made by {@link #pollAsync(MonitoredService, Map)}.
+     *
+     * @return the handler to add to the channel, or <code>null</code> for plain HTTP
+     */
+    protected SslHandler getSslHandler(final InetAddress addr, final int port, final TimeoutTracker tracker) {
+        return null;
+    }
+
+    /**
+     * Feeds the lines of the response to the client, in the same order as the blocking poll reads them.
+     */
+    private static final class AsyncResponseHandler extends SimpleChannelInboundHandler<String> {
+        private final HttpMonitorClient m_httpClient;
+        private final String m_serviceInfo;
+        private final AtomicBoolean m_noRoute;
+        private final CompletableFuture<Attempt> m_attempt;
+        private boolean m_statusLineRead = false;
+        private boolean m_bodyLineRead = false;
+
+        private AsyncResponseHandler(HttpMonitorClient httpClient, String serviceInfo, AtomicBoolean noRoute, CompletableFuture<Attempt> attempt) {
+            m_httpClient = httpClient;
+            m_serviceInfo = serviceInfo;
+            m_noRoute = noRoute;
+            m_attempt = attempt;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, String line) {
+            if (m_attempt.isDone()) {
+                return;
+            }
+            if (!m_statusLineRead) {
+                m_statusLineRead = true;
+                m_httpClient.onStatusLine(line);
+                m_httpClient.setResponseTime(m_httpClient.getTimeoutTracker().elapsedTimeInMillis());
+                logResponseTimes(m_httpClient.getResponseTime(), m_httpClient.getCurrentLine());
+
+                if (m_httpClient.getPollStatus() == PollStatus.SERVICE_AVAILABLE && StringUtils.isNotBlank(m_httpClient.getResponseText())) {
+                    // Keep reading until the text is found or the stream ends
+                    m_httpClient.setPollStatus(PollStatus.SERVICE_UNAVAILABLE);
+                } else {
+                    complete();
+                }
+            } else {
+                m_bodyLineRead = true;
+                m_httpClient.onLineMatching(line);
+                if (m_httpClient.isResponseTextFound()) {
+                    complete();
+                }
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (m_attempt.isDone()) {
+                return;
+            }
+            if (m_bodyLineRead && !m_httpClient.isResponseTextFound()) {
+                String message = "Matching text: ["+m_httpClient.getResponseText()+"] not found in body of HTTP response for " + m_serviceInfo;
+                LOG.debug(message);
+                m_httpClient.setReason("Matching text: ["+m_httpClient.getResponseText()+"] not found in body of HTTP response");
+            }
+            complete();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (!m_attempt.isDone()) {
+                m_attempt.complete(onAsyncFailure(m_httpClient, m_serviceInfo, m_noRoute, cause));
+            }
+        }
+
+        private void complete() {
+            final PollStatus status = PollStatus.get(m_httpClient.getPollStatus(), m_httpClient.getReason());
+            m_attempt.complete(m_httpClient.getPollStatus() == PollStatus.SERVICE_AVAILABLE ? Attempt.done(status) : Attempt.retry(status));
+        }
+    }
+
+    private static void logResponseTimes(Double responseTime, String line) {
         LOG.debug("poll: response= {}", line);
         LOG.debug("poll: responseTime= {}ms", responseTime);
     }
@@ -509,7 +702,11 @@ public class HttpMonitor extends ParameterSubstitutingMonitor {
         }
 
         public String readLine() throws IOException {
-            m_currentLine = m_lineRdr.readLine();
+            return onLine(m_lineRdr.readLine());
+        }
+
+        private String onLine(final String line) {
+            m_currentLine = line;
             
             if (determineVerbosity(m_parameters) && HttpMonitor.LOG.isDebugEnabled()) {
                 HttpMonitor.LOG.debug("\t<<: {}", m_currentLine);
@@ -521,7 +718,19 @@ public class HttpMonitor extends ParameterSubstitutingMonitor {
 
         public String readLinedMatching() throws IOException {
             readLine();
-            
+            matchCurrentLine();
+            return m_currentLine;
+        }
+
+        /**
+         * Handles a line of the response that follows the status line.
+         */
+        void onLineMatching(final String line) {
+            onLine(line);
+            matchCurrentLine();
+        }
+
+        private void matchCurrentLine() {
             if (m_responseText != null && m_currentLine != null && !m_responseTextFound) {
                 if (checkCurrentLineMatchesResponseText()) {
                     if (HttpMonitor.LOG.isDebugEnabled()) {
@@ -530,16 +739,26 @@ public class HttpMonitor extends ParameterSubstitutingMonitor {
                     m_serviceStatus = PollStatus.SERVICE_AVAILABLE;
                 }
             }
-            return m_currentLine;
         }
 
         public void sendHttpCommand() throws IOException {
+            logHttpCommand();
+            m_httpSocket.getOutputStream().write(m_httpCmd.getBytes());
+            m_lineRdr = new BufferedReader(new InputStreamReader(m_httpSocket.getInputStream()));
+            onStatusLine(m_lineRdr.readLine());
+        }
+
+        void logHttpCommand() {
             if (determineVerbosity(m_parameters) && HttpMonitor.LOG.isDebugEnabled()) {
                 HttpMonitor.LOG.debug("Sending HTTP command: {}", m_httpCmd);
             }
-            m_httpSocket.getOutputStream().write(m_httpCmd.getBytes());
-            m_lineRdr = new BufferedReader(new InputStreamReader(m_httpSocket.getInputStream()));
-            readLine();
+        }
+
+        /**
+         * Handles the first line of the response.
+         */
+        void onStatusLine(final String line) {
+            onLine(line);
             if (determineVerbosity(m_parameters)) {
                 HttpMonitor.LOG.debug("Server response: {}", m_currentLine);
             }
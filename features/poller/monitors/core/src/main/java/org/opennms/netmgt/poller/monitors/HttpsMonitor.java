@@ -28,11 +28,16 @@
 
 package org.opennms.netmgt.poller.monitors;
 
+import java.net.InetAddress;
 import java.util.Map;
 
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.core.utils.SocketWrapper;
 import org.opennms.core.utils.SslSocketWrapper;
+import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport;
+
+import io.netty.handler.ssl.SslHandler;
 
 /**
  * This class is designed to be used by the service poller framework to test the
@@ -63,4 +68,10 @@ public class HttpsMonitor extends HttpMonitor {
         return new SslSocketWrapper();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected SslHandler getSslHandler(InetAddress addr, int port, TimeoutTracker tracker) {
+        return AsyncMonitorSupport.newSslHandler(addr, port, null, tracker.getSoTimeout());
+    }
+
 }
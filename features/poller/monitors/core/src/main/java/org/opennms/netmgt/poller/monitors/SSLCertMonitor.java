@@ -30,6 +30,7 @@ package org.opennms.netmgt.poller.monitors;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.InterruptedIOException;
@@ -39,16 +40,23 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 import javax.xml.bind.DatatypeConverter;
 
@@ -60,12 +68,25 @@ import org.opennms.core.utils.ParameterMap;
 import org.opennms.core.utils.PropertiesUtils;
 import org.opennms.core.utils.SocketUtils;
 import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport.Attempt;
 import org.opennms.netmgt.poller.monitors.support.ParameterSubstitutingMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.Timeout;
+
 /**
  * This class is designed to be used by the service poller framework to test the
  * validity of an SSL certificate on a remote interface. The class implements
@@ -82,7 +103,7 @@ import org.slf4j.LoggerFactory;
  * @author <a href="mailto:ronald.roskens@gmail.com">Ronald Roskens</a>
  * @author <a href="mailto:dschlenk@convergeone.com">David Schlenk</a>
  */
-public class SSLCertMonitor extends ParameterSubstitutingMonitor {
+public class SSLCertMonitor extends ParameterSubstitutingMonitor implements AsyncServiceMonitor {
     
     
     public static final Logger LOG = LoggerFactory.getLogger(SSLCertMonitor.class);
@@ -137,48 +158,13 @@ public class SSLCertMonitor extends ParameterSubstitutingMonitor {
     public PollStatus poll(final MonitoredService svc, final Map<String, Object> parameters) {
         TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
 
-        // Port
-        int port = ParameterMap.getKeyedInteger(parameters, PARAMETER_PORT, DEFAULT_PORT);
-        if (port == DEFAULT_PORT) {
-            throw new RuntimeException("Required parameter 'port' is not present in supplied properties.");
-        }
-
-        // Remaining days
-        int validityDays = ParameterMap.getKeyedInteger(parameters, PARAMETER_DAYS, DEFAULT_DAYS);
-        if (validityDays <= 0) {
-            throw new RuntimeException("Required parameter 'days' must be a positive value.");
-        }
-
-        // Server name (optional)
-        final String serverName = PropertiesUtils.substitute(ParameterMap.getKeyedString(parameters, PARAMETER_SERVER_NAME, ""),
-                                                             getServiceProperties(svc));
-
-        final String stlsInitiate = PropertiesUtils.substitute(resolveKeyedString(parameters, PARAMETER_STLS_INIT, ""),
-                                                             getServiceProperties(svc));
-
-        final String stlsInitExpectedResp = PropertiesUtils.substitute(resolveKeyedString(parameters, PARAMETER_STLS_INIT_RESP, ""),
-                                                             getServiceProperties(svc));
-
-        final String tlsStart = PropertiesUtils.substitute(resolveKeyedString(parameters, PARAMETER_STLS_START, ""),
-                                                             getServiceProperties(svc));
-
-        final String tlsStartResp = PropertiesUtils.substitute(resolveKeyedString(parameters, PARAMETER_STLS_START_RESP, ""),
-                                                             getServiceProperties(svc));
-
-        // Calculate validity range
-        Calendar calValid = this.getCalendarInstance();
-        Calendar calCurrent = this.getCalendarInstance();
-        calValid.setTimeInMillis(calCurrent.getTimeInMillis());
-        calValid.add(Calendar.DAY_OF_MONTH, validityDays);
-
-        Calendar calBefore = this.getCalendarInstance();
-        Calendar calAfter = this.getCalendarInstance();
+        final CertCheck check = new CertCheck(svc, parameters);
 
         // Get the address instance
         InetAddress ipAddr = svc.getAddress();
 
         final String hostAddress = InetAddressUtils.str(ipAddr);
-        LOG.debug("poll: address={}, port={}, serverName={}, {}", hostAddress, port, serverName, tracker);
+        LOG.debug("poll: address={}, port={}, serverName={}, {}", hostAddress, check.m_port, check.m_serverName, tracker);
 
         // Give it a whirl
         PollStatus serviceStatus = PollStatus.unavailable();
@@ -190,19 +176,19 @@ public class SSLCertMonitor extends ParameterSubstitutingMonitor {
                 tracker.startAttempt();
 
                 socket = new Socket();
-                socket.connect(new InetSocketAddress(ipAddr, port), tracker.getConnectionTimeout());
+                socket.connect(new InetSocketAddress(ipAddr, check.m_port), tracker.getConnectionTimeout());
                 socket.setSoTimeout(tracker.getSoTimeout());
                 r = new BufferedReader(new InputStreamReader(socket.getInputStream()));
                 wr = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-                LOG.debug("Connected to host: {} on port: {}", ipAddr, port);
+                LOG.debug("Connected to host: {} on port: {}", ipAddr, check.m_port);
 
                 // We're connected, so upgrade status to unresponsive
                 serviceStatus = PollStatus.unresponsive();
 
                 // xmpp (and probably others) make you find out if the server supports STARTTLS
                 // at the protocol level before actually trying to start it
-                boolean stlsSupported = SocketUtils.validResponse(stlsInitiate, stlsInitExpectedResp, r, wr) &&
-                    SocketUtils.validResponse(tlsStart, tlsStartResp, r, wr);
+                boolean stlsSupported = SocketUtils.validResponse(check.m_stlsInitiate, check.m_stlsInitExpectedResp, r, wr) &&
+                    SocketUtils.validResponse(check.m_tlsStart, check.m_tlsStartResp, r, wr);
                 if (!stlsSupported) {
                     serviceStatus = PollStatus.unavailable("STARTTLS requested, but server does not support STARTTLS.");
                     return serviceStatus;
@@ -210,78 +196,20 @@ public class SSLCertMonitor extends ParameterSubstitutingMonitor {
 
                 SSLSocket sslSocket = SocketUtils.wrapSocketInSslContext(socket, null, null);
                 // Use the server name as as SNI host name if available
-                if (!Strings.isNullOrEmpty(serverName)) {
+                if (!Strings.isNullOrEmpty(check.m_serverName)) {
                     final SSLParameters sslParameters = sslSocket.getSSLParameters();
-                    sslParameters.setServerNames(ImmutableList.of(new SNIHostName(serverName)));
+                    sslParameters.setServerNames(ImmutableList.of(new SNIHostName(check.m_serverName)));
                     sslSocket.setSSLParameters(sslParameters);
 
                     // Check certificates host name
-                    if (!new StrictHostnameVerifier().verify(serverName, sslSocket.getSession())) {
+                    if (!new StrictHostnameVerifier().verify(check.m_serverName, sslSocket.getSession())) {
                         serviceStatus = PollStatus.unavailable("Host name verification failed - certificate common name is invalid");
                         continue;
                     }
                 }
 
                 Certificate[] certs = sslSocket.getSession().getPeerCertificates();
-                for (int i = 0; i < certs.length && !serviceStatus.isAvailable(); i++) {
-                    if (certs[i] instanceof X509Certificate) {
-                        X509Certificate certx = (X509Certificate) certs[i];
-                        String subject = "";
-                        if (certx.getSubjectDN() != null && certx.getSubjectDN().getName() != null) {
-                            subject = certx.getSubjectDN().getName();
-                        }
-                        String issuer = "";
-                        if (certx.getIssuerDN() != null && certx.getIssuerDN().getName() != null) {
-                            issuer = certx.getIssuerDN().getName();
-                        }
-                        String fprint = DatatypeConverter.printHexBinary(MessageDigest.getInstance("SHA-1").digest(certx.getEncoded())).toLowerCase();
-                        StringBuilder reasonBuilder = new StringBuilder();
-                        if (certx.getNotBefore() == null || certx.getNotAfter() == null) {
-                            reasonBuilder.append("Unable to check for expiration: one or both of notBefore and notAfter are null for certificate with fingerprint '")
-                                .append(fprint).append("' issued to ").append(subject).append(" by ").append(issuer).append(".");
-                            serviceStatus = PollStatus.unavailable(reasonBuilder.toString());
-                            break;
-                        }
-                        LOG.debug("Checking validity against dates: [current: {}, valid: {}], NotBefore: {}, NotAfter: {}", calCurrent.getTime(), calValid.getTime(), certx.getNotBefore(), certx.getNotAfter());
-                        calBefore.setTime(certx.getNotBefore());
-                        calAfter.setTime(certx.getNotAfter());
-                        if (calCurrent.before(calBefore)) {
-                            reasonBuilder.append("Certificate with fingerprint '").append(fprint).append("' issued to ")
-                                    .append(subject).append(" by ").append(issuer)
-                                    .append(" is not yet valid. Current time is before start time. It is valid from ")
-                                    .append(certx.getNotBefore().toString()).append(" until ").append(certx.getNotAfter()).append(".");
-                            LOG.debug(reasonBuilder.toString());
-                            serviceStatus = PollStatus.unavailable(reasonBuilder.toString());
-                            break;
-                        } else if (calCurrent.before(calAfter)) {
-                            if (calValid.before(calAfter)) {
-                                reasonBuilder.append("Certificate with fingerprint '").append(fprint).append("' issued to ")
-                                        .append(subject).append(" by ").append(issuer)
-                                        .append(" is valid. It is valid from ")
-                                        .append(certx.getNotBefore().toString()).append(" until ").append(certx.getNotAfter()).append(".");
-                                LOG.debug(reasonBuilder.toString());
-                                serviceStatus = PollStatus.available(tracker.elapsedTimeInMillis());
-                                break;
-                            } else {
-                                reasonBuilder.append("Certificate with fingerprint '").append(fprint).append("' issued to ")
-                                        .append(subject).append(" by ").append(issuer)
-                                        .append(" is valid, but will expire within ").append(validityDays).append(" days. It is valid from ")
-                                        .append(certx.getNotBefore().toString()).append(" until ").append(certx.getNotAfter()).append(".");
-                                LOG.debug(reasonBuilder.toString());
-                                serviceStatus = PollStatus.unavailable(reasonBuilder.toString());
-                                break;
-                            }
-                        } else {
-                            reasonBuilder.append("Certificate with fingerprint '").append(fprint).append("' issued to ")
-                                    .append(subject).append(" by ").append(issuer)
-                                    .append(" is no longer valid. It was valid from ").append(certx.getNotBefore().toString())
-                                    .append(" until ").append(certx.getNotAfter()).append(".");
-                            LOG.debug(reasonBuilder.toString());
-                            serviceStatus = PollStatus.unavailable(reasonBuilder.toString());
-                            break;
-                        }
-                    }
-                }
+                serviceStatus = check.checkCertificates(certs, serviceStatus, tracker);
 
             } catch (NoRouteToHostException e) {
                 String reason = "No route to host exception for address " + hostAddress;
@@ -329,6 +257,324 @@ public class SSLCertMonitor extends ParameterSubstitutingMonitor {
         return serviceStatus;
     }
     
+    /**
+     * {@inheritDoc}
+     *
+     * Makes the same STARTTLS exchanges, handshake and certificate checks as
+     * {@link #poll(MonitoredService, Map)} without blocking. A STARTTLS response is
+     * complete when the peer closes the connection or stays silent for the read timeout.
+     */
+    @Override
+    public CompletableFuture<PollStatus> pollAsync(final MonitoredService svc, final Map<String, Object> parameters) {
+        final TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+        final CertCheck check = new CertCheck(svc, parameters);
+        final InetAddress ipAddr = svc.getAddress();
+        LOG.debug("pollAsync: address={}, port={}, serverName={}, {}", InetAddressUtils.str(ipAddr), check.m_port, check.m_serverName, tracker);
+
+        return AsyncMonitorSupport.retry(parameters, tracker, PollStatus.unavailable(), t -> attemptAsync(check, ipAddr, t));
+    }
+
+    private CompletableFuture<Attempt> attemptAsync(final CertCheck check, final InetAddress ipAddr, final TimeoutTracker tracker) {
+        final CompletableFuture<Attempt> attempt = new CompletableFuture<>();
+        final ChannelFuture connectFuture = AsyncMonitorSupport.connect(ipAddr, check.m_port, tracker.getConnectionTimeout(), new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(new AsyncCertHandler(check, ipAddr, tracker, attempt));
+            }
+        });
+        connectFuture.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                attempt.complete(onAsyncFailure(ipAddr, tracker, f.cause()));
+            }
+        });
+        attempt.whenComplete((a, ex) -> connectFuture.channel().close());
+        return attempt;
+    }
+
+    private static Attempt onAsyncFailure(final InetAddress ipAddr, final TimeoutTracker tracker, final Throwable t) {
+        final Throwable e = AsyncMonitorSupport.unwrap(t);
+        final String reason;
+        if (e instanceof NoRouteToHostException) {
+            reason = "No route to host exception for address " + InetAddressUtils.str(ipAddr);
+            LOG.debug(reason, e);
+            return Attempt.done(PollStatus.unavailable(reason));
+        } else if (AsyncMonitorSupport.isTimeout(e)) {
+            reason = "did not connect to host with " + tracker;
+            LOG.debug(reason);
+            return Attempt.retry(PollStatus.unavailable(reason));
+        } else if (e instanceof ConnectException) {
+            reason = "Connection exception for address: " + ipAddr;
+        } else if (e instanceof CertificateEncodingException) {
+            reason = "CertificateEncodingException while polling address: " + ipAddr;
+        } else if (e instanceof NoSuchAlgorithmException) {
+            reason = "NoSuchAlgorithException (SHA-1) while polling address: " + ipAddr;
+        } else {
+            reason = "IOException while polling address: " + ipAddr;
+        }
+        LOG.debug(reason, e);
+        return Attempt.retry(PollStatus.unavailable(reason));
+    }
+
+    /**
+     * Makes the STARTTLS exchanges once connected, then starts the handshake and checks
+     * the certificates of the peer. All of the callbacks run on the event loop of the channel.
+     */
+    private final class AsyncCertHandler extends ChannelInboundHandlerAdapter {
+        private final CertCheck m_check;
+        private final InetAddress m_ipAddr;
+        private final TimeoutTracker m_tracker;
+        private final CompletableFuture<Attempt> m_attempt;
+        private final List<String[]> m_exchanges;
+        private final ByteArrayOutputStream m_response = new ByteArrayOutputStream();
+        private int m_exchange = 0;
+        private int m_reads = 0;
+        private boolean m_tls = false;
+        private Timeout m_idleTimeout;
+
+        private AsyncCertHandler(CertCheck check, InetAddress ipAddr, TimeoutTracker tracker, CompletableFuture<Attempt> attempt) {
+            m_check = check;
+            m_ipAddr = ipAddr;
+            m_tracker = tracker;
+            m_attempt = attempt;
+            m_exchanges = check.getStartTlsExchanges();
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            LOG.debug("Connected to host: {} on port: {}", m_ipAddr, m_check.m_port);
+            nextExchange(ctx);
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            final ByteBuf buf = (ByteBuf) msg;
+            try {
+                if (!m_tls && !m_attempt.isDone()) {
+                    buf.readBytes(m_response, buf.readableBytes());
+                    scheduleIdleTimeout(ctx);
+                }
+            } catch (IOException e) {
+                ctx.fireExceptionCaught(e);
+            } finally {
+                buf.release();
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            endExchange(ctx);
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            m_attempt.complete(onAsyncFailure(m_ipAddr, m_tracker, cause));
+        }
+
+        private void nextExchange(final ChannelHandlerContext ctx) {
+            if (m_exchange >= m_exchanges.size()) {
+                startTls(ctx);
+                return;
+            }
+            final String[] exchange = m_exchanges.get(m_exchange);
+            LOG.debug("writing {}, hoping response matches /{}/", exchange[0], exchange[1]);
+            m_response.reset();
+            ctx.writeAndFlush(Unpooled.wrappedBuffer(exchange[0].getBytes(Charset.defaultCharset())));
+            scheduleIdleTimeout(ctx);
+        }
+
+        private void scheduleIdleTimeout(final ChannelHandlerContext ctx) {
+            if (m_idleTimeout != null) {
+                m_idleTimeout.cancel();
+            }
+            final int reads = ++m_reads;
+            m_idleTimeout = AsyncMonitorSupport.schedule(() -> ctx.executor().execute(() -> {
+                if (reads == m_reads) {
+                    endExchange(ctx);
+                }
+            }), m_tracker.getSoTimeout());
+        }
+
+        private void endExchange(final ChannelHandlerContext ctx) {
+            if (m_attempt.isDone() || m_tls || m_exchange >= m_exchanges.size()) {
+                return;
+            }
+            if (m_idleTimeout != null) {
+                m_idleTimeout.cancel();
+            }
+            final String response = new String(m_response.toByteArray(), Charset.defaultCharset());
+            LOG.debug("response was: {}", response);
+            if (!Pattern.compile(m_exchanges.get(m_exchange)[1]).matcher(response).matches()) {
+                m_attempt.complete(Attempt.done(PollStatus.unavailable("STARTTLS requested, but server does not support STARTTLS.")));
+                return;
+            }
+            m_exchange++;
+            if (!ctx.channel().isActive()) {
+                m_attempt.complete(onAsyncFailure(m_ipAddr, m_tracker, new ClosedChannelException()));
+                return;
+            }
+            nextExchange(ctx);
+        }
+
+        private void startTls(final ChannelHandlerContext ctx) {
+            m_tls = true;
+            final SslHandler sslHandler = AsyncMonitorSupport.newSslHandler(m_ipAddr, m_check.m_port, m_check.m_serverName, m_tracker.getSoTimeout());
+            ctx.pipeline().addFirst(sslHandler);
+            sslHandler.handshakeFuture().addListener(f -> {
+                if (!f.isSuccess()) {
+                    m_attempt.complete(onAsyncFailure(m_ipAddr, m_tracker, f.cause()));
+                    return;
+                }
+                try {
+                    m_attempt.complete(m_check.verify(sslHandler.engine().getSession(), m_tracker));
+                } catch (IOException | CertificateEncodingException | NoSuchAlgorithmException e) {
+                    m_attempt.complete(onAsyncFailure(m_ipAddr, m_tracker, e));
+                }
+            });
+        }
+    }
+
+    /**
+     * Settings of a single poll and the checks made against the certificates of the peer,
+     * shared by the blocking and the asynchronous poll.
+     */
+    private final class CertCheck {
+        private final int m_port;
+        private final int m_validityDays;
+        private final String m_serverName;
+        private final String m_stlsInitiate;
+        private final String m_stlsInitExpectedResp;
+        private final String m_tlsStart;
+        private final String m_tlsStartResp;
+        private final Calendar m_calValid;
+        private final Calendar m_calCurrent;
+
+        private CertCheck(final MonitoredService svc, final Map<String, Object> parameters) {
+            // Port
+            m_port = ParameterMap.getKeyedInteger(parameters, PARAMETER_PORT, DEFAULT_PORT);
+            if (m_port == DEFAULT_PORT) {
+                throw new RuntimeException("Required parameter 'port' is not present in supplied properties.");
+            }
+
+            // Remaining days
+            m_validityDays = ParameterMap.getKeyedInteger(parameters, PARAMETER_DAYS, DEFAULT_DAYS);
+            if (m_validityDays <= 0) {
+                throw new RuntimeException("Required parameter 'days' must be a positive value.");
+            }
+
+            // Server name (optional)
+            m_serverName = PropertiesUtils.substitute(ParameterMap.getKeyedString(parameters, PARAMETER_SERVER_NAME, ""),
+                                                      getServiceProperties(svc));
+
+            m_stlsInitiate = PropertiesUtils.substitute(resolveKeyedString(parameters, PARAMETER_STLS_INIT, ""),
+                                                        getServiceProperties(svc));
+
+            m_stlsInitExpectedResp = PropertiesUtils.substitute(resolveKeyedString(parameters, PARAMETER_STLS_INIT_RESP, ""),
+                                                                getServiceProperties(svc));
+
+            m_tlsStart = PropertiesUtils.substitute(resolveKeyedString(parameters, PARAMETER_STLS_START, ""),
+                                                    getServiceProperties(svc));
+
+            m_tlsStartResp = PropertiesUtils.substitute(resolveKeyedString(parameters, PARAMETER_STLS_START_RESP, ""),
+                                                        getServiceProperties(svc));
+
+            // Calculate validity range
+            m_calValid = getCalendarInstance();
+            m_calCurrent = getCalendarInstance();
+            m_calValid.setTimeInMillis(m_calCurrent.getTimeInMillis());
+            m_calValid.add(Calendar.DAY_OF_MONTH, m_validityDays);
+        }
+
+        /**
+         * @return the STARTTLS exchanges to make before the handshake, as pairs of request and expected response
+         */
+        private List<String[]> getStartTlsExchanges() {
+            final List<String[]> exchanges = new ArrayList<>(2);
+            if (!Strings.isNullOrEmpty(m_stlsInitiate) && !Strings.isNullOrEmpty(m_stlsInitExpectedResp)) {
+                exchanges.add(new String[] { m_stlsInitiate, m_stlsInitExpectedResp });
+            }
+            if (!Strings.isNullOrEmpty(m_tlsStart) && !Strings.isNullOrEmpty(m_tlsStartResp)) {
+                exchanges.add(new String[] { m_tlsStart, m_tlsStartResp });
+            }
+            return exchanges;
+        }
+
+        private Attempt verify(final SSLSession session, final TimeoutTracker tracker) throws IOException, CertificateEncodingException, NoSuchAlgorithmException {
+            // Check certificates host name
+            if (!Strings.isNullOrEmpty(m_serverName) && !new StrictHostnameVerifier().verify(m_serverName, session)) {
+                return Attempt.retry(PollStatus.unavailable("Host name verification failed - certificate common name is invalid"));
+            }
+            final PollStatus serviceStatus = checkCertificates(session.getPeerCertificates(), PollStatus.unresponsive(), tracker);
+            return serviceStatus.isAvailable() ? Attempt.done(serviceStatus) : Attempt.retry(serviceStatus);
+        }
+
+        private PollStatus checkCertificates(final Certificate[] certs, PollStatus serviceStatus, final TimeoutTracker tracker) throws CertificateEncodingException, NoSuchAlgorithmException {
+            Calendar calBefore = getCalendarInstance();
+            Calendar calAfter = getCalendarInstance();
+            for (int i = 0; i < certs.length && !serviceStatus.isAvailable(); i++) {
+                if (certs[i] instanceof X509Certificate) {
+                    X509Certificate certx = (X509Certificate) certs[i];
+                    String subject = "";
+                    if (certx.getSubjectDN() != null && certx.getSubjectDN().getName() != null) {
+                        subject = certx.getSubjectDN().getName();
+                    }
+                    String issuer = "";
+                    if (certx.getIssuerDN() != null && certx.getIssuerDN().getName() != null) {
+                        issuer = certx.getIssuerDN().getName();
+                    }
+                    String fprint = DatatypeConverter.printHexBinary(MessageDigest.getInstance("SHA-1").digest(certx.getEncoded())).toLowerCase();
+                    StringBuilder reasonBuilder = new StringBuilder();
+                    if (certx.getNotBefore() == null || certx.getNotAfter() == null) {
+                        reasonBuilder.append("Unable to check for expiration: one or both of notBefore and notAfter are null for certificate with fingerprint '")
+                            .append(fprint).append("' issued to ").append(subject).append(" by ").append(issuer).append(".");
+                        serviceStatus = PollStatus.unavailable(reasonBuilder.toString());
+                        break;
+                    }
+                    LOG.debug("Checking validity against dates: [current: {}, valid: {}], NotBefore: {}, NotAfter: {}", m_calCurrent.getTime(), m_calValid.getTime(), certx.getNotBefore(), certx.getNotAfter());
+                    calBefore.setTime(certx.getNotBefore());
+                    calAfter.setTime(certx.getNotAfter());
+                    if (m_calCurrent.before(calBefore)) {
+                        reasonBuilder.append("Certificate with fingerprint '").append(fprint).append("' issued to ")
+                                .append(subject).append(" by ").append(issuer)
+                                .append(" is not yet valid. Current time is before start time. It is valid from ")
+                                .append(certx.getNotBefore().toString()).append(" until ").append(certx.getNotAfter()).append(".");
+                        LOG.debug(reasonBuilder.toString());
+                        serviceStatus = PollStatus.unavailable(reasonBuilder.toString());
+                        break;
+                    } else if (m_calCurrent.before(calAfter)) {
+                        if (m_calValid.before(calAfter)) {
+                            reasonBuilder.append("Certificate with fingerprint '").append(fprint).append("' issued to ")
+                                    .append(subject).append(" by ").append(issuer)
+                                    .append(" is valid. It is valid from ")
+                                    .append(certx.getNotBefore().toString()).append(" until ").append(certx.getNotAfter()).append(".");
+                            LOG.debug(reasonBuilder.toString());
+                            serviceStatus = PollStatus.available(tracker.elapsedTimeInMillis());
+                            break;
+                        } else {
+                            reasonBuilder.append("Certificate with fingerprint '").append(fprint).append("' issued to ")
+                                    .append(subject).append(" by ").append(issuer)
+                                    .append(" is valid, but will expire within ").append(m_validityDays).append(" days. It is valid from ")
+                                    .append(certx.getNotBefore().toString()).append(" until ").append(certx.getNotAfter()).append(".");
+                            LOG.debug(reasonBuilder.toString());
+                            serviceStatus = PollStatus.unavailable(reasonBuilder.toString());
+                            break;
+                        }
+                    } else {
+                        reasonBuilder.append("Certificate with fingerprint '").append(fprint).append("' issued to ")
+                                .append(subject).append(" by ").append(issuer)
+                                .append(" is no longer valid. It was valid from ").append(certx.getNotBefore().toString())
+                                .append(" until ").append(certx.getNotAfter()).append(".");
+                        LOG.debug(reasonBuilder.toString());
+                        serviceStatus = PollStatus.unavailable(reasonBuilder.toString());
+                        break;
+                    }
+                }
+            }
+            return serviceStatus;
+        }
+    }
+
     protected Calendar getCalendarInstance() {
         return GregorianCalendar.getInstance();
     }
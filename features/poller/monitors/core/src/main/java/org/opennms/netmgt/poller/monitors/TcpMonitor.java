@@ -37,17 +37,29 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.NoRouteToHostException;
 import java.net.Socket;
+import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport.Attempt;
 import org.opennms.netmgt.poller.support.AbstractServiceMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.string.StringDecoder;
+
 /**
  * This class is designed to be used by the service poller framework to test the
  * availability of a generic TCP service on remote interfaces. The class
@@ -59,7 +71,7 @@ import org.slf4j.LoggerFactory;
  * @author <A HREF="mike@opennms.org">Mike </A>
  * @author <A HREF="http://www.opennms.org/">OpenNMS </A>
  */
-final public class TcpMonitor extends AbstractServiceMonitor {
+final public class TcpMonitor extends AbstractServiceMonitor implements AsyncServiceMonitor {
 
     public static final Logger LOG = LoggerFactory.getLogger(TcpMonitor.class);
 
@@ -160,21 +172,7 @@ final public class TcpMonitor extends AbstractServiceMonitor {
                 LOG.debug("poll: banner = {}", response);
                 LOG.debug("poll: responseTime= {}ms", responseTime);
 
-                //Could it be a regex?
-                if (strBannerMatch.charAt(0)=='~'){
-                  if (!response.matches(strBannerMatch.substring(1)))
-                    serviceStatus = PollStatus.unavailable("Banner does not match Regex '"+strBannerMatch+"'");
-                  else
-                    serviceStatus = PollStatus.available(responseTime);
-                }
-                else {
-                  if (response.indexOf(strBannerMatch) > -1) {
-                    serviceStatus = PollStatus.available(responseTime);
-                  }
-                  else {
-                    serviceStatus = PollStatus.unavailable("Banner: '"+response+"' does not contain match string '"+strBannerMatch+"'");
-                  }
-                }
+                serviceStatus = checkBanner(response, strBannerMatch, responseTime);
 
             } catch (NoRouteToHostException e) {
             	String reason = "No route to host exception for address " + hostAddress;
@@ -211,4 +209,118 @@ final public class TcpMonitor extends AbstractServiceMonitor {
         return serviceStatus;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Performs the same checks as {@link #poll(MonitoredService, Map)}, but
+     * connects and reads the banner without blocking.
+     */
+    @Override
+    public CompletableFuture<PollStatus> pollAsync(MonitoredService svc, Map<String, Object> parameters) {
+        final TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+
+        final int port = ParameterMap.getKeyedInteger(parameters, PARAMETER_PORT, DEFAULT_PORT);
+        if (port == DEFAULT_PORT) {
+            throw new RuntimeException("TcpMonitor: required parameter 'port' is not present in supplied properties.");
+        }
+
+        final String strBannerMatch = ParameterMap.getKeyedString(parameters, PARAMETER_BANNER, null);
+        final InetAddress ipAddr = svc.getAddress();
+        LOG.debug("pollAsync: address = {}, port = {}, {}", InetAddressUtils.str(ipAddr), port, tracker);
+
+        return AsyncMonitorSupport.retry(parameters, tracker, PollStatus.unavailable(),
+                t -> attemptAsync(ipAddr, port, strBannerMatch, t));
+    }
+
+    private static CompletableFuture<Attempt> attemptAsync(final InetAddress ipAddr, final int port, final String strBannerMatch, final TimeoutTracker tracker) {
+        final CompletableFuture<Attempt> attempt = new CompletableFuture<>();
+        final boolean matchBanner = strBannerMatch != null && strBannerMatch.length() > 0 && !strBannerMatch.equals("*");
+
+        final ChannelFuture connectFuture = AsyncMonitorSupport.connect(ipAddr, port, tracker.getConnectionTimeout(), new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                if (!matchBanner) {
+                    return;
+                }
+                ch.pipeline().addLast(AsyncMonitorSupport.newReadTimeoutHandler(tracker.getSoTimeout()),
+                        AsyncMonitorSupport.newLineDecoder(),
+                        new StringDecoder(Charset.defaultCharset()),
+                        new SimpleChannelInboundHandler<String>() {
+                            @Override
+                            protected void channelRead0(ChannelHandlerContext ctx, String response) {
+                                if (attempt.isDone()) {
+                                    return;
+                                }
+                                final double responseTime = tracker.elapsedTimeInMillis();
+                                LOG.debug("pollAsync: banner = {}", response);
+                                LOG.debug("pollAsync: responseTime= {}ms", responseTime);
+                                final PollStatus status = checkBanner(response, strBannerMatch, responseTime);
+                                attempt.complete(status.isAvailable() ? Attempt.done(status) : Attempt.retry(status));
+                            }
+
+                            @Override
+                            public void channelInactive(ChannelHandlerContext ctx) {
+                                // Connected, but the stream ended before the banner was received
+                                attempt.complete(Attempt.retry(PollStatus.unresponsive()));
+                            }
+
+                            @Override
+                            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                                attempt.complete(onFailure(ipAddr, tracker, cause));
+                            }
+                        });
+            }
+        });
+
+        connectFuture.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                attempt.complete(onFailure(ipAddr, tracker, f.cause()));
+            } else if (!matchBanner) {
+                LOG.debug("TcpMonitor: connected to host: {} on port: {}", ipAddr, port);
+                attempt.complete(Attempt.done(PollStatus.available(tracker.elapsedTimeInMillis())));
+            }
+        });
+        attempt.whenComplete((a, ex) -> connectFuture.channel().close());
+        return attempt;
+    }
+
+    private static Attempt onFailure(final InetAddress ipAddr, final TimeoutTracker tracker, final Throwable t) {
+        final Throwable cause = AsyncMonitorSupport.unwrap(t);
+        if (cause instanceof NoRouteToHostException) {
+            final String reason = "No route to host exception for address " + InetAddressUtils.str(ipAddr);
+            LOG.debug(reason, cause);
+            return Attempt.done(PollStatus.unavailable(reason));
+        } else if (AsyncMonitorSupport.isTimeout(cause)) {
+            final String reason = "did not connect to host with " + tracker;
+            LOG.debug(reason);
+            return Attempt.retry(PollStatus.unavailable(reason));
+        } else if (cause instanceof ConnectException) {
+            final String reason = "Connection exception for address: " + ipAddr;
+            LOG.debug(reason, cause);
+            return Attempt.retry(PollStatus.unavailable(reason));
+        } else {
+            final String reason = "IOException while polling address: " + ipAddr;
+            LOG.debug(reason, cause);
+            return Attempt.retry(PollStatus.unavailable(reason));
+        }
+    }
+
+    private static PollStatus checkBanner(final String response, final String strBannerMatch, final double responseTime) {
+        //Could it be a regex?
+        if (strBannerMatch.charAt(0)=='~'){
+          if (!response.matches(strBannerMatch.substring(1)))
+            return PollStatus.unavailable("Banner does not match Regex '"+strBannerMatch+"'");
+          else
+            return PollStatus.available(responseTime);
+        }
+        else {
+          if (response.indexOf(strBannerMatch) > -1) {
+            return PollStatus.available(responseTime);
+          }
+          else {
+            return PollStatus.unavailable("Banner: '"+response+"' does not contain match string '"+strBannerMatch+"'");
+          }
+        }
+    }
+
 }
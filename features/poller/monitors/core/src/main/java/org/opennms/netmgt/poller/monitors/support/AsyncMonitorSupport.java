@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors.support;
+
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+
+import org.opennms.core.sysprops.SystemProperties;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.ParameterMap;
+import org.opennms.core.utils.SocketUtils;
+import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.PollStatus;
+
+import com.google.common.base.Strings;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ConnectTimeoutException;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslHandshakeTimeoutException;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Shared I/O resources for the monitors that implement
+ * {@link org.opennms.netmgt.poller.AsyncServiceMonitor}.
+ *
+ * All of the asynchronous polls share a small event loop group, and their
+ * read timeouts are driven by a single timing wheel, so that an unreachable
+ * host only costs a pending timeout rather than a blocked thread.
+ */
+public final class AsyncMonitorSupport {
+
+    /**
+     * Number of event loop threads used by the asynchronous monitors.
+     */
+    public static final String THREADS_SYS_PROP = "org.opennms.netmgt.poller.async.threads";
+
+    /**
+     * Upper bound on the length of a single line read from the peer.
+     */
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private static final class EventLoopHolder {
+        private static final EventLoopGroup GROUP = new NioEventLoopGroup(
+                SystemProperties.getInteger(THREADS_SYS_PROP, Math.max(2, Runtime.getRuntime().availableProcessors() / 2)),
+                new DefaultThreadFactory("poller-async-io", true));
+
+        private static final HashedWheelTimer TIMER = new HashedWheelTimer(
+                new DefaultThreadFactory("poller-async-timer", true), 10, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class SslContextHolder {
+        private static final SSLContext CONTEXT = SocketUtils.createRelaxedSslContext(null);
+    }
+
+    private AsyncMonitorSupport() {}
+
+    /**
+     * The outcome of a single attempt made by {@link #retry}.
+     */
+    public static final class Attempt {
+        private final PollStatus m_status;
+        private final boolean m_done;
+
+        private Attempt(PollStatus status, boolean done) {
+            m_status = status;
+            m_done = done;
+        }
+
+        /**
+         * The attempt failed, but another one may be made if the retries allow it.
+         */
+        public static Attempt retry(PollStatus status) {
+            return new Attempt(status, false);
+        }
+
+        /**
+         * The attempt is conclusive and no further attempts should be made.
+         */
+        public static Attempt done(PollStatus status) {
+            return new Attempt(status, true);
+        }
+
+        public PollStatus getStatus() {
+            return m_status;
+        }
+
+        public boolean isDone() {
+            return m_done;
+        }
+    }
+
+    /**
+     * Runs the given attempt until it is conclusive or the retries tracked by the given
+     * tracker are exhausted, following the same rules as the blocking monitors.
+     *
+     * When strict timeouts are enabled, the next attempt is delayed on the timer
+     * instead of sleeping.
+     *
+     * @param parameters the service parameters
+     * @param tracker tracks the attempts and their timeouts
+     * @param initialStatus the status to return if no attempt is made
+     * @param attempt starts an attempt, the tracker has already been started when it is invoked
+     * @return the status of the last attempt
+     */
+    public static CompletableFuture<PollStatus> retry(final Map<String, Object> parameters, final TimeoutTracker tracker,
+                                                      final PollStatus initialStatus, final Function<TimeoutTracker, CompletableFuture<Attempt>> attempt) {
+        final boolean strictTimeouts = ParameterMap.getKeyedBoolean(parameters, "strict-timeout", false);
+        final CompletableFuture<PollStatus> result = new CompletableFuture<>();
+        tracker.reset();
+        nextAttempt(tracker, strictTimeouts, initialStatus, attempt, result, 0);
+        return result;
+    }
+
+    private static void nextAttempt(final TimeoutTracker tracker, final boolean strictTimeouts, final PollStatus lastStatus,
+                                    final Function<TimeoutTracker, CompletableFuture<Attempt>> attempt,
+                                    final CompletableFuture<PollStatus> result, final long delayMs) {
+        if (!tracker.shouldRetry()) {
+            result.complete(lastStatus);
+            return;
+        }
+        if (delayMs > 0) {
+            EventLoopHolder.TIMER.newTimeout(t -> nextAttempt(tracker, strictTimeouts, lastStatus, attempt, result, 0), delayMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        final CompletableFuture<Attempt> future;
+        try {
+            tracker.startAttempt();
+            future = attempt.apply(tracker);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        future.whenComplete((outcome, ex) -> {
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else if (outcome.isDone()) {
+                result.complete(outcome.getStatus());
+            } else {
+                final long remainingMs = strictTimeouts ? tracker.getTimeoutInMillis() - (long)tracker.elapsedTimeInMillis() : 0;
+                tracker.nextAttempt();
+                nextAttempt(tracker, strictTimeouts, outcome.getStatus(), attempt, result, remainingMs);
+            }
+        });
+    }
+
+    /**
+     * Opens a TCP connection to the given address.
+     *
+     * @param initializer the handler added to the pipeline of the channel
+     */
+    public static ChannelFuture connect(final InetAddress address, final int port, final int connectTimeoutMs, final ChannelHandler initializer) {
+        return new Bootstrap()
+                .group(EventLoopHolder.GROUP)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .handler(initializer)
+                .connect(new InetSocketAddress(address, port));
+    }
+
+    /**
+     * Opens a UDP channel bound to an ephemeral port.
+     */
+    public static ChannelFuture bindDatagram(final ChannelHandler initializer) {
+        return new Bootstrap()
+                .group(EventLoopHolder.GROUP)
+                .channel(NioDatagramChannel.class)
+                .handler(initializer)
+                .bind(0);
+    }
+
+    /**
+     * Schedules the given task on the shared timer.
+     */
+    public static Timeout schedule(final Runnable task, final long delayMs) {
+        return EventLoopHolder.TIMER.newTimeout(t -> task.run(), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a handler that fails the channel with a {@link ReadTimeoutException} when nothing
+     * was read for the given amount of time, which mimics a socket read timeout.
+     */
+    public static ChannelHandler newReadTimeoutHandler(final long timeoutMs) {
+        return new WheelReadTimeoutHandler(timeoutMs);
+    }
+
+    /**
+     * Creates a decoder that splits the input into lines like {@link java.io.BufferedReader#readLine()},
+     * including a last line that is not terminated.
+     */
+    public static ChannelHandler newLineDecoder() {
+        return new LineDecoder();
+    }
+
+    /**
+     * Creates a client side SSL handler that accepts any certificate presented by the peer.
+     *
+     * @param serverName the host name to send with SNI, if any
+     */
+    public static SslHandler newSslHandler(final InetAddress address, final int port, final String serverName, final long handshakeTimeoutMs) {
+        final SSLEngine engine = SslContextHolder.CONTEXT.createSSLEngine(InetAddressUtils.str(address), port);
+        engine.setUseClientMode(true);
+        if (!Strings.isNullOrEmpty(serverName)) {
+            final SSLParameters sslParameters = engine.getSSLParameters();
+            sslParameters.setServerNames(Collections.singletonList(new SNIHostName(serverName)));
+            engine.setSSLParameters(sslParameters);
+        }
+        final SslHandler sslHandler = new SslHandler(engine);
+        sslHandler.setHandshakeTimeoutMillis(handshakeTimeoutMs);
+        return sslHandler;
+    }
+
+    /**
+     * Unwraps the exceptions added by the futures and the decoders.
+     */
+    public static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof DecoderException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    /**
+     * @return <code>true</code> if the given exception is the result of a connect, read or handshake timeout
+     */
+    public static boolean isTimeout(Throwable t) {
+        return t instanceof ConnectTimeoutException
+                || t instanceof ReadTimeoutException
+                || t instanceof SslHandshakeTimeoutException
+                || t instanceof InterruptedIOException;
+    }
+
+    private static final class LineDecoder extends LineBasedFrameDecoder {
+        private LineDecoder() {
+            super(MAX_LINE_LENGTH, true, false);
+        }
+
+        @Override
+        protected void decodeLast(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+            super.decodeLast(ctx, in, out);
+            if (in.isReadable()) {
+                out.add(in.readBytes(in.readableBytes()));
+            }
+        }
+    }
+
+    private static final class WheelReadTimeoutHandler extends ChannelInboundHandlerAdapter {
+        private final long m_timeoutNanos;
+        private volatile long m_lastReadNanos;
+        private Timeout m_timeout;
+        private boolean m_started = false;
+
+        private WheelReadTimeoutHandler(long timeoutMs) {
+            m_timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) {
+            if (ctx.channel().isActive()) {
+                start(ctx);
+            }
+        }
+
+        @Override
+        public void handlerRemoved(ChannelHandlerContext ctx) {
+            cancel();
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            start(ctx);
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            cancel();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            m_lastReadNanos = System.nanoTime();
+            super.channelRead(ctx, msg);
+        }
+
+        private void start(ChannelHandlerContext ctx) {
+            if (m_started) {
+                return;
+            }
+            m_started = true;
+            m_lastReadNanos = System.nanoTime();
+            schedule(ctx, m_timeoutNanos);
+        }
+
+        private void schedule(ChannelHandlerContext ctx, long delayNanos) {
+            m_timeout = EventLoopHolder.TIMER.newTimeout(t -> ctx.executor().execute(() -> check(ctx)), delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void check(ChannelHandlerContext ctx) {
+            if (!ctx.channel().isOpen() || m_timeout == null) {
+                return;
+            }
+            final long idleNanos = System.nanoTime() - m_lastReadNanos;
+            if (idleNanos >= m_timeoutNanos) {
+                m_timeout = null;
+                ctx.fireExceptionCaught(ReadTimeoutException.INSTANCE);
+                ctx.close();
+            } else {
+                schedule(ctx, m_timeoutNanos - idleNanos);
+            }
+        }
+
+        private void cancel() {
+            if (m_timeout != null) {
+                m_timeout.cancel();
+                m_timeout = null;
+            }
+        }
+    }
+}
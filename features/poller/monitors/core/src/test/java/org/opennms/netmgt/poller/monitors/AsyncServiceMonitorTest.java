@@ -0,0 +1,499 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.poller.mock.MonitorTestUtils;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport;
+import org.opennms.netmgt.poller.monitors.support.AsyncMonitorSupport.Attempt;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Verifies that the non-blocking polls reach the same conclusions as the blocking ones,
+ * against minimal servers running on the loopback interface.
+ */
+public class AsyncServiceMonitorTest {
+
+    private static final InetAddress LOCALHOST = InetAddress.getLoopbackAddress();
+
+    // The certificate of the keystore used by the TLS server is valid:
+    //   from  Tue Nov 08 14:30:45 CET 2016
+    //   until Fri Nov 03 14:30:45 CET 2017
+    private static final long CERTIFICATE_EXPIRE_DATE = 1509715800000L;
+
+    private ServerSocket m_serverSocket;
+    private Thread m_serverThread;
+    private final List<Socket> m_silentSockets = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_serverSocket != null) {
+            m_serverSocket.close();
+        }
+        synchronized (m_silentSockets) {
+            for (final Socket socket : m_silentSockets) {
+                socket.close();
+            }
+        }
+        if (m_serverThread != null) {
+            m_serverThread.join(5000);
+        }
+    }
+
+    @Test
+    public void testTcpBanner() throws Exception {
+        final int port = serve("SSH-2.0-OpenSSH_8.9\r\n", false);
+
+        final Map<String, Object> parameters = parameters(port);
+        parameters.put("banner", "SSH");
+        final PollStatus status = new TcpMonitor().pollAsync(service("TCP"), parameters).get(10, TimeUnit.SECONDS);
+        assertTrue(status.toString(), status.isAvailable());
+
+        parameters.put("banner", "~^220.*");
+        final PollStatus unavailable = new TcpMonitor().pollAsync(service("TCP"), parameters).get(10, TimeUnit.SECONDS);
+        assertEquals(unavailable.toString(), PollStatus.SERVICE_UNAVAILABLE, unavailable.getStatusCode());
+    }
+
+    @Test
+    public void testTcpConnectionRefused() throws Exception {
+        // Grab a free port, and close it right away
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, LOCALHOST)) {
+            port = socket.getLocalPort();
+        }
+
+        final PollStatus status = new TcpMonitor().pollAsync(service("TCP"), parameters(port)).get(10, TimeUnit.SECONDS);
+        assertEquals(status.toString(), PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertEquals("Connection exception for address: " + LOCALHOST, status.getReason());
+    }
+
+    @Test
+    public void testHttpResponseText() throws Exception {
+        final int port = serve("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\nhello\r\nbrave new world\r\n", true);
+
+        final Map<String, Object> parameters = parameters(port);
+        parameters.put("url", "/");
+        parameters.put("response-text", "~.*new world.*");
+        final PollStatus status = new HttpMonitor().pollAsync(service("HTTP"), parameters).get(10, TimeUnit.SECONDS);
+        assertTrue(status.toString(), status.isAvailable());
+
+        parameters.put("response-text", "goodbye");
+        final PollStatus unavailable = new HttpMonitor().pollAsync(service("HTTP"), parameters).get(10, TimeUnit.SECONDS);
+        assertEquals(unavailable.toString(), PollStatus.SERVICE_UNAVAILABLE, unavailable.getStatusCode());
+        assertTrue(unavailable.getReason(), unavailable.getReason().startsWith("Matching text: [goodbye] not found in body of HTTP response"));
+    }
+
+    @Test
+    public void testHttpResponseCode() throws Exception {
+        final int port = serve("HTTP/1.1 404 Not Found\r\nConnection: close\r\n\r\n", true);
+
+        final Map<String, Object> parameters = parameters(port);
+        parameters.put("url", "/missing");
+        final PollStatus status = new HttpMonitor().pollAsync(service("HTTP"), parameters).get(10, TimeUnit.SECONDS);
+        assertEquals(status.toString(), PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertTrue(status.getReason(), status.getReason().startsWith("HTTP response value: 404."));
+
+        parameters.put("response", "400-499");
+        final PollStatus available = new HttpMonitor().pollAsync(service("HTTP"), parameters).get(10, TimeUnit.SECONDS);
+        assertTrue(available.toString(), available.isAvailable());
+    }
+
+    @Test
+    public void testDns() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0, LOCALHOST)) {
+            m_serverThread = new Thread(() -> {
+                try {
+                    // Answer two queries
+                    for (int i = 0; i < 2; i++) {
+                        final DatagramPacket packet = new DatagramPacket(new byte[512], 512);
+                        socket.receive(packet);
+                        final Message query = new Message(packet.getData());
+                        final Record question = query.getQuestion();
+                        final Message response = new Message(query.getHeader().getID());
+                        response.getHeader().setFlag(Flags.QR);
+                        response.addRecord(question, Section.QUESTION);
+                        response.addRecord(new ARecord(question.getName(), DClass.IN, 60, LOCALHOST), Section.ANSWER);
+                        final byte[] bytes = response.toWire();
+                        socket.send(new DatagramPacket(bytes, bytes.length, packet.getSocketAddress()));
+                    }
+                } catch (IOException e) {
+                    // The test fails on its own
+                }
+            });
+            m_serverThread.start();
+
+            final Map<String, Object> parameters = parameters(socket.getLocalPort());
+            parameters.put("lookup", "localhost");
+            final PollStatus status = new DnsMonitor().pollAsync(service("DNS"), parameters).get(10, TimeUnit.SECONDS);
+            assertTrue(status.toString(), status.isAvailable());
+
+            parameters.put("min-answers", "2");
+            final PollStatus unavailable = new DnsMonitor().pollAsync(service("DNS"), parameters).get(10, TimeUnit.SECONDS);
+            assertEquals(unavailable.toString(), PollStatus.SERVICE_UNAVAILABLE, unavailable.getStatusCode());
+            assertEquals("Response contained only 1 answer(s), but at least 2 answers(s) are needed.", unavailable.getReason());
+        }
+    }
+
+    @Test
+    public void testServerThatNeverAnswers() throws Exception {
+        final AtomicInteger connections = serveSilently();
+
+        final Map<String, Object> parameters = parameters(m_serverSocket.getLocalPort());
+        parameters.put("banner", "SSH");
+        parameters.put("retry", "2");
+        parameters.put("timeout", "300");
+
+        final long start = System.nanoTime();
+        final PollStatus status = new TcpMonitor().pollAsync(service("TCP"), parameters).get(10, TimeUnit.SECONDS);
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(status.toString(), PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        // Every attempt waits for the read timeout
+        assertEquals(3, connections.get());
+        assertTrue("Completed after " + elapsedMs + "ms", elapsedMs >= 3 * 300 - 50);
+    }
+
+    @Test
+    public void testHttpServerThatNeverAnswers() throws Exception {
+        final AtomicInteger connections = serveSilently();
+
+        final Map<String, Object> parameters = parameters(m_serverSocket.getLocalPort());
+        parameters.put("url", "/");
+        parameters.put("retry", "2");
+        parameters.put("timeout", "300");
+
+        final long start = System.nanoTime();
+        final PollStatus status = new HttpMonitor().pollAsync(service("HTTP"), parameters).get(10, TimeUnit.SECONDS);
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Like the blocking monitor, a server that accepts the connection but does not answer is unresponsive
+        assertEquals(status.toString(), PollStatus.SERVICE_UNRESPONSIVE, status.getStatusCode());
+        assertEquals("HTTP connection timeout", status.getReason());
+        assertEquals(3, connections.get());
+        assertTrue("Completed after " + elapsedMs + "ms", elapsedMs >= 3 * 300 - 50);
+    }
+
+    @Test
+    public void testReadTimeoutIsRestartedByReads() throws Exception {
+        // Write a byte every 100ms for half a second, then stay silent
+        m_serverSocket = new ServerSocket(0, 10, LOCALHOST);
+        m_serverThread = new Thread(() -> {
+            try {
+                final Socket socket = m_serverSocket.accept();
+                m_silentSockets.add(socket);
+                for (int i = 0; i < 5; i++) {
+                    socket.getOutputStream().write('.');
+                    socket.getOutputStream().flush();
+                    Thread.sleep(100);
+                }
+            } catch (IOException | InterruptedException e) {
+                // Closed by tearDown()
+            }
+        });
+        m_serverThread.start();
+
+        final AtomicInteger reads = new AtomicInteger();
+        final CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        final long start = System.nanoTime();
+        final ChannelFuture connectFuture = AsyncMonitorSupport.connect(LOCALHOST, m_serverSocket.getLocalPort(), 3000, new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline().addLast(AsyncMonitorSupport.newReadTimeoutHandler(200), new ChannelInboundHandlerAdapter() {
+                    @Override
+                    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                        reads.incrementAndGet();
+                        ReferenceCountUtil.release(msg);
+                    }
+
+                    @Override
+                    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                        failure.complete(cause);
+                    }
+                });
+            }
+        });
+
+        final Throwable cause = failure.get(10, TimeUnit.SECONDS);
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(ReadTimeoutException.INSTANCE, cause);
+        assertTrue(reads.get() > 1);
+        assertTrue("Timed out after " + elapsedMs + "ms", elapsedMs >= 400 + 200);
+        // The channel is closed once timed out
+        connectFuture.channel().closeFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testStrictTimeoutDelaysRetries() throws Exception {
+        assertTrue(minDelayBetweenAttempts(true) >= 250);
+        assertTrue(minDelayBetweenAttempts(false) < 250);
+    }
+
+    /**
+     * Runs three attempts that fail immediately.
+     *
+     * @return the shortest delay between the start of two attempts, in milliseconds
+     */
+    private static long minDelayBetweenAttempts(final boolean strictTimeout) throws Exception {
+        final Map<String, Object> parameters = new TreeMap<>();
+        parameters.put("retry", "2");
+        parameters.put("timeout", "300");
+        parameters.put("strict-timeout", Boolean.toString(strictTimeout));
+
+        final List<Long> starts = Collections.synchronizedList(new ArrayList<>());
+        final PollStatus status = AsyncMonitorSupport.retry(parameters, new TimeoutTracker(parameters, 0, 3000), PollStatus.unavailable(), tracker -> {
+            starts.add(System.nanoTime());
+            return CompletableFuture.completedFuture(Attempt.retry(PollStatus.unavailable("attempt " + starts.size())));
+        }).get(10, TimeUnit.SECONDS);
+
+        assertEquals("attempt 3", status.getReason());
+        assertEquals(3, starts.size());
+        long minDelay = Long.MAX_VALUE;
+        for (int i = 1; i < starts.size(); i++) {
+            minDelay = Math.min(minDelay, TimeUnit.NANOSECONDS.toMillis(starts.get(i) - starts.get(i - 1)));
+        }
+        return minDelay;
+    }
+
+    @Test
+    public void testRetryFailsWithTheAttempt() throws Exception {
+        final Map<String, Object> parameters = new TreeMap<>();
+        parameters.put("retry", "2");
+        final IllegalStateException error = new IllegalStateException("failed");
+        final CompletableFuture<PollStatus> result = AsyncMonitorSupport.retry(parameters, new TimeoutTracker(parameters, 0, 3000), PollStatus.unavailable(),
+                tracker -> CompletableFuture.failedFuture(error));
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            fail("The poll must complete exceptionally");
+        } catch (final ExecutionException e) {
+            assertEquals(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void testHttps() throws Exception {
+        final int port = serveTls("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\nhello\r\n", true);
+
+        final Map<String, Object> parameters = parameters(port);
+        parameters.put("url", "/");
+        parameters.put("response-text", "hello");
+        final PollStatus status = new HttpsMonitor().pollAsync(service("HTTPS"), parameters).get(10, TimeUnit.SECONDS);
+        assertTrue(status.toString(), status.isAvailable());
+
+        // The TLS server does not accept plain HTTP
+        final PollStatus plain = new HttpMonitor().pollAsync(service("HTTP"), parameters).get(10, TimeUnit.SECONDS);
+        assertFalse(plain.toString(), plain.isAvailable());
+    }
+
+    @Test
+    public void testSslCert() throws Exception {
+        final int port = serveTls("", false);
+
+        final Map<String, Object> parameters = parameters(port);
+        parameters.put("days", "5");
+        final PollStatus valid = sslCertMonitorAt(CERTIFICATE_EXPIRE_DATE - TimeUnit.DAYS.toMillis(6))
+                .pollAsync(service("SSLCert"), parameters).get(10, TimeUnit.SECONDS);
+        assertTrue(valid.toString(), valid.isAvailable());
+
+        final PollStatus expiring = sslCertMonitorAt(CERTIFICATE_EXPIRE_DATE - TimeUnit.DAYS.toMillis(4))
+                .pollAsync(service("SSLCert"), parameters).get(10, TimeUnit.SECONDS);
+        assertEquals(expiring.toString(), PollStatus.SERVICE_UNAVAILABLE, expiring.getStatusCode());
+
+        final PollStatus expired = sslCertMonitorAt(CERTIFICATE_EXPIRE_DATE + TimeUnit.DAYS.toMillis(1))
+                .pollAsync(service("SSLCert"), parameters).get(10, TimeUnit.SECONDS);
+        assertEquals(expired.toString(), PollStatus.SERVICE_UNAVAILABLE, expired.getStatusCode());
+    }
+
+    @Test
+    public void testSslCertAgainstAServerThatNeverAnswers() throws Exception {
+        final AtomicInteger connections = serveSilently();
+
+        final Map<String, Object> parameters = parameters(m_serverSocket.getLocalPort());
+        parameters.put("retry", "1");
+        parameters.put("timeout", "300");
+        final PollStatus status = new SSLCertMonitor().pollAsync(service("SSLCert"), parameters).get(10, TimeUnit.SECONDS);
+        assertEquals(status.toString(), PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertEquals(2, connections.get());
+    }
+
+    private static SSLCertMonitor sslCertMonitorAt(final long now) {
+        return new SSLCertMonitor() {
+            @Override
+            protected Calendar getCalendarInstance() {
+                final Calendar cal = GregorianCalendar.getInstance();
+                cal.setTimeInMillis(now);
+                return cal;
+            }
+        };
+    }
+
+    private static MonitoredService service(final String svcName) throws Exception {
+        return MonitorTestUtils.getMonitoredService(1, LOCALHOST, svcName);
+    }
+
+    private static Map<String, Object> parameters(final int port) {
+        final Map<String, Object> parameters = new TreeMap<>();
+        parameters.put("port", Integer.toString(port));
+        parameters.put("retry", "0");
+        parameters.put("timeout", "3000");
+        return parameters;
+    }
+
+    /**
+     * Accepts connections until the test ends, and writes the given response to each of them.
+     *
+     * @param readRequest read the request up to the blank line that ends its headers first
+     */
+    private int serve(final String response, final boolean readRequest) throws IOException {
+        return serve(new ServerSocket(0, 10, LOCALHOST), response, readRequest);
+    }
+
+    /**
+     * Same as {@link #serve(String, boolean)}, over TLS.
+     */
+    private int serveTls(final String response, final boolean readRequest) throws Exception {
+        final KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream in = getClass().getResourceAsStream("/JUnitHttpServer.keystore")) {
+            keyStore.load(in, "opennms".toCharArray());
+        }
+        final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "opennms".toCharArray());
+        final SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return serve(sslContext.getServerSocketFactory().createServerSocket(0, 10, LOCALHOST), response, readRequest);
+    }
+
+    /**
+     * Accepts connections until the test ends, and never writes anything to them.
+     *
+     * @return the number of accepted connections
+     */
+    private AtomicInteger serveSilently() throws IOException {
+        final AtomicInteger connections = new AtomicInteger();
+        m_serverSocket = new ServerSocket(0, 10, LOCALHOST);
+        m_serverThread = new Thread(() -> {
+            while (!m_serverSocket.isClosed()) {
+                try {
+                    m_silentSockets.add(m_serverSocket.accept());
+                    connections.incrementAndGet();
+                } catch (IOException e) {
+                    // Closed by tearDown()
+                }
+            }
+        });
+        m_serverThread.start();
+        return connections;
+    }
+
+    private int serve(final ServerSocket serverSocket, final String response, final boolean readRequest) {
+        m_serverSocket = serverSocket;
+        m_serverThread = new Thread(() -> {
+            while (!m_serverSocket.isClosed()) {
+                try (Socket socket = m_serverSocket.accept()) {
+                    if (socket instanceof SSLSocket) {
+                        ((SSLSocket) socket).startHandshake();
+                    }
+                    if (readRequest) {
+                        readHeaders(socket.getInputStream());
+                    }
+                    final OutputStream out = socket.getOutputStream();
+                    out.write(response.getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                } catch (IOException e) {
+                    // Closed by tearDown()
+                }
+            }
+        });
+        m_serverThread.start();
+        return m_serverSocket.getLocalPort();
+    }
+
+    private static void readHeaders(final InputStream in) throws IOException {
+        int matched = 0;
+        final byte[] end = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        int b;
+        while (matched < end.length && (b = in.read()) != -1) {
+            matched = (b == end[matched]) ? matched + 1 : (b == end[0] ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.listeners;
+
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadFactory;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.unix.UnixChannel;
+
+/**
+ * Isolates all references to Netty's native epoll transport, so that the {@link UdpListener}
+ * can still be loaded and fall back to NIO if the transport's classes are not available.
+ */
+final class EpollTransport {
+
+    private EpollTransport() {
+    }
+
+    static boolean isAvailable() {
+        try {
+            return Epoll.isAvailable();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    static String unavailabilityCause() {
+        try {
+            final Throwable cause = Epoll.unavailabilityCause();
+            return cause != null ? cause.getMessage() : null;
+        } catch (LinkageError e) {
+            return "Netty's epoll transport is not installed";
+        }
+    }
+
+    static EventLoopGroup newEventLoopGroup(final int threads, final ThreadFactory threadFactory) {
+        return new EpollEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * Configures the bootstrap to bind a socket with SO_REUSEPORT, so that multiple sockets can share the
+     * same port and the kernel distributes the datagrams between them.
+     *
+     * If more than one datagram may be read at once, the receive buffers are sized to hold that many
+     * datagrams and are filled using recvmmsg.
+     */
+    static Bootstrap configure(final Bootstrap bootstrap, final int maxPacketSize, final int maxDatagramsPerRead) {
+        bootstrap.channel(EpollDatagramChannel.class)
+                .option(EpollChannelOption.SO_REUSEPORT, true)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        if (maxDatagramsPerRead > 1) {
+            bootstrap.option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, maxPacketSize)
+                    .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(maxPacketSize * maxDatagramsPerRead));
+        } else {
+            bootstrap.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(maxPacketSize));
+        }
+        return bootstrap;
+    }
+
+    static OptionalInt fd(final Channel channel) {
+        if (channel instanceof UnixChannel) {
+            return OptionalInt.of(((UnixChannel) channel).fd().intValue());
+        }
+        return OptionalInt.empty();
+    }
+}
@@ -30,23 +30,29 @@ package org.opennms.netmgt.telemetry.listeners;
 
 import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 
 import org.opennms.netmgt.telemetry.api.receiver.Listener;
 import org.opennms.netmgt.telemetry.api.receiver.Parser;
 import org.opennms.netmgt.telemetry.listeners.utils.BufferUtils;
+import org.opennms.netmgt.telemetry.listeners.utils.UdpSocketStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.swrve.ratelimitedlogger.RateLimitedLog;
 
 import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
@@ -71,20 +77,25 @@ public class UdpListener implements Listener {
 
     private final String name;
     private final List<UdpParser> parsers;
+    private final MetricRegistry metrics;
 
     private final Meter packetsReceived;
 
     private EventLoopGroup bossGroup;
-    private ChannelFuture socketFuture;
+    private final List<Channel> channels = new ArrayList<>();
+    private final List<String> socketMetricNames = new ArrayList<>();
 
     private String host = null;
     private int port = 50000;
     private int maxPacketSize = 8096;
+    private boolean nativeTransport = false;
+    private int sockets = 0;
+    private int maxDatagramsPerRead = 16;
 
     public UdpListener(final String name, final List<UdpParser> parsers, final MetricRegistry metrics) {
         this.name = Objects.requireNonNull(name);
         this.parsers = Objects.requireNonNull(parsers);
-        Objects.requireNonNull(metrics);
+        this.metrics = Objects.requireNonNull(metrics);
 
         if (this.parsers.isEmpty()) {
             throw new IllegalArgumentException("At least 1 parsers must be defined");
@@ -99,10 +110,27 @@ public class UdpListener implements Listener {
     }
 
     public void start() throws InterruptedException {
+        final boolean useNativeTransport = this.nativeTransport && EpollTransport.isAvailable();
+        if (this.nativeTransport && !useNativeTransport) {
+            LOG.warn("Native transport requested for listener {}, but it is not available: {}. Falling back to NIO.",
+                    name, EpollTransport.unavailabilityCause());
+        }
+
+        // Only the native transport allows multiple sockets to be bound to the same port
+        final int socketCount = useNativeTransport
+                ? (this.sockets > 0 ? this.sockets : Runtime.getRuntime().availableProcessors())
+                : 1;
+
         // Netty defaults to 2 * num cores when the number of threads is set to 0
-        this.bossGroup = new NioEventLoopGroup(0, new ThreadFactoryBuilder()
-                .setNameFormat("telemetryd-nio-" + name + "-%d")
-                .build() );
+        if (useNativeTransport) {
+            this.bossGroup = EpollTransport.newEventLoopGroup(0, new ThreadFactoryBuilder()
+                    .setNameFormat("telemetryd-epoll-" + name + "-%d")
+                    .build());
+        } else {
+            this.bossGroup = new NioEventLoopGroup(0, new ThreadFactoryBuilder()
+                    .setNameFormat("telemetryd-nio-" + name + "-%d")
+                    .build());
+        }
 
         this.parsers.forEach(parser -> parser.start(this.bossGroup));
 
@@ -110,20 +138,51 @@ public class UdpListener implements Listener {
                 ? SocketUtils.socketAddress(this.host, this.port)
                 : new InetSocketAddress(this.port);
 
-        this.socketFuture = new Bootstrap()
+        final Bootstrap bootstrap = new Bootstrap()
                 .group(this.bossGroup)
-                .channel(NioDatagramChannel.class)
                 .option(ChannelOption.SO_REUSEADDR, true)
-                .option(ChannelOption.SO_RCVBUF, Integer.MAX_VALUE)
-                .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(this.maxPacketSize))
-                .handler(new DefaultChannelInitializer())
-                .bind(address)
-                .sync();
+                .option(ChannelOption.SO_RCVBUF, Integer.MAX_VALUE);
+        if (useNativeTransport) {
+            EpollTransport.configure(bootstrap, this.maxPacketSize, Math.max(1, this.maxDatagramsPerRead));
+        } else {
+            bootstrap.channel(NioDatagramChannel.class)
+                    .option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(this.maxPacketSize));
+        }
+
+        for (int i = 0; i < socketCount; i++) {
+            final String socketName = "socket-" + i;
+            final Meter socketPacketsReceived = registerSocketMetric(socketName, "packetsReceived", new Meter());
+
+            final Channel channel = bootstrap.clone()
+                    .handler(new DefaultChannelInitializer(socketPacketsReceived))
+                    .bind(address)
+                    .sync()
+                    .channel();
+            this.channels.add(channel);
+
+            if (UdpSocketStats.isSupported()) {
+                // Sockets sharing a port can only be told apart by their inode
+                final OptionalLong inode = useNativeTransport ? socketInode(channel) : OptionalLong.empty();
+                final int localPort = ((InetSocketAddress) channel.localAddress()).getPort();
+                registerSocketMetric(socketName, "drops", (Gauge<Long>) () -> inode.isPresent()
+                        ? UdpSocketStats.dropsForInode(inode.getAsLong())
+                        : UdpSocketStats.dropsForPort(localPort));
+            }
+        }
+
+        LOG.info("Listener {} bound {} socket(s) to {} using the {} transport.",
+                name, socketCount, address, useNativeTransport ? "epoll" : "NIO");
     }
 
     public void stop() throws InterruptedException {
-        LOG.info("Closing channel...");
-        this.socketFuture.channel().close().sync();
+        LOG.info("Closing channels...");
+        for (final Channel channel : this.channels) {
+            channel.close().sync();
+        }
+        this.channels.clear();
+
+        this.socketMetricNames.forEach(this.metrics::remove);
+        this.socketMetricNames.clear();
 
         this.parsers.forEach(Parser::stop);
 
@@ -131,6 +190,19 @@ public class UdpListener implements Listener {
         this.bossGroup.shutdownGracefully().sync();
     }
 
+    private static OptionalLong socketInode(final Channel channel) {
+        final OptionalInt fd = EpollTransport.fd(channel);
+        return fd.isPresent() ? UdpSocketStats.inodeOf(fd.getAsInt()) : OptionalLong.empty();
+    }
+
+    private <T extends Metric> T registerSocketMetric(final String socketName, final String metricName, final T metric) {
+        final String fullName = MetricRegistry.name("listeners", name, socketName, metricName);
+        this.metrics.remove(fullName);
+        this.metrics.register(fullName, metric);
+        this.socketMetricNames.add(fullName);
+        return metric;
+    }
+
     public String getHost() {
         return host;
     }
@@ -155,6 +227,30 @@ public class UdpListener implements Listener {
         this.maxPacketSize = maxPacketSize;
     }
 
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    public void setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+    }
+
+    public int getSockets() {
+        return sockets;
+    }
+
+    public void setSockets(int sockets) {
+        this.sockets = sockets;
+    }
+
+    public int getMaxDatagramsPerRead() {
+        return maxDatagramsPerRead;
+    }
+
+    public void setMaxDatagramsPerRead(int maxDatagramsPerRead) {
+        this.maxDatagramsPerRead = maxDatagramsPerRead;
+    }
+
     @Override
     public String getName() {
         return name;
@@ -171,11 +267,16 @@ public class UdpListener implements Listener {
     }
 
     private class DefaultChannelInitializer extends ChannelInitializer<DatagramChannel> {
+        private final Meter socketPacketsReceived;
+
+        private DefaultChannelInitializer(final Meter socketPacketsReceived) {
+            this.socketPacketsReceived = Objects.requireNonNull(socketPacketsReceived);
+        }
 
         @Override
         protected void initChannel(DatagramChannel ch) {
             // Accounting
-            ch.pipeline().addFirst(new AccountingHandler());
+            ch.pipeline().addFirst(new AccountingHandler(socketPacketsReceived));
 
             if (parsers.size() == 1) {
                 final UdpParser parser = parsers.get(0);
@@ -209,9 +310,16 @@ public class UdpListener implements Listener {
     }
 
     private class AccountingHandler extends ChannelInboundHandlerAdapter {
+        private final Meter socketPacketsReceived;
+
+        private AccountingHandler(final Meter socketPacketsReceived) {
+            this.socketPacketsReceived = socketPacketsReceived;
+        }
+
         @Override
         public  void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
             packetsReceived.mark();
+            socketPacketsReceived.mark();
             super.channelRead(ctx, msg);
         }
     }
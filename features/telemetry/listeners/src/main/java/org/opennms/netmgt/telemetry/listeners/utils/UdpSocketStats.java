@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.listeners.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.OptionalLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the kernel's statistics of UDP sockets from <i>/proc/net/udp</i> and <i>/proc/net/udp6</i>.
+ *
+ * Only available on Linux. The most interesting value is the number of datagrams which were dropped because
+ * the socket's receive buffer was full, which is not visible to the application otherwise.
+ */
+public final class UdpSocketStats {
+    private static final Logger LOG = LoggerFactory.getLogger(UdpSocketStats.class);
+
+    private static final Path[] PROC_NET_UDP = { Paths.get("/proc/net/udp"), Paths.get("/proc/net/udp6") };
+
+    private static final Pattern SOCKET_LINK = Pattern.compile("socket:\\[(\\d+)]");
+
+    // Column indices in /proc/net/udp[6]
+    private static final int LOCAL_ADDRESS = 1;
+    private static final int INODE = 9;
+    private static final int DROPS = 12;
+
+    private UdpSocketStats() {
+    }
+
+    public static boolean isSupported() {
+        return Files.isReadable(PROC_NET_UDP[0]);
+    }
+
+    /**
+     * Returns the inode of the socket referenced by the given file descriptor of this process.
+     */
+    public static OptionalLong inodeOf(final int fd) {
+        try {
+            final Matcher m = SOCKET_LINK.matcher(Files.readSymbolicLink(Paths.get("/proc/self/fd", Integer.toString(fd))).toString());
+            return m.matches() ? OptionalLong.of(Long.parseLong(m.group(1))) : OptionalLong.empty();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.debug("Failed to determine inode of file descriptor {}.", fd, e);
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Returns the number of datagrams dropped by the socket with the given inode.
+     */
+    public static long dropsForInode(final long inode) {
+        return drops(inode(inode));
+    }
+
+    /**
+     * Returns the number of datagrams dropped by all sockets bound to the given local port.
+     */
+    public static long dropsForPort(final int port) {
+        return drops(port(port));
+    }
+
+    static Predicate<String[]> inode(final long inode) {
+        return columns -> Long.parseLong(columns[INODE]) == inode;
+    }
+
+    static Predicate<String[]> port(final int port) {
+        return columns -> localPort(columns[LOCAL_ADDRESS]) == port;
+    }
+
+    private static long drops(final Predicate<String[]> filter) {
+        long drops = 0;
+        for (final Path path : PROC_NET_UDP) {
+            if (!Files.isReadable(path)) {
+                continue;
+            }
+            try (Stream<String> lines = Files.lines(path)) {
+                drops += drops(lines, filter);
+            } catch (IOException | UncheckedIOException e) {
+                LOG.debug("Failed to read {}.", path, e);
+            }
+        }
+        return drops;
+    }
+
+    static long drops(final Stream<String> lines, final Predicate<String[]> filter) {
+        return lines.skip(1) // Header
+                .map(line -> line.trim().split("\\s+"))
+                .filter(columns -> columns.length > DROPS)
+                .filter(filter)
+                .mapToLong(columns -> Long.parseLong(columns[DROPS]))
+                .sum();
+    }
+
+    private static int localPort(final String localAddress) {
+        return Integer.parseInt(localAddress.substring(localAddress.lastIndexOf(':') + 1), 16);
+    }
+}
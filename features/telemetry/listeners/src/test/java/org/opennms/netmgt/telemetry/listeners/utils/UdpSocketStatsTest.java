@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.telemetry.listeners.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class UdpSocketStatsTest {
+
+    private static final String[] PROC_NET_UDP = {
+            "   sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode ref pointer drops",
+            "  877: 00000000:2382 00000000:0000 07 00000000:00000000 00:00000000 00000000   994        0 35731 2 0000000000000000 17",
+            " 1042: 00000000:1282 00000000:0000 07 00000000:00034000 00:00000000 00000000   994        0 35733 2 0000000000000000 1234",
+            " 2310: 3500007F:0035 00000000:0000 07 00000000:00000000 00:00000000 00000000   101        0 18021 2 0000000000000000 0",
+    };
+
+    private static final String[] PROC_NET_UDP6 = {
+            "  sl  local_address                         remote_address                        st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode ref pointer drops",
+            "  877: 00000000000000000000000000000000:2382 00000000000000000000000000000000:0000 07 00000000:00000000 00:00000000 00000000   994        0 35732 2 0000000000000000 5",
+            " 2311: 00000000000000000000000001000000:0035 00000000000000000000000000000000:0000 07 00000000:00000000 00:00000000 00000000   101        0 18022 2 0000000000000000 3",
+    };
+
+    @Test
+    public void canSumDropsOfIpv4Sockets() {
+        assertEquals(17, UdpSocketStats.drops(Stream.of(PROC_NET_UDP), UdpSocketStats.port(9090)));
+        assertEquals(1234, UdpSocketStats.drops(Stream.of(PROC_NET_UDP), UdpSocketStats.port(4738)));
+        assertEquals(1234, UdpSocketStats.drops(Stream.of(PROC_NET_UDP), UdpSocketStats.inode(35733)));
+    }
+
+    @Test
+    public void canSumDropsOfIpv6Sockets() {
+        assertEquals(5, UdpSocketStats.drops(Stream.of(PROC_NET_UDP6), UdpSocketStats.port(9090)));
+        assertEquals(3, UdpSocketStats.drops(Stream.of(PROC_NET_UDP6), UdpSocketStats.inode(18022)));
+    }
+
+    @Test
+    public void returnsZeroWithoutMatchingSocket() {
+        assertEquals(0, UdpSocketStats.drops(Stream.of(PROC_NET_UDP), UdpSocketStats.port(10162)));
+        assertEquals(0, UdpSocketStats.drops(Stream.of(PROC_NET_UDP6), UdpSocketStats.inode(35731)));
+        // Only the header
+        assertEquals(0, UdpSocketStats.drops(Stream.of(PROC_NET_UDP[0]), columns -> true));
+    }
+}
@@ -56,6 +56,7 @@ import io.netty.buffer.ByteBuf;
 public abstract class UdpParserBase extends ParserBase implements UdpParser {
     public final static long HOUSEKEEPING_INTERVAL = 60000;
 
+    private final MetricRegistry metricRegistry;
     private final Meter packetsReceived;
     private final Counter parserErrors;
 
@@ -73,6 +74,7 @@ public abstract class UdpParserBase extends ParserBase implements UdpParser {
                          final MetricRegistry metricRegistry) {
         super(protocol, name, dispatcher, eventForwarder, identity, dnsResolver, metricRegistry);
 
+        this.metricRegistry = metricRegistry;
         this.packetsReceived = metricRegistry.meter(MetricRegistry.name("parsers",  name, "packetsReceived"));
         this.parserErrors = metricRegistry.counter(MetricRegistry.name("parsers",  name, "parserErrors"));
 
@@ -107,7 +109,8 @@ public abstract class UdpParserBase extends ParserBase implements UdpParser {
     @Override
     public void start(final ScheduledExecutorService executorService) {
         super.start(executorService);
-        this.sessionManager = new UdpSessionManager(this.templateTimeout, this::sequenceNumberTracker);
+        this.sessionManager = new UdpSessionManager(this.templateTimeout, this::sequenceNumberTracker,
+                this.metricRegistry, MetricRegistry.name("parsers", this.getName()));
         this.housekeepingFuture = executorService.scheduleAtFixedRate(this.sessionManager::doHousekeeping,
                 HOUSEKEEPING_INTERVAL,
                 HOUSEKEEPING_INTERVAL,
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.protocols.netflow.parser.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * A hashed timer wheel used to expire elements without scanning all of them.
+ *
+ * Elements are put into the bucket of the tick their deadline falls into. Advancing the wheel only visits the buckets
+ * of the ticks passed since the last advance. The deadline of an element is queried again when its bucket is visited,
+ * so elements can be kept alive by pushing their deadline forward without rescheduling them: such elements are moved
+ * to the bucket of their new deadline lazily. A negative deadline marks an element as cancelled and drops it from the
+ * wheel.
+ *
+ * Scheduling is thread-safe. Advancing the wheel is expected to be done by a single housekeeping thread.
+ */
+class TimerWheel<T> {
+    private final long tickMillis;
+    private final int mask;
+    private final Queue<T>[] buckets;
+
+    private final ToLongFunction<T> deadline;
+    private final Consumer<T> expire;
+
+    private volatile long lastTick;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(final long tickMillis,
+               final int size,
+               final long now,
+               final ToLongFunction<T> deadline,
+               final Consumer<T> expire) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("size must be a power of two");
+        }
+
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            this.buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+
+        this.deadline = deadline;
+        this.expire = expire;
+
+        // The current tick has not been visited yet
+        this.lastTick = now / tickMillis - 1;
+    }
+
+    void schedule(final T element, final long deadline) {
+        // Deadlines in already visited ticks are handled by the next advance
+        final long tick = Math.max(deadline / this.tickMillis, this.lastTick + 1);
+        this.buckets[(int) (tick & this.mask)].add(element);
+    }
+
+    /**
+     * Visits all buckets up to the given time and expires all elements with a passed deadline.
+     *
+     * @return the number of expired elements
+     */
+    synchronized int advance(final long now) {
+        final long nowTick = now / this.tickMillis;
+
+        // Each bucket has to be visited at most once, even if a lot of time has passed
+        long tick = Math.max(this.lastTick + 1, nowTick - this.mask);
+
+        int expired = 0;
+        final List<T> drained = new ArrayList<>();
+        for (; tick <= nowTick; tick++) {
+            final Queue<T> bucket = this.buckets[(int) (tick & this.mask)];
+            for (T element = bucket.poll(); element != null; element = bucket.poll()) {
+                drained.add(element);
+            }
+
+            this.lastTick = tick;
+
+            for (final T element : drained) {
+                final long deadline = this.deadline.applyAsLong(element);
+                if (deadline < 0) {
+                    continue;
+                }
+
+                if (deadline > now) {
+                    this.schedule(element, deadline);
+                } else {
+                    this.expire.accept(element);
+                    expired++;
+                }
+            }
+            drained.clear();
+        }
+
+        return expired;
+    }
+}
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.telemetry.protocols.netflow.parser.session;
 
 import java.net.InetAddress;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -40,6 +41,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -51,134 +53,169 @@ import org.opennms.netmgt.telemetry.protocols.netflow.parser.state.OptionState;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.state.ParserState;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.state.TemplateState;
 
-import com.google.common.collect.Iterables;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
 import com.google.common.collect.Maps;
 
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+
+/**
+ * Keeps track of the templates, options and sequence numbers of all exporters sending to a UDP parser.
+ *
+ * The state is sharded by exporter: each {@link SessionKey} maps to an {@link Exporter} holding its templates in a
+ * map keyed by the packed observation domain and template ID. These maps are replaced on modification, which happens
+ * rarely compared to lookups, so that lookups are neither locked nor allocating. Templates are expired using a
+ * {@link TimerWheel} instead of scanning all templates on housekeeping. An exporter is forgotten, including its
+ * metrics, once it has no templates left and has not been seen within the timeout.
+ */
 public class UdpSessionManager {
-    final ConcurrentMap<TemplateKey, TimeWrapper<TemplateOptions>> templates = Maps.newConcurrentMap();
-    private final Map<DomainKey, SequenceNumberTracker> sequenceNumbers = Maps.newConcurrentMap();
+    /**
+     * Number of ticks in the expiration wheel - the length of a tick is derived from the timeout.
+     */
+    private static final int WHEEL_SIZE = 256;
+
+    private final ConcurrentMap<SessionKey, Exporter> exporters = Maps.newConcurrentMap();
+    private final AtomicInteger templateCount = new AtomicInteger();
+
     private final Duration timeout;
     private final Supplier<SequenceNumberTracker> sequenceNumberTracker;
+    private final MetricRegistry metricRegistry;
+    private final String metricPrefix;
+    private final Clock clock;
+
+    private final TimerWheel<TemplateEntry> expirations;
+    private final TimerWheel<Exporter> idleExpirations;
 
     public UdpSessionManager(final Duration timeout, final Supplier<SequenceNumberTracker> sequenceNumberTracker) {
-        this.timeout = timeout;
-        this.sequenceNumberTracker = Objects.requireNonNull(sequenceNumberTracker);
+        this(timeout, sequenceNumberTracker, null, null);
     }
 
-    public void doHousekeeping() {
-        final Instant timeout = Instant.now().minus(this.timeout);
-        this.removeTemplateIf(e -> e.getValue().time.isBefore(timeout));
+    /**
+     * @param metricRegistry registry used to publish per-exporter template metrics, may be {@code null}
+     * @param metricPrefix prefix of the per-exporter metric names
+     */
+    public UdpSessionManager(final Duration timeout,
+                             final Supplier<SequenceNumberTracker> sequenceNumberTracker,
+                             final MetricRegistry metricRegistry,
+                             final String metricPrefix) {
+        this(timeout, sequenceNumberTracker, metricRegistry, metricPrefix, Clock.systemUTC());
     }
 
-    private void removeTemplateIf(final Predicate<Map.Entry<TemplateKey, TimeWrapper<TemplateOptions>>> predicate) {
-        UdpSessionManager.this.templates.entrySet().removeIf(predicate);
+    UdpSessionManager(final Duration timeout,
+                      final Supplier<SequenceNumberTracker> sequenceNumberTracker,
+                      final MetricRegistry metricRegistry,
+                      final String metricPrefix,
+                      final Clock clock) {
+        this.timeout = Objects.requireNonNull(timeout);
+        this.sequenceNumberTracker = Objects.requireNonNull(sequenceNumberTracker);
+        this.metricRegistry = metricRegistry;
+        this.metricPrefix = metricPrefix;
+        this.clock = Objects.requireNonNull(clock);
+
+        this.expirations = new TimerWheel<>(Math.max(1L, timeout.toMillis() / WHEEL_SIZE), WHEEL_SIZE, this.clock.millis(),
+                entry -> entry.removed ? -1L : entry.refreshed + this.timeout.toMillis(),
+                entry -> entry.exporter.expire(entry));
+        this.idleExpirations = new TimerWheel<>(Math.max(1L, timeout.toMillis() / WHEEL_SIZE), WHEEL_SIZE, this.clock.millis(),
+                exporter -> exporter.retired ? -1L : exporter.seen + this.timeout.toMillis(),
+                Exporter::expireIdle);
+    }
+
+    public void doHousekeeping() {
+        final long now = this.clock.millis();
+        this.expirations.advance(now);
+        this.idleExpirations.advance(now);
     }
 
     public Session getSession(final SessionKey sessionKey) {
-        return new UdpSession(sessionKey);
+        final Exporter exporter = this.exporter(sessionKey);
+        exporter.seen = this.clock.millis();
+        return exporter;
     }
 
     public void drop(final SessionKey sessionKey) {
-        removeTemplateIf(e -> Objects.equals(e.getKey().observationDomainId.sessionKey, sessionKey));
+        final Exporter exporter = this.exporters.get(sessionKey);
+        if (exporter != null) {
+            exporter.retire();
+        }
     }
 
     public int count() {
-        return this.templates.size();
+        return this.templateCount.get();
     }
 
     public Object dumpInternalState() {
         final ParserState.Builder parser = ParserState.builder();
 
-        final Map<DomainKey, List<Map.Entry<TemplateKey, TimeWrapper<TemplateOptions>>>> sessions = this.templates.entrySet().stream()
-                .collect(Collectors.groupingBy(e -> e.getKey().observationDomainId));
+        for (final Exporter exporter : this.exporters.values()) {
+            final Map<Long, List<TemplateEntry>> domains = exporter.templates.values().stream()
+                    .collect(Collectors.groupingBy(TemplateEntry::observationDomainId));
 
-        for (final var entry : sessions.entrySet()) {
-            final String key = String.format("%s#%s",
-                    entry.getKey().sessionKey.getDescription(),
-                    entry.getKey().observationDomainId);
+            for (final var domain : domains.entrySet()) {
+                final String key = String.format("%s#%s",
+                        exporter.sessionKey.getDescription(),
+                        domain.getKey());
 
-            final ExporterState.Builder exporter = ExporterState.builder(key);
+                final ExporterState.Builder state = ExporterState.builder(key);
 
-            entry.getValue().forEach(e -> {
-                exporter.withTemplate(TemplateState.builder(e.getKey().templateId).withInsertionTime(e.getValue().time));
-                e.getValue().wrapped.options.forEach((selectors, values) ->
-                        exporter.withOptions(OptionState.builder(e.getKey().templateId)
-                                .withInsertionTime(values.time)
-                                .withSelectors(selectors)
-                                .withValues(values.wrapped)));
-            });
+                domain.getValue().forEach(entry -> {
+                    state.withTemplate(TemplateState.builder(entry.templateId()).withInsertionTime(Instant.ofEpochMilli(entry.refreshed)));
+                    entry.options.forEach((selectors, values) ->
+                            state.withOptions(OptionState.builder(entry.templateId())
+                                    .withInsertionTime(values.time)
+                                    .withSelectors(selectors)
+                                    .withValues(values.wrapped)));
+                });
 
-            parser.withExporter(exporter);
+                parser.withExporter(state);
+            }
         }
 
         return parser.build();
     }
 
-    public interface SessionKey {
-        String getDescription();
-
-        InetAddress getRemoteAddress();
-    }
-
-    private final static class DomainKey {
-        public final SessionKey sessionKey;
-        public final long observationDomainId;
-
-        private DomainKey(final SessionKey sessionKey,
-                          final long observationDomainId) {
-            this.sessionKey = Objects.requireNonNull(sessionKey);
-            this.observationDomainId = observationDomainId;
+    /**
+     * Returns the template registered for the given exporter, observation domain and template ID.
+     */
+    Template lookupTemplate(final SessionKey sessionKey, final long observationDomainId, final int templateId) {
+        final Exporter exporter = this.exporters.get(sessionKey);
+        if (exporter == null) {
+            return null;
         }
 
-        @Override
-        public boolean equals(final Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (!(o instanceof DomainKey)) {
-                return false;
-            }
-
-            final DomainKey that = (DomainKey) o;
-            return Objects.equals(this.observationDomainId, that.observationDomainId) &&
-                   Objects.equals(this.sessionKey, that.sessionKey);
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(this.sessionKey, this.observationDomainId);
-        }
+        final TemplateEntry entry = exporter.templates.get(key(observationDomainId, templateId));
+        return entry != null ? entry.template : null;
     }
 
-    final static class TemplateKey {
-        public final DomainKey observationDomainId;
-        public final int templateId;
+    /**
+     * Returns the number of exporters for which state is kept.
+     */
+    int exporterCount() {
+        return this.exporters.size();
+    }
 
-        TemplateKey(final SessionKey sessionKey,
-                    final long observationDomainId,
-                    final int templateId) {
-            this.observationDomainId = new DomainKey(sessionKey, observationDomainId);
-            this.templateId = templateId;
-        }
+    private Exporter exporter(final SessionKey sessionKey) {
+        return this.exporters.computeIfAbsent(sessionKey, key -> {
+            final Exporter exporter = new Exporter(key);
+            // Registered up front, so that data received before any template is accounted for as template misses
+            exporter.registerMetrics();
+            this.idleExpirations.schedule(exporter, exporter.seen + this.timeout.toMillis());
+            return exporter;
+        });
+    }
 
-        @Override
-        public boolean equals(final Object o) {
-            if (this == o) {
-                return true;
-            }
-            if (!(o instanceof TemplateKey)) {
-                return false;
-            }
+    private static long key(final long observationDomainId, final int templateId) {
+        // Observation domain IDs are uint32 and template IDs are uint16
+        return (observationDomainId << 16) | (templateId & 0xFFFF);
+    }
 
-            final TemplateKey that = (TemplateKey) o;
-            return Objects.equals(this.observationDomainId, that.observationDomainId) &&
-                    Objects.equals(this.templateId, that.templateId);
-        }
+    public interface SessionKey {
+        String getDescription();
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(this.observationDomainId, this.templateId);
-        }
+        InetAddress getRemoteAddress();
     }
 
     public final static class TimeWrapper<T> {
@@ -191,53 +228,160 @@ public class UdpSessionManager {
         }
     }
 
-    public static class TemplateOptions {
-        public final Template template;
-        public final Map<Set<Value<?>>, TimeWrapper<List<Value<?>>>> options;
+    private static final class TemplateEntry {
+        private final Exporter exporter;
+        private final long key;
+
+        private final Map<Set<Value<?>>, TimeWrapper<List<Value<?>>>> options;
+
+        private volatile Template template;
+        private volatile long refreshed;
+        private volatile boolean removed;
+
+        private TemplateEntry(final Exporter exporter,
+                              final long key,
+                              final Template template,
+                              final Map<Set<Value<?>>, TimeWrapper<List<Value<?>>>> options,
+                              final long refreshed) {
+            this.exporter = exporter;
+            this.key = key;
+            this.template = template;
+            this.options = options;
+            this.refreshed = refreshed;
+        }
 
-        public TemplateOptions(final Template template) {
-            this.template = Objects.requireNonNull(template);
-            this.options = Maps.newConcurrentMap();
+        private long observationDomainId() {
+            return this.key >>> 16;
         }
 
-        public TemplateOptions(final Template template, Map<Set<Value<?>>, TimeWrapper<List<Value<?>>>> options) {
-            this.template = Objects.requireNonNull(template);
-            this.options = Objects.requireNonNull(options);
+        private int templateId() {
+            return (int) (this.key & 0xFFFF);
         }
     }
 
-    private final class UdpSession implements Session {
+    private final class Exporter implements Session {
         private final SessionKey sessionKey;
 
-        public UdpSession(final SessionKey sessionKey) {
+        // Copy-on-write maps guarded by this
+        private volatile LongObjectMap<TemplateEntry> templates = new LongObjectHashMap<>();
+        private volatile LongObjectMap<SequenceNumberTracker> sequenceNumbers = new LongObjectHashMap<>();
+
+        private volatile boolean retired = false;
+        private volatile long seen;
+
+        private List<String> metricNames;
+        private Meter templateLookups;
+        private Meter templateMisses;
+
+        private Exporter(final SessionKey sessionKey) {
             this.sessionKey = Objects.requireNonNull(sessionKey);
+            this.seen = UdpSessionManager.this.clock.millis();
         }
 
         @Override
         public void addTemplate(final long observationDomainId, final Template template) {
-            final TemplateKey key = new TemplateKey(this.sessionKey, observationDomainId, template.id);
-            UdpSessionManager.this.templates.compute(key, (k, wrapper) -> {
-                TemplateOptions newTemplateOptions;
-                if (wrapper == null) {
-                    newTemplateOptions = new TemplateOptions(template);
-                } else {
-                    // preserve the old option values
-                    newTemplateOptions = new TemplateOptions(template, wrapper.wrapped.options);
+            final long key = key(observationDomainId, template.id);
+            final long now = UdpSessionManager.this.clock.millis();
+
+            synchronized (this) {
+                if (this.retired) {
+                    // Lost a race against expiration - hand over to the exporter replacing this one
+                    UdpSessionManager.this.exporter(this.sessionKey).addTemplate(observationDomainId, template);
+                    return;
                 }
-                return new TimeWrapper<>(newTemplateOptions);
-            });
+
+                final TemplateEntry existing = this.templates.get(key);
+                if (existing != null) {
+                    // Refresh in place, preserving the old option values and the entry's place in the expiration wheel
+                    existing.template = template;
+                    existing.refreshed = now;
+                    return;
+                }
+
+                final TemplateEntry entry = new TemplateEntry(this, key, template, Maps.newConcurrentMap(), now);
+
+                final LongObjectMap<TemplateEntry> templates = new LongObjectHashMap<>(this.templates.size() + 1);
+                templates.putAll(this.templates);
+                templates.put(key, entry);
+                this.templates = templates;
+
+                UdpSessionManager.this.templateCount.incrementAndGet();
+                UdpSessionManager.this.expirations.schedule(entry, now + UdpSessionManager.this.timeout.toMillis());
+            }
         }
 
         @Override
         public void removeTemplate(final long observationDomainId, final int templateId) {
-            final TemplateKey key = new TemplateKey(this.sessionKey, observationDomainId, templateId);
-            UdpSessionManager.this.templates.remove(key);
+            final long key = key(observationDomainId, templateId);
+            this.removeTemplatesIf(entry -> entry.key == key);
         }
 
         @Override
         public void removeAllTemplate(final long observationDomainId, final Template.Type type) {
-            final DomainKey domainKey = new DomainKey(this.sessionKey, observationDomainId);
-            UdpSessionManager.this.removeTemplateIf(e -> domainKey.equals(e.getKey().observationDomainId) && e.getValue().wrapped.template.type == type);
+            this.removeTemplatesIf(entry -> entry.observationDomainId() == observationDomainId && entry.template.type == type);
+        }
+
+        private synchronized void removeTemplatesIf(final Predicate<TemplateEntry> predicate) {
+            LongObjectMap<TemplateEntry> templates = null;
+            for (final TemplateEntry entry : this.templates.values()) {
+                if (predicate.test(entry)) {
+                    if (templates == null) {
+                        templates = new LongObjectHashMap<>(this.templates.size());
+                        templates.putAll(this.templates);
+                    }
+                    templates.remove(entry.key);
+                    entry.removed = true;
+                    UdpSessionManager.this.templateCount.decrementAndGet();
+                }
+            }
+
+            if (templates != null) {
+                this.templates = templates;
+            }
+        }
+
+        private void expire(final TemplateEntry entry) {
+            synchronized (this) {
+                if (entry.removed) {
+                    return;
+                }
+
+                this.removeTemplatesIf(e -> e == entry);
+
+                if (!this.templates.isEmpty()) {
+                    return;
+                }
+
+                // The exporter has not refreshed any of its templates within the timeout - forget about it
+                this.retire();
+            }
+        }
+
+        private synchronized void expireIdle() {
+            if (this.retired) {
+                return;
+            }
+
+            final long now = UdpSessionManager.this.clock.millis();
+            if (!this.templates.isEmpty() || this.seen + UdpSessionManager.this.timeout.toMillis() > now) {
+                // Kept alive by its templates or seen while expiring - check again after the timeout
+                UdpSessionManager.this.idleExpirations.schedule(this, Math.max(this.seen, now) + UdpSessionManager.this.timeout.toMillis());
+                return;
+            }
+
+            // The exporter has not sent any templates and has not been seen within the timeout - forget about it
+            this.retire();
+        }
+
+        private synchronized void retire() {
+            if (this.retired) {
+                return;
+            }
+
+            this.removeTemplatesIf(entry -> true);
+            this.retired = true;
+            this.unregisterMetrics();
+            UdpSessionManager.this.exporters.remove(this.sessionKey, this);
         }
 
         @Override
@@ -245,8 +389,7 @@ public class UdpSessionManager {
                                final int templateId,
                                final Collection<Value<?>> scopes,
                                final List<Value<?>> values) {
-            final TemplateKey key = new TemplateKey(this.sessionKey, observationDomainId, templateId);
-            UdpSessionManager.this.templates.get(key).wrapped.options.put(new HashSet<>(scopes), new TimeWrapper<>(values));
+            this.templates.get(key(observationDomainId, templateId)).options.put(new HashSet<>(scopes), new TimeWrapper<>(values));
         }
 
         @Override
@@ -261,11 +404,60 @@ public class UdpSessionManager {
 
         @Override
         public boolean verifySequenceNumber(final long observationDomainId, final long sequenceNumber) {
-            final DomainKey key = new DomainKey(this.sessionKey, observationDomainId);
-            final SequenceNumberTracker tracker = UdpSessionManager.this.sequenceNumbers.computeIfAbsent(key, (k) -> UdpSessionManager.this.sequenceNumberTracker.get());
+            SequenceNumberTracker tracker = this.sequenceNumbers.get(observationDomainId);
+            if (tracker == null) {
+                synchronized (this) {
+                    tracker = this.sequenceNumbers.get(observationDomainId);
+                    if (tracker == null) {
+                        tracker = UdpSessionManager.this.sequenceNumberTracker.get();
+
+                        final LongObjectMap<SequenceNumberTracker> sequenceNumbers = new LongObjectHashMap<>(this.sequenceNumbers.size() + 1);
+                        sequenceNumbers.putAll(this.sequenceNumbers);
+                        sequenceNumbers.put(observationDomainId, tracker);
+                        this.sequenceNumbers = sequenceNumbers;
+                    }
+                }
+            }
             return tracker.verify(sequenceNumber);
         }
 
+        private void registerMetrics() {
+            if (UdpSessionManager.this.metricRegistry == null) {
+                return;
+            }
+
+            final String prefix = MetricRegistry.name(UdpSessionManager.this.metricPrefix, "exporters", this.sessionKey.getDescription());
+            final Meter lookups = new Meter();
+            final Meter misses = new Meter();
+
+            this.metricNames = new ArrayList<>(4);
+            this.register(MetricRegistry.name(prefix, "templateCount"), (Gauge<Integer>) () -> this.templates.size());
+            this.register(MetricRegistry.name(prefix, "templateLookups"), lookups);
+            this.register(MetricRegistry.name(prefix, "templateMisses"), misses);
+            this.register(MetricRegistry.name(prefix, "templateMissRatio"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    return Ratio.of(misses.getOneMinuteRate(), lookups.getOneMinuteRate());
+                }
+            });
+
+            this.templateLookups = lookups;
+            this.templateMisses = misses;
+        }
+
+        private void register(final String name, final Metric metric) {
+            // Replace metrics left behind by a previous session manager of the same parser
+            UdpSessionManager.this.metricRegistry.remove(name);
+            UdpSessionManager.this.metricRegistry.register(name, metric);
+            this.metricNames.add(name);
+        }
+
+        private void unregisterMetrics() {
+            if (this.metricNames != null) {
+                this.metricNames.forEach(UdpSessionManager.this.metricRegistry::remove);
+            }
+        }
+
         private final class Resolver implements Session.Resolver {
             private final long observationDomainId;
 
@@ -273,16 +465,22 @@ public class UdpSessionManager {
                 this.observationDomainId = observationDomainId;
             }
 
-            private TemplateKey key(final int templateId) {
-                return new TemplateKey(UdpSession.this.sessionKey, this.observationDomainId, templateId);
-            }
-
             @Override
             public Template lookupTemplate(final int templateId) throws MissingTemplateException {
-                final TimeWrapper<TemplateOptions> templateOptions = UdpSessionManager.this.templates.get(key(templateId));
-                if (templateOptions != null) {
-                    return templateOptions.wrapped.template;
+                final TemplateEntry entry = Exporter.this.templates.get(key(this.observationDomainId, templateId));
+
+                final Meter lookups = Exporter.this.templateLookups;
+                if (lookups != null) {
+                    lookups.mark();
+                }
+
+                if (entry != null) {
+                    return entry.template;
                 } else {
+                    final Meter misses = Exporter.this.templateMisses;
+                    if (misses != null) {
+                        misses.mark();
+                    }
                     throw new MissingTemplateException(templateId);
                 }
             }
@@ -293,11 +491,12 @@ public class UdpSessionManager {
 
                 final Set<String> scoped = values.stream().map(Value::getName).collect(Collectors.toSet());
 
-                for (final var e : Iterables.filter(UdpSessionManager.this.templates.entrySet(),
-                        e -> Objects.equals(e.getKey().observationDomainId.sessionKey, UdpSession.this.sessionKey) &&
-                                Objects.equals(e.getKey().observationDomainId.observationDomainId, this.observationDomainId))) {
+                for (final TemplateEntry entry : Exporter.this.templates.values()) {
+                    if (entry.observationDomainId() != this.observationDomainId) {
+                        continue;
+                    }
 
-                    final Template template = e.getValue().wrapped.template;
+                    final Template template = entry.template;
 
                     if (scoped.containsAll(template.scopeNames)) {
                         // Found option template where scoped fields is subset of actual data fields
@@ -305,7 +504,7 @@ public class UdpSessionManager {
                                 .filter(s -> template.scopeNames.contains(s.getName()))
                                 .collect(Collectors.toSet());
 
-                        final TimeWrapper<List<Value<?>>> optionValues = e.getValue().wrapped.options.get(scopeValues);
+                        final TimeWrapper<List<Value<?>>> optionValues = entry.options.get(scopeValues);
                         if (optionValues != null) {
                             for (final Value<?> value : optionValues.wrapped) {
                                 options.put(value.getName(), value);
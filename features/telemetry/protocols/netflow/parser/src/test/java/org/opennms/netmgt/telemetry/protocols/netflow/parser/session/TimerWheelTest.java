@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.telemetry.protocols.netflow.parser.session;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    private final Map<String, Long> deadlines = new HashMap<>();
+    private final List<String> expired = new ArrayList<>();
+
+    private TimerWheel<String> wheel(final long tickMillis, final int size, final long now) {
+        return new TimerWheel<>(tickMillis, size, now, deadlines::get, expired::add);
+    }
+
+    private void schedule(final TimerWheel<String> wheel, final String element, final long deadline) {
+        this.deadlines.put(element, deadline);
+        wheel.schedule(element, deadline);
+    }
+
+    @Test
+    public void testExpiresDueElements() {
+        final TimerWheel<String> wheel = wheel(10, 16, 1000);
+        schedule(wheel, "a", 1020);
+        schedule(wheel, "b", 1055);
+        schedule(wheel, "c", 1000);
+
+        assertThat(wheel.advance(1000), equalTo(1));
+        assertThat(expired, contains("c"));
+
+        assertThat(wheel.advance(1050), equalTo(1));
+        assertThat(expired, contains("c", "a"));
+
+        // Deadline is in the current tick but has not passed yet
+        assertThat(wheel.advance(1051), equalTo(0));
+        assertThat(wheel.advance(1060), equalTo(1));
+        assertThat(expired, contains("c", "a", "b"));
+    }
+
+    @Test
+    public void testReschedulesExtendedElements() {
+        final TimerWheel<String> wheel = wheel(10, 16, 0);
+        schedule(wheel, "a", 50);
+
+        this.deadlines.put("a", 120L);
+        assertThat(wheel.advance(100), equalTo(0));
+        assertThat(expired, empty());
+
+        assertThat(wheel.advance(120), equalTo(1));
+        assertThat(expired, contains("a"));
+    }
+
+    @Test
+    public void testDropsCancelledElements() {
+        final TimerWheel<String> wheel = wheel(10, 16, 0);
+        schedule(wheel, "a", 50);
+        schedule(wheel, "b", 50);
+
+        this.deadlines.put("a", -1L);
+        assertThat(wheel.advance(100), equalTo(1));
+        assertThat(expired, contains("b"));
+    }
+
+    @Test
+    public void testDeadlinesBeyondWheelSpan() {
+        final TimerWheel<String> wheel = wheel(10, 4, 0);
+        schedule(wheel, "a", 25);
+        schedule(wheel, "b", 95);
+
+        // Advancing for a long time visits each bucket once
+        assertThat(wheel.advance(1000), equalTo(2));
+        assertThat(expired, containsInAnyOrder("a", "b"));
+
+        this.expired.clear();
+        schedule(wheel, "c", 1095);
+        for (long now = 1000; now < 1090; now += 10) {
+            assertThat(wheel.advance(now), equalTo(0));
+        }
+        assertThat(wheel.advance(1100), equalTo(1));
+        assertThat(expired, contains("c"));
+    }
+}
@@ -38,15 +38,23 @@ import org.opennms.netmgt.telemetry.protocols.netflow.parser.Netflow9UdpParser;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.Value;
 import org.opennms.netmgt.telemetry.protocols.netflow.parser.ie.values.StringValue;
 
+import com.codahale.metrics.MetricRegistry;
+
 import java.net.InetSocketAddress;
+import java.time.Clock;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
@@ -193,13 +201,154 @@ public class UdpSessionManagerTest {
 
         session.addOptions(observationId1, templateId1, scopesValue, fieldsValue);
 
-        assertThat(udpSessionManager.templates.keySet(), hasItem(new UdpSessionManager.TemplateKey(sessionKey, observationId1, template.id)));
-        assertThat(udpSessionManager.templates.get(new UdpSessionManager.TemplateKey(sessionKey, observationId1, template.id)).wrapped.options.entrySet(), not(empty()));
+        assertThat(udpSessionManager.lookupTemplate(sessionKey, observationId1, template.id), notNullValue());
+        assertThat(session.getResolver(observationId1).lookupOptions(scopesValue), not(empty()));
+
+        udpSessionManager.doHousekeeping();
+
+        assertThat(udpSessionManager.lookupTemplate(sessionKey, observationId1, template.id), nullValue());
+        assertThat(session.getResolver(observationId1).lookupOptions(scopesValue), empty());
+    }
+
+    @Test
+    public void templateExpirationTest() {
+        final MutableClock clock = new MutableClock();
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final UdpSessionManager udpSessionManager = new UdpSessionManager(Duration.ofMinutes(30), () -> new SequenceNumberTracker(32),
+                metricRegistry, "parsers.test", clock);
+
+        final UdpSessionManager.SessionKey sessionKey1 = new Netflow9UdpParser.SessionKey(remoteAddress1.getAddress(), localAddress1);
+        final UdpSessionManager.SessionKey sessionKey2 = new Netflow9UdpParser.SessionKey(remoteAddress3.getAddress(), localAddress1);
+
+        final Template template1 = Template.builder(256, Template.Type.TEMPLATE).withFields(List.of(field("field1", null))).build();
+        final Template template2 = Template.builder(257, Template.Type.TEMPLATE).withFields(List.of(field("field2", null))).build();
+
+        udpSessionManager.getSession(sessionKey1).addTemplate(observationId1, template1);
+        udpSessionManager.getSession(sessionKey1).addTemplate(observationId2, template2);
+        udpSessionManager.getSession(sessionKey2).addTemplate(observationId1, template1);
+
+        assertThat(udpSessionManager.count(), equalTo(3));
+        assertThat(udpSessionManager.exporterCount(), equalTo(2));
+        assertThat(metricRegistry.getGauges().get("parsers.test.exporters.10.10.10.20.templateCount").getValue(), equalTo(2));
+
+        // Exporter 1 refreshes one of its templates
+        clock.advance(Duration.ofMinutes(20));
+        udpSessionManager.getSession(sessionKey1).addTemplate(observationId1, template1);
+        udpSessionManager.doHousekeeping();
+        assertThat(udpSessionManager.count(), equalTo(3));
+
+        // The templates not refreshed expire including the exporter having no templates left
+        clock.advance(Duration.ofMinutes(15));
+        udpSessionManager.doHousekeeping();
+        assertThat(udpSessionManager.count(), equalTo(1));
+        assertThat(udpSessionManager.exporterCount(), equalTo(1));
+        assertThat(udpSessionManager.lookupTemplate(sessionKey1, observationId1, template1.id), notNullValue());
+        assertThat(udpSessionManager.lookupTemplate(sessionKey1, observationId2, template2.id), nullValue());
+        assertThat(udpSessionManager.lookupTemplate(sessionKey2, observationId1, template1.id), nullValue());
+        assertThat(metricRegistry.getGauges().keySet(), not(hasItem("parsers.test.exporters.10.10.10.30.templateCount")));
+
+        // The refreshed template expires as well
+        clock.advance(Duration.ofMinutes(20));
+        udpSessionManager.doHousekeeping();
+        assertThat(udpSessionManager.count(), equalTo(0));
+        assertThat(udpSessionManager.exporterCount(), equalTo(0));
+        assertThat(metricRegistry.getNames(), empty());
+    }
+
+    @Test
+    public void idleExporterExpirationTest() {
+        final MutableClock clock = new MutableClock();
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final UdpSessionManager udpSessionManager = new UdpSessionManager(Duration.ofMinutes(30), () -> new SequenceNumberTracker(32),
+                metricRegistry, "parsers.test", clock);
+
+        final UdpSessionManager.SessionKey sessionKey1 = new Netflow9UdpParser.SessionKey(remoteAddress1.getAddress(), localAddress1);
+        final UdpSessionManager.SessionKey sessionKey2 = new Netflow9UdpParser.SessionKey(remoteAddress3.getAddress(), localAddress1);
+
+        // Neither exporter sends templates
+        udpSessionManager.getSession(sessionKey1).verifySequenceNumber(observationId1, 1);
+        udpSessionManager.getSession(sessionKey2).verifySequenceNumber(observationId1, 1);
+        assertThat(udpSessionManager.exporterCount(), equalTo(2));
+
+        // Exporter 1 keeps sending
+        clock.advance(Duration.ofMinutes(20));
+        udpSessionManager.getSession(sessionKey1).verifySequenceNumber(observationId1, 2);
+        udpSessionManager.doHousekeeping();
+        assertThat(udpSessionManager.exporterCount(), equalTo(2));
+
+        clock.advance(Duration.ofMinutes(15));
+        udpSessionManager.doHousekeeping();
+        assertThat(udpSessionManager.exporterCount(), equalTo(1));
 
+        clock.advance(Duration.ofMinutes(20));
         udpSessionManager.doHousekeeping();
+        assertThat(udpSessionManager.exporterCount(), equalTo(0));
+        assertThat(metricRegistry.getNames(), empty());
+    }
 
-        assertThat(udpSessionManager.templates.keySet(), not(hasItem(new UdpSessionManager.TemplateKey(sessionKey, observationId1, template.id))));
-        assertThat(udpSessionManager.templates.get(new UdpSessionManager.TemplateKey(sessionKey, observationId1, template.id)), nullValue());
+    @Test
+    public void dropTest() {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final UdpSessionManager udpSessionManager = new UdpSessionManager(Duration.ofMinutes(30), () -> new SequenceNumberTracker(32),
+                metricRegistry, "parsers.test");
+
+        final UdpSessionManager.SessionKey sessionKey = new IpfixUdpParser.SessionKey(remoteAddress1, localAddress1);
+        udpSessionManager.getSession(sessionKey).addTemplate(observationId1, Template.builder(256, Template.Type.TEMPLATE).withFields(List.of(field("field1", null))).build());
+        assertThat(metricRegistry.getNames(), not(empty()));
+
+        udpSessionManager.drop(sessionKey);
+        assertThat(udpSessionManager.count(), equalTo(0));
+        assertThat(udpSessionManager.exporterCount(), equalTo(0));
+        assertThat(metricRegistry.getNames(), empty());
+    }
+
+    @Test
+    public void templateMissMetricsTest() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final UdpSessionManager udpSessionManager = new UdpSessionManager(Duration.ofMinutes(30), () -> new SequenceNumberTracker(32),
+                metricRegistry, "parsers.test");
+
+        final UdpSessionManager.SessionKey sessionKey = new IpfixUdpParser.SessionKey(remoteAddress1, localAddress1);
+        final Session session = udpSessionManager.getSession(sessionKey);
+        session.addTemplate(observationId1, Template.builder(256, Template.Type.TEMPLATE).withFields(List.of(field("field1", null))).build());
+
+        assertThat(session.getResolver(observationId1).lookupTemplate(256).id, equalTo(256));
+        try {
+            session.getResolver(observationId2).lookupTemplate(256);
+            Assert.fail("Template must not be shared between observation domains");
+        } catch (final MissingTemplateException e) {
+            // expected
+        }
+
+        assertThat(metricRegistry.getMeters().get("parsers.test.exporters.10.10.10.20:51001.templateLookups").getCount(), equalTo(2L));
+        assertThat(metricRegistry.getMeters().get("parsers.test.exporters.10.10.10.20:51001.templateMisses").getCount(), equalTo(1L));
+
+        session.removeTemplate(observationId1, 256);
+        assertThat(udpSessionManager.count(), equalTo(0));
+        assertThat(udpSessionManager.lookupTemplate(sessionKey, observationId1, 256), nullValue());
+    }
+
+    @Test
+    public void templateMissMetricsWithoutTemplateTest() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final UdpSessionManager udpSessionManager = new UdpSessionManager(Duration.ofMinutes(30), () -> new SequenceNumberTracker(32),
+                metricRegistry, "parsers.test");
+
+        // The exporter sends data before it sent any template
+        final UdpSessionManager.SessionKey sessionKey = new IpfixUdpParser.SessionKey(remoteAddress1, localAddress1);
+        final Session session = udpSessionManager.getSession(sessionKey);
+        for (int i = 0; i < 3; i++) {
+            try {
+                session.getResolver(observationId1).lookupTemplate(256);
+                Assert.fail("No template was sent");
+            } catch (final MissingTemplateException e) {
+                // expected
+            }
+        }
+
+        assertThat(metricRegistry.getGauges().get("parsers.test.exporters.10.10.10.20:51001.templateCount").getValue(), equalTo(0));
+        assertThat(metricRegistry.getMeters().get("parsers.test.exporters.10.10.10.20:51001.templateLookups").getCount(), equalTo(3L));
+        assertThat(metricRegistry.getMeters().get("parsers.test.exporters.10.10.10.20:51001.templateMisses").getCount(), equalTo(3L));
     }
 
     @Test
@@ -226,4 +375,27 @@ public class UdpSessionManagerTest {
         testIpFixSessionKeys(remoteAddress1, localAddress1, remoteAddress4, localAddress1, false);
         testIpFixSessionKeys(remoteAddress1, localAddress1, remoteAddress4, localAddress2, false);
     }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.now();
+
+        public void advance(final Duration duration) {
+            this.now = this.now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return this.now;
+        }
+    }
 }
@@ -29,11 +29,20 @@
 package org.opennms.netmgt.timeseries.samplewrite;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -42,6 +51,7 @@ import javax.inject.Named;
 import org.opennms.core.logging.Logging;
 import org.opennms.integration.api.v1.timeseries.IntrinsicTagNames;
 import org.opennms.integration.api.v1.timeseries.Sample;
+import org.opennms.integration.api.v1.timeseries.TimeSeriesStorage;
 import org.opennms.netmgt.timeseries.TimeseriesStorageManager;
 import org.opennms.netmgt.timeseries.stats.StatisticsCollector;
 import org.slf4j.Logger;
@@ -50,14 +60,15 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.base.Preconditions;
 import com.google.common.math.DoubleMath;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.lmax.disruptor.EventTranslatorOneArg;
 import com.lmax.disruptor.FatalExceptionHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.WorkHandler;
 import com.lmax.disruptor.WorkerPool;
@@ -69,6 +80,16 @@ import com.swrve.ratelimitedlogger.RateLimitedLog;
  * Calls to  publish the samples to a ring buffer so
  * that they don't block while the data is being persisted.
  *
+ * The ring buffer is consumed by a pool of writer threads. The writers hand the sample
+ * batches over to a shared queue, which is flushed to the storage plugin in writes of
+ * {@code maxBatchSize} samples once that many have accumulated, or once all of the
+ * published batches were handed over. This means that the writes grow with the load,
+ * while samples are never held back when the writers are idle.
+ *
+ * When the ring buffer is full, callers are blocked for up to {@code backpressureTimeoutMs}
+ * while waiting for the writers to make room, and samples are only dropped if no room
+ * became available in time.
+ *
  * @author jwhite
  */
 public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, DisposableBean {
@@ -80,6 +101,16 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
             .maxRate(5).every(Duration.ofSeconds(30))
             .build();
 
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    public static final long DEFAULT_BACKPRESSURE_TIMEOUT_MS = 30000;
+
+    /**
+     * A slot only becomes available once the writer that consumed it moved on, which may happen
+     * just after the waiting callers were signaled, so these check again after this long.
+     */
+    private static final long BACKPRESSURE_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
     private WorkerPool<SampleBatchEvent> workerPool;
 
     private RingBuffer<SampleBatchEvent> ringBuffer;
@@ -89,10 +120,25 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
 
     private final int numWriterThreads;
 
+    private final int maxBatchSize;
+
+    private final long backpressureTimeoutMs;
+
+    private final MetricRegistry registry;
+
     private final Meter droppedSamples;
 
+    private final Timer backpressureTimer;
+
     private final Timer sampleWriteTsTimer;
 
+    private final Histogram sampleWriteBatchSize;
+
+    /**
+     * Write latency per storage plugin, keyed by the class name of the plugin.
+     */
+    private final Map<String, Timer> pluginWriteTimers = new ConcurrentHashMap<>();
+
     @Autowired
     private TimeseriesStorageManager storage;
 
@@ -102,19 +148,47 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
     /**
      * The {@link RingBuffer} doesn't appear to expose any methods that indicate the number
      * of elements that are currently "queued", so we keep track of them with this atomic counter.
+     *
+     * Entries are counted before they are published, so the writer that brings the counter
+     * down to zero knows that all of the published batches were handed over.
      */
     private final AtomicLong numEntriesOnRingBuffer = new AtomicLong();
 
+    /**
+     * Sample batches handed over by the writers which have yet to be stored.
+     */
+    private final Queue<List<Sample>> pendingSamples = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger numPendingSamples = new AtomicInteger();
+
+    private final ReentrantLock capacityLock = new ReentrantLock();
+
+    private final Condition capacityAvailable = capacityLock.newCondition();
+
+    private final AtomicInteger numWaitingPublishers = new AtomicInteger();
+
+    public TimeseriesWriter(Integer ringBufferSize, Integer numWriterThreads, MetricRegistry registry) {
+        this(ringBufferSize, numWriterThreads, DEFAULT_MAX_BATCH_SIZE, DEFAULT_BACKPRESSURE_TIMEOUT_MS, registry);
+    }
+
     @Inject
     public TimeseriesWriter(@Named("timeseries.ring_buffer_size") Integer ringBufferSize,
-                            @Named("timeseries.writer_threads") Integer numWriterThreads, @Named("timeseriesMetricRegistry") MetricRegistry registry) {
+                            @Named("timeseries.writer_threads") Integer numWriterThreads,
+                            @Named("timeseries.max_batch_size") Integer maxBatchSize,
+                            @Named("timeseries.backpressure_timeout_ms") Long backpressureTimeoutMs,
+                            @Named("timeseriesMetricRegistry") MetricRegistry registry) {
         Preconditions.checkArgument(ringBufferSize > 0, "ringBufferSize must be positive");
         Preconditions.checkArgument(DoubleMath.isMathematicalInteger(Math.log(ringBufferSize) / Math.log(2)), "ringBufferSize must be a power of two");
         Preconditions.checkArgument(numWriterThreads > 0, "numWriterThreads must be positive");
+        Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+        Preconditions.checkArgument(backpressureTimeoutMs >= 0, "backpressureTimeoutMs must not be negative");
         Preconditions.checkNotNull(registry, "metric registry");
 
         this.ringBufferSize = ringBufferSize;
         this.numWriterThreads = numWriterThreads;
+        this.maxBatchSize = maxBatchSize;
+        this.backpressureTimeoutMs = backpressureTimeoutMs;
+        this.registry = registry;
         numEntriesOnRingBuffer.set(0L);
 
         registry.register(MetricRegistry.name("ring-buffer", "size"),
@@ -123,9 +197,12 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
                 (Gauge<Long>) () -> (long) TimeseriesWriter.this.ringBufferSize);
 
         droppedSamples = registry.meter(MetricRegistry.name("ring-buffer", "dropped-samples"));
+        backpressureTimer = registry.timer(MetricRegistry.name("ring-buffer", "backpressure"));
         sampleWriteTsTimer = registry.timer("samples.write.ts");
+        sampleWriteBatchSize = registry.histogram(MetricRegistry.name("samples", "write", "batch-size"));
 
-        LOG.debug("Using ring_buffer_size: {}", this.ringBufferSize);
+        LOG.debug("Using ring_buffer_size: {}, max_batch_size: {}, backpressure_timeout_ms: {}",
+                this.ringBufferSize, this.maxBatchSize, this.backpressureTimeoutMs);
         setUpWorkerPool();
 
     }
@@ -157,13 +234,15 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
     public void destroy() {
         if (workerPool != null) {
             workerPool.drainAndHalt();
+            // Nothing should be left at this point, store it anyways
+            flushPendingSamples(Integer.MAX_VALUE);
         }
     }
 
     public void insert(List<Sample> samples) {
 
-        // Add the samples to the ring buffer
-        if (!ringBuffer.tryPublishEvent(TRANSLATOR, samples)) {
+        // Add the samples to the ring buffer, waiting for room if it is full
+        if (!tryPublish(samples) && !publishWithBackpressure(samples)) {
             RATE_LIMITED_LOGGER.error("The ring buffer is full. {} samples associated with resource ids {} will be dropped.",
                     samples.size(), new Object() {
                         @Override
@@ -177,31 +256,125 @@ public class TimeseriesWriter implements WorkHandler<SampleBatchEvent>, Disposab
                         }
                     });
             droppedSamples.mark(samples.size());
-            return;
         }
-        // Increase our entry counter
+    }
+
+    private boolean tryPublish(List<Sample> samples) {
+        final long sequence;
+        try {
+            sequence = ringBuffer.tryNext();
+        } catch (InsufficientCapacityException e) {
+            return false;
+        }
+        // Increase our entry counter before the entry becomes visible to the writers
         numEntriesOnRingBuffer.incrementAndGet();
+        try {
+            ringBuffer.get(sequence).setSamples(samples);
+        } finally {
+            ringBuffer.publish(sequence);
+        }
+        return true;
+    }
+
+    /**
+     * Blocks the calling thread until there is room in the ring buffer, or the backpressure timeout expired.
+     *
+     * @return true if the samples were published
+     */
+    private boolean publishWithBackpressure(List<Sample> samples) {
+        if (backpressureTimeoutMs <= 0) {
+            return false;
+        }
+
+        try (Timer.Context context = backpressureTimer.time()) {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backpressureTimeoutMs);
+            numWaitingPublishers.incrementAndGet();
+            capacityLock.lock();
+            try {
+                while (!tryPublish(samples)) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    capacityAvailable.awaitNanos(Math.min(remaining, BACKPRESSURE_RECHECK_NANOS));
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                capacityLock.unlock();
+                numWaitingPublishers.decrementAndGet();
+            }
+        }
     }
 
     @Override
     public void onEvent(SampleBatchEvent event) {
-        // We'd expect the logs from this thread to be in collectd.log
-        Logging.putPrefix("collectd");
+        pendingSamples.add(event.getSamples());
+        final int numPending = numPendingSamples.addAndGet(event.getSamples().size());
+        event.setSamples(null); // free sample reference for garbage collection
+
+        if (numWaitingPublishers.get() > 0) {
+            capacityLock.lock();
+            try {
+                capacityAvailable.signalAll();
+            } finally {
+                capacityLock.unlock();
+            }
+        }
 
         // Decrement our entry counter
-        numEntriesOnRingBuffer.decrementAndGet();
+        if (numEntriesOnRingBuffer.decrementAndGet() == 0) {
+            // All of the published batches were handed over, store everything that is pending
+            flushPendingSamples(numPendingSamples.get());
+        } else if (numPending >= maxBatchSize) {
+            flushPendingSamples(maxBatchSize);
+        }
+    }
 
+    /**
+     * Stores at least the given number of pending samples, unless fewer are pending, in writes of up to
+     * {@code maxBatchSize} samples. Batches handed over while flushing are left to the other writers.
+     */
+    private void flushPendingSamples(int numSamples) {
+        List<Sample> batch = new ArrayList<>(Math.min(numSamples, maxBatchSize));
+        List<Sample> samples;
+        int numFlushed = 0;
+        while (numFlushed < numSamples && (samples = pendingSamples.poll()) != null) {
+            numPendingSamples.addAndGet(-samples.size());
+            numFlushed += samples.size();
+            batch.addAll(samples);
+            if (batch.size() >= maxBatchSize) {
+                store(batch);
+                batch = new ArrayList<>(Math.min(numSamples - numFlushed, maxBatchSize));
+            }
+        }
+        if (!batch.isEmpty()) {
+            store(batch);
+        }
+    }
+
+    private void store(List<Sample> samples) {
+        // We'd expect the logs from this thread to be in collectd.log
+        Logging.putPrefix("collectd");
+
+        sampleWriteBatchSize.update(samples.size());
         try(Timer.Context context = this.sampleWriteTsTimer.time()){
-            this.storage.get().store(event.getSamples());
-            this.stats.record(event.getSamples());
+            final TimeSeriesStorage timeSeriesStorage = this.storage.get();
+            try (Timer.Context pluginContext = getPluginWriteTimer(timeSeriesStorage).time()) {
+                timeSeriesStorage.store(samples);
+            }
+            this.stats.record(samples);
         } catch (Throwable t) {
             RATE_LIMITED_LOGGER.error("An error occurred while inserting samples. Some sample may be lost.", t);
-        } finally {
-            event.setSamples(null); // free sample reference for garbage collection
         }
     }
 
-    private static final EventTranslatorOneArg<SampleBatchEvent, List<Sample>> TRANSLATOR = (event, sequence, samples) -> event.setSamples(samples);
+    private Timer getPluginWriteTimer(TimeSeriesStorage timeSeriesStorage) {
+        return pluginWriteTimers.computeIfAbsent(timeSeriesStorage.getClass().getName(),
+                plugin -> registry.timer(MetricRegistry.name("samples", "write", "ts", plugin)));
+    }
 
     public void setTimeSeriesStorage(final TimeseriesStorageManager timeseriesStorage) {
         this.storage = timeseriesStorage;
@@ -29,12 +29,17 @@
 package org.opennms.netmgt.timeseries.samplewrite;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.when;
 
 import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -78,7 +83,8 @@ public class TimeseriesWriterTest {
 
         LatchedTimeseriesStorage store = new LatchedTimeseriesStorage(numWriterThreads);
         MetricRegistry registry = new MetricRegistry();
-        TimeseriesWriter writer = new TimeseriesWriter(ringBufferSize, numWriterThreads, registry);
+        // Store every sample on its own, so that each writer thread ends up waiting on the latch
+        TimeseriesWriter writer = new TimeseriesWriter(ringBufferSize, numWriterThreads, 1, TimeseriesWriter.DEFAULT_BACKPRESSURE_TIMEOUT_MS, registry);
         when(storageManager.get()).thenReturn(store);
         writer.setTimeSeriesStorage(storageManager);
 
@@ -94,7 +100,7 @@ public class TimeseriesWriterTest {
 
     /**
      * Fills the ring buffer and locks all of the writer threads to verify
-     * that samples additional samples are dropped.
+     * that samples additional samples are dropped when backpressure is disabled.
      */
     @Test
     public void samplesAreDroppedWhenRingBufferIsFull() throws Exception {
@@ -105,13 +111,14 @@ public class TimeseriesWriterTest {
         Lock lock = new ReentrantLock();
         LockedTimeseriesStorage timeseriesStorage = new LockedTimeseriesStorage(lock);
         MetricRegistry registry = new MetricRegistry();
-        TimeseriesWriter writer = new TimeseriesWriter(ringBufferSize, numWriterThreads, registry);
+        TimeseriesWriter writer = new TimeseriesWriter(ringBufferSize, numWriterThreads, TimeseriesWriter.DEFAULT_MAX_BATCH_SIZE, 0L, registry);
         when(storageManager.get()).thenReturn(timeseriesStorage);
         writer.setTimeSeriesStorage(storageManager);
 
         lock.lock();
         Metric metric = createMetric().build();
-        for (int i = 0; i < ringBufferSize; i++) {
+        lockWriters(writer, timeseriesStorage, metric, numWriterThreads);
+        for (int i = numWriterThreads; i < ringBufferSize; i++) {
             Sample s = ImmutableSample.builder()
                     .metric(metric)
                     .time(Instant.now())
@@ -120,7 +127,6 @@ public class TimeseriesWriterTest {
         }
 
         // The ring buffer should be full, and all of the threads should be locked
-        Thread.sleep(250);
         assertEquals(numWriterThreads, timeseriesStorage.getNumThreadsLocked());
 
         // Attempt to insert another batch of samples
@@ -139,6 +145,98 @@ public class TimeseriesWriterTest {
         // Verify the number of inserted samples
         assertEquals(0, timeseriesStorage.getNumThreadsLocked());
         assertEquals(ringBufferSize, timeseriesStorage.getNumSamplesInserted());
+        assertEquals(8, registry.meter("ring-buffer.dropped-samples").getCount());
+    }
+
+    /**
+     * Fills the ring buffer and locks all of the writer threads to verify
+     * that callers are blocked instead of having their samples dropped.
+     */
+    @Test
+    public void insertBlocksWhenRingBufferIsFull() throws Exception {
+        int ringBufferSize = 1024;
+        int numWriterThreads = 8;
+
+        Lock lock = new ReentrantLock();
+        LockedTimeseriesStorage timeseriesStorage = new LockedTimeseriesStorage(lock);
+        MetricRegistry registry = new MetricRegistry();
+        TimeseriesWriter writer = new TimeseriesWriter(ringBufferSize, numWriterThreads, TimeseriesWriter.DEFAULT_MAX_BATCH_SIZE, 60000L, registry);
+        when(storageManager.get()).thenReturn(timeseriesStorage);
+        writer.setTimeSeriesStorage(storageManager);
+
+        lock.lock();
+        Metric metric = createMetric().build();
+        lockWriters(writer, timeseriesStorage, metric, numWriterThreads);
+        for (int i = numWriterThreads; i < ringBufferSize; i++) {
+            writer.insert(Lists.newArrayList(createSample(metric, i)));
+        }
+
+        // Attempt to insert another batch of samples, this should block
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 8; i++) {
+                writer.insert(Lists.newArrayList(createSample(metric, i)));
+            }
+        });
+        try {
+            future.get(250, TimeUnit.MILLISECONDS);
+            fail("insert() should block while the ring buffer is full");
+        } catch (TimeoutException e) {
+            // expected
+        }
+
+        // Unlock the writer threads and wait for the ring buffer to drain
+        lock.unlock();
+        future.get(1, TimeUnit.MINUTES);
+        writer.destroy();
+
+        // Verify that nothing was dropped
+        assertEquals(ringBufferSize + 8, timeseriesStorage.getNumSamplesInserted());
+        assertEquals(0, registry.meter("ring-buffer.dropped-samples").getCount());
+    }
+
+    /**
+     * Verifies that the samples queued up while the storage was blocked are
+     * coalesced into fewer, larger writes.
+     */
+    @Test
+    public void samplesAreCoalescedIntoLargerWrites() throws Exception {
+        int ringBufferSize = 1024;
+        int numWriterThreads = 1;
+        int maxBatchSize = 100;
+
+        Lock lock = new ReentrantLock();
+        LockedTimeseriesStorage timeseriesStorage = new LockedTimeseriesStorage(lock);
+        MetricRegistry registry = new MetricRegistry();
+        TimeseriesWriter writer = new TimeseriesWriter(ringBufferSize, numWriterThreads, maxBatchSize, 0L, registry);
+        when(storageManager.get()).thenReturn(timeseriesStorage);
+        writer.setTimeSeriesStorage(storageManager);
+
+        // Block the writer on its first write while the remaining samples queue up
+        lock.lock();
+        Metric metric = createMetric().build();
+        lockWriters(writer, timeseriesStorage, metric, numWriterThreads);
+        for (int i = 1; i <= 500; i++) {
+            writer.insert(Lists.newArrayList(createSample(metric, i), createSample(metric, i)));
+        }
+        lock.unlock();
+        writer.destroy();
+
+        assertEquals(1001, timeseriesStorage.getNumSamplesInserted());
+        // 1 blocked write, followed by the 1000 queued samples in writes of 100 samples
+        assertEquals(11, timeseriesStorage.getNumWrites());
+        assertEquals(11, registry.histogram("samples.write.batch-size").getCount());
+        assertEquals(11, registry.timer("samples.write.ts." + LockedTimeseriesStorage.class.getName()).getCount());
+    }
+
+    /**
+     * Inserts a sample at a time and waits for it to be stored, so that each sample locks another writer thread.
+     */
+    private void lockWriters(TimeseriesWriter writer, LockedTimeseriesStorage timeseriesStorage, Metric metric, int numWriterThreads) throws InterruptedException {
+        for (int i = 0; i < numWriterThreads; i++) {
+            CountDownLatch locked = timeseriesStorage.expectLocks(1);
+            writer.insert(Lists.newArrayList(createSample(metric, i)));
+            assertTrue(locked.await(1, TimeUnit.MINUTES));
+        }
     }
 
     private static class LatchedTimeseriesStorage extends MockTimeSeriesStorage {
@@ -163,11 +261,21 @@ public class TimeseriesWriterTest {
         private final Lock lock;
         private final AtomicInteger numThreadsLocked = new AtomicInteger(0);
         private final AtomicInteger numSamplesInserted = new AtomicInteger(0);
+        private final AtomicInteger numWrites = new AtomicInteger(0);
+        private volatile CountDownLatch lockedLatch = new CountDownLatch(0);
 
         public LockedTimeseriesStorage(Lock lock) {
             this.lock = lock;
         }
 
+        /**
+         * @return a latch released once the given number of threads entered {@link #store(List)}
+         */
+        public CountDownLatch expectLocks(int numThreads) {
+            lockedLatch = new CountDownLatch(numThreads);
+            return lockedLatch;
+        }
+
         public int getNumThreadsLocked() {
             return numThreadsLocked.get();
         }
@@ -176,16 +284,29 @@ public class TimeseriesWriterTest {
             return numSamplesInserted.get();
         }
 
+        public int getNumWrites() {
+            return numWrites.get();
+        }
+
         @Override
         public void store(List<Sample> samples) throws StorageException {
             numThreadsLocked.incrementAndGet();
+            lockedLatch.countDown();
             lock.lock();
             numSamplesInserted.addAndGet(samples.size());
+            numWrites.incrementAndGet();
             lock.unlock();
             numThreadsLocked.decrementAndGet();
         }
     }
 
+    private Sample createSample(Metric metric, int value) {
+        return ImmutableSample.builder()
+                .metric(metric)
+                .time(Instant.now())
+                .value((double)value).build();
+    }
+
     private ImmutableMetric.MetricBuilder createMetric() {
         return ImmutableMetric
                 .builder()
@@ -42,8 +42,13 @@ public interface AlarmPersister {
     /**
      * <p>persist</p>
      *
+     * Implementations may reduce the event asynchronously, in which case the alarm is not known yet
+     * when this method returns. Callers that need to know about the alarm should register an
+     * {@link org.opennms.netmgt.dao.api.AlarmEntityListener} instead of relying on the returned value.
+     *
      * @param event a {@link org.opennms.netmgt.xml.event.Event} object
-     * @return the new/updated {@link OnmsAlarm}
+     * @return the new/updated {@link OnmsAlarm}, or <code>null</code> if the event was not reduced
+     *         or is reduced asynchronously
      */
     OnmsAlarm persist(Event event);
 
@@ -29,14 +29,21 @@
 package org.opennms.netmgt.alarmd;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
@@ -57,6 +64,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
@@ -77,6 +86,13 @@ public class AlarmPersisterImpl implements AlarmPersister {
     protected static boolean NEW_IF_CLEARED = Boolean.getBoolean("org.opennms.alarmd.newIfClearedAlarmExists");
     protected static boolean LEGACY_ALARM_STATE = Boolean.getBoolean("org.opennms.alarmd.legacyAlarmState");
 
+    // partitioned mode: events are handed off to single-threaded workers by the key their alarm is looked up by
+    // -> disabled by default (0 partitions)
+    protected static final Integer NUM_PARTITIONS = SystemProperties.getInteger("org.opennms.alarmd.partitions", 0);
+    protected static final Integer PARTITION_QUEUE_SIZE = SystemProperties.getInteger("org.opennms.alarmd.partition.queueSize", 10000);
+    protected static final Integer PARTITION_BATCH_SIZE = SystemProperties.getInteger("org.opennms.alarmd.partition.batchSize", 100);
+    protected static final Integer PARTITION_CACHE_SIZE = SystemProperties.getInteger("org.opennms.alarmd.partition.cacheSize", 10000);
+
     @Autowired
     private AlarmDao m_alarmDao;
 
@@ -100,6 +116,36 @@ public class AlarmPersisterImpl implements AlarmPersister {
     
     private boolean m_legacyAlarmState = LEGACY_ALARM_STATE;
 
+    private final Partition[] m_partitions;
+
+    public AlarmPersisterImpl() {
+        this(NUM_PARTITIONS, PARTITION_QUEUE_SIZE, PARTITION_BATCH_SIZE, PARTITION_CACHE_SIZE);
+    }
+
+    /**
+     * @param numPartitions the number of single-threaded workers that reduce events; 0 to reduce events on the calling threads
+     * @param queueSize the maximum number of events that are queued per partition
+     * @param batchSize the maximum number of events that are reduced by a partition in a single transaction
+     * @param cacheSize the maximum number of alarm ids per partition that are cached by reduction key
+     */
+    public AlarmPersisterImpl(int numPartitions, int queueSize, int batchSize, int cacheSize) {
+        if (numPartitions > 0) {
+            LOG.info("Reducing events on {} partitions (queue size: {}, batch size: {}, cache size: {}).", numPartitions, queueSize, batchSize, cacheSize);
+            m_partitions = new Partition[numPartitions];
+            for (int i = 0; i < numPartitions; i++) {
+                m_partitions[i] = new Partition(i, queueSize, batchSize, cacheSize);
+            }
+        } else {
+            m_partitions = null;
+        }
+    }
+
+    /**
+     * Persists the alarm for the given event.
+     *
+     * In partitioned mode the event is queued for its partition and <code>null</code> is returned.
+     * The call blocks while the queue of the partition is full.
+     */
     @Override
     public OnmsAlarm persist(Event event) {
         Objects.requireNonNull(event, "Cannot create alarm from null event.");
@@ -111,6 +157,19 @@ public class AlarmPersisterImpl implements AlarmPersister {
             LOG.debug("process: {}; nodeid: {}; ipaddr: {}; serviceid: {}", event.getUei(), event.getNodeid(), event.getInterface(), event.getService());
         }
 
+        if (m_partitions != null) {
+            // Events that are looked up by the same key are reduced by the same partition
+            // We do this to ensure that clears and triggers are processed in the same order
+            // as the calls are made without locking
+            try {
+                getPartition(getLookupKey(event)).queue.put(new Reduction(event, false));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted while queueing event with id {} for reduction.", event.getDbid());
+            }
+            return null;
+        }
+
         // Lock both the reduction and clear keys (if set) using a fair striped lock
         // We do this to ensure that clears and triggers are processed in the same order
         // as the calls are made
@@ -119,7 +178,7 @@ public class AlarmPersisterImpl implements AlarmPersister {
         try {
             locks.forEach(Lock::lock);
             // Process the alarm inside a transaction
-            alarm = m_transactionOperations.execute((action) -> addOrReduceEventAsAlarm(event));
+            alarm = m_transactionOperations.execute((action) -> addOrReduceEventAsAlarm(event, null, true));
         } finally {
             locks.forEach(Lock::unlock);
         }
@@ -127,7 +186,42 @@ public class AlarmPersisterImpl implements AlarmPersister {
         return alarm;
     }
 
-    private OnmsAlarm addOrReduceEventAsAlarm(Event event) throws IllegalStateException {
+    /**
+     * Stops the partitions after reducing the queued events.
+     */
+    public void destroy() {
+        if (m_partitions != null) {
+            for (final Partition partition : m_partitions) {
+                partition.running = false;
+            }
+            for (final Partition partition : m_partitions) {
+                partition.awaitTermination();
+            }
+            // events may have been forwarded to partitions that were already stopped
+            for (final Partition partition : m_partitions) {
+                final List<Reduction> remaining = new ArrayList<>(partition.forwarded);
+                partition.queue.drainTo(remaining);
+                for (final Reduction reduction : remaining) {
+                    final Event event = reduction.event;
+                    try {
+                        m_transactionOperations.execute((action) -> addOrReduceEventAsAlarm(event, null, !reduction.clearKeyMissed));
+                    } catch (Exception e) {
+                        LOG.error("Failed to reduce event with id {}.", event.getDbid(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private Partition getPartition(String key) {
+        return m_partitions[Math.floorMod(key.hashCode(), m_partitions.length)];
+    }
+
+    /**
+     * @param hotAlarms alarm ids by reduction key that are used to avoid queries; <code>null</code> to always query
+     * @param useClearKey whether resolution events are looked up by their clear key before their reduction key
+     */
+    private OnmsAlarm addOrReduceEventAsAlarm(Event event, Map<String, Integer> hotAlarms, boolean useClearKey) throws IllegalStateException {
         
         final OnmsEvent persistedEvent = m_eventDao.get(event.getDbid());
         if (persistedEvent == null) {
@@ -141,16 +235,16 @@ public class AlarmPersisterImpl implements AlarmPersister {
         String clearKey = event.getAlarmData().getClearKey();
         
         boolean didSwapReductionKeyWithClearKey = false;
-        if (!m_legacyAlarmState && clearKey != null && isResolutionEvent(event)) {
+        if (useClearKey && isLookedUpByClearKey(event)) {
             key = clearKey;
             didSwapReductionKeyWithClearKey = true;
         }
 
-        OnmsAlarm alarm = m_alarmDao.findByReductionKey(key);
+        OnmsAlarm alarm = findByReductionKey(key, hotAlarms);
 
         if (alarm == null && didSwapReductionKeyWithClearKey) {
             // if the clearKey returns null, still need to check the reductionKey
-            alarm = m_alarmDao.findByReductionKey(reductionKey);
+            alarm = findByReductionKey(reductionKey, hotAlarms);
         }
 
         if (alarm == null || (m_createNewAlarmIfClearedAlarmExists && OnmsSeverity.CLEARED.equals(alarm.getSeverity()))) {
@@ -165,7 +259,8 @@ public class AlarmPersisterImpl implements AlarmPersister {
                 m_alarmDao.save(alarm);
                 m_alarmDao.flush();
 
-                m_alarmEntityNotifier.didArchiveAlarm(alarm, reductionKey);
+                final OnmsAlarm archived = alarm;
+                notifyWhenCommitted(() -> m_alarmEntityNotifier.didArchiveAlarm(archived, reductionKey));
             }
 
             alarm = createNewAlarm(persistedEvent, event);
@@ -180,8 +275,12 @@ public class AlarmPersisterImpl implements AlarmPersister {
 
             m_alarmDao.save(alarm);
             m_eventDao.saveOrUpdate(persistedEvent);
+            if (hotAlarms != null) {
+                hotAlarms.put(alarm.getReductionKey(), alarm.getId());
+            }
 
-            m_alarmEntityNotifier.didCreateAlarm(alarm);
+            final OnmsAlarm created = alarm;
+            notifyWhenCommitted(() -> m_alarmEntityNotifier.didCreateAlarm(created));
         } else {
             LOG.debug("addOrReduceEventAsAlarm: reductionKey:{} found, reducing event to existing alarm: {}", reductionKey, alarm.getId());
             reduceEvent(persistedEvent, alarm, event);
@@ -201,7 +300,47 @@ public class AlarmPersisterImpl implements AlarmPersister {
                 m_eventDao.deletePreviousEventsForAlarm(alarm.getId(), persistedEvent);
             }
 
-            m_alarmEntityNotifier.didUpdateAlarmWithReducedEvent(alarm);
+            final OnmsAlarm updated = alarm;
+            notifyWhenCommitted(() -> m_alarmEntityNotifier.didUpdateAlarmWithReducedEvent(updated));
+        }
+        return alarm;
+    }
+
+    /**
+     * Notifies the listeners once the current transaction was committed, while its session is still open.
+     * Alarms that are rolled back, i.e. when a batch fails and its events are reduced again one by one,
+     * are never announced.
+     */
+    private static void notifyWhenCommitted(Runnable notification) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    notification.run();
+                }
+            });
+        } else {
+            notification.run();
+        }
+    }
+
+    private OnmsAlarm findByReductionKey(String reductionKey, Map<String, Integer> hotAlarms) {
+        if (hotAlarms == null) {
+            return m_alarmDao.findByReductionKey(reductionKey);
+        }
+        final Integer id = hotAlarms.get(reductionKey);
+        if (id != null) {
+            // loading by id avoids the query (and the implied flush of the session)
+            // -> the alarm may have been deleted or archived in the meantime
+            final OnmsAlarm alarm = m_alarmDao.get(id);
+            if (alarm != null && reductionKey.equals(alarm.getReductionKey())) {
+                return alarm;
+            }
+            hotAlarms.remove(reductionKey);
+        }
+        final OnmsAlarm alarm = m_alarmDao.findByReductionKey(reductionKey);
+        if (alarm != null) {
+            hotAlarms.put(reductionKey, alarm.getId());
         }
         return alarm;
     }
@@ -425,6 +564,17 @@ public class AlarmPersisterImpl implements AlarmPersister {
         return true;
     }
 
+    private boolean isLookedUpByClearKey(Event event) {
+        return !m_legacyAlarmState && event.getAlarmData().getClearKey() != null && isResolutionEvent(event);
+    }
+
+    private String getLookupKey(Event event) {
+        if (isLookedUpByClearKey(event)) {
+            return event.getAlarmData().getClearKey();
+        }
+        return event.getAlarmData().getReductionKey();
+    }
+
     private static Collection<String> getLockKeys(Event event) {
         if (event.getAlarmData().getClearKey() == null) {
             return Collections.singletonList(event.getAlarmData().getReductionKey());
@@ -527,4 +677,149 @@ public class AlarmPersisterImpl implements AlarmPersister {
     public void setLegacyAlarmState(boolean legacyAlarmState) {
         m_legacyAlarmState = legacyAlarmState;
     }
+
+    /**
+     * A single-threaded worker that reduces the events of a partition.
+     *
+     * Queued events are reduced in batches using a single transaction per batch. The ids of recently
+     * reduced alarms are kept in a bounded LRU cache so that the alarms can be loaded by their ids
+     * instead of querying them by their reduction keys.
+     *
+     * A partition only reduces the alarms of the keys it owns. Resolution events are queued by their clear
+     * key. When no alarm exists for the clear key and the reduction key is owned by another partition, the
+     * event is forwarded to that partition once the batch is committed instead of falling back on the
+     * reduction key here.
+     */
+    private class Partition implements Runnable {
+        private final BlockingQueue<Reduction> queue;
+        // forwarded events that did not fit into the queue
+        private final Queue<Reduction> forwarded = new ConcurrentLinkedQueue<>();
+        private final int batchSize;
+        private final Map<String, Integer> hotAlarms;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Partition(int index, int queueSize, int batchSize, int cacheSize) {
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.batchSize = batchSize;
+            this.hotAlarms = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+            this.thread = new Thread(this, "alarmd-partition-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            final List<Reduction> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty() || !forwarded.isEmpty()) {
+                try {
+                    Reduction reduction;
+                    while (batch.size() < batchSize && (reduction = forwarded.poll()) != null) {
+                        batch.add(reduction);
+                    }
+                    if (batch.isEmpty()) {
+                        reduction = queue.poll(1, TimeUnit.SECONDS);
+                        if (reduction == null) {
+                            continue;
+                        }
+                        batch.add(reduction);
+                    }
+                    queue.drainTo(batch, batchSize - batch.size());
+                    reduce(batch);
+                } catch (InterruptedException e) {
+                    LOG.debug("Partition {} was interrupted.", thread.getName());
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    LOG.error("An error occurred while reducing a batch of {} events.", batch.size(), e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void reduce(List<Reduction> batch) {
+            final List<Reduction> forwards = new ArrayList<>();
+            try {
+                m_transactionOperations.execute((action) -> {
+                    for (final Reduction reduction : batch) {
+                        reduce(reduction, hotAlarms, forwards);
+                    }
+                    return null;
+                });
+            } catch (Exception e) {
+                // the cache may contain ids of alarms that were rolled back
+                hotAlarms.clear();
+                forwards.clear();
+                if (batch.size() == 1) {
+                    LOG.error("Failed to reduce event with id {}.", batch.get(0).event.getDbid(), e);
+                    return;
+                }
+                // reduce the events one by one so that a single failing event does not drop the whole batch
+                LOG.warn("Failed to reduce a batch of {} events. Reducing them individually.", batch.size(), e);
+                for (final Reduction reduction : batch) {
+                    final List<Reduction> forward = new ArrayList<>(1);
+                    try {
+                        m_transactionOperations.execute((action) -> {
+                            reduce(reduction, null, forward);
+                            return null;
+                        });
+                        forwards.addAll(forward);
+                    } catch (Exception ex) {
+                        LOG.error("Failed to reduce event with id {}.", reduction.event.getDbid(), ex);
+                    }
+                }
+            }
+            // only forward events once their lookup by clear key was committed
+            forwards.forEach(this::forward);
+        }
+
+        private void reduce(Reduction reduction, Map<String, Integer> hotAlarms, List<Reduction> forwards) {
+            final Event event = reduction.event;
+            if (!reduction.clearKeyMissed && isLookedUpByClearKey(event)) {
+                final Partition owner = getPartition(event.getAlarmData().getReductionKey());
+                if (owner != this && findByReductionKey(event.getAlarmData().getClearKey(), hotAlarms) == null) {
+                    // the alarm of the reduction key is reduced by another partition
+                    forwards.add(new Reduction(event, true));
+                    return;
+                }
+            }
+            addOrReduceEventAsAlarm(event, hotAlarms, !reduction.clearKeyMissed);
+        }
+
+        private void forward(Reduction reduction) {
+            final Partition owner = getPartition(reduction.event.getAlarmData().getReductionKey());
+            // never block on the queue of another partition, it may be waiting on ours
+            if (!owner.queue.offer(reduction)) {
+                owner.forwarded.add(reduction);
+            }
+        }
+
+        private void awaitTermination() {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * An event that is queued for reduction by a partition.
+     */
+    private static class Reduction {
+        private final Event event;
+        // set when the event was forwarded to the partition of its reduction key after its clear key was missed
+        private final boolean clearKeyMissed;
+
+        private Reduction(Event event, boolean clearKeyMissed) {
+            this.event = event;
+            this.clearKeyMissed = clearKeyMissed;
+        }
+    }
 }
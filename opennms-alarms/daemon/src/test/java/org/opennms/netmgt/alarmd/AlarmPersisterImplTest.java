@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.alarmd;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.dao.api.AlarmEntityNotifier;
+import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsSeverity;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.event.AlarmData;
+import org.opennms.netmgt.xml.event.Event;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class AlarmPersisterImplTest {
+
+    private static final int DELETED_EVENT_ID = 999;
+
+    private final Map<Integer, OnmsAlarm> alarmsById = new ConcurrentHashMap<>();
+    private final AtomicInteger alarmIds = new AtomicInteger();
+
+    private AlarmDao alarmDao;
+    private EventDao eventDao;
+    private TransactionOperations transactionOperations;
+    private AlarmEntityNotifier alarmEntityNotifier;
+
+    private AlarmPersisterImpl persister;
+
+    @Before
+    public void setUp() {
+        alarmDao = mock(AlarmDao.class);
+        when(alarmDao.get(anyInt())).thenAnswer(inv -> alarmsById.get(inv.<Integer>getArgument(0)));
+        when(alarmDao.findByReductionKey(anyString())).thenAnswer(inv -> alarmsById.values().stream()
+                .filter(a -> a.getReductionKey().equals(inv.getArgument(0)))
+                .findFirst().orElse(null));
+        doAnswer(inv -> {
+            final OnmsAlarm alarm = inv.getArgument(0);
+            if (alarm.getId() == null) {
+                alarm.setId(alarmIds.incrementAndGet());
+            }
+            alarmsById.put(alarm.getId(), alarm);
+            return alarm.getId();
+        }).when(alarmDao).save(any(OnmsAlarm.class));
+
+        eventDao = mock(EventDao.class);
+        when(eventDao.get(anyInt())).thenAnswer(inv -> {
+            final int dbid = inv.getArgument(0);
+            if (dbid == DELETED_EVENT_ID) {
+                // simulates an event that was deleted before it was reduced
+                return null;
+            }
+            final OnmsEvent event = new OnmsEvent();
+            event.setId(dbid);
+            event.setEventUei("uei.opennms.org/test");
+            event.setEventTime(new Date());
+            event.setEventSeverity(OnmsSeverity.MAJOR.getId());
+            event.setEventLogMsg("test");
+            return event;
+        });
+
+        transactionOperations = mock(TransactionOperations.class);
+        when(transactionOperations.execute(any())).thenAnswer(inv -> {
+            // mimics the synchronizations of a transaction manager, nothing is rolled back though
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                final Object result = inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null);
+                TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+                return result;
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        });
+        alarmEntityNotifier = mock(AlarmEntityNotifier.class);
+    }
+
+    @After
+    public void tearDown() {
+        if (persister != null) {
+            persister.destroy();
+        }
+    }
+
+    private AlarmPersisterImpl persister(int numPartitions) {
+        final AlarmPersisterImpl persister = new AlarmPersisterImpl(numPartitions, 1000, 100, 100);
+        persister.setAlarmDao(alarmDao);
+        persister.setEventDao(eventDao);
+        persister.setTransactionOperations(transactionOperations);
+        persister.setAlarmChangeListener(alarmEntityNotifier);
+        persister.setLegacyAlarmState(false);
+        return persister;
+    }
+
+    private static Event event(int dbid, String reductionKey, String clearKey, int alarmType) {
+        final AlarmData alarmData = new AlarmData();
+        alarmData.setReductionKey(reductionKey);
+        alarmData.setClearKey(clearKey);
+        alarmData.setAlarmType(alarmType);
+        final Event event = new EventBuilder("uei.opennms.org/test", "AlarmPersisterImplTest")
+                .setAlarmData(alarmData)
+                .setLogMessage("test")
+                .getEvent();
+        event.setDbid(dbid);
+        return event;
+    }
+
+    private OnmsAlarm alarm(String reductionKey) {
+        return alarmsById.values().stream().filter(a -> a.getReductionKey().equals(reductionKey)).findFirst().orElse(null);
+    }
+
+    @Test
+    public void canReduceEventsOnCallingThread() {
+        persister = persister(0);
+
+        assertThat(persister.persist(event(1, "rk1", null, OnmsAlarm.PROBLEM_TYPE)), notNullValue());
+        final OnmsAlarm alarm = persister.persist(event(2, "rk1", null, OnmsAlarm.PROBLEM_TYPE));
+
+        assertThat(alarm.getCounter(), equalTo(2));
+        verify(transactionOperations, times(2)).execute(any());
+    }
+
+    @Test
+    public void canReduceEventsOnPartitions() {
+        persister = persister(4);
+
+        final int numEvents = 500;
+        for (int i = 1; i <= numEvents; i++) {
+            assertThat(persister.persist(event(i, "rk" + (i % 2), null, OnmsAlarm.PROBLEM_TYPE)), nullValue());
+        }
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> alarm("rk0") != null && alarm("rk0").getCounter() == numEvents / 2
+                                                         && alarm("rk1") != null && alarm("rk1").getCounter() == numEvents / 2);
+
+        // events are reduced in batches and the alarms are loaded by their cached ids
+        assertThat(mockingDetails(transactionOperations).getInvocations().size(), lessThan(numEvents));
+        verify(alarmDao, times(1)).findByReductionKey("rk0");
+        verify(alarmDao, times(1)).findByReductionKey("rk1");
+    }
+
+    @Test
+    public void canClearAlarmsOnPartitions() {
+        persister = persister(4);
+
+        persister.persist(event(1, "down:1", null, OnmsAlarm.PROBLEM_TYPE));
+        persister.persist(event(2, "up:1", "down:1", OnmsAlarm.RESOLUTION_TYPE));
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> alarm("down:1") != null && alarm("down:1").getSeverity() == OnmsSeverity.CLEARED);
+        assertThat(alarm("up:1"), nullValue());
+    }
+
+    @Test
+    public void canReduceConcurrentClearsAndTriggersOnPartitions() throws Exception {
+        persister = persister(4);
+        // widen the window between missing an alarm and creating it
+        when(alarmDao.findByReductionKey(anyString())).thenAnswer(inv -> {
+            final OnmsAlarm alarm = alarm(inv.getArgument(0));
+            if (alarm == null) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            return alarm;
+        });
+
+        final int numProblems = 200;
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final AtomicInteger dbids = new AtomicInteger();
+            for (int i = 0; i < numProblems; i++) {
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<?>> futures = new ArrayList<>();
+                // a clear, an event that is only reduced by the reduction key of the clear and the trigger of the clear
+                // -> the clear falls back on its reduction key when it is reduced before the trigger
+                for (final Event event : Arrays.asList(event(dbids.incrementAndGet(), "up:" + i, "down:" + i, OnmsAlarm.RESOLUTION_TYPE),
+                                                       event(dbids.incrementAndGet(), "up:" + i, null, OnmsAlarm.RESOLUTION_TYPE),
+                                                       event(dbids.incrementAndGet(), "down:" + i, null, OnmsAlarm.PROBLEM_TYPE))) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return persister.persist(event);
+                    }));
+                }
+                start.countDown();
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        persister.destroy();
+
+        // no alarm is created twice
+        final Map<String, Long> alarmsByReductionKey = alarmsById.values().stream()
+                .collect(Collectors.groupingBy(OnmsAlarm::getReductionKey, Collectors.counting()));
+        assertThat(alarmsByReductionKey.values().stream().filter(count -> count > 1).count(), equalTo(0L));
+        for (int i = 0; i < numProblems; i++) {
+            final OnmsAlarm down = alarm("down:" + i);
+            final OnmsAlarm up = alarm("up:" + i);
+            assertThat(down, notNullValue());
+            assertThat(up, notNullValue());
+            // both events of the reduction key of the clear are reduced to a single alarm unless the clear hit the trigger
+            assertThat(up.getCounter() + (down.getSeverity() == OnmsSeverity.CLEARED ? 1 : 0), equalTo(2));
+        }
+    }
+
+    @Test
+    public void canReduceRemainingEventsOfFailedBatch() {
+        persister = persister(1);
+
+        persister.persist(event(1, "rk1", null, OnmsAlarm.PROBLEM_TYPE));
+        persister.persist(event(DELETED_EVENT_ID, "rk1", null, OnmsAlarm.PROBLEM_TYPE));
+        persister.persist(event(2, "rk1", null, OnmsAlarm.PROBLEM_TYPE));
+        persister.destroy();
+
+        // the event that can not be reduced does not prevent the following events from being reduced
+        // -> the mocked transactions are not rolled back, i.e. the counter of the alarm is not checked
+        assertThat(alarm("rk1").getLastEvent().getId(), equalTo(2));
+    }
+
+    @Test
+    public void doesNotNotifyListenersOfRolledBackReductions() {
+        persister = persister(1);
+
+        persister.persist(event(1, "rk1", null, OnmsAlarm.PROBLEM_TYPE));
+        persister.persist(event(2, "rk1", null, OnmsAlarm.PROBLEM_TYPE));
+        persister.persist(event(DELETED_EVENT_ID, "rk1", null, OnmsAlarm.PROBLEM_TYPE));
+        persister.destroy();
+
+        // the listeners are only told about the reductions of the committed transactions,
+        // not about the ones of the failed batch that are reduced again individually
+        assertThat(mockingDetails(alarmEntityNotifier).getInvocations().size(), equalTo(2));
+    }
+}
@@ -0,0 +1,428 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.xml.eventconf;
+
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_EID;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_GENERIC;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_SPECIFIC;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SNMP_TRAPOID;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_SOURCE;
+import static org.opennms.netmgt.xml.eventconf.Maskelement.TAG_UEI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An index over all of the event definitions of an {@link Events} tree, used to find the first definition
+ * matching an event without evaluating the mask of every definition in turn.
+ *
+ * Every definition is given a rank, which is the position at which {@link Events#findFirstMatchingEvent(org.opennms.netmgt.xml.event.Event)}
+ * would consider it when scanning the tree. The definitions are then indexed by values their masks require:
+ * <ul>
+ *     <li>definitions requiring exact values for some of the UEI, enterprise id, trap OID, generic, specific,
+ *     source and varbind fields are grouped by that set of fields, and looked up by the event's values for it;</li>
+ *     <li>definitions requiring an enterprise id, trap OID or UEI prefix are looked up by the prefixes of the
+ *     event's value;</li>
+ *     <li>all other definitions, such as those using only regular expressions, are always candidates.</li>
+ * </ul>
+ * The candidates of an event are then merged by rank and their masks are evaluated in that order, so that the
+ * result is the same as when scanning the tree.
+ *
+ * The index is immutable, and must be compiled again whenever the tree is initialized.
+ */
+class EventMatcherIndex {
+
+    /**
+     * The fields which can be used to index the definitions, in order of preference.
+     */
+    private static final List<String> EXACT_FIELDS = Arrays.asList(TAG_UEI, TAG_SNMP_EID, TAG_SNMP_TRAPOID, TAG_SNMP_GENERIC, TAG_SNMP_SPECIFIC, TAG_SOURCE);
+
+    private static final List<String> PREFIX_FIELDS = Arrays.asList(TAG_SNMP_EID, TAG_SNMP_TRAPOID, TAG_UEI);
+
+    private static final String VARBIND_PREFIX = "varbind#";
+
+    /**
+     * Limits the number of keys under which a single definition is indexed when its mask elements have many values.
+     */
+    private static final int MAX_KEYS_PER_DEFINITION = 256;
+
+    private static class Candidate {
+        private final Event event;
+        private final int rank;
+
+        /**
+         * The partition keys for which the definition is considered, or <code>null</code> if it is always considered.
+         */
+        private final Set<String> partitionKeys;
+
+        /**
+         * Whether the definition is returned without evaluating its mask, as done by the UEI index of the event files.
+         */
+        private final boolean ueiMatch;
+
+        private Candidate(final Event event, final int rank, final Set<String> partitionKeys, final boolean ueiMatch) {
+            this.event = event;
+            this.rank = rank;
+            this.partitionKeys = partitionKeys;
+            this.ueiMatch = ueiMatch;
+        }
+
+        private boolean matches(final String partitionKey, final org.opennms.netmgt.xml.event.Event matchingEvent) {
+            if (ueiMatch) {
+                return true;
+            }
+            if (partitionKeys != null && (partitionKey == null || !partitionKeys.contains(partitionKey))) {
+                return false;
+            }
+            return event.matches(matchingEvent).matched();
+        }
+    }
+
+    /**
+     * Definitions requiring exact values for the same set of fields.
+     */
+    private static class ExactGroup {
+        private final Field[] fields;
+        private final Map<String, List<Candidate>> candidates = new HashMap<>();
+
+        private ExactGroup(final Field[] fields) {
+            this.fields = fields;
+        }
+
+        private List<Candidate> get(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+            if (fields.length == 1) {
+                final String value = fields[0].get(matchingEvent);
+                return value == null ? null : candidates.get(value);
+            }
+
+            final StringBuilder key = new StringBuilder();
+            for (final Field field : fields) {
+                final String value = field.get(matchingEvent);
+                if (value == null) {
+                    return null;
+                }
+                key.append(value).append('\0');
+            }
+            return candidates.get(key.toString());
+        }
+    }
+
+    /**
+     * Definitions requiring a value of a field to start with one of the given prefixes, or to equal one of the given values.
+     */
+    private static class PrefixGroup {
+        private final Field field;
+        private final Map<String, List<Candidate>> byPrefix = new HashMap<>();
+        private final Map<String, List<Candidate>> byValue = new HashMap<>();
+        private int[] prefixLengths;
+
+        private PrefixGroup(final Field field) {
+            this.field = field;
+        }
+
+        private void get(final org.opennms.netmgt.xml.event.Event matchingEvent, final List<List<Candidate>> lists) {
+            final String value = field.get(matchingEvent);
+            if (value == null) {
+                return;
+            }
+            final List<Candidate> exact = byValue.get(value);
+            if (exact != null) {
+                lists.add(exact);
+            }
+            for (final int length : prefixLengths) {
+                if (length > value.length()) {
+                    break;
+                }
+                final List<Candidate> candidates = byPrefix.get(value.substring(0, length));
+                if (candidates != null) {
+                    lists.add(candidates);
+                }
+            }
+        }
+    }
+
+    private final Partition partition;
+
+    private final ExactGroup[] exactGroups;
+
+    private final PrefixGroup[] prefixGroups;
+
+    private final List<Candidate> unindexed;
+
+    private final Map<String, Candidate> ueiMatches;
+
+    private EventMatcherIndex(final Builder builder) {
+        this.partition = builder.partition;
+        this.exactGroups = builder.exactGroups.values().toArray(new ExactGroup[0]);
+        this.prefixGroups = builder.prefixGroups.values().toArray(new PrefixGroup[0]);
+        for (final PrefixGroup group : this.prefixGroups) {
+            group.prefixLengths = group.byPrefix.keySet().stream()
+                    .mapToInt(String::length)
+                    .distinct()
+                    .sorted()
+                    .toArray();
+        }
+        this.unindexed = builder.unindexed;
+        this.ueiMatches = builder.ueiMatches;
+    }
+
+    /**
+     * Finds the first definition matching the given event, in the order of the scan done by {@link Events}.
+     */
+    Event findFirstMatchingEvent(final org.opennms.netmgt.xml.event.Event matchingEvent) {
+        final List<List<Candidate>> lists = new ArrayList<>(exactGroups.length + prefixGroups.length + 2);
+        for (final ExactGroup group : exactGroups) {
+            final List<Candidate> candidates = group.get(matchingEvent);
+            if (candidates != null) {
+                lists.add(candidates);
+            }
+        }
+        for (final PrefixGroup group : prefixGroups) {
+            group.get(matchingEvent, lists);
+        }
+        if (!unindexed.isEmpty()) {
+            lists.add(unindexed);
+        }
+        if (matchingEvent.getUei() != null) {
+            final Candidate ueiMatch = ueiMatches.get(matchingEvent.getUei());
+            if (ueiMatch != null) {
+                lists.add(Collections.singletonList(ueiMatch));
+            }
+        }
+
+        if (lists.isEmpty()) {
+            return null;
+        }
+
+        final String partitionKey = partition.group(matchingEvent);
+
+        // Evaluate the candidates of all lists, which are sorted by rank, in the order of their rank
+        final int[] positions = new int[lists.size()];
+        while (true) {
+            int next = -1;
+            int nextRank = Integer.MAX_VALUE;
+            for (int i = 0; i < positions.length; i++) {
+                final List<Candidate> candidates = lists.get(i);
+                if (positions[i] < candidates.size() && candidates.get(positions[i]).rank < nextRank) {
+                    next = i;
+                    nextRank = candidates.get(positions[i]).rank;
+                }
+            }
+            if (next < 0) {
+                return null;
+            }
+
+            final Candidate candidate = lists.get(next).get(positions[next]++);
+            if (candidate.matches(partitionKey, matchingEvent)) {
+                return candidate.event;
+            }
+        }
+    }
+
+    /**
+     * Collects the definitions in the order of their rank.
+     */
+    static class Builder {
+        private final Partition partition;
+        private final Map<String, ExactGroup> exactGroups = new LinkedHashMap<>();
+        private final Map<String, PrefixGroup> prefixGroups = new LinkedHashMap<>();
+        private final List<Candidate> unindexed = new ArrayList<>();
+        private final Map<String, Candidate> ueiMatches = new HashMap<>();
+        private int rank = 0;
+
+        Builder(final Partition partition) {
+            this.partition = partition;
+        }
+
+        /**
+         * Adds the next definition.
+         *
+         * @param partitionKeys the partition keys for which the definition is considered, or <code>null</code> if it
+         *                      is always considered
+         */
+        Builder add(final Event event, final Set<String> partitionKeys) {
+            index(new Candidate(event, rank++, partitionKeys, false));
+            return this;
+        }
+
+        /**
+         * Adds the UEI index of an event file, which is consulted before the definitions of the file.
+         */
+        Builder addUeiMatches(final Map<String, Event> eventsByUei) {
+            final int ueiRank = rank++;
+            eventsByUei.forEach((uei, event) -> ueiMatches.putIfAbsent(uei, new Candidate(event, ueiRank, null, true)));
+            return this;
+        }
+
+        EventMatcherIndex build() {
+            return new EventMatcherIndex(this);
+        }
+
+        private void index(final Candidate candidate) {
+            final Mask mask = candidate.event.getMask();
+            if (mask == null || mask.getMaskelements().isEmpty()) {
+                final String uei = candidate.event.getUei();
+                if (uei != null) {
+                    getExactGroup(new TreeMap<>(Collections.singletonMap(TAG_UEI, EventMatchers.field(TAG_UEI))))
+                            .candidates.computeIfAbsent(uei, k -> new ArrayList<>()).add(candidate);
+                }
+                // Definitions without a mask or UEI never match
+                return;
+            }
+
+            // Gather the mask elements and varbinds requiring exact values
+            final Map<String, List<String>> exactValues = new TreeMap<>();
+            final Map<String, Field> exactFields = new TreeMap<>();
+            for (final Maskelement element : mask.getMaskelements()) {
+                if (!EXACT_FIELDS.contains(element.getMename()) || exactValues.containsKey(element.getMename())) {
+                    continue;
+                }
+                final List<String> values = getValues(element.getMevalues(), false);
+                if (values != null) {
+                    if (values.isEmpty()) {
+                        // The mask element can never match
+                        return;
+                    }
+                    exactValues.put(element.getMename(), values);
+                    exactFields.put(element.getMename(), EventMatchers.field(element.getMename()));
+                }
+            }
+            for (final Varbind varbind : mask.getVarbinds()) {
+                if (varbind.getVbnumber() == null || varbind.getVbnumber() <= 0) {
+                    continue;
+                }
+                final String name = VARBIND_PREFIX + varbind.getVbnumber();
+                final List<String> values = getValues(varbind.getVbvalues(), false);
+                if (values != null && !values.isEmpty() && !exactValues.containsKey(name)) {
+                    exactValues.put(name, values);
+                    exactFields.put(name, EventMatchers.varbind(varbind.getVbnumber()));
+                }
+            }
+
+            if (!exactValues.isEmpty()) {
+                // Keep the number of keys bounded by dropping the fields with the most values
+                while (exactValues.size() > 1 && countKeys(exactValues) > MAX_KEYS_PER_DEFINITION) {
+                    final String widest = exactValues.entrySet().stream()
+                            .max((a, b) -> Integer.compare(a.getValue().size(), b.getValue().size()))
+                            .get().getKey();
+                    exactValues.remove(widest);
+                    exactFields.remove(widest);
+                }
+
+                final ExactGroup group = getExactGroup(exactFields);
+                for (final String key : getKeys(new ArrayList<>(exactValues.values()))) {
+                    group.candidates.computeIfAbsent(key, k -> new ArrayList<>()).add(candidate);
+                }
+                return;
+            }
+
+            for (final String name : PREFIX_FIELDS) {
+                final Maskelement element = mask.getMaskElement(name);
+                if (element == null) {
+                    continue;
+                }
+                final List<String> values = getValues(element.getMevalues(), true);
+                if (values == null) {
+                    continue;
+                }
+                final PrefixGroup group = prefixGroups.computeIfAbsent(name, k -> new PrefixGroup(EventMatchers.field(name)));
+                for (final String value : new TreeSet<>(values)) {
+                    if (value.endsWith("%")) {
+                        // The value itself starts with the prefix, so it does not need to be indexed separately
+                        group.byPrefix.computeIfAbsent(value.substring(0, value.length() - 1), k -> new ArrayList<>()).add(candidate);
+                    } else {
+                        group.byValue.computeIfAbsent(value, k -> new ArrayList<>()).add(candidate);
+                    }
+                }
+                return;
+            }
+
+            unindexed.add(candidate);
+        }
+
+        private ExactGroup getExactGroup(final Map<String, Field> fields) {
+            return exactGroups.computeIfAbsent(String.join(",", fields.keySet()),
+                    k -> new ExactGroup(fields.values().toArray(new Field[0])));
+        }
+
+        /**
+         * Returns the distinct non-null values if they can be indexed, or <code>null</code> if they contain regular
+         * expressions, or prefixes when not allowed.
+         */
+        private static List<String> getValues(final List<String> values, final boolean allowPrefixes) {
+            final List<String> result = new ArrayList<>(values.size());
+            for (final String value : values) {
+                if (value == null) {
+                    continue;
+                }
+                if (value.startsWith("~") || (value.endsWith("%") && !allowPrefixes)) {
+                    return null;
+                }
+                if (!result.contains(value)) {
+                    result.add(value);
+                }
+            }
+            return result;
+        }
+
+        private static long countKeys(final Map<String, List<String>> values) {
+            long count = 1;
+            for (final List<String> v : values.values()) {
+                count *= v.size();
+            }
+            return count;
+        }
+
+        private static List<String> getKeys(final List<List<String>> values) {
+            if (values.size() == 1) {
+                return values.get(0);
+            }
+
+            List<String> keys = Collections.singletonList("");
+            for (final List<String> fieldValues : values) {
+                final List<String> next = new ArrayList<>(keys.size() * fieldValues.size());
+                for (final String key : keys) {
+                    for (final String value : fieldValues) {
+                        next.add(key + value + '\0');
+                    }
+                }
+                keys = next;
+            }
+            return keys;
+        }
+    }
+}
@@ -64,6 +64,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Consumer;
@@ -119,6 +120,9 @@ public class Events implements Serializable {
     @XmlTransient
     private EventOrdering m_ordering;
 
+    @XmlTransient
+    private EventMatcherIndex m_matcherIndex;
+
     public Global getGlobal() {
         return m_global;
     }
@@ -283,7 +287,25 @@ public class Events implements Serializable {
             }
         }
 
-        // If the UEI match failed, fallback to searching with the matchers through the partitions
+        // If the UEI match failed, fallback to searching with the matchers
+        if (m_matcherIndex != null) {
+            return m_matcherIndex.findFirstMatchingEvent(matchingEvent);
+        }
+
+        return findFirstMatchingEventByScan(matchingEvent);
+    }
+
+    EventMatcherIndex getMatcherIndex() {
+        return m_matcherIndex;
+    }
+
+    /**
+     * Searches for the first matching event definition by evaluating the matchers of the partitions of this
+     * file, and then of the loaded event files, in order.
+     *
+     * This is the order that must be preserved by the {@link EventMatcherIndex}.
+     */
+    Event findFirstMatchingEventByScan(final org.opennms.netmgt.xml.event.Event matchingEvent) {
         final String key = m_partition.group(matchingEvent);
         Collection<Event> potentialMatches = m_nullPartitionedEvents;
         if (key != null) {
@@ -345,7 +367,16 @@ public class Events implements Serializable {
     }
 
     public void initialize(final Partition partition, final EventOrdering eventOrdering) {
+        initializeEvents(partition, eventOrdering);
+
+        final EventMatcherIndex.Builder builder = new EventMatcherIndex.Builder(partition);
+        compileMatcherIndex(builder, true);
+        m_matcherIndex = builder.build();
+    }
+
+    private void initializeEvents(final Partition partition, final EventOrdering eventOrdering) {
         m_ordering = eventOrdering;
+        m_matcherIndex = null;
 
         for (final Event event : m_events) {
             event.initialize(m_ordering.next());
@@ -354,7 +385,7 @@ public class Events implements Serializable {
         partitionEvents(partition);
 
         for (final Events events : m_loadedEventFiles.values()) {
-            events.initialize(partition, m_ordering.subsequence());
+            events.initializeEvents(partition, m_ordering.subsequence());
         }
 
         // roll up all prioritized events and sort all events by priority
@@ -373,6 +404,33 @@ public class Events implements Serializable {
         indexEventsByUei();
     }
 
+    // Add the event definitions to the index in the same order as they are considered by findFirstMatchingEventByScan()
+    private void compileMatcherIndex(final EventMatcherIndex.Builder builder, final boolean root) {
+        if (!root) {
+            // The UEI index of the loaded event files is consulted before their matchers
+            builder.addUeiMatches(m_eventsByUei);
+        }
+
+        final Map<Event, Set<String>> partitionKeysByEvent = new TreeMap<>();
+        for (final Event event : m_nullPartitionedEvents) {
+            partitionKeysByEvent.put(event, null);
+        }
+        for (final Entry<String, List<Event>> entry : m_partitionedEvents.entrySet()) {
+            for (final Event event : entry.getValue()) {
+                if (partitionKeysByEvent.containsKey(event) && partitionKeysByEvent.get(event) == null) {
+                    // Already considered for all partitions
+                    continue;
+                }
+                partitionKeysByEvent.computeIfAbsent(event, k -> new HashSet<>()).add(entry.getKey());
+            }
+        }
+        partitionKeysByEvent.forEach(builder::add);
+
+        for (final Events events : m_loadedEventFiles.values()) {
+            events.compileMatcherIndex(builder, false);
+        }
+    }
+
     // Recurse through the configuration and return Event Definitions with priority > 0
     private List<Event> getPrioritizedEvents() {
         List<Event> prioritizedEvents = m_events.stream().filter(e -> e.getPriority() > 0).collect(Collectors.toList());
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.xml.eventconf;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare lookups against the {@link EventMatcherIndex} with
+ * scanning the partitions of the event files, which is how {@link Events#findFirstMatchingEvent(org.opennms.netmgt.xml.event.Event)}
+ * used to find the event definitions.
+ * <p>
+ * Both use the event definitions shipped with OpenNMS. Each operation looks up a single event derived from one of
+ * these definitions, so the reported number of operations per second is the number of lookups per second.
+ */
+public class EventMatcherIndexBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(EventMatcherIndexBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        private Events events;
+
+        private org.opennms.netmgt.xml.event.Event[] matchingEvents;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            events = EventMatcherIndexTest.loadShippedEvents();
+
+            final List<org.opennms.netmgt.xml.event.Event> shuffled = EventMatcherIndexTest.createMatchingEvents(events);
+            Collections.shuffle(shuffled, new Random(42));
+            matchingEvents = shuffled.toArray(new org.opennms.netmgt.xml.event.Event[0]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TState {
+        private int next;
+
+        private org.opennms.netmgt.xml.event.Event next(final BState state) {
+            final org.opennms.netmgt.xml.event.Event matchingEvent = state.matchingEvents[next];
+            next = (next + 1) % state.matchingEvents.length;
+            return matchingEvent;
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Event index(BState state, TState thread) {
+        return state.events.getMatcherIndex().findFirstMatchingEvent(thread.next(state));
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public Event scan(BState state, TState thread) {
+        return state.events.findFirstMatchingEventByScan(thread.next(state));
+    }
+}
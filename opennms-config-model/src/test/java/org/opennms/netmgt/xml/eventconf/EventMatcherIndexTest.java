@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.xml.eventconf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.opennms.core.xml.JaxbUtils;
+import org.opennms.netmgt.xml.event.Parm;
+import org.opennms.netmgt.xml.event.Snmp;
+import org.springframework.core.io.FileSystemResource;
+
+/**
+ * Verifies that the {@link EventMatcherIndex} finds the same event definitions as scanning the
+ * event files, using the event definitions shipped with OpenNMS.
+ */
+public class EventMatcherIndexTest {
+
+    static final File SHIPPED_EVENTCONF = new File("../opennms-base-assembly/src/main/filtered/etc/eventconf.xml");
+
+    /**
+     * Same as the partition used by the DefaultEventConfDao.
+     */
+    static class WildcardAwareEnterpriseIdPartition extends EnterpriseIdPartition {
+        @Override
+        public List<String> group(final Event eventConf) {
+            final List<String> keys = super.group(eventConf);
+            if (keys != null && keys.stream().anyMatch(key -> key.endsWith("%") || key.startsWith("~"))) {
+                return null;
+            }
+            return keys;
+        }
+    }
+
+    @Test
+    public void canMatchShippedEventDefinitions() throws IOException {
+        final Events events = loadShippedEvents();
+        final List<org.opennms.netmgt.xml.event.Event> matchingEvents = createMatchingEvents(events);
+        assertTrue("Only " + matchingEvents.size() + " events were created", matchingEvents.size() > 10000);
+
+        int matched = 0;
+        for (final org.opennms.netmgt.xml.event.Event matchingEvent : matchingEvents) {
+            final Event expected = events.findFirstMatchingEventByScan(matchingEvent);
+            final Event actual = events.getMatcherIndex().findFirstMatchingEvent(matchingEvent);
+            assertSame("Different event definitions matched " + matchingEvent, expected, actual);
+            if (actual != null) {
+                matched++;
+            }
+        }
+        assertTrue("Only " + matched + " of " + matchingEvents.size() + " events matched", matched > matchingEvents.size() / 2);
+    }
+
+    @Test
+    public void canMatchInPriorityAndFileOrder() {
+        final Events events = new Events();
+        final Event catchAll = createEvent("uei.opennms.org/catchAll", "id", ".1.3.6.1.4.1.5813%");
+        final Event specific = createEvent("uei.opennms.org/specific", "id", ".1.3.6.1.4.1.5813.1");
+        final Event regex = createEvent("uei.opennms.org/regex", "id", "~^\\.1\\.3\\.6\\.1\\.4\\.1\\.5813\\.2$");
+        events.addEvent(catchAll);
+        events.addEvent(specific);
+        events.addEvent(regex);
+
+        final Events subEvents = new Events();
+        final Event prioritized = createEvent("uei.opennms.org/prioritized", "id", ".1.3.6.1.4.1.5813.1");
+        prioritized.setPriority(10);
+        final Event later = createEvent("uei.opennms.org/later", "id", ".1.3.6.1.4.1.9.1");
+        subEvents.addEvent(prioritized);
+        subEvents.addEvent(later);
+        events.addLoadedEventFile("sub.events.xml", subEvents);
+
+        events.initialize(new WildcardAwareEnterpriseIdPartition(), new EventOrdering());
+
+        assertSame(prioritized, events.findFirstMatchingEvent(createTrap(".1.3.6.1.4.1.5813.1")));
+        assertSame(catchAll, events.findFirstMatchingEvent(createTrap(".1.3.6.1.4.1.5813.2")));
+        assertSame(later, events.findFirstMatchingEvent(createTrap(".1.3.6.1.4.1.9.1")));
+        assertNull(events.findFirstMatchingEvent(createTrap(".1.3.6.1.4.1.9.2")));
+
+        events.getEvents().remove(catchAll);
+        events.initialize(new WildcardAwareEnterpriseIdPartition(), new EventOrdering());
+        assertSame(regex, events.findFirstMatchingEvent(createTrap(".1.3.6.1.4.1.5813.2")));
+    }
+
+    static Events loadShippedEvents() throws IOException {
+        final FileSystemResource resource = new FileSystemResource(SHIPPED_EVENTCONF);
+        final Events events = JaxbUtils.unmarshal(Events.class, resource);
+        events.loadEventFiles(resource);
+        events.initialize(new WildcardAwareEnterpriseIdPartition(), new EventOrdering());
+        assertNotNull(events.getMatcherIndex());
+        return events;
+    }
+
+    /**
+     * Creates events derived from the masks of all of the given event definitions, which match these
+     * definitions, or nearly do.
+     */
+    static List<org.opennms.netmgt.xml.event.Event> createMatchingEvents(final Events events) {
+        return events.forEachEvent(new ArrayList<>(), (matchingEvents, eventConf) -> {
+            final Mask mask = eventConf.getMask();
+            if (mask == null) {
+                final org.opennms.netmgt.xml.event.Event matchingEvent = new org.opennms.netmgt.xml.event.Event();
+                matchingEvent.setUei(eventConf.getUei());
+                matchingEvents.add(matchingEvent);
+                return matchingEvents;
+            }
+
+            final String id = toValue(mask.getMaskElementValues(Maskelement.TAG_SNMP_EID));
+            final String generic = toValue(mask.getMaskElementValues(Maskelement.TAG_SNMP_GENERIC));
+            final String specific = toValue(mask.getMaskElementValues(Maskelement.TAG_SNMP_SPECIFIC));
+            final String trapOid = toValue(mask.getMaskElementValues(Maskelement.TAG_SNMP_TRAPOID));
+            final String uei = toValue(mask.getMaskElementValues(Maskelement.TAG_UEI));
+            final List<Parm> parms = new ArrayList<>();
+            for (final Varbind varbind : mask.getVarbinds()) {
+                while (parms.size() < varbind.getVbnumber()) {
+                    parms.add(new Parm("parm" + parms.size(), "0"));
+                }
+                final String value = toValue(varbind.getVbvalues());
+                if (value != null) {
+                    parms.set(varbind.getVbnumber() - 1, new Parm("parm" + (varbind.getVbnumber() - 1), value));
+                }
+            }
+
+            matchingEvents.add(createEvent(uei, id, generic, specific, trapOid, parms));
+            // Events which differ slightly from the definition
+            matchingEvents.add(createEvent(null, id, generic, specific, trapOid, new ArrayList<>()));
+            matchingEvents.add(createEvent(uei, id == null ? null : id + ".99", generic, specific, trapOid, parms));
+            matchingEvents.add(createEvent(uei, id, generic, specific == null ? "1" : specific + "1", trapOid, parms));
+            return matchingEvents;
+        });
+    }
+
+    private static String toValue(final List<String> values) {
+        if (values == null || values.isEmpty() || values.get(0) == null || values.get(0).startsWith("~")) {
+            return null;
+        }
+        final String value = values.get(0);
+        return value.endsWith("%") ? value.substring(0, value.length() - 1) + "1" : value;
+    }
+
+    private static org.opennms.netmgt.xml.event.Event createEvent(final String uei, final String id, final String generic,
+                                                                  final String specific, final String trapOid, final List<Parm> parms) {
+        final org.opennms.netmgt.xml.event.Event matchingEvent = new org.opennms.netmgt.xml.event.Event();
+        matchingEvent.setUei(uei);
+        final Snmp snmp = new Snmp();
+        snmp.setId(id);
+        snmp.setTrapOID(trapOid);
+        if (generic != null && generic.matches("\\d+")) {
+            snmp.setGeneric(Integer.parseInt(generic));
+        }
+        if (specific != null && specific.matches("\\d+")) {
+            snmp.setSpecific(Integer.parseInt(specific));
+        }
+        matchingEvent.setSnmp(snmp);
+        matchingEvent.setParmCollection(parms);
+        return matchingEvent;
+    }
+
+    private static org.opennms.netmgt.xml.event.Event createTrap(final String id) {
+        return createEvent(null, id, "6", "1", null, new ArrayList<>());
+    }
+
+    private static Event createEvent(final String uei, final String name, final String value) {
+        final Maskelement maskElement = new Maskelement();
+        maskElement.setMename(name);
+        maskElement.setMevalues(Arrays.asList(value));
+        final Mask mask = new Mask();
+        mask.addMaskelement(maskElement);
+        final Event event = new Event();
+        event.setUei(uei);
+        event.setMask(mask);
+        return event;
+    }
+}
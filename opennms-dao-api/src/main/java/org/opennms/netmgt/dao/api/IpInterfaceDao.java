@@ -34,6 +34,7 @@ import java.util.Map;
 
 import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.PrimaryType;
 
 
 /**
@@ -126,4 +127,29 @@ public interface IpInterfaceDao extends LegacyOnmsDao<OnmsIpInterface, Integer>
 
     List<OnmsIpInterface> findByIpAddressAndLocation(String address, String location);
 
+    /**
+     * Returns the location, IP address, node ID, interface ID and SNMP primary flag of every
+     * interface that is not marked as deleted, on a node that is not marked as deleted.
+     *
+     * Only the required columns are queried, the interfaces and nodes themselves are not loaded.
+     *
+     * @return the mappings used to populate the {@link InterfaceToNodeCache}
+     */
+    List<InterfaceToNodeMapping> findInterfaceToNodeMappings();
+
+    class InterfaceToNodeMapping {
+        public final String location;
+        public final InetAddress ipAddress;
+        public final int nodeId;
+        public final int interfaceId;
+        public final PrimaryType snmpPrimary;
+
+        public InterfaceToNodeMapping(final String location, final InetAddress ipAddress, final int nodeId, final int interfaceId, final PrimaryType snmpPrimary) {
+            this.location = location;
+            this.ipAddress = ipAddress;
+            this.nodeId = nodeId;
+            this.interfaceId = interfaceId;
+            this.snmpPrimary = snmpPrimary;
+        }
+    }
 }
@@ -205,4 +205,18 @@ public class MockIpInterfaceDao extends AbstractMockDao<OnmsIpInterface, Integer
     public List<OnmsIpInterface> findByIpAddressAndLocation(String location, String address) {
         throw new UnsupportedOperationException("Not yet implemented!");
     }
+
+    @Override
+    public List<InterfaceToNodeMapping> findInterfaceToNodeMappings() {
+        final List<InterfaceToNodeMapping> mappings = new ArrayList<>();
+        for (final OnmsIpInterface iface : findAll()) {
+            final OnmsNode node = iface.getNode();
+            if (node == null || node.getType() == OnmsNode.NodeType.DELETED || "D".equals(iface.getIsManaged())) {
+                continue;
+            }
+            mappings.add(new InterfaceToNodeMapping(node.getLocation() == null ? null : node.getLocation().getLocationName(),
+                    iface.getIpAddress(), node.getId(), iface.getId(), iface.getIsSnmpPrimary()));
+        }
+        return mappings;
+    }
 }
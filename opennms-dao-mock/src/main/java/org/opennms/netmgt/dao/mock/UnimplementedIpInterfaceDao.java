@@ -168,4 +168,9 @@ public abstract class UnimplementedIpInterfaceDao implements IpInterfaceDao {
     public OnmsIpInterface findPrimaryInterfaceByNodeId(Integer nodeId) {
         throw new UnsupportedOperationException("Not yet implemented!");
     }
+
+    @Override
+    public List<InterfaceToNodeMapping> findInterfaceToNodeMappings() {
+        throw new UnsupportedOperationException("Not yet implemented!");
+    }
 }
@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+
+import org.opennms.core.utils.LocationUtils;
+import org.opennms.netmgt.model.PrimaryType;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Compact index used by the {@link InterfaceToNodeCacheDaoImpl} to map (location, IP address)
+ * pairs to the nodes and interfaces they belong to.
+ *
+ * Every location is backed by an open addressing hash table with linear probing which stores
+ * the address as two primitive longs (IPv4 addresses use their IPv4-mapped IPv6 form). The
+ * entries of an address are packed into longs which sort by SNMP primary type, node ID and
+ * interface ID - the same order the previous {@code SortedSetMultimap} based cache used - so
+ * that the first element is the entry returned by {@link #getFirst(String, InetAddress)}.
+ *
+ * Lookups never block: they read the table optimistically and only fall back to acquiring the
+ * read lock if the table was modified while they were reading it. Modifications are serialized
+ * per location.
+ */
+class InterfaceToNodeIndex {
+
+    /**
+     * Returned by {@link #getFirst(String, InetAddress)} if there is no entry for the given address.
+     * Can never collide with a packed entry, since the type index is at most 2.
+     */
+    static final long NO_ENTRY = -1L;
+
+    private static final long IPV4_MAPPED_PREFIX = 0x0000_FFFF_0000_0000L;
+    private static final long ID_MASK = 0x7FFF_FFFFL;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final ConcurrentMap<String, Table> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Packs the given entry into a long, using 2 bits for the type and 31 bits for each of the IDs.
+     * Comparing packed entries as unsigned longs yields the order used by the cache.
+     */
+    static long pack(final PrimaryType type, final int nodeId, final int interfaceId) {
+        Preconditions.checkArgument(nodeId >= 0, "nodeId must be >= 0: %s", nodeId);
+        Preconditions.checkArgument(interfaceId >= 0, "interfaceId must be >= 0: %s", interfaceId);
+        return ((long) typeIndex(type) << 62) | ((long) nodeId << 31) | interfaceId;
+    }
+
+    static int nodeId(final long entry) {
+        return (int) ((entry >>> 31) & ID_MASK);
+    }
+
+    static int interfaceId(final long entry) {
+        return (int) (entry & ID_MASK);
+    }
+
+    private static int typeIndex(final PrimaryType type) {
+        // Same order as PrimaryType#compareTo
+        switch (type == null ? 'N' : type.getCharCode()) {
+            case 'P': return 2;
+            case 'S': return 1;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Adds the given entry.
+     *
+     * @return true if the entry was added, false if it was already present
+     */
+    boolean put(final String location, final InetAddress ipAddr, final int nodeId, final int interfaceId, final PrimaryType type) {
+        final byte[] addr = ipAddr.getAddress();
+        final long entry = pack(type, nodeId, interfaceId);
+        return tables.computeIfAbsent(LocationUtils.getEffectiveLocationName(location), l -> new Table())
+                .put(hi(addr), lo(addr), entry);
+    }
+
+    /**
+     * Returns the first entry for the given address, or {@link #NO_ENTRY} if there is none.
+     */
+    long getFirst(final String location, final InetAddress ipAddr) {
+        final Table table = tables.get(LocationUtils.getEffectiveLocationName(location));
+        if (table == null) {
+            return NO_ENTRY;
+        }
+        final byte[] addr = ipAddr.getAddress();
+        return table.getFirst(hi(addr), lo(addr));
+    }
+
+    /**
+     * Removes all of the entries for the given address which reference the given node.
+     *
+     * @return true if any entry was removed
+     */
+    boolean remove(final String location, final InetAddress ipAddr, final int nodeId) {
+        final Table table = tables.get(LocationUtils.getEffectiveLocationName(location));
+        if (table == null) {
+            return false;
+        }
+        final byte[] addr = ipAddr.getAddress();
+        return table.remove(hi(addr), lo(addr), nodeId);
+    }
+
+    /**
+     * Removes all of the entries which reference the given node, in all locations.
+     *
+     * @return the number of entries that were removed
+     */
+    int removeNode(final int nodeId) {
+        int removed = 0;
+        for (final Table table : tables.values()) {
+            removed += table.removeNode(nodeId);
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the total number of entries.
+     */
+    int size() {
+        int size = 0;
+        for (final Table table : tables.values()) {
+            size += table.size;
+        }
+        return size;
+    }
+
+    void clear() {
+        tables.clear();
+    }
+
+    private static long hi(final byte[] addr) {
+        return addr.length == 4 ? 0L : toLong(addr, 0);
+    }
+
+    private static long lo(final byte[] addr) {
+        if (addr.length == 4) {
+            return IPV4_MAPPED_PREFIX
+                    | (addr[0] & 0xFFL) << 24
+                    | (addr[1] & 0xFFL) << 16
+                    | (addr[2] & 0xFFL) << 8
+                    | (addr[3] & 0xFFL);
+        }
+        return toLong(addr, 8);
+    }
+
+    private static long toLong(final byte[] bytes, final int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFFL);
+        }
+        return value;
+    }
+
+    private static int hash(final long hi, final long lo) {
+        // Mix both halves using the finalizer of MurmurHash3
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * The arrays backing a table. Replaced as a whole when the table is resized.
+     *
+     * The entries of a slot are never modified once they have been stored, updates replace
+     * them with a new array instead. A null entry marks an empty slot.
+     */
+    private static final class Slots {
+        private final long[] his;
+        private final long[] los;
+        private final long[][] entries;
+        private final int mask;
+
+        private Slots(final int capacity) {
+            his = new long[capacity];
+            los = new long[capacity];
+            entries = new long[capacity][];
+            mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return mask + 1;
+        }
+
+        /**
+         * Returns the index of the slot holding the given key, or (-(insertion point) - 1) if it is not present.
+         */
+        private int indexOf(final long hi, final long lo) {
+            int idx = hash(hi, lo) & mask;
+            // Bound the number of probes, concurrent modifications may be observed by optimistic readers
+            for (int probes = 0; probes <= mask; probes++) {
+                if (entries[idx] == null) {
+                    return -idx - 1;
+                }
+                if (his[idx] == hi && los[idx] == lo) {
+                    return idx;
+                }
+                idx = (idx + 1) & mask;
+            }
+            return Integer.MIN_VALUE;
+        }
+
+        private long first(final long hi, final long lo) {
+            final int idx = indexOf(hi, lo);
+            if (idx < 0) {
+                return NO_ENTRY;
+            }
+            final long[] values = entries[idx];
+            return values == null ? NO_ENTRY : values[0];
+        }
+
+        private void insert(final int idx, final long hi, final long lo, final long[] values) {
+            his[idx] = hi;
+            los[idx] = lo;
+            entries[idx] = values;
+        }
+
+        /**
+         * Removes the given slot, shifting back the entries which follow it in the probe sequence.
+         */
+        private void delete(final int idx) {
+            int gap = idx;
+            int i = (gap + 1) & mask;
+            while (entries[i] != null) {
+                final int home = hash(his[i], los[i]) & mask;
+                // The entry can fill the gap if the gap lies between its home slot and its current slot
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    insert(gap, his[i], los[i], entries[i]);
+                    gap = i;
+                }
+                i = (i + 1) & mask;
+            }
+            entries[gap] = null;
+            his[gap] = 0;
+            los[gap] = 0;
+        }
+    }
+
+    private static final class Table {
+        private final StampedLock lock = new StampedLock();
+        private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+        // Number of occupied slots, guarded by the write lock
+        private int keys = 0;
+        // Number of entries across all of the slots
+        private volatile int size = 0;
+
+        private long getFirst(final long hi, final long lo) {
+            long stamp = lock.tryOptimisticRead();
+            long first = slots.first(hi, lo);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    first = slots.first(hi, lo);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return first;
+        }
+
+        private boolean put(final long hi, final long lo, final long entry) {
+            final long stamp = lock.writeLock();
+            try {
+                Slots current = slots;
+                int idx = current.indexOf(hi, lo);
+                if (idx >= 0) {
+                    final long[] existing = current.entries[idx];
+                    final long[] updated = insertSorted(existing, entry);
+                    if (updated == existing) {
+                        return false;
+                    }
+                    current.entries[idx] = updated;
+                } else {
+                    if (keys + 1 > current.capacity() * LOAD_FACTOR) {
+                        current = resize(current, current.capacity() * 2);
+                        idx = current.indexOf(hi, lo);
+                    }
+                    current.insert(-idx - 1, hi, lo, new long[]{entry});
+                    keys++;
+                }
+                size++;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private boolean remove(final long hi, final long lo, final int nodeId) {
+            final long stamp = lock.writeLock();
+            try {
+                final Slots current = slots;
+                final int idx = current.indexOf(hi, lo);
+                if (idx < 0) {
+                    return false;
+                }
+                final long[] existing = current.entries[idx];
+                final long[] retained = Arrays.stream(existing).filter(e -> nodeId(e) != nodeId).toArray();
+                if (retained.length == existing.length) {
+                    return false;
+                }
+                if (retained.length == 0) {
+                    current.delete(idx);
+                    keys--;
+                } else {
+                    current.entries[idx] = retained;
+                }
+                size -= existing.length - retained.length;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private int removeNode(final int nodeId) {
+            final long stamp = lock.writeLock();
+            try {
+                final Slots current = slots;
+                // Rebuild the table without the node's entries, instead of deleting slots while iterating over them
+                final Slots rebuilt = new Slots(current.capacity());
+                int removed = 0;
+                int retainedKeys = 0;
+                for (int i = 0; i < current.capacity(); i++) {
+                    final long[] existing = current.entries[i];
+                    if (existing == null) {
+                        continue;
+                    }
+                    final long[] retained = Arrays.stream(existing).filter(e -> nodeId(e) != nodeId).toArray();
+                    removed += existing.length - retained.length;
+                    if (retained.length > 0) {
+                        final int idx = rebuilt.indexOf(current.his[i], current.los[i]);
+                        rebuilt.insert(-idx - 1, current.his[i], current.los[i], retained.length == existing.length ? existing : retained);
+                        retainedKeys++;
+                    }
+                }
+                if (removed > 0) {
+                    slots = rebuilt;
+                    keys = retainedKeys;
+                    size -= removed;
+                }
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private Slots resize(final Slots current, final int capacity) {
+            final Slots resized = new Slots(capacity);
+            for (int i = 0; i < current.capacity(); i++) {
+                if (current.entries[i] != null) {
+                    final int idx = resized.indexOf(current.his[i], current.los[i]);
+                    resized.insert(-idx - 1, current.his[i], current.los[i], current.entries[i]);
+                }
+            }
+            slots = resized;
+            return resized;
+        }
+
+        /**
+         * Returns a copy of the given sorted entries with the entry added in order,
+         * or the given array itself if it already contains the entry.
+         */
+        private static long[] insertSorted(final long[] entries, final long entry) {
+            int pos = 0;
+            while (pos < entries.length && Long.compareUnsigned(entries[pos], entry) < 0) {
+                pos++;
+            }
+            if (pos < entries.length && entries[pos] == entry) {
+                return entries;
+            }
+            final long[] updated = new long[entries.length + 1];
+            System.arraycopy(entries, 0, updated, 0, pos);
+            updated[pos] = entry;
+            System.arraycopy(entries, pos, updated, pos + 1, entries.length - pos);
+            return updated;
+        }
+    }
+}
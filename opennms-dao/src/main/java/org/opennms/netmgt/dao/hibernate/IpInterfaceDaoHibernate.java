@@ -29,6 +29,7 @@
 package org.opennms.netmgt.dao.hibernate;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +38,7 @@ import org.hibernate.transform.ResultTransformer;
 import org.opennms.netmgt.dao.api.IpInterfaceDao;
 import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.PrimaryType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
@@ -159,6 +161,22 @@ public class IpInterfaceDaoHibernate extends AbstractDaoHibernate<OnmsIpInterfac
         return map;
     }
 
+    @Override
+    public List<InterfaceToNodeMapping> findInterfaceToNodeMappings() {
+        // TODO: Refactor the 'D' value with an enumeration
+        @SuppressWarnings("unchecked")
+        final List<Object[]> rows = (List<Object[]>)getHibernateTemplate().find("select n.location.locationName, i.ipAddress, n.id, i.id, i.snmpPrimary " +
+                "from OnmsIpInterface as i join i.node as n " +
+                "where n.type != '" + OnmsNode.NodeType.DELETED.value() + "' and (i.isManaged is null or i.isManaged != 'D')");
+
+        final List<InterfaceToNodeMapping> mappings = new ArrayList<>(rows.size());
+        for (final Object[] row : rows) {
+            mappings.add(new InterfaceToNodeMapping((String) row[0], (InetAddress) row[1],
+                    (Integer) row[2], (Integer) row[3], PrimaryType.get(row[4])));
+        }
+        return mappings;
+    }
+
     /**
      * <p>addressExistsWithForeignSource</p>
      *
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import java.net.InetAddress;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.LocationUtils;
+import org.opennms.netmgt.model.PrimaryType;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SortedSetMultimap;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare lookups against the {@link InterfaceToNodeIndex} with
+ * lookups against a lock protected {@code SortedSetMultimap}, which is how the {@link InterfaceToNodeCacheDaoImpl}
+ * used to store its entries.
+ * <p>
+ * Each operation looks up a single address, of which one in ten is unknown, so the reported number of operations
+ * per second is the number of lookups per second. The contended variants perform the lookups from several threads.
+ */
+public class InterfaceToNodeIndexBenchmark {
+
+    private static final int ADDRESSES = 4096;
+    private static final String LOCATION = LocationUtils.DEFAULT_LOCATION_NAME;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(InterfaceToNodeIndexBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"10000", "100000"})
+        public int interfaces;
+
+        private InterfaceToNodeIndex index;
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private SortedSetMultimap<Map.Entry<String, InetAddress>, Long> multimap;
+
+        private InetAddress[] addresses;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            index = new InterfaceToNodeIndex();
+            multimap = Multimaps.newSortedSetMultimap(Maps.newHashMap(), TreeSet::new);
+            for (int i = 0; i < interfaces; i++) {
+                final InetAddress addr = InetAddressUtils.getInetAddress(toAddress(i));
+                final int nodeId = 1 + i / 4;
+                index.put(LOCATION, addr, nodeId, i + 1, PrimaryType.PRIMARY);
+                multimap.put(new AbstractMap.SimpleImmutableEntry<>(LOCATION, addr), InterfaceToNodeIndex.pack(PrimaryType.PRIMARY, nodeId, i + 1));
+            }
+
+            final Random random = new Random(42);
+            addresses = new InetAddress[ADDRESSES];
+            for (int i = 0; i < ADDRESSES; i++) {
+                // One in ten addresses is not part of the index
+                final int n = i % 10 == 0 ? interfaces + random.nextInt(interfaces) : random.nextInt(interfaces);
+                addresses[i] = InetAddressUtils.getInetAddress(toAddress(n));
+            }
+        }
+
+        private static byte[] toAddress(final int n) {
+            return new byte[]{10, (byte) (n >>> 16), (byte) (n >>> 8), (byte) n};
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TState {
+        private int next;
+
+        private InetAddress next(final BState state) {
+            final InetAddress addr = state.addresses[next];
+            next = (next + 1) & (ADDRESSES - 1);
+            return addr;
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long index(BState state, TState thread) {
+        return state.index.getFirst(LOCATION, thread.next(state));
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public long multimap(BState state, TState thread) {
+        return multimapLookup(state, thread.next(state));
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Threads(4)
+    public long indexContended(BState state, TState thread) {
+        return state.index.getFirst(LOCATION, thread.next(state));
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Threads(4)
+    public long multimapContended(BState state, TState thread) {
+        return multimapLookup(state, thread.next(state));
+    }
+
+    private static long multimapLookup(final BState state, final InetAddress addr) {
+        state.lock.readLock().lock();
+        try {
+            final SortedSet<Long> values = state.multimap.get(new AbstractMap.SimpleImmutableEntry<>(LocationUtils.getEffectiveLocationName(LOCATION), addr));
+            return values.isEmpty() ? InterfaceToNodeIndex.NO_ENTRY : values.first();
+        } finally {
+            state.lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.dao.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.model.PrimaryType;
+
+public class InterfaceToNodeIndexTest {
+
+    @Test
+    public void canPackEntries() {
+        final long entry = InterfaceToNodeIndex.pack(PrimaryType.PRIMARY, Integer.MAX_VALUE, 42);
+        assertEquals(Integer.MAX_VALUE, InterfaceToNodeIndex.nodeId(entry));
+        assertEquals(42, InterfaceToNodeIndex.interfaceId(entry));
+        assertTrue(entry != InterfaceToNodeIndex.NO_ENTRY);
+    }
+
+    @Test
+    public void canOrderEntriesLikeTheCache() {
+        final InterfaceToNodeIndex index = new InterfaceToNodeIndex();
+        final InetAddress addr = addr("192.168.1.1");
+
+        assertTrue(index.put("Default", addr, 3, 30, PrimaryType.PRIMARY));
+        assertFirst(index, "Default", addr, 3, 30);
+
+        // Not eligible sorts before primary, same as PrimaryType#compareTo
+        assertTrue(index.put("Default", addr, 2, 20, PrimaryType.NOT_ELIGIBLE));
+        assertFirst(index, "Default", addr, 2, 20);
+
+        // Followed by the node and interface IDs
+        assertTrue(index.put("Default", addr, 1, 11, PrimaryType.NOT_ELIGIBLE));
+        assertTrue(index.put("Default", addr, 1, 10, PrimaryType.NOT_ELIGIBLE));
+        assertFirst(index, "Default", addr, 1, 10);
+
+        // Duplicates are ignored
+        assertFalse(index.put("Default", addr, 1, 10, PrimaryType.NOT_ELIGIBLE));
+        assertEquals(4, index.size());
+
+        // Removing a node removes all of its entries for the address
+        assertTrue(index.remove("Default", addr, 1));
+        assertFirst(index, "Default", addr, 2, 20);
+        assertFalse(index.remove("Default", addr, 1));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void canSeparateLocations() {
+        final InterfaceToNodeIndex index = new InterfaceToNodeIndex();
+        final InetAddress addr = addr("10.0.0.1");
+
+        index.put(null, addr, 1, 1, PrimaryType.PRIMARY);
+        index.put("Remote", addr, 2, 2, PrimaryType.PRIMARY);
+
+        // A null or empty location is the default location
+        assertFirst(index, "Default", addr, 1, 1);
+        assertFirst(index, "", addr, 1, 1);
+        assertFirst(index, "Remote", addr, 2, 2);
+        assertEquals(InterfaceToNodeIndex.NO_ENTRY, index.getFirst("Elsewhere", addr));
+    }
+
+    @Test
+    public void canDistinguishAddressFamilies() {
+        final InterfaceToNodeIndex index = new InterfaceToNodeIndex();
+
+        index.put("Default", addr("1.2.3.4"), 1, 1, PrimaryType.PRIMARY);
+        index.put("Default", addr("::102:304"), 2, 2, PrimaryType.PRIMARY);
+        index.put("Default", addr("2600:5800:fc29:3::1"), 3, 3, PrimaryType.PRIMARY);
+
+        assertFirst(index, "Default", addr("1.2.3.4"), 1, 1);
+        assertFirst(index, "Default", addr("::102:304"), 2, 2);
+        assertFirst(index, "Default", addr("2600:5800:fc29:3::1"), 3, 3);
+        assertEquals(InterfaceToNodeIndex.NO_ENTRY, index.getFirst("Default", addr("2600:5800:fc29:3::2")));
+    }
+
+    @Test
+    public void canRemoveInterfacesForNode() {
+        final InterfaceToNodeIndex index = new InterfaceToNodeIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put("Default", toAddress(i), i % 2 == 0 ? 1 : 2, i, PrimaryType.SECONDARY);
+        }
+        index.put("Remote", toAddress(0), 1, 5000, PrimaryType.SECONDARY);
+
+        assertEquals(501, index.removeNode(1));
+        assertEquals(500, index.size());
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 0) {
+                assertEquals(InterfaceToNodeIndex.NO_ENTRY, index.getFirst("Default", toAddress(i)));
+            } else {
+                assertFirst(index, "Default", toAddress(i), 2, i);
+            }
+        }
+        assertEquals(0, index.removeNode(1));
+    }
+
+    /**
+     * Applies random modifications to both the index and a reference model, and verifies they stay in sync.
+     * Uses a small address space in order to exercise collisions, deletions and resizing.
+     */
+    @Test
+    public void canMatchReferenceModel() {
+        final InterfaceToNodeIndex index = new InterfaceToNodeIndex();
+        final Map<Integer, TreeSet<Long>> model = new HashMap<>();
+        final Random random = new Random(1);
+
+        for (int i = 0; i < 50_000; i++) {
+            final int n = random.nextInt(2000);
+            final int nodeId = random.nextInt(20);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    final int interfaceId = random.nextInt(5);
+                    final PrimaryType type = PrimaryType.getAllTypes().get(random.nextInt(3));
+                    final boolean added = model.computeIfAbsent(n, k -> new TreeSet<>(Long::compareUnsigned))
+                            .add(InterfaceToNodeIndex.pack(type, nodeId, interfaceId));
+                    assertEquals(added, index.put("Default", toAddress(n), nodeId, interfaceId, type));
+                    break;
+                case 2:
+                    final TreeSet<Long> values = model.getOrDefault(n, new TreeSet<>());
+                    final boolean removed = values.removeIf(e -> InterfaceToNodeIndex.nodeId(e) == nodeId);
+                    assertEquals(removed, index.remove("Default", toAddress(n), nodeId));
+                    break;
+                default:
+                    if (random.nextInt(100) == 0) {
+                        int count = 0;
+                        for (final TreeSet<Long> entries : model.values()) {
+                            final int before = entries.size();
+                            entries.removeIf(e -> InterfaceToNodeIndex.nodeId(e) == nodeId);
+                            count += before - entries.size();
+                        }
+                        assertEquals(count, index.removeNode(nodeId));
+                    }
+            }
+        }
+
+        int size = 0;
+        for (int n = 0; n < 2000; n++) {
+            final TreeSet<Long> values = model.get(n);
+            if (values == null || values.isEmpty()) {
+                assertEquals(InterfaceToNodeIndex.NO_ENTRY, index.getFirst("Default", toAddress(n)));
+            } else {
+                assertEquals(values.first().longValue(), index.getFirst("Default", toAddress(n)));
+                size += values.size();
+            }
+        }
+        assertEquals(size, index.size());
+    }
+
+    private static InetAddress toAddress(final int n) {
+        return InetAddressUtils.getInetAddress(new byte[]{10, (byte) (n >>> 16), (byte) (n >>> 8), (byte) n});
+    }
+
+    private static void assertFirst(final InterfaceToNodeIndex index, final String location, final InetAddress addr, final int nodeId, final int interfaceId) {
+        final long entry = index.getFirst(location, addr);
+        assertEquals(nodeId, InterfaceToNodeIndex.nodeId(entry));
+        assertEquals(interfaceId, InterfaceToNodeIndex.interfaceId(entry));
+    }
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Fallback for {@link Pinger#sweep} which pings the addresses one at a time
+ * using {@link Pinger#ping(InetAddress, long, int, int, int, PingResponseCallback)}.
+ */
+class PerAddressPingSweep {
+
+    private PerAddressPingSweep() {}
+
+    static PingSweepResult sweep(final Pinger pinger, final List<PingSweepRange> ranges, final int packetSize, final double packetsPerSecond) throws Exception {
+        final PingSweepResult result = new PingSweepResult(ranges);
+        final RateLimiter limiter = RateLimiter.create(packetsPerSecond);
+
+        // Start with one extra pending request, so that we can't complete before all of the requests are sent
+        final AtomicLong pending = new AtomicLong(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        for (int range = 0; range < ranges.size(); range++) {
+            final PingSweepRange pingSweepRange = ranges.get(range);
+            for (int index = 0; index < pingSweepRange.size(); index++) {
+                final int r = range, i = index;
+                final InetAddress address = pingSweepRange.getAddress(index);
+                final PingResponseCallback cb = new PingResponseCallback() {
+                    @Override
+                    public void handleResponse(InetAddress address, EchoPacket response) {
+                        if (response != null) {
+                            result.recordResponse(r, i, response.elapsedTime(TimeUnit.MILLISECONDS));
+                        }
+                        handled();
+                    }
+
+                    @Override
+                    public void handleTimeout(InetAddress address, EchoPacket request) {
+                        handled();
+                    }
+
+                    @Override
+                    public void handleError(InetAddress address, EchoPacket request, Throwable t) {
+                        handled();
+                    }
+
+                    private void handled() {
+                        if (pending.decrementAndGet() == 0) {
+                            done.countDown();
+                        }
+                    }
+                };
+
+                pending.incrementAndGet();
+                limiter.acquire();
+                try {
+                    pinger.ping(address, pingSweepRange.getTimeout(), pingSweepRange.getRetries(), packetSize, 1, cb);
+                } catch (Exception e) {
+                    cb.handleError(address, null, e);
+                }
+            }
+        }
+
+        if (pending.decrementAndGet() == 0) {
+            done.countDown();
+        }
+        done.await();
+        return result;
+    }
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A contiguous range of addresses to sweep.
+ *
+ * The range is stored as its first address and its size, the individual addresses are
+ * only materialized when they are pinged.
+ */
+public class PingSweepRange {
+
+    private final byte[] m_begin;
+    private final int m_size;
+    private final int m_retries;
+    private final long m_timeout;
+
+    public PingSweepRange(final InetAddress begin, final InetAddress end, final int retries, final long timeout) {
+        Objects.requireNonNull(begin, "begin");
+        Objects.requireNonNull(end, "end");
+        if (begin.getAddress().length != end.getAddress().length) {
+            throw new IllegalArgumentException("begin and end must be of the same address family");
+        }
+        final BigInteger size = new BigInteger(1, end.getAddress()).subtract(new BigInteger(1, begin.getAddress())).add(BigInteger.ONE);
+        if (size.signum() <= 0) {
+            throw new IllegalArgumentException("begin must be less than or equal to end");
+        }
+        if (size.bitLength() > 31) {
+            throw new IllegalArgumentException("ranges may not contain more than " + Integer.MAX_VALUE + " addresses");
+        }
+        m_begin = begin.getAddress();
+        m_size = size.intValue();
+        m_retries = retries;
+        m_timeout = timeout;
+    }
+
+    /**
+     * @return the number of addresses in the range
+     */
+    public int size() {
+        return m_size;
+    }
+
+    public int getRetries() {
+        return m_retries;
+    }
+
+    /**
+     * @return the time to wait for a reply in milliseconds
+     */
+    public long getTimeout() {
+        return m_timeout;
+    }
+
+    public boolean isV4() {
+        return m_begin.length == 4;
+    }
+
+    public InetAddress getBegin() {
+        return getAddress(0);
+    }
+
+    public InetAddress getEnd() {
+        return getAddress(m_size - 1);
+    }
+
+    /**
+     * @param index the offset of the address from the beginning of the range
+     * @return the address at the given offset
+     */
+    public InetAddress getAddress(final int index) {
+        if (index < 0 || index >= m_size) {
+            throw new IndexOutOfBoundsException("index " + index + " is not in [0," + m_size + ")");
+        }
+        final byte[] address = Arrays.copyOf(m_begin, m_begin.length);
+        long carry = index;
+        for (int i = address.length - 1; i >= 0 && carry != 0; i--) {
+            final long sum = (address[i] & 0xff) + (carry & 0xff);
+            address[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+        try {
+            return InetAddress.getByAddress(address);
+        } catch (UnknownHostException e) {
+            // Only thrown for addresses of an illegal length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param address an address in the range
+     * @return the offset of the address from the beginning of the range, or -1 if the address is not in the range
+     */
+    public int indexOf(final InetAddress address) {
+        final byte[] bytes = address.getAddress();
+        if (bytes.length != m_begin.length) {
+            return -1;
+        }
+        final BigInteger offset = new BigInteger(1, bytes).subtract(new BigInteger(1, m_begin));
+        if (offset.signum() < 0 || offset.compareTo(BigInteger.valueOf(m_size)) >= 0) {
+            return -1;
+        }
+        return offset.intValue();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(Arrays.hashCode(m_begin), m_size, m_retries, m_timeout);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final PingSweepRange other = (PingSweepRange) obj;
+        return Arrays.equals(m_begin, other.m_begin)
+                && m_size == other.m_size
+                && m_retries == other.m_retries
+                && m_timeout == other.m_timeout;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PingSweepRange[begin=%s, size=%d, retries=%d, timeout=%d]",
+                getBegin().getHostAddress(), m_size, m_retries, m_timeout);
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * The addresses which responded to a sweep over one or more {@link PingSweepRange}s.
+ *
+ * For every range, the responders are tracked as a bitmap of their offsets within the range,
+ * along with their response times, so that no objects need to be kept for individual addresses.
+ * Responses may be recorded concurrently while the sweep is running.
+ */
+public class PingSweepResult {
+
+    private final List<PingSweepRange> m_ranges;
+    private final BitSet[] m_responders;
+    // The offset of each response in the upper 32 bits and its response time in milliseconds,
+    // as a float, in the lower 32 bits
+    private final long[][] m_responses;
+    private final int[] m_responseCounts;
+
+    public PingSweepResult(final List<PingSweepRange> ranges) {
+        m_ranges = Objects.requireNonNull(ranges);
+        m_responders = new BitSet[ranges.size()];
+        m_responses = new long[ranges.size()][];
+        m_responseCounts = new int[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            m_responders[i] = new BitSet();
+            m_responses[i] = new long[0];
+        }
+    }
+
+    public List<PingSweepRange> getRanges() {
+        return m_ranges;
+    }
+
+    /**
+     * Records a response.
+     *
+     * @param range the index of the range
+     * @param index the offset of the responding address within the range
+     * @param rtt the response time in milliseconds
+     * @return false if a response was already recorded for this address
+     */
+    public synchronized boolean recordResponse(final int range, final int index, final double rtt) {
+        if (m_responders[range].get(index)) {
+            return false;
+        }
+        m_responders[range].set(index);
+        long[] responses = m_responses[range];
+        if (m_responseCounts[range] == responses.length) {
+            responses = m_responses[range] = Arrays.copyOf(responses, Math.max(16, responses.length * 2));
+        }
+        responses[m_responseCounts[range]++] = ((long) index << 32) | (Float.floatToIntBits((float) rtt) & 0xffffffffL);
+        return true;
+    }
+
+    public synchronized boolean hasResponded(final int range, final int index) {
+        return m_responders[range].get(index);
+    }
+
+    /**
+     * @return a copy of the bitmap of the addresses that responded in the given range
+     */
+    public synchronized BitSet getResponders(final int range) {
+        return (BitSet) m_responders[range].clone();
+    }
+
+    /**
+     * @return the response times in milliseconds of the addresses that responded in the
+     * given range, ordered by their offset within the range
+     */
+    public synchronized float[] getResponseTimes(final int range) {
+        final long[] responses = Arrays.copyOf(m_responses[range], m_responseCounts[range]);
+        // Offsets are never negative, so this orders the responses by offset
+        Arrays.sort(responses);
+        final float[] rtts = new float[responses.length];
+        for (int i = 0; i < responses.length; i++) {
+            rtts[i] = Float.intBitsToFloat((int) responses[i]);
+        }
+        return rtts;
+    }
+
+    public synchronized int getResponderCount() {
+        return Arrays.stream(m_responseCounts).sum();
+    }
+
+    /**
+     * Invokes the consumer with the address and the response time in milliseconds
+     * of every address that responded, in the order of the ranges.
+     */
+    public void forEachResponse(final BiConsumer<InetAddress, Double> consumer) {
+        for (int range = 0; range < m_ranges.size(); range++) {
+            final BitSet responders;
+            final float[] rtts;
+            synchronized (this) {
+                responders = getResponders(range);
+                rtts = getResponseTimes(range);
+            }
+            int k = 0;
+            for (int index = responders.nextSetBit(0); index >= 0; index = responders.nextSetBit(index + 1)) {
+                consumer.accept(m_ranges.get(range).getAddress(index), (double) rtts[k++]);
+            }
+        }
+    }
+}
@@ -132,6 +132,23 @@ public interface Pinger {
          *     echo reply, it will contain a number, otherwise a null value.
          */
         public List<Number> parallelPing(InetAddress host, int count, long timeout, long pingInterval) throws Exception;
+
+        /**
+         * Ping every address in the given ranges, and wait until all of them have either
+         * replied or timed out.
+         *
+         * The addresses are pinged in order, at no more than the given rate. The default
+         * implementation pings every address individually, implementations may override it
+         * to send the requests in bursts without tracking the addresses individually.
+         *
+         * @param ranges The ranges of addresses to ping.
+         * @param packetSize The size of the packets to send.
+         * @param packetsPerSecond The maximum number of packets to send per second.
+         * @return the addresses that replied, along with their response times.
+         */
+        public default PingSweepResult sweep(List<PingSweepRange> ranges, int packetSize, double packetsPerSecond) throws Exception {
+            return PerAddressPingSweep.sweep(this, ranges, packetSize, packetsPerSecond);
+        }
         
 	public void setAllowFragmentation(final boolean allow) throws Exception;
 
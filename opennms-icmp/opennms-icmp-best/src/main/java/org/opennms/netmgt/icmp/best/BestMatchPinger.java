@@ -33,6 +33,8 @@ import java.util.List;
 
 import org.opennms.netmgt.icmp.NullPinger;
 import org.opennms.netmgt.icmp.PingResponseCallback;
+import org.opennms.netmgt.icmp.PingSweepRange;
+import org.opennms.netmgt.icmp.PingSweepResult;
 import org.opennms.netmgt.icmp.Pinger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -85,6 +87,12 @@ public class BestMatchPinger implements Pinger {
         return m_pinger.parallelPing(host, count, timeout, pingInterval, size);
     }
 
+    @Override
+    public PingSweepResult sweep(final List<PingSweepRange> ranges, final int packetSize, final double packetsPerSecond) throws Exception {
+        initialize();
+        return m_pinger.sweep(ranges, packetSize, packetsPerSecond);
+    }
+
     @Override
     public void initialize4() throws Exception {
         initialize();
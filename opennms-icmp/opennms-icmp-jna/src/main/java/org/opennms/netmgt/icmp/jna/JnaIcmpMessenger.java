@@ -51,6 +51,7 @@ public class JnaIcmpMessenger implements Messenger<JnaPingRequest, JnaPingReply>
 	private V4Pinger m_v4;
 	private V6Pinger m_v6;
     private ReplyHandler<JnaPingReply> m_callback = null;
+    private volatile PingReplyListener m_sweepReplyListener = null;
 
 	public JnaIcmpMessenger(final int pingerId) throws Exception {
 	    Throwable error = null;
@@ -107,9 +108,27 @@ public class JnaIcmpMessenger implements Messenger<JnaPingRequest, JnaPingReply>
 
         @Override
 	public void onPingReply(final InetAddress address, final EchoPacket packet) {
+        final PingReplyListener sweepReplyListener = m_sweepReplyListener;
+        if (sweepReplyListener != null && JnaPingSweep.isSweepReply(packet)) {
+            // Replies to sweeps are not tracked by the request tracker
+            sweepReplyListener.onPingReply(address, packet);
+            return;
+        }
         m_callback.handleReply(new JnaPingReply(address, packet));
 	}
 
+        void setSweepReplyListener(final PingReplyListener listener) {
+            m_sweepReplyListener = listener;
+        }
+
+        V4Pinger getV4Pinger() {
+            return m_v4;
+        }
+
+        V6Pinger getV6Pinger() {
+            return m_v6;
+        }
+
         public void setTrafficClass(int tc) throws IOException {
             if (m_v4 != null) m_v4.getPingSocket().setTrafficClass(tc);
             if (m_v6 != null) m_v6.getPingSocket().setTrafficClass(tc);
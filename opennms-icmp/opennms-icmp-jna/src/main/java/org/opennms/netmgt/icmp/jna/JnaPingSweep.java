@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.jna;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opennms.jicmp.jna.NativeDatagramSocket;
+import org.opennms.netmgt.icmp.EchoPacket;
+import org.opennms.netmgt.icmp.PingSweepRange;
+import org.opennms.netmgt.icmp.PingSweepResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Sweeps ranges of addresses by sending rate-limited bursts of echo requests
+ * on the sockets of the {@link V4Pinger} and {@link V6Pinger}.
+ *
+ * Rather than tracking a request for every address, every address in the sweep is assigned
+ * a slot, and the id of the sweep and the slot are encoded in the thread id field of the
+ * echo request. Replies are mapped straight back to their slot and recorded in the bitmaps
+ * of the {@link PingSweepResult}, provided they were sent by the address of the slot. Instead of retrying every address after its own timeout,
+ * the sweep makes one pass over the addresses that haven't replied yet per retry and waits
+ * for the timeout once at the end of every pass.
+ */
+class JnaPingSweep {
+    private static final Logger LOG = LoggerFactory.getLogger(JnaPingSweep.class);
+
+    // Replies to normal ping requests always have a positive thread id
+    private static final long SWEEP_FLAG = Long.MIN_VALUE;
+
+    // Number of bursts sent per second, at most
+    private static final int BURSTS_PER_SECOND = 100;
+
+    private final int m_id;
+    private final List<PingSweepRange> m_ranges;
+    // The first slot of each range
+    private final int[] m_offsets;
+    private final int m_slots;
+    private final PingSweepResult m_result;
+
+    JnaPingSweep(final int id, final List<PingSweepRange> ranges) {
+        m_id = id & Integer.MAX_VALUE;
+        m_ranges = ranges;
+        m_offsets = new int[ranges.size()];
+        long slots = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            m_offsets[i] = (int) slots;
+            slots += ranges.get(i).size();
+            if (slots > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("A sweep may not contain more than " + Integer.MAX_VALUE + " addresses");
+            }
+        }
+        m_slots = (int) slots;
+        m_result = new PingSweepResult(ranges);
+    }
+
+    static boolean isSweepReply(final EchoPacket packet) {
+        return (packet.getThreadId() & SWEEP_FLAG) != 0;
+    }
+
+    static int getSweepId(final EchoPacket packet) {
+        return (int) (packet.getThreadId() >>> 32) & Integer.MAX_VALUE;
+    }
+
+    int getId() {
+        return m_id;
+    }
+
+    PingSweepResult getResult() {
+        return m_result;
+    }
+
+    long threadIdFor(final int slot) {
+        return SWEEP_FLAG | ((long) m_id << 32) | (slot & 0xffffffffL);
+    }
+
+    /**
+     * Records the reply if it was sent by the address the request of its slot was sent to.
+     * Invoked by the socket reader threads.
+     */
+    void onReply(final InetAddress address, final EchoPacket packet) {
+        final int slot = (int) packet.getThreadId();
+        if (slot < 0 || slot >= m_slots) {
+            return;
+        }
+        // Ranges are never empty, so the offsets are strictly increasing
+        int range = Arrays.binarySearch(m_offsets, slot);
+        if (range < 0) {
+            // Not the first slot of a range, use the range that contains it
+            range = -range - 2;
+        }
+        final int index = slot - m_offsets[range];
+        // Replies from broadcast addresses, proxies or forged replies don't prove that the address is up
+        final InetAddress expected = m_ranges.get(range).getAddress(index);
+        if (address == null || !Arrays.equals(expected.getAddress(), address.getAddress())) {
+            LOG.debug("Ignoring reply of {} to the request sent to {} by sweep {}.", address, expected, m_id);
+            return;
+        }
+        if (m_result.recordResponse(range, index, packet.elapsedTime(TimeUnit.MILLISECONDS))) {
+            synchronized (this) {
+                if (m_result.getResponderCount() == m_slots) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the requests and waits for the replies.
+     */
+    PingSweepResult run(final int pingerId, final V4Pinger v4, final V6Pinger v6, final int packetSize, final double packetsPerSecond) throws InterruptedException {
+        final RateLimiter limiter = RateLimiter.create(packetsPerSecond);
+        final int burstSize = (int) Math.max(1, Math.ceil(packetsPerSecond / BURSTS_PER_SECOND));
+        final V4PingRequest v4Request = v4 != null ? new V4PingRequest(pingerId, 0, 0, packetSize) : null;
+        final V6PingRequest v6Request = v6 != null ? new V6PingRequest(pingerId, 0, 0, packetSize) : null;
+
+        final int maxRetries = m_ranges.stream().mapToInt(PingSweepRange::getRetries).max().orElse(0);
+        for (int pass = 0; pass <= maxRetries; pass++) {
+            int sent = 0;
+            long timeout = 0;
+            int credits = 0;
+            for (int range = 0; range < m_ranges.size(); range++) {
+                final PingSweepRange pingSweepRange = m_ranges.get(range);
+                if (pingSweepRange.getRetries() < pass) {
+                    continue;
+                }
+                final NativeDatagramSocket socket = pingSweepRange.isV4() ? (v4 != null ? v4.getPingSocket() : null) : (v6 != null ? v6.getPingSocket() : null);
+                if (socket == null) {
+                    LOG.debug("No socket is available for {}. The range will be skipped.", pingSweepRange);
+                    continue;
+                }
+
+                // Only send requests to the addresses that haven't replied yet
+                final BitSet responders = m_result.getResponders(range);
+                for (int index = responders.nextClearBit(0); index < pingSweepRange.size(); index = responders.nextClearBit(index + 1)) {
+                    if (credits == 0) {
+                        limiter.acquire(burstSize);
+                        credits = burstSize;
+                    }
+                    credits--;
+
+                    final InetAddress address = pingSweepRange.getAddress(index);
+                    final long threadId = threadIdFor(m_offsets[range] + index);
+                    if (address instanceof Inet4Address) {
+                        v4Request.setSequenceNumber(pass);
+                        v4Request.setThreadId(threadId);
+                        v4Request.send(socket, address);
+                    } else if (address instanceof Inet6Address) {
+                        v6Request.setSequenceNumber(pass);
+                        v6Request.setThreadId(threadId);
+                        v6Request.send(socket, address);
+                    }
+                    sent++;
+                    timeout = Math.max(timeout, pingSweepRange.getTimeout());
+                }
+            }
+
+            if (sent == 0) {
+                break;
+            }
+            LOG.debug("Sent {} echo requests on pass {} of sweep {}.", sent, pass, m_id);
+
+            // Wait for the replies to the last requests of this pass
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            synchronized (this) {
+                long remaining;
+                while (m_result.getResponderCount() < m_slots && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+            if (m_result.getResponderCount() == m_slots) {
+                break;
+            }
+        }
+        return m_result;
+    }
+}
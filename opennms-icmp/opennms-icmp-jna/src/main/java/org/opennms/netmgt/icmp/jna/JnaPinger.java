@@ -37,10 +37,15 @@ import java.net.InetAddress;
 import java.security.SecureRandom;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.opennms.core.logging.Logging;
+import org.opennms.netmgt.icmp.EchoPacket;
 import org.opennms.netmgt.icmp.ParallelPingResponseCallback;
 import org.opennms.netmgt.icmp.PingResponseCallback;
+import org.opennms.netmgt.icmp.PingSweepRange;
+import org.opennms.netmgt.icmp.PingSweepResult;
 import org.opennms.netmgt.icmp.Pinger;
 import org.opennms.netmgt.icmp.SinglePingResponseCallback;
 import org.opennms.core.tracker.IDBasedRequestLocator;
@@ -59,9 +64,16 @@ public class JnaPinger implements Pinger {
 
     private final int m_pingerId = new SecureRandom().nextInt(Short.MAX_VALUE);
 
+    // Maximum number of sweeps that can run concurrently, must be a power of 2
+    private static final int MAX_SWEEPS = 256;
+
     private RequestTracker<JnaPingRequest, JnaPingReply> m_pingTracker;
     private JnaIcmpMessenger m_messenger;
 
+    // Running sweeps, indexed by the lower bits of their id
+    private final AtomicReferenceArray<JnaPingSweep> m_sweeps = new AtomicReferenceArray<>(MAX_SWEEPS);
+    private final AtomicInteger m_nextSweepId = new AtomicInteger(new SecureRandom().nextInt(Integer.MAX_VALUE));
+
     /**
      * Initializes this singleton
      * @throws Exception 
@@ -70,6 +82,7 @@ public class JnaPinger implements Pinger {
         if (m_pingTracker != null) return;
         try {
             m_messenger = new JnaIcmpMessenger(m_pingerId);
+            m_messenger.setSweepReplyListener(this::onSweepReply);
             m_pingTracker = Logging.withPrefix("icmp", new Callable<RequestTracker<JnaPingRequest,JnaPingReply>>() {
                 @Override public RequestTracker<JnaPingRequest, JnaPingReply> call() throws Exception {
                     return new RequestTracker<JnaPingRequest, JnaPingReply>("JNA-ICMP-"+m_pingerId, m_messenger, new IDBasedRequestLocator<JnaPingRequestId, JnaPingRequest, JnaPingReply>());
@@ -257,6 +270,36 @@ public class JnaPinger implements Pinger {
         return parallelPing(host, count, timeout, pingInterval, DEFAULT_PACKET_SIZE);
     }
 
+    /**
+     * Sweeps the ranges by sending bursts of echo requests directly on the sockets,
+     * see {@link JnaPingSweep}. Falls back to pinging the addresses individually if
+     * too many sweeps are already running.
+     */
+    @Override
+    public PingSweepResult sweep(final List<PingSweepRange> ranges, final int packetSize, final double packetsPerSecond) throws Exception {
+        initialize();
+        final JnaPingSweep sweep = new JnaPingSweep(m_nextSweepId.getAndIncrement(), ranges);
+        final int index = sweep.getId() & (MAX_SWEEPS - 1);
+        if (!m_sweeps.compareAndSet(index, null, sweep)) {
+            LOG.debug("Too many sweeps are running, pinging the addresses individually.");
+            return Pinger.super.sweep(ranges, packetSize, packetsPerSecond);
+        }
+        try {
+            return sweep.run(m_pingerId, m_messenger.getV4Pinger(), m_messenger.getV6Pinger(), packetSize, packetsPerSecond);
+        } finally {
+            m_sweeps.compareAndSet(index, sweep, null);
+        }
+    }
+
+    private void onSweepReply(final InetAddress address, final EchoPacket packet) {
+        final int sweepId = JnaPingSweep.getSweepId(packet);
+        final JnaPingSweep sweep = m_sweeps.get(sweepId & (MAX_SWEEPS - 1));
+        // Ignore late replies to sweeps that have already completed
+        if (sweep != null && sweep.getId() == sweepId) {
+            sweep.onReply(address, packet);
+        }
+    }
+
     @Override
     public void setAllowFragmentation(boolean allow) throws Exception {
         initialize();
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.icmp.jna;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.opennms.netmgt.icmp.EchoPacket;
+import org.opennms.netmgt.icmp.PingSweepRange;
+
+public class JnaPingSweepTest {
+
+    private static EchoPacket reply(final long threadId) {
+        return new EchoPacket() {
+            @Override
+            public boolean isEchoReply() {
+                return true;
+            }
+
+            @Override
+            public int getIdentifier() {
+                return 0;
+            }
+
+            @Override
+            public int getSequenceNumber() {
+                return 0;
+            }
+
+            @Override
+            public long getThreadId() {
+                return threadId;
+            }
+
+            @Override
+            public long getReceivedTimeNanos() {
+                return TimeUnit.MILLISECONDS.toNanos(5);
+            }
+
+            @Override
+            public long getSentTimeNanos() {
+                return 0;
+            }
+
+            @Override
+            public double elapsedTime(final TimeUnit timeUnit) {
+                return timeUnit.convert(5, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    @Test
+    public void canRecordRepliesOfTheSweptAddresses() throws Exception {
+        final JnaPingSweep sweep = new JnaPingSweep(1, Arrays.asList(
+                new PingSweepRange(InetAddress.getByName("192.0.2.1"), InetAddress.getByName("192.0.2.4"), 0, 100),
+                new PingSweepRange(InetAddress.getByName("2001:db8::1"), InetAddress.getByName("2001:db8::2"), 0, 100)));
+
+        final EchoPacket packet = reply(sweep.threadIdFor(2));
+        assertTrue(JnaPingSweep.isSweepReply(packet));
+        assertEquals(1, JnaPingSweep.getSweepId(packet));
+
+        sweep.onReply(InetAddress.getByName("192.0.2.3"), packet);
+        sweep.onReply(InetAddress.getByName("2001:db8::2"), reply(sweep.threadIdFor(5)));
+
+        assertTrue(sweep.getResult().hasResponded(0, 2));
+        assertTrue(sweep.getResult().hasResponded(1, 1));
+        assertEquals(2, sweep.getResult().getResponderCount());
+    }
+
+    @Test
+    public void ignoresRepliesOfOtherAddresses() throws Exception {
+        final JnaPingSweep sweep = new JnaPingSweep(1, Arrays.asList(
+                new PingSweepRange(InetAddress.getByName("192.0.2.1"), InetAddress.getByName("192.0.2.4"), 0, 100)));
+
+        // i.e. a reply to a request sent to the broadcast address, or a forged reply
+        sweep.onReply(InetAddress.getByName("192.0.2.1"), reply(sweep.threadIdFor(2)));
+        sweep.onReply(InetAddress.getByName("198.51.100.3"), reply(sweep.threadIdFor(2)));
+        sweep.onReply(null, reply(sweep.threadIdFor(2)));
+
+        assertFalse(sweep.getResult().hasResponded(0, 2));
+        assertFalse(sweep.getResult().hasResponded(0, 0));
+        assertEquals(0, sweep.getResult().getResponderCount());
+    }
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.proxy;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+
+import org.opennms.core.network.InetAddressXmlAdapter;
+import org.opennms.netmgt.icmp.PingSweepRange;
+import org.opennms.netmgt.icmp.PingSweepResult;
+
+/**
+ * The responders of a single range, encoded as a bitmap of their offsets within the range
+ * along with their response times, in milliseconds, in the same order.
+ */
+@XmlRootElement(name = "range-result")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class PingSweepRangeResultDTO {
+
+    @XmlAttribute(name = "begin")
+    @XmlJavaTypeAdapter(value = InetAddressXmlAdapter.class)
+    private InetAddress begin;
+
+    @XmlAttribute(name = "end")
+    @XmlJavaTypeAdapter(value = InetAddressXmlAdapter.class)
+    private InetAddress end;
+
+    // Base64 encoded, see getResponders()
+    @XmlAttribute(name = "responders")
+    private String responders;
+
+    // Base64 encoded, see getRtts()
+    @XmlAttribute(name = "rtts")
+    private String rtts;
+
+    public PingSweepRangeResultDTO() {
+    }
+
+    public PingSweepRangeResultDTO(InetAddress begin, InetAddress end, BitSet responders, float[] rtts) {
+        this.begin = begin;
+        this.end = end;
+        setResponders(responders);
+        setRtts(rtts);
+    }
+
+    public static PingSweepRangeResultDTO fromResult(PingSweepResult result, int range) {
+        final PingSweepRange pingSweepRange = result.getRanges().get(range);
+        // Take both from the same snapshot of the result
+        synchronized (result) {
+            return new PingSweepRangeResultDTO(pingSweepRange.getBegin(), pingSweepRange.getEnd(),
+                    result.getResponders(range), result.getResponseTimes(range));
+        }
+    }
+
+    public InetAddress getBegin() {
+        return begin;
+    }
+
+    public void setBegin(InetAddress begin) {
+        this.begin = begin;
+    }
+
+    public InetAddress getEnd() {
+        return end;
+    }
+
+    public void setEnd(InetAddress end) {
+        this.end = end;
+    }
+
+    public BitSet getResponders() {
+        return responders != null ? BitSet.valueOf(Base64.getDecoder().decode(responders)) : new BitSet();
+    }
+
+    public void setResponders(BitSet responders) {
+        this.responders = Base64.getEncoder().encodeToString(responders.toByteArray());
+    }
+
+    public float[] getRtts() {
+        if (rtts == null) {
+            return new float[0];
+        }
+        final byte[] bytes = Base64.getDecoder().decode(rtts);
+        final float[] values = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).asFloatBuffer().get(values);
+        return values;
+    }
+
+    public void setRtts(float[] rtts) {
+        final ByteBuffer buffer = ByteBuffer.allocate(rtts.length * Float.BYTES);
+        buffer.asFloatBuffer().put(rtts);
+        this.rtts = Base64.getEncoder().encodeToString(buffer.array());
+    }
+
+    /**
+     * Invokes the consumer with the address and the response time of every responder.
+     */
+    public void forEachResponse(BiConsumer<InetAddress, Double> consumer) {
+        final PingSweepRange range = new PingSweepRange(begin, end, 0, 0);
+        final BitSet responders = getResponders();
+        final float[] rtts = getRtts();
+        int k = 0;
+        for (int index = responders.nextSetBit(0); index >= 0 && index < range.size(); index = responders.nextSetBit(index + 1)) {
+            consumer.accept(range.getAddress(index), k < rtts.length ? (double) rtts[k] : Double.NaN);
+            k++;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(begin, end, responders, rtts);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        PingSweepRangeResultDTO other = (PingSweepRangeResultDTO) obj;
+        return Objects.equals(this.begin, other.begin)
+                && Objects.equals(this.end, other.end)
+                && Objects.equals(this.responders, other.responders)
+                && Objects.equals(this.rtts, other.rtts);
+    }
+
+}
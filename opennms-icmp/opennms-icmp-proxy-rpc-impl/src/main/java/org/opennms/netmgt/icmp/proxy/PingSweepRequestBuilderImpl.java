@@ -103,6 +103,9 @@ public class PingSweepRequestBuilderImpl implements PingSweepRequestBuilder {
             for (PingSweepResultDTO result : responseDTO.getPingSweepResult()) {
                 responses.put(result.getAddress(), result.getRtt());
             }
+            for (PingSweepRangeResultDTO rangeResult : responseDTO.getRangeResults()) {
+                rangeResult.forEachResponse(responses::put);
+            }
             summary.setResponses(responses);
             return summary;
         });
@@ -51,6 +51,9 @@ public class PingSweepResponseDTO implements RpcResponse {
     @XmlElement(name = "pinger-result")
     private List<PingSweepResultDTO> pingSweepResult = new ArrayList<>(0);
 
+    @XmlElement(name = "range-result")
+    private List<PingSweepRangeResultDTO> rangeResults = new ArrayList<>(0);
+
     public PingSweepResponseDTO() { }
 
     public PingSweepResponseDTO(Throwable ex) {
@@ -69,6 +72,18 @@ public class PingSweepResponseDTO implements RpcResponse {
         this.pingSweepResult.add(pingSweepResult);
     }
 
+    public List<PingSweepRangeResultDTO> getRangeResults() {
+        return rangeResults;
+    }
+
+    public void setRangeResults(List<PingSweepRangeResultDTO> rangeResults) {
+        this.rangeResults = rangeResults;
+    }
+
+    public void addRangeResult(PingSweepRangeResultDTO rangeResult) {
+        this.rangeResults.add(rangeResult);
+    }
+
     @Override
     public String getErrorMessage() {
         return error;
@@ -76,7 +91,7 @@ public class PingSweepResponseDTO implements RpcResponse {
 
     @Override
     public int hashCode() {
-        return Objects.hash(pingSweepResult, error);
+        return Objects.hash(pingSweepResult, rangeResults, error);
     }
 
     @Override
@@ -89,6 +104,7 @@ public class PingSweepResponseDTO implements RpcResponse {
             return false;
         PingSweepResponseDTO other = (PingSweepResponseDTO) obj;
         return Objects.equals(this.pingSweepResult, other.pingSweepResult) &&
+                Objects.equals(this.rangeResults, other.rangeResults) &&
                 Objects.equals(this.error, other.error);
     }
 
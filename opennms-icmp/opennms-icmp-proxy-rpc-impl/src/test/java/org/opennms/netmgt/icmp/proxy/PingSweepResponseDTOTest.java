@@ -32,6 +32,7 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 
@@ -49,7 +50,11 @@ public class PingSweepResponseDTOTest extends XmlTestNoCastor<PingSweepResponseD
         return Arrays.asList(new Object[][] { { getPingSweepResponse(),
                 "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" + "<ping-sweep-response>\n"
                         + "<pinger-result>\n" + "<address>127.0.0.1</address>\n" + "<rtt>0.243</rtt>\n"
-                        + "</pinger-result>\n" + "</ping-sweep-response>\n" } });
+                        + "</pinger-result>\n" + "</ping-sweep-response>\n" },
+                { getPingSweepRangeResponse(),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" + "<ping-sweep-response>\n"
+                        + "<range-result begin=\"10.0.0.1\" end=\"10.0.0.254\" responders=\"BQ==\" rtts=\"PwAAAD+gAAA=\"/>\n"
+                        + "</ping-sweep-response>\n" } });
     }
 
     private static Object getPingSweepResponse() throws UnknownHostException {
@@ -63,4 +68,14 @@ public class PingSweepResponseDTOTest extends XmlTestNoCastor<PingSweepResponseD
         return responseDTO;
     }
 
+    private static Object getPingSweepRangeResponse() throws UnknownHostException {
+        PingSweepResponseDTO responseDTO = new PingSweepResponseDTO();
+        BitSet responders = new BitSet();
+        responders.set(0);
+        responders.set(2);
+        responseDTO.addRangeResult(new PingSweepRangeResultDTO(InetAddress.getByName("10.0.0.1"),
+                InetAddress.getByName("10.0.0.254"), responders, new float[] { 0.5f, 1.25f }));
+        return responseDTO;
+    }
+
 }
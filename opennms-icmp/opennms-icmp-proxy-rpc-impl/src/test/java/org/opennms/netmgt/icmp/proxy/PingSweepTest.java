@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.icmp.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.icmp.PingResponseCallback;
+import org.opennms.netmgt.icmp.PingSweepRange;
+import org.opennms.netmgt.icmp.PingSweepResult;
+import org.opennms.netmgt.icmp.TestPinger;
+
+public class PingSweepTest {
+
+    @Test
+    public void canAddressRanges() throws Exception {
+        final PingSweepRange v4 = new PingSweepRange(addr("10.0.0.250"), addr("10.0.1.4"), 1, 100);
+        assertEquals(11, v4.size());
+        assertTrue(v4.isV4());
+        assertEquals(addr("10.0.0.250"), v4.getAddress(0));
+        assertEquals(addr("10.0.1.0"), v4.getAddress(6));
+        assertEquals(addr("10.0.1.4"), v4.getAddress(10));
+        assertEquals(6, v4.indexOf(addr("10.0.1.0")));
+        assertEquals(-1, v4.indexOf(addr("10.0.1.5")));
+
+        final PingSweepRange v6 = new PingSweepRange(addr("fe80::ffff"), addr("fe80::1:1"), 0, 100);
+        assertEquals(3, v6.size());
+        assertFalse(v6.isV4());
+        assertEquals(addr("fe80::1:0"), v6.getAddress(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotCreateReversedRange() throws Exception {
+        new PingSweepRange(addr("10.0.0.2"), addr("10.0.0.1"), 1, 100);
+    }
+
+    @Test
+    public void canRecordResponses() throws Exception {
+        final PingSweepRange range = new PingSweepRange(addr("192.168.0.1"), addr("192.168.0.100"), 1, 100);
+        final PingSweepResult result = new PingSweepResult(Arrays.asList(range));
+
+        assertTrue(result.recordResponse(0, 42, 3.5));
+        assertTrue(result.recordResponse(0, 7, 1.25));
+        assertFalse(result.recordResponse(0, 42, 9.0));
+
+        assertEquals(2, result.getResponderCount());
+        assertTrue(result.hasResponded(0, 7));
+        assertFalse(result.hasResponded(0, 8));
+
+        final Map<InetAddress, Double> responses = new LinkedHashMap<>();
+        result.forEachResponse(responses::put);
+        assertEquals(2, responses.size());
+        assertEquals(1.25, responses.get(addr("192.168.0.8")), 0.0);
+        assertEquals(3.5, responses.get(addr("192.168.0.43")), 0.0);
+
+        // The encoded range result must decode to the same responses
+        final Map<InetAddress, Double> decoded = new LinkedHashMap<>();
+        PingSweepRangeResultDTO.fromResult(result, 0).forEachResponse(decoded::put);
+        assertEquals(responses, decoded);
+    }
+
+    @Test
+    public void canSweepWithPerAddressPings() throws Exception {
+        // Only respond to odd addresses
+        final TestPinger pinger = new TestPinger() {
+            @Override
+            public void ping(InetAddress host, long timeout, int retries, int packetsize, int sequenceId, PingResponseCallback cb) throws Exception {
+                if ((host.getAddress()[3] & 1) == 1) {
+                    super.ping(host, timeout, retries, packetsize, sequenceId, cb);
+                } else {
+                    cb.handleTimeout(host, null);
+                }
+            }
+        };
+
+        final PingSweepRange first = new PingSweepRange(addr("10.1.1.1"), addr("10.1.1.10"), 0, 100);
+        final PingSweepRange second = new PingSweepRange(addr("10.2.2.2"), addr("10.2.2.2"), 0, 100);
+        final PingSweepResult result = pinger.sweep(Arrays.asList(first, second), 64, 1000);
+
+        final BitSet expected = new BitSet();
+        for (int i = 0; i < 10; i += 2) {
+            expected.set(i);
+        }
+        assertEquals(expected, result.getResponders(0));
+        assertEquals(new BitSet(), result.getResponders(1));
+        assertEquals(5, result.getResponderCount());
+    }
+
+    private static InetAddress addr(String address) {
+        return InetAddressUtils.addr(address);
+    }
+}
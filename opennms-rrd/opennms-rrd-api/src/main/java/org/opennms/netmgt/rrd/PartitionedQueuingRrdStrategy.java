@@ -0,0 +1,894 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.opennms.core.logging.Logging;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a queuing implementation of RrdStrategy which scales with the number of write threads.
+ *
+ * Like the {@link QueuingRrdStrategy}, this strategy enqueues the create and update operations on a per file basis,
+ * merges subsequent zero-valued updates, and lets write threads process the enqueued work file by file, optionally
+ * preferring files with significant updates over files with insignificant updates only.
+ *
+ * Instead of a single queue guarded by a global monitor, the files are hash-partitioned over one queue per write
+ * thread. Each partition has its own lock, so collection threads only contend with each other when updating files of
+ * the same partition, and as every file is always written by the same thread, no bookkeeping of the files currently
+ * being written is required.
+ *
+ * The strategy takes the same configuration properties as the {@link QueuingRrdStrategy} and can be used as a drop-in
+ * replacement. Insignificant files are promoted once they have been enqueued for more than
+ * {@code org.opennms.rrd.queuing.maxInsigUpdateSeconds}.
+ */
+public class PartitionedQueuingRrdStrategy implements RrdStrategy<PartitionedQueuingRrdStrategy.CreateOperation, String>, QueuingRrdStrategyStats {
+
+    /**
+     * Maximum number of files taken from a partition at once by its write thread.
+     */
+    private static final int MAX_FILES_PER_TAKE = 64;
+
+    private Logger m_log = LoggerFactory.getLogger(PartitionedQueuingRrdStrategy.class);
+
+    private final RrdStrategy<Object, Object> m_delegate;
+
+    private Properties m_configurationProperties;
+
+    private String m_category = "queued";
+
+    private int m_writeThreads = 2;
+
+    private boolean m_queueCreates;
+
+    private boolean m_prioritizeSignificantUpdates;
+
+    private long m_inSigHighWaterMark;
+
+    private long m_sigHighWaterMark;
+
+    private long m_queueHighWaterMark;
+
+    private long m_modulus = 10000;
+
+    private long m_maxInsigUpdateSeconds;
+
+    private long m_writeThreadSleepTime = 50;
+
+    private long m_writeThreadExitDelay = 60000;
+
+    private volatile Partition[] m_partitions;
+
+    private final AtomicLong m_totalOperationsPending = new AtomicLong();
+    private final LongAdder m_enqueuedOperations = new LongAdder();
+    private final LongAdder m_significantOpsEnqueued = new LongAdder();
+    private final LongAdder m_significantOpsDequeued = new LongAdder();
+    private final LongAdder m_significantOpsCompleted = new LongAdder();
+    private final LongAdder m_dequeuedOperations = new LongAdder();
+    private final LongAdder m_dequeuedItems = new LongAdder();
+    private final LongAdder m_mergedOperations = new LongAdder();
+    private final LongAdder m_discardedOperations = new LongAdder();
+    private final LongAdder m_createsCompleted = new LongAdder();
+    private final LongAdder m_updatesCompleted = new LongAdder();
+    private final LongAdder m_promotionCount = new LongAdder();
+    private final LongAdder m_errors = new LongAdder();
+
+    private final long m_startTime = System.currentTimeMillis();
+
+    /**
+     * <p>Constructor for PartitionedQueuingRrdStrategy.</p>
+     *
+     * @param delegate the strategy used to actually write the files
+     */
+    public PartitionedQueuingRrdStrategy(final RrdStrategy<Object, Object> delegate) {
+        m_delegate = delegate;
+    }
+
+    public RrdStrategy<Object, Object> getDelegate() {
+        return m_delegate;
+    }
+
+    public Properties getConfigurationProperties() {
+        return m_configurationProperties;
+    }
+
+    @Override
+    public void setConfigurationProperties(final Properties configurationParameters) {
+        m_configurationProperties = configurationParameters;
+    }
+
+    public int getWriteThreads() {
+        return m_writeThreads;
+    }
+
+    /**
+     * Sets the number of write threads and therefore the number of partitions. Must be set before the first operation
+     * is enqueued.
+     */
+    public void setWriteThreads(final int writeThreads) {
+        m_writeThreads = writeThreads;
+    }
+
+    public boolean queueCreates() {
+        return m_queueCreates;
+    }
+
+    public void setQueueCreates(final boolean queueCreates) {
+        m_queueCreates = queueCreates;
+    }
+
+    public boolean prioritizeSignificantUpdates() {
+        return m_prioritizeSignificantUpdates;
+    }
+
+    public void setPrioritizeSignificantUpdates(final boolean prioritizeSignificantUpdates) {
+        m_prioritizeSignificantUpdates = prioritizeSignificantUpdates;
+    }
+
+    public long getInSigHighWaterMark() {
+        return m_inSigHighWaterMark;
+    }
+
+    public void setInSigHighWaterMark(final long inSigHighWaterMark) {
+        m_inSigHighWaterMark = inSigHighWaterMark;
+    }
+
+    public long getSigHighWaterMark() {
+        return m_sigHighWaterMark;
+    }
+
+    public void setSigHighWaterMark(final long sigHighWaterMark) {
+        m_sigHighWaterMark = sigHighWaterMark;
+    }
+
+    public long getQueueHighWaterMark() {
+        return m_queueHighWaterMark;
+    }
+
+    public void setQueueHighWaterMark(final long queueHighWaterMark) {
+        m_queueHighWaterMark = queueHighWaterMark;
+    }
+
+    public long getModulus() {
+        return m_modulus;
+    }
+
+    public void setModulus(final long modulus) {
+        m_modulus = modulus;
+    }
+
+    public String getCategory() {
+        return m_category;
+    }
+
+    public void setCategory(final String category) {
+        m_category = category;
+        m_log = LoggerFactory.getLogger(m_category);
+    }
+
+    public long getMaxInsigUpdateSeconds() {
+        return m_maxInsigUpdateSeconds;
+    }
+
+    public void setMaxInsigUpdateSeconds(final long maxInsigUpdateSeconds) {
+        m_maxInsigUpdateSeconds = maxInsigUpdateSeconds;
+    }
+
+    public long getWriteThreadSleepTime() {
+        return m_writeThreadSleepTime;
+    }
+
+    public void setWriteThreadSleepTime(final long writeThreadSleepTime) {
+        m_writeThreadSleepTime = writeThreadSleepTime;
+    }
+
+    public long getWriteThreadExitDelay() {
+        return m_writeThreadExitDelay;
+    }
+
+    public void setWriteThreadExitDelay(final long writeThreadExitDelay) {
+        m_writeThreadExitDelay = writeThreadExitDelay;
+    }
+
+    @Override
+    public long getTotalOperationsPending() {
+        return m_totalOperationsPending.get();
+    }
+
+    @Override
+    public long getEnqueuedOperations() {
+        return m_enqueuedOperations.sum();
+    }
+
+    @Override
+    public long getDequeuedOperations() {
+        return m_dequeuedOperations.sum();
+    }
+
+    @Override
+    public long getDequeuedItems() {
+        return m_dequeuedItems.sum();
+    }
+
+    @Override
+    public long getCreatesCompleted() {
+        return m_createsCompleted.sum();
+    }
+
+    @Override
+    public long getUpdatesCompleted() {
+        return m_updatesCompleted.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return m_errors.sum();
+    }
+
+    @Override
+    public long getPromotionCount() {
+        return m_promotionCount.sum();
+    }
+
+    @Override
+    public long getSignificantOpsEnqueued() {
+        return m_significantOpsEnqueued.sum();
+    }
+
+    @Override
+    public long getSignificantOpsDequeued() {
+        return m_significantOpsDequeued.sum();
+    }
+
+    @Override
+    public long getSignificantOpsCompleted() {
+        return m_significantOpsCompleted.sum();
+    }
+
+    @Override
+    public long getStartTime() {
+        return m_startTime;
+    }
+
+    //
+    // Operations
+    //
+
+    /**
+     * Base class of all enqueued operations.
+     */
+    abstract static class Operation {
+        final String fileName;
+        final boolean significant;
+
+        Operation(final String fileName, final boolean significant) {
+            this.fileName = fileName;
+            this.significant = significant;
+        }
+
+        /**
+         * Number of updates represented by this operation.
+         */
+        int getCount() {
+            return 1;
+        }
+
+        /**
+         * Tries to merge the given subsequent operation into this one.
+         *
+         * @return true if the operation was merged and must not be enqueued on its own
+         */
+        boolean merge(final Operation next) {
+            return false;
+        }
+
+        abstract Object process(RrdStrategy<Object, Object> delegate, Object rrd) throws Exception;
+    }
+
+    /**
+     * An operation to create a file.
+     */
+    public static class CreateOperation extends Operation {
+        private final Object rrdDef;
+
+        CreateOperation(final String fileName, final Object rrdDef) {
+            super(fileName, true);
+            this.rrdDef = rrdDef;
+        }
+
+        Object getRrdDef() {
+            return rrdDef;
+        }
+
+        @Override
+        Object process(final RrdStrategy<Object, Object> delegate, final Object rrd) throws Exception {
+            if (rrd != null) {
+                delegate.closeFile(rrd);
+            }
+            delegate.createFile(rrdDef);
+            return null;
+        }
+    }
+
+    /**
+     * An update of a file.
+     */
+    static class UpdateOperation extends Operation {
+        private final String data;
+
+        UpdateOperation(final String fileName, final String data) {
+            super(fileName, true);
+            this.data = data;
+        }
+
+        @Override
+        Object process(final RrdStrategy<Object, Object> delegate, Object rrd) throws Exception {
+            if (rrd == null) {
+                rrd = delegate.openFile(fileName);
+            }
+
+            try {
+                delegate.updateFile(rrd, "", data);
+            } catch (final Throwable e) {
+                throw new Exception(String.format("Error processing update for file %s: %s", fileName, data), e);
+            }
+            return rrd;
+        }
+    }
+
+    /**
+     * A series of zero-valued updates at (roughly) constant intervals.
+     */
+    static class ZeroUpdateOperation extends Operation {
+        private final long firstTimeStamp;
+        private long interval = 0;
+        private int count = 1;
+
+        ZeroUpdateOperation(final String fileName, final long firstTimeStamp) {
+            super(fileName, false);
+            this.firstTimeStamp = firstTimeStamp;
+        }
+
+        @Override
+        int getCount() {
+            return count;
+        }
+
+        long getLastTimeStamp() {
+            return firstTimeStamp + interval * (count - 1);
+        }
+
+        @Override
+        boolean merge(final Operation next) {
+            if (!(next instanceof ZeroUpdateOperation)) {
+                return false;
+            }
+
+            final ZeroUpdateOperation op = (ZeroUpdateOperation) next;
+            final long opSpacing = op.firstTimeStamp - getLastTimeStamp();
+            final long tolerance = interval / 5;
+
+            if (opSpacing == 0) {
+                return false;
+            }
+            if (interval > 0 && Math.abs(opSpacing - interval) >= tolerance) {
+                return false;
+            }
+            if (interval > 0 && op.interval > 0 && Math.abs(op.interval - interval) >= tolerance) {
+                return false;
+            }
+
+            final int newCount = count + op.count;
+            interval = ((count - 1) * interval + (op.count - 1) * op.interval + opSpacing) / (newCount - 1);
+            count = newCount;
+            return true;
+        }
+
+        @Override
+        Object process(final RrdStrategy<Object, Object> delegate, Object rrd) throws Exception {
+            long ts = firstTimeStamp;
+            for (int i = 0; i < count; i++) {
+                if (rrd == null) {
+                    rrd = delegate.openFile(fileName);
+                }
+
+                final String update = ts + ":0";
+                try {
+                    delegate.updateFile(rrd, "", update);
+                } catch (final Throwable e) {
+                    throw new Exception("Error processing update " + i + " for file " + fileName + ": " + update, e);
+                }
+                ts += interval;
+            }
+            return rrd;
+        }
+    }
+
+    Operation makeUpdateOperation(final String fileName, final String update) {
+        try {
+            final int colon = update.indexOf(':');
+            if ((colon >= 0) && (Double.parseDouble(update.substring(colon + 1)) == 0.0)) {
+                return new ZeroUpdateOperation(fileName, Long.parseLong(update.substring(0, colon)));
+            }
+        } catch (final NumberFormatException e) {
+            // Not a single zero value - fall through
+        }
+        return new UpdateOperation(fileName, update);
+    }
+
+    //
+    // Queue management
+    //
+
+    /**
+     * The operations enqueued for a single file.
+     */
+    private static final class PendingFile {
+        private final String fileName;
+        private final long enqueuedAt;
+        private final List<Operation> operations = new ArrayList<>(2);
+
+        // Whether the file has been put into the queue of files with significant work
+        private boolean significant;
+
+        // Whether the file has been taken by the write thread. Files may still be referenced by a queue afterwards.
+        private boolean taken;
+
+        private PendingFile(final String fileName, final long enqueuedAt) {
+            this.fileName = fileName;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        /**
+         * @return true if the operation was merged into a previous one
+         */
+        private boolean add(final Operation op) {
+            if (!operations.isEmpty() && operations.get(operations.size() - 1).merge(op)) {
+                return true;
+            }
+            operations.add(op);
+            return false;
+        }
+    }
+
+    /**
+     * A partition of the files, processed by a single write thread.
+     */
+    private final class Partition implements Runnable {
+        private final int m_index;
+
+        private final ReentrantLock m_lock = new ReentrantLock();
+
+        private final Map<String, PendingFile> m_pendingFiles = new HashMap<>();
+        private final ArrayDeque<PendingFile> m_filesWithSignificantWork = new ArrayDeque<>();
+        private final ArrayDeque<PendingFile> m_filesWithInsignificantWork = new ArrayDeque<>();
+
+        private boolean m_running = false;
+
+        private Partition(final int index) {
+            m_index = index;
+        }
+
+        private void add(final Operation op) {
+            m_lock.lock();
+            try {
+                PendingFile file = m_pendingFiles.get(op.fileName);
+                if (file == null) {
+                    file = new PendingFile(op.fileName, System.currentTimeMillis());
+                    m_pendingFiles.put(op.fileName, file);
+
+                    // if we aren't prioritizing then every file is counted as significant
+                    if (!m_prioritizeSignificantUpdates || op.significant) {
+                        file.significant = true;
+                        m_filesWithSignificantWork.addLast(file);
+                    } else {
+                        m_filesWithInsignificantWork.addLast(file);
+                    }
+                } else if (op.significant && !file.significant) {
+                    // the stale entry in the insignificant queue is skipped when dequeued
+                    file.significant = true;
+                    m_filesWithSignificantWork.addLast(file);
+                }
+
+                if (file.add(op)) {
+                    m_mergedOperations.increment();
+                }
+
+                if (!m_running) {
+                    m_running = true;
+                    new Thread(this, PartitionedQueuingRrdStrategy.class.getSimpleName() + "-" + m_index).start();
+                }
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        private void promote(final String fileName) {
+            m_lock.lock();
+            try {
+                final PendingFile file = m_pendingFiles.get(fileName);
+                if (file != null) {
+                    file.significant = true;
+                    m_filesWithSignificantWork.addFirst(file);
+                }
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        /**
+         * Takes the next files to work on.
+         *
+         * @param idleMillis the time the write thread has been waiting for work
+         * @return false if there is no work and the write thread must exit
+         */
+        private boolean take(final List<PendingFile> files, final long idleMillis) {
+            m_lock.lock();
+            try {
+                PendingFile file;
+                while (files.size() < MAX_FILES_PER_TAKE && (file = next()) != null) {
+                    file.taken = true;
+                    m_pendingFiles.remove(file.fileName);
+                    files.add(file);
+                }
+
+                if (files.isEmpty() && idleMillis >= m_writeThreadExitDelay) {
+                    m_running = false;
+                    return false;
+                }
+                return true;
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        private PendingFile next() {
+            // promote insignificant files which waited for too long
+            if (m_prioritizeSignificantUpdates && m_maxInsigUpdateSeconds > 0) {
+                final PendingFile aged = peekLive(m_filesWithInsignificantWork);
+                if (aged != null && System.currentTimeMillis() - aged.enqueuedAt >= m_maxInsigUpdateSeconds * 1000) {
+                    m_promotionCount.increment();
+                    return m_filesWithInsignificantWork.removeFirst();
+                }
+            }
+
+            final PendingFile significant = peekLive(m_filesWithSignificantWork);
+            if (significant != null) {
+                return m_filesWithSignificantWork.removeFirst();
+            }
+
+            final PendingFile insignificant = peekLive(m_filesWithInsignificantWork);
+            if (insignificant != null) {
+                return m_filesWithInsignificantWork.removeFirst();
+            }
+
+            return null;
+        }
+
+        /**
+         * Returns the first file of the queue which still has to be processed, dropping stale entries.
+         */
+        private PendingFile peekLive(final ArrayDeque<PendingFile> queue) {
+            PendingFile file;
+            while ((file = queue.peekFirst()) != null) {
+                if (file.taken || (queue == m_filesWithInsignificantWork && file.significant)) {
+                    queue.removeFirst();
+                } else {
+                    return file;
+                }
+            }
+            return null;
+        }
+
+        private void stopped() {
+            m_lock.lock();
+            try {
+                // Let the next enqueued operation start a new write thread
+                m_running = false;
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        private int size() {
+            m_lock.lock();
+            try {
+                return m_pendingFiles.size();
+            } finally {
+                m_lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            Logging.withPrefix(m_category, () -> {
+                final List<PendingFile> files = new ArrayList<>(MAX_FILES_PER_TAKE);
+                long waitStart = -1L;
+                long idle = 0;
+                while (take(files, idle)) {
+                    if (!files.isEmpty()) {
+                        for (final PendingFile file : files) {
+                            process(file);
+                        }
+                        files.clear();
+                        waitStart = -1L;
+                        idle = 0;
+                        continue;
+                    }
+
+                    // Polling is cheaper than waking up the write thread for each enqueued operation
+                    final long now = System.currentTimeMillis();
+                    if (waitStart < 0) {
+                        waitStart = now;
+                    }
+                    try {
+                        Thread.sleep(Math.max(1, m_writeThreadSleepTime));
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        stopped();
+                        break;
+                    }
+                    idle = System.currentTimeMillis() - waitStart;
+                }
+            });
+        }
+    }
+
+    private Partition[] partitions() {
+        Partition[] partitions = m_partitions;
+        if (partitions == null) {
+            synchronized (this) {
+                partitions = m_partitions;
+                if (partitions == null) {
+                    partitions = new Partition[Math.max(1, m_writeThreads)];
+                    for (int i = 0; i < partitions.length; i++) {
+                        partitions[i] = new Partition(i);
+                    }
+                    m_partitions = partitions;
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private Partition partition(final String fileName) {
+        final Partition[] partitions = partitions();
+        int h = fileName.hashCode();
+        h ^= (h >>> 16);
+        return partitions[(h & 0x7fffffff) % partitions.length];
+    }
+
+    private void addOperation(final Operation op) {
+        final long pending = m_totalOperationsPending.get();
+        if (m_queueHighWaterMark > 0 && pending >= m_queueHighWaterMark) {
+            m_discardedOperations.increment();
+            m_log.error("RRD Data Queue is Full!! Discarding operation for file {}", op.fileName);
+            return;
+        }
+        if (op.significant && m_sigHighWaterMark > 0 && pending >= m_sigHighWaterMark) {
+            m_discardedOperations.increment();
+            m_log.error("RRD Data Significant Queue is Full!! Discarding operation for file {}", op.fileName);
+            return;
+        }
+        if (!op.significant && m_inSigHighWaterMark > 0 && pending >= m_inSigHighWaterMark) {
+            m_discardedOperations.increment();
+            m_log.error("RRD Insignificant Data Queue is Full!! Discarding operation for file {}", op.fileName);
+            return;
+        }
+
+        m_totalOperationsPending.incrementAndGet();
+        m_enqueuedOperations.increment();
+        if (op.significant) {
+            m_significantOpsEnqueued.increment();
+        }
+
+        partition(op.fileName).add(op);
+    }
+
+    private void process(final PendingFile file) {
+        int count = 0;
+        int significantCount = 0;
+        for (final Operation op : file.operations) {
+            count += op.getCount();
+            if (op.significant) {
+                significantCount += op.getCount();
+            }
+        }
+        m_totalOperationsPending.addAndGet(-count);
+        m_dequeuedOperations.add(count);
+        m_significantOpsDequeued.add(significantCount);
+        m_dequeuedItems.increment();
+
+        Object rrd = null;
+        try {
+            for (final Operation op : file.operations) {
+                rrd = op.process(m_delegate, rrd);
+                if (op.significant) {
+                    m_significantOpsCompleted.add(op.getCount());
+                }
+                if (op instanceof CreateOperation) {
+                    m_createsCompleted.increment();
+                } else {
+                    m_updatesCompleted.add(op.getCount());
+                }
+            }
+        } catch (final Throwable e) {
+            m_errors.increment();
+            m_log.debug("Error updating file {}: {}", file.fileName, e.getMessage(), e);
+        } finally {
+            if (rrd != null) {
+                try {
+                    m_delegate.closeFile(rrd);
+                } catch (final Throwable e) {
+                    m_errors.increment();
+                    m_log.debug("Error closing rrd {}: {}", rrd, e.getMessage(), e);
+                }
+            }
+        }
+
+        if (m_modulus > 0 && m_log.isDebugEnabled() && m_dequeuedItems.sum() % m_modulus == 0) {
+            m_log.debug("{}", getStats());
+        }
+    }
+
+    //
+    // RrdStrategy Implementation
+    //
+
+    @Override
+    public CreateOperation createDefinition(final String creator, final String directory, final String rrdName, final int step, final List<RrdDataSource> dataSources, final List<String> rraList) throws Exception {
+        final String fileName = directory + File.separator + rrdName + m_delegate.getDefaultFileExtension();
+        final Object def = m_delegate.createDefinition(creator, directory, rrdName, step, dataSources, rraList);
+        return new CreateOperation(fileName, def);
+    }
+
+    @Override
+    public void createFile(final CreateOperation op) throws Exception {
+        if (m_queueCreates) {
+            addOperation(op);
+        } else {
+            m_delegate.createFile(op.getRrdDef());
+        }
+    }
+
+    @Override
+    public String openFile(final String fileName) throws Exception {
+        return fileName;
+    }
+
+    @Override
+    public void updateFile(final String rrdFile, final String owner, final String data) throws Exception {
+        addOperation(makeUpdateOperation(rrdFile, data));
+    }
+
+    @Override
+    public void closeFile(final String rrd) throws Exception {
+        // no need to do anything here
+    }
+
+    @Override
+    public void promoteEnqueuedFiles(final Collection<String> rrdFiles) {
+        for (final String rrdFile : rrdFiles) {
+            partition(rrdFile).promote(rrdFile);
+        }
+        m_delegate.promoteEnqueuedFiles(rrdFiles);
+    }
+
+    @Override
+    public Double fetchLastValue(final String rrdFile, final String ds, final int interval) throws NumberFormatException, RrdException {
+        return m_delegate.fetchLastValue(rrdFile, ds, interval);
+    }
+
+    @Override
+    public Double fetchLastValue(final String rrdFile, final String ds, final String consolidationFunction, final int interval) throws NumberFormatException, RrdException {
+        return m_delegate.fetchLastValue(rrdFile, ds, consolidationFunction, interval);
+    }
+
+    @Override
+    public Double fetchLastValueInRange(final String rrdFile, final String ds, final int interval, final int range) throws NumberFormatException, RrdException {
+        return m_delegate.fetchLastValueInRange(rrdFile, ds, interval, range);
+    }
+
+    @Override
+    public InputStream createGraph(final String command, final File workDir) throws IOException, RrdException {
+        return m_delegate.createGraph(command, workDir);
+    }
+
+    @Override
+    public RrdGraphDetails createGraphReturnDetails(final String command, final File workDir) throws IOException, RrdException {
+        return m_delegate.createGraphReturnDetails(command, workDir);
+    }
+
+    @Override
+    public int getGraphLeftOffset() {
+        return m_delegate.getGraphLeftOffset();
+    }
+
+    @Override
+    public int getGraphRightOffset() {
+        return m_delegate.getGraphRightOffset();
+    }
+
+    @Override
+    public int getGraphTopOffsetWithText() {
+        return m_delegate.getGraphTopOffsetWithText();
+    }
+
+    @Override
+    public String getDefaultFileExtension() {
+        return m_delegate.getDefaultFileExtension();
+    }
+
+    @Override
+    public String getStats() {
+        final long totalElapsedMillis = Math.max(System.currentTimeMillis() - m_startTime, 1);
+
+        int filesPending = 0;
+        final Partition[] partitions = m_partitions;
+        if (partitions != null) {
+            for (final Partition partition : partitions) {
+                filesPending += partition.size();
+            }
+        }
+
+        final long enqueued = getEnqueuedOperations();
+        final long dequeued = getDequeuedOperations();
+        final long items = getDequeuedItems();
+
+        return "\nQS:\t" + "totalOperationsPending=" + getTotalOperationsPending() +
+                ", filesPending=" + filesPending +
+                ", partitions=" + (partitions != null ? partitions.length : 0)
+                + "\nQS:\t" + "createsCompleted=" + getCreatesCompleted() +
+                ", updatesCompleted=" + getUpdatesCompleted() +
+                ", errors=" + getErrors() +
+                ", mergedOperations=" + m_mergedOperations.sum() +
+                ", discardedOperations=" + m_discardedOperations.sum() +
+                ", promotionCount=" + getPromotionCount()
+                + "\nQS:\t" + "overallEnqueueRate=" + (long) (enqueued * 1000.0 / totalElapsedMillis) +
+                ", overallDequeueRate=" + (long) (dequeued * 1000.0 / totalElapsedMillis) +
+                ", overallItemDequeueRate=" + (long) (items * 1000.0 / totalElapsedMillis) +
+                ", overallOpsPerUpdate=" + (dequeued / Math.max(items, 1.0)) +
+                ", overallPrcntSignificant=" + (m_significantOpsEnqueued.sum() * 100.0 / Math.max(enqueued, 1.0)) + "%" +
+                ", totalElapsedTime=" + ((totalElapsedMillis + 500) / 1000);
+    }
+}
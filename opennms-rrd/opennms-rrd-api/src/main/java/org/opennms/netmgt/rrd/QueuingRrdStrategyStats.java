@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.rrd;
+
+/**
+ * Statistics of an {@link RrdStrategy} that queues its operations and writes them from a pool of threads, as exposed
+ * by the Queued daemon.
+ *
+ * @see QueuingRrdStrategy
+ * @see PartitionedQueuingRrdStrategy
+ */
+public interface QueuingRrdStrategyStats {
+
+    /**
+     * @return the number of operations that are enqueued and were not written yet
+     */
+    long getTotalOperationsPending();
+
+    long getEnqueuedOperations();
+
+    long getDequeuedOperations();
+
+    /**
+     * @return the number of files that were written, each with all the operations that were pending for it
+     */
+    long getDequeuedItems();
+
+    long getCreatesCompleted();
+
+    long getUpdatesCompleted();
+
+    long getErrors();
+
+    /**
+     * @return the number of files with insignificant updates only that were written ahead of their turn since they
+     * waited for too long
+     */
+    long getPromotionCount();
+
+    long getSignificantOpsEnqueued();
+
+    long getSignificantOpsDequeued();
+
+    long getSignificantOpsCompleted();
+
+    /**
+     * @return the time the strategy started queuing operations, in milliseconds since the epoch
+     */
+    long getStartTime();
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PartitionedQueuingRrdStrategyTest {
+
+    /**
+     * Records the updates per file. Blocks the write threads until released.
+     */
+    private static class RecordingRrdStrategy extends NullRrdStrategy {
+        private final Map<String, List<String>> updates = new ConcurrentHashMap<>();
+        private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch released;
+
+        private RecordingRrdStrategy(final CountDownLatch released) {
+            this.released = released;
+        }
+
+        @Override
+        public Object openFile(final String fileName) {
+            try {
+                released.await();
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            order.add(fileName);
+            return fileName;
+        }
+
+        @Override
+        public void updateFile(final Object rrd, final String owner, final String data) {
+            updates.computeIfAbsent((String) rrd, k -> Collections.synchronizedList(new ArrayList<>())).add(data);
+        }
+    }
+
+    private static void awaitCompletion(final PartitionedQueuingRrdStrategy strategy, final long updates) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (strategy.getUpdatesCompleted() < updates && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(updates, strategy.getUpdatesCompleted());
+    }
+
+    @Test
+    public void canWriteUpdatesInOrder() throws Exception {
+        final RecordingRrdStrategy delegate = new RecordingRrdStrategy(new CountDownLatch(0));
+        final PartitionedQueuingRrdStrategy strategy = new PartitionedQueuingRrdStrategy(delegate);
+        strategy.setWriteThreads(4);
+
+        final List<Thread> collectors = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int collector = t;
+            final Thread thread = new Thread(() -> {
+                for (int i = 1; i <= 1000; i++) {
+                    try {
+                        strategy.updateFile("file-" + collector + "-" + (i % 10), "test", i + ":" + i);
+                    } catch (final Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            collectors.add(thread);
+            thread.start();
+        }
+        for (final Thread thread : collectors) {
+            thread.join();
+        }
+
+        awaitCompletion(strategy, 8000);
+        assertEquals(0, strategy.getTotalOperationsPending());
+        assertEquals(80, delegate.updates.size());
+
+        // Updates of a single file must be written in the order they were enqueued
+        for (final List<String> updates : delegate.updates.values()) {
+            assertEquals(100, updates.size());
+            long last = 0;
+            for (final String update : updates) {
+                final long timestamp = Long.parseLong(update.substring(0, update.indexOf(':')));
+                assertTrue(timestamp > last);
+                last = timestamp;
+            }
+        }
+    }
+
+    @Test
+    public void canMergeZeroUpdates() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        final RecordingRrdStrategy delegate = new RecordingRrdStrategy(released);
+        final PartitionedQueuingRrdStrategy strategy = new PartitionedQueuingRrdStrategy(delegate);
+        strategy.setWriteThreads(1);
+
+        // Block the write thread with a first update so that the following ones are queued up
+        strategy.updateFile("blocker", "test", "1:1");
+        for (int i = 1; i <= 5; i++) {
+            strategy.updateFile("zero", "test", (i * 300) + ":0");
+        }
+        assertEquals(6, strategy.getEnqueuedOperations());
+
+        released.countDown();
+        awaitCompletion(strategy, 6);
+
+        assertEquals(List.of("300:0", "600:0", "900:0", "1200:0", "1500:0"), delegate.updates.get("zero"));
+        // The zero updates were written as a single item opening the file only once
+        assertEquals(List.of("blocker", "zero"), delegate.order);
+    }
+
+    @Test
+    public void canPrioritizeSignificantUpdates() throws Exception {
+        final CountDownLatch released = new CountDownLatch(1);
+        final RecordingRrdStrategy delegate = new RecordingRrdStrategy(released);
+        final PartitionedQueuingRrdStrategy strategy = new PartitionedQueuingRrdStrategy(delegate);
+        strategy.setWriteThreads(1);
+        strategy.setPrioritizeSignificantUpdates(true);
+
+        strategy.updateFile("blocker", "test", "1:1");
+        strategy.updateFile("insignificant-1", "test", "300:0");
+        strategy.updateFile("insignificant-2", "test", "300:0");
+        strategy.updateFile("significant", "test", "300:1");
+        // A significant update promotes the file
+        strategy.updateFile("insignificant-2", "test", "600:2");
+
+        released.countDown();
+        awaitCompletion(strategy, 5);
+
+        assertEquals(List.of("blocker", "significant", "insignificant-2", "insignificant-1"), delegate.order);
+        assertEquals(3, strategy.getSignificantOpsEnqueued());
+        assertEquals(3, strategy.getSignificantOpsDequeued());
+        assertEquals(3, strategy.getSignificantOpsCompleted());
+        assertEquals(0, strategy.getPromotionCount());
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Use the Java Microbenchmarking Harness (JMH) to compare the {@link QueuingRrdStrategy} with the
+ * {@link PartitionedQueuingRrdStrategy}.
+ * <p>
+ * Both strategies write to a {@link NullRrdStrategy}, so that only the cost of queuing is measured.
+ * {@link #enqueue} measures how fast many collection threads can enqueue updates while the write threads drain the
+ * queue concurrently. {@link #enqueueAndDrain} measures the end-to-end throughput by waiting for all the enqueued
+ * updates to be written.
+ */
+public class QueuingRrdStrategyBenchmark {
+
+    // the number of updates that are enqueued in a single enqueueAndDrain call
+    private static final int UPDATES = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+
+    /**
+     * Counts the updates written to it.
+     */
+    public static class CountingRrdStrategy extends NullRrdStrategy {
+        public final LongAdder updates = new LongAdder();
+
+        @Override
+        public void updateFile(Object rrd, String owner, String data) {
+            updates.increment();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class BState {
+
+        @Param({"queuing", "partitioned"})
+        public String strategyType;
+
+        @Param({"4", "16"})
+        public int writeThreads;
+
+        @Param({"100000"})
+        public int files;
+
+        public CountingRrdStrategy sink;
+        public RrdStrategy<?, String> strategy;
+        public String[] fileNames;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            sink = new CountingRrdStrategy();
+            if ("partitioned".equals(strategyType)) {
+                final PartitionedQueuingRrdStrategy partitioned = new PartitionedQueuingRrdStrategy(sink);
+                partitioned.setWriteThreads(writeThreads);
+                partitioned.setWriteThreadSleepTime(1);
+                strategy = partitioned;
+            } else {
+                final QueuingRrdStrategy queuing = new QueuingRrdStrategy(sink);
+                queuing.setWriteThreads(writeThreads);
+                queuing.setModulus(10000);
+                queuing.setWriteThreadSleepTime(1);
+                queuing.setWriteThreadExitDelay(60000);
+                strategy = queuing;
+            }
+
+            fileNames = new String[files];
+            for (int i = 0; i < files; i++) {
+                fileNames[i] = "/opt/opennms/share/rrd/snmp/" + (i / 100) + "/ifInOctets-" + (i % 100) + ".jrb";
+            }
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Threads(16)
+    public void enqueue(BState state) throws Exception {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        state.strategy.updateFile(state.fileNames[random.nextInt(state.files)], "benchmark", "N:" + (1 + random.nextInt(1000)));
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @OperationsPerInvocation(UPDATES)
+    public void enqueueAndDrain(BState state) throws Exception {
+        final long target = state.sink.updates.sum() + UPDATES;
+
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < UPDATES; i++) {
+            state.strategy.updateFile(state.fileNames[random.nextInt(state.files)], "benchmark", "N:" + (1 + random.nextInt(1000)));
+        }
+
+        while (state.sink.updates.sum() < target) {
+            // Leave the CPU to the write threads
+            Thread.yield();
+        }
+    }
+}
@@ -85,6 +85,7 @@ import org.opennms.netmgt.model.events.EventUtils;
 import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.TimingWheelScheduler;
 import org.opennms.netmgt.snmp.InetAddrUtils;
 import org.opennms.netmgt.threshd.api.ThresholdingService;
 import org.slf4j.Logger;
@@ -133,6 +134,13 @@ public class Collectd extends AbstractServiceDaemon implements
      * Log4j category
      */
     static final String LOG4J_CATEGORY = "collectd";
+
+    /**
+     * System property used to select the scheduler implementation
+     */
+    static final String SCHEDULER_SYS_PROP = "org.opennms.collectd.scheduler";
+
+    static final String SCHEDULER_TIMING_WHEEL = "timing-wheel";
     
     /**
      * Instantiated service collectors specified in config file
@@ -314,7 +322,12 @@ public class Collectd extends AbstractServiceDaemon implements
             // Create a scheduler
             try {
                 LOG.debug("init: Creating collectd scheduler");
-                setScheduler(new LegacyScheduler("Collectd", m_collectdConfigFactory.getCollectdConfig().getThreads()));
+                final int threads = m_collectdConfigFactory.getCollectdConfig().getThreads();
+                if (SCHEDULER_TIMING_WHEEL.equalsIgnoreCase(System.getProperty(SCHEDULER_SYS_PROP))) {
+                    setScheduler(new TimingWheelScheduler("Collectd", threads));
+                } else {
+                    setScheduler(new LegacyScheduler("Collectd", threads));
+                }
             } catch (final RuntimeException e) {
                 LOG.error("init: Failed to create collectd scheduler", e);
                 throw e;
@@ -28,8 +28,15 @@
 
 package org.opennms.netmgt.collectd.jmx;
 
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ThreadPoolExecutor;
+
+import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.scheduler.LegacyScheduler;
+import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.TimingWheelScheduler;
+import org.opennms.netmgt.snmp.SnmpWalkStatistics;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
 
@@ -153,11 +160,63 @@ public class Collectd extends AbstractSpringContextJmxServiceDaemon<org.opennms.
         return getDaemon().getCollectableServiceCount();
     }
     
+    @Override
+    public long getSchedulerQueueDepth() {
+        final Scheduler scheduler = getDaemon().getScheduler();
+        if (scheduler instanceof TimingWheelScheduler) {
+            return ((TimingWheelScheduler) scheduler).getScheduled();
+        } else if (scheduler instanceof LegacyScheduler) {
+            return ((LegacyScheduler) scheduler).getScheduled();
+        } else {
+            return 0L;
+        }
+    }
+
+    @Override
+    public long getSchedulerLateFires() {
+        final Scheduler scheduler = getDaemon().getScheduler();
+        if (scheduler instanceof TimingWheelScheduler) {
+            return ((TimingWheelScheduler) scheduler).getLateFires();
+        } else {
+            return 0L;
+        }
+    }
+
+    @Override
+    public long getJvmSnmpWalksCompleted() {
+        return SnmpWalkStatistics.getInstance().getWalks();
+    }
+
+    @Override
+    public long getJvmSnmpWalksFailed() {
+        return SnmpWalkStatistics.getInstance().getFailures();
+    }
+
+    @Override
+    public long getJvmSnmpWalkAverageTime() {
+        final SnmpWalkStatistics stats = SnmpWalkStatistics.getInstance();
+        final long walks = stats.getWalks();
+        return walks > 0 ? stats.getTotalTime() / walks : 0L;
+    }
+
+    @Override
+    public Map<String, Long> getJvmSnmpWalkAverageTimeByAgent() {
+        final Map<String, Long> times = new TreeMap<>();
+        SnmpWalkStatistics.getInstance().getAgentStatistics().forEach((agent, stats) -> {
+            times.put(InetAddressUtils.str(agent), stats.getAverageTime());
+        });
+        return times;
+    }
+
     private ThreadPoolExecutor getExecutor() {
-        return (ThreadPoolExecutor) ((LegacyScheduler) getDaemon().getScheduler()).getRunner();
+        final Scheduler scheduler = getDaemon().getScheduler();
+        if (scheduler instanceof TimingWheelScheduler) {
+            return (ThreadPoolExecutor) ((TimingWheelScheduler) scheduler).getRunner();
+        }
+        return (ThreadPoolExecutor) ((LegacyScheduler) scheduler).getRunner();
     }
 
     private boolean getThreadPoolStatsStatus() {
-        return (getDaemon().getScheduler() instanceof LegacyScheduler);
+        return (getDaemon().getScheduler() instanceof LegacyScheduler || getDaemon().getScheduler() instanceof TimingWheelScheduler);
     }
 }
@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.collectd.jmx;
 
+import java.util.Map;
+
 import org.opennms.netmgt.daemon.BaseOnmsMBean;
 
 /**
@@ -91,4 +93,36 @@ public interface CollectdMBean extends BaseOnmsMBean {
      * @return The number of pending tasks
      */
     public long getTaskQueueRemainingCapacity();
+
+    /**
+     * @return The number of collections waiting in the scheduler
+     */
+    public long getSchedulerQueueDepth();
+
+    /**
+     * @return The number of collections the scheduler dispatched later than one tick after their deadline
+     */
+    public long getSchedulerLateFires();
+
+    /**
+     * @return The number of SNMP walks completed in this JVM since startup, by Collectd
+     *         and by any other daemon or provisioning that walks agents
+     */
+    public long getJvmSnmpWalksCompleted();
+
+    /**
+     * @return The number of SNMP walks in this JVM that failed or timed out since startup
+     */
+    public long getJvmSnmpWalksFailed();
+
+    /**
+     * @return The average duration of the SNMP walks in this JVM in milliseconds
+     */
+    public long getJvmSnmpWalkAverageTime();
+
+    /**
+     * @return The average duration of the SNMP walks in this JVM in milliseconds, by address
+     *         of the agents that were walked recently
+     */
+    public Map<String, Long> getJvmSnmpWalkAverageTimeByAgent();
 }
@@ -28,6 +28,9 @@
 
 package org.opennms.netmgt.poller.pollables;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.netmgt.scheduler.Timer;
 
@@ -47,6 +50,14 @@ public interface PollConfig extends Timer {
      */
     public PollStatus poll();
 
+    /**
+     * Polls the service without waiting for the monitor to respond.
+     *
+     * @param executor runs the handling of the response, which includes tracking the result
+     * @return the status of the service, the future never completes exceptionally
+     */
+    public CompletableFuture<PollStatus> pollAsync(Executor executor);
+
     /**
      * <p>getCurrentTime</p>
      *
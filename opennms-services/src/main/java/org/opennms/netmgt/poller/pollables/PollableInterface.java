@@ -223,12 +223,21 @@ public class PollableInterface extends PollableContainer {
     /** {@inheritDoc} */
     @Override
     protected PollStatus poll(PollableElement elem) {
-        PollableService critSvc = getCriticalService();
-        if (getStatus().isUp() || critSvc == null || elem == critSvc)
+        if (isPolled(elem))
             return super.poll(elem);
     
         return PollStatus.down();
     }
+
+    /**
+     * Services other than the critical service are not polled while the interface is down.
+     *
+     * @return true if polling the given member of the interface polls its monitor
+     */
+    boolean isPolled(PollableElement elem) {
+        PollableService critSvc = getCriticalService();
+        return getStatus().isUp() || critSvc == null || elem == critSvc;
+    }
     
     /** {@inheritDoc} */
     @Override
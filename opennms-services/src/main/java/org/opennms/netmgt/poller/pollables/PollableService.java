@@ -31,14 +31,20 @@ package org.opennms.netmgt.poller.pollables;
 import java.net.InetAddress;
 import java.util.Date;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.opennms.core.logging.Logging;
 import org.opennms.netmgt.events.api.EventConstants;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.PollStatus;
 import org.opennms.netmgt.scheduler.PostponeNecessary;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Schedule;
+import org.opennms.netmgt.scheduler.ScheduleTimer;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Parm;
 import org.slf4j.Logger;
@@ -53,6 +59,14 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
     
     private static final Logger LOG = LoggerFactory.getLogger(PollableService.class);
 
+    /**
+     * When set, the polls of this service are started by {@link #run()} without waiting on
+     * the monitor, and processed once the monitor has responded.
+     */
+    private static final boolean ASYNC_POLLING = AsyncServiceMonitor.isEnabled();
+
+    private static final Random RANDOM = new Random();
+
     private final class PollRunner implements Runnable {
     	
     	private volatile PollStatus m_pollStatus;
@@ -73,6 +87,8 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
     private volatile PollStatus m_oldStatus;
     private volatile Schedule m_schedule;
     private volatile long m_statusChangeTime = 0L;
+    private final AtomicBoolean m_asyncPollPending = new AtomicBoolean(false);
+    private final AtomicReference<PollStatus> m_asyncPollStatus = new AtomicReference<>();
     /**
      * <p>Constructor for PollableService.</p>
      *
@@ -188,7 +204,10 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      */
     @Override
     public PollStatus poll() {
-        PollStatus newStatus = m_pollConfig.poll();
+        PollStatus newStatus = m_asyncPollStatus.getAndSet(null);
+        if (newStatus == null) {
+            newStatus = m_pollConfig.poll();
+        }
         if (!newStatus.isUnknown()) { 
             updateStatus(newStatus);
         }
@@ -377,7 +396,84 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      */
     @Override
     public void run() {
-        doRun(500);
+        if (ASYNC_POLLING && isPolledDirectly()) {
+            runAsync();
+        } else {
+            doRun(500);
+        }
+    }
+
+    /**
+     * @return true if processing a poll of this service polls its monitor
+     */
+    private boolean isPolledDirectly() {
+        return !getContext().isNodeProcessingEnabled() || getInterface().isPolled(this);
+    }
+
+    /**
+     * Starts the poll without waiting on the monitor. The response is handed back to the
+     * scheduler, which processes it like a regular poll once the monitor has responded.
+     * A poll that fails to start or complete is processed with an UNKNOWN status, so that
+     * the next poll is never skipped because of it.
+     */
+    void runAsync() {
+        final ScheduleTimer timer = getSchedule().getTimer();
+        if (!m_asyncPollPending.compareAndSet(false, true)) {
+            LOG.info("Skipping poll of {}. The previous poll has not completed yet.", this);
+            return;
+        }
+
+        CompletableFuture<PollStatus> future;
+        try {
+            future = m_pollConfig.pollAsync(command -> timer.schedule(0, readyRunnable(command)));
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.handle((status, e) -> e != null ? asyncPollFailed(e) : status)
+            .thenAccept(status -> processAsyncPoll(timer, status))
+            .exceptionally(e -> {
+                LOG.error("Failed to process the asynchronous poll of {}", this, e);
+                return null;
+            });
+    }
+
+    private PollStatus asyncPollFailed(final Throwable e) {
+        LOG.warn("Asynchronous poll of {} failed. Marking the service as UNKNOWN.", this, e);
+        return PollStatus.unknown("Asynchronous poll failed: " + e);
+    }
+
+    private void processAsyncPoll(final ScheduleTimer timer, final PollStatus status) {
+        try {
+            if (isDeleted()) {
+                return;
+            }
+            m_asyncPollStatus.set(status);
+            doRun(500);
+        } catch (PostponeNecessary e) {
+            // Poll again between 5 and 14 seconds from now, like the schedule does for a blocking poll
+            timer.schedule(RANDOM.nextInt(10) * 1000L + 5000L, readyRunnable(() -> {
+                if (!isDeleted()) {
+                    runAsync();
+                }
+            }));
+        } finally {
+            m_asyncPollStatus.set(null);
+            m_asyncPollPending.set(false);
+        }
+    }
+
+    private static ReadyRunnable readyRunnable(final Runnable runnable) {
+        return new ReadyRunnable() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void run() {
+                runnable.run();
+            }
+        };
     }
     
     /**
@@ -29,7 +29,7 @@
 package org.opennms.netmgt.queued.jmx;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
-import org.opennms.netmgt.rrd.QueuingRrdStrategy;
+import org.opennms.netmgt.rrd.QueuingRrdStrategyStats;
 
 /**
  * <p>Queued class.</p>
@@ -51,8 +51,8 @@ public class Queued extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
         return "queuedContext";
     }
 
-    private QueuingRrdStrategy getRrdStrategy() {
-        return (QueuingRrdStrategy) getDaemon().getRrdStrategy();
+    private QueuingRrdStrategyStats getRrdStrategy() {
+        return (QueuingRrdStrategyStats) getDaemon().getRrdStrategy();
     }
 
 
@@ -62,7 +62,7 @@ public class Queued extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
      * @return a boolean.
      */
     public boolean getStatsStatus() {
-        if (getDaemon().getRrdStrategy() instanceof QueuingRrdStrategy) {
+        if (getDaemon().getRrdStrategy() instanceof QueuingRrdStrategyStats) {
             return true;
         } else {
             return false;
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2022 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2022 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.pollables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.poller.PollStatus;
+import org.opennms.netmgt.scheduler.ReadyRunnable;
+import org.opennms.netmgt.scheduler.Schedule;
+import org.opennms.netmgt.scheduler.ScheduleTimer;
+
+public class PollableServiceAsyncTest {
+
+    private PollContext m_context;
+    private PollableServiceConfig m_pollConfig;
+    private RecordingTimer m_timer;
+    private PollableService m_service;
+
+    @Before
+    public void setUp() throws Exception {
+        m_context = mock(PollContext.class);
+        m_pollConfig = mock(PollableServiceConfig.class);
+        m_timer = new RecordingTimer();
+
+        final PollableNetwork network = new PollableNetwork(m_context);
+        m_service = network.createService(1, "node1", null, InetAddress.getLoopbackAddress(), "HTTP");
+        m_service.setPollConfig(m_pollConfig);
+        m_service.setSchedule(new Schedule(m_service, m_pollConfig, m_timer));
+    }
+
+    @Test
+    public void skipsPollsWhileAPollIsPending() {
+        final CompletableFuture<PollStatus> pending = new CompletableFuture<>();
+        when(m_pollConfig.pollAsync(any())).thenReturn(pending);
+
+        m_service.runAsync();
+        m_service.runAsync();
+        verify(m_pollConfig, times(1)).pollAsync(any());
+
+        pending.complete(PollStatus.unknown("done"));
+        m_service.runAsync();
+        verify(m_pollConfig, times(2)).pollAsync(any());
+    }
+
+    @Test
+    public void clearsThePendingPollWhenThePollFails() {
+        final CompletableFuture<PollStatus> failing = new CompletableFuture<>();
+        when(m_pollConfig.pollAsync(any())).thenReturn(failing);
+
+        m_service.runAsync();
+        failing.completeExceptionally(new IllegalStateException("boom"));
+
+        m_service.runAsync();
+        verify(m_pollConfig, times(2)).pollAsync(any());
+    }
+
+    @Test
+    public void clearsThePendingPollWhenThePollCannotBeStarted() {
+        when(m_pollConfig.pollAsync(any())).thenThrow(new IllegalStateException("boom"));
+
+        m_service.runAsync();
+        m_service.runAsync();
+        verify(m_pollConfig, times(2)).pollAsync(any());
+    }
+
+    @Test
+    public void reschedulesThePollWhenItMustBePostponed() throws Exception {
+        when(m_context.isNodeProcessingEnabled()).thenReturn(true);
+        final CompletableFuture<PollStatus> pending = new CompletableFuture<>();
+        when(m_pollConfig.pollAsync(any())).thenReturn(pending);
+
+        // Hold the tree lock on another thread, so that processing the response must be postponed
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread holder = new Thread(() -> {
+            m_service.getNode().obtainTreeLock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                m_service.getNode().releaseTreeLock();
+            }
+        });
+        holder.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        try {
+            m_service.runAsync();
+            pending.complete(PollStatus.unknown("done"));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+
+        assertEquals(1, m_timer.entries.size());
+        final long delay = m_timer.intervals.get(0);
+        assertTrue("Rescheduled after " + delay + "ms", delay >= 5000L && delay < 15000L);
+
+        // The postponed poll is no longer pending, so running the rescheduled entry polls again
+        when(m_pollConfig.pollAsync(any())).thenReturn(new CompletableFuture<>());
+        m_timer.entries.get(0).run();
+        verify(m_pollConfig, times(2)).pollAsync(any());
+    }
+
+    private static class RecordingTimer implements ScheduleTimer {
+        private final List<Long> intervals = new ArrayList<>();
+        private final List<ReadyRunnable> entries = new ArrayList<>();
+
+        @Override
+        public synchronized void schedule(long interval, ReadyRunnable schedule) {
+            intervals.add(interval);
+            entries.add(schedule);
+        }
+
+        @Override
+        public long getCurrentTime() {
+            return System.currentTimeMillis();
+        }
+    }
+}